@@ -0,0 +1,38 @@
+/* MIGRATION D'UNE BASE EXISTANTE (créée avec les triggers de clé primaire, table meteo non partitionnée)
+   vers le schéma actuel de database/schema.sql. Oracle 12.2 ou plus récent.
+   À exécuter une fois, application arrêtée, après database/migration-unicite-releves.sql
+   (l'index uq_meteo_station_date doit exister).
+ */
+
+/* 1. Clés primaires : séquence en valeur par défaut au lieu d'un trigger par ligne,
+      numéros réservés par blocs (CACHE). */
+ALTER SEQUENCE seq_pays CACHE 20 ;
+ALTER SEQUENCE seq_stations_meteo CACHE 100 ;
+ALTER SEQUENCE seq_meteo CACHE 1000 ;
+ALTER SEQUENCE seq_prevision CACHE 1000 ;
+
+ALTER TABLE pays MODIFY (pays_id DEFAULT ON NULL seq_pays.NEXTVAL) ;
+ALTER TABLE stations_meteo MODIFY (station_id DEFAULT ON NULL seq_stations_meteo.NEXTVAL) ;
+ALTER TABLE meteo MODIFY (meteo_id DEFAULT ON NULL seq_meteo.NEXTVAL) ;
+ALTER TABLE prevision MODIFY (prevision_id DEFAULT ON NULL seq_prevision.NEXTVAL) ;
+
+DROP TRIGGER trg_pays_pk ;
+DROP TRIGGER trg_stations_meteo_pk ;
+DROP TRIGGER trg_meteo_pk ;
+DROP TRIGGER trg_prevision_pk ;
+
+/* 2. Table meteo partitionnée par mois de date_releve, sans recopie manuelle ni arrêt des lectures
+      (ONLINE). date_releve est toujours renseignée par l'application : vérifier avant
+      qu'aucune ligne n'a de date nulle (SELECT COUNT(*) FROM meteo WHERE date_releve IS NULL). */
+ALTER TABLE meteo MODIFY (date_releve NOT NULL) ;
+
+ALTER TABLE meteo MODIFY
+    PARTITION BY RANGE (date_releve) INTERVAL (NUMTOYMINTERVAL(1, 'MONTH'))
+    (
+        PARTITION p_meteo_initial VALUES LESS THAN (TIMESTAMP '2020-01-01 00:00:00')
+    )
+    ONLINE
+    UPDATE INDEXES (uq_meteo_station_date LOCAL) ;
+
+-- Ne pas oublier de commit.
+commit ;
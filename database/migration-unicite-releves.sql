@@ -0,0 +1,27 @@
+/* MIGRATION D'UNE BASE EXISTANTE : un relevé par station et par instant (uq_meteo_station_date).
+   Bases créées avant cette contrainte (index non unique idx_meteo_station_date), où une même
+   observation a pu être enregistrée plusieurs fois. L'enregistrement (MERGE) et sa reprise après
+   une écriture concurrente reposent sur cette contrainte.
+   À exécuter une fois, application arrêtée, avant database/migration-partitionnement.sql.
+   Base H2 : les mêmes instructions s'exécutent dans la console H2 (sauf DROP INDEX si l'index
+   n'existe pas) ; l'index unique est ensuite créé au démarrage.
+ */
+
+/* 1. Doublons : le premier relevé enregistré (plus petit meteo_id) est gardé.
+      DECODE compare aussi les station_id nuls (interdits en double par la contrainte). */
+DELETE FROM meteo m
+WHERE EXISTS (
+    SELECT 1
+    FROM meteo d
+    WHERE DECODE(d.station_id, m.station_id, 1, 0) = 1
+      AND d.date_releve = m.date_releve
+      AND d.meteo_id < m.meteo_id
+) ;
+
+/* 2. L'index non unique est remplacé par celui de la contrainte (mêmes colonnes). */
+DROP INDEX idx_meteo_station_date ;
+
+ALTER TABLE meteo ADD CONSTRAINT uq_meteo_station_date UNIQUE (station_id, date_releve) ;
+
+-- Ne pas oublier de commit.
+commit ;
@@ -0,0 +1,63 @@
+/* MIGRATION D'UNE BASE EXISTANTE : une station par nom et position (uq_stations_meteo).
+   Bases créées avant cette contrainte, où deux captures simultanées ont pu créer la même station
+   plusieurs fois. La création idempotente des stations (relecture après une violation d'unicité)
+   repose sur cette contrainte.
+   À exécuter une fois, application arrêtée, après database/migration-unicite-releves.sql.
+   Les stations en double sont fusionnées dans la première créée (plus petit station_id) : leurs
+   relevés et prévisions lui sont rattachés, sauf ceux qu'elle a déjà au même instant.
+   Tables baux_stations et resume_jour (si déjà créées) : les lignes des doublons sont supprimées
+   avec eux (ON DELETE CASCADE) ; les résumés de la station gardée ne sont pas recalculés.
+   Base H2 : mêmes instructions dans la console H2 ; l'index unique est ensuite créé au démarrage.
+ */
+
+/* 1. Station gardée pour chaque doublon (mêmes nom, latitude et longitude). */
+CREATE TABLE fusion_stations AS
+SELECT s.station_id AS doublon,
+       (SELECT MIN(k.station_id)
+        FROM stations_meteo k
+        WHERE k.nom = s.nom AND k.latitude = s.latitude AND k.longitude = s.longitude) AS garder
+FROM stations_meteo s ;
+
+DELETE FROM fusion_stations WHERE doublon = garder ;
+
+/* 2. Relevés et prévisions déjà présents au même instant pour la station gardée (ou pour un
+      doublon enregistré avant) : supprimés, puis les autres sont rattachés à la station gardée. */
+DELETE FROM meteo m
+WHERE EXISTS (
+    SELECT 1
+    FROM fusion_stations fm
+    JOIN meteo d ON d.date_releve = m.date_releve
+    LEFT JOIN fusion_stations fd ON fd.doublon = d.station_id
+    WHERE fm.doublon = m.station_id
+      AND NVL(fd.garder, d.station_id) = fm.garder
+      AND (fd.doublon IS NULL OR d.meteo_id < m.meteo_id)
+) ;
+
+UPDATE meteo m
+SET station_id = (SELECT f.garder FROM fusion_stations f WHERE f.doublon = m.station_id)
+WHERE m.station_id IN (SELECT doublon FROM fusion_stations) ;
+
+DELETE FROM prevision p
+WHERE EXISTS (
+    SELECT 1
+    FROM fusion_stations fp
+    JOIN prevision d ON d.date_prevue = p.date_prevue
+    LEFT JOIN fusion_stations fd ON fd.doublon = d.station_id
+    WHERE fp.doublon = p.station_id
+      AND NVL(fd.garder, d.station_id) = fp.garder
+      AND (fd.doublon IS NULL OR d.prevision_id < p.prevision_id)
+) ;
+
+UPDATE prevision p
+SET station_id = (SELECT f.garder FROM fusion_stations f WHERE f.doublon = p.station_id)
+WHERE p.station_id IN (SELECT doublon FROM fusion_stations) ;
+
+/* 3. Doublons supprimés, contrainte ajoutée. */
+DELETE FROM stations_meteo WHERE station_id IN (SELECT doublon FROM fusion_stations) ;
+
+DROP TABLE fusion_stations ;
+
+ALTER TABLE stations_meteo ADD CONSTRAINT uq_stations_meteo UNIQUE (nom, latitude, longitude) ;
+
+-- Ne pas oublier de commit.
+commit ;
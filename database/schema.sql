@@ -1,16 +1,19 @@
 /* CRÉATION DES SÉQUENCES
-  Une séquence par table pour générer les clés primaires.
+  Une séquence par table pour générer les clés primaires, utilisée comme valeur par défaut
+  de la colonne (DEFAULT ON NULL, Oracle 12c+) : pas de trigger exécuté à chaque insertion.
+  CACHE : numéros réservés par blocs en mémoire (des trous sont possibles après un redémarrage).
  */
-CREATE SEQUENCE seq_pays START WITH 1 INCREMENT BY 1 ;
-CREATE SEQUENCE seq_stations_meteo START WITH 1 INCREMENT BY 1 ;
-CREATE SEQUENCE seq_meteo START WITH 1 INCREMENT BY 1 ;
+CREATE SEQUENCE seq_pays START WITH 1 INCREMENT BY 1 CACHE 20 ;
+CREATE SEQUENCE seq_stations_meteo START WITH 1 INCREMENT BY 1 CACHE 100 ;
+CREATE SEQUENCE seq_meteo START WITH 1 INCREMENT BY 1 CACHE 1000 ;
+CREATE SEQUENCE seq_prevision START WITH 1 INCREMENT BY 1 CACHE 1000 ;
 
 /* CRÉATION DES TABLES
    Table pays
    Stocke les informations de base sur les pays.
    */
 CREATE TABLE pays (
-                      pays_id NUMBER NOT NULL,
+                      pays_id NUMBER DEFAULT ON NULL seq_pays.NEXTVAL,
                       nom VARCHAR2(255) NOT NULL,
                       code_pays VARCHAR2(10) UNIQUE,
                       CONSTRAINT pk_pays PRIMARY KEY(pays_id)
@@ -18,24 +21,34 @@ CREATE TABLE pays (
 
 /* Table stations_meteo
    Stocke les informations sur les stations météo, liées à un pays.
+   uq_stations_meteo : deux captures simultanées d'une même station ne la créent qu'une fois.
+   Bases créées avant cette contrainte : voir database/migration-unicite-stations.sql.
  */
 CREATE TABLE stations_meteo (
-                                station_id NUMBER NOT NULL,
+                                station_id NUMBER DEFAULT ON NULL seq_stations_meteo.NEXTVAL,
                                 pays_id NUMBER,
                                 nom VARCHAR2(255) NOT NULL,
                                 latitude NUMBER NOT NULL,
                                 longitude NUMBER NOT NULL,
                                 openweather_id NUMBER,
                                 CONSTRAINT pk_stations_meteo PRIMARY KEY(station_id),
+                                CONSTRAINT uq_stations_meteo UNIQUE (nom, latitude, longitude), -- une station par nom et position
                                 CONSTRAINT fk_stations_meteo_pays FOREIGN KEY(pays_id) REFERENCES pays(pays_id)
 );
 /* Table meteo
    Contient les relevés météorologiques pour une station donnée à un moment T.
+   Les colonnes TIMESTAMP (meteo, prevision) contiennent l'heure UTC, toujours fournie par l'application.
+   Bases remplies avant ce choix (heure locale de la JVM), par exemple pour Europe/Zurich :
+     UPDATE meteo SET date_releve = SYS_EXTRACT_UTC(FROM_TZ(date_releve, 'Europe/Zurich'));
+   Partitionnée par mois de date_releve (partitions créées automatiquement à la première insertion) :
+   la rétention supprime des partitions entières (DROP PARTITION) au lieu de DELETE massifs.
+   uq_meteo_station_date contient la clé de partitionnement : index local, découpé avec la table.
+   Bases existantes : voir database/migration-unicite-releves.sql, puis database/migration-partitionnement.sql.
  */
 CREATE TABLE meteo (
-                       meteo_id NUMBER NOT NULL,
+                       meteo_id NUMBER DEFAULT ON NULL seq_meteo.NEXTVAL,
                        station_id NUMBER,
-                       date_releve TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                       date_releve TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
                        temperature NUMBER,
                        humidite NUMBER,
                        pression NUMBER,
@@ -43,39 +56,74 @@ CREATE TABLE meteo (
                        precipitation NUMBER,     -- <- ajouté (mm pluie 1h)
                        description VARCHAR2(255),
                        CONSTRAINT pk_meteo PRIMARY KEY(meteo_id),
+                       CONSTRAINT uq_meteo_station_date UNIQUE (station_id, date_releve) USING INDEX LOCAL, -- un relevé par station et par instant
                        CONSTRAINT fk_meteo_station FOREIGN KEY(station_id) REFERENCES stations_meteo(station_id)
+)
+PARTITION BY RANGE (date_releve) INTERVAL (NUMTOYMINTERVAL(1, 'MONTH'))
+(
+    PARTITION p_meteo_initial VALUES LESS THAN (TIMESTAMP '2020-01-01 00:00:00') -- relevés antérieurs à 2020
 );
-/* CRÉATION DES TRIGGERS
-   Un trigger par table pour remplir automatiquement la clé primaire avant l'insertion.
+/* Table prevision
+   Prévisions 5 jours / 3 heures : une ligne par station et par instant prévu.
+   Une nouvelle récupération écrase la prévision existante (MERGE sur la clé unique).
  */
-CREATE OR REPLACE TRIGGER trg_pays_pk
-BEFORE INSERT ON pays
-FOR EACH ROW
-BEGIN
-    IF :NEW.pays_id IS NULL THEN
-        :NEW.pays_id := seq_pays.NEXTVAL;
-END IF;
-END;
-/
-
-CREATE OR REPLACE TRIGGER trg_stations_meteo_pk
-BEFORE INSERT ON stations_meteo
-FOR EACH ROW
-BEGIN
-    IF :NEW.station_id IS NULL THEN
-        :NEW.station_id := seq_stations_meteo.NEXTVAL;
-END IF;
-END;
-/
+CREATE TABLE prevision (
+                       prevision_id NUMBER DEFAULT ON NULL seq_prevision.NEXTVAL,
+                       station_id NUMBER NOT NULL,
+                       date_prevue TIMESTAMP NOT NULL,
+                       date_emission TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                       temperature NUMBER,
+                       humidite NUMBER,
+                       pression NUMBER,
+                       visibilite NUMBER,
+                       precipitation NUMBER,     -- mm pluie 3h
+                       description VARCHAR2(255),
+                       CONSTRAINT pk_prevision PRIMARY KEY(prevision_id),
+                       CONSTRAINT uq_prevision_station_date UNIQUE (station_id, date_prevue),
+                       CONSTRAINT fk_prevision_station FOREIGN KEY(station_id) REFERENCES stations_meteo(station_id)
+);
+/* Tables de coordination du mode cluster (NoeudCluster)
+   noeuds_capture : un bail par nœud de capture actif, renouvelé régulièrement (un nœud dont le bail
+   a expiré est considéré comme arrêté).
+   baux_stations : nœud qui capture actuellement chaque station ; un bail ne peut être repris par
+   un autre nœud qu'une fois libéré ou expiré. Bases existantes : exécuter ces deux CREATE TABLE.
+ */
+CREATE TABLE noeuds_capture (
+                       noeud VARCHAR2(100) NOT NULL,
+                       expire_le TIMESTAMP NOT NULL,
+                       CONSTRAINT pk_noeuds_capture PRIMARY KEY(noeud)
+);
+CREATE TABLE baux_stations (
+                       station_id NUMBER NOT NULL,
+                       noeud VARCHAR2(100) NOT NULL,
+                       expire_le TIMESTAMP NOT NULL,
+                       CONSTRAINT pk_baux_stations PRIMARY KEY(station_id),
+                       CONSTRAINT fk_baux_stations_station FOREIGN KEY(station_id) REFERENCES stations_meteo(station_id) ON DELETE CASCADE
+);
+/* Résumés journaliers (une ligne par station et par journée) : compteurs et esquisses sérialisées
+   (t-digest des températures, HyperLogLog des conditions), fusionnables pour répondre sur une
+   période sans relire les relevés ; conservés après la purge des relevés.
+   Bases existantes : exécuter ce CREATE TABLE.
+ */
+CREATE TABLE resume_jour (
+                       station_id NUMBER NOT NULL,
+                       jour DATE NOT NULL,
+                       nb_releves NUMBER NOT NULL,
+                       temperature_min NUMBER,
+                       temperature_max NUMBER,
+                       temperature_somme NUMBER,
+                       precipitation NUMBER,
+                       esquisse_temperature BLOB,
+                       esquisse_conditions BLOB,
+                       CONSTRAINT pk_resume_jour PRIMARY KEY(station_id, jour),
+                       CONSTRAINT fk_resume_jour_station FOREIGN KEY(station_id) REFERENCES stations_meteo(station_id) ON DELETE CASCADE
+);
+/* CRÉATION DES INDEX
+   Utilisés par les lectures historiques (recherche par nom, puis par date).
+   La recherche par station + date utilise l'index de la contrainte uq_meteo_station_date.
+ */
+CREATE INDEX idx_stations_meteo_nom ON stations_meteo(nom);
+CREATE INDEX idx_baux_stations_noeud ON baux_stations(noeud);
 
-CREATE OR REPLACE TRIGGER trg_meteo_pk
-BEFORE INSERT ON meteo
-FOR EACH ROW
-BEGIN
-    IF :NEW.meteo_id IS NULL THEN
-        :NEW.meteo_id := seq_meteo.NEXTVAL;
-END IF;
-END;
-/
 -- Ne pas oublier de commit.
 commit ;
\ No newline at end of file
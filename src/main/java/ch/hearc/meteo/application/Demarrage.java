@@ -0,0 +1,99 @@
+package ch.hearc.meteo.application;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Pipeline de démarrage : les étapes indépendantes (sonde base, chargement des caches,
+ * préchauffage JSON...) tournent en parallèle, chacune est chronométrée,
+ * et {@link #attendrePret()} sert de signal "application prête".
+ */
+class Demarrage {
+
+    private final long debut = System.nanoTime();
+    private final ExecutorService executor;
+    private final List<CompletableFuture<?>> etapes = new ArrayList<>();
+    private final Map<String, Long> durees = new LinkedHashMap<>(); // ms par étape, ordre de fin
+
+    Demarrage() {
+        AtomicInteger compteur = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(
+                Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())),
+                r -> {
+                    Thread t = new Thread(r, "demarrage-" + compteur.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /** Exécute une étape dans le thread courant, en la chronométrant. */
+    <T> T mesurer(String nom, Supplier<T> action) {
+        long t0 = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            noter(nom, t0);
+        }
+    }
+
+    /** Lance une étape en parallèle. */
+    <T> CompletableFuture<T> lancer(String nom, Supplier<T> action) {
+        CompletableFuture<T> f = CompletableFuture.supplyAsync(() -> mesurer(nom, action), executor);
+        synchronized (etapes) {
+            etapes.add(f);
+        }
+        return f;
+    }
+
+    /** Lance une étape dès que l'étape dont elle dépend est terminée. */
+    <T, R> CompletableFuture<R> lancerApres(String nom, CompletableFuture<T> prerequis, Function<T, R> action) {
+        CompletableFuture<R> f = prerequis.thenApplyAsync(v -> mesurer(nom, () -> action.apply(v)), executor);
+        synchronized (etapes) {
+            etapes.add(f);
+        }
+        return f;
+    }
+
+    /**
+     * Attend la fin de toutes les étapes lancées, puis affiche le détail des durées.
+     * Une étape en échec n'empêche pas le démarrage (les étapes gèrent leurs propres erreurs).
+     */
+    void attendrePret() {
+        CompletableFuture<?>[] toutes;
+        synchronized (etapes) {
+            toutes = etapes.toArray(new CompletableFuture<?>[0]);
+        }
+        try {
+            CompletableFuture.allOf(toutes).join();
+        } catch (Exception e) {
+            System.err.println("[WARN] Étape de démarrage en échec : " + e.getMessage());
+        } finally {
+            executor.shutdown();
+        }
+
+        StringBuilder detail = new StringBuilder();
+        synchronized (durees) {
+            for (Map.Entry<String, Long> e : durees.entrySet()) {
+                detail.append(e.getKey()).append(' ').append(e.getValue()).append(" ms | ");
+            }
+        }
+        long total = (System.nanoTime() - debut) / 1_000_000L;
+        System.out.println("(Info) Démarrage : " + detail + "total " + total + " ms");
+        System.out.println("(Info) Application prête.");
+    }
+
+    private void noter(String nom, long t0) {
+        long ms = (System.nanoTime() - t0) / 1_000_000L;
+        synchronized (durees) {
+            durees.put(nom, ms);
+        }
+    }
+}
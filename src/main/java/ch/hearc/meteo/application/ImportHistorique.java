@@ -0,0 +1,90 @@
+package ch.hearc.meteo.application;
+
+import ch.hearc.meteo.infrastructure.persistence.MeteoRepository;
+import ch.hearc.meteo.service.importation.ImportateurHistorique;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Import en masse d'un historique de relevés dans la base configurée (application.properties).
+ *
+ * Usage : ImportHistorique fichier [--threads N] [--ecritures N] [--lot N] [--depuis-debut]
+ * - fichier : .csv, .json ou .jsonl, éventuellement compressé (.gz) ;
+ * - --threads : threads de traitement (défaut import.threads, sinon nombre de cœurs, max 8) ;
+ * - --ecritures : insertions simultanées en base (défaut import.ecritures, sinon 1 en H2
+ *   et autant que de threads en Oracle) ;
+ * - --lot : lignes par lot / transaction (défaut import.lot, sinon 5000) ;
+ * - --depuis-debut : ignorer le point de reprise d'un import interrompu.
+ */
+public class ImportHistorique {
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage : ImportHistorique fichier [--threads N] [--ecritures N] [--lot N] [--depuis-debut]");
+            System.exit(2);
+            return;
+        }
+
+        Properties props = Main.chargerConfiguration();
+        int threads = entier(props.getProperty("import.threads"),
+                Math.min(8, Runtime.getRuntime().availableProcessors()));
+        boolean h2 = "h2".equalsIgnoreCase(props.getProperty("persistence.mode", "").trim());
+        int ecritures = entier(props.getProperty("import.ecritures"), h2 ? 1 : threads);
+        int lot = entier(props.getProperty("import.lot"), 5000);
+        boolean depuisDebut = false;
+        Path fichier = null;
+
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            if ("--threads".equals(a) && i + 1 < args.length) {
+                threads = entier(args[++i], threads);
+            } else if ("--ecritures".equals(a) && i + 1 < args.length) {
+                ecritures = entier(args[++i], ecritures);
+            } else if ("--lot".equals(a) && i + 1 < args.length) {
+                lot = entier(args[++i], lot);
+            } else if ("--depuis-debut".equals(a)) {
+                depuisDebut = true;
+            } else {
+                fichier = Paths.get(a);
+            }
+        }
+
+        if (fichier == null || !Files.isRegularFile(fichier)) {
+            System.err.println("Fichier à importer introuvable : " + fichier);
+            System.exit(2);
+            return;
+        }
+
+        MeteoRepository repo = Main.creerRepository(props);
+        if (repo == null) {
+            System.err.println("Aucune base disponible : import impossible (voir persistence.mode).");
+            System.exit(1);
+            return;
+        }
+
+        System.out.println("(Info) Import de " + fichier + " (" + threads + " threads, " + ecritures
+                + " écritures simultanées, lots de " + lot + ")");
+        try {
+            ImportateurHistorique.Bilan bilan =
+                    new ImportateurHistorique(repo, threads, ecritures, lot).importer(fichier, depuisDebut);
+            System.out.println("(Info) Import terminé : " + bilan);
+        } catch (Exception e) {
+            System.err.println("Échec de l'import : " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static int entier(String valeur, int defaut) {
+        if (valeur == null || valeur.isBlank()) return defaut;
+        try {
+            int v = Integer.parseInt(valeur.trim());
+            return v > 0 ? v : defaut;
+        } catch (NumberFormatException e) {
+            System.err.println("[WARN] Nombre invalide : " + valeur + " (" + defaut + " utilisé)");
+            return defaut;
+        }
+    }
+}
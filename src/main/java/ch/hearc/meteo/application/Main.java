@@ -1,78 +1,224 @@
 package ch.hearc.meteo.application;
 
 import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.Pays;
 import ch.hearc.meteo.business.StationMeteo;
 import ch.hearc.meteo.infrastructure.http.CountryClient;
+import ch.hearc.meteo.infrastructure.archive.ArchiveMeteo;
+import ch.hearc.meteo.infrastructure.flux.FluxReleves;
 import ch.hearc.meteo.infrastructure.http.OpenWeatherMapClient;
+import ch.hearc.meteo.infrastructure.http.PoolClesApi;
+import ch.hearc.meteo.infrastructure.http.TransportEnregistreur;
+import ch.hearc.meteo.infrastructure.http.TransportHttp;
+import ch.hearc.meteo.infrastructure.http.TransportRejeu;
+import ch.hearc.meteo.infrastructure.persistence.ArchiveMeteoRepository;
+import ch.hearc.meteo.infrastructure.persistence.H2MeteoRepository;
 import ch.hearc.meteo.infrastructure.persistence.MeteoRepository;
 import ch.hearc.meteo.infrastructure.persistence.OracleMeteoRepository;
 import ch.hearc.meteo.service.MeteoService;
 import ch.hearc.meteo.service.MeteoServiceImpl;
+import ch.hearc.meteo.service.PipelineCapture;
+import ch.hearc.meteo.service.RetentionReleves;
+import ch.hearc.meteo.service.alerte.DestinationAlertes;
+import ch.hearc.meteo.service.alerte.FichierAlertes;
+import ch.hearc.meteo.service.alerte.JournalAlertes;
+import ch.hearc.meteo.service.alerte.MoteurAlertes;
+import ch.hearc.meteo.service.alerte.Regle;
+import ch.hearc.meteo.service.alerte.WebhookAlertes;
+import ch.hearc.meteo.service.esquisse.EsquissesJournalieres;
+import ch.hearc.meteo.service.esquisse.ResumePeriode;
+import ch.hearc.meteo.service.geo.IndexSpatialStations;
+import ch.hearc.meteo.service.geo.InterpolateurMeteo;
+import ch.hearc.meteo.service.geo.MeteoInterpolee;
+import ch.hearc.meteo.service.geo.StationProche;
+import ch.hearc.meteo.service.pipeline.ReglagePipeline;
+import ch.hearc.meteo.service.rapport.RapportMeteo;
+import ch.hearc.meteo.service.rapport.ReglageRapports;
+import ch.hearc.meteo.service.rapport.StatistiquesMeteo;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.SQLException;
 import java.text.DecimalFormat;
-import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class Main {
 
     private static final Scanner SCANNER = new Scanner(System.in);
 
+    // Formats de date partagés (DateTimeFormatter est immuable et sûr entre threads), heure locale
+    private static final DateTimeFormatter FORMAT_DATE =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final DateTimeFormatter FORMAT_PREVISION =
+            DateTimeFormatter.ofPattern("EEE dd.MM HH:mm", Locale.FRENCH).withZone(ZoneId.systemDefault());
+
     public static void main(String[] args) {
 
+        Demarrage demarrage = new Demarrage();
+
         // 1. Charger la config
-        Properties props = new Properties();
-        try (InputStream in = Main.class.getClassLoader().getResourceAsStream("application.properties")) {
-            if (in != null) props.load(in);
-            else System.err.println("Fichier application.properties introuvable.");
-        } catch (Exception e) {
-            System.err.println("Erreur chargement configuration : " + e.getMessage());
-        }
+        Properties props = demarrage.mesurer("configuration", Main::chargerConfiguration);
 
         String owmUrl     = props.getProperty("openweathermap.url", "https://api.openweathermap.org/data/2.5/weather");
         String owmKey     = props.getProperty("openweathermap.key", "");
+        String owmForecastUrl = props.getProperty("openweathermap.forecast.url", "");
         String countryUrl = props.getProperty("country.url", "https://db.ig.he-arc.ch/ens/scl/ws/country");
 
-        String jdbcUrl    = props.getProperty("oracle.jdbc.url");
-        String jdbcUser   = props.getProperty("oracle.jdbc.user");
-        String jdbcPwd    = props.getProperty("oracle.jdbc.password");
-
+        // rejeu hors ligne : pas d'appel réel, la clé n'est pas utilisée (ni enregistrée)
+        boolean rejeu = "rejouer".equals(modeEnregistrement(props));
+        if (owmKey.isBlank() && rejeu) owmKey = "rejeu";
         if (owmKey.isBlank()) {
             System.err.println("Clé API OpenWeatherMap manquante. Vérifie application.properties");
             return;
         }
 
-        // 2. Clients API
-        OpenWeatherMapClient owmClient = new OpenWeatherMapClient(owmUrl, owmKey);
-        CountryClient countryClient    = new CountryClient(countryUrl);
+        // 2. Clients API : un seul transport HTTP partagé (connexions créées au premier appel),
+        //    ou enregistreur / rejeu selon http.enregistrement.mode
+        //    openweathermap.key peut contenir plusieurs clés séparées par des virgules
+        TransportHttp transport = creerTransport(props);
+        if (transport == null) return;
+        PoolClesApi clesOwm = PoolClesApi.depuisListe(owmKey,
+                (int) proprieteDouble(props, "openweathermap.quota.minute", 60));
+        OpenWeatherMapClient owmClient;
+        try {
+            owmClient = new OpenWeatherMapClient(owmUrl, owmForecastUrl, clesOwm, transport);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+        CountryClient countryClient    = new CountryClient(countryUrl, transport,
+                (long) (proprieteDouble(props, "country.cache.heures", 24) * 3_600_000L));
 
-        // 3. Repo Oracle si dispo et connexion OK
-        MeteoRepository repo = null;
-        if (isNotBlank(jdbcUrl) && isNotBlank(jdbcUser)) {
-            if (testConnexionOracle(jdbcUrl, jdbcUser, jdbcPwd)) {
-                repo = new OracleMeteoRepository(jdbcUrl, jdbcUser, jdbcPwd);
-                System.out.println("(Info) Connexion Oracle OK, la sauvegarde est activée.");
-            } else {
-                System.out.println("(Info) Connexion Oracle impossible. Mode sans sauvegarde.");
+        // 3. Étapes indépendantes en parallèle :
+        //    - repository selon persistence.mode (sonde Oracle / init H2) + archive optionnelle
+        //    - puis, dès que la base est prête : index des stations et cache des pays
+        //    - préchauffage du mapping JSON
+        CompletableFuture<MeteoRepository> repoPret = demarrage.lancer("base", () -> {
+            MeteoRepository repo = creerRepository(props);
+            String archiveDir = props.getProperty("archive.repertoire");
+            if (repo != null && isNotBlank(archiveDir)) {
+                repo = creerArchive(repo, archiveDir.trim(), props.getProperty("archive.age.jours", "0"),
+                        (int) proprieteDouble(props, "archive.segments.ouverts", ArchiveMeteo.SEGMENTS_OUVERTS_DEFAUT));
             }
-        } else {
-            System.out.println("(Info) Paramètres Oracle absents. Mode sans sauvegarde.");
+            return repo;
+        });
+        CompletableFuture<IndexSpatialStations> indexPret =
+                demarrage.lancerApres("index stations", repoPret, Main::chargerIndexStations);
+        demarrage.lancerApres("cache pays", repoPret, repo -> prechargerPays(countryClient, repo));
+        CompletableFuture<InterpolateurMeteo> interpolationPret =
+                Boolean.parseBoolean(props.getProperty("interpolation.active", "true"))
+                        ? demarrage.lancerApres("interpolation", repoPret, repo -> chargerInterpolation(repo, props))
+                        : CompletableFuture.completedFuture(null);
+        if (Boolean.parseBoolean(props.getProperty("country.prechargement", "false"))) {
+            demarrage.lancer("liste des pays", () -> prechargerTousLesPays(countryClient));
+        }
+        demarrage.lancer("préchauffage JSON", () -> {
+            owmClient.prechauffer();
+            return null;
+        });
+
+        demarrage.attendrePret();
+        MeteoRepository repo = repoPret.join();
+        // Flux des relevés enregistrés (flux.repertoire) : suivi par SuiviFlux ou d'autres processus
+        FluxReleves flux = creerFlux(repo, props);
+
+        // 4. Service (+ accrochage aux stations connues si l'index est chargé)
+        MeteoServiceImpl service = new MeteoServiceImpl(owmClient, countryClient, repo);
+        service.configurerCacheHistorique(
+                (long) (proprieteDouble(props, "historique.cache.stations.secondes", 30) * 1_000L),
+                (long) (proprieteDouble(props, "historique.cache.dates.minutes", 10) * 60_000L),
+                (int) proprieteDouble(props, "historique.cache.releves", 2_000));
+        IndexSpatialStations index = indexPret.join();
+        if (index != null) {
+            service.activerIndexStations(index,
+                    proprieteDouble(props, "stations.accrochage.km", 2.0),
+                    (long) (proprieteDouble(props, "stations.cache.minutes", 10.0) * 60_000L));
+        }
+        MoteurAlertes alertes = creerMoteurAlertes(props, transport);
+        service.activerAlertes(alertes);
+        InterpolateurMeteo interpolateur = interpolationPret.join();
+        service.activerInterpolation(interpolateur);
+        service.configurerRapports(reglageRapports(props));
+        // Résumés journaliers (esquisses.active) : écrits en base par lots, en arrière-plan
+        EsquissesJournalieres esquisses = creerEsquisses(repo, props);
+        service.activerEsquisses(esquisses);
+
+        // Rétention (retention.mois) : purge en arrière-plan, au démarrage puis périodiquement
+        RetentionReleves retention = null;
+        int moisConserves = (int) proprieteDouble(props, "retention.mois", 0);
+        if (repo != null && moisConserves > 0) {
+            retention = new RetentionReleves(repo, moisConserves);
+            retention.planifier((long) proprieteDouble(props, "retention.intervalle.heures", 24));
         }
 
-        // 4. Service
-        MeteoService service = new MeteoServiceImpl(owmClient, countryClient, repo);
+        // Capture de toutes les stations enregistrées (option 5) : pipeline pipeline.*
+        PipelineCapture pipeline = repo != null ? service.creerPipelineCapture(reglagePipeline(props)) : null;
 
         // 5. Boucle menu principal
-        boucleMenuPrincipal(service);
+        boucleMenuPrincipal(service, pipeline, repo, interpolateur != null, esquisses != null);
+
+        if (retention != null) retention.close();
+        if (esquisses != null) esquisses.close();
+
+        // 6. Bilan d'utilisation du réseau et des clés API
+        System.out.println("(Info) HTTP : " + transport.metriques());
+        if (transport instanceof TransportRejeu) {
+            System.out.println("(Info) Rejeu : " + ((TransportRejeu) transport).statistiques());
+        }
+        if (transport instanceof TransportEnregistreur) {
+            TransportEnregistreur enregistreur = (TransportEnregistreur) transport;
+            try {
+                enregistreur.close();
+                System.out.println("(Info) Enregistrement : " + enregistreur.enregistrements()
+                        + " réponse(s) dans " + enregistreur.getFichier());
+            } catch (IOException e) {
+                System.err.println("[WARN] Fermeture de l'enregistrement HTTP : " + e.getMessage());
+            }
+        }
+        System.out.println("(Info) Pays : " + countryClient.statistiques());
+        System.out.println("(Info) Historique : " + service.statistiquesCacheHistorique());
+        OracleMeteoRepository base = base(repo);
+        if (base != null && base.statistiquesConnexions() != null) {
+            System.out.println("(Info) Connexions : " + base.statistiquesConnexions());
+        }
+        if (esquisses != null) {
+            System.out.println("(Info) Résumés journaliers : " + esquisses.statistiques());
+        }
+        fermerFlux(repo, flux);
+        if (alertes != null) {
+            System.out.println("(Info) Alertes : " + alertes.statistiques());
+            try {
+                alertes.close();
+            } catch (IOException e) {
+                System.err.println("[WARN] Fermeture des destinations d'alertes : " + e.getMessage());
+            }
+        }
+        if (clesOwm.taille() > 1) {
+            for (PoolClesApi.UsageCle u : clesOwm.usage()) {
+                System.out.println("(Info) Clé API " + u);
+            }
+        }
+        if (base != null) base.fermerConnexions();
     }
 
     // ---------------------------------------------------------
     // MENU PRINCIPAL
     // ---------------------------------------------------------
 
-    private static void boucleMenuPrincipal(MeteoService service) {
+    private static void boucleMenuPrincipal(MeteoService service, PipelineCapture pipeline, MeteoRepository repo,
+                                            boolean interpolation, boolean esquisses) {
         boolean quitter = false;
         while (!quitter) {
             System.out.println();
@@ -80,6 +226,19 @@ public class Main {
             System.out.println("1. Météo HE-Arc Neuchâtel (afficher seulement)");
             System.out.println("2. Météo actuelle (saisie du lieu puis enregistrement)");
             System.out.println("3. Consulter historique enregistré");
+            System.out.println("4. Prévisions 5 jours (saisie du lieu puis enregistrement)");
+            if (pipeline != null) {
+                System.out.println("5. Capturer toutes les stations enregistrées");
+            }
+            if (interpolation) {
+                System.out.println("6. Météo estimée (stations voisines, sans appel API)");
+            }
+            if (repo != null) {
+                System.out.println("7. Rapport statistique (stations et pays, CSV / JSON)");
+            }
+            if (esquisses) {
+                System.out.println("8. Percentiles d'une station (résumés journaliers)");
+            }
             System.out.println("9. Quitter");
             System.out.print("Votre choix : ");
 
@@ -96,6 +255,37 @@ public class Main {
                 case "3":
                     sousMenuHistorique(service);
                     break;
+                case "4":
+                    actionPrevisions(service);
+                    break;
+                case "5":
+                    if (pipeline == null) {
+                        System.out.println("Choix invalide.");
+                        break;
+                    }
+                    actionCapturerToutes(pipeline, repo);
+                    break;
+                case "6":
+                    if (!interpolation) {
+                        System.out.println("Choix invalide.");
+                        break;
+                    }
+                    actionMeteoEstimee(service);
+                    break;
+                case "7":
+                    if (repo == null) {
+                        System.out.println("Choix invalide.");
+                        break;
+                    }
+                    actionRapport(service);
+                    break;
+                case "8":
+                    if (!esquisses) {
+                        System.out.println("Choix invalide.");
+                        break;
+                    }
+                    actionResumeStation(service);
+                    break;
                 case "9":
                     quitter = true;
                     System.out.println("Fin du programme.");
@@ -207,6 +397,12 @@ public class Main {
         String lang = SCANNER.nextLine().trim();
         if (lang.isBlank()) lang = "fr";
 
+        List<StationProche> proches = service.trouverStationsProches(lat, lon, 1);
+        if (!proches.isEmpty()) {
+            System.out.printf("(Station connue la plus proche : %s, à %.1f km)%n",
+                    proches.get(0).getStation().getNom(), proches.get(0).getDistanceKm());
+        }
+
         StationMeteo station = service.obtenirMeteoEtTraiter(lat, lon, lang);
 
         if (station == null || station.getDonneesMeteo().isEmpty()) {
@@ -218,6 +414,242 @@ public class Main {
         System.out.println("(Les données ont été sauvegardées si la base est configurée)");
     }
 
+    /**
+     * Prévisions 5 jours :
+     * - l'utilisateur donne lat / lon / langue
+     * - on appelle l'API forecast
+     * - on affiche une ligne par pas de 3 heures
+     * - on sauvegarde (les prévisions déjà connues sont mises à jour)
+     */
+    private static void actionPrevisions(MeteoService service) {
+        System.out.println();
+        System.out.println("=== Prévisions 5 jours ===");
+
+        double lat = lireDouble("Latitude : ");
+        double lon = lireDouble("Longitude : ");
+        System.out.print("Langue (ex: fr) [fr par défaut] : ");
+        String lang = SCANNER.nextLine().trim();
+        if (lang.isBlank()) lang = "fr";
+
+        StationMeteo station;
+        try {
+            station = service.obtenirPrevisionsEtTraiter(lat, lon, lang);
+        } catch (Exception e) {
+            System.out.println("Prévisions indisponibles : " + e.getMessage());
+            return;
+        }
+
+        if (station == null || station.getDonneesMeteo().isEmpty()) {
+            System.out.println("Aucune prévision disponible.");
+            return;
+        }
+
+        DecimalFormat df1 = new DecimalFormat("0.0");
+
+        System.out.println();
+        System.out.printf("Prévisions pour %s%n", station.getNom() != null ? station.getNom() : "Inconnu");
+        System.out.println("------------------------");
+        for (Meteo m : station.getDonneesMeteo()) {
+            System.out.printf("%s  %6s °C  %5s mm  %s%n",
+                    m.hasDateMesure() ? FORMAT_PREVISION.format(m.getInstantMesure()) : "--",
+                    m.getTemperature() != null ? df1.format(m.getTemperature()) : "--",
+                    m.getPrecipitation() != null ? df1.format(m.getPrecipitation()) : "0.0",
+                    m.getDescription() != null ? capitalize(m.getDescription()) : "");
+        }
+        System.out.println("========================");
+        System.out.println("(Les prévisions ont été sauvegardées si la base est configurée)");
+    }
+
+    /**
+     * Capture de la météo actuelle de toutes les stations enregistrées, en pipeline
+     * (récupération, pays, filtre et écriture en parallèle), puis bilan par étape.
+     */
+    private static void actionCapturerToutes(PipelineCapture pipeline, MeteoRepository repo) {
+        System.out.println();
+        System.out.println("=== Capture de toutes les stations ===");
+
+        List<StationMeteo> stations;
+        try {
+            stations = repo.findAllStations();
+        } catch (Exception e) {
+            System.out.println("Stations indisponibles : " + e.getMessage());
+            return;
+        }
+        if (stations.isEmpty()) {
+            System.out.println("Aucune station enregistrée.");
+            return;
+        }
+
+        try {
+            PipelineCapture.BilanCapture bilan = pipeline.executer(stations, "fr");
+            System.out.println(bilan);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Réglage du pipeline invalide : " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Capture interrompue.");
+        }
+    }
+
+    /**
+     * Météo estimée (option 6) :
+     * - l'utilisateur donne lat / lon
+     * - on interpole les derniers relevés des stations voisines (aucun appel API)
+     * - on affiche l'estimation et sa confiance
+     * - si la confiance est insuffisante, on propose l'appel direct (enregistré comme l'option 2)
+     */
+    private static void actionMeteoEstimee(MeteoService service) {
+        System.out.println();
+        System.out.println("=== Météo estimée (stations voisines) ===");
+
+        double lat = lireDouble("Latitude : ");
+        double lon = lireDouble("Longitude : ");
+
+        long debut = System.nanoTime();
+        MeteoInterpolee estimation = service.estimerMeteo(lat, lon);
+        long dureeUs = (System.nanoTime() - debut) / 1_000;
+
+        Meteo m = estimation.getMeteo();
+        if (m != null) {
+            System.out.println();
+            System.out.printf("Estimation à partir de %d station(s), la plus proche : %s à %.1f km (calculée en %d µs)%n",
+                    estimation.getNbStations(), estimation.getStationPlusProche(),
+                    estimation.getDistancePlusProcheKm(), dureeUs);
+            System.out.printf("Relevés vieux de %d min en moyenne%n", Math.round(estimation.getAgeMoyenMs() / 60_000.0));
+            if (m.getTemperature() != null)
+                System.out.printf("Température : %.1f °C (écart entre stations : %.1f °C)%n",
+                        m.getTemperature(), estimation.getEcartTemperature());
+            if (m.getHumidite() != null)
+                System.out.printf("Humidité : %.0f %%%n", m.getHumidite());
+            if (m.getPression() != null)
+                System.out.printf("Pression : %.0f hPa%n", m.getPression());
+            if (m.getPrecipitation() != null)
+                System.out.printf("Précipitations (1h) : %.1f mm%n", m.getPrecipitation());
+            if (m.getDescription() != null)
+                System.out.printf("Conditions (station la plus proche) : %s%n", capitalize(m.getDescription()));
+        }
+        System.out.printf("Confiance : %.2f%s%n", estimation.getConfiance(),
+                estimation.isAppelConseille() ? " -> appel direct conseillé : " + estimation.getRaison() : "");
+
+        if (!estimation.isAppelConseille()) return;
+        System.out.print("Récupérer la météo réelle (appel API, enregistrement) ? (O/n) : ");
+        if (SCANNER.nextLine().trim().toLowerCase(Locale.ROOT).startsWith("n")) return;
+        afficherMeteoCourante(service, lat, lon, "fr");
+    }
+
+    /**
+     * Rapport statistique (option 7) :
+     * - l'utilisateur donne la période (jours locaux, bornes incluses) et le fichier de sortie
+     * - on calcule les statistiques par station et par pays (lecture parallèle de l'historique)
+     * - on affiche le résumé par pays et on écrit le rapport complet (CSV ou JSON selon l'extension)
+     */
+    private static void actionRapport(MeteoService service) {
+        System.out.println();
+        System.out.println("=== Rapport statistique ===");
+
+        Instant debut;
+        Instant fin;
+        try {
+            System.out.print("Premier jour (AAAA-MM-JJ, vide = depuis le premier relevé) : ");
+            String saisie = SCANNER.nextLine().trim();
+            debut = saisie.isEmpty() ? null : LocalDate.parse(saisie).atStartOfDay(ZoneId.systemDefault()).toInstant();
+            System.out.print("Dernier jour (AAAA-MM-JJ, vide = jusqu'au dernier relevé) : ");
+            saisie = SCANNER.nextLine().trim();
+            fin = saisie.isEmpty() ? null
+                    : LocalDate.parse(saisie).plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant();
+        } catch (DateTimeException e) {
+            System.out.println("Date invalide.");
+            return;
+        }
+        System.out.print("Fichier de sortie (.csv ou .json) [rapport.csv] : ");
+        String fichier = SCANNER.nextLine().trim();
+        if (fichier.isEmpty()) fichier = "rapport.csv";
+
+        RapportMeteo rapport = service.genererRapport(debut, fin);
+        if (rapport == null) {
+            System.out.println("Rapport indisponible.");
+            return;
+        }
+        System.out.println("(Info) Rapport : " + rapport);
+        for (StatistiquesMeteo p : rapport.getPays()) {
+            System.out.printf("- %s : %d station(s), %d relevé(s)", p.getNom(), p.getStations(), p.getReleves());
+            if (p.getTemperatureMoyenne() != null) {
+                System.out.printf(", %.1f °C en moyenne (p10 %.1f, p90 %.1f), min %.1f °C (%s), max %.1f °C (%s)",
+                        p.getTemperatureMoyenne(), p.getTemperatureP10(), p.getTemperatureP90(),
+                        p.getTemperatureMin(), p.getTemperatureMinStation(),
+                        p.getTemperatureMax(), p.getTemperatureMaxStation());
+            }
+            System.out.printf(", %.0f jour(s) de pluie par station%n", p.getJoursPluie());
+        }
+        try {
+            rapport.ecrire(Paths.get(fichier));
+            System.out.println("(Info) Rapport écrit dans " + fichier);
+        } catch (IOException e) {
+            System.err.println("[WARN] Écriture du rapport échouée : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Option 8 : statistiques d'une station sur une période à partir des résumés journaliers
+     * (esquisses fusionnées), sans relire les relevés.
+     */
+    private static void actionResumeStation(MeteoService service) {
+        System.out.println();
+        System.out.println("=== Percentiles d'une station ===");
+
+        List<String> stations = service.listerStationsEnregistrees();
+        if (stations.isEmpty()) {
+            System.out.println("(Aucune station enregistrée en base)");
+            return;
+        }
+        for (String s : stations) {
+            System.out.println("- " + s);
+        }
+        System.out.print("Entrez un nom de station : ");
+        String station = SCANNER.nextLine().trim();
+        if (!stations.contains(station)) {
+            System.out.println("Station inconnue.");
+            return;
+        }
+
+        LocalDate premier;
+        LocalDate dernier;
+        try {
+            System.out.print("Premier jour (AAAA-MM-JJ, vide = il y a un an) : ");
+            String saisie = SCANNER.nextLine().trim();
+            premier = saisie.isEmpty() ? LocalDate.now().minusYears(1) : LocalDate.parse(saisie);
+            System.out.print("Dernier jour (AAAA-MM-JJ, vide = aujourd'hui) : ");
+            saisie = SCANNER.nextLine().trim();
+            dernier = saisie.isEmpty() ? LocalDate.now() : LocalDate.parse(saisie);
+        } catch (DateTimeException e) {
+            System.out.println("Date invalide.");
+            return;
+        }
+
+        long debut = System.nanoTime();
+        ResumePeriode resume = service.resumerPeriode(station, premier, dernier);
+        long dureeMs = (System.nanoTime() - debut) / 1_000_000;
+        if (resume == null) {
+            System.out.println("Résumé indisponible.");
+            return;
+        }
+        if (resume.getJours() == 0) {
+            System.out.println("(Aucun résumé journalier sur cette période)");
+            return;
+        }
+        System.out.println("(Info) " + resume + ", calculé en " + dureeMs + " ms");
+        if (resume.getTemperatureMoyenne() != null) {
+            System.out.printf("Température : moyenne %.1f °C, min %.1f °C, max %.1f °C%n",
+                    resume.getTemperatureMoyenne(), resume.getTemperatureMin(), resume.getTemperatureMax());
+            System.out.printf("Percentiles : p5 %.1f, p25 %.1f, médiane %.1f, p75 %.1f, p95 %.1f, p99 %.1f °C%n",
+                    resume.temperaturePercentile(5), resume.temperaturePercentile(25),
+                    resume.temperaturePercentile(50), resume.temperaturePercentile(75),
+                    resume.temperaturePercentile(95), resume.temperaturePercentile(99));
+        }
+        System.out.printf("Précipitations : %.1f mm ; conditions différentes : environ %d%n",
+                resume.getPrecipitationTotale(), resume.getConditionsDistinctes());
+    }
+
     /**
      * Météo actuelle pour coord fixes (HE-Arc Neuchâtel).
      * En interne, ça passe aussi par obtenirMeteoEtTraiter,
@@ -274,18 +706,16 @@ public class Main {
                 continue;
             }
 
-            List<Date> dates = service.listerDatesPourStation(choixStation);
+            List<Instant> dates = service.listerInstantsPourStation(choixStation);
             if (dates.isEmpty()) {
                 System.out.println("(Aucune mesure historique trouvée pour cette station)");
                 continue;
             }
 
-            // Format d'affichage ET de saisie :
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-
+            // Format d'affichage ET de saisie : FORMAT_DATE
             System.out.println("Mesures disponibles pour " + choixStation + " :");
-            for (Date d : dates) {
-                System.out.println("- " + sdf.format(d));
+            for (Instant d : dates) {
+                System.out.println("- " + FORMAT_DATE.format(d));
             }
 
             System.out.print(
@@ -297,10 +727,10 @@ public class Main {
                 continue;
             }
 
-            Date dateChoisie;
+            Instant dateChoisie;
             try {
-                dateChoisie = sdf.parse(choixDate);
-            } catch (Exception e) {
+                dateChoisie = Instant.from(FORMAT_DATE.parse(choixDate));
+            } catch (DateTimeException e) {
                 System.out.println("Format de date invalide. Exemple attendu : 2025-10-26 17:30:26");
                 continue;
             }
@@ -357,12 +787,11 @@ public class Main {
     private static void afficherMesureDetaillee(Meteo m) {
         DecimalFormat df1 = new DecimalFormat("0.0");
         DecimalFormat df0 = new DecimalFormat("0");
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
         System.out.println();
         System.out.println("=== Détails relevé météo ===");
-        if (m.getDateMesure() != null)
-            System.out.println("Date du relevé : " + sdf.format(m.getDateMesure()));
+        if (m.hasDateMesure())
+            System.out.println("Date du relevé : " + FORMAT_DATE.format(m.getInstantMesure()));
 
         if (m.getTemperature() != null)
             System.out.printf("Température : %s °C%n", df1.format(m.getTemperature()));
@@ -391,6 +820,379 @@ public class Main {
         }
     }
 
+    private static String modeEnregistrement(Properties props) {
+        return props.getProperty("http.enregistrement.mode", "aucun").trim().toLowerCase();
+    }
+
+    /**
+     * Transport HTTP des clients API selon http.enregistrement.mode :
+     * - aucun (défaut) : appels réels ;
+     * - enregistrer : appels réels, réponses écrites dans http.enregistrement.fichier ;
+     * - rejouer : aucun appel, réponses servies depuis ce fichier (http.rejeu.latence,
+     *   http.rejeu.vitesse, http.rejeu.graine).
+     * Retourne null si le rejeu est demandé mais le fichier illisible.
+     */
+    static TransportHttp creerTransport(Properties props) {
+        Duration delaiConnexion = Duration.ofMillis((long) proprieteDouble(props, "http.delai.connexion.ms", 5_000));
+        Duration delaiRequete = Duration.ofMillis((long) proprieteDouble(props, "http.delai.requete.ms", 10_000));
+        int threads = (int) proprieteDouble(props, "http.threads", 4);
+        Path fichier = Paths.get(props.getProperty("http.enregistrement.fichier", "./data/api.rej").trim());
+        String mode = modeEnregistrement(props);
+
+        switch (mode) {
+            case "enregistrer":
+                try {
+                    TransportEnregistreur t = new TransportEnregistreur(delaiConnexion, delaiRequete, threads, fichier);
+                    System.out.println("(Info) Réponses des API enregistrées dans " + fichier);
+                    return t;
+                } catch (IOException e) {
+                    System.err.println("[WARN] Enregistrement HTTP impossible (" + fichier + ") : " + e.getMessage());
+                    return new TransportHttp(delaiConnexion, delaiRequete, threads);
+                }
+            case "rejouer":
+                try {
+                    TransportRejeu.Latence latence = TransportRejeu.Latence.depuisTexte(
+                            props.getProperty("http.rejeu.latence", "enregistree"),
+                            proprieteDouble(props, "http.rejeu.vitesse", 1),
+                            (long) proprieteDouble(props, "http.rejeu.graine", 42));
+                    TransportRejeu t = new TransportRejeu(fichier, latence);
+                    System.out.println("(Info) Rejeu hors ligne de " + fichier + " : "
+                            + t.requetesEnregistrees().size() + " réponse(s), latence " + latence);
+                    return t;
+                } catch (IOException | IllegalArgumentException e) {
+                    System.err.println("Rejeu impossible : " + e.getMessage());
+                    return null;
+                }
+            case "aucun":
+                break;
+            default:
+                System.err.println("[WARN] http.enregistrement.mode inconnu : " + mode + " (appels réels)");
+                break;
+        }
+        return new TransportHttp(delaiConnexion, delaiRequete, threads);
+    }
+
+    /**
+     * Choisit l'implémentation de persistance :
+     * - persistence.mode=oracle (défaut) : Oracle si paramètres présents et connexion OK
+     * - persistence.mode=h2 : base embarquée locale (fichier), aucun serveur requis
+     * - persistence.mode=aucune : mode sans sauvegarde
+     * Retourne null si aucune persistance n'est disponible.
+     */
+    static MeteoRepository creerRepository(Properties props) {
+        String mode = props.getProperty("persistence.mode", "oracle").trim().toLowerCase();
+
+        switch (mode) {
+            case "h2": {
+                String h2Url  = props.getProperty("h2.jdbc.url", "jdbc:h2:./data/meteo");
+                String h2User = props.getProperty("h2.jdbc.user", "sa");
+                String h2Pwd  = props.getProperty("h2.jdbc.password", "");
+                try {
+                    H2MeteoRepository h2 = new H2MeteoRepository(h2Url, h2User, h2Pwd);
+                    configurerConnexions(h2, props);
+                    h2.initialiserSchema();
+                    System.out.println("(Info) Base embarquée H2 prête (" + h2Url + "), la sauvegarde est activée.");
+                    return h2;
+                } catch (Exception e) {
+                    System.err.println("[WARN] Échec initialisation base H2 : " + e.getMessage());
+                    System.out.println("(Info) Base embarquée indisponible. Mode sans sauvegarde.");
+                    return null;
+                }
+            }
+            case "aucune":
+                System.out.println("(Info) Persistance désactivée. Mode sans sauvegarde.");
+                return null;
+            case "oracle":
+                break;
+            default:
+                System.err.println("[WARN] persistence.mode inconnu : " + mode + " (oracle utilisé)");
+                break;
+        }
+
+        String jdbcUrl  = props.getProperty("oracle.jdbc.url");
+        String jdbcUser = props.getProperty("oracle.jdbc.user");
+        String jdbcPwd  = props.getProperty("oracle.jdbc.password");
+
+        if (isNotBlank(jdbcUrl) && isNotBlank(jdbcUser)) {
+            if (testConnexionOracle(jdbcUrl, jdbcUser, jdbcPwd)) {
+                System.out.println("(Info) Connexion Oracle OK, la sauvegarde est activée.");
+                OracleMeteoRepository oracle = new OracleMeteoRepository(jdbcUrl, jdbcUser, jdbcPwd);
+                configurerConnexions(oracle, props);
+                return oracle;
+            }
+            System.out.println("(Info) Connexion Oracle impossible. Mode sans sauvegarde.");
+        } else {
+            System.out.println("(Info) Paramètres Oracle absents. Mode sans sauvegarde.");
+        }
+        return null;
+    }
+
+    /**
+     * Connexions gardées ouvertes (jdbc.pool.connexions, 0 : aucune), requêtes préparées gardées par
+     * connexion, attente d'une connexion quand toutes sont empruntées (jdbc.pool.attente.secondes).
+     */
+    private static void configurerConnexions(OracleMeteoRepository repo, Properties props) {
+        repo.configurerConnexions(
+                (int) proprieteDouble(props, "jdbc.pool.connexions", OracleMeteoRepository.CONNEXIONS_DEFAUT),
+                (int) proprieteDouble(props, "jdbc.requetes.cache", OracleMeteoRepository.REQUETES_DEFAUT),
+                (long) (proprieteDouble(props, "jdbc.pool.attente.secondes",
+                        OracleMeteoRepository.ATTENTE_CONNEXION_DEFAUT_MS / 1_000.0) * 1_000L));
+    }
+
+    /** Repository de la base sous l'archive éventuelle (null sans base). */
+    static OracleMeteoRepository base(MeteoRepository repo) {
+        if (repo instanceof ArchiveMeteoRepository) repo = ((ArchiveMeteoRepository) repo).getDelegate();
+        return repo instanceof OracleMeteoRepository ? (OracleMeteoRepository) repo : null;
+    }
+
+    static Properties chargerConfiguration() {
+        Properties props = new Properties();
+        try (InputStream in = Main.class.getClassLoader().getResourceAsStream("application.properties")) {
+            if (in != null) props.load(in);
+            else System.err.println("Fichier application.properties introuvable.");
+        } catch (Exception e) {
+            System.err.println("Erreur chargement configuration : " + e.getMessage());
+        }
+        return props;
+    }
+
+    static double proprieteDouble(Properties props, String cle, double defaut) {
+        String v = props.getProperty(cle);
+        if (!isNotBlank(v)) return defaut;
+        try {
+            return Double.parseDouble(v.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("[WARN] " + cle + " invalide : " + v);
+            return defaut;
+        }
+    }
+
+    /** Résumés journaliers selon esquisses.* (écriture périodique lancée) ; null sans base ou si désactivés. */
+    static EsquissesJournalieres creerEsquisses(MeteoRepository repo, Properties props) {
+        if (repo == null || !Boolean.parseBoolean(props.getProperty("esquisses.active", "true"))) {
+            return null;
+        }
+        try {
+            EsquissesJournalieres esquisses = new EsquissesJournalieres(repo, base(repo), ZoneId.systemDefault(),
+                    proprieteDouble(props, "esquisses.compression", 100));
+            esquisses.planifier((long) proprieteDouble(props, "esquisses.ecriture.secondes", 60));
+            return esquisses;
+        } catch (IllegalArgumentException e) {
+            System.err.println("[WARN] Résumés journaliers désactivés : " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Flux des relevés selon flux.* et branché sur la base ; null sans base ou sans flux.repertoire.
+     * Les relevés validés mais absents du flux (arrêt précédent) sont d'abord rattrapés depuis la base.
+     * Un flux déjà ouvert par un autre processus, ou impossible à rattraper, est signalé et ignoré.
+     */
+    static FluxReleves creerFlux(MeteoRepository repo, Properties props) {
+        String repertoire = props.getProperty("flux.repertoire");
+        OracleMeteoRepository base = base(repo);
+        if (base == null || !isNotBlank(repertoire)) {
+            return null;
+        }
+        FluxReleves flux = null;
+        try {
+            flux = new FluxReleves(Paths.get(repertoire.trim()),
+                    (long) (proprieteDouble(props, "flux.segment.mo", 64) * 1024 * 1024),
+                    (int) proprieteDouble(props, "flux.segments.gardes", 0),
+                    Boolean.parseBoolean(props.getProperty("flux.synchrone", "false")));
+            base.activerFlux(flux);
+            return flux;
+        } catch (IOException | SQLException | IllegalArgumentException e) {
+            System.err.println("[WARN] Flux des relevés désactivé : " + e.getMessage());
+            base.desactiverFlux();
+            if (flux != null) {
+                try {
+                    flux.close();
+                } catch (IOException fermeture) {
+                    // flux jamais utilisé : rien à conserver
+                }
+            }
+            return null;
+        }
+    }
+
+    /** Débranche le flux de la base, affiche son bilan et le ferme. */
+    static void fermerFlux(MeteoRepository repo, FluxReleves flux) {
+        if (flux == null) return;
+        OracleMeteoRepository base = base(repo);
+        if (base != null) base.desactiverFlux();
+        System.out.println("(Info) Flux des relevés : " + flux.statistiques());
+        try {
+            flux.close();
+        } catch (IOException e) {
+            System.err.println("[WARN] Fermeture du flux des relevés : " + e.getMessage());
+        }
+    }
+
+    static ReglageRapports reglageRapports(Properties props) {
+        ReglageRapports reglage = new ReglageRapports();
+        reglage.setThreads((int) proprieteDouble(props, "rapport.threads", reglage.getThreads()));
+        reglage.setStationsParTache((int) proprieteDouble(props, "rapport.stations.tache", reglage.getStationsParTache()));
+        reglage.setTailleLot((int) proprieteDouble(props, "rapport.lecture.lot", reglage.getTailleLot()));
+        reglage.setBaseDegresJour(proprieteDouble(props, "rapport.degres.jour.base", reglage.getBaseDegresJour()));
+        reglage.setSeuilPluieMm(proprieteDouble(props, "rapport.pluie.mm", reglage.getSeuilPluieMm()));
+        return reglage;
+    }
+
+    /** Réglage du pipeline de capture (pipeline.threads.*, pipeline.capacite, pipeline.lot). */
+    static ReglagePipeline reglagePipeline(Properties props) {
+        ReglagePipeline reglage = new ReglagePipeline();
+        reglage.setThreadsRecuperation((int) proprieteDouble(props, "pipeline.threads.recuperation", reglage.getThreadsRecuperation()));
+        reglage.setThreadsPays((int) proprieteDouble(props, "pipeline.threads.pays", reglage.getThreadsPays()));
+        reglage.setThreadsFiltre((int) proprieteDouble(props, "pipeline.threads.filtre", reglage.getThreadsFiltre()));
+        reglage.setThreadsEcriture((int) proprieteDouble(props, "pipeline.threads.ecriture", reglage.getThreadsEcriture()));
+        reglage.setCapacite((int) proprieteDouble(props, "pipeline.capacite", reglage.getCapacite()));
+        reglage.setTailleLot((int) proprieteDouble(props, "pipeline.lot", reglage.getTailleLot()));
+        return reglage;
+    }
+
+    /**
+     * Moteur d'alertes selon alertes.regles (null si aucune règle ou règle invalide) :
+     * alertes affichées dans la console, et ajoutées à alertes.fichier / envoyées à alertes.webhook.url si définis.
+     */
+    private static MoteurAlertes creerMoteurAlertes(Properties props, TransportHttp transport) {
+        List<Regle> regles;
+        try {
+            regles = Regle.lireListe(props.getProperty("alertes.regles"));
+        } catch (IllegalArgumentException e) {
+            System.err.println("[WARN] alertes.regles : " + e.getMessage() + " (alertes désactivées)");
+            return null;
+        }
+        if (regles.isEmpty()) return null;
+
+        List<DestinationAlertes> destinations = new ArrayList<>();
+        destinations.add(new JournalAlertes());
+        String fichier = props.getProperty("alertes.fichier");
+        if (isNotBlank(fichier)) {
+            try {
+                destinations.add(new FichierAlertes(Paths.get(fichier.trim())));
+            } catch (IOException e) {
+                System.err.println("[WARN] Fichier d'alertes " + fichier + " inutilisable : " + e.getMessage());
+            }
+        }
+        String webhook = props.getProperty("alertes.webhook.url");
+        if (isNotBlank(webhook)) {
+            try {
+                destinations.add(new WebhookAlertes(URI.create(webhook.trim()), transport));
+            } catch (IllegalArgumentException e) {
+                System.err.println("[WARN] alertes.webhook.url invalide : " + webhook);
+            }
+        }
+
+        try {
+            MoteurAlertes moteur = new MoteurAlertes(regles,
+                    proprieteDouble(props, "alertes.ewma.alpha", 0.1),
+                    (int) proprieteDouble(props, "alertes.fenetre", 12),
+                    (int) proprieteDouble(props, "alertes.zscore.minimum", 10),
+                    destinations);
+            System.out.println("(Info) Alertes actives : " + regles);
+            return moteur;
+        } catch (IllegalArgumentException e) {
+            System.err.println("[WARN] Réglage des alertes invalide : " + e.getMessage() + " (alertes désactivées)");
+            return null;
+        }
+    }
+
+    /**
+     * Charge l'index spatial des stations depuis la base (null si pas de base ou en cas d'échec).
+     * Activé ensuite dans le service (stations.accrochage.km, stations.cache.minutes).
+     */
+    private static IndexSpatialStations chargerIndexStations(MeteoRepository repo) {
+        if (repo == null) return null;
+        try {
+            IndexSpatialStations index = new IndexSpatialStations();
+            index.charger(repo.findAllStations());
+            System.out.println("(Info) Index des stations chargé : " + index.taille() + " station(s).");
+            return index;
+        } catch (Exception e) {
+            System.err.println("[WARN] Chargement index stations échoué : " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Crée l'interpolateur (interpolation.*) et le remplit avec les derniers relevés en base
+     * assez récents ; vide s'il n'y a pas de base, il se remplit alors au fil des captures.
+     */
+    private static InterpolateurMeteo chargerInterpolation(MeteoRepository repo, Properties props) {
+        long ageMaxMs = (long) (proprieteDouble(props, "interpolation.age.minutes", 90) * 60_000L);
+        InterpolateurMeteo interpolateur = new InterpolateurMeteo(
+                proprieteDouble(props, "interpolation.rayon.km", 50),
+                (int) proprieteDouble(props, "interpolation.stations.max", 8),
+                (int) proprieteDouble(props, "interpolation.stations.min", 3),
+                ageMaxMs,
+                proprieteDouble(props, "interpolation.confiance.min", 0.6));
+        if (repo == null) return interpolateur;
+        try {
+            interpolateur.charger(repo.findDerniersReleves(Instant.now().minusMillis(ageMaxMs)));
+            System.out.println("(Info) Interpolation : derniers relevés de " + interpolateur.taille() + " station(s).");
+        } catch (Exception e) {
+            System.err.println("[WARN] Chargement des derniers relevés échoué : " + e.getMessage());
+        }
+        return interpolateur;
+    }
+
+    /**
+     * Remplit le cache du client Country avec les pays déjà connus en base
+     * (noms enregistrés en français, langue par défaut des menus).
+     */
+    private static Integer prechargerPays(CountryClient countryClient, MeteoRepository repo) {
+        if (repo == null) return 0;
+        try {
+            List<Pays> pays = repo.findAllPays();
+            countryClient.prechargerCache(pays, "fr");
+            return pays.size();
+        } catch (Exception e) {
+            System.err.println("[WARN] Préchargement des pays échoué : " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /** Tous les pays en une requête au service Country (country.prechargement=true). */
+    private static Integer prechargerTousLesPays(CountryClient countryClient) {
+        try {
+            return countryClient.prechargerTous("fr");
+        } catch (Exception e) {
+            System.err.println("[WARN] Chargement de la liste des pays échoué : " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Enveloppe le repository avec l'archive binaire (au plus segmentsOuverts segments projetés
+     * en mémoire) et, si archive.age.jours > 0,
+     * déplace dans l'archive les relevés plus anciens que cet âge.
+     */
+    private static MeteoRepository creerArchive(MeteoRepository repo, String archiveDir, String ageJours,
+                                                int segmentsOuverts) {
+        ArchiveMeteoRepository archiveRepo = new ArchiveMeteoRepository(repo,
+                new ArchiveMeteo(Paths.get(archiveDir), Math.max(1, segmentsOuverts)));
+
+        long jours;
+        try {
+            jours = Long.parseLong(ageJours.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("[WARN] archive.age.jours invalide : " + ageJours);
+            jours = 0;
+        }
+
+        if (jours > 0) {
+            Instant limite = Instant.now().minus(Duration.ofDays(jours));
+            try {
+                int nb = archiveRepo.archiverAvant(limite);
+                System.out.println("(Info) Archivage : " + nb + " relevé(s) déplacé(s) vers " + archiveDir);
+            } catch (Exception e) {
+                System.err.println("[WARN] Archivage échoué : " + e.getMessage());
+            }
+        }
+        return archiveRepo;
+    }
+
     private static boolean isNotBlank(String s) {
         return s != null && !s.isBlank();
     }
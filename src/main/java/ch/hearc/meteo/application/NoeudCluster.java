@@ -0,0 +1,138 @@
+package ch.hearc.meteo.application;
+
+import ch.hearc.meteo.infrastructure.flux.FluxReleves;
+import ch.hearc.meteo.infrastructure.http.CountryClient;
+import ch.hearc.meteo.infrastructure.http.OpenWeatherMapClient;
+import ch.hearc.meteo.infrastructure.http.PoolClesApi;
+import ch.hearc.meteo.infrastructure.http.TransportHttp;
+import ch.hearc.meteo.infrastructure.persistence.MeteoRepository;
+import ch.hearc.meteo.infrastructure.persistence.OracleMeteoRepository;
+import ch.hearc.meteo.service.MeteoServiceImpl;
+import ch.hearc.meteo.service.PipelineCapture;
+import ch.hearc.meteo.service.cluster.NoeudCapture;
+import ch.hearc.meteo.service.esquisse.EsquissesJournalieres;
+
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Nœud de capture du mode cluster (voir {@link NoeudCapture}) : capture en continu sa part
+ * des stations enregistrées, sans menu, jusqu'à l'arrêt du processus.
+ * Lancer un NoeudCluster par machine (ou plusieurs sur une même machine), tous sur la même base.
+ * Ctrl+C / SIGTERM : arrêt propre, les stations du nœud sont reprises aussitôt par les autres ;
+ * arrêt brutal : reprise à l'expiration du bail (cluster.bail.secondes).
+ *
+ * Usage : NoeudCluster [--config fichier.properties] [--noeud nom]
+ * - --config : configuration à utiliser à la place de application.properties (classpath) ;
+ * - --noeud : nom du nœud, unique dans le cluster (défaut cluster.noeud, sinon machine-pid).
+ */
+public class NoeudCluster {
+
+    public static void main(String[] args) throws Exception {
+        Path config = null;
+        String nom = null;
+        for (int i = 0; i < args.length; i++) {
+            if ("--config".equals(args[i]) && i + 1 < args.length) {
+                config = Paths.get(args[++i]);
+            } else if ("--noeud".equals(args[i]) && i + 1 < args.length) {
+                nom = args[++i];
+            } else {
+                System.err.println("Usage : NoeudCluster [--config fichier.properties] [--noeud nom]");
+                System.exit(2);
+                return;
+            }
+        }
+
+        Properties props = config != null ? chargerConfiguration(config) : Main.chargerConfiguration();
+        if (nom == null) nom = props.getProperty("cluster.noeud", nomParDefaut()).trim();
+
+        String owmKey = props.getProperty("openweathermap.key", "");
+        if (owmKey.isBlank()) {
+            System.err.println("Clé API OpenWeatherMap manquante. Vérifie application.properties");
+            System.exit(2);
+            return;
+        }
+
+        TransportHttp transport = new TransportHttp(
+                Duration.ofMillis((long) Main.proprieteDouble(props, "http.delai.connexion.ms", 5_000)),
+                Duration.ofMillis((long) Main.proprieteDouble(props, "http.delai.requete.ms", 10_000)),
+                (int) Main.proprieteDouble(props, "http.threads", 4));
+        OpenWeatherMapClient owmClient;
+        try {
+            owmClient = new OpenWeatherMapClient(
+                    props.getProperty("openweathermap.url", "https://api.openweathermap.org/data/2.5/weather"),
+                    props.getProperty("openweathermap.forecast.url", ""),
+                    PoolClesApi.depuisListe(owmKey, (int) Main.proprieteDouble(props, "openweathermap.quota.minute", 60)),
+                    transport);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        CountryClient countryClient = new CountryClient(
+                props.getProperty("country.url", "https://db.ig.he-arc.ch/ens/scl/ws/country"), transport,
+                (long) (Main.proprieteDouble(props, "country.cache.heures", 24) * 3_600_000L));
+
+        // base partagée par tous les nœuds (pas d'archive locale : le nœud ne lit pas l'historique)
+        MeteoRepository repo = Main.creerRepository(props);
+        if (repo == null) {
+            System.err.println("Le mode cluster nécessite une base partagée (persistence.mode).");
+            System.exit(2);
+            return;
+        }
+
+        // baux des nœuds et de leurs stations, dans la même base
+        OracleMeteoRepository base = Main.base(repo);
+        FluxReleves flux = Main.creerFlux(repo, props);
+        MeteoServiceImpl service = new MeteoServiceImpl(owmClient, countryClient, repo);
+        EsquissesJournalieres esquisses = Main.creerEsquisses(repo, props);
+        service.activerEsquisses(esquisses);
+        PipelineCapture pipeline = service.creerPipelineCapture(Main.reglagePipeline(props));
+        NoeudCapture noeud = new NoeudCapture(repo, base, pipeline, nom,
+                (long) (Main.proprieteDouble(props, "cluster.bail.secondes", 30) * 1_000L),
+                (long) (Main.proprieteDouble(props, "cluster.intervalle.secondes", 60) * 1_000L),
+                "fr");
+
+        CountDownLatch arrete = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            noeud.close();
+            if (esquisses != null) esquisses.close();
+            Main.fermerFlux(repo, flux);
+            System.out.println("(Info) Nœud " + noeud.getNom() + " arrêté : " + noeud.statistiques());
+            System.out.println("(Info) HTTP : " + transport.metriques());
+            if (base.statistiquesConnexions() != null) {
+                System.out.println("(Info) Connexions : " + base.statistiquesConnexions());
+            }
+            arrete.countDown();
+        }, "arret-noeud"));
+
+        noeud.demarrer();
+        arrete.await();
+    }
+
+    private static Properties chargerConfiguration(Path fichier) {
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(fichier)) {
+            props.load(in);
+        } catch (Exception e) {
+            System.err.println("Erreur chargement configuration " + fichier + " : " + e.getMessage());
+        }
+        return props;
+    }
+
+    private static String nomParDefaut() {
+        String machine;
+        try {
+            machine = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            machine = "noeud";
+        }
+        return machine + "-" + ProcessHandle.current().pid();
+    }
+}
@@ -0,0 +1,39 @@
+package ch.hearc.meteo.application;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Webhook local de démonstration : reçoit les alertes (POST JSON sur /alertes) et les affiche.
+ * À utiliser avec alertes.webhook.url=http://localhost:8085/alertes
+ *
+ * Usage : RecepteurAlertes [port (8085)]
+ */
+public class RecepteurAlertes {
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8085;
+
+        HttpServer serveur = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        serveur.createContext("/alertes", ex -> {
+            if (!"POST".equalsIgnoreCase(ex.getRequestMethod())) {
+                ex.sendResponseHeaders(405, -1);
+                ex.close();
+                return;
+            }
+            String corps;
+            try (InputStream in = ex.getRequestBody()) {
+                corps = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            System.out.println("[ALERTE reçue] " + corps);
+            ex.sendResponseHeaders(204, -1);
+            ex.close();
+        });
+        serveur.start();
+        System.out.println("(Info) Récepteur d'alertes sur http://localhost:" + port + "/alertes (Ctrl+C pour arrêter)");
+    }
+}
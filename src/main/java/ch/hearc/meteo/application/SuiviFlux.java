@@ -0,0 +1,47 @@
+package ch.hearc.meteo.application;
+
+import ch.hearc.meteo.infrastructure.flux.EvenementReleve;
+import ch.hearc.meteo.infrastructure.flux.LecteurFlux;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Suivi du flux des relevés enregistrés (flux.repertoire) depuis un autre processus : affiche
+ * chaque relevé dès sa publication et valide la position du consommateur après chaque lot lu,
+ * pour reprendre au même endroit au prochain lancement.
+ *
+ * Usage : SuiviFlux <répertoire du flux> [consommateur (suivi)]
+ */
+public class SuiviFlux {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage : SuiviFlux <répertoire du flux> [consommateur]");
+            System.exit(2);
+            return;
+        }
+        Path repertoire = Paths.get(args[0]);
+        String consommateur = args.length > 1 ? args[1] : "suivi";
+
+        try (LecteurFlux lecteur = LecteurFlux.ouvrir(repertoire, consommateur)) {
+            System.out.println("(Info) Suivi de " + repertoire + " par " + consommateur
+                    + " à partir de la position " + lecteur.position()
+                    + " (" + lecteur.retard() + " octet(s) en attente, Ctrl+C pour arrêter)");
+            while (true) {
+                List<EvenementReleve> lus = lecteur.lire(500, 1_000);
+                for (EvenementReleve e : lus) {
+                    System.out.println("#" + e.getMeteoId() + " "
+                            + Instant.ofEpochMilli(e.getReleve().getDateMesureMs())
+                            + " station " + e.getStationId()
+                            + (e.getNomStation() != null ? " (" + e.getNomStation() + ")" : "")
+                            + " : " + e.getReleve().getTemperature() + " °C, "
+                            + e.getReleve().getDescription());
+                }
+                if (!lus.isEmpty()) lecteur.valider();
+            }
+        }
+    }
+}
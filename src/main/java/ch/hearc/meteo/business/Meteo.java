@@ -1,19 +1,23 @@
 package ch.hearc.meteo.business;
 
+import java.time.Instant;
 import java.util.Date;
 
 /**
  * Représente une mesure météo unique (données brutes issues d'une station).
  * Contient uniquement les valeurs physiques + description textuelle.
- * ⚠️ La date est stockée en {@link java.util.Date} pour compatibilité, mais pourrait être remplacée
- *     par {@link java.time.Instant} ou {@link java.time.LocalDateTime} si besoin de précision/UTC.
+ * La date est un instant UTC en millisecondes epoch (primitif : ni objet ni fuseau horaire par relevé) ;
+ * {@link #getDateMesure()} / {@link #setDateMesure(Date)} restent disponibles pour l'ancien code.
  */
 public class Meteo {
+    /** Valeur de dateMesure quand la date n'est pas connue. */
+    public static final long SANS_DATE = Long.MIN_VALUE;
+
     // Identifiant logique ou numéro d'ordre de la mesure
     private Integer numero;
 
-    // Date/heure de la mesure (instant de capture)
-    private Date dateMesure;
+    // Date/heure de la mesure (instant de capture), ms epoch UTC
+    private long dateMesure = SANS_DATE;
 
     // Valeurs principales : peuvent être null si non fournies par l’API
     private Double temperature;
@@ -29,8 +33,20 @@ public class Meteo {
     public Integer getNumero() { return numero; }
     public void setNumero(Integer numero) { this.numero = numero; }
 
-    public Date getDateMesure() { return dateMesure; }
-    public void setDateMesure(Date dateMesure) { this.dateMesure = dateMesure; }
+    public long getDateMesureMs() { return dateMesure; }
+    public void setDateMesureMs(long dateMesureMs) { this.dateMesure = dateMesureMs; }
+    public boolean hasDateMesure() { return dateMesure != SANS_DATE; }
+
+    /** Instant de la mesure, ou null si inconnu. */
+    public Instant getInstantMesure() { return hasDateMesure() ? Instant.ofEpochMilli(dateMesure) : null; }
+    public void setInstantMesure(Instant instant) { this.dateMesure = instant != null ? instant.toEpochMilli() : SANS_DATE; }
+
+    /** @deprecated utiliser {@link #getDateMesureMs()} ou {@link #getInstantMesure()} (nouvelle Date à chaque appel) */
+    @Deprecated
+    public Date getDateMesure() { return hasDateMesure() ? new Date(dateMesure) : null; }
+    /** @deprecated utiliser {@link #setDateMesureMs(long)} ou {@link #setInstantMesure(Instant)} */
+    @Deprecated
+    public void setDateMesure(Date dateMesure) { this.dateMesure = dateMesure != null ? dateMesure.getTime() : SANS_DATE; }
 
     public Double getTemperature() { return temperature; }
     public void setTemperature(Double temperature) { this.temperature = temperature; }
@@ -54,7 +70,7 @@ public class Meteo {
     public String toString() {
         // Utile pour le debug et le logging
         return "Meteo{" +
-                "dateMesure=" + dateMesure +
+                "dateMesure=" + getInstantMesure() +
                 ", temperature=" + temperature +
                 ", description='" + description + '\'' +
                 ", pression=" + pression +
@@ -0,0 +1,58 @@
+package ch.hearc.meteo.business;
+
+import java.time.LocalDate;
+
+/**
+ * Résumé d'une journée de relevés d'une station (table resume_jour).
+ * Les percentiles de température et le nombre de conditions distinctes ne sont pas stockés
+ * comme valeurs mais sous forme d'esquisses sérialisées, fusionnables d'un jour à l'autre
+ * (voir le paquet ch.hearc.meteo.service.esquisse).
+ */
+public class ResumeJour {
+    private Integer numeroStation;    // station_id
+    private LocalDate jour;           // journée dans le fuseau de l'application
+    private long nbReleves;
+    private Double temperatureMin;    // null : aucune température ce jour-là
+    private Double temperatureMax;
+    private double sommeTemperatures; // moyenne = somme / nombre de valeurs de l'esquisse
+    private double precipitation;     // cumul de la journée (mm)
+    private byte[] esquisseTemperature; // t-digest des températures
+    private byte[] esquisseConditions;  // HyperLogLog des descriptions (conditions distinctes)
+
+    public ResumeJour() {}
+
+    // Accesseurs standards (POJO)
+    public Integer getNumeroStation() { return numeroStation; }
+    public void setNumeroStation(Integer numeroStation) { this.numeroStation = numeroStation; }
+
+    public LocalDate getJour() { return jour; }
+    public void setJour(LocalDate jour) { this.jour = jour; }
+
+    public long getNbReleves() { return nbReleves; }
+    public void setNbReleves(long nbReleves) { this.nbReleves = nbReleves; }
+
+    public Double getTemperatureMin() { return temperatureMin; }
+    public void setTemperatureMin(Double temperatureMin) { this.temperatureMin = temperatureMin; }
+
+    public Double getTemperatureMax() { return temperatureMax; }
+    public void setTemperatureMax(Double temperatureMax) { this.temperatureMax = temperatureMax; }
+
+    public double getSommeTemperatures() { return sommeTemperatures; }
+    public void setSommeTemperatures(double sommeTemperatures) { this.sommeTemperatures = sommeTemperatures; }
+
+    public double getPrecipitation() { return precipitation; }
+    public void setPrecipitation(double precipitation) { this.precipitation = precipitation; }
+
+    public byte[] getEsquisseTemperature() { return esquisseTemperature; }
+    public void setEsquisseTemperature(byte[] esquisseTemperature) { this.esquisseTemperature = esquisseTemperature; }
+
+    public byte[] getEsquisseConditions() { return esquisseConditions; }
+    public void setEsquisseConditions(byte[] esquisseConditions) { this.esquisseConditions = esquisseConditions; }
+
+    @Override
+    public String toString() {
+        return "ResumeJour{" + "station=" + numeroStation + ", jour=" + jour + ", releves=" + nbReleves
+                + ", octets=" + (esquisseTemperature != null ? esquisseTemperature.length : 0)
+                + "+" + (esquisseConditions != null ? esquisseConditions.length : 0) + '}';
+    }
+}
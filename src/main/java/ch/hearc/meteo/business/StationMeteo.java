@@ -2,6 +2,7 @@ package ch.hearc.meteo.business;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Représente une station météo dans le domaine métier.
@@ -41,6 +42,14 @@ public class StationMeteo {
     public List<Meteo> getDonneesMeteo() { return donneesMeteo; }
     public void setDonneesMeteo(List<Meteo> donneesMeteo) { this.donneesMeteo = donneesMeteo; }
 
+    /**
+     * Clé de la station dans les états en mémoire (derniers relevés, dédoublonnage, alertes,
+     * interpolation) : nom et coordonnées arrondies au 1e-4 degré (une dizaine de mètres).
+     */
+    public String cle() {
+        return String.format(Locale.ROOT, "%s|%.4f|%.4f", nom, latitude, longitude);
+    }
+
     /**
      * Ajoute une mesure à la liste si elle n'est pas nulle.
      * Simplifie l'ajout sans avoir à vérifier à chaque appel.
@@ -0,0 +1,50 @@
+package ch.hearc.meteo.dto;
+
+import com.google.gson.annotations.SerializedName;
+import java.util.List;
+
+/**
+ * DTO correspondant à la réponse JSON du service OpenWeatherMap (endpoint /data/2.5/forecast) :
+ * prévisions sur 5 jours par pas de 3 heures (40 éléments).
+ * La liste est lue élément par élément en streaming par le client : {@link #getList()}
+ * n'est rempli que si la réponse est désérialisée d'un bloc.
+ */
+public class OpenWeatherMapForecastResponse {
+    private City city;        // ville / station concernée
+    private List<Item> list;  // une prévision par pas de 3 heures
+
+    public City getCity() { return city; }
+    public List<Item> getList() { return list; }
+
+    /** Ville : identifiant OWM, nom, coordonnées et code pays */
+    public static class City {
+        private Integer id;
+        private String name;
+        private OpenWeatherMapResponse.Coord coord;
+        private String country;
+        public Integer getId() { return id; }
+        public String getName() { return name; }
+        public OpenWeatherMapResponse.Coord getCoord() { return coord; }
+        public String getCountry() { return country; }
+    }
+
+    /** Une prévision : même structure que la météo actuelle, pluie cumulée sur 3 heures */
+    public static class Item {
+        private Long dt; // instant prévu, en secondes epoch (UTC)
+        private OpenWeatherMapResponse.Main main;
+        private List<OpenWeatherMapResponse.Weather> weather;
+        private Integer visibility;
+        private Rain rain;
+        public Long getDt() { return dt; }
+        public OpenWeatherMapResponse.Main getMain() { return main; }
+        public List<OpenWeatherMapResponse.Weather> getWeather() { return weather; }
+        public Integer getVisibility() { return visibility; }
+        public Rain getRain() { return rain; }
+    }
+
+    /** Section pluie des prévisions, uniquement présente s’il y a des précipitations */
+    public static class Rain {
+        @SerializedName("3h") private Double h3; // précipitations sur 3 heures (mm)
+        public Double getH3() { return h3; }
+    }
+}
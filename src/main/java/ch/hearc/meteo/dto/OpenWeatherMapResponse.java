@@ -5,7 +5,8 @@ import java.util.List;
 
 /**
  * DTO correspondant à la réponse JSON du service OpenWeatherMap (endpoint /data/2.5/weather).
- * Sert uniquement au mapping JSON → objets Java via Gson.
+ * Sert uniquement au mapping JSON → objets Java via Gson : ses classes imbriquées pour les prévisions
+ * ({@link OpenWeatherMapForecastResponse}) ; la météo actuelle est décodée sans DTO ({@link ReleveOwm}).
  * Les noms de champs doivent correspondre exactement à ceux de l’API, sinon il faut annoter avec @SerializedName.
  */
 public class OpenWeatherMapResponse {
@@ -17,6 +18,7 @@ public class OpenWeatherMapResponse {
     private String name;           // nom de la ville
     private Integer id;            // identifiant de la station dans OWM
     private Rain rain;             // précipitations (peut être null)
+    private Long dt;               // instant de l'observation, en secondes epoch (UTC)
 
     // Getters uniquement : immuabilité logique du DTO
     public Coord getCoord() { return coord; }
@@ -27,6 +29,7 @@ public class OpenWeatherMapResponse {
     public String getName() { return name; }
     public Integer getId() { return id; }
     public Rain getRain() { return rain; }
+    public Long getDt() { return dt; }
 
     /** Coordonnées (latitude / longitude) */
     public static class Coord {
@@ -0,0 +1,96 @@
+package ch.hearc.meteo.dto;
+
+/**
+ * Relevé de la réponse OpenWeatherMap (endpoint /data/2.5/weather), réutilisable : rempli par
+ * {@code DecodeurMeteoOwm} directement depuis le JSON, vidé puis rempli à nouveau pour la
+ * réponse suivante, sans objet intermédiaire (contrairement à {@link OpenWeatherMapResponse}).
+ *
+ * Champs numériques primitifs ; un champ absent ou null dans le JSON a son bit à 0 dans le
+ * masque des champs présents ({@link #a(int)}), sa valeur n'a alors pas de sens.
+ * Les chaînes sont partagées d'une réponse à l'autre (même nom de station, même description).
+ *
+ * Non synchronisé : une instance par thread, à convertir en objets métier avant la réponse suivante.
+ */
+public final class ReleveOwm {
+
+    // bits du masque des champs présents
+    public static final int LATITUDE = 1;
+    public static final int LONGITUDE = 1 << 1;
+    public static final int TEMPERATURE = 1 << 2;
+    public static final int PRESSION = 1 << 3;
+    public static final int HUMIDITE = 1 << 4;
+    public static final int VISIBILITE = 1 << 5;
+    public static final int PRECIPITATION = 1 << 6;
+    public static final int DATE = 1 << 7;
+    public static final int ID_OWM = 1 << 8;
+
+    private int presents;
+    private double latitude;
+    private double longitude;
+    private double temperature;   // °C (units=metric)
+    private double pression;      // hPa
+    private double humidite;      // %
+    private double precipitation; // mm sur la dernière heure (rain.1h)
+    private int visibilite;       // m
+    private int idOwm;
+    private long dateSecondes;    // instant de l'observation, secondes epoch (UTC)
+    private String nom;
+    private String codePays;
+    private String description;   // première condition (weather[0].description)
+
+    /** Remet tous les champs à « absent » avant un nouveau décodage. */
+    public void vider() {
+        presents = 0;
+        nom = null;
+        codePays = null;
+        description = null;
+    }
+
+    /** true si le champ (LATITUDE, TEMPERATURE...) était présent et non null dans la réponse. */
+    public boolean a(int champ) {
+        return (presents & champ) == champ;
+    }
+
+    public double getLatitude() { return latitude; }
+    public void setLatitude(double latitude) { this.latitude = latitude; presents |= LATITUDE; }
+
+    public double getLongitude() { return longitude; }
+    public void setLongitude(double longitude) { this.longitude = longitude; presents |= LONGITUDE; }
+
+    public double getTemperature() { return temperature; }
+    public void setTemperature(double temperature) { this.temperature = temperature; presents |= TEMPERATURE; }
+
+    public double getPression() { return pression; }
+    public void setPression(double pression) { this.pression = pression; presents |= PRESSION; }
+
+    public double getHumidite() { return humidite; }
+    public void setHumidite(double humidite) { this.humidite = humidite; presents |= HUMIDITE; }
+
+    public double getPrecipitation() { return precipitation; }
+    public void setPrecipitation(double precipitation) { this.precipitation = precipitation; presents |= PRECIPITATION; }
+
+    public int getVisibilite() { return visibilite; }
+    public void setVisibilite(int visibilite) { this.visibilite = visibilite; presents |= VISIBILITE; }
+
+    public int getIdOwm() { return idOwm; }
+    public void setIdOwm(int idOwm) { this.idOwm = idOwm; presents |= ID_OWM; }
+
+    public long getDateSecondes() { return dateSecondes; }
+    public void setDateSecondes(long dateSecondes) { this.dateSecondes = dateSecondes; presents |= DATE; }
+
+    public String getNom() { return nom; }
+    public void setNom(String nom) { this.nom = nom; }
+
+    public String getCodePays() { return codePays; }
+    public void setCodePays(String codePays) { this.codePays = codePays; }
+
+    public String getDescription() { return description; }
+    public void setDescription(String description) { this.description = description; }
+
+    @Override
+    public String toString() {
+        return "ReleveOwm{" + "nom='" + nom + '\'' + ", pays=" + codePays
+                + ", temperature=" + (a(TEMPERATURE) ? temperature : null)
+                + ", date=" + (a(DATE) ? dateSecondes : null) + '}';
+    }
+}
@@ -0,0 +1,362 @@
+package ch.hearc.meteo.infrastructure.archive;
+
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.StationMeteo;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Archive locale des relevés "froids" : un fichier segment binaire par station et par mois (UTC).
+ *
+ * Arborescence : {@code <racine>/<nom encodé>/<latitude>,<longitude>/<aaaa-MM>[.<version>].mseg}
+ * (une station = un nom et une position, comme l'index unique de stations_meteo ; des stations
+ * homonymes ont chacune leur dossier). Les lectures par nom réunissent les stations homonymes,
+ * ainsi que les segments de l'ancienne arborescence, rangés directement sous le dossier du nom.
+ *
+ * Les écritures sont sérialisées (une seule archive à la fois) et atomiques
+ * (fichier temporaire puis renommage) ; les lectures ne prennent aucun verrou.
+ *
+ * Les segments sont lus par projection mémoire ({@link SegmentReader#mapper(Path)}),
+ * ouverts une seule fois puis partagés entre tous les lecteurs. Au plus maxSegmentsOuverts
+ * segments restent projetés : au-delà, le moins récemment lu est retiré du cache et fermé
+ * (projection libérée dès la fin des lectures en cours). Un segment projeté n'est
+ * jamais remplacé (impossible sous Windows) : une réécriture crée la version suivante
+ * du fichier, remplace le lecteur en cache, puis supprime les versions précédentes.
+ */
+public class ArchiveMeteo {
+
+    public static final int SEGMENTS_OUVERTS_DEFAUT = 256;
+
+    private static final String EXTENSION = ".mseg";
+
+    private final Path racine;
+    private final int maxSegmentsOuverts;
+
+    // Segments déjà projetés en mémoire, par <dossier station>/<aaaa-MM> (sans version) ;
+    // entrée remplacée par la nouvelle version à chaque réécriture
+    private final ConcurrentHashMap<Path, SegmentOuvert> segmentsOuverts = new ConcurrentHashMap<>();
+    // ordre des lectures, pour retirer le segment le moins récemment lu
+    private final AtomicLong horloge = new AtomicLong();
+
+    public ArchiveMeteo(Path racine) {
+        this(racine, SEGMENTS_OUVERTS_DEFAUT);
+    }
+
+    /**
+     * @param maxSegmentsOuverts nombre maximal de segments projetés en mémoire en même temps (au moins 1)
+     */
+    public ArchiveMeteo(Path racine, int maxSegmentsOuverts) {
+        if (maxSegmentsOuverts < 1) {
+            throw new IllegalArgumentException("maxSegmentsOuverts doit être >= 1 : " + maxSegmentsOuverts);
+        }
+        this.racine = racine;
+        this.maxSegmentsOuverts = maxSegmentsOuverts;
+    }
+
+    /**
+     * Ajoute des relevés à l'archive d'une station (nom et position).
+     * Les relevés sont répartis par mois ; un segment existant est fusionné puis réécrit.
+     * Les relevés sans date sont ignorés ; un relevé déjà archivé à la même milliseconde n'est pas dupliqué.
+     * @return nombre de relevés effectivement archivés
+     */
+    public synchronized int archiver(StationMeteo station, List<Meteo> releves) throws IOException {
+        Map<YearMonth, List<Meteo>> parMois = new TreeMap<>();
+        for (Meteo m : releves) {
+            if (!m.hasDateMesure()) continue;
+            parMois.computeIfAbsent(mois(m.getDateMesureMs()), k -> new ArrayList<>()).add(m);
+        }
+
+        Path dossier = dossierStation(station);
+        Files.createDirectories(dossier);
+
+        int archives = 0;
+        for (Map.Entry<YearMonth, List<Meteo>> e : parMois.entrySet()) {
+            String mois = e.getKey().toString();
+            TreeMap<Integer, Path> versions = versions(dossier, mois);
+
+            // fusion avec le segment existant, dédoublonnée par date
+            TreeMap<Long, Meteo> fusion = new TreeMap<>();
+            SegmentReader existant = lecteur(dossier, mois);
+            if (existant != null) {
+                try {
+                    for (Meteo m : existant.lireTout()) {
+                        fusion.put(m.getDateMesureMs(), m);
+                    }
+                } finally {
+                    existant.liberer();
+                }
+            }
+            for (Meteo m : e.getValue()) {
+                if (fusion.putIfAbsent(m.getDateMesureMs(), m) == null) archives++;
+            }
+
+            // nouvelle version à côté de l'ancienne, qui peut encore être projetée en mémoire
+            int version = versions.isEmpty() ? 0 : versions.lastKey() + 1;
+            Path fichier = dossier.resolve(mois + "." + version + EXTENSION);
+            byte[] contenu = SegmentWriter.encoder(new ArrayList<>(fusion.values()));
+            Path tmp = dossier.resolve(mois + EXTENSION + ".tmp");
+            Files.write(tmp, contenu);
+            Files.move(tmp, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            // remplacé (et non retiré) : un lecteur concurrent ne peut plus remettre l'ancienne version en cache ;
+            // l'ancienne projection est libérée dès la fin des lectures en cours
+            SegmentOuvert remplace = segmentsOuverts.put(dossier.resolve(mois),
+                    new SegmentOuvert(SegmentReader.mapper(fichier), horloge.incrementAndGet()));
+            if (remplace != null) remplace.lecteur.liberer();
+            evincer();
+            for (Path ancienne : versions.values()) {
+                try {
+                    Files.deleteIfExists(ancienne);
+                } catch (IOException projete) {
+                    // encore projetée (Windows) : supprimée à la prochaine réécriture du mois
+                }
+            }
+        }
+        return archives;
+    }
+
+    /**
+     * Relevés archivés des stations de ce nom dont la date est dans [debut, fin), par date croissante.
+     */
+    public List<Meteo> lirePlage(String stationName, Instant debut, Instant fin) throws IOException {
+        List<Meteo> result = new ArrayList<>();
+        for (Path dossier : dossiersNom(stationName)) {
+            result.addAll(lirePlage(dossier, debut, fin));
+        }
+        result.sort(Comparator.comparingLong(Meteo::getDateMesureMs));
+        return result;
+    }
+
+    /**
+     * Relevés archivés d'une station (nom et position) dont la date est dans [debut, fin), par date croissante.
+     */
+    public List<Meteo> lirePlage(StationMeteo station, Instant debut, Instant fin) throws IOException {
+        return lirePlage(dossierStation(station), debut, fin);
+    }
+
+    private List<Meteo> lirePlage(Path dossier, Instant debut, Instant fin) throws IOException {
+        long d = debut != null ? debut.toEpochMilli() : Long.MIN_VALUE;
+        long f = fin != null ? fin.toEpochMilli() : Long.MAX_VALUE;
+
+        List<Meteo> result = new ArrayList<>();
+        for (String mois : moisArchives(dossier)) {
+            YearMonth ym = YearMonth.parse(mois);
+            long debutMois = ym.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+            long finMois = ym.plusMonths(1).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+            if (finMois <= d || debutMois >= f) continue;
+
+            SegmentReader lecteur = lecteur(dossier, mois);
+            if (lecteur == null) continue;
+            try {
+                result.addAll(lecteur.lirePlage(d, f));
+            } finally {
+                lecteur.liberer();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Dates de tous les relevés archivés des stations de ce nom, les plus récentes d'abord.
+     */
+    public List<Instant> listerDates(String stationName) throws IOException {
+        List<Instant> result = new ArrayList<>();
+        for (Path dossier : dossiersNom(stationName)) {
+            for (String mois : moisArchives(dossier)) {
+                SegmentReader lecteur = lecteur(dossier, mois);
+                if (lecteur == null) continue;
+                try {
+                    for (long t : lecteur.lireDates()) {
+                        result.add(Instant.ofEpochMilli(t));
+                    }
+                } finally {
+                    lecteur.liberer();
+                }
+            }
+        }
+        result.sort(Comparator.reverseOrder());
+        return result;
+    }
+
+    /**
+     * Relevé archivé des stations de ce nom à la seconde donnée (le plus ancien de la seconde), ou null.
+     */
+    public Meteo trouver(String stationName, Instant instant) throws IOException {
+        long t = instant.toEpochMilli();
+        String mois = mois(t).toString();
+        Meteo result = null;
+        for (Path dossier : dossiersNom(stationName)) {
+            SegmentReader lecteur = lecteur(dossier, mois);
+            if (lecteur == null) continue;
+            Meteo m;
+            try {
+                m = lecteur.trouverSeconde(t);
+            } finally {
+                lecteur.liberer();
+            }
+            if (m != null && (result == null || m.getDateMesureMs() < result.getDateMesureMs())) result = m;
+        }
+        return result;
+    }
+
+    /**
+     * Lecteur projeté en mémoire de la dernière version du segment d'un mois, ouvert au premier
+     * accès puis réutilisé ; null si le mois n'est pas archivé.
+     * Le lecteur rendu est acquis ({@link SegmentReader#acquerir()}) : l'appelant le libère après lecture.
+     * Le chemin rapide (segment déjà ouvert) est un simple get sans verrou.
+     */
+    private SegmentReader lecteur(Path dossier, String mois) throws IOException {
+        Path cle = dossier.resolve(mois);
+        while (true) {
+            SegmentOuvert ouvert = segmentsOuverts.get(cle);
+            if (ouvert != null) {
+                if (ouvert.lecteur.acquerir()) {
+                    ouvert.derniereLecture = horloge.incrementAndGet();
+                    return ouvert.lecteur;
+                }
+                continue; // fermé entre-temps (retiré du cache ou remplacé) : relu
+            }
+
+            TreeMap<Integer, Path> versions = versions(dossier, mois);
+            if (versions.isEmpty()) return null;
+            SegmentReader nouveau;
+            try {
+                nouveau = SegmentReader.mapper(versions.lastEntry().getValue());
+            } catch (NoSuchFileException remplace) {
+                continue; // version supprimée par une réécriture entre-temps : la nouvelle est en cache
+            }
+            // si une réécriture a mis sa version en cache entre-temps, c'est elle qui est gardée
+            if (segmentsOuverts.putIfAbsent(cle, new SegmentOuvert(nouveau, horloge.incrementAndGet())) != null) {
+                nouveau.liberer();
+                continue;
+            }
+            evincer();
+        }
+    }
+
+    /**
+     * Retire du cache les segments les moins récemment lus au-delà de maxSegmentsOuverts,
+     * et rend la référence du cache : la projection est libérée dès la fin des lectures en cours.
+     */
+    private void evincer() {
+        while (segmentsOuverts.size() > maxSegmentsOuverts) {
+            Map.Entry<Path, SegmentOuvert> plusAncien = null;
+            for (Map.Entry<Path, SegmentOuvert> e : segmentsOuverts.entrySet()) {
+                if (plusAncien == null || e.getValue().derniereLecture < plusAncien.getValue().derniereLecture) {
+                    plusAncien = e;
+                }
+            }
+            if (plusAncien == null) return;
+            if (segmentsOuverts.remove(plusAncien.getKey(), plusAncien.getValue())) {
+                plusAncien.getValue().lecteur.liberer();
+            }
+        }
+    }
+
+    /** Nombre de segments actuellement projetés en mémoire (cache). */
+    int nbSegmentsOuverts() {
+        return segmentsOuverts.size();
+    }
+
+    /** Segment en cache et date de sa dernière lecture (horloge de l'archive). */
+    private static final class SegmentOuvert {
+        final SegmentReader lecteur;
+        volatile long derniereLecture;
+
+        SegmentOuvert(SegmentReader lecteur, long derniereLecture) {
+            this.lecteur = lecteur;
+            this.derniereLecture = derniereLecture;
+        }
+    }
+
+    /** Versions du segment d'un mois (0 : fichier {@code <aaaa-MM>.mseg}), par numéro. */
+    private static TreeMap<Integer, Path> versions(Path dossier, String mois) throws IOException {
+        TreeMap<Integer, Path> result = new TreeMap<>();
+        if (!Files.isDirectory(dossier)) return result;
+
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dossier, mois + "*" + EXTENSION)) {
+            for (Path p : ds) {
+                int version = version(p);
+                if (version >= 0 && p.getFileName().toString().startsWith(mois + ".")) result.put(version, p);
+            }
+        }
+        return result;
+    }
+
+    /** Mois archivés d'une station (aaaa-MM), par ordre croissant. */
+    private static TreeSet<String> moisArchives(Path dossier) throws IOException {
+        TreeSet<String> result = new TreeSet<>();
+        if (!Files.isDirectory(dossier)) return result;
+
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dossier, "*" + EXTENSION)) {
+            for (Path p : ds) {
+                if (version(p) >= 0) result.add(p.getFileName().toString().substring(0, 7));
+            }
+        }
+        return result;
+    }
+
+    /** Numéro de version d'après le nom du fichier ({@code aaaa-MM.mseg} : 0), -1 si invalide. */
+    private static int version(Path fichier) {
+        String nom = fichier.getFileName().toString();
+        if (!nom.endsWith(EXTENSION) || nom.length() < 7 + EXTENSION.length()) return -1;
+        try {
+            YearMonth.parse(nom.substring(0, 7));
+            String reste = nom.substring(7, nom.length() - EXTENSION.length());
+            if (reste.isEmpty()) return 0;
+            return reste.startsWith(".") ? Integer.parseInt(reste.substring(1)) : -1;
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** Dossier d'une station : nom encodé, puis position (coordonnées absentes : 0, comme en base). */
+    private Path dossierStation(StationMeteo station) {
+        double lat = station.getLatitude() != null ? station.getLatitude() : 0.0;
+        double lon = station.getLongitude() != null ? station.getLongitude() : 0.0;
+        return dossierNom(station.getNom()).resolve(lat + "," + lon);
+    }
+
+    private Path dossierNom(String stationName) {
+        return racine.resolve(URLEncoder.encode(stationName, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Dossiers des stations de ce nom (un par position), précédés du dossier du nom lui-même,
+     * qui contient les segments de l'ancienne arborescence s'il y en a.
+     */
+    private List<Path> dossiersNom(String stationName) throws IOException {
+        Path dossierNom = dossierNom(stationName);
+        List<Path> result = new ArrayList<>();
+        if (!Files.isDirectory(dossierNom)) return result;
+
+        result.add(dossierNom);
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dossierNom, Files::isDirectory)) {
+            for (Path p : ds) result.add(p);
+        }
+        return result;
+    }
+
+    private static YearMonth mois(long epochMillis) {
+        return YearMonth.from(Instant.ofEpochMilli(epochMillis).atZone(ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,59 @@
+package ch.hearc.meteo.infrastructure.archive;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Lecture bit à bit dans un {@link ByteBuffer} (poids fort en premier).
+ * N'utilise que des lectures absolues : le tampon n'est jamais modifié,
+ * plusieurs lecteurs peuvent donc partager le même tampon sans synchronisation.
+ */
+class BitReader {
+
+    private final ByteBuffer buffer;
+    private long bitPosition; // position absolue en bits dans le tampon
+
+    BitReader(ByteBuffer buffer, int byteOffset) {
+        this.buffer = buffer;
+        this.bitPosition = (long) byteOffset << 3;
+    }
+
+    boolean readBit() {
+        int b = buffer.get((int) (bitPosition >>> 3));
+        boolean bit = (b & (0x80 >>> (bitPosition & 7))) != 0;
+        bitPosition++;
+        return bit;
+    }
+
+    /**
+     * Lit {@code nbBits} bits (0..64) et les renvoie dans les bits de poids faible.
+     */
+    long readBits(int nbBits) {
+        long valeur = 0;
+        int restants = nbBits;
+
+        // début non aligné : bit par bit jusqu'à la frontière d'octet
+        while (restants > 0 && (bitPosition & 7) != 0) {
+            valeur = (valeur << 1) | (readBit() ? 1L : 0L);
+            restants--;
+        }
+        // octets complets
+        while (restants >= 8) {
+            valeur = (valeur << 8) | (buffer.get((int) (bitPosition >>> 3)) & 0xFFL);
+            bitPosition += 8;
+            restants -= 8;
+        }
+        // fin
+        while (restants > 0) {
+            valeur = (valeur << 1) | (readBit() ? 1L : 0L);
+            restants--;
+        }
+        return valeur;
+    }
+
+    /** Lit une valeur signée de {@code nbBits} bits (complément à deux). */
+    long readSignedBits(int nbBits) {
+        long v = readBits(nbBits);
+        int shift = 64 - nbBits;
+        return (v << shift) >> shift;
+    }
+}
@@ -0,0 +1,50 @@
+package ch.hearc.meteo.infrastructure.archive;
+
+import java.util.Arrays;
+
+/**
+ * Écriture bit à bit dans un tampon d'octets extensible (poids fort en premier).
+ * Utilisé pour encoder les blocs des segments d'archive.
+ */
+class BitWriter {
+
+    private byte[] buffer = new byte[256];
+    private long bitPosition; // nombre de bits déjà écrits
+
+    /**
+     * Écrit les {@code nbBits} bits de poids faible de {@code valeur} (0..64).
+     */
+    void writeBits(long valeur, int nbBits) {
+        for (int i = nbBits - 1; i >= 0; i--) {
+            writeBit(((valeur >>> i) & 1L) != 0);
+        }
+    }
+
+    void writeBit(boolean bit) {
+        int index = (int) (bitPosition >>> 3);
+        if (index >= buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        if (bit) {
+            buffer[index] |= (byte) (0x80 >>> (bitPosition & 7));
+        }
+        bitPosition++;
+    }
+
+    /** Complète l'octet courant avec des zéros (début de bloc aligné). */
+    void alignToByte() {
+        bitPosition = (bitPosition + 7) & ~7L;
+        int index = (int) (bitPosition >>> 3);
+        if (index > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, index));
+        }
+    }
+
+    int byteLength() {
+        return (int) ((bitPosition + 7) >>> 3);
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, byteLength());
+    }
+}
@@ -0,0 +1,47 @@
+package ch.hearc.meteo.infrastructure.archive;
+
+/**
+ * Format binaire d'un segment d'archive (un fichier = une station, un mois).
+ *
+ * <pre>
+ * [en-tête]      int magic "MSEG", short version
+ * [blocs]        BLOC_TAILLE relevés max par bloc, chaque bloc commence sur un octet :
+ *                  - dates (ms)   : 1re date sur 64 bits, puis delta-of-delta à préfixe variable
+ *                  - 5 colonnes décimales (température, humidité, pression, visibilité, précipitation) :
+ *                    bitmap de présence (1 bit/relevé) puis valeurs présentes compressées XOR (Gorilla)
+ *                  - description : code dictionnaire sur N bits (0 = absente)
+ * [dictionnaire] int nb, puis pour chaque entrée : short longueur + octets UTF-8
+ * [index]        par bloc : long 1re date, long dernière date, int offset, int nb relevés
+ * [pied]         int offset dictionnaire, int offset index, int nb blocs, int nb relevés,
+ *                long date min, long date max, short version, int magic
+ * </pre>
+ *
+ * Les blocs sont indépendants : une lecture par plage ne décode que les blocs concernés.
+ */
+final class SegmentFormat {
+
+    static final int MAGIC = 0x4D534547; // "MSEG"
+    static final short VERSION = 1;
+
+    static final int BLOC_TAILLE = 256;
+
+    static final int HEADER_SIZE = 4 + 2;
+    static final int INDEX_ENTRY_SIZE = 8 + 8 + 4 + 4;
+    static final int FOOTER_SIZE = 4 + 4 + 4 + 4 + 8 + 8 + 2 + 4;
+
+    /** Nombre de colonnes décimales, dans l'ordre d'encodage. */
+    static final int NB_COLONNES = 5;
+    static final int COL_TEMPERATURE = 0;
+    static final int COL_HUMIDITE = 1;
+    static final int COL_PRESSION = 2;
+    static final int COL_VISIBILITE = 3;
+    static final int COL_PRECIPITATION = 4;
+
+    private SegmentFormat() {
+    }
+
+    /** Nombre de bits nécessaires pour coder les valeurs 0..max. */
+    static int bitsPour(int max) {
+        return max <= 0 ? 0 : 32 - Integer.numberOfLeadingZeros(max);
+    }
+}
@@ -0,0 +1,334 @@
+package ch.hearc.meteo.infrastructure.archive;
+
+import ch.hearc.meteo.business.Meteo;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ch.hearc.meteo.infrastructure.archive.SegmentFormat.*;
+
+/**
+ * Lecture d'un segment d'archive (voir {@link SegmentFormat}).
+ * Le pied et le dictionnaire sont chargés à l'ouverture ; l'index et les blocs
+ * sont lus directement dans le tampon (sans copie), à la demande.
+ *
+ * Toutes les lectures du tampon sont absolues : une instance ouverte via {@link #mapper(Path)}
+ * peut être partagée entre threads sans verrou.
+ *
+ * Références comptées : le créateur détient la première ({@link #liberer()} pour la rendre),
+ * chaque lecture en prend une avec {@link #acquerir()}. La dernière rendue libère la projection
+ * mémoire sans attendre le ramasse-miettes ; aucune lecture n'est alors possible.
+ */
+class SegmentReader {
+
+    // Libération explicite d'un tampon projeté (sun.misc.Unsafe#invokeCleaner, module jdk.unsupported) ;
+    // null si indisponible : la projection est alors libérée par le ramasse-miettes
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> classe = Class.forName("sun.misc.Unsafe");
+            Field instance = classe.getDeclaredField("theUnsafe");
+            instance.setAccessible(true);
+            unsafe = instance.get(null);
+            invokeCleaner = classe.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private final ByteBuffer buffer;
+    private final String[] dictionnaire;
+    private final int bitsDescription;
+    private final int nbBlocs;
+    private final int nbReleves;
+    private final int offsetIndex;
+    private final long dateMin;
+    private final long dateMax;
+
+    SegmentReader(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+
+        int fin = buffer.limit();
+        if (fin < HEADER_SIZE + FOOTER_SIZE
+                || buffer.getInt(0) != MAGIC
+                || buffer.getInt(fin - 4) != MAGIC) {
+            throw new IOException("Segment d'archive invalide");
+        }
+
+        int pied = fin - FOOTER_SIZE;
+        int offsetDictionnaire = buffer.getInt(pied);
+        this.offsetIndex = buffer.getInt(pied + 4);
+        this.nbBlocs = buffer.getInt(pied + 8);
+        this.nbReleves = buffer.getInt(pied + 12);
+        this.dateMin = buffer.getLong(pied + 16);
+        this.dateMax = buffer.getLong(pied + 24);
+        short version = buffer.getShort(pied + 32);
+        if (version != VERSION) {
+            throw new IOException("Version de segment non supportée : " + version);
+        }
+
+        int pos = offsetDictionnaire;
+        int taille = buffer.getInt(pos);
+        pos += 4;
+        this.dictionnaire = new String[taille];
+        for (int i = 0; i < taille; i++) {
+            int longueur = buffer.getShort(pos) & 0xFFFF;
+            pos += 2;
+            byte[] utf8 = new byte[longueur];
+            for (int k = 0; k < longueur; k++) {
+                utf8[k] = buffer.get(pos + k);
+            }
+            pos += longueur;
+            dictionnaire[i] = new String(utf8, StandardCharsets.UTF_8);
+        }
+        this.bitsDescription = bitsPour(taille);
+    }
+
+    /**
+     * Projette le fichier en mémoire en lecture seule ({@link FileChannel#map}).
+     * Les pages sont chargées par l'OS au fil des lectures ; le mapping reste valide après fermeture du canal.
+     */
+    static SegmentReader mapper(Path fichier) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            return new SegmentReader(canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()));
+        }
+    }
+
+    /** Prend une référence pour une lecture ; false si le lecteur est déjà fermé. */
+    boolean acquerir() {
+        while (true) {
+            int n = references.get();
+            if (n == 0) return false;
+            if (references.compareAndSet(n, n + 1)) return true;
+        }
+    }
+
+    /** Rend une référence ; la dernière libère la projection mémoire. */
+    void liberer() {
+        if (references.decrementAndGet() == 0) demapper(buffer);
+    }
+
+    boolean estFerme() {
+        return references.get() == 0;
+    }
+
+    private static void demapper(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null || !buffer.isDirect()) return;
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // projection libérée plus tard par le ramasse-miettes
+        }
+    }
+
+    int nbReleves() { return nbReleves; }
+    long dateMin() { return dateMin; }
+    long dateMax() { return dateMax; }
+
+    /** Tous les relevés du segment, par date croissante. */
+    List<Meteo> lireTout() {
+        return lirePlage(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Relevés dont la date (ms) est dans [debut, fin), par date croissante.
+     * Les blocs hors plage sont ignorés grâce à l'index.
+     */
+    List<Meteo> lirePlage(long debut, long fin) {
+        List<Meteo> result = new ArrayList<>();
+        for (int b = premierBlocApres(debut); b < nbBlocs; b++) {
+            if (premiereDate(b) >= fin) break;
+
+            for (Meteo m : decoderBloc(b)) {
+                long t = m.getDateMesureMs();
+                if (t >= debut && t < fin) result.add(m);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Relevé dont la date est dans la seconde [seconde, seconde + 1000), ou null.
+     * Recherche dichotomique sur l'index des blocs, puis sur les dates du bloc :
+     * seul le bloc trouvé est décodé, une seule fois.
+     */
+    Meteo trouverSeconde(long seconde) {
+        long fin = seconde + 1000;
+        int b = premierBlocApres(seconde);
+        if (b >= nbBlocs || premiereDate(b) >= fin) return null;
+
+        List<Meteo> bloc = decoderBloc(b);
+        int lo = 0;
+        int hi = bloc.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (bloc.get(mid).getDateMesureMs() < seconde) lo = mid + 1;
+            else hi = mid;
+        }
+        if (lo == bloc.size() || bloc.get(lo).getDateMesureMs() >= fin) return null;
+
+        return bloc.get(lo);
+    }
+
+    /** Premier bloc dont la dernière date est >= t (recherche dichotomique dans l'index). */
+    private int premierBlocApres(long t) {
+        int lo = 0;
+        int hi = nbBlocs;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (buffer.getLong(offsetIndex + mid * INDEX_ENTRY_SIZE + 8) < t) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private long premiereDate(int b) {
+        return buffer.getLong(offsetIndex + b * INDEX_ENTRY_SIZE);
+    }
+
+    /** Dates (ms) de tous les relevés, par ordre croissant (sans décoder les valeurs). */
+    long[] lireDates() {
+        long[] result = new long[nbReleves];
+        int i = 0;
+        for (int b = 0; b < nbBlocs; b++) {
+            int entree = offsetIndex + b * INDEX_ENTRY_SIZE;
+            int offset = buffer.getInt(entree + 16);
+            int taille = buffer.getInt(entree + 20);
+            long[] dates = decoderDates(new BitReader(buffer, offset), taille);
+            System.arraycopy(dates, 0, result, i, taille);
+            i += taille;
+        }
+        return result;
+    }
+
+    List<Meteo> decoderBloc(int b) {
+        int entree = offsetIndex + b * INDEX_ENTRY_SIZE;
+        int offset = buffer.getInt(entree + 16);
+        int taille = buffer.getInt(entree + 20);
+
+        BitReader bits = new BitReader(buffer, offset);
+        long[] dates = decoderDates(bits, taille);
+
+        List<Meteo> bloc = new ArrayList<>(taille);
+        for (int i = 0; i < taille; i++) {
+            Meteo m = new Meteo();
+            m.setDateMesureMs(dates[i]);
+            bloc.add(m);
+        }
+
+        for (int col = 0; col < NB_COLONNES; col++) {
+            double[] valeurs = new double[taille];
+            boolean[] presentes = decoderColonne(bits, taille, valeurs);
+            for (int i = 0; i < taille; i++) {
+                if (presentes[i]) affecter(bloc.get(i), col, valeurs[i]);
+            }
+        }
+
+        for (int i = 0; i < taille; i++) {
+            int code = (int) bits.readBits(bitsDescription);
+            if (code > 0) bloc.get(i).setDescription(dictionnaire[code - 1]);
+        }
+        return bloc;
+    }
+
+    static long[] decoderDates(BitReader bits, int taille) {
+        long[] dates = new long[taille];
+        long precedente = bits.readBits(64);
+        long deltaPrecedent = 0;
+        dates[0] = precedente;
+
+        for (int i = 1; i < taille; i++) {
+            long dod;
+            if (!bits.readBit()) {
+                dod = 0;
+            } else if (!bits.readBit()) {
+                dod = bits.readSignedBits(7);
+            } else if (!bits.readBit()) {
+                dod = bits.readSignedBits(12);
+            } else if (!bits.readBit()) {
+                dod = bits.readSignedBits(20);
+            } else {
+                dod = bits.readBits(64);
+            }
+            long delta = deltaPrecedent + dod;
+            precedente += delta;
+            dates[i] = precedente;
+            deltaPrecedent = delta;
+        }
+        return dates;
+    }
+
+    /**
+     * Décode une colonne décimale ; remplit {@code valeurs} et renvoie le masque de présence.
+     */
+    static boolean[] decoderColonne(BitReader bits, int taille, double[] valeurs) {
+        boolean[] presentes = new boolean[taille];
+        for (int i = 0; i < taille; i++) {
+            presentes[i] = bits.readBit();
+        }
+
+        boolean premiere = true;
+        long precedent = 0;
+        int zerosTete = 0;
+        int zerosQueue = 0;
+
+        for (int i = 0; i < taille; i++) {
+            if (!presentes[i]) continue;
+
+            if (premiere) {
+                precedent = bits.readBits(64);
+                premiere = false;
+            } else if (bits.readBit()) {
+                if (bits.readBit()) {
+                    zerosTete = (int) bits.readBits(5);
+                    int significatifs = (int) bits.readBits(6) + 1;
+                    zerosQueue = 64 - zerosTete - significatifs;
+                }
+                long xor = bits.readBits(64 - zerosTete - zerosQueue) << zerosQueue;
+                precedent ^= xor;
+            }
+            valeurs[i] = Double.longBitsToDouble(precedent);
+        }
+        return presentes;
+    }
+
+    static void affecter(Meteo m, int colonne, double v) {
+        switch (colonne) {
+            case COL_TEMPERATURE:
+                m.setTemperature(v);
+                break;
+            case COL_HUMIDITE:
+                m.setHumidite(v);
+                break;
+            case COL_PRESSION:
+                m.setPression(v);
+                break;
+            case COL_VISIBILITE:
+                m.setVisibilite((int) v);
+                break;
+            case COL_PRECIPITATION:
+                m.setPrecipitation(v);
+                break;
+            default:
+                throw new IllegalArgumentException("Colonne inconnue : " + colonne);
+        }
+    }
+}
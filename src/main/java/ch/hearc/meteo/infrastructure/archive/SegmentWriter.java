@@ -0,0 +1,211 @@
+package ch.hearc.meteo.infrastructure.archive;
+
+import ch.hearc.meteo.business.Meteo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ch.hearc.meteo.infrastructure.archive.SegmentFormat.*;
+
+/**
+ * Encode une liste de relevés (triés par date croissante) en segment binaire.
+ * Voir {@link SegmentFormat} pour la description du format.
+ */
+final class SegmentWriter {
+
+    private SegmentWriter() {
+    }
+
+    /**
+     * @param releves relevés d'une même station, triés par date croissante, date obligatoire
+     * @return contenu complet du fichier segment
+     */
+    static byte[] encoder(List<Meteo> releves) throws IOException {
+        // 1. Dictionnaire des descriptions (code 0 réservé à "absente")
+        Map<String, Integer> codes = new HashMap<>();
+        List<String> dictionnaire = new ArrayList<>();
+        for (Meteo m : releves) {
+            String d = m.getDescription();
+            if (d != null && !codes.containsKey(d)) {
+                dictionnaire.add(d);
+                codes.put(d, dictionnaire.size());
+            }
+        }
+        int bitsDescription = bitsPour(dictionnaire.size());
+
+        // 2. Blocs
+        BitWriter bits = new BitWriter();
+        int nbBlocs = (releves.size() + BLOC_TAILLE - 1) / BLOC_TAILLE;
+        long[] premieres = new long[nbBlocs];
+        long[] dernieres = new long[nbBlocs];
+        int[] offsets = new int[nbBlocs];
+        int[] tailles = new int[nbBlocs];
+
+        for (int b = 0; b < nbBlocs; b++) {
+            int debut = b * BLOC_TAILLE;
+            int fin = Math.min(debut + BLOC_TAILLE, releves.size());
+            List<Meteo> bloc = releves.subList(debut, fin);
+
+            bits.alignToByte();
+            offsets[b] = HEADER_SIZE + bits.byteLength();
+            tailles[b] = bloc.size();
+            premieres[b] = bloc.get(0).getDateMesureMs();
+            dernieres[b] = bloc.get(bloc.size() - 1).getDateMesureMs();
+
+            encoderDates(bits, bloc);
+            for (int col = 0; col < NB_COLONNES; col++) {
+                encoderColonne(bits, bloc, col);
+            }
+            for (Meteo m : bloc) {
+                String d = m.getDescription();
+                bits.writeBits(d != null ? codes.get(d) : 0, bitsDescription);
+            }
+        }
+        byte[] corps = bits.toByteArray();
+
+        // 3. Assemblage : en-tête, blocs, dictionnaire, index, pied
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(HEADER_SIZE + corps.length + 1024);
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.write(corps);
+
+        int offsetDictionnaire = out.size();
+        out.writeInt(dictionnaire.size());
+        for (String d : dictionnaire) {
+            byte[] utf8 = d.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(utf8.length);
+            out.write(utf8);
+        }
+
+        int offsetIndex = out.size();
+        for (int b = 0; b < nbBlocs; b++) {
+            out.writeLong(premieres[b]);
+            out.writeLong(dernieres[b]);
+            out.writeInt(offsets[b]);
+            out.writeInt(tailles[b]);
+        }
+
+        out.writeInt(offsetDictionnaire);
+        out.writeInt(offsetIndex);
+        out.writeInt(nbBlocs);
+        out.writeInt(releves.size());
+        out.writeLong(nbBlocs > 0 ? premieres[0] : 0L);
+        out.writeLong(nbBlocs > 0 ? dernieres[nbBlocs - 1] : 0L);
+        out.writeShort(VERSION);
+        out.writeInt(MAGIC);
+        out.flush();
+
+        return bos.toByteArray();
+    }
+
+    /**
+     * Dates : 1re valeur brute, puis delta-of-delta avec préfixes
+     * '0' (0), '10' (7 bits), '110' (12 bits), '1110' (20 bits), '1111' (64 bits).
+     */
+    private static void encoderDates(BitWriter bits, List<Meteo> bloc) {
+        long precedente = bloc.get(0).getDateMesureMs();
+        long deltaPrecedent = 0;
+        bits.writeBits(precedente, 64);
+
+        for (int i = 1; i < bloc.size(); i++) {
+            long t = bloc.get(i).getDateMesureMs();
+            long delta = t - precedente;
+            long dod = delta - deltaPrecedent;
+
+            if (dod == 0) {
+                bits.writeBit(false);
+            } else if (dod >= -64 && dod <= 63) {
+                bits.writeBits(0b10, 2);
+                bits.writeBits(dod, 7);
+            } else if (dod >= -2048 && dod <= 2047) {
+                bits.writeBits(0b110, 3);
+                bits.writeBits(dod, 12);
+            } else if (dod >= -524288 && dod <= 524287) {
+                bits.writeBits(0b1110, 4);
+                bits.writeBits(dod, 20);
+            } else {
+                bits.writeBits(0b1111, 4);
+                bits.writeBits(dod, 64);
+            }
+
+            precedente = t;
+            deltaPrecedent = delta;
+        }
+    }
+
+    /**
+     * Colonne décimale : bitmap de présence puis compression XOR façon Gorilla
+     * ('0' = valeur identique, '10' = même fenêtre de bits significatifs,
+     * '11' + 5 bits zéros de tête + 6 bits longueur = nouvelle fenêtre).
+     */
+    private static void encoderColonne(BitWriter bits, List<Meteo> bloc, int colonne) {
+        for (Meteo m : bloc) {
+            bits.writeBit(valeur(m, colonne) != null);
+        }
+
+        boolean premiere = true;
+        long precedent = 0;
+        int zerosTete = -1;
+        int zerosQueue = 0;
+
+        for (Meteo m : bloc) {
+            Double v = valeur(m, colonne);
+            if (v == null) continue;
+
+            long courant = Double.doubleToRawLongBits(v);
+            if (premiere) {
+                bits.writeBits(courant, 64);
+                premiere = false;
+                precedent = courant;
+                continue;
+            }
+
+            long xor = courant ^ precedent;
+            if (xor == 0) {
+                bits.writeBit(false);
+            } else {
+                bits.writeBit(true);
+                int tete = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                int queue = Long.numberOfTrailingZeros(xor);
+
+                if (zerosTete >= 0 && tete >= zerosTete && queue >= zerosQueue) {
+                    bits.writeBit(false);
+                    bits.writeBits(xor >>> zerosQueue, 64 - zerosTete - zerosQueue);
+                } else {
+                    int significatifs = 64 - tete - queue;
+                    bits.writeBit(true);
+                    bits.writeBits(tete, 5);
+                    bits.writeBits(significatifs - 1, 6);
+                    bits.writeBits(xor >>> queue, significatifs);
+                    zerosTete = tete;
+                    zerosQueue = queue;
+                }
+            }
+            precedent = courant;
+        }
+    }
+
+    static Double valeur(Meteo m, int colonne) {
+        switch (colonne) {
+            case COL_TEMPERATURE:
+                return m.getTemperature();
+            case COL_HUMIDITE:
+                return m.getHumidite();
+            case COL_PRESSION:
+                return m.getPression();
+            case COL_VISIBILITE:
+                return m.getVisibilite() != null ? m.getVisibilite().doubleValue() : null;
+            case COL_PRECIPITATION:
+                return m.getPrecipitation();
+            default:
+                throw new IllegalArgumentException("Colonne inconnue : " + colonne);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ch.hearc.meteo.infrastructure.flux;
+
+import ch.hearc.meteo.business.Meteo;
+
+/**
+ * Relevé enregistré en base, tel que lu dans le flux : position dans le flux, numéro du relevé
+ * (meteo_id), station (numéro, et nom s'il était connu à l'enregistrement) et valeurs du relevé.
+ */
+public class EvenementReleve {
+
+    private final long position;
+    private final long positionSuivante;
+    private final long dateEcritureMs;
+    private final long meteoId;
+    private final Integer stationId;
+    private final String nomStation;
+    private final Meteo releve;
+
+    EvenementReleve(long position, long positionSuivante, long dateEcritureMs, long meteoId,
+                    Integer stationId, String nomStation, Meteo releve) {
+        this.position = position;
+        this.positionSuivante = positionSuivante;
+        this.dateEcritureMs = dateEcritureMs;
+        this.meteoId = meteoId;
+        this.stationId = stationId;
+        this.nomStation = nomStation;
+        this.releve = releve;
+    }
+
+    /** Position de l'événement dans le flux (croissante). */
+    public long getPosition() { return position; }
+
+    /** Position de l'événement suivant : à valider pour reprendre après celui-ci. */
+    public long getPositionSuivante() { return positionSuivante; }
+
+    /** Instant de la publication dans le flux (ms epoch). */
+    public long getDateEcritureMs() { return dateEcritureMs; }
+
+    /**
+     * Numéro du relevé en base (meteo_id) : identifie le relevé, y compris lorsqu'il est publié
+     * plusieurs fois (rattrapage après un arrêt, livraison au moins une fois).
+     */
+    public long getMeteoId() { return meteoId; }
+
+    /** Numéro de la station (station_id), null si inconnu. */
+    public Integer getStationId() { return stationId; }
+
+    /** Nom de la station, null pour les relevés enregistrés par numéro de station (imports, pipeline). */
+    public String getNomStation() { return nomStation; }
+
+    /** Relevé enregistré, avec sa date effective en base. */
+    public Meteo getReleve() { return releve; }
+
+    @Override
+    public String toString() {
+        return "EvenementReleve{" + "position=" + position + ", meteoId=" + meteoId + ", station=" + stationId
+                + (nomStation != null ? " (" + nomStation + ")" : "") + ", releve=" + releve + '}';
+    }
+}
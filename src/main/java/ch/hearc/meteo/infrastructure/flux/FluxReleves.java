@@ -0,0 +1,482 @@
+package ch.hearc.meteo.infrastructure.flux;
+
+import ch.hearc.meteo.business.Meteo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Flux des relevés enregistrés en base : journal local en ajout seul, découpé en segments
+ * ({@link FormatFlux}), que les systèmes en aval lisent à leur rythme ({@link LecteurFlux})
+ * au lieu d'interroger la table meteo.
+ *
+ * - Le repository publie un lot par transaction, après la validation : le flux ne contient que
+ *   des relevés réellement en base, chacun avec son meteo_id.
+ * - Livraison au moins une fois, par meteo_id : chaque segment garde dans son en-tête le plus grand
+ *   meteo_id publié avant lui. Les relevés validés mais non publiés (arrêt brutal entre la validation
+ *   et la publication, erreur d'écriture) sont republiés depuis la base ({@link #reprise()}) : un
+ *   relevé peut alors apparaître deux fois, les consommateurs le reconnaissent par son meteo_id.
+ * - Un segment est fermé dès qu'il dépasse tailleSegment octets (un lot n'est jamais coupé) ;
+ *   seuls les segmentsGardes derniers sont conservés (0 : tous).
+ * - À l'ouverture, un dernier enregistrement incomplet (arrêt pendant l'écriture) est retiré.
+ * - Un seul écrivain par répertoire (verrou de fichier), y compris entre processus.
+ * - Les lecteurs du même processus sont réveillés dès la publication ; ceux d'un autre processus
+ *   sondent la fin du segment.
+ */
+public class FluxReleves implements AutoCloseable {
+
+    public static final long TAILLE_SEGMENT_DEFAUT = 64L * 1024 * 1024;
+
+    private final Path repertoire;
+    private final long tailleSegment;
+    private final int segmentsGardes;
+    private final boolean synchrone;
+    private final FileChannel canalVerrou;
+    private final FileLock verrou;
+
+    // segment en cours d'écriture et position de fin du flux (sous le verrou de l'objet)
+    private FileChannel segment;
+    private long debutSegment;
+    private long fin;
+    private ByteBuffer tampon = ByteBuffer.allocate(16 * 1024);
+    private boolean enEchec;
+    private boolean ferme;
+    // plus grand meteo_id publié (ou départ fixé), -1 : inconnu ; celui d'avant le segment en cours
+    private long dernierId = -1;
+    private long idAvantSegment = -1;
+
+    // fin publiée, lue par les lecteurs sans verrou ; attente sur signal
+    private volatile long finPubliee;
+    private final Object signal = new Object();
+
+    private final AtomicLong evenements = new AtomicLong();
+    private final AtomicLong lots = new AtomicLong();
+    private final AtomicLong segmentsCrees = new AtomicLong();
+
+    /**
+     * Ouvre (ou crée) le flux du répertoire.
+     * @param tailleSegment taille d'un segment avant d'en commencer un autre (octets)
+     * @param segmentsGardes segments conservés, le plus ancien supprimé au-delà (0 : tous)
+     * @param synchrone forcer l'écriture sur disque à chaque lot (sinon : cache du système)
+     * @throws IOException répertoire inaccessible, ou flux déjà ouvert en écriture
+     */
+    public FluxReleves(Path repertoire, long tailleSegment, int segmentsGardes, boolean synchrone) throws IOException {
+        if (tailleSegment <= FormatFlux.HEADER_SIZE || segmentsGardes < 0) {
+            throw new IllegalArgumentException("taille de segment ou nombre de segments invalide");
+        }
+        this.repertoire = repertoire;
+        this.tailleSegment = tailleSegment;
+        this.segmentsGardes = segmentsGardes;
+        this.synchrone = synchrone;
+        Files.createDirectories(repertoire);
+
+        canalVerrou = FileChannel.open(repertoire.resolve("ecrivain.verrou"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock v;
+        try {
+            v = canalVerrou.tryLock();
+        } catch (OverlappingFileLockException dejaOuvert) {
+            v = null; // déjà ouvert en écriture dans ce processus
+        }
+        if (v == null) {
+            canalVerrou.close();
+            throw new IOException(repertoire + " : flux déjà ouvert en écriture");
+        }
+        verrou = v;
+
+        try {
+            TreeMap<Long, Path> segments = segments(repertoire);
+            if (segments.isEmpty()) {
+                nouveauSegment(0);
+            } else {
+                reprendre(segments.lastKey(), segments.lastEntry().getValue());
+            }
+        } catch (IOException | RuntimeException e) {
+            verrou.release();
+            canalVerrou.close();
+            throw e;
+        }
+        finPubliee = fin;
+    }
+
+    public FluxReleves(Path repertoire) throws IOException {
+        this(repertoire, TAILLE_SEGMENT_DEFAUT, 0, false);
+    }
+
+    /** Lot vide, à remplir pendant la transaction puis à publier après la validation. */
+    public Lot nouveauLot() {
+        return new Lot();
+    }
+
+    /**
+     * Ajoute les relevés du lot à la fin du flux et réveille les lecteurs en attente.
+     * @throws IOException écriture impossible ; le flux est alors ramené au dernier lot complet
+     */
+    public void publier(Lot lot) throws IOException {
+        if (lot == null || lot.elements.isEmpty()) return;
+        long nouvelleFin;
+        synchronized (this) {
+            if (ferme) throw new IOException("flux des relevés fermé");
+            if (enEchec) throw new IOException("flux des relevés arrêté après une erreur d'écriture");
+
+            int taille = 0;
+            long idMax = dernierId;
+            for (Element e : lot.elements) {
+                taille += FormatFlux.taille(e.nomStation, e.releve);
+                idMax = Math.max(idMax, e.meteoId);
+            }
+            if (fin > debutSegment && FormatFlux.HEADER_SIZE + (fin - debutSegment) + taille > tailleSegment) {
+                changerDeSegment();
+            }
+
+            if (tampon.capacity() < taille) tampon = ByteBuffer.allocate(Math.max(taille, tampon.capacity() * 2));
+            tampon.clear();
+            long maintenant = System.currentTimeMillis();
+            for (Element e : lot.elements) {
+                FormatFlux.ecrire(tampon, maintenant, e.meteoId, e.stationId, e.nomStation, e.dateReleveMs, e.releve);
+            }
+            tampon.flip();
+
+            long decalage = FormatFlux.HEADER_SIZE + (fin - debutSegment);
+            try {
+                while (tampon.hasRemaining()) {
+                    segment.write(tampon, decalage + tampon.position());
+                }
+                if (synchrone) segment.force(false);
+            } catch (IOException e) {
+                annulerEcriture(decalage);
+                throw e;
+            }
+            fin += taille;
+            dernierId = idMax;
+            nouvelleFin = fin;
+            evenements.addAndGet(lot.elements.size());
+            lots.incrementAndGet();
+        }
+        synchronized (signal) {
+            // deux lots publiés de suite peuvent arriver ici dans le désordre
+            if (nouvelleFin > finPubliee) finPubliee = nouvelleFin;
+            signal.notifyAll();
+        }
+    }
+
+    /**
+     * Plus grand meteo_id publié, ou départ fixé par {@link #fixerDepart(long)} ; -1 pour un flux
+     * neuf dont le départ n'est pas encore fixé.
+     */
+    public synchronized long dernierIdPublie() {
+        return dernierId;
+    }
+
+    /**
+     * Fixe le départ d'un flux neuf : les relevés déjà en base jusqu'à ce meteo_id ne seront pas
+     * rattrapés. Sans effet si le flux connaît déjà un meteo_id.
+     */
+    public void fixerDepart(long meteoIdMax) throws IOException {
+        synchronized (this) {
+            if (ferme) throw new IOException("flux des relevés fermé");
+            if (dernierId >= 0) return;
+            ByteBuffer id = ByteBuffer.allocate(8);
+            id.putLong(0, meteoIdMax);
+            while (id.hasRemaining()) segment.write(id, FormatFlux.DECALAGE_ID_AVANT + id.position());
+            if (synchrone) segment.force(false);
+            dernierId = meteoIdMax;
+            idAvantSegment = meteoIdMax;
+        }
+    }
+
+    /**
+     * Relevés à rattraper depuis la base : ceux dont le meteo_id dépasse le plancher et qui ne sont
+     * pas dans les deux derniers segments. Le plancher est le meteo_id d'avant l'avant-dernier
+     * segment, pour retrouver aussi les relevés validés dans le désordre des meteo_id (transactions
+     * concurrentes) ; sans avant-dernier segment, celui d'avant le segment en cours.
+     * @throws IOException flux fermé, arrêté ou illisible
+     */
+    public Reprise reprise() throws IOException {
+        Path courant;
+        long limiteCourant;
+        long idAvantCourant;
+        Map.Entry<Long, Path> precedent;
+        synchronized (this) {
+            if (ferme) throw new IOException("flux des relevés fermé");
+            if (enEchec) throw new IOException("flux des relevés arrêté après une erreur d'écriture");
+            courant = repertoire.resolve(FormatFlux.nomSegment(debutSegment));
+            limiteCourant = FormatFlux.HEADER_SIZE + (fin - debutSegment);
+            idAvantCourant = idAvantSegment;
+            precedent = segments(repertoire).lowerEntry(debutSegment);
+        }
+
+        // lus hors du verrou : seule la partie déjà écrite du segment en cours est parcourue
+        IdsLus ids = new IdsLus();
+        long plancher = idAvantCourant;
+        if (precedent != null) {
+            try (FileChannel canal = FileChannel.open(precedent.getValue(), StandardOpenOption.READ)) {
+                ByteBuffer entete = ByteBuffer.allocate(FormatFlux.HEADER_SIZE);
+                FormatFlux.lire(canal, entete, 0);
+                long idAvant = entete.getLong(FormatFlux.DECALAGE_ID_AVANT);
+                LecteurFlux.finValide(canal, FormatFlux.HEADER_SIZE, canal.size(), ids);
+                if (idAvant >= 0) plancher = idAvant;
+            } catch (NoSuchFileException supprime) {
+                // retiré entre-temps (segments gardés) : plancher du segment en cours
+            }
+        }
+        try (FileChannel canal = FileChannel.open(courant, StandardOpenOption.READ)) {
+            LecteurFlux.finValide(canal, FormatFlux.HEADER_SIZE, limiteCourant, ids);
+        }
+        long[] tries = ids.tries();
+        // départ jamais fixé : à partir du plus petit meteo_id présent
+        if (plancher < 0 && tries.length > 0) plancher = tries[0] - 1;
+        return new Reprise(plancher, tries);
+    }
+
+    /** Lecteur du flux pour un consommateur (position reprise depuis sa dernière validation). */
+    public LecteurFlux lecteur(String consommateur) throws IOException {
+        return new LecteurFlux(repertoire, consommateur, this);
+    }
+
+    public Path getRepertoire() {
+        return repertoire;
+    }
+
+    /** Position de fin du flux : celle du prochain relevé publié. */
+    public long fin() {
+        return finPubliee;
+    }
+
+    /**
+     * Attend que le flux dépasse la position donnée.
+     * @return true si un relevé est disponible à cette position
+     */
+    boolean attendre(long position, long attenteMs) throws InterruptedException {
+        if (finPubliee > position) return true;
+        long limite = System.nanoTime() + attenteMs * 1_000_000L;
+        synchronized (signal) {
+            long restant;
+            while (finPubliee <= position && (restant = limite - System.nanoTime()) > 0) {
+                signal.wait(Math.max(1, restant / 1_000_000L));
+            }
+        }
+        return finPubliee > position;
+    }
+
+    /** Compteurs (affichés en quittant l'application). */
+    public String statistiques() {
+        return evenements.get() + " relevé(s) publié(s) en " + lots.get() + " lot(s), "
+                + segmentsCrees.get() + " segment(s) créé(s), fin du flux à " + finPubliee;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (ferme) return;
+            ferme = true;
+            try {
+                segment.close();
+            } finally {
+                verrou.release();
+                canalVerrou.close();
+            }
+        }
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+    }
+
+    // -------------------------------------------------------
+    // SEGMENTS
+    // -------------------------------------------------------
+
+    /** Segments du répertoire, par position de début. */
+    static TreeMap<Long, Path> segments(Path repertoire) throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        if (!Files.isDirectory(repertoire)) return segments;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(repertoire, "*" + FormatFlux.EXTENSION)) {
+            for (Path p : ds) {
+                long debut = FormatFlux.positionSegment(p);
+                if (debut >= 0) segments.put(debut, p);
+            }
+        }
+        return segments;
+    }
+
+    private void nouveauSegment(long debut) throws IOException {
+        Path fichier = repertoire.resolve(FormatFlux.nomSegment(debut));
+        FileChannel canal = FileChannel.open(fichier, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer entete = ByteBuffer.allocate(FormatFlux.HEADER_SIZE);
+        entete.putInt(FormatFlux.MAGIC).putShort(FormatFlux.VERSION).putLong(debut).putLong(dernierId).flip();
+        while (entete.hasRemaining()) canal.write(entete, entete.position());
+        segment = canal;
+        debutSegment = debut;
+        fin = debut;
+        idAvantSegment = dernierId;
+        segmentsCrees.incrementAndGet();
+    }
+
+    /**
+     * Rouvre le dernier segment et retire un éventuel enregistrement incomplet en fin de fichier ;
+     * le dernier meteo_id publié est repris de l'en-tête et des enregistrements du segment.
+     */
+    private void reprendre(long debut, Path fichier) throws IOException {
+        FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long taille = canal.size();
+        if (taille < FormatFlux.HEADER_SIZE) {
+            canal.close();
+            nouveauSegment(debut); // en-tête jamais écrit en entier : segment vide
+            return;
+        }
+        ByteBuffer entete = ByteBuffer.allocate(FormatFlux.HEADER_SIZE);
+        FormatFlux.lire(canal, entete, 0);
+        if (entete.getInt() != FormatFlux.MAGIC || entete.getShort() != FormatFlux.VERSION || entete.getLong() != debut) {
+            canal.close();
+            throw new IOException(fichier + " : pas un segment du flux des relevés");
+        }
+
+        long idAvant = entete.getLong();
+        IdsLus ids = new IdsLus();
+        long valide = LecteurFlux.finValide(canal, FormatFlux.HEADER_SIZE, taille, ids);
+        if (valide < taille) {
+            System.err.println("[WARN] Flux des relevés : " + (taille - valide)
+                    + " octet(s) incomplet(s) retiré(s) en fin de " + fichier.getFileName());
+            canal.truncate(valide);
+        }
+        segment = canal;
+        debutSegment = debut;
+        fin = debut + (valide - FormatFlux.HEADER_SIZE);
+        idAvantSegment = idAvant;
+        dernierId = Math.max(idAvant, ids.max);
+    }
+
+    private void changerDeSegment() throws IOException {
+        FileChannel ancien = segment;
+        if (synchrone) ancien.force(false);
+        nouveauSegment(fin);
+        ancien.close();
+        if (segmentsGardes > 0) {
+            TreeMap<Long, Path> segments = segments(repertoire);
+            List<Path> aSupprimer = new ArrayList<>(segments.headMap(debutSegment).values());
+            int enTrop = segments.size() - segmentsGardes;
+            for (int i = 0; i < enTrop && i < aSupprimer.size(); i++) {
+                try {
+                    Files.deleteIfExists(aSupprimer.get(i));
+                } catch (IOException e) {
+                    // segment encore ouvert par un lecteur (Windows) : supprimé au prochain changement
+                    System.err.println("[WARN] Flux des relevés : suppression de " + aSupprimer.get(i).getFileName()
+                            + " impossible (" + e.getMessage() + ")");
+                }
+            }
+        }
+    }
+
+    /** Écriture interrompue : le segment est ramené à la fin du dernier lot complet. */
+    private void annulerEcriture(long decalage) {
+        try {
+            segment.truncate(decalage);
+        } catch (IOException e) {
+            enEchec = true;
+            System.err.println("[WARN] Flux des relevés arrêté : " + e.getMessage());
+        }
+    }
+
+    // -------------------------------------------------------
+    // REPRISE
+    // -------------------------------------------------------
+
+    /** Résultat de {@link #reprise()}. */
+    public static final class Reprise {
+        private final long plancher;
+        private final long[] ids;
+
+        private Reprise(long plancher, long[] ids) {
+            this.plancher = plancher;
+            this.ids = ids;
+        }
+
+        /** meteo_id à partir duquel (exclu) relire la base ; -1 : flux vide sans départ fixé. */
+        public long getPlancher() {
+            return plancher;
+        }
+
+        /** Vrai si ce relevé est déjà dans le flux (segments parcourus). */
+        public boolean contient(long meteoId) {
+            return Arrays.binarySearch(ids, meteoId) >= 0;
+        }
+    }
+
+    /** meteo_id rencontrés en parcourant un segment. */
+    private static final class IdsLus implements LongConsumer {
+        long[] ids = new long[1024];
+        int n;
+        long max = -1;
+
+        @Override
+        public void accept(long id) {
+            if (n == ids.length) ids = Arrays.copyOf(ids, n * 2);
+            ids[n++] = id;
+            if (id > max) max = id;
+        }
+
+        long[] tries() {
+            long[] t = Arrays.copyOf(ids, n);
+            Arrays.sort(t);
+            return t;
+        }
+    }
+
+    // -------------------------------------------------------
+    // LOT
+    // -------------------------------------------------------
+
+    /** Relevés d'une transaction, publiés ensemble. Non synchronisé : un lot par transaction. */
+    public static final class Lot {
+        private final List<Element> elements = new ArrayList<>();
+
+        private Lot() {
+        }
+
+        /**
+         * @param meteoId numéro du relevé en base
+         * @param stationId numéro de la station (null si inconnu)
+         * @param nomStation nom de la station, ou null
+         * @param dateReleveMs date du relevé telle qu'enregistrée en base
+         */
+        public void ajouter(long meteoId, Integer stationId, String nomStation, long dateReleveMs, Meteo releve) {
+            elements.add(new Element(meteoId, stationId, nomStation, dateReleveMs, releve));
+        }
+
+        public int taille() {
+            return elements.size();
+        }
+    }
+
+    private static final class Element {
+        final long meteoId;
+        final Integer stationId;
+        final String nomStation;
+        final long dateReleveMs;
+        final Meteo releve;
+
+        Element(long meteoId, Integer stationId, String nomStation, long dateReleveMs, Meteo releve) {
+            this.meteoId = meteoId;
+            this.stationId = stationId;
+            this.nomStation = nomStation;
+            this.dateReleveMs = dateReleveMs;
+            this.releve = releve;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package ch.hearc.meteo.infrastructure.flux;
+
+import ch.hearc.meteo.business.Meteo;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * Format binaire d'un segment du flux des relevés enregistrés.
+ *
+ * <pre>
+ * [en-tête]         int magic "MFLX", short version, long position du premier enregistrement,
+ *                   long plus grand meteo_id publié avant ce segment (-1 : flux neuf, départ pas encore fixé)
+ * [enregistrements] chacun : int longueur L, int CRC32 du contenu, contenu (L octets) :
+ *                     long date d'écriture (ms), long meteo_id, int station_id (-1 : inconnu),
+ *                     long date du relevé (ms),
+ *                     octet masque des champs présents, puis dans l'ordre ceux présents :
+ *                     double température, humidité, pression, précipitation ; int visibilité ;
+ *                     chaîne nom de la station, description (short longueur + octets UTF-8,
+ *                     CHAINE_MAX octets au plus)
+ * </pre>
+ *
+ * Positions : la position d'un enregistrement est celle du segment (en-tête) plus son décalage
+ * après l'en-tête ; le segment suivant commence à la position de fin du précédent. Les positions
+ * sont donc croissantes et continues d'un segment à l'autre, et un segment se retrouve par nom :
+ * {@code <position du premier enregistrement sur 20 chiffres>.flux}.
+ */
+final class FormatFlux {
+
+    static final int MAGIC = 0x4D464C58; // "MFLX"
+    static final short VERSION = 2;
+    static final String EXTENSION = ".flux";
+
+    static final int HEADER_SIZE = 4 + 2 + 8 + 8;
+    // décalage du plus grand meteo_id publié avant le segment, dans l'en-tête
+    static final int DECALAGE_ID_AVANT = 4 + 2 + 8;
+    static final int ENTETE_ENREGISTREMENT = 4 + 4;
+    // chaînes tronquées au-delà (colonnes de 255 caractères en base)
+    static final int CHAINE_MAX = 1024;
+    // longueur max d'un contenu : au-delà, enregistrement considéré comme corrompu
+    static final int CONTENU_MAX = 8 + 8 + 4 + 8 + 1 + 4 * 8 + 4 + 2 * (2 + CHAINE_MAX);
+
+    static final int TEMPERATURE = 1;
+    static final int HUMIDITE = 1 << 1;
+    static final int PRESSION = 1 << 2;
+    static final int PRECIPITATION = 1 << 3;
+    static final int VISIBILITE = 1 << 4;
+    static final int NOM_STATION = 1 << 5;
+    static final int DESCRIPTION = 1 << 6;
+
+    private FormatFlux() {
+    }
+
+    static String nomSegment(long position) {
+        return String.format(Locale.ROOT, "%020d", position) + EXTENSION;
+    }
+
+    /** Position du premier enregistrement d'après le nom du fichier, -1 si ce n'est pas un segment. */
+    static long positionSegment(Path fichier) {
+        String nom = fichier.getFileName().toString();
+        if (!nom.endsWith(EXTENSION) || nom.length() != 20 + EXTENSION.length()) return -1;
+        try {
+            return Long.parseLong(nom.substring(0, 20));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** Taille de l'enregistrement complet (en-tête compris) d'un relevé. */
+    static int taille(String nomStation, Meteo m) {
+        int n = ENTETE_ENREGISTREMENT + 8 + 8 + 4 + 8 + 1;
+        if (m.getTemperature() != null) n += 8;
+        if (m.getHumidite() != null) n += 8;
+        if (m.getPression() != null) n += 8;
+        if (m.getPrecipitation() != null) n += 8;
+        if (m.getVisibilite() != null) n += 4;
+        if (nomStation != null) n += 2 + utf8(nomStation).length;
+        if (m.getDescription() != null) n += 2 + utf8(m.getDescription()).length;
+        return n;
+    }
+
+    /** Écrit l'enregistrement complet (longueur, CRC, contenu) à la position courante du tampon. */
+    static void ecrire(ByteBuffer b, long dateEcritureMs, long meteoId, Integer stationId, String nomStation,
+                       long dateReleveMs, Meteo m) {
+        int debut = b.position();
+        b.position(debut + ENTETE_ENREGISTREMENT);
+        b.putLong(dateEcritureMs);
+        b.putLong(meteoId);
+        b.putInt(stationId != null ? stationId : -1);
+        b.putLong(dateReleveMs);
+        int masque = (m.getTemperature() != null ? TEMPERATURE : 0)
+                | (m.getHumidite() != null ? HUMIDITE : 0)
+                | (m.getPression() != null ? PRESSION : 0)
+                | (m.getPrecipitation() != null ? PRECIPITATION : 0)
+                | (m.getVisibilite() != null ? VISIBILITE : 0)
+                | (nomStation != null ? NOM_STATION : 0)
+                | (m.getDescription() != null ? DESCRIPTION : 0);
+        b.put((byte) masque);
+        if (m.getTemperature() != null) b.putDouble(m.getTemperature());
+        if (m.getHumidite() != null) b.putDouble(m.getHumidite());
+        if (m.getPression() != null) b.putDouble(m.getPression());
+        if (m.getPrecipitation() != null) b.putDouble(m.getPrecipitation());
+        if (m.getVisibilite() != null) b.putInt(m.getVisibilite());
+        if (nomStation != null) ecrireChaine(b, nomStation);
+        if (m.getDescription() != null) ecrireChaine(b, m.getDescription());
+
+        int fin = b.position();
+        int longueur = fin - debut - ENTETE_ENREGISTREMENT;
+        b.putInt(debut, longueur);
+        b.putInt(debut + 4, crc(b, debut + ENTETE_ENREGISTREMENT, longueur));
+    }
+
+    /** Décode le contenu (sans l'en-tête) d'un enregistrement déjà vérifié. */
+    static EvenementReleve lire(ByteBuffer contenu, long position, long positionSuivante) {
+        long dateEcritureMs = contenu.getLong();
+        long meteoId = contenu.getLong();
+        int stationId = contenu.getInt();
+        Meteo m = new Meteo();
+        m.setDateMesureMs(contenu.getLong());
+        int masque = contenu.get();
+        if ((masque & TEMPERATURE) != 0) m.setTemperature(contenu.getDouble());
+        if ((masque & HUMIDITE) != 0) m.setHumidite(contenu.getDouble());
+        if ((masque & PRESSION) != 0) m.setPression(contenu.getDouble());
+        if ((masque & PRECIPITATION) != 0) m.setPrecipitation(contenu.getDouble());
+        if ((masque & VISIBILITE) != 0) m.setVisibilite(contenu.getInt());
+        String nomStation = (masque & NOM_STATION) != 0 ? lireChaine(contenu) : null;
+        if ((masque & DESCRIPTION) != 0) m.setDescription(lireChaine(contenu));
+        return new EvenementReleve(position, positionSuivante, dateEcritureMs, meteoId,
+                stationId >= 0 ? stationId : null, nomStation, m);
+    }
+
+    /** meteo_id d'un contenu déjà vérifié, sans le décoder. */
+    static long meteoId(ByteBuffer contenu) {
+        return contenu.getLong(contenu.position() + 8);
+    }
+
+    /**
+     * Remplit le tampon (de sa position à sa limite) depuis le fichier à la position donnée, puis le
+     * prépare à la lecture (flip).
+     * @throws EOFException fin de fichier avant la fin du tampon
+     */
+    static void lire(FileChannel canal, ByteBuffer b, long position) throws IOException {
+        int debut = b.position();
+        while (b.hasRemaining()) {
+            if (canal.read(b, position + b.position() - debut) < 0) throw new EOFException();
+        }
+        b.flip();
+    }
+
+    static int crc(ByteBuffer b, int debut, int longueur) {
+        CRC32 crc = new CRC32();
+        ByteBuffer vue = b.duplicate();
+        vue.limit(debut + longueur).position(debut);
+        crc.update(vue);
+        return (int) crc.getValue();
+    }
+
+    private static void ecrireChaine(ByteBuffer b, String s) {
+        byte[] octets = utf8(s);
+        b.putShort((short) octets.length);
+        b.put(octets);
+    }
+
+    private static String lireChaine(ByteBuffer b) {
+        byte[] octets = new byte[b.getShort() & 0xFFFF];
+        b.get(octets);
+        return new String(octets, StandardCharsets.UTF_8);
+    }
+
+    /** UTF-8 tronqué à CHAINE_MAX octets. */
+    private static byte[] utf8(String s) {
+        byte[] octets = s.getBytes(StandardCharsets.UTF_8);
+        if (octets.length <= CHAINE_MAX) return octets;
+        byte[] tronque = new byte[CHAINE_MAX];
+        System.arraycopy(octets, 0, tronque, 0, tronque.length);
+        return tronque;
+    }
+}
@@ -0,0 +1,292 @@
+package ch.hearc.meteo.infrastructure.flux;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.function.LongConsumer;
+
+/**
+ * Lecture du flux des relevés ({@link FluxReleves}) par un consommateur nommé.
+ *
+ * La position validée ({@link #valider()}) est gardée dans {@code <répertoire>/consommateurs/<nom>.position} :
+ * un consommateur redémarré reprend après le dernier relevé validé. Les relevés lus mais pas encore
+ * validés sont relus après un redémarrage, et un relevé rattrapé depuis la base peut être publié
+ * deux fois (livraison au moins une fois) : un consommateur les reconnaît par leur meteo_id.
+ *
+ * Attente des nouveaux relevés : réveil immédiat si l'écrivain est dans le même processus
+ * ({@link FluxReleves#lecteur(String)}), sinon sondage du fichier (1 à 20 ms).
+ * Une position plus ancienne que le premier segment conservé reprend au premier segment.
+ *
+ * Non synchronisé : un lecteur par thread.
+ */
+public class LecteurFlux implements AutoCloseable {
+
+    private static final long SONDAGE_MIN_MS = 1;
+    private static final long SONDAGE_MAX_MS = 20;
+
+    private final Path repertoire;
+    private final String consommateur;
+    private final Path fichierPosition;
+    private final FluxReleves ecrivain; // null : écrivain dans un autre processus
+
+    private long position;
+    private long positionValidee;
+
+    // segment en cours de lecture
+    private FileChannel segment;
+    private long debutSegment;
+    private final ByteBuffer entete = ByteBuffer.allocate(FormatFlux.ENTETE_ENREGISTREMENT);
+    private final ByteBuffer contenu = ByteBuffer.allocate(FormatFlux.CONTENU_MAX);
+
+    /**
+     * Lecteur d'un flux écrit par un autre processus.
+     * @param consommateur nom du consommateur (lettres, chiffres, . _ -)
+     */
+    public static LecteurFlux ouvrir(Path repertoire, String consommateur) throws IOException {
+        return new LecteurFlux(repertoire, consommateur, null);
+    }
+
+    LecteurFlux(Path repertoire, String consommateur, FluxReleves ecrivain) throws IOException {
+        if (consommateur == null || !consommateur.matches("[A-Za-z0-9._-]+")) {
+            throw new IllegalArgumentException("nom de consommateur invalide : " + consommateur);
+        }
+        this.repertoire = repertoire;
+        this.consommateur = consommateur;
+        this.fichierPosition = repertoire.resolve("consommateurs").resolve(consommateur + ".position");
+        this.ecrivain = ecrivain;
+
+        if (Files.exists(fichierPosition)) {
+            Properties p = new Properties();
+            try (InputStream in = Files.newInputStream(fichierPosition)) {
+                p.load(in);
+            }
+            try {
+                position = Long.parseLong(p.getProperty("position", "0"));
+            } catch (NumberFormatException e) {
+                System.err.println("[WARN] Position du consommateur " + consommateur
+                        + " illisible (" + fichierPosition + ") : lecture depuis le début du flux.");
+            }
+        }
+        positionValidee = position;
+    }
+
+    /**
+     * Relevés suivants, au plus max ; attend jusqu'à attenteMs qu'il y en ait au moins un.
+     * @return relevés dans l'ordre du flux, liste vide si aucun dans le délai
+     * @throws IOException segment illisible ou corrompu
+     */
+    public List<EvenementReleve> lire(int max, long attenteMs) throws IOException, InterruptedException {
+        List<EvenementReleve> lus = new ArrayList<>();
+        lireDisponibles(max, lus);
+        if (!lus.isEmpty() || attenteMs <= 0) return lus;
+
+        long limite = System.nanoTime() + attenteMs * 1_000_000L;
+        long sondageMs = SONDAGE_MIN_MS;
+        long restantMs;
+        while (lus.isEmpty() && (restantMs = (limite - System.nanoTime()) / 1_000_000L) > 0) {
+            if (ecrivain != null) {
+                ecrivain.attendre(position, restantMs);
+            } else {
+                Thread.sleep(Math.min(sondageMs, restantMs));
+                sondageMs = Math.min(SONDAGE_MAX_MS, sondageMs * 2);
+            }
+            lireDisponibles(max, lus);
+        }
+        return lus;
+    }
+
+    /** Position du prochain relevé à lire. */
+    public long position() {
+        return position;
+    }
+
+    /** Dernière position validée (reprise après un redémarrage). */
+    public long positionValidee() {
+        return positionValidee;
+    }
+
+    /**
+     * Relit le flux à partir d'une position : une position déjà rendue par un événement
+     * ({@link EvenementReleve#getPosition()}), ou 0 pour tout relire.
+     */
+    public void repositionner(long nouvellePosition) throws IOException {
+        fermerSegment();
+        position = Math.max(0, nouvellePosition);
+    }
+
+    /** Valide tous les relevés lus jusqu'ici : un redémarrage reprend après eux. */
+    public void valider() throws IOException {
+        valider(position);
+    }
+
+    /** Valide jusqu'à la position donnée (en général {@link EvenementReleve#getPositionSuivante()}). */
+    public void valider(long nouvellePosition) throws IOException {
+        if (nouvellePosition == positionValidee) return;
+        Properties p = new Properties();
+        p.setProperty("position", Long.toString(nouvellePosition));
+        Files.createDirectories(fichierPosition.getParent());
+
+        // écrit à côté puis renommé : jamais de position à moitié écrite
+        Path tmp = fichierPosition.resolveSibling(fichierPosition.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            p.store(out, "Position validée du consommateur " + consommateur);
+        }
+        try {
+            Files.move(tmp, fichierPosition, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, fichierPosition, StandardCopyOption.REPLACE_EXISTING);
+        }
+        positionValidee = nouvellePosition;
+    }
+
+    /** Octets du flux pas encore lus (0 : à jour). */
+    public long retard() throws IOException {
+        long fin;
+        if (ecrivain != null) {
+            fin = ecrivain.fin();
+        } else {
+            TreeMap<Long, Path> segments = FluxReleves.segments(repertoire);
+            if (segments.isEmpty()) return 0;
+            Map.Entry<Long, Path> dernier = segments.lastEntry();
+            try {
+                fin = dernier.getKey() + Math.max(0, Files.size(dernier.getValue()) - FormatFlux.HEADER_SIZE);
+            } catch (NoSuchFileException e) {
+                return 0;
+            }
+        }
+        return Math.max(0, fin - position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        fermerSegment();
+    }
+
+    // -------------------------------------------------------
+    // LECTURE DES SEGMENTS
+    // -------------------------------------------------------
+
+    private void lireDisponibles(int max, List<EvenementReleve> lus) throws IOException {
+        boolean relu = false;
+        while (lus.size() < max) {
+            if (segment == null && !ouvrirSegment()) return;
+
+            long decalage = FormatFlux.HEADER_SIZE + (position - debutSegment);
+            long taille = segment.size();
+            if (decalage + FormatFlux.ENTETE_ENREGISTREMENT > taille) {
+                // fin du segment : le suivant commence exactement ici, s'il existe
+                if (Files.exists(repertoire.resolve(FormatFlux.nomSegment(position)))) {
+                    fermerSegment();
+                    continue;
+                }
+                return;
+            }
+
+            int longueur;
+            boolean complet;
+            try {
+                entete.clear();
+                FormatFlux.lire(segment, entete, decalage);
+                longueur = entete.getInt();
+                int crc = entete.getInt();
+                complet = longueur > 0 && longueur <= FormatFlux.CONTENU_MAX
+                        && decalage + FormatFlux.ENTETE_ENREGISTREMENT + longueur <= taille;
+                if (complet) {
+                    contenu.clear().limit(longueur);
+                    FormatFlux.lire(segment, contenu, decalage + FormatFlux.ENTETE_ENREGISTREMENT);
+                    complet = FormatFlux.crc(contenu, 0, longueur) == crc;
+                }
+            } catch (EOFException tronque) {
+                return; // fin incomplète retirée par l'écrivain pendant la lecture
+            }
+            if (!complet) {
+                // enregistrement en cours d'écriture, sauf si un segment suivant existe déjà :
+                // relu une fois (écriture terminée entre-temps), puis considéré comme corrompu
+                if (FluxReleves.segments(repertoire).higherKey(debutSegment) == null) return;
+                if (!relu) {
+                    relu = true;
+                    continue;
+                }
+                throw new IOException("flux des relevés corrompu à la position " + position
+                        + " (" + FormatFlux.nomSegment(debutSegment) + ")");
+            }
+            relu = false;
+
+            long suivante = position + FormatFlux.ENTETE_ENREGISTREMENT + longueur;
+            lus.add(FormatFlux.lire(contenu, position, suivante));
+            position = suivante;
+        }
+    }
+
+    /** Ouvre le segment contenant la position ; false si le flux est vide. */
+    private boolean ouvrirSegment() throws IOException {
+        while (true) {
+            TreeMap<Long, Path> segments = FluxReleves.segments(repertoire);
+            if (segments.isEmpty()) return false;
+            if (position < segments.firstKey()) {
+                System.err.println("[WARN] Consommateur " + consommateur + " : relevés " + position + " à "
+                        + segments.firstKey() + " supprimés du flux (segments anciens), lecture reprise après.");
+                position = segments.firstKey();
+            }
+            Map.Entry<Long, Path> e = segments.floorEntry(position);
+            try {
+                segment = FileChannel.open(e.getValue(), StandardOpenOption.READ);
+                debutSegment = e.getKey();
+                return true;
+            } catch (NoSuchFileException supprime) {
+                // segment supprimé entre la liste et l'ouverture : on recommence
+            }
+        }
+    }
+
+    private void fermerSegment() throws IOException {
+        if (segment != null) {
+            segment.close();
+            segment = null;
+        }
+    }
+
+    /**
+     * Fin du dernier enregistrement complet d'un segment, en partant du décalage donné
+     * (utilisé par l'écrivain pour retirer une fin incomplète).
+     * @param ids si non null, reçoit le meteo_id de chaque enregistrement complet
+     */
+    static long finValide(FileChannel canal, long decalage, long taille, LongConsumer ids) throws IOException {
+        ByteBuffer e = ByteBuffer.allocate(FormatFlux.ENTETE_ENREGISTREMENT);
+        ByteBuffer c = ByteBuffer.allocate(FormatFlux.CONTENU_MAX);
+        while (decalage + FormatFlux.ENTETE_ENREGISTREMENT <= taille) {
+            e.clear();
+            try {
+                FormatFlux.lire(canal, e, decalage);
+            } catch (EOFException fin) {
+                break;
+            }
+            int longueur = e.getInt();
+            int crc = e.getInt();
+            if (longueur <= 0 || longueur > FormatFlux.CONTENU_MAX
+                    || decalage + FormatFlux.ENTETE_ENREGISTREMENT + longueur > taille) {
+                break;
+            }
+            c.clear().limit(longueur);
+            FormatFlux.lire(canal, c, decalage + FormatFlux.ENTETE_ENREGISTREMENT);
+            if (FormatFlux.crc(c, 0, longueur) != crc) break;
+            if (ids != null) ids.accept(FormatFlux.meteoId(c));
+            decalage += FormatFlux.ENTETE_ENREGISTREMENT + longueur;
+        }
+        return decalage;
+    }
+}
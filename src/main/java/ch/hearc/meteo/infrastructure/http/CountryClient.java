@@ -3,26 +3,61 @@ package ch.hearc.meteo.infrastructure.http;
 import ch.hearc.meteo.business.Pays;
 import ch.hearc.meteo.exception.ApiClientException;
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Client HTTP pour interroger le service externe "Country" à partir d’un code ISO (alpha2).
  * Convertit la réponse JSON en objet métier {@link Pays}.
- * Utilise HttpClient (Java 11+) et Gson pour le parsing.
+ * Utilise le {@link TransportHttp} partagé et Gson pour le parsing.
+ *
+ * Cache local des réponses : une entrée récente est servie sans appel ; une entrée expirée
+ * est revalidée par GET conditionnel (If-None-Match / If-Modified-Since), et un 304
+ * la prolonge sans corps ni parsing JSON.
  */
 public class CountryClient {
 
+    private static final long FRAICHEUR_DEFAUT_MS = 24 * 3_600_000L;
+    private static final Pattern MAX_AGE = Pattern.compile("max-age\\s*=\\s*(\\d+)");
+
     private final String baseUrl; // ex: https://db.ig.he-arc.ch/ens/scl/ws/country
-    private final HttpClient http = HttpClient.newHttpClient();
+    private final TransportHttp transport; // HttpClient partagé (délais, HTTP/2, gzip)
+    private final long fraicheurMs; // durée de validité d'une entrée sans Cache-Control
     private final Gson gson = new Gson();
+    // Pays déjà résolus, clé "CODE|lang", avec les validateurs HTTP de la réponse
+    private final Map<String, EntreeCache> cache = new ConcurrentHashMap<>();
+
+    private final AtomicLong reponsesCompletes = new AtomicLong();
+    private final AtomicLong reponses304 = new AtomicLong();
+    private final AtomicLong servisDuCache = new AtomicLong();
 
     public CountryClient(String baseUrl) {
+        this(baseUrl, TransportHttp.parDefaut());
+    }
+
+    public CountryClient(String baseUrl, TransportHttp transport) {
+        this(baseUrl, transport, FRAICHEUR_DEFAUT_MS);
+    }
+
+    /**
+     * @param fraicheurMs durée pendant laquelle un pays en cache est servi sans revalidation
+     *                    (sauf si la réponse précise un Cache-Control: max-age)
+     */
+    public CountryClient(String baseUrl, TransportHttp transport, long fraicheurMs) {
         this.baseUrl = baseUrl;
+        this.transport = transport;
+        this.fraicheurMs = fraicheurMs;
     }
 
     /**
@@ -31,42 +66,173 @@ public class CountryClient {
      * @param lang   code langue optionnel pour la traduction (ex: "fr")
      * @return objet {@link Pays} ou null si la réponse est vide
      * @throws ApiClientException si l'appel HTTP échoue ou si le code HTTP n’est pas 2xx
+     *         (sauf si une ancienne réponse est en cache : elle est alors renvoyée)
      */
     public Pays fetchPaysByAlpha2(String alpha2, String lang) {
+        String cle = cleCache(alpha2, lang);
+        EntreeCache enCache = cache.get(cle);
+        long maintenant = System.currentTimeMillis();
+        if (enCache != null && maintenant < enCache.valideJusqua) {
+            servisDuCache.incrementAndGet();
+            return copie(enCache.pays);
+        }
+
         try {
             // Construit dynamiquement l’URL selon la présence du paramètre "lang"
             String url = baseUrl.endsWith("/") ? baseUrl + alpha2 : baseUrl + "/" + alpha2;
             if (lang != null && !lang.isBlank()) url += "?lang=" + lang;
 
-            System.out.println("[DEBUG] CountryClient URL = " + url); // trace utile en dev
+            try (TransportHttp.ReponseHttp resp = transport.get(URI.create(url), validateurs(enCache))) {
+
+                // 304 : la réponse en cache est toujours valable, pas de corps à lire
+                if (resp.statut() == 304 && enCache != null) {
+                    reponses304.incrementAndGet();
+                    enCache.valideJusqua = maintenant + dureeValidite(resp);
+                    return copie(enCache.pays);
+                }
+
+                String body = resp.corpsTexte();
+                if (!resp.estSucces()) {
+                    throw HttpExceptionMapper.depuisStatut("Country API", resp.statut(), body);
+                }
+                reponsesCompletes.incrementAndGet();
 
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .header("Accept", "application/json")
-                    .GET()
-                    .build();
+                // Désérialisation JSON → DTO simple
+                CountryDto dto = gson.fromJson(body, CountryDto.class);
+                if (dto == null) return null;
 
-            HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
-            if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
-                throw new ApiClientException("Country API HTTP " + resp.statusCode() + " - " + resp.body());
+                // Conversion DTO → objet métier
+                Pays p = versPays(dto);
+                if (p.getNom() != null && !p.getNom().isBlank()) {
+                    cache.put(cle, new EntreeCache(copie(p), resp.entete("ETag"), resp.entete("Last-Modified"),
+                            maintenant + dureeValidite(resp)));
+                }
+                return p;
             }
 
-            System.out.println("[DEBUG] CountryClient response = " + resp.body()); // trace utile en debug
+        } catch (IOException | InterruptedException | ApiClientException e) {
+            ApiClientException erreur = e instanceof ApiClientException
+                    ? (ApiClientException) e
+                    : HttpExceptionMapper.depuisErreur("Country API", e);
+            if (enCache != null) {
+                // service indisponible : l'ancienne réponse reste meilleure qu'aucune
+                System.err.println("[WARN] " + erreur.getMessage() + " (pays " + alpha2 + " servi depuis le cache)");
+                return copie(enCache.pays);
+            }
+            throw erreur;
+        }
+    }
 
-            // Désérialisation JSON → DTO simple
-            CountryDto dto = gson.fromJson(resp.body(), CountryDto.class);
-            if (dto == null) return null;
+    /**
+     * Charge tous les pays en une seule requête (GET sur l'URL de base, tableau JSON)
+     * et remplit le cache pour la langue donnée.
+     * @return nombre de pays chargés
+     * @throws ApiClientException si l'appel échoue ou si la réponse n'est pas un tableau de pays
+     */
+    public int prechargerTous(String lang) {
+        String url = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        if (lang != null && !lang.isBlank()) url += "?lang=" + lang;
 
-            // Conversion DTO → objet métier
-            Pays p = new Pays();
-            p.setCode(dto.code != null ? dto.code.toUpperCase() : null);
-            p.setNom(dto.name); // correspondance champ JSON "name" → Pays.nom
-            return p;
+        try (TransportHttp.ReponseHttp resp = transport.get(URI.create(url))) {
+            if (!resp.estSucces()) {
+                throw HttpExceptionMapper.depuisStatut("Country API", resp.statut(), resp.corpsTexte());
+            }
+            reponsesCompletes.incrementAndGet();
+
+            CountryDto[] tous = gson.fromJson(
+                    new InputStreamReader(resp.corps(), StandardCharsets.UTF_8), CountryDto[].class);
+            if (tous == null) return 0;
+
+            long valideJusqua = System.currentTimeMillis() + dureeValidite(resp);
+            int n = 0;
+            for (CountryDto dto : tous) {
+                if (dto == null || dto.code == null || dto.name == null || dto.name.isBlank()) continue;
+                // pas de validateurs : ils portent sur la liste, pas sur chaque pays
+                cache.put(cleCache(dto.code, lang), new EntreeCache(versPays(dto), null, null, valideJusqua));
+                n++;
+            }
+            return n;
 
         } catch (IOException | InterruptedException e) {
-            // Interruption rétablie pour ne pas masquer le statut du thread
-            Thread.currentThread().interrupt();
-            throw new ApiClientException("Country API error: " + e.getMessage(), e);
+            throw HttpExceptionMapper.depuisErreur("Country API", e);
+        } catch (JsonParseException e) {
+            throw new ApiClientException("Country API : liste des pays illisible : " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Préremplit le cache avec des pays déjà connus (ex: table pays de la base),
+     * pour éviter un appel HTTP lors de leur prochaine résolution.
+     * Un pays déjà présent (ex: chargé par {@link #prechargerTous}) n'est pas remplacé.
+     */
+    public void prechargerCache(Collection<Pays> pays, String lang) {
+        long valideJusqua = System.currentTimeMillis() + fraicheurMs;
+        for (Pays p : pays) {
+            if (p.getCode() != null && p.getNom() != null && !p.getNom().isBlank()) {
+                cache.putIfAbsent(cleCache(p.getCode(), lang), new EntreeCache(copie(p), null, null, valideJusqua));
+            }
+        }
+    }
+
+    /** Compteurs : réponses complètes, 304, lectures servies par le cache sans appel. */
+    public String statistiques() {
+        return reponsesCompletes.get() + " réponses complètes, " + reponses304.get() + " x 304, "
+                + servisDuCache.get() + " servis depuis le cache, " + cache.size() + " pays en cache";
+    }
+
+    private static Map<String, String> validateurs(EntreeCache entree) {
+        Map<String, String> entetes = new HashMap<>();
+        if (entree != null) {
+            if (entree.etag != null) entetes.put("If-None-Match", entree.etag);
+            if (entree.lastModified != null) entetes.put("If-Modified-Since", entree.lastModified);
+        }
+        return entetes;
+    }
+
+    /** Cache-Control: max-age de la réponse si présent, sinon la fraîcheur configurée. */
+    private long dureeValidite(TransportHttp.ReponseHttp resp) {
+        String cacheControl = resp.entete("Cache-Control");
+        if (cacheControl != null) {
+            Matcher m = MAX_AGE.matcher(cacheControl);
+            if (m.find()) {
+                return Long.parseLong(m.group(1)) * 1000L;
+            }
+        }
+        return fraicheurMs;
+    }
+
+    private static Pays versPays(CountryDto dto) {
+        Pays p = new Pays();
+        p.setCode(dto.code != null ? dto.code.toUpperCase() : null);
+        p.setNom(dto.name); // correspondance champ JSON "name" → Pays.nom
+        return p;
+    }
+
+    private static String cleCache(String alpha2, String lang) {
+        return (alpha2 != null ? alpha2.trim().toUpperCase() : "") + "|"
+                + (lang != null ? lang.trim().toLowerCase() : "");
+    }
+
+    // Le Pays renvoyé est modifiable par l'appelant : le cache n'expose que des copies
+    private static Pays copie(Pays p) {
+        Pays c = new Pays();
+        c.setCode(p.getCode() != null ? p.getCode().toUpperCase() : null);
+        c.setNom(p.getNom());
+        return c;
+    }
+
+    /** Réponse en cache et ses validateurs HTTP (ETag, Last-Modified). */
+    private static final class EntreeCache {
+        final Pays pays;
+        final String etag;
+        final String lastModified;
+        volatile long valideJusqua;
+
+        EntreeCache(Pays pays, String etag, String lastModified, long valideJusqua) {
+            this.pays = pays;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.valideJusqua = valideJusqua;
         }
     }
 
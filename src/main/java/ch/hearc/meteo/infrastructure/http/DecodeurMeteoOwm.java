@@ -0,0 +1,480 @@
+package ch.hearc.meteo.infrastructure.http;
+
+import ch.hearc.meteo.dto.ReleveOwm;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Décodeur de la réponse météo actuelle d'OpenWeatherMap, directement des octets JSON vers un
+ * {@link ReleveOwm} réutilisé, sans arbre JSON ni objets intermédiaires :
+ * - corps lu dans un tampon d'octets gardé d'une réponse à l'autre ;
+ * - clés comparées octet par octet, champs inutiles sautés sans être décodés ;
+ * - nombres lus sans passer par une chaîne (repli sur Double.parseDouble au-delà de 15 chiffres) ;
+ * - chaînes (nom, pays, description) partagées avec la réponse précédente si identiques.
+ *
+ * Une réponse courante ne crée donc aucun objet, sauf un nom ou une description jamais vus.
+ * Document invalide : {@link JsonParseException}.
+ *
+ * Non synchronisé : une instance par thread ; le relevé rendu est réutilisé au décodage suivant.
+ */
+public final class DecodeurMeteoOwm {
+
+    private static final int TAILLE_MAX = 1 << 20;
+    // puissance de 2 : index = hachage & (taille - 1)
+    private static final int CHAINES_PARTAGEES = 256;
+    // 10^0 à 10^22 : exacts en double
+    private static final double[] PUISSANCES_10 = new double[23];
+
+    static {
+        PUISSANCES_10[0] = 1;
+        for (int i = 1; i < PUISSANCES_10.length; i++) PUISSANCES_10[i] = PUISSANCES_10[i - 1] * 10;
+    }
+
+    private static final byte[] COORD = ascii("coord");
+    private static final byte[] LAT = ascii("lat");
+    private static final byte[] LON = ascii("lon");
+    private static final byte[] WEATHER = ascii("weather");
+    private static final byte[] DESCRIPTION = ascii("description");
+    private static final byte[] MAIN = ascii("main");
+    private static final byte[] TEMP = ascii("temp");
+    private static final byte[] PRESSURE = ascii("pressure");
+    private static final byte[] HUMIDITY = ascii("humidity");
+    private static final byte[] VISIBILITY = ascii("visibility");
+    private static final byte[] RAIN = ascii("rain");
+    private static final byte[] H1 = ascii("1h");
+    private static final byte[] DT = ascii("dt");
+    private static final byte[] SYS = ascii("sys");
+    private static final byte[] COUNTRY = ascii("country");
+    private static final byte[] ID = ascii("id");
+    private static final byte[] NAME = ascii("name");
+
+    private final ReleveOwm releve = new ReleveOwm();
+    private byte[] tampon = new byte[2048];
+    private char[] caracteres = new char[128];
+    private final String[] chaines = new String[CHAINES_PARTAGEES];
+
+    // document en cours : src[0..fin[
+    private byte[] src;
+    private int fin;
+    private int pos;
+    // dernière clé lue : src[debutCle..finCle[
+    private int debutCle;
+    private int finCle;
+
+    /**
+     * Lit tout le flux (sans le fermer) et le décode.
+     * @return le relevé de ce décodeur (réutilisé au prochain appel), null si le document est vide ou null
+     */
+    public ReleveOwm decoder(InputStream in) throws IOException {
+        int n = 0;
+        while (true) {
+            if (n == tampon.length) {
+                if (n >= TAILLE_MAX) throw new JsonParseException("réponse de plus de " + TAILLE_MAX + " octets");
+                tampon = Arrays.copyOf(tampon, n * 2);
+            }
+            int lus = in.read(tampon, n, tampon.length - n);
+            if (lus < 0) break;
+            n += lus;
+        }
+        return decoder(tampon, n);
+    }
+
+    /** Décode un document déjà en mémoire (octets UTF-8). Même résultat que {@link #decoder(InputStream)}. */
+    public ReleveOwm decoder(byte[] document, int longueur) {
+        src = document;
+        fin = longueur;
+        pos = 0;
+        releve.vider();
+        try {
+            sauterBlancs();
+            if (pos == fin || nul()) {
+                verifierFinDocument();
+                return null;
+            }
+            if (ouvrir('{', '}')) {
+                do {
+                    lireCle();
+                    if (cle(COORD)) lireCoord();
+                    else if (cle(WEATHER)) lireConditions();
+                    else if (cle(MAIN)) lireMain();
+                    else if (cle(VISIBILITY)) { if (!nul()) releve.setVisibilite((int) lireNombre()); }
+                    else if (cle(RAIN)) lirePluie();
+                    else if (cle(DT)) { if (!nul()) releve.setDateSecondes((long) lireNombre()); }
+                    else if (cle(SYS)) lireSys();
+                    else if (cle(ID)) { if (!nul()) releve.setIdOwm((int) lireNombre()); }
+                    else if (cle(NAME)) releve.setNom(lireChaineOuNull());
+                    else sauterValeur();
+                } while (suivant('}'));
+            }
+            verifierFinDocument();
+            return releve;
+        } finally {
+            src = null;
+        }
+    }
+
+    // -------------------------------------------------------
+    // Sections de la réponse
+    // -------------------------------------------------------
+
+    private void lireCoord() {
+        if (!ouvrir('{', '}')) return;
+        do {
+            lireCle();
+            if (cle(LAT)) { if (!nul()) releve.setLatitude(lireNombre()); }
+            else if (cle(LON)) { if (!nul()) releve.setLongitude(lireNombre()); }
+            else sauterValeur();
+        } while (suivant('}'));
+    }
+
+    /** "weather" : tableau de conditions, seule la description de la première est gardée. */
+    private void lireConditions() {
+        if (!ouvrir('[', ']')) return;
+        boolean premiere = true;
+        do {
+            if (premiere && ouvrir('{', '}')) {
+                do {
+                    lireCle();
+                    if (cle(DESCRIPTION)) releve.setDescription(lireChaineOuNull());
+                    else sauterValeur();
+                } while (suivant('}'));
+            } else if (!premiere) {
+                sauterValeur();
+            }
+            premiere = false;
+        } while (suivant(']'));
+    }
+
+    private void lireMain() {
+        if (!ouvrir('{', '}')) return;
+        do {
+            lireCle();
+            if (cle(TEMP)) { if (!nul()) releve.setTemperature(lireNombre()); }
+            else if (cle(PRESSURE)) { if (!nul()) releve.setPression(lireNombre()); }
+            else if (cle(HUMIDITY)) { if (!nul()) releve.setHumidite(lireNombre()); }
+            else sauterValeur();
+        } while (suivant('}'));
+    }
+
+    private void lirePluie() {
+        if (!ouvrir('{', '}')) return;
+        do {
+            lireCle();
+            if (cle(H1)) { if (!nul()) releve.setPrecipitation(lireNombre()); }
+            else sauterValeur();
+        } while (suivant('}'));
+    }
+
+    private void lireSys() {
+        if (!ouvrir('{', '}')) return;
+        do {
+            lireCle();
+            if (cle(COUNTRY)) releve.setCodePays(lireChaineOuNull());
+            else sauterValeur();
+        } while (suivant('}'));
+    }
+
+    // -------------------------------------------------------
+    // Jetons JSON
+    // -------------------------------------------------------
+
+    /**
+     * Ouvre un objet ou un tableau (ou lit null à sa place).
+     * @return false si null ou vide (déjà refermé), true s'il reste des éléments à lire
+     */
+    private boolean ouvrir(char ouvrant, char fermant) {
+        sauterBlancs();
+        if (nul()) return false;
+        attendre(ouvrant);
+        sauterBlancs();
+        if (pos < fin && src[pos] == fermant) {
+            pos++;
+            return false;
+        }
+        return true;
+    }
+
+    /** Après un élément : true si une virgule suit, false si l'objet ou le tableau se ferme. */
+    private boolean suivant(char fermant) {
+        sauterBlancs();
+        if (pos < fin && src[pos] == ',') {
+            pos++;
+            return true;
+        }
+        attendre(fermant);
+        return false;
+    }
+
+    /** Lit "clé" : (les octets de la clé sont comparés tels quels, sans décodage). */
+    private void lireCle() {
+        sauterBlancs();
+        attendre('"');
+        debutCle = pos;
+        while (pos < fin && src[pos] != '"') {
+            if (src[pos] == '\\') pos++;
+            pos++;
+        }
+        if (pos >= fin) throw erreur("clé non terminée");
+        finCle = pos++;
+        sauterBlancs();
+        attendre(':');
+    }
+
+    private boolean cle(byte[] attendue) {
+        int n = finCle - debutCle;
+        if (n != attendue.length) return false;
+        for (int i = 0; i < n; i++) {
+            if (src[debutCle + i] != attendue[i]) return false;
+        }
+        return true;
+    }
+
+    /** Lit null s'il est là (true), sinon ne consomme rien. */
+    private boolean nul() {
+        sauterBlancs();
+        if (pos < fin && src[pos] == 'n') {
+            litteral("null");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Nombre JSON : mantisse entière (15 chiffres au plus) multipliée ou divisée par une puissance
+     * de 10 exacte, soit un seul arrondi, comme Double.parseDouble. Au-delà : Double.parseDouble.
+     */
+    private double lireNombre() {
+        sauterBlancs();
+        int debut = pos;
+        boolean negatif = pos < fin && src[pos] == '-';
+        if (negatif) pos++;
+        long mantisse = 0;
+        int chiffres = 0;
+        int exposant = 0;
+        boolean exact = true;
+        int debutChiffres = pos;
+        while (pos < fin && estChiffre(src[pos])) {
+            if (chiffres < 15) {
+                mantisse = mantisse * 10 + (src[pos] - '0');
+                if (mantisse != 0) chiffres++;
+            } else {
+                exact = false;
+            }
+            pos++;
+        }
+        if (pos == debutChiffres) throw erreur("nombre attendu");
+        if (pos < fin && src[pos] == '.') {
+            pos++;
+            int debutDecimales = pos;
+            while (pos < fin && estChiffre(src[pos])) {
+                if (chiffres < 15) {
+                    mantisse = mantisse * 10 + (src[pos] - '0');
+                    if (mantisse != 0) chiffres++;
+                    exposant--;
+                } else {
+                    exact = false;
+                }
+                pos++;
+            }
+            if (pos == debutDecimales) throw erreur("chiffre attendu après le point");
+        }
+        if (pos < fin && (src[pos] == 'e' || src[pos] == 'E')) {
+            pos++;
+            boolean exposantNegatif = pos < fin && src[pos] == '-';
+            if (pos < fin && (src[pos] == '-' || src[pos] == '+')) pos++;
+            int e = 0;
+            int debutExposant = pos;
+            while (pos < fin && estChiffre(src[pos])) {
+                e = Math.min(e * 10 + (src[pos] - '0'), 10_000);
+                pos++;
+            }
+            if (pos == debutExposant) throw erreur("exposant attendu");
+            exposant += exposantNegatif ? -e : e;
+        }
+        if (!exact || exposant < -22 || exposant > 22) {
+            return Double.parseDouble(new String(src, debut, pos - debut, StandardCharsets.ISO_8859_1));
+        }
+        double v = exposant >= 0 ? mantisse * PUISSANCES_10[exposant] : mantisse / PUISSANCES_10[-exposant];
+        return negatif ? -v : v;
+    }
+
+    private String lireChaineOuNull() {
+        if (nul()) return null;
+        sauterBlancs();
+        attendre('"');
+        int n = 0;
+        int hachage = 0;
+        while (true) {
+            if (pos >= fin) throw erreur("chaîne non terminée");
+            int b = src[pos++] & 0xFF;
+            if (b == '"') break;
+            int c;
+            if (b == '\\') {
+                c = echappement();
+            } else if (b < 0x80) {
+                c = b;
+            } else {
+                c = caractereUtf8(b);
+            }
+            if (n + 2 > caracteres.length) caracteres = Arrays.copyOf(caracteres, caracteres.length * 2);
+            if (c > 0xFFFF) {
+                char haut = Character.highSurrogate(c);
+                char bas = Character.lowSurrogate(c);
+                caracteres[n++] = haut;
+                caracteres[n++] = bas;
+                hachage = 31 * (31 * hachage + haut) + bas;
+            } else {
+                caracteres[n++] = (char) c;
+                hachage = 31 * hachage + c;
+            }
+        }
+        return partager(n, hachage);
+    }
+
+    private int echappement() {
+        if (pos >= fin) throw erreur("échappement non terminé");
+        byte b = src[pos++];
+        switch (b) {
+            case '"': return '"';
+            case '\\': return '\\';
+            case '/': return '/';
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            case 'u': {
+                if (pos + 4 > fin) throw erreur("échappement \\u incomplet");
+                int c = 0;
+                for (int i = 0; i < 4; i++) {
+                    int h = Character.digit(src[pos++], 16);
+                    if (h < 0) throw erreur("échappement \\u invalide");
+                    c = (c << 4) | h;
+                }
+                return c;
+            }
+            default:
+                throw erreur("échappement invalide");
+        }
+    }
+
+    /** Caractère UTF-8 de 2 à 4 octets (premier octet déjà lu) ; séquence invalide : U+FFFD. */
+    private int caractereUtf8(int premier) {
+        int suite;
+        int c;
+        if (premier >= 0xF0 && premier <= 0xF4) {
+            suite = 3;
+            c = premier & 0x07;
+        } else if (premier >= 0xE0 && premier <= 0xEF) {
+            suite = 2;
+            c = premier & 0x0F;
+        } else if (premier >= 0xC2 && premier < 0xE0) {
+            suite = 1;
+            c = premier & 0x1F;
+        } else {
+            return 0xFFFD;
+        }
+        for (int i = 0; i < suite; i++) {
+            if (pos >= fin || (src[pos] & 0xC0) != 0x80) return 0xFFFD;
+            c = (c << 6) | (src[pos++] & 0x3F);
+        }
+        return c <= 0x10FFFF ? c : 0xFFFD;
+    }
+
+    /** Chaîne des caractères lus : celle déjà créée pour les mêmes caractères, sinon une nouvelle. */
+    private String partager(int n, int hachage) {
+        int i = (hachage ^ (hachage >>> 16)) & (CHAINES_PARTAGEES - 1);
+        String s = chaines[i];
+        if (s != null && s.length() == n) {
+            int k = 0;
+            while (k < n && s.charAt(k) == caracteres[k]) k++;
+            if (k == n) return s;
+        }
+        s = new String(caracteres, 0, n);
+        chaines[i] = s;
+        return s;
+    }
+
+    /** Saute une valeur quelconque (objet, tableau, chaîne, nombre, littéral). */
+    private void sauterValeur() {
+        sauterBlancs();
+        if (pos >= fin) throw erreur("valeur attendue");
+        byte b = src[pos];
+        if (b == '{' || b == '[') {
+            int profondeur = 0;
+            do {
+                if (pos >= fin) throw erreur("objet ou tableau non terminé");
+                byte c = src[pos];
+                if (c == '"') {
+                    sauterChaine();
+                    continue;
+                }
+                if (c == '{' || c == '[') profondeur++;
+                else if (c == '}' || c == ']') profondeur--;
+                pos++;
+            } while (profondeur > 0);
+        } else if (b == '"') {
+            sauterChaine();
+        } else if (b == 't') {
+            litteral("true");
+        } else if (b == 'f') {
+            litteral("false");
+        } else if (b == 'n') {
+            litteral("null");
+        } else {
+            lireNombre();
+        }
+    }
+
+    private void sauterChaine() {
+        pos++;
+        while (pos < fin && src[pos] != '"') {
+            if (src[pos] == '\\') pos++;
+            pos++;
+        }
+        if (pos >= fin) throw erreur("chaîne non terminée");
+        pos++;
+    }
+
+    private void litteral(String mot) {
+        if (pos + mot.length() > fin) throw erreur(mot + " attendu");
+        for (int i = 0; i < mot.length(); i++) {
+            if (src[pos + i] != mot.charAt(i)) throw erreur(mot + " attendu");
+        }
+        pos += mot.length();
+    }
+
+    private void attendre(char c) {
+        if (pos >= fin || src[pos] != c) throw erreur("'" + c + "' attendu");
+        pos++;
+    }
+
+    private void verifierFinDocument() {
+        sauterBlancs();
+        if (pos != fin) throw erreur("contenu après la fin du document");
+    }
+
+    private void sauterBlancs() {
+        while (pos < fin) {
+            byte b = src[pos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') return;
+            pos++;
+        }
+    }
+
+    private static boolean estChiffre(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private JsonParseException erreur(String message) {
+        return new JsonParseException(message + " (octet " + pos + ")");
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -1,8 +1,54 @@
 package ch.hearc.meteo.infrastructure.http;
 
+import ch.hearc.meteo.exception.ApiClientException;
+
+import java.io.IOException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+
 /**
- * Classe prévue pour centraliser la conversion d’erreurs HTTP en exceptions applicatives.
- * Actuellement vide : à implémenter si tu veux uniformiser le traitement des statuts HTTP (ex. 404 → ApiClientException).
+ * Conversion des erreurs HTTP (statut inattendu, réseau, délai dépassé) en {@link ApiClientException},
+ * avec un message homogène pour tous les clients d'API.
  */
-public class HttpExceptionMapper {
+public final class HttpExceptionMapper {
+
+    private static final int CORPS_MAX = 300; // extrait du corps repris dans le message
+
+    private HttpExceptionMapper() {}
+
+    /** Statut HTTP non 2xx → exception, avec un extrait du corps de la réponse. */
+    public static ApiClientException depuisStatut(String service, int statut, String corps) {
+        String cause;
+        switch (statut) {
+            case 400: cause = "requête invalide"; break;
+            case 401: cause = "clé d'API refusée"; break;
+            case 404: cause = "ressource introuvable"; break;
+            case 429: cause = "quota d'appels dépassé"; break;
+            default:  cause = statut >= 500 ? "erreur du serveur" : "statut inattendu"; break;
+        }
+        String extrait = corps == null ? "" : corps.length() > CORPS_MAX ? corps.substring(0, CORPS_MAX) + "..." : corps;
+        return new ApiClientException(service + " HTTP " + statut + " (" + cause + ")"
+                + (extrait.isBlank() ? "" : " : " + extrait));
+    }
+
+    /**
+     * Erreur d'appel → exception. Seule une interruption rétablit le statut d'interruption
+     * du thread (une simple erreur réseau ne doit pas le marquer comme interrompu).
+     */
+    public static ApiClientException depuisErreur(String service, Exception e) {
+        if (e instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+            return new ApiClientException(service + " : appel interrompu", e);
+        }
+        if (e instanceof HttpConnectTimeoutException) {
+            return new ApiClientException(service + " : délai de connexion dépassé", e);
+        }
+        if (e instanceof HttpTimeoutException) {
+            return new ApiClientException(service + " : délai de réponse dépassé", e);
+        }
+        if (e instanceof IOException) {
+            return new ApiClientException(service + " : erreur réseau : " + e.getMessage(), e);
+        }
+        return new ApiClientException(service + " : " + e.getMessage(), e);
+    }
 }
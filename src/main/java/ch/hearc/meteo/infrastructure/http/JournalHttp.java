@@ -0,0 +1,280 @@
+package ch.hearc.meteo.infrastructure.http;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Fichier d'enregistrement des réponses HTTP des API (OpenWeatherMap, Country), écrit par
+ * {@link TransportEnregistreur} et relu par {@link TransportRejeu}.
+ *
+ * <pre>
+ * flux gzip :
+ * [en-tête]         int magic "MREJ", short version
+ * [enregistrements] jusqu'à la fin du flux, chacun :
+ *                     varint  écart en ms avec l'enregistrement précédent (instant de la requête)
+ *                     varint  n° de requête dans le dictionnaire ; n = taille du dictionnaire :
+ *                             nouvelle requête, suivie de sa chaîne
+ *                     varint  latence en µs (requête envoyée → corps reçu)
+ *                     varint  statut HTTP, octet version (1 : HTTP/1.1, 2 : HTTP/2)
+ *                     varint  nb en-têtes, puis pour chacun : n° de nom (même principe) + valeur
+ *                     varint  longueur du corps (décompressé), puis les octets
+ * chaîne : varint longueur + octets UTF-8
+ * </pre>
+ *
+ * La requête est l'URI sans schéma, hôte ni paramètre appid : la clé API n'est jamais écrite,
+ * et un enregistrement fait contre le vrai service se rejoue quelle que soit l'URL configurée.
+ * Seuls les en-têtes lus par les clients sont gardés (ENTETES_GARDES).
+ *
+ * Le flux est vidé régulièrement : un fichier interrompu (arrêt brutal) se relit jusqu'au
+ * dernier enregistrement complet.
+ */
+final class JournalHttp {
+
+    static final int MAGIC = 0x4D52454A; // "MREJ"
+    static final short VERSION = 1;
+
+    /** En-têtes de réponse conservés : ceux dont dépendent les clients (cache, validateurs). */
+    static final List<String> ENTETES_GARDES =
+            List.of("Content-Type", "Cache-Control", "ETag", "Last-Modified");
+
+    // flux vidé au plus tous les N enregistrements (et à la fermeture)
+    private static final int VIDAGE_ENREGISTREMENTS = 64;
+
+    private JournalHttp() {
+    }
+
+    /** Requête enregistrée : chemin et paramètres de l'URI, sans la clé API. */
+    static String requete(URI uri) {
+        String chemin = uri.getRawPath() != null ? uri.getRawPath() : "";
+        String parametres = uri.getRawQuery();
+        if (parametres == null || parametres.isEmpty()) return chemin;
+        StringBuilder sb = new StringBuilder(chemin.length() + parametres.length() + 1).append(chemin);
+        char separateur = '?';
+        for (String p : parametres.split("&")) {
+            if (p.isEmpty() || p.startsWith("appid=") || p.equals("appid")) continue;
+            sb.append(separateur).append(p);
+            separateur = '&';
+        }
+        return sb.toString();
+    }
+
+    // -------------------------------------------------------
+    // ENREGISTREMENT
+    // -------------------------------------------------------
+
+    /** Réponse enregistrée (corps décompressé, en-têtes gardés). */
+    static final class Reponse {
+        final long instantMs;
+        final String requete;
+        final long latenceMicros;
+        final int statut;
+        final HttpClient.Version version;
+        final HttpHeaders entetes;
+        final byte[] corps;
+
+        Reponse(long instantMs, String requete, long latenceMicros, int statut, HttpClient.Version version,
+                HttpHeaders entetes, byte[] corps) {
+            this.instantMs = instantMs;
+            this.requete = requete;
+            this.latenceMicros = latenceMicros;
+            this.statut = statut;
+            this.version = version;
+            this.entetes = entetes;
+            this.corps = corps;
+        }
+    }
+
+    /** Écriture d'un fichier d'enregistrement ; un seul écrivain, appels synchronisés. */
+    static final class Ecriture implements AutoCloseable {
+        private final DataOutputStream out;
+        private final Map<String, Integer> requetes = new HashMap<>();
+        private final Map<String, Integer> nomsEntetes = new HashMap<>();
+        private long dernierInstantMs = -1;
+        private int nonVides;
+        private long enregistrements;
+        private boolean ferme;
+
+        /** Crée (ou remplace) le fichier. */
+        Ecriture(Path fichier) throws IOException {
+            Path dossier = fichier.toAbsolutePath().getParent();
+            if (dossier != null) Files.createDirectories(dossier);
+            OutputStream brut = new BufferedOutputStream(Files.newOutputStream(fichier), 1 << 16);
+            // syncFlush : flush() pousse les données compressées jusqu'au fichier
+            this.out = new DataOutputStream(new GZIPOutputStream(brut, 1 << 16, true));
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+        }
+
+        synchronized void ecrire(long instantMs, String requete, long latenceMicros, int statut,
+                                 HttpClient.Version version, HttpHeaders entetes, byte[] corps) throws IOException {
+            if (ferme) throw new IOException("enregistrement fermé");
+            long ecart = dernierInstantMs < 0 ? 0 : Math.max(0, instantMs - dernierInstantMs);
+            dernierInstantMs = Math.max(dernierInstantMs, instantMs);
+            ecrireVarLong(out, ecart);
+            ecrireReference(requetes, requete);
+            ecrireVarLong(out, Math.max(0, latenceMicros));
+            ecrireVarLong(out, statut);
+            out.writeByte(version == HttpClient.Version.HTTP_2 ? 2 : 1);
+
+            List<String[]> gardes = new ArrayList<>(ENTETES_GARDES.size());
+            for (String nom : ENTETES_GARDES) {
+                String valeur = entetes.firstValue(nom).orElse(null);
+                if (valeur != null) gardes.add(new String[]{nom, valeur});
+            }
+            ecrireVarLong(out, gardes.size());
+            for (String[] e : gardes) {
+                ecrireReference(nomsEntetes, e[0]);
+                ecrireChaine(out, e[1]);
+            }
+            ecrireVarLong(out, corps.length);
+            out.write(corps);
+
+            enregistrements++;
+            if (++nonVides >= VIDAGE_ENREGISTREMENTS) {
+                out.flush();
+                nonVides = 0;
+            }
+        }
+
+        synchronized long enregistrements() {
+            return enregistrements;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (ferme) return;
+            ferme = true;
+            out.close();
+        }
+
+        private void ecrireReference(Map<String, Integer> dictionnaire, String valeur) throws IOException {
+            Integer n = dictionnaire.get(valeur);
+            if (n != null) {
+                ecrireVarLong(out, n);
+                return;
+            }
+            ecrireVarLong(out, dictionnaire.size());
+            ecrireChaine(out, valeur);
+            dictionnaire.put(valeur, dictionnaire.size());
+        }
+    }
+
+    // -------------------------------------------------------
+    // LECTURE
+    // -------------------------------------------------------
+
+    /**
+     * Lit toutes les réponses du fichier, dans l'ordre d'enregistrement. Un fichier tronqué
+     * (enregistrement interrompu) est lu jusqu'au dernier enregistrement complet.
+     * @throws IOException fichier absent, ou qui n'est pas un enregistrement
+     */
+    static List<Reponse> lire(Path fichier) throws IOException {
+        if (!Files.isRegularFile(fichier)) throw new IOException(fichier + " : fichier absent");
+        List<Reponse> reponses = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(fichier), 1 << 16), 1 << 16))) {
+            if (in.readInt() != MAGIC) throw new IOException(fichier + " : pas un enregistrement HTTP");
+            short version = in.readShort();
+            if (version != VERSION) throw new IOException(fichier + " : version " + version + " non supportée");
+
+            List<String> requetes = new ArrayList<>();
+            List<String> nomsEntetes = new ArrayList<>();
+            long instantMs = 0;
+            while (true) {
+                long ecart;
+                try {
+                    ecart = lireVarLong(in);
+                } catch (EOFException fin) {
+                    break; // fin du flux, ou fichier coupé entre deux enregistrements
+                }
+                try {
+                    instantMs += ecart;
+                    String requete = lireReference(in, requetes);
+                    long latenceMicros = lireVarLong(in);
+                    int statut = (int) lireVarLong(in);
+                    HttpClient.Version v = in.readByte() == 2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1;
+                    int nbEntetes = (int) lireVarLong(in);
+                    Map<String, List<String>> entetes = new LinkedHashMap<>();
+                    for (int i = 0; i < nbEntetes; i++) {
+                        String nom = lireReference(in, nomsEntetes);
+                        entetes.put(nom, Collections.singletonList(lireChaine(in)));
+                    }
+                    byte[] corps = new byte[(int) lireVarLong(in)];
+                    in.readFully(corps);
+                    reponses.add(new Reponse(instantMs, requete, latenceMicros, statut, v,
+                            HttpHeaders.of(entetes, (n, val) -> true), corps));
+                } catch (EOFException | ZipException tronque) {
+                    System.err.println("[WARN] " + fichier + " : enregistrement interrompu, "
+                            + reponses.size() + " réponse(s) lue(s)");
+                    break;
+                }
+            }
+        }
+        return reponses;
+    }
+
+    private static String lireReference(DataInputStream in, List<String> dictionnaire) throws IOException {
+        int n = (int) lireVarLong(in);
+        if (n < dictionnaire.size()) return dictionnaire.get(n);
+        if (n != dictionnaire.size()) throw new IOException("référence invalide : " + n);
+        String valeur = lireChaine(in);
+        dictionnaire.add(valeur);
+        return valeur;
+    }
+
+    // -------------------------------------------------------
+    // ENTIERS VARIABLES ET CHAÎNES
+    // -------------------------------------------------------
+
+    private static void ecrireVarLong(DataOutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long lireVarLong(InputStream in) throws IOException {
+        long v = 0;
+        for (int decalage = 0; decalage < 64; decalage += 7) {
+            int b = in.read();
+            if (b < 0) throw new EOFException();
+            v |= (long) (b & 0x7F) << decalage;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("entier variable invalide");
+    }
+
+    private static void ecrireChaine(DataOutputStream out, String s) throws IOException {
+        byte[] octets = s.getBytes(StandardCharsets.UTF_8);
+        ecrireVarLong(out, octets.length);
+        out.write(octets);
+    }
+
+    private static String lireChaine(DataInputStream in) throws IOException {
+        byte[] octets = new byte[(int) lireVarLong(in)];
+        in.readFully(octets);
+        return new String(octets, StandardCharsets.UTF_8);
+    }
+}
@@ -3,39 +3,104 @@ package ch.hearc.meteo.infrastructure.http;
 import ch.hearc.meteo.business.Meteo;
 import ch.hearc.meteo.business.Pays;
 import ch.hearc.meteo.business.StationMeteo;
-import ch.hearc.meteo.dto.OpenWeatherMapResponse;
+import ch.hearc.meteo.dto.OpenWeatherMapForecastResponse;
+import ch.hearc.meteo.dto.ReleveOwm;
 import ch.hearc.meteo.exception.ApiClientException;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.util.Date;
 
 /**
- * Client HTTP pour l’API OpenWeatherMap (version 2.5 - Current Weather).
+ * Client HTTP pour l’API OpenWeatherMap (version 2.5 - Current Weather et Forecast 5 jours).
  * Interroge l’API par nom de ville ou coordonnées et convertit la réponse JSON
  * en objets métier {@link StationMeteo}, {@link Meteo}, {@link Pays}.
  */
 public class OpenWeatherMapClient {
 
     private final String baseUrl; // ex: https://api.openweathermap.org/data/2.5/weather
-    private final String apiKey;  // clé d’API personnelle
-    private final HttpClient http;
-    private final Gson gson;
+    private final String forecastUrl; // ex: https://api.openweathermap.org/data/2.5/forecast
+    private final PoolClesApi cles; // clé(s) d’API, réparties selon leur quota restant
+    private final TransportHttp transport; // HttpClient partagé (délais, HTTP/2, gzip)
+    private final Gson gson; // prévisions (classes imbriquées du DTO forecast)
+    // météo actuelle : décodeur et relevé réutilisés par chaque thread de capture
+    private final ThreadLocal<DecodeurMeteoOwm> decodeurs = ThreadLocal.withInitial(DecodeurMeteoOwm::new);
 
+    // Réponse type utilisée pour préchauffer le mapping JSON (aucun appel réseau)
+    private static final String REPONSE_EXEMPLE =
+            "{\"coord\":{\"lon\":6.9319,\"lat\":46.9931},"
+                    + "\"weather\":[{\"id\":800,\"main\":\"Clear\",\"description\":\"ciel dégagé\",\"icon\":\"01d\"}],"
+                    + "\"main\":{\"temp\":12.3,\"feels_like\":11.1,\"pressure\":1018,\"humidity\":71},"
+                    + "\"visibility\":10000,\"rain\":{\"1h\":0.2},\"dt\":1700000000,"
+                    + "\"sys\":{\"country\":\"CH\"},\"id\":2659496,\"name\":\"Neuchâtel\"}";
+
+    /** Clé unique, ou plusieurs clés séparées par des virgules (quota par défaut : 60 appels / minute / clé). */
     public OpenWeatherMapClient(String baseUrl, String apiKey) {
+        this(baseUrl, null, apiKey);
+    }
+
+    public OpenWeatherMapClient(String baseUrl, PoolClesApi cles) {
+        this(baseUrl, null, cles);
+    }
+
+    public OpenWeatherMapClient(String baseUrl, String forecastUrl, String apiKey) {
+        this(baseUrl, forecastUrl, PoolClesApi.depuisListe(apiKey, 60));
+    }
+
+    public OpenWeatherMapClient(String baseUrl, String forecastUrl, PoolClesApi cles) {
+        this(baseUrl, forecastUrl, cles, TransportHttp.parDefaut());
+    }
+
+    /**
+     * @param forecastUrl URL de l'endpoint forecast ; si vide, déduite de baseUrl (/weather → /forecast)
+     * @param transport transport HTTP partagé avec les autres clients
+     * @throws IllegalArgumentException si forecastUrl est vide et que baseUrl ne se termine pas par /weather
+     */
+    public OpenWeatherMapClient(String baseUrl, String forecastUrl, PoolClesApi cles, TransportHttp transport) {
         this.baseUrl = baseUrl;
-        this.apiKey = apiKey;
-        this.http = HttpClient.newHttpClient();
+        this.forecastUrl = (forecastUrl == null || forecastUrl.isBlank())
+                ? deduireUrlPrevisions(baseUrl)
+                : forecastUrl;
+        this.cles = cles;
+        this.transport = transport;
         this.gson = new GsonBuilder().serializeNulls().create();
     }
 
+    /**
+     * Endpoint forecast déduit de l'endpoint weather (…/weather → …/forecast).
+     * Sans /weather final, rien à remplacer : l'URL météo ne doit pas servir aux prévisions.
+     */
+    private static String deduireUrlPrevisions(String baseUrl) {
+        if (baseUrl == null || !baseUrl.matches(".*/weather/?$")) {
+            throw new IllegalArgumentException("URL des prévisions impossible à déduire de " + baseUrl
+                    + " (pas de /weather final) : renseigner openweathermap.forecast.url");
+        }
+        return baseUrl.replaceFirst("/weather/?$", "/forecast");
+    }
+
+    /** Pool de clés utilisé (compteurs d'utilisation par clé). */
+    public PoolClesApi getPoolCles() {
+        return cles;
+    }
+
+    /**
+     * Préchauffe le décodage JSON → objets métier (compilation JIT) sur une réponse type,
+     * pour que la première vraie requête ne paie pas ce coût.
+     */
+    public void prechauffer() {
+        byte[] exemple = REPONSE_EXEMPLE.getBytes(StandardCharsets.UTF_8);
+        DecodeurMeteoOwm decodeur = new DecodeurMeteoOwm();
+        for (int i = 0; i < 2_000; i++) {
+            versStation(decodeur.decoder(exemple, exemple.length));
+        }
+    }
+
     /**
      * Récupère les données météo courantes pour une localisation donnée.
      * - Si city est fournie → requête par nom.
@@ -62,74 +127,164 @@ public class OpenWeatherMapClient {
                 url.append("?lat=").append(latitude).append("&lon=").append(longitude);
             }
 
-            // Ajout des paramètres communs
-            url.append("&appid=").append(URLEncoder.encode(apiKey, StandardCharsets.UTF_8));
+            // Ajout des paramètres communs (clé prise dans le pool selon le budget restant)
+            PoolClesApi.Cle cle = cles.acquerir();
+            url.append("&appid=").append(URLEncoder.encode(cle.valeur(), StandardCharsets.UTF_8));
             url.append("&units=metric");
             if (lang != null && !lang.isBlank()) url.append("&lang=").append(lang);
 
-            // Préparation et envoi de la requête HTTP GET
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url.toString()))
-                    .GET()
-                    .header("Accept", "application/json")
-                    .build();
+            // Envoi de la requête HTTP GET (transport partagé : délais, gzip)
+            try (TransportHttp.ReponseHttp response = transport.get(URI.create(url.toString()))) {
+                cles.signaler(cle, response.statut());
+
+                // Gestion d'erreur selon le code HTTP
+                if (!response.estSucces()) {
+                    throw HttpExceptionMapper.depuisStatut("OWM", response.statut(), response.corpsTexte());
+                }
 
-            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+                // Décodage JSON → relevé réutilisé du thread, sans DTO intermédiaire
+                ReleveOwm releve = decodeurs.get().decoder(response.corps());
+                if (releve == null) throw new ApiClientException("Réponse vide de OpenWeatherMap");
 
-            // Gestion d'erreur basique selon le code HTTP
-            if (response.statusCode() < 200 || response.statusCode() >= 300) {
-                throw new ApiClientException("OWM HTTP " + response.statusCode() + " : " + response.body());
+                // Relevé → modèle métier (seuls objets créés pour la réponse)
+                return versStation(releve);
+            } catch (IOException | InterruptedException e) {
+                cles.signalerErreur(cle, e);
+                throw e;
             }
 
-            // Désérialisation JSON → DTO
-            OpenWeatherMapResponse dto = gson.fromJson(response.body(), OpenWeatherMapResponse.class);
-            if (dto == null) throw new ApiClientException("Réponse vide de OpenWeatherMap");
+        } catch (IOException | InterruptedException e) {
+            throw HttpExceptionMapper.depuisErreur("OWM", e);
+        } catch (JsonParseException e) {
+            throw new ApiClientException("Réponse OWM invalide: " + e.getMessage(), e);
+        }
+    }
 
-            // Transformation DTO → modèle métier
-            return mapDtoToStation(dto);
+    /**
+     * Récupère les prévisions 5 jours / 3 heures (endpoint /forecast) pour une position.
+     * La réponse est lue en streaming : chaque élément de "list" est converti en {@link Meteo}
+     * dès sa lecture, sans construire l'arbre JSON complet en mémoire.
+     * @return {@link StationMeteo} dont donneesMeteo contient les prévisions (≈ 40), par date croissante
+     * @throws ApiClientException en cas d’erreur HTTP ou de réponse invalide
+     */
+    public StationMeteo fetchPrevisions(double latitude, double longitude, String lang) {
+        StringBuilder url = new StringBuilder(forecastUrl);
+        url.append("?lat=").append(latitude).append("&lon=").append(longitude);
+        PoolClesApi.Cle cle = cles.acquerir();
+        url.append("&appid=").append(URLEncoder.encode(cle.valeur(), StandardCharsets.UTF_8));
+        url.append("&units=metric");
+        if (lang != null && !lang.isBlank()) url.append("&lang=").append(lang);
+
+        try (TransportHttp.ReponseHttp response = transport.get(URI.create(url.toString()))) {
+            cles.signaler(cle, response.statut());
+            if (!response.estSucces()) {
+                throw HttpExceptionMapper.depuisStatut("OWM forecast", response.statut(), response.corpsTexte());
+            }
+
+            JsonReader reader = new JsonReader(new InputStreamReader(response.corps(), StandardCharsets.UTF_8));
+            return lirePrevisions(reader);
 
         } catch (IOException | InterruptedException e) {
-            // Ré-interrompt le thread pour ne pas perdre l’état d’interruption
-            Thread.currentThread().interrupt();
-            throw new ApiClientException("Erreur appel OWM: " + e.getMessage(), e);
+            cles.signalerErreur(cle, e);
+            throw HttpExceptionMapper.depuisErreur("OWM forecast", e);
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new ApiClientException("Réponse forecast invalide: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Convertit la réponse OpenWeatherMap (DTO) en objets métier exploitables.
+     * Parcourt le document forecast : "city" → station, "list" → une {@link Meteo} par élément.
+     * Les autres champs (cod, message, cnt...) sont ignorés.
      */
-    private StationMeteo mapDtoToStation(OpenWeatherMapResponse dto) {
+    private StationMeteo lirePrevisions(JsonReader reader) throws IOException {
         StationMeteo station = new StationMeteo();
-        station.setNom(dto.getName());
 
-        if (dto.getCoord() != null) {
-            station.setLatitude(dto.getCoord().getLat());
-            station.setLongitude(dto.getCoord().getLon());
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String champ = reader.nextName();
+            if ("city".equals(champ)) {
+                OpenWeatherMapForecastResponse.City city =
+                        gson.fromJson(reader, OpenWeatherMapForecastResponse.City.class);
+                if (city != null) {
+                    station.setNom(city.getName());
+                    station.setOpenWeatherMapId(city.getId());
+                    if (city.getCoord() != null) {
+                        station.setLatitude(city.getCoord().getLat());
+                        station.setLongitude(city.getCoord().getLon());
+                    }
+                    if (city.getCountry() != null) {
+                        Pays pays = new Pays();
+                        pays.setCode(city.getCountry());
+                        station.setPays(pays);
+                    }
+                }
+            } else if ("list".equals(champ)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    OpenWeatherMapForecastResponse.Item item =
+                            gson.fromJson(reader, OpenWeatherMapForecastResponse.Item.class);
+                    Meteo m = mapPrevision(item);
+                    if (m != null) station.addMeteo(m);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
         }
+        reader.endObject();
+
+        return station;
+    }
+
+    private Meteo mapPrevision(OpenWeatherMapForecastResponse.Item item) {
+        if (item == null || item.getDt() == null) return null;
+
+        Meteo m = new Meteo();
+        m.setDateMesureMs(item.getDt() * 1000L);
+        if (item.getMain() != null) {
+            m.setTemperature(item.getMain().getTemp());
+            m.setPression(item.getMain().getPressure());
+            if (item.getMain().getHumidity() != null)
+                m.setHumidite(item.getMain().getHumidity().doubleValue());
+        }
+        if (item.getWeather() != null && !item.getWeather().isEmpty()) {
+            m.setDescription(item.getWeather().get(0).getDescription());
+        }
+        if (item.getVisibility() != null) m.setVisibilite(item.getVisibility());
+        if (item.getRain() != null && item.getRain().getH3() != null) {
+            m.setPrecipitation(item.getRain().getH3());
+        }
+        return m;
+    }
+
+    /**
+     * Convertit le relevé décodé en objets métier exploitables.
+     */
+    private StationMeteo versStation(ReleveOwm r) {
+        StationMeteo station = new StationMeteo();
+        station.setNom(r.getNom());
+
+        if (r.a(ReleveOwm.LATITUDE)) station.setLatitude(r.getLatitude());
+        if (r.a(ReleveOwm.LONGITUDE)) station.setLongitude(r.getLongitude());
 
         // Création du pays à partir du code ISO
-        if (dto.getSys() != null && dto.getSys().getCountry() != null) {
+        if (r.getCodePays() != null) {
             Pays pays = new Pays();
-            pays.setCode(dto.getSys().getCountry());
+            pays.setCode(r.getCodePays());
             station.setPays(pays);
         }
 
         // Remplissage des données météo
+        // Date = instant de l'observation côté OWM (identique tant que la station n'a pas publié
+        // de nouvelle mesure), à défaut l'instant de l'appel
         Meteo m = new Meteo();
-        m.setDateMesure(new Date());
-        if (dto.getMain() != null) {
-            m.setTemperature(dto.getMain().getTemp());
-            m.setPression(dto.getMain().getPressure());
-            if (dto.getMain().getHumidity() != null)
-                m.setHumidite(dto.getMain().getHumidity().doubleValue());
-        }
-        if (dto.getWeather() != null && !dto.getWeather().isEmpty()) {
-            m.setDescription(dto.getWeather().get(0).getDescription());
-        }
-        if (dto.getVisibility() != null) m.setVisibilite(dto.getVisibility());
-        if (dto.getRain() != null && dto.getRain().getH1() != null) {
-            m.setPrecipitation(dto.getRain().getH1());
-        }
+        m.setDateMesureMs(r.a(ReleveOwm.DATE) ? r.getDateSecondes() * 1000L : System.currentTimeMillis());
+        if (r.a(ReleveOwm.TEMPERATURE)) m.setTemperature(r.getTemperature());
+        if (r.a(ReleveOwm.PRESSION)) m.setPression(r.getPression());
+        if (r.a(ReleveOwm.HUMIDITE)) m.setHumidite(r.getHumidite());
+        m.setDescription(r.getDescription());
+        if (r.a(ReleveOwm.VISIBILITE)) m.setVisibilite(r.getVisibilite());
+        if (r.a(ReleveOwm.PRECIPITATION)) m.setPrecipitation(r.getPrecipitation());
 
         station.addMeteo(m);
         return station;
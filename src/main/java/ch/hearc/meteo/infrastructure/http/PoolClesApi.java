@@ -0,0 +1,238 @@
+package ch.hearc.meteo.infrastructure.http;
+
+import ch.hearc.meteo.exception.ApiClientException;
+
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pool de clés d'API OpenWeatherMap, chacune avec son propre quota par minute.
+ * - chaque appel prend la clé qui a le plus de budget restant dans sa fenêtre d'une minute ;
+ * - une clé refusée (401 clé invalide / inactive, 429 quota dépassé) est retirée
+ *   temporairement de la rotation ;
+ * - les erreurs réseau et délais dépassés sont comptés par clé ; un appel qui n'a pas pu
+ *   se connecter n'a pas atteint OWM et ne compte pas dans le quota ;
+ * - compteurs d'utilisation par clé consultables via {@link #usage()}.
+ *
+ * Le débit total possible est donc la somme des quotas des clés.
+ */
+public class PoolClesApi {
+
+    private static final long FENETRE_MS = 60_000L;
+    private static final long SUSPENSION_401_MS = 15 * 60_000L; // clé invalide ou pas encore activée
+    private static final long SUSPENSION_429_MIN_MS = FENETRE_MS;
+
+    private final List<Cle> cles;
+    private final int quotaParMinute;
+
+    /**
+     * @param cles clés d'API (au moins une)
+     * @param quotaParMinute appels autorisés par clé et par minute (60 pour l'offre gratuite OWM)
+     */
+    public PoolClesApi(List<String> cles, int quotaParMinute) {
+        if (cles == null || cles.isEmpty()) {
+            throw new IllegalArgumentException("au moins une clé d'API requise");
+        }
+        if (quotaParMinute <= 0) {
+            throw new IllegalArgumentException("quota par minute invalide : " + quotaParMinute);
+        }
+        List<Cle> liste = new ArrayList<>();
+        for (String c : cles) {
+            liste.add(new Cle(c));
+        }
+        this.cles = Collections.unmodifiableList(liste);
+        this.quotaParMinute = quotaParMinute;
+    }
+
+    /** Clés séparées par des virgules (ex: valeur de openweathermap.key), vides ignorées. */
+    public static PoolClesApi depuisListe(String clesSepareesParVirgule, int quotaParMinute) {
+        List<String> cles = new ArrayList<>();
+        if (clesSepareesParVirgule != null) {
+            for (String c : clesSepareesParVirgule.split(",")) {
+                if (!c.isBlank()) cles.add(c.trim());
+            }
+        }
+        return new PoolClesApi(cles, quotaParMinute);
+    }
+
+    public int taille() {
+        return cles.size();
+    }
+
+    /**
+     * Réserve un appel sur la clé ayant le plus de budget restant (à égalité : la moins utilisée).
+     * @throws ApiClientException si toutes les clés sont suspendues ou ont épuisé leur quota
+     */
+    synchronized Cle acquerir() {
+        long maintenant = System.currentTimeMillis();
+        Cle choisie = null;
+        int meilleurRestant = 0;
+        long prochaineDispo = Long.MAX_VALUE;
+
+        for (Cle c : cles) {
+            c.avancerFenetre(maintenant);
+            if (c.suspendueJusqua > maintenant) {
+                prochaineDispo = Math.min(prochaineDispo, c.suspendueJusqua);
+                continue;
+            }
+            int restant = quotaParMinute - c.appelsFenetre;
+            if (restant <= 0) {
+                prochaineDispo = Math.min(prochaineDispo, c.debutFenetre + FENETRE_MS);
+                continue;
+            }
+            if (choisie == null || restant > meilleurRestant
+                    || (restant == meilleurRestant && c.appels < choisie.appels)) {
+                choisie = c;
+                meilleurRestant = restant;
+            }
+        }
+
+        if (choisie == null) {
+            long attenteS = Math.max(1, (prochaineDispo - maintenant + 999) / 1000);
+            throw new ApiClientException("Aucune clé API disponible (quota atteint ou clés suspendues), "
+                    + "prochaine disponibilité dans " + attenteS + " s");
+        }
+
+        choisie.appelsFenetre++;
+        choisie.appels++;
+        return choisie;
+    }
+
+    /** Enregistre le résultat d'un appel fait avec la clé : succès, ou suspension sur 401 / 429. */
+    synchronized void signaler(Cle cle, int statutHttp) {
+        long maintenant = System.currentTimeMillis();
+        if (statutHttp >= 200 && statutHttp < 300) {
+            cle.succes++;
+        } else if (statutHttp == 401) {
+            cle.refus401++;
+            cle.suspendueJusqua = maintenant + SUSPENSION_401_MS;
+            System.err.println("[WARN] Clé API " + cle.masquee() + " refusée (401), suspendue 15 min.");
+        } else if (statutHttp == 429) {
+            cle.refus429++;
+            // quota dépassé côté OWM : au moins jusqu'à la fin de la fenêtre courante
+            cle.suspendueJusqua = Math.max(maintenant + SUSPENSION_429_MIN_MS, cle.debutFenetre + FENETRE_MS);
+            System.err.println("[WARN] Clé API " + cle.masquee() + " limitée (429), suspendue 1 min.");
+        } else {
+            cle.autresErreurs++;
+        }
+    }
+
+    /**
+     * Enregistre un appel fait avec la clé et resté sans réponse HTTP (erreur réseau, délai dépassé,
+     * interruption). La clé n'est pas suspendue : l'erreur ne vient pas d'elle. Si la connexion
+     * n'a pas pu s'établir, la requête n'est jamais partie : l'appel est rendu au quota de la minute.
+     */
+    synchronized void signalerErreur(Cle cle, Exception erreur) {
+        if (erreur instanceof HttpTimeoutException && !(erreur instanceof HttpConnectTimeoutException)) {
+            cle.delaisDepasses++;
+        } else {
+            cle.erreursReseau++;
+        }
+        if ((erreur instanceof HttpConnectTimeoutException || erreur instanceof ConnectException)
+                && cle.appelsFenetre > 0) {
+            cle.appelsFenetre--;
+        }
+    }
+
+    /** Photographie des compteurs, une entrée par clé (clés masquées). */
+    public synchronized List<UsageCle> usage() {
+        long maintenant = System.currentTimeMillis();
+        List<UsageCle> result = new ArrayList<>();
+        for (Cle c : cles) {
+            c.avancerFenetre(maintenant);
+            result.add(new UsageCle(c.masquee(), c.appels, c.succes, c.refus401, c.refus429, c.autresErreurs,
+                    c.erreursReseau, c.delaisDepasses, Math.max(0, quotaParMinute - c.appelsFenetre),
+                    c.suspendueJusqua > maintenant ? c.suspendueJusqua : 0L));
+        }
+        return result;
+    }
+
+    // -------------------------------------------------------
+    // ÉTAT PAR CLÉ (accès sous le verrou du pool)
+    // -------------------------------------------------------
+
+    static final class Cle {
+        private final String valeur;
+        private long debutFenetre;
+        private int appelsFenetre;
+        private long suspendueJusqua;
+        private long appels;
+        private long succes;
+        private long refus401;
+        private long refus429;
+        private long autresErreurs;
+        private long erreursReseau;
+        private long delaisDepasses;
+
+        private Cle(String valeur) {
+            this.valeur = valeur;
+        }
+
+        String valeur() {
+            return valeur;
+        }
+
+        private void avancerFenetre(long maintenant) {
+            if (maintenant - debutFenetre >= FENETRE_MS) {
+                debutFenetre = maintenant;
+                appelsFenetre = 0;
+            }
+        }
+
+        private String masquee() {
+            return valeur.length() <= 4 ? "****" : "****" + valeur.substring(valeur.length() - 4);
+        }
+    }
+
+    /** Compteurs d'utilisation d'une clé. */
+    public static class UsageCle {
+        private final String cle;
+        private final long appels;
+        private final long succes;
+        private final long refus401;
+        private final long refus429;
+        private final long autresErreurs;
+        private final long erreursReseau;
+        private final long delaisDepasses;
+        private final int restantMinute;
+        private final long suspendueJusqua; // epoch ms, 0 si active
+
+        UsageCle(String cle, long appels, long succes, long refus401, long refus429, long autresErreurs,
+                 long erreursReseau, long delaisDepasses, int restantMinute, long suspendueJusqua) {
+            this.cle = cle;
+            this.appels = appels;
+            this.succes = succes;
+            this.refus401 = refus401;
+            this.refus429 = refus429;
+            this.autresErreurs = autresErreurs;
+            this.erreursReseau = erreursReseau;
+            this.delaisDepasses = delaisDepasses;
+            this.restantMinute = restantMinute;
+            this.suspendueJusqua = suspendueJusqua;
+        }
+
+        public String getCle() { return cle; }
+        public long getAppels() { return appels; }
+        public long getSucces() { return succes; }
+        public long getRefus401() { return refus401; }
+        public long getRefus429() { return refus429; }
+        public long getAutresErreurs() { return autresErreurs; }
+        public long getErreursReseau() { return erreursReseau; }
+        public long getDelaisDepasses() { return delaisDepasses; }
+        public int getRestantMinute() { return restantMinute; }
+        public long getSuspendueJusqua() { return suspendueJusqua; }
+        public boolean isSuspendue() { return suspendueJusqua > 0; }
+
+        @Override
+        public String toString() {
+            return cle + " : " + appels + " appels, " + succes + " ok, " + refus401 + " x 401, "
+                    + refus429 + " x 429, " + autresErreurs + " autres erreurs, "
+                    + erreursReseau + " erreurs réseau, " + delaisDepasses + " délais dépassés, "
+                    + restantMinute + " restants cette minute" + (isSuspendue() ? " (suspendue)" : "");
+        }
+    }
+}
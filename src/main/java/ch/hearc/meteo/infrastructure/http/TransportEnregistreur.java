@@ -0,0 +1,74 @@
+package ch.hearc.meteo.infrastructure.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Transport HTTP qui enregistre chaque réponse reçue (GET des clients OpenWeatherMap et Country)
+ * dans un fichier compact ({@link JournalHttp}), pour la rejouer hors ligne avec {@link TransportRejeu}.
+ *
+ * Le corps est lu entièrement puis rendu à l'appelant depuis la mémoire : les clients ne voient
+ * pas la différence. Les réponses 304 ne sont pas enregistrées (pas de corps ; le rejeu sert
+ * toujours une réponse complète). Les POST (webhooks d'alertes) ne sont pas enregistrés.
+ *
+ * Une erreur d'écriture du fichier n'interrompt pas la capture : l'enregistrement s'arrête,
+ * avec un avertissement.
+ */
+public class TransportEnregistreur extends TransportHttp implements AutoCloseable {
+
+    private final Path fichier;
+    private final JournalHttp.Ecriture ecriture;
+    private final long debutMs = System.currentTimeMillis();
+    private volatile boolean enEchec;
+
+    /** Crée (ou remplace) le fichier d'enregistrement. */
+    public TransportEnregistreur(Duration delaiConnexion, Duration delaiRequete, int nbThreads, Path fichier)
+            throws IOException {
+        super(delaiConnexion, delaiRequete, nbThreads);
+        this.fichier = fichier;
+        this.ecriture = new JournalHttp.Ecriture(fichier);
+    }
+
+    @Override
+    public ReponseHttp get(URI uri, Map<String, String> entetes) throws IOException, InterruptedException {
+        long instantMs = System.currentTimeMillis();
+        long t0 = System.nanoTime();
+        byte[] corps;
+        ReponseHttp reponse = super.get(uri, entetes);
+        try (InputStream in = reponse.corps()) {
+            corps = in.readAllBytes();
+        }
+        long latenceMicros = (System.nanoTime() - t0) / 1_000L;
+
+        if (reponse.statut() != 304 && !enEchec) {
+            try {
+                ecriture.ecrire(instantMs - debutMs, JournalHttp.requete(uri), latenceMicros,
+                        reponse.statut(), reponse.version(), reponse.entetes(), corps);
+            } catch (IOException e) {
+                enEchec = true;
+                System.err.println("[WARN] Enregistrement HTTP arrêté (" + fichier + ") : " + e.getMessage());
+            }
+        }
+        return new ReponseHttp(reponse.statut(), reponse.entetes(), reponse.version(), new ByteArrayInputStream(corps));
+    }
+
+    public Path getFichier() {
+        return fichier;
+    }
+
+    /** Nombre de réponses enregistrées. */
+    public long enregistrements() {
+        return ecriture.enregistrements();
+    }
+
+    /** Termine le fichier (à appeler avant de le rejouer). */
+    @Override
+    public void close() throws IOException {
+        ecriture.close();
+    }
+}
@@ -0,0 +1,386 @@
+package ch.hearc.meteo.infrastructure.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Transport HTTP partagé par les clients d'API (OpenWeatherMap, Country).
+ * - un seul HttpClient, créé au premier appel : connexions réutilisées entre les clients,
+ *   HTTP/2 préféré (plusieurs requêtes multiplexées sur une connexion TLS), repli HTTP/1.1 ;
+ * - délai max de connexion et délai max par requête, corps de la réponse compris : une réponse
+ *   lente ou interrompue en cours de transfert ne bloque plus l'appelant ;
+ * - threads dédiés (démons) pour le client ;
+ * - réponses compressées demandées (Accept-Encoding: gzip), décompressées par les threads du client
+ *   dans le délai de la requête ;
+ * - compteurs : requêtes, versions de protocole négociées, délais dépassés, octets reçus.
+ *   HttpClient n'expose pas son pool de connexions (ouvertures, réutilisations) : les compteurs
+ *   sont par requête et par protocole, et le maximum de requêtes simultanées indique le multiplexage.
+ *
+ * L'URL de base reste celle des clients : pointer vers un serveur local (http://localhost:port/...)
+ * suffit pour les essais sans réseau. Sous-classes : {@link TransportEnregistreur} (réponses reçues
+ * écrites dans un fichier) et {@link TransportRejeu} (réponses servies depuis ce fichier, hors ligne).
+ */
+public class TransportHttp {
+
+    private static volatile TransportHttp parDefaut;
+
+    private final Duration delaiConnexion;
+    private final Duration delaiRequete;
+    private final int nbThreads;
+    private volatile HttpClient client;
+
+    private final AtomicLong requetes = new AtomicLong();
+    private final AtomicLong reponsesHttp2 = new AtomicLong();
+    private final AtomicLong reponsesHttp11 = new AtomicLong();
+    private final AtomicLong reponsesGzip = new AtomicLong();
+    private final AtomicLong delaisConnexionDepasses = new AtomicLong();
+    private final AtomicLong delaisRequeteDepasses = new AtomicLong();
+    private final AtomicLong erreursReseau = new AtomicLong();
+    private final AtomicLong octetsRecus = new AtomicLong();      // tels que transmis (compressés)
+    private final AtomicLong octetsDecompresses = new AtomicLong();
+    private final AtomicLong dureeTotaleMs = new AtomicLong();
+    private final AtomicInteger enCours = new AtomicInteger();
+    private final AtomicInteger enCoursMax = new AtomicInteger();
+
+    /** Connexion 5 s, requête 10 s, 4 threads. */
+    public TransportHttp() {
+        this(Duration.ofSeconds(5), Duration.ofSeconds(10), 4);
+    }
+
+    public TransportHttp(Duration delaiConnexion, Duration delaiRequete, int nbThreads) {
+        if (delaiConnexion == null || delaiConnexion.isNegative() || delaiConnexion.isZero()
+                || delaiRequete == null || delaiRequete.isNegative() || delaiRequete.isZero()) {
+            throw new IllegalArgumentException("délais HTTP invalides");
+        }
+        if (nbThreads <= 0) {
+            throw new IllegalArgumentException("nombre de threads HTTP invalide : " + nbThreads);
+        }
+        this.delaiConnexion = delaiConnexion;
+        this.delaiRequete = delaiRequete;
+        this.nbThreads = nbThreads;
+    }
+
+    /** Transport commun aux clients construits sans transport explicite. */
+    public static TransportHttp parDefaut() {
+        TransportHttp t = parDefaut;
+        if (t == null) {
+            synchronized (TransportHttp.class) {
+                t = parDefaut;
+                if (t == null) {
+                    t = new TransportHttp();
+                    parDefaut = t;
+                }
+            }
+        }
+        return t;
+    }
+
+    /**
+     * GET avec les en-têtes communs (Accept JSON, Accept-Encoding gzip) et ceux donnés.
+     * Le corps est reçu en entier et décompressé dans le délai de la requête
+     * (réponses JSON de quelques Ko).
+     * @throws IOException erreur réseau ou délai dépassé ({@link HttpTimeoutException})
+     */
+    public ReponseHttp get(URI uri, Map<String, String> entetes) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(uri)
+                .timeout(delaiRequete)
+                .header("Accept", "application/json")
+                .header("Accept-Encoding", "gzip")
+                .GET();
+        for (Map.Entry<String, String> e : entetes.entrySet()) {
+            builder.setHeader(e.getKey(), e.getValue());
+        }
+
+        requetes.incrementAndGet();
+        enCoursMax.accumulateAndGet(enCours.incrementAndGet(), Math::max);
+        long t0 = System.nanoTime();
+        try {
+            HttpResponse<byte[]> reponse = envoyer(builder.build(), corpsDecompresse());
+
+            if (reponse.version() == HttpClient.Version.HTTP_2) {
+                reponsesHttp2.incrementAndGet();
+            } else {
+                reponsesHttp11.incrementAndGet();
+            }
+            InputStream corps = new ByteArrayInputStream(reponse.body());
+            return new ReponseHttp(reponse.statusCode(), reponse.headers(), reponse.version(), corps);
+
+        } catch (HttpConnectTimeoutException e) {
+            delaisConnexionDepasses.incrementAndGet();
+            throw e;
+        } catch (HttpTimeoutException e) {
+            delaisRequeteDepasses.incrementAndGet();
+            throw e;
+        } catch (IOException e) {
+            erreursReseau.incrementAndGet();
+            throw e;
+        } finally {
+            enCours.decrementAndGet();
+            dureeTotaleMs.addAndGet((System.nanoTime() - t0) / 1_000_000L); // jusqu'à la fin du corps
+        }
+    }
+
+    public ReponseHttp get(URI uri) throws IOException, InterruptedException {
+        return get(uri, Collections.emptyMap());
+    }
+
+    /**
+     * POST d'un document JSON (webhook), corps de la réponse ignoré.
+     * @return statut HTTP de la réponse
+     * @throws IOException erreur réseau ou délai dépassé
+     */
+    public int postJson(URI uri, String json) throws IOException, InterruptedException {
+        HttpRequest requete = HttpRequest.newBuilder()
+                .uri(uri)
+                .timeout(delaiRequete)
+                .header("Content-Type", "application/json; charset=utf-8")
+                .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
+                .build();
+
+        requetes.incrementAndGet();
+        enCoursMax.accumulateAndGet(enCours.incrementAndGet(), Math::max);
+        long t0 = System.nanoTime();
+        try {
+            HttpResponse<Void> reponse = envoyer(requete, HttpResponse.BodyHandlers.discarding());
+            if (reponse.version() == HttpClient.Version.HTTP_2) {
+                reponsesHttp2.incrementAndGet();
+            } else {
+                reponsesHttp11.incrementAndGet();
+            }
+            return reponse.statusCode();
+
+        } catch (HttpConnectTimeoutException e) {
+            delaisConnexionDepasses.incrementAndGet();
+            throw e;
+        } catch (HttpTimeoutException e) {
+            delaisRequeteDepasses.incrementAndGet();
+            throw e;
+        } catch (IOException e) {
+            erreursReseau.incrementAndGet();
+            throw e;
+        } finally {
+            enCours.decrementAndGet();
+            dureeTotaleMs.addAndGet((System.nanoTime() - t0) / 1_000_000L);
+        }
+    }
+
+    /**
+     * Envoie la requête et attend la réponse complète (en-têtes et corps) au plus delaiRequete :
+     * {@link HttpRequest#timeout} ne borne que l'attente des en-têtes, pas la réception du corps.
+     * Au-delà, l'échange est annulé (connexion libérée) et {@link HttpTimeoutException} est levée.
+     */
+    private <T> HttpResponse<T> envoyer(HttpRequest requete, HttpResponse.BodyHandler<T> corps)
+            throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<T>> envoi = client().sendAsync(requete, corps);
+        try {
+            return envoi.get(delaiRequete.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            envoi.cancel(true);
+            throw new HttpTimeoutException("réponse incomplète après " + delaiRequete.toMillis() + " ms");
+        } catch (InterruptedException e) {
+            envoi.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) cause = cause.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Corps reçu en entier puis décompressé s'il est en gzip, par les threads du client :
+     * la décompression fait partie de l'échange borné par {@link #envoyer}, pas de la lecture
+     * par l'appelant. Les en-têtes restent ceux reçus (Content-Encoding compris).
+     */
+    private HttpResponse.BodyHandler<byte[]> corpsDecompresse() {
+        return info -> {
+            boolean gzip = info.headers().firstValue("Content-Encoding")
+                    .map(v -> v.trim().equalsIgnoreCase("gzip"))
+                    .orElse(false);
+            return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(), octets -> {
+                octetsRecus.addAndGet(octets.length);
+                if (!gzip) return octets;
+                reponsesGzip.incrementAndGet();
+                try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(octets))) {
+                    byte[] decompresses = in.readAllBytes();
+                    octetsDecompresses.addAndGet(decompresses.length);
+                    return decompresses;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e); // corps gzip invalide : rendu par envoyer
+                }
+            });
+        };
+    }
+
+    private HttpClient client() {
+        HttpClient c = client;
+        if (c == null) {
+            synchronized (this) {
+                c = client;
+                if (c == null) {
+                    AtomicInteger compteur = new AtomicInteger();
+                    ExecutorService executor = Executors.newFixedThreadPool(nbThreads, r -> {
+                        Thread t = new Thread(r, "http-" + compteur.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    c = HttpClient.newBuilder()
+                            .version(HttpClient.Version.HTTP_2)
+                            .connectTimeout(delaiConnexion)
+                            .followRedirects(HttpClient.Redirect.NORMAL)
+                            .executor(executor)
+                            .build();
+                    client = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    /** Photographie des compteurs. */
+    public Metriques metriques() {
+        return new Metriques(requetes.get(), reponsesHttp2.get(), reponsesHttp11.get(), reponsesGzip.get(),
+                delaisConnexionDepasses.get(), delaisRequeteDepasses.get(), erreursReseau.get(),
+                octetsRecus.get(), octetsDecompresses.get(), dureeTotaleMs.get(), enCoursMax.get());
+    }
+
+    // -------------------------------------------------------
+    // RÉPONSE
+    // -------------------------------------------------------
+
+    /** Réponse HTTP dont le corps est déjà décompressé (reçue, ou rejouée depuis un enregistrement). */
+    public static class ReponseHttp implements AutoCloseable {
+        private final int statut;
+        private final HttpHeaders entetes;
+        private final HttpClient.Version version;
+        private final InputStream corps;
+
+        ReponseHttp(int statut, HttpHeaders entetes, HttpClient.Version version, InputStream corps) {
+            this.statut = statut;
+            this.entetes = entetes;
+            this.version = version;
+            this.corps = corps;
+        }
+
+        public int statut() {
+            return statut;
+        }
+
+        public boolean estSucces() {
+            return statut >= 200 && statut < 300;
+        }
+
+        /** Première valeur de l'en-tête, ou null. */
+        public String entete(String nom) {
+            return entetes.firstValue(nom).orElse(null);
+        }
+
+        HttpHeaders entetes() {
+            return entetes;
+        }
+
+        public HttpClient.Version version() {
+            return version;
+        }
+
+        /** Corps décompressé, à lire une seule fois. */
+        public InputStream corps() {
+            return corps;
+        }
+
+        /** Corps décompressé lu entièrement (UTF-8). */
+        public String corpsTexte() throws IOException {
+            try (InputStream in = corps) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                in.transferTo(out);
+                return out.toString(StandardCharsets.UTF_8);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            corps.close();
+        }
+    }
+
+    // -------------------------------------------------------
+    // MÉTRIQUES
+    // -------------------------------------------------------
+
+    public static class Metriques {
+        private final long requetes;
+        private final long reponsesHttp2;
+        private final long reponsesHttp11;
+        private final long reponsesGzip;
+        private final long delaisConnexionDepasses;
+        private final long delaisRequeteDepasses;
+        private final long erreursReseau;
+        private final long octetsRecus;
+        private final long octetsDecompresses;
+        private final long dureeTotaleMs;
+        private final int enCoursMax;
+
+        Metriques(long requetes, long reponsesHttp2, long reponsesHttp11, long reponsesGzip,
+                  long delaisConnexionDepasses, long delaisRequeteDepasses, long erreursReseau,
+                  long octetsRecus, long octetsDecompresses, long dureeTotaleMs, int enCoursMax) {
+            this.requetes = requetes;
+            this.reponsesHttp2 = reponsesHttp2;
+            this.reponsesHttp11 = reponsesHttp11;
+            this.reponsesGzip = reponsesGzip;
+            this.delaisConnexionDepasses = delaisConnexionDepasses;
+            this.delaisRequeteDepasses = delaisRequeteDepasses;
+            this.erreursReseau = erreursReseau;
+            this.octetsRecus = octetsRecus;
+            this.octetsDecompresses = octetsDecompresses;
+            this.dureeTotaleMs = dureeTotaleMs;
+            this.enCoursMax = enCoursMax;
+        }
+
+        public long getRequetes() { return requetes; }
+        public long getReponsesHttp2() { return reponsesHttp2; }
+        public long getReponsesHttp11() { return reponsesHttp11; }
+        public long getReponsesGzip() { return reponsesGzip; }
+        public long getDelaisConnexionDepasses() { return delaisConnexionDepasses; }
+        public long getDelaisRequeteDepasses() { return delaisRequeteDepasses; }
+        public long getErreursReseau() { return erreursReseau; }
+        public long getOctetsRecus() { return octetsRecus; }
+        public long getOctetsDecompresses() { return octetsDecompresses; }
+        public long getDureeTotaleMs() { return dureeTotaleMs; }
+        public int getEnCoursMax() { return enCoursMax; }
+
+        @Override
+        public String toString() {
+            long moyenne = requetes > 0 ? dureeTotaleMs / requetes : 0;
+            return requetes + " requêtes (HTTP/2 " + reponsesHttp2 + ", HTTP/1.1 " + reponsesHttp11
+                    + ", gzip " + reponsesGzip + "), délais dépassés connexion " + delaisConnexionDepasses
+                    + " / requête " + delaisRequeteDepasses + ", erreurs réseau " + erreursReseau
+                    + ", octets reçus " + octetsRecus + " (décompressés " + octetsDecompresses + ")"
+                    + ", " + moyenne + " ms en moyenne, " + enCoursMax + " simultanées max";
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package ch.hearc.meteo.infrastructure.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transport HTTP hors ligne : sert les réponses d'un fichier écrit par {@link TransportEnregistreur},
+ * sans aucun accès réseau, avec une latence simulée (voir {@link Latence}).
+ *
+ * - Une requête (URI sans hôte ni clé API, voir {@link JournalHttp#requete}) reçoit les réponses
+ *   enregistrées pour elle, à tour de rôle : on peut rejouer bien plus de requêtes qu'il n'en a été
+ *   enregistré, et une même position voit défiler ses observations successives.
+ * - Requête absente de l'enregistrement : 404 (comme une ville inconnue pour OWM), comptée.
+ * - POST (webhooks d'alertes) : ignorés, statut 204.
+ *
+ * Même fichier, même latence, même graine et mêmes requêtes : mêmes réponses et mêmes délais,
+ * d'une exécution à l'autre, quel que soit l'ordre d'arrivée des requêtes entre threads.
+ */
+public class TransportRejeu extends TransportHttp {
+
+    private static final byte[] CORPS_ABSENT =
+            "{\"cod\":\"404\",\"message\":\"requête absente de l'enregistrement\"}".getBytes(StandardCharsets.UTF_8);
+    private static final HttpHeaders ENTETES_ABSENT = HttpHeaders.of(
+            Collections.singletonMap("Content-Type", Collections.singletonList("application/json")), (n, v) -> true);
+
+    private final Map<String, Reponses> parRequete = new HashMap<>();
+    // rang de la prochaine requête absente, par requête (tirages de latence)
+    private final Map<String, AtomicLong> rangsAbsentes = new ConcurrentHashMap<>();
+    private final List<String> requetesEnregistrees = new ArrayList<>();
+    private final long dureeEnregistrementMs;
+    private final Latence latence;
+
+    private final AtomicLong requetes = new AtomicLong();
+    private final AtomicLong absentes = new AtomicLong();
+    private final AtomicLong postsIgnores = new AtomicLong();
+    private final AtomicLong reponsesHttp2 = new AtomicLong();
+    private final AtomicLong octetsServis = new AtomicLong();
+    private final AtomicLong latenceTotaleMicros = new AtomicLong();
+    private final AtomicInteger enCours = new AtomicInteger();
+    private final AtomicInteger enCoursMax = new AtomicInteger();
+
+    /**
+     * Charge tout le fichier en mémoire.
+     * @throws IOException fichier absent ou illisible
+     */
+    public TransportRejeu(Path fichier, Latence latence) throws IOException {
+        if (latence == null) throw new IllegalArgumentException("latence de rejeu requise");
+        this.latence = latence;
+        List<JournalHttp.Reponse> lues = JournalHttp.lire(fichier);
+        Map<String, List<JournalHttp.Reponse>> groupes = new HashMap<>();
+        long fin = 0;
+        for (JournalHttp.Reponse r : lues) {
+            groupes.computeIfAbsent(r.requete, k -> new ArrayList<>()).add(r);
+            requetesEnregistrees.add(r.requete);
+            fin = Math.max(fin, r.instantMs);
+        }
+        for (Map.Entry<String, List<JournalHttp.Reponse>> e : groupes.entrySet()) {
+            parRequete.put(e.getKey(), new Reponses(e.getValue().toArray(new JournalHttp.Reponse[0])));
+        }
+        this.dureeEnregistrementMs = fin;
+    }
+
+    @Override
+    public ReponseHttp get(URI uri, Map<String, String> entetes) throws IOException, InterruptedException {
+        requetes.incrementAndGet();
+        String requete = JournalHttp.requete(uri);
+        Reponses candidates = parRequete.get(requete);
+        long rang = candidates != null ? candidates.prochaine.getAndIncrement()
+                : rangsAbsentes.computeIfAbsent(requete, k -> new AtomicLong()).getAndIncrement();
+        JournalHttp.Reponse r = candidates != null ? candidates.reponse(rang) : null;
+
+        long micros = latence.micros(r != null ? r.latenceMicros : 0, requete, rang);
+        enCoursMax.accumulateAndGet(enCours.incrementAndGet(), Math::max);
+        try {
+            if (micros > 0) TimeUnit.MICROSECONDS.sleep(micros);
+        } finally {
+            enCours.decrementAndGet();
+        }
+        latenceTotaleMicros.addAndGet(micros);
+
+        if (r == null) {
+            absentes.incrementAndGet();
+            return new ReponseHttp(404, ENTETES_ABSENT, HttpClient.Version.HTTP_1_1,
+                    new ByteArrayInputStream(CORPS_ABSENT));
+        }
+        if (r.version == HttpClient.Version.HTTP_2) reponsesHttp2.incrementAndGet();
+        octetsServis.addAndGet(r.corps.length);
+        return new ReponseHttp(r.statut, r.entetes, r.version, new ByteArrayInputStream(r.corps));
+    }
+
+    /** Pas d'envoi hors ligne : le document est ignoré. */
+    @Override
+    public int postJson(URI uri, String json) {
+        postsIgnores.incrementAndGet();
+        return 204;
+    }
+
+    /** Requêtes de l'enregistrement, dans l'ordre (pour rejouer la même suite d'appels). */
+    public List<String> requetesEnregistrees() {
+        return Collections.unmodifiableList(requetesEnregistrees);
+    }
+
+    /** Durée de l'enregistrement : de la première à la dernière requête. */
+    public long dureeEnregistrementMs() {
+        return dureeEnregistrementMs;
+    }
+
+    /** Compteurs au format de {@link TransportHttp} (octets : corps servis, sans compression). */
+    @Override
+    public Metriques metriques() {
+        long n = requetes.get();
+        long http2 = reponsesHttp2.get();
+        return new Metriques(n, http2, n - http2, 0, 0, 0, 0, octetsServis.get(), octetsServis.get(),
+                latenceTotaleMicros.get() / 1_000L, enCoursMax.get());
+    }
+
+    /** Bilan du rejeu. */
+    public String statistiques() {
+        long n = requetes.get();
+        return String.format(Locale.ROOT, "%d réponse(s) rejouée(s), %d absente(s) de l'enregistrement, "
+                        + "%d requête(s) distincte(s) enregistrée(s), latence simulée %s, %.2f ms en moyenne, "
+                        + "%d POST ignoré(s)",
+                n - absentes.get(), absentes.get(), parRequete.size(), latence,
+                n > 0 ? latenceTotaleMicros.get() / 1_000.0 / n : 0.0, postsIgnores.get());
+    }
+
+    /** Réponses d'une requête, servies à tour de rôle : la n-ième requête identique reçoit la n-ième. */
+    private static final class Reponses {
+        private final JournalHttp.Reponse[] reponses;
+        private final AtomicLong prochaine = new AtomicLong();
+
+        Reponses(JournalHttp.Reponse[] reponses) {
+            this.reponses = reponses;
+        }
+
+        JournalHttp.Reponse reponse(long rang) {
+            return reponses[(int) Math.floorMod(rang, (long) reponses.length)];
+        }
+    }
+
+    // -------------------------------------------------------
+    // LATENCE SIMULÉE
+    // -------------------------------------------------------
+
+    /**
+     * Latence ajoutée à chaque réponse rejouée, divisée par la vitesse (vitesse 10 : dix fois
+     * plus rapide que le modèle ; vitesse 0 : aucune attente).
+     * Les tirages aléatoires ne dépendent que de la graine, de la requête et de son rang parmi les
+     * requêtes identiques : pas de l'ordre dans lequel les threads les envoient.
+     */
+    public static final class Latence {
+        private enum Modele { ENREGISTREE, AUCUNE, FIXE, LOGNORMALE }
+
+        // quantile 99 % de la loi normale centrée réduite
+        private static final double Z_99 = 2.326347874;
+
+        private final Modele modele;
+        private final double vitesse;
+        private final double medianeMicros;
+        private final double sigma;
+        private final long graine;
+
+        private Latence(Modele modele, double vitesse, double medianeMicros, double sigma, long graine) {
+            if (vitesse < 0 || Double.isNaN(vitesse)) throw new IllegalArgumentException("vitesse de rejeu invalide : " + vitesse);
+            this.modele = modele;
+            this.vitesse = vitesse;
+            this.medianeMicros = medianeMicros;
+            this.sigma = sigma;
+            this.graine = graine;
+        }
+
+        /** Latence mesurée à l'enregistrement, réponse par réponse. */
+        public static Latence enregistree(double vitesse) {
+            return new Latence(Modele.ENREGISTREE, vitesse, 0, 0, 0);
+        }
+
+        /** Réponses immédiates. */
+        public static Latence aucune() {
+            return new Latence(Modele.AUCUNE, 0, 0, 0, 0);
+        }
+
+        public static Latence fixe(double ms, double vitesse) {
+            if (ms < 0) throw new IllegalArgumentException("latence négative : " + ms);
+            return new Latence(Modele.FIXE, vitesse, ms * 1_000, 0, 0);
+        }
+
+        /**
+         * Loi log-normale de médiane et de 99e percentile donnés (queue lourde, comme une API
+         * distante) ; tirages reproductibles pour une graine donnée.
+         */
+        public static Latence lognormale(double medianeMs, double p99Ms, double vitesse, long graine) {
+            if (medianeMs <= 0 || p99Ms < medianeMs) {
+                throw new IllegalArgumentException("latence log-normale : 0 < médiane <= p99 requis");
+            }
+            return new Latence(Modele.LOGNORMALE, vitesse, medianeMs * 1_000, Math.log(p99Ms / medianeMs) / Z_99, graine);
+        }
+
+        /**
+         * Depuis la configuration : "enregistree", "aucune", "fixe:&lt;ms&gt;" ou
+         * "lognormale:&lt;médiane ms&gt;,&lt;p99 ms&gt;".
+         * @throws IllegalArgumentException modèle inconnu ou valeurs invalides
+         */
+        public static Latence depuisTexte(String texte, double vitesse, long graine) {
+            String t = texte == null ? "" : texte.trim().toLowerCase(Locale.ROOT);
+            int i = t.indexOf(':');
+            String nom = i < 0 ? t : t.substring(0, i).trim();
+            String[] valeurs = i < 0 ? new String[0] : t.substring(i + 1).split(",");
+            try {
+                switch (nom) {
+                    case "":
+                    case "enregistree":
+                        return enregistree(vitesse);
+                    case "aucune":
+                        return aucune();
+                    case "fixe":
+                        return fixe(Double.parseDouble(valeurs[0].trim()), vitesse);
+                    case "lognormale":
+                        return lognormale(Double.parseDouble(valeurs[0].trim()),
+                                Double.parseDouble(valeurs[1].trim()), vitesse, graine);
+                    default:
+                        throw new IllegalArgumentException("latence de rejeu inconnue : " + texte);
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("latence de rejeu invalide : " + texte, e);
+            }
+        }
+
+        /**
+         * Attente en µs pour la requête donnée, de rang n parmi les requêtes identiques
+         * (latence enregistrée de la réponse servie donnée).
+         */
+        long micros(long enregistreeMicros, String requete, long n) {
+            if (vitesse == 0 || modele == Modele.AUCUNE) return 0;
+            double brute;
+            switch (modele) {
+                case ENREGISTREE:
+                    brute = enregistreeMicros;
+                    break;
+                case FIXE:
+                    brute = medianeMicros;
+                    break;
+                default:
+                    brute = medianeMicros * Math.exp(sigma * gaussienne(requete.hashCode(), n));
+                    break;
+            }
+            return Math.round(brute / vitesse);
+        }
+
+        /** Tirage normal centré réduit (Box-Muller) ne dépendant que de la graine, de la requête et de n. */
+        private double gaussienne(int requete, long n) {
+            long a = melanger(melanger(graine ^ requete) + n * 0x9E3779B97F4A7C15L);
+            long b = melanger(a);
+            double u1 = ((a >>> 11) + 1) * 0x1.0p-53; // ]0, 1]
+            double u2 = (b >>> 11) * 0x1.0p-53;
+            return Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * u2);
+        }
+
+        /** Mélange splitmix64. */
+        private static long melanger(long z) {
+            z += 0x9E3779B97F4A7C15L;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+
+        @Override
+        public String toString() {
+            String vitesseTexte = vitesse == 1 ? "" : String.format(Locale.ROOT, " (vitesse x%s)", vitesse);
+            switch (modele) {
+                case ENREGISTREE:
+                    return (vitesse == 0 ? "aucune" : "enregistrée" + vitesseTexte);
+                case AUCUNE:
+                    return "aucune";
+                case FIXE:
+                    return String.format(Locale.ROOT, "fixe %.1f ms%s", medianeMicros / 1_000, vitesseTexte);
+                default:
+                    return String.format(Locale.ROOT, "log-normale médiane %.1f ms, p99 %.1f ms%s",
+                            medianeMicros / 1_000, medianeMicros * Math.exp(sigma * Z_99) / 1_000, vitesseTexte);
+            }
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package ch.hearc.meteo.infrastructure.persistence;
+
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.Pays;
+import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.infrastructure.archive.ArchiveMeteo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Repository "base + archive" : délègue les écritures à la base,
+ * et fusionne les lectures historiques avec les segments archivés ({@link ArchiveMeteo}).
+ * Pour l'appelant, les relevés déplacés dans l'archive restent visibles comme avant.
+ */
+public class ArchiveMeteoRepository implements MeteoRepository {
+
+    // relevés lus par aller-retour avec la base pendant l'archivage
+    private static final int LOT_ARCHIVAGE = 5_000;
+
+    private final MeteoRepository delegate;
+    private final ArchiveMeteo archive;
+
+    public ArchiveMeteoRepository(MeteoRepository delegate, ArchiveMeteo archive) {
+        if (delegate == null || archive == null) {
+            throw new IllegalArgumentException("delegate et archive requis");
+        }
+        this.delegate = delegate;
+        this.archive = archive;
+    }
+
+    /** Repository de la base, enveloppé par l'archive. */
+    public MeteoRepository getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Déplace vers l'archive les relevés antérieurs à la date limite, pour toutes les stations :
+     * lecture en flux ({@link #parcourirReleves}, par station puis par date), écriture d'un segment
+     * par station et par mois, puis suppression en base des seuls relevés écrits (par station et date).
+     * Un seul mois d'une station est en mémoire à la fois ; la suppression n'a lieu qu'une fois
+     * le segment écrit sur disque.
+     * @return nombre de relevés archivés
+     */
+    public int archiverAvant(Instant limite) throws Exception {
+        return archiver(limite).archives;
+    }
+
+    /**
+     * Rétention avec archive : les relevés antérieurs à la limite sont copiés dans l'archive
+     * (fusion dédoublonnée : rejouer après une interruption est sans effet), et seuls les relevés
+     * copiés sont supprimés de la base, par station et date. Ils restent lisibles via l'archive.
+     *
+     * Pas de purge globale de la base après coup : elle supprimerait aussi les relevés sans station
+     * (jamais archivés) et ceux enregistrés pendant l'archivage (import en cours, capture d'un relevé
+     * ancien). Ces relevés restent en base et sont signalés ; les seconds sont archivés au passage suivant.
+     * @return nombre de relevés supprimés de la base
+     */
+    @Override
+    public long purgerRelevesAvant(Instant limite) throws Exception {
+        Archivage archivage = archiver(limite);
+        long restants = delegate.compterRelevesAvant(limite);
+        if (restants > 0) {
+            System.err.println("[WARN] Rétention : " + restants + " relevé(s) antérieur(s) au " + limite
+                    + " laissé(s) en base, non archivé(s) (sans station, ou enregistré(s) pendant l'archivage).");
+        }
+        return archivage.supprimes;
+    }
+
+    private Archivage archiver(Instant limite) throws Exception {
+        Map<Integer, StationMeteo> stations = stationsParNumero();
+        Archivage archivage = new Archivage(stations);
+        try {
+            delegate.parcourirReleves(stations.keySet(), null, limite, LOT_ARCHIVAGE, archivage);
+            archivage.ecrire();
+        } catch (ArchivageInterrompu e) {
+            throw (Exception) e.getCause();
+        }
+        return archivage;
+    }
+
+    /** Stations de la base par numéro. */
+    private Map<Integer, StationMeteo> stationsParNumero() throws Exception {
+        Map<Integer, StationMeteo> result = new HashMap<>();
+        for (StationMeteo s : delegate.findAllStations()) result.put(s.getNumero(), s);
+        return result;
+    }
+
+    /**
+     * Reçoit les relevés froids d'une station à la fois, par date croissante : les relevés d'un
+     * même mois (UTC) sont gardés puis écrits d'un coup dans leur segment, et supprimés de la base.
+     */
+    private final class Archivage implements LecteurRelevesComplets {
+        private final Map<Integer, StationMeteo> stations;
+        private List<Meteo> mois = new ArrayList<>();
+        private int stationCourante;
+        private long finMois = Long.MIN_VALUE;
+        int archives;
+        long supprimes;
+
+        Archivage(Map<Integer, StationMeteo> stations) {
+            this.stations = stations;
+        }
+
+        @Override
+        public void releve(int stationId, long dateMs, double temperature, double humidite, double pression,
+                           double precipitation, double visibilite, String description) {
+            if (stationId != stationCourante || dateMs >= finMois) {
+                ecrire();
+                stationCourante = stationId;
+                YearMonth ym = YearMonth.from(Instant.ofEpochMilli(dateMs).atZone(ZoneOffset.UTC));
+                finMois = ym.plusMonths(1).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+            }
+
+            Meteo m = new Meteo();
+            m.setDateMesureMs(dateMs);
+            m.setTemperature(objet(temperature));
+            m.setHumidite(objet(humidite));
+            m.setPression(objet(pression));
+            m.setPrecipitation(objet(precipitation));
+            m.setVisibilite(Double.isNaN(visibilite) ? null : (int) visibilite);
+            m.setDescription(description);
+            mois.add(m);
+        }
+
+        /** Écrit le mois en cours dans l'archive, puis supprime ces relevés de la base. */
+        void ecrire() {
+            if (mois.isEmpty()) return;
+            try {
+                archives += archive.archiver(stations.get(stationCourante), mois);
+                List<Instant> dates = new ArrayList<>(mois.size());
+                for (Meteo m : mois) dates.add(Instant.ofEpochMilli(m.getDateMesureMs()));
+                supprimes += delegate.supprimerReleves(stationCourante, dates);
+            } catch (Exception e) {
+                throw new ArchivageInterrompu(e);
+            }
+            mois = new ArrayList<>();
+        }
+    }
+
+    /** Erreur d'écriture ou de suppression pendant le parcours, relancée telle quelle par archiverAvant. */
+    private static final class ArchivageInterrompu extends RuntimeException {
+        ArchivageInterrompu(Exception cause) {
+            super(cause);
+        }
+    }
+
+    // -------------------------------------------------------
+    // ÉCRITURE / STATIONS : base uniquement
+    // -------------------------------------------------------
+
+    @Override
+    public void save(StationMeteo station) throws Exception {
+        delegate.save(station);
+    }
+
+    @Override
+    public void savePrevisions(StationMeteo station) throws Exception {
+        delegate.savePrevisions(station);
+    }
+
+    @Override
+    public Integer ensureStationId(StationMeteo station) throws Exception {
+        return delegate.ensureStationId(station);
+    }
+
+    @Override
+    public int saveMeteoParStation(Map<Integer, List<Meteo>> relevesParStation) throws Exception {
+        return delegate.saveMeteoParStation(relevesParStation);
+    }
+
+    @Override
+    public List<Meteo> findPrevisionsForStation(String stationName, Instant aPartirDe) throws Exception {
+        return delegate.findPrevisionsForStation(stationName, aPartirDe);
+    }
+
+    @Override
+    public List<String> findAllStationNames() throws Exception {
+        return delegate.findAllStationNames();
+    }
+
+    @Override
+    public StationMeteo findStationByName(String stationName) throws Exception {
+        return delegate.findStationByName(stationName);
+    }
+
+    @Override
+    public List<StationMeteo> findAllStations() throws Exception {
+        return delegate.findAllStations();
+    }
+
+    @Override
+    public List<StationMeteo> findDerniersReleves(Instant depuis) throws Exception {
+        return delegate.findDerniersReleves(depuis);
+    }
+
+    @Override
+    public List<Pays> findAllPays() throws Exception {
+        return delegate.findAllPays();
+    }
+
+    @Override
+    public int deleteMeteoForStationBefore(String stationName, Instant limite) throws Exception {
+        return delegate.deleteMeteoForStationBefore(stationName, limite);
+    }
+
+    @Override
+    public int supprimerReleves(int stationId, Collection<Instant> dates) throws Exception {
+        return delegate.supprimerReleves(stationId, dates);
+    }
+
+    @Override
+    public long compterRelevesAvant(Instant limite) throws Exception {
+        return delegate.compterRelevesAvant(limite);
+    }
+
+    // -------------------------------------------------------
+    // LECTURE HISTORIQUE : base + archive
+    // -------------------------------------------------------
+
+    /*
+     * Fusion base + archive par nom : à chaque instant, autant de relevés que du côté qui en a le plus.
+     * Un relevé présent des deux côtés (archivage interrompu avant la suppression en base) n'est
+     * donc rendu qu'une fois, et des stations homonymes mesurées au même instant le sont chacune.
+     */
+
+    @Override
+    public List<Instant> findMeasurementInstantsForStation(String stationName) throws Exception {
+        TreeMap<Instant, Integer> base = compter(delegate.findMeasurementInstantsForStation(stationName));
+        TreeMap<Instant, Integer> archives = compter(archive.listerDates(stationName));
+        for (Map.Entry<Instant, Integer> e : archives.entrySet()) base.merge(e.getKey(), e.getValue(), Math::max);
+
+        List<Instant> dates = new ArrayList<>();
+        for (Map.Entry<Instant, Integer> e : base.descendingMap().entrySet()) { // plus récent d'abord
+            for (int i = 0; i < e.getValue(); i++) dates.add(e.getKey());
+        }
+        return dates;
+    }
+
+    private static TreeMap<Instant, Integer> compter(List<Instant> dates) {
+        TreeMap<Instant, Integer> result = new TreeMap<>();
+        for (Instant i : dates) result.merge(i, 1, Integer::sum);
+        return result;
+    }
+
+    @Override
+    public Meteo findMeteoForStationAt(String stationName, Instant instant) throws Exception {
+        Meteo m = delegate.findMeteoForStationAt(stationName, instant);
+        return m != null ? m : archive.trouver(stationName, instant);
+    }
+
+    @Override
+    public List<Meteo> findMeteoForStationBetween(String stationName, Instant debut, Instant fin) throws Exception {
+        // fusion triée par date ; les relevés de la base priment, l'archive complète au-delà
+        TreeMap<Long, List<Meteo>> base = parDate(delegate.findMeteoForStationBetween(stationName, debut, fin));
+        TreeMap<Long, List<Meteo>> archives = parDate(archive.lirePlage(stationName, debut, fin));
+        for (Map.Entry<Long, List<Meteo>> e : archives.entrySet()) {
+            List<Meteo> memeDate = base.computeIfAbsent(e.getKey(), k -> new ArrayList<>());
+            List<Meteo> archivesDate = e.getValue();
+            if (archivesDate.size() > memeDate.size()) {
+                memeDate.addAll(archivesDate.subList(memeDate.size(), archivesDate.size()));
+            }
+        }
+
+        List<Meteo> result = new ArrayList<>();
+        for (List<Meteo> memeDate : base.values()) result.addAll(memeDate);
+        return result;
+    }
+
+    private static TreeMap<Long, List<Meteo>> parDate(List<Meteo> releves) {
+        TreeMap<Long, List<Meteo>> result = new TreeMap<>();
+        for (Meteo m : releves) {
+            if (m.hasDateMesure()) result.computeIfAbsent(m.getDateMesureMs(), k -> new ArrayList<>()).add(m);
+        }
+        return result;
+    }
+
+    @Override
+    public void parcourirReleves(Collection<Integer> stations, Instant debut, Instant fin,
+                                 int tailleLot, LecteurReleves lecteur) throws Exception {
+        FusionArchive fusion = new FusionArchive(new TreeSet<>(stations), stationsParNumero(), debut, fin, lecteur);
+        try {
+            // lecteur simple : la base ne lit pas la visibilité ni la description
+            delegate.parcourirReleves(stations, debut, fin, tailleLot,
+                    fusion.complet != null ? fusion : fusion::releve);
+            fusion.emettreArchivesAvant(Integer.MAX_VALUE);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Insère les relevés archivés dans le flux de la base : ceux d'une station (plus anciens)
+     * sont émis juste avant sa première ligne en base, ou à leur tour si elle n'en a aucune.
+     * L'ordre station puis date est conservé, une station à la fois en mémoire.
+     * En cas de doublon (archivage interrompu), la base prime.
+     */
+    private final class FusionArchive implements LecteurRelevesComplets {
+        private final TreeSet<Integer> restantes;
+        private final Map<Integer, StationMeteo> stations;
+        private final Instant debut;
+        private final Instant fin;
+        private final LecteurReleves lecteur;
+        final LecteurRelevesComplets complet;
+        private int courante = Integer.MIN_VALUE;
+
+        FusionArchive(TreeSet<Integer> restantes, Map<Integer, StationMeteo> stations, Instant debut, Instant fin,
+                      LecteurReleves lecteur) {
+            this.restantes = restantes;
+            this.stations = stations;
+            this.debut = debut;
+            this.fin = fin;
+            this.lecteur = lecteur;
+            this.complet = lecteur instanceof LecteurRelevesComplets ? (LecteurRelevesComplets) lecteur : null;
+        }
+
+        @Override
+        public void releve(int stationId, long dateMs, double temperature, double humidite, double pression,
+                           double precipitation, double visibilite, String description) {
+            if (stationId != courante) {
+                emettreArchivesAvant(stationId);
+                if (restantes.remove(stationId)) emettreArchive(stationId, dateMs);
+                courante = stationId;
+            }
+            transmettre(stationId, dateMs, temperature, humidite, pression, precipitation, visibilite, description);
+        }
+
+        /** Archives complètes des stations restantes de numéro inférieur. */
+        void emettreArchivesAvant(int stationId) {
+            while (!restantes.isEmpty() && restantes.first() < stationId) {
+                emettreArchive(restantes.pollFirst(), Long.MAX_VALUE);
+            }
+        }
+
+        private void emettreArchive(int stationId, long avantMs) {
+            StationMeteo station = stations.get(stationId);
+            if (station == null) return;
+            try {
+                for (Meteo m : archive.lirePlage(station, debut, fin)) {
+                    if (!m.hasDateMesure() || m.getDateMesureMs() >= avantMs) continue;
+                    transmettre(stationId, m.getDateMesureMs(), valeur(m.getTemperature()), valeur(m.getHumidite()),
+                            valeur(m.getPression()), valeur(m.getPrecipitation()),
+                            m.getVisibilite() != null ? m.getVisibilite() : Double.NaN, m.getDescription());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void transmettre(int stationId, long dateMs, double temperature, double humidite, double pression,
+                                 double precipitation, double visibilite, String description) {
+            if (complet != null) {
+                complet.releve(stationId, dateMs, temperature, humidite, pression, precipitation, visibilite, description);
+            } else {
+                lecteur.releve(stationId, dateMs, temperature, humidite, pression, precipitation);
+            }
+        }
+    }
+
+    private static double valeur(Double v) {
+        return v != null ? v : Double.NaN;
+    }
+
+    private static Double objet(double v) {
+        return Double.isNaN(v) ? null : v;
+    }
+}
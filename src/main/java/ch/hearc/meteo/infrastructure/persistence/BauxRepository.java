@@ -0,0 +1,37 @@
+package ch.hearc.meteo.infrastructure.persistence;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Coordination des nœuds de capture du mode cluster (tables noeuds_capture et baux_stations).
+ * Implémenté par OracleMeteoRepository (et donc H2MeteoRepository) : les baux vivent dans la base
+ * partagée par les nœuds, indépendamment de l'historique des relevés et de son archive.
+ */
+public interface BauxRepository {
+
+    /**
+     * Enregistre ou prolonge le bail du nœud jusqu'à expiration, ainsi que les baux des stations
+     * qu'il détient. Supprime au passage les nœuds expirés depuis longtemps.
+     */
+    void renouvelerNoeud(String noeud, Instant expiration) throws Exception;
+
+    /** Nœuds dont le bail n'a pas expiré à l'instant donné, triés par nom. */
+    List<String> findNoeudsActifs(Instant maintenant) throws Exception;
+
+    /**
+     * Prend (ou prolonge) le bail des stations données pour ce nœud, jusqu'à expiration.
+     * Une station détenue par un autre nœud dont le bail n'a pas expiré n'est pas prise.
+     * @return numéros des stations détenues par le nœud à l'issue de l'appel
+     */
+    Set<Integer> acquerirStations(String noeud, Collection<Integer> stations,
+                                  Instant maintenant, Instant expiration) throws Exception;
+
+    /** Rend les baux de ces stations (s'ils sont détenus par ce nœud) : reprise immédiate par un autre. */
+    void libererStations(String noeud, Collection<Integer> stations) throws Exception;
+
+    /** Arrêt propre d'un nœud : supprime son bail et rend toutes ses stations. */
+    void retirerNoeud(String noeud) throws Exception;
+}
@@ -0,0 +1,134 @@
+package ch.hearc.meteo.infrastructure.persistence;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Connexion JDBC d'une opération du repository : close() la rend au pool ({@link PoolConnexions}),
+ * ou la ferme sans pool.
+ *
+ * Les requêtes de chaque enregistrement (pays, station) sont préparées une fois par connexion
+ * physique avec {@link #requete(String)} et gardées avec elle d'un emprunt à l'autre ; les autres
+ * sont préparées par l'opération (jdbc().prepareStatement) et fermées par elle.
+ *
+ * Utilisée par un seul emprunteur à la fois.
+ */
+final class Connexion implements AutoCloseable {
+
+    private final Connection cn;
+    // null : connexion fermée par close
+    private final PoolConnexions pool;
+    private final int requetesMax;
+    // requêtes gardées avec la connexion physique, par texte SQL
+    private final Map<String, PreparedStatement> requetes = new HashMap<>();
+    // requêtes au-delà de requetesMax : fermées à la fin de l'emprunt
+    private final List<PreparedStatement> temporaires = new ArrayList<>();
+    private boolean empruntee;
+    long rendueMs = System.currentTimeMillis();
+
+    /**
+     * @param pool null : connexion ouverte pour une seule opération
+     * @param requetesMax requêtes gardées avec la connexion (0 : préparées à chaque emprunt)
+     */
+    Connexion(Connection cn, PoolConnexions pool, int requetesMax) {
+        this.cn = cn;
+        this.pool = pool;
+        this.requetesMax = requetesMax;
+        this.empruntee = true;
+    }
+
+    /** Connexion JDBC, à ne pas fermer (close de cet objet). */
+    Connection jdbc() {
+        return cn;
+    }
+
+    /**
+     * Requête préparée une fois par connexion physique et gardée avec elle : à ne pas fermer.
+     * Les paramètres du dernier appel sont effacés.
+     */
+    PreparedStatement requete(String sql) throws SQLException {
+        PreparedStatement ps = requetes.get(sql);
+        if (ps != null) {
+            ps.clearParameters();
+            if (pool != null) pool.requeteReutilisee();
+            return ps;
+        }
+        ps = cn.prepareStatement(sql);
+        if (pool != null) pool.requetePreparee();
+        if (requetes.size() < requetesMax) {
+            requetes.put(sql, ps);
+        } else {
+            temporaires.add(ps);
+        }
+        return ps;
+    }
+
+    /** Fin de l'opération : connexion rendue au pool, ou fermée sans pool. */
+    @Override
+    public void close() {
+        if (!empruntee) return;
+        empruntee = false;
+        for (PreparedStatement ps : temporaires) fermer(ps);
+        temporaires.clear();
+        if (pool != null) {
+            pool.rendre(this);
+        } else {
+            fermer();
+        }
+    }
+
+    void preter() {
+        empruntee = true;
+    }
+
+    /** Connexion libre depuis plus de verificationMs : vérifiée avant d'être reprêtée. */
+    boolean utilisable(long verificationMs) {
+        if (System.currentTimeMillis() - rendueMs < verificationMs) return true;
+        try {
+            return cn.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Remet la connexion dans l'état d'origine : transaction en cours annulée, autoCommit rétabli.
+     * @return false si la connexion est fermée (perdue) ou ne peut pas être remise en état
+     */
+    boolean remettreEnEtat() {
+        try {
+            if (cn.isClosed()) return false;
+            if (!cn.getAutoCommit()) {
+                cn.rollback();
+                cn.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /** Ferme les requêtes gardées et la connexion physique. */
+    void fermer() {
+        for (PreparedStatement ps : requetes.values()) fermer(ps);
+        requetes.clear();
+        try {
+            cn.close();
+        } catch (SQLException ignoree) {
+            // connexion déjà perdue
+        }
+    }
+
+    private static void fermer(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException ignoree) {
+            // connexion perdue : fermée juste après
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package ch.hearc.meteo.infrastructure.persistence;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Repository embarqué (H2, fichier local) : même contrat que {@link OracleMeteoRepository},
+ * sans serveur de base de données.
+ * Les requêtes SQL du repository Oracle sont standard et sont donc réutilisées telles quelles ;
+ * seule la création du schéma (colonnes identité au lieu des séquences) est spécifique,
+ * ainsi que la rétention (pas de partitions en H2 : suppression par lots).
+ */
+public class H2MeteoRepository extends OracleMeteoRepository {
+
+    private static final String SCHEMA_RESOURCE = "db/schema-h2.sql";
+
+    /**
+     * @param jdbcUrl URL H2, ex: jdbc:h2:./data/meteo (fichier) ou jdbc:h2:mem:meteo;DB_CLOSE_DELAY=-1 (mémoire)
+     */
+    public H2MeteoRepository(String jdbcUrl, String jdbcUser, String jdbcPassword) {
+        super(garderOuverte(jdbcUrl),
+                jdbcUser != null ? jdbcUser : "sa",
+                jdbcPassword != null ? jdbcPassword : "");
+    }
+
+    /**
+     * Sans connexions gardées ouvertes (configurerConnexions(0, ...)), une connexion est ouverte par
+     * opération : sans DB_CLOSE_DELAY, H2 fermerait la base à chaque fermeture de la dernière connexion
+     * et la rouvrirait (relecture du fichier) à l'opération suivante.
+     * La base reste donc ouverte jusqu'à l'arrêt de la JVM, sauf si l'URL précise déjà ce réglage.
+     */
+    private static String garderOuverte(String jdbcUrl) {
+        if (jdbcUrl == null || jdbcUrl.toUpperCase().contains("DB_CLOSE_DELAY")) return jdbcUrl;
+        return jdbcUrl + ";DB_CLOSE_DELAY=-1";
+    }
+
+    /**
+     * Crée les tables et index s'ils n'existent pas encore.
+     * À appeler une fois au démarrage, avant toute lecture/écriture.
+     * Un index unique impossible à créer (doublons dans une base existante) est signalé
+     * sans bloquer le démarrage.
+     */
+    public void initialiserSchema() throws Exception {
+        List<String> instructions = lireScript();
+        try (Connexion connexion = connexion();
+             Statement st = connexion.jdbc().createStatement()) {
+            for (String sql : instructions) {
+                try {
+                    st.execute(sql);
+                } catch (SQLException e) {
+                    if (!sql.trim().toUpperCase().startsWith("CREATE UNIQUE INDEX") || !estViolationUnicite(e)) throw e;
+                    System.err.println("[WARN] Index unique non créé, doublons déjà en base : "
+                            + sql.trim().replaceAll("\\s+", " "));
+                }
+            }
+        }
+    }
+
+    /** Pas de partitions en H2 : la rétention supprime par lots. */
+    @Override
+    protected List<PartitionReleves> partitionsMeteo(Connection cn) {
+        return new ArrayList<>();
+    }
+
+    /**
+     * Lit le script de schéma depuis le classpath et le découpe en instructions (séparateur ';').
+     */
+    private List<String> lireScript() throws Exception {
+        List<String> result = new ArrayList<>();
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(SCHEMA_RESOURCE)) {
+            if (in == null) {
+                throw new SQLException("Script de schéma introuvable : " + SCHEMA_RESOURCE);
+            }
+
+            StringBuilder courant = new StringBuilder();
+            boolean dansCommentaire = false;
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String ligne;
+            while ((ligne = reader.readLine()) != null) {
+                String l = ligne.trim();
+
+                // commentaires /* ... */ sur une ou plusieurs lignes
+                if (dansCommentaire) {
+                    if (l.endsWith("*/")) dansCommentaire = false;
+                    continue;
+                }
+                if (l.startsWith("/*")) {
+                    dansCommentaire = !l.endsWith("*/");
+                    continue;
+                }
+                if (l.isEmpty() || l.startsWith("--")) continue;
+
+                courant.append(ligne).append('\n');
+                if (l.endsWith(";")) {
+                    String sql = courant.toString().trim();
+                    result.add(sql.substring(0, sql.length() - 1));
+                    courant.setLength(0);
+                }
+            }
+        }
+        return result;
+    }
+}
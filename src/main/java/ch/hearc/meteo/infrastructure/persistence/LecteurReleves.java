@@ -0,0 +1,12 @@
+package ch.hearc.meteo.infrastructure.persistence;
+
+/**
+ * Reçoit les relevés lus en flux par {@link MeteoRepository#parcourirReleves}, une ligne à la fois,
+ * en valeurs primitives (aucun objet créé par relevé). Valeur absente : {@link Double#NaN}.
+ */
+@FunctionalInterface
+public interface LecteurReleves {
+
+    void releve(int stationId, long dateMs, double temperature, double humidite,
+                double pression, double precipitation);
+}
@@ -0,0 +1,19 @@
+package ch.hearc.meteo.infrastructure.persistence;
+
+/**
+ * {@link LecteurReleves} qui reçoit aussi la visibilité et la description de chaque relevé :
+ * {@link MeteoRepository#parcourirReleves} lit alors ces deux colonnes en plus.
+ * Sert à l'archivage, qui copie les relevés à l'identique. Visibilité absente : {@link Double#NaN}.
+ */
+@FunctionalInterface
+public interface LecteurRelevesComplets extends LecteurReleves {
+
+    void releve(int stationId, long dateMs, double temperature, double humidite,
+                double pression, double precipitation, double visibilite, String description);
+
+    @Override
+    default void releve(int stationId, long dateMs, double temperature, double humidite,
+                        double pression, double precipitation) {
+        releve(stationId, dateMs, temperature, humidite, pression, precipitation, Double.NaN, null);
+    }
+}
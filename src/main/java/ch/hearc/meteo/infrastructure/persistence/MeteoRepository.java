@@ -1,14 +1,21 @@
 package ch.hearc.meteo.infrastructure.persistence;
 
 import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.Pays;
 import ch.hearc.meteo.business.StationMeteo;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Accès à la base Oracle (lecture/écriture).
- * Implémenté par OracleMeteoRepository.
+ * Accès à la base de données (lecture/écriture).
+ * Implémenté par OracleMeteoRepository (serveur Oracle) et H2MeteoRepository (base embarquée).
+ * Les dates sont des {@link Instant} (stockés en UTC) ; les variantes {@link Date} en fin
+ * d'interface ne sont gardées que comme passerelles pour l'ancien code.
  */
 public interface MeteoRepository {
 
@@ -20,6 +27,33 @@ public interface MeteoRepository {
      */
     void save(StationMeteo station) throws Exception;
 
+    /**
+     * Sauvegarde des prévisions (une {@link Meteo} par instant prévu dans donneesMeteo) :
+     * pays et station comme pour save, puis insertion ou mise à jour par (station, instant prévu).
+     * Récupérer deux fois les mêmes prévisions ne crée donc pas de doublon.
+     */
+    void savePrevisions(StationMeteo station) throws Exception;
+
+    /**
+     * Résout la station (et son pays) sans enregistrer de relevé, en la créant si besoin.
+     * Sert aux imports en masse, qui écrivent ensuite les relevés par numéro de station.
+     * @return numéro de la station (station_id)
+     */
+    Integer ensureStationId(StationMeteo station) throws Exception;
+
+    /**
+     * Insère les relevés de plusieurs stations, indexés par numéro de station,
+     * en un seul batch et une seule transaction. Les relevés déjà présents
+     * (même station, même date) sont ignorés, comme pour save.
+     * @return nombre de relevés insérés (relevés transmis si le pilote ne le précise pas)
+     */
+    int saveMeteoParStation(Map<Integer, List<Meteo>> relevesParStation) throws Exception;
+
+    /**
+     * Prévisions enregistrées pour une station à partir d'une date, par date croissante.
+     */
+    List<Meteo> findPrevisionsForStation(String stationName, Instant aPartirDe) throws Exception;
+
     /**
      * Retourne les noms des stations météo connues (ordre alphabétique).
      */
@@ -29,13 +63,57 @@ public interface MeteoRepository {
      * Liste les timestamps de relevés météo pour une station, triés
      * (le plus récent en premier).
      */
-    List<Date> findMeasurementDatesForStation(String stationName) throws Exception;
+    List<Instant> findMeasurementInstantsForStation(String stationName) throws Exception;
 
     /**
      * Retourne un relevé météo précis (température, etc.)
-     * pour une station à une date donnée (par seconde).
+     * pour une station à un instant donné (par seconde : [instant, instant + 1 s)).
      */
-    Meteo findMeteoForStationAtDate(String stationName, Date date) throws Exception;
+    Meteo findMeteoForStationAt(String stationName, Instant instant) throws Exception;
+
+    /**
+     * Retourne les relevés d'une station dont la date est dans [debut, fin),
+     * triés du plus ancien au plus récent. Une borne null n'est pas appliquée.
+     */
+    List<Meteo> findMeteoForStationBetween(String stationName, Instant debut, Instant fin) throws Exception;
+
+    /**
+     * Parcourt en flux les relevés des stations données dont la date est dans [debut, fin),
+     * triés par numéro de station croissant puis par date, sans les charger en mémoire :
+     * curseur lu par paquets de tailleLot lignes. Une borne null n'est pas appliquée.
+     * Sert aux rapports sur de longues périodes, et à l'archivage avec un {@link LecteurRelevesComplets}.
+     */
+    void parcourirReleves(Collection<Integer> stations, Instant debut, Instant fin,
+                          int tailleLot, LecteurReleves lecteur) throws Exception;
+
+    /**
+     * Supprime les relevés d'une station antérieurs à la date limite (exclue).
+     * Utilisé par l'archivage, une fois les relevés copiés ailleurs.
+     * @return nombre de relevés supprimés
+     */
+    int deleteMeteoForStationBefore(String stationName, Instant limite) throws Exception;
+
+    /**
+     * Supprime les relevés d'une station aux instants donnés (clé station + date du relevé).
+     * Utilisé par l'archivage : seuls les relevés copiés dans l'archive sont supprimés,
+     * un relevé inséré entre la lecture et la suppression reste en base.
+     * @return nombre de relevés supprimés
+     */
+    int supprimerReleves(int stationId, Collection<Instant> dates) throws Exception;
+
+    /**
+     * Rétention : supprime les relevés de toutes les stations antérieurs à la date limite (exclue).
+     * Sur une table partitionnée par mois (Oracle), les partitions entièrement antérieures
+     * sont supprimées d'un bloc ; sinon suppression par lots.
+     * @return nombre de relevés supprimés
+     */
+    long purgerRelevesAvant(Instant limite) throws Exception;
+
+    /**
+     * Relevés en base antérieurs à la date limite (exclue), toutes stations confondues,
+     * y compris ceux qui ne sont rattachés à aucune station.
+     */
+    long compterRelevesAvant(Instant limite) throws Exception;
 
     /**
      * Retourne une station existante par son nom :
@@ -43,4 +121,62 @@ public interface MeteoRepository {
      * Sert pour re-capturer la météo actuelle à cet endroit.
      */
     StationMeteo findStationByName(String stationName) throws Exception;
+
+    /**
+     * Retourne toutes les stations connues (numéro, nom, coordonnées, pays, openweather_id),
+     * sans leurs relevés. Sert à charger l'index spatial au démarrage.
+     */
+    List<StationMeteo> findAllStations() throws Exception;
+
+    /**
+     * Retourne les stations ayant au moins un relevé depuis la date donnée, chacune avec
+     * son relevé le plus récent seulement (un élément dans donneesMeteo).
+     * Sert à charger l'interpolation météo au démarrage.
+     */
+    List<StationMeteo> findDerniersReleves(Instant depuis) throws Exception;
+
+    /**
+     * Retourne tous les pays connus (numéro, code, nom).
+     * Sert à préremplir le cache du client Country au démarrage.
+     */
+    List<Pays> findAllPays() throws Exception;
+
+    // -------------------------------------------------------
+    // PASSERELLES java.util.Date (ancien code)
+    // -------------------------------------------------------
+
+    /** @deprecated utiliser {@link #findMeasurementInstantsForStation(String)} */
+    @Deprecated
+    default List<Date> findMeasurementDatesForStation(String stationName) throws Exception {
+        List<Instant> instants = findMeasurementInstantsForStation(stationName);
+        List<Date> dates = new ArrayList<>(instants.size());
+        for (Instant i : instants) dates.add(Date.from(i));
+        return dates;
+    }
+
+    /** @deprecated utiliser {@link #findMeteoForStationAt(String, Instant)} */
+    @Deprecated
+    default Meteo findMeteoForStationAtDate(String stationName, Date date) throws Exception {
+        return findMeteoForStationAt(stationName, date.toInstant());
+    }
+
+    /** @deprecated utiliser {@link #findMeteoForStationBetween(String, Instant, Instant)} */
+    @Deprecated
+    default List<Meteo> findMeteoForStationBetween(String stationName, Date debut, Date fin) throws Exception {
+        return findMeteoForStationBetween(stationName,
+                debut != null ? debut.toInstant() : null,
+                fin != null ? fin.toInstant() : null);
+    }
+
+    /** @deprecated utiliser {@link #deleteMeteoForStationBefore(String, Instant)} */
+    @Deprecated
+    default int deleteMeteoForStationBefore(String stationName, Date limite) throws Exception {
+        return deleteMeteoForStationBefore(stationName, limite.toInstant());
+    }
+
+    /** @deprecated utiliser {@link #findPrevisionsForStation(String, Instant)} */
+    @Deprecated
+    default List<Meteo> findPrevisionsForStation(String stationName, Date aPartirDe) throws Exception {
+        return findPrevisionsForStation(stationName, aPartirDe.toInstant());
+    }
 }
@@ -2,30 +2,140 @@ package ch.hearc.meteo.infrastructure.persistence;
 
 import ch.hearc.meteo.business.Meteo;
 import ch.hearc.meteo.business.Pays;
+import ch.hearc.meteo.business.ResumeJour;
 import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.infrastructure.flux.FluxReleves;
 
+import java.io.IOException;
 import java.sql.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Repository Oracle : insert + lecture historique.
+ * Le SQL reste standard pour pouvoir être réutilisé par {@link H2MeteoRepository}.
+ *
+ * Les colonnes TIMESTAMP contiennent l'heure UTC : les dates sont échangées en
+ * {@link LocalDateTime} UTC (JDBC 4.2), indépendamment du fuseau horaire de la JVM.
  */
-public class OracleMeteoRepository implements MeteoRepository {
+public class OracleMeteoRepository implements MeteoRepository, ResumesJourRepository, BauxRepository {
+
+    // Borne haute d'une partition de meteo dans le dictionnaire : TIMESTAMP' 2024-02-01 00:00:00'
+    private static final Pattern BORNE_PARTITION =
+            Pattern.compile("TIMESTAMP'\\s*(\\d{4}-\\d{2}-\\d{2}) (\\d{2}:\\d{2}:\\d{2})");
+    private static final int LOT_PURGE = 10_000;
+    // nœud de capture arrêté sans se retirer : ligne supprimée une heure après l'expiration de son bail
+    private static final long OUBLI_NOEUD_MS = 3_600_000L;
+    // stations par requête de lecture des baux (liste IN, au plus 1000 éléments en Oracle)
+    private static final int LOT_BAUX = 100;
+
+    // connexions gardées entre deux opérations, requêtes préparées gardées par connexion
+    public static final int CONNEXIONS_DEFAUT = 8;
+    public static final int REQUETES_DEFAUT = 32;
+    // attente d'une connexion rendue quand toutes sont empruntées
+    public static final long ATTENTE_CONNEXION_DEFAUT_MS = 30_000;
 
     private final String jdbcUrl;
     private final String jdbcUser;
     private final String jdbcPassword;
+    // null : une connexion ouverte et fermée par opération
+    private volatile PoolConnexions pool;
+    // null : relevés enregistrés non publiés
+    private volatile FluxReleves flux;
+    // publication échouée : le prochain lot est remplacé par un rattrapage depuis la base
+    private volatile boolean fluxIncomplet;
+    private final Object verrouRattrapage = new Object();
+    private static final int RATTRAPAGE_PAR_LOT = 1000;
 
     public OracleMeteoRepository(String jdbcUrl, String jdbcUser, String jdbcPassword) {
         this.jdbcUrl = jdbcUrl;
         this.jdbcUser = jdbcUser;
         this.jdbcPassword = jdbcPassword;
+        this.pool = new PoolConnexions(jdbcUrl, jdbcUser, jdbcPassword, CONNEXIONS_DEFAUT, REQUETES_DEFAUT,
+                ATTENTE_CONNEXION_DEFAUT_MS);
     }
 
-    private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(jdbcUrl, jdbcUser, jdbcPassword);
+    /** Comme {@link #configurerConnexions(int, int, long)}, avec l'attente par défaut. */
+    public void configurerConnexions(int connexions, int requetesParConnexion) {
+        configurerConnexions(connexions, requetesParConnexion, ATTENTE_CONNEXION_DEFAUT_MS);
+    }
+
+    /**
+     * Réutilisation des connexions et des requêtes préparées (voir {@link PoolConnexions}) :
+     * connexions empruntées à la fois et gardées ouvertes entre deux opérations (0 : une connexion
+     * par opération, comme avant), requêtes préparées gardées par connexion (0 : préparées à chaque
+     * appel), attente d'une connexion quand toutes sont empruntées.
+     * À appeler au démarrage, avant la première opération.
+     */
+    public void configurerConnexions(int connexions, int requetesParConnexion, long attenteMs) {
+        PoolConnexions ancien = pool;
+        pool = connexions > 0
+                ? new PoolConnexions(jdbcUrl, jdbcUser, jdbcPassword, connexions, Math.max(0, requetesParConnexion),
+                Math.max(0, attenteMs))
+                : null;
+        if (ancien != null) ancien.close();
+    }
+
+    /** Compteurs du pool de connexions (null sans pool). */
+    public String statistiquesConnexions() {
+        PoolConnexions p = pool;
+        return p != null ? p.statistiques() : null;
+    }
+
+    /** Ferme les connexions gardées ouvertes ; les opérations suivantes ouvrent leur propre connexion. */
+    public void fermerConnexions() {
+        PoolConnexions p = pool;
+        pool = null;
+        if (p != null) p.close();
+    }
+
+    /**
+     * Publie dans le flux les relevés insérés par save et saveMeteoParStation, après chaque
+     * validation (voir {@link FluxReleves}), avec leur meteo_id.
+     *
+     * Livraison au moins une fois : à l'activation, les relevés validés mais absents du flux
+     * (arrêt entre la validation et la publication) sont republiés depuis la base, par meteo_id
+     * croissant ; de même à la publication suivante après une erreur d'écriture du flux.
+     * Pour un flux neuf, les relevés déjà en base ne sont pas publiés.
+     * @throws SQLException base inaccessible : le flux n'est pas activé
+     * @throws IOException flux inutilisable : le flux n'est pas activé
+     */
+    public void activerFlux(FluxReleves flux) throws SQLException, IOException {
+        if (flux.dernierIdPublie() < 0) {
+            flux.fixerDepart(dernierMeteoId());
+        }
+        fluxIncomplet = false;
+        this.flux = flux;
+        // activé avant le rattrapage : un relevé validé entre-temps est publié deux fois, pas perdu
+        int rattrapes = rattraper(flux);
+        if (rattrapes > 0) {
+            System.out.println("(Info) Flux des relevés : " + rattrapes + " relevé(s) rattrapé(s) depuis la base");
+        }
+    }
+
+    /** Arrête la publication des relevés enregistrés. */
+    public void desactiverFlux() {
+        this.flux = null;
+    }
+
+    /** Connexion d'une opération : empruntée au pool, ou ouverte pour elle sans pool. À fermer. */
+    Connexion connexion() throws SQLException {
+        PoolConnexions p = pool;
+        return p != null ? p.emprunter()
+                : new Connexion(DriverManager.getConnection(jdbcUrl, jdbcUser, jdbcPassword), null, 0);
     }
 
     // -------------------------------------------------------
@@ -37,203 +147,586 @@ public class OracleMeteoRepository implements MeteoRepository {
         if (station == null) return;
         if (station.getDonneesMeteo() == null || station.getDonneesMeteo().isEmpty()) return;
 
-        try (Connection cn = getConnection()) {
+        try {
+            enregistrer(station);
+        } catch (SQLException e) {
+            // Écriture concurrente du même relevé (contrainte d'unicité station + date) :
+            // on rejoue une fois, les lignes déjà présentes sont alors ignorées par le MERGE
+            if (!estViolationUnicite(e)) throw e;
+            enregistrer(station);
+        }
+    }
+
+    private void enregistrer(StationMeteo station) throws SQLException {
+        FluxReleves f = flux;
+        FluxReleves.Lot lot = f != null ? f.nouveauLot() : null;
+        try (Connexion connexion = connexion()) {
+            Connection cn = connexion.jdbc();
             cn.setAutoCommit(false);
+            try {
+                // 1. pays -> id
+                Integer paysId = null;
+                if (station.getPays() != null) {
+                    paysId = ensurePays(connexion, station.getPays());
+                }
 
-            // 1. pays -> id
-            Integer paysId = null;
-            if (station.getPays() != null) {
-                paysId = ensurePays(cn, station.getPays());
-            }
+                // 2. station -> id
+                Integer stationId = ensureStation(connexion, station, paysId);
 
-            // 2. station -> id
-            Integer stationId = ensureStation(cn, station, paysId);
+                // 3. données météo -> insert (batch), relevés déjà connus ignorés
+                insertMeteoRows(cn, Collections.singletonMap(stationId, station.getDonneesMeteo()),
+                        station.getNom(), lot);
 
-            // 3. données météo -> insert
-            for (Meteo m : station.getDonneesMeteo()) {
-                insertMeteoRow(cn, stationId, m);
+                cn.commit();
+            } catch (SQLException e) {
+                cn.rollback();
+                throw e;
             }
-
-            cn.commit();
         }
+        publier(f, lot);
     }
 
-    private Integer ensurePays(Connection cn, Pays pays) throws SQLException {
-        String selectSql =
-                "SELECT pays_id " +
-                        "FROM pays " +
-                        "WHERE code_pays = ?";
+    @Override
+    public Integer ensureStationId(StationMeteo station) throws Exception {
+        try {
+            return enregistrerStation(station);
+        } catch (SQLException e) {
+            // même station créée au même moment par un autre thread : elle existe maintenant
+            if (!estViolationUnicite(e)) throw e;
+            return enregistrerStation(station);
+        }
+    }
 
-        try (PreparedStatement ps = cn.prepareStatement(selectSql)) {
-            ps.setString(1, pays.getCode());
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("pays_id");
-                }
+    private Integer enregistrerStation(StationMeteo station) throws SQLException {
+        try (Connexion connexion = connexion()) {
+            Connection cn = connexion.jdbc();
+            cn.setAutoCommit(false);
+            try {
+                Integer paysId = station.getPays() != null ? ensurePays(connexion, station.getPays()) : null;
+                Integer stationId = ensureStation(connexion, station, paysId);
+                cn.commit();
+                return stationId;
+            } catch (SQLException e) {
+                cn.rollback();
+                throw e;
             }
         }
+    }
 
-        String insertSql =
-                "INSERT INTO pays (nom, code_pays) " +
-                        "VALUES (?, ?)";
+    @Override
+    public int saveMeteoParStation(Map<Integer, List<Meteo>> relevesParStation) throws Exception {
+        if (relevesParStation == null || relevesParStation.isEmpty()) return 0;
+
+        try {
+            return enregistrerReleves(relevesParStation);
+        } catch (SQLException e) {
+            // même relevé inséré au même moment par un autre lot : rejoué comme pour save
+            if (!estViolationUnicite(e)) throw e;
+            return enregistrerReleves(relevesParStation);
+        }
+    }
 
-        try (PreparedStatement ps = cn.prepareStatement(insertSql)) {
-            ps.setString(1, pays.getNom());
-            ps.setString(2, pays.getCode());
-            ps.executeUpdate();
+    private int enregistrerReleves(Map<Integer, List<Meteo>> relevesParStation) throws SQLException {
+        FluxReleves f = flux;
+        FluxReleves.Lot lot = f != null ? f.nouveauLot() : null;
+        int inseres;
+        try (Connexion connexion = connexion()) {
+            Connection cn = connexion.jdbc();
+            cn.setAutoCommit(false);
+            try {
+                inseres = insertMeteoRows(cn, relevesParStation, null, lot);
+                cn.commit();
+            } catch (SQLException e) {
+                cn.rollback();
+                throw e;
+            }
         }
+        publier(f, lot);
+        return inseres;
+    }
 
-        try (PreparedStatement ps = cn.prepareStatement(selectSql)) {
-            ps.setString(1, pays.getCode());
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("pays_id");
+    /**
+     * Relevés validés → flux ; une erreur du flux n'annule pas l'enregistrement en base. Après une
+     * erreur, le lot suivant est remplacé par un rattrapage depuis la base, qui le contient.
+     */
+    private void publier(FluxReleves f, FluxReleves.Lot lot) {
+        if (lot == null || lot.taille() == 0) return;
+        if (fluxIncomplet) {
+            try {
+                int rattrapes = rattraper(f);
+                System.out.println("(Info) Flux des relevés : " + rattrapes + " relevé(s) rattrapé(s) depuis la base");
+            } catch (SQLException | IOException e) {
+                fluxIncomplet = true;
+                System.err.println("[WARN] Flux des relevés : rattrapage impossible, repris à la prochaine publication : "
+                        + e.getMessage());
+            }
+            return;
+        }
+        try {
+            f.publier(lot);
+        } catch (IOException e) {
+            fluxIncomplet = true;
+            System.err.println("[WARN] Flux des relevés : " + lot.taille()
+                    + " relevé(s) non publié(s), rattrapés depuis la base à la prochaine publication : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Republie les relevés en base au-delà du plancher du flux qui n'y sont pas encore
+     * (voir {@link FluxReleves#reprise()}), par lots, dans l'ordre des meteo_id.
+     * @return nombre de relevés republiés
+     */
+    private int rattraper(FluxReleves f) throws SQLException, IOException {
+        synchronized (verrouRattrapage) {
+            // une erreur de publication survenue pendant le rattrapage le fera reprendre
+            fluxIncomplet = false;
+            try {
+                FluxReleves.Reprise reprise = f.reprise();
+                String sql =
+                        "SELECT m.meteo_id, m.station_id, s.nom, m.date_releve, m.temperature, m.humidite, " +
+                                "       m.pression, m.visibilite, m.precipitation, m.description " +
+                                "FROM meteo m " +
+                                "LEFT JOIN stations_meteo s ON s.station_id = m.station_id " +
+                                "WHERE m.meteo_id > ? " +
+                                "ORDER BY m.meteo_id";
+
+                int rattrapes = 0;
+                try (Connexion connexion = connexion();
+                     PreparedStatement ps = connexion.jdbc().prepareStatement(sql)) {
+                    ps.setFetchSize(RATTRAPAGE_PAR_LOT);
+                    ps.setLong(1, reprise.getPlancher());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        FluxReleves.Lot lot = f.nouveauLot();
+                        while (rs.next()) {
+                            long meteoId = rs.getLong("meteo_id");
+                            if (reprise.contient(meteoId)) continue;
+                            int stationId = rs.getInt("station_id");
+                            Integer station = rs.wasNull() ? null : stationId;
+                            Meteo m = mapMeteo(rs);
+                            lot.ajouter(meteoId, station, rs.getString("nom"), m.getDateMesureMs(), m);
+                            if (lot.taille() == RATTRAPAGE_PAR_LOT) {
+                                f.publier(lot);
+                                rattrapes += lot.taille();
+                                lot = f.nouveauLot();
+                            }
+                        }
+                        f.publier(lot);
+                        rattrapes += lot.taille();
+                    }
                 }
+                return rattrapes;
+            } catch (SQLException | IOException | RuntimeException e) {
+                fluxIncomplet = true;
+                throw e;
             }
         }
+    }
 
-        return null;
+    /** Plus grand meteo_id en base (0 si la table est vide). */
+    private long dernierMeteoId() throws SQLException {
+        try (Connexion connexion = connexion();
+             PreparedStatement ps = connexion.jdbc().prepareStatement("SELECT MAX(meteo_id) FROM meteo");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
     }
 
-    private Integer ensureStation(Connection cn, StationMeteo station, Integer paysId) throws SQLException {
+    /** SQLSTATE classe 23 : violation de contrainte d'intégrité (ORA-00001, H2 23505...). */
+    static boolean estViolationUnicite(SQLException e) {
+        for (SQLException courante = e; courante != null; courante = courante.getNextException()) {
+            if (courante instanceof SQLIntegrityConstraintViolationException) return true;
+            String etat = courante.getSQLState();
+            if (etat != null && etat.startsWith("23")) return true;
+        }
+        return false;
+    }
 
-        String selectSql =
-                "SELECT station_id " +
-                        "FROM stations_meteo " +
-                        "WHERE nom = ? " +
-                        "AND ABS(latitude - ?) < 0.000001 " +
-                        "AND ABS(longitude - ?) < 0.000001";
+    // requêtes de chaque enregistrement : préparées une fois par connexion (Connexion.requete)
+    private static final String SELECT_PAYS =
+            "SELECT pays_id " +
+                    "FROM pays " +
+                    "WHERE code_pays = ?";
+    private static final String INSERT_PAYS =
+            "INSERT INTO pays (nom, code_pays) " +
+                    "VALUES (?, ?)";
+    private static final String SELECT_STATION =
+            "SELECT station_id " +
+                    "FROM stations_meteo " +
+                    "WHERE nom = ? " +
+                    "AND ABS(latitude - ?) < 0.000001 " +
+                    "AND ABS(longitude - ?) < 0.000001";
+    private static final String INSERT_STATION =
+            "INSERT INTO stations_meteo " +
+                    "(pays_id, nom, latitude, longitude, openweather_id) " +
+                    "VALUES (?, ?, ?, ?, ?)";
+
+    private Integer ensurePays(Connexion connexion, Pays pays) throws SQLException {
+        // même requête pour la lecture et la relecture après insertion
+        PreparedStatement select = connexion.requete(SELECT_PAYS);
+        select.setString(1, pays.getCode());
+        try (ResultSet rs = select.executeQuery()) {
+            if (rs.next()) {
+                return rs.getInt("pays_id");
+            }
+        }
 
-        try (PreparedStatement ps = cn.prepareStatement(selectSql)) {
-            ps.setString(1, station.getNom());
-            ps.setDouble(2, station.getLatitude() != null ? station.getLatitude() : 0.0);
-            ps.setDouble(3, station.getLongitude() != null ? station.getLongitude() : 0.0);
+        PreparedStatement insert = connexion.requete(INSERT_PAYS);
+        insert.setString(1, pays.getNom());
+        insert.setString(2, pays.getCode());
+        try {
+            insert.executeUpdate();
+        } catch (SQLException e) {
+            // pays créé au même moment par une autre transaction : relu ci-dessous
+            if (!estViolationUnicite(e)) throw e;
+        }
 
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("station_id");
-                }
+        try (ResultSet rs = select.executeQuery()) {
+            if (rs.next()) {
+                return rs.getInt("pays_id");
             }
         }
 
-        String insertSql =
-                "INSERT INTO stations_meteo " +
-                        "(pays_id, nom, latitude, longitude, openweather_id) " +
-                        "VALUES (?, ?, ?, ?, ?)";
+        return null;
+    }
 
-        try (PreparedStatement ps = cn.prepareStatement(insertSql)) {
-            if (paysId != null) {
-                ps.setInt(1, paysId);
-            } else {
-                ps.setNull(1, Types.INTEGER);
+    private Integer ensureStation(Connexion connexion, StationMeteo station, Integer paysId) throws SQLException {
+        // même requête pour la lecture et la relecture après insertion
+        PreparedStatement select = connexion.requete(SELECT_STATION);
+        select.setString(1, station.getNom());
+        select.setDouble(2, station.getLatitude() != null ? station.getLatitude() : 0.0);
+        select.setDouble(3, station.getLongitude() != null ? station.getLongitude() : 0.0);
+
+        try (ResultSet rs = select.executeQuery()) {
+            if (rs.next()) {
+                return rs.getInt("station_id");
             }
+        }
 
-            ps.setString(2, station.getNom());
-            ps.setDouble(3, station.getLatitude() != null ? station.getLatitude() : 0.0);
-            ps.setDouble(4, station.getLongitude() != null ? station.getLongitude() : 0.0);
+        PreparedStatement insert = connexion.requete(INSERT_STATION);
+        if (paysId != null) {
+            insert.setInt(1, paysId);
+        } else {
+            insert.setNull(1, Types.INTEGER);
+        }
 
-            if (station.getOpenWeatherMapId() != null) {
-                ps.setInt(5, station.getOpenWeatherMapId());
-            } else {
-                ps.setNull(5, Types.INTEGER);
-            }
+        insert.setString(2, station.getNom());
+        insert.setDouble(3, station.getLatitude() != null ? station.getLatitude() : 0.0);
+        insert.setDouble(4, station.getLongitude() != null ? station.getLongitude() : 0.0);
 
-            ps.executeUpdate();
+        if (station.getOpenWeatherMapId() != null) {
+            insert.setInt(5, station.getOpenWeatherMapId());
+        } else {
+            insert.setNull(5, Types.INTEGER);
         }
 
-        try (PreparedStatement ps = cn.prepareStatement(selectSql)) {
-            ps.setString(1, station.getNom());
-            ps.setDouble(2, station.getLatitude() != null ? station.getLatitude() : 0.0);
-            ps.setDouble(3, station.getLongitude() != null ? station.getLongitude() : 0.0);
+        try {
+            insert.executeUpdate();
+        } catch (SQLException e) {
+            // station créée au même moment par une autre transaction (uq_stations_meteo) : relue ci-dessous
+            if (!estViolationUnicite(e)) throw e;
+        }
 
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("station_id");
-                }
+        try (ResultSet rs = select.executeQuery()) {
+            if (rs.next()) {
+                return rs.getInt("station_id");
             }
         }
 
         return null;
     }
 
-    private void insertMeteoRow(Connection cn, Integer stationId, Meteo m) throws SQLException {
+    /**
+     * Insère les relevés d'une ou plusieurs stations en un seul aller-retour (batch JDBC),
+     * avec une seule préparation de la requête.
+     * @param lot si non null, reçoit les relevés insérés (à publier après la validation)
+     * @return nombre de relevés insérés (relevés transmis si le pilote ne le précise pas)
+     */
+    private int insertMeteoRows(Connection cn, Map<Integer, List<Meteo>> relevesParStation,
+                                String nomStation, FluxReleves.Lot lot) throws SQLException {
 
+        // Un relevé est unique par (station, date) : un relevé déjà enregistré n'est pas réinséré
         String insertSql =
-                "INSERT INTO meteo (" +
-                        "    station_id," +
-                        "    date_releve," +
-                        "    temperature," +
-                        "    humidite," +
-                        "    pression," +
-                        "    visibilite," +
-                        "    precipitation," +
-                        "    description" +
-                        ") VALUES (" +
-                        "    ?, ?, ?, ?, ?, ?, ?, ?" +
-                        ")";
+                "MERGE INTO meteo m " +
+                        "USING (SELECT CAST(? AS INTEGER) AS station_id, " +
+                        "              CAST(? AS TIMESTAMP) AS date_releve, " +
+                        "              CAST(? AS DOUBLE PRECISION) AS temperature, " +
+                        "              CAST(? AS DOUBLE PRECISION) AS humidite, " +
+                        "              CAST(? AS DOUBLE PRECISION) AS pression, " +
+                        "              CAST(? AS INTEGER) AS visibilite, " +
+                        "              CAST(? AS DOUBLE PRECISION) AS precipitation, " +
+                        "              CAST(? AS VARCHAR(255)) AS description " +
+                        "       FROM dual) src " +
+                        "ON (m.station_id = src.station_id AND m.date_releve = src.date_releve) " +
+                        "WHEN NOT MATCHED THEN INSERT " +
+                        "    (station_id, date_releve, temperature, humidite, " +
+                        "     pression, visibilite, precipitation, description) " +
+                        "VALUES (src.station_id, src.date_releve, src.temperature, src.humidite, " +
+                        "        src.pression, src.visibilite, src.precipitation, src.description)";
+
+        // relevés du batch dans l'ordre, avec leur date effective, pour le flux
+        List<Meteo> ajoutes = null;
+        List<Integer> stationsAjoutees = null;
+        long[] dates = null;
+        if (lot != null) {
+            int nb = 0;
+            for (List<Meteo> releves : relevesParStation.values()) nb += releves.size();
+            ajoutes = new ArrayList<>(nb);
+            stationsAjoutees = new ArrayList<>(nb);
+            dates = new long[nb];
+        }
 
         try (PreparedStatement ps = cn.prepareStatement(insertSql)) {
+            for (Map.Entry<Integer, List<Meteo>> e : relevesParStation.entrySet()) {
+                Integer stationId = e.getKey();
+                for (Meteo m : e.getValue()) {
+
+                    // station_id
+                    if (stationId != null) {
+                        ps.setInt(1, stationId);
+                    } else {
+                        ps.setNull(1, Types.INTEGER);
+                    }
 
-            // station_id
-            if (stationId != null) {
-                ps.setInt(1, stationId);
-            } else {
-                ps.setNull(1, Types.INTEGER);
-            }
+                    // date_releve = dateMesure ou NOW
+                    long date = m.hasDateMesure() ? m.getDateMesureMs() : System.currentTimeMillis();
+                    setInstant(ps, 2, date);
 
-            // date_releve = dateMesure ou NOW
-            if (m.getDateMesure() != null) {
-                ps.setTimestamp(2, new Timestamp(m.getDateMesure().getTime()));
-            } else {
-                ps.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
-            }
+                    // temperature, humidite, pression, visibilite, precipitation, description
+                    bindValeurs(ps, 3, m);
 
-            // temperature
-            if (m.getTemperature() != null) {
-                ps.setDouble(3, m.getTemperature());
-            } else {
-                ps.setNull(3, Types.DOUBLE);
+                    ps.addBatch();
+                    if (lot != null) {
+                        dates[ajoutes.size()] = date;
+                        ajoutes.add(m);
+                        stationsAjoutees.add(stationId);
+                    }
+                }
             }
 
-            // humidite
-            if (m.getHumidite() != null) {
-                ps.setDouble(4, m.getHumidite());
-            } else {
-                ps.setNull(4, Types.DOUBLE);
+            // 0 : relevé déjà présent ; SUCCESS_NO_INFO (Oracle) : compté comme inséré
+            int inseres = 0;
+            int[] resultats = ps.executeBatch();
+            boolean[] publies = lot != null ? new boolean[ajoutes.size()] : null;
+            for (int i = 0; i < resultats.length; i++) {
+                int n = resultats[i];
+                if (n > 0) inseres += n;
+                else if (n == Statement.SUCCESS_NO_INFO) inseres++;
+                else continue;
+                if (lot != null && i < publies.length) publies[i] = true;
+            }
+            if (lot != null) {
+                ajouterAuLot(cn, lot, nomStation, stationsAjoutees, dates, ajoutes, publies);
             }
+            return inseres;
+        }
+    }
 
-            // pression
-            if (m.getPression() != null) {
-                ps.setDouble(5, m.getPression());
-            } else {
-                ps.setNull(5, Types.DOUBLE);
+    /**
+     * Ajoute au lot les relevés insérés par le batch, avec le meteo_id attribué par la base
+     * (relu dans la transaction en cours, une requête par station).
+     */
+    private void ajouterAuLot(Connection cn, FluxReleves.Lot lot, String nomStation, List<Integer> stations,
+                              long[] dates, List<Meteo> releves, boolean[] publies) throws SQLException {
+        // intervalle des dates insérées par station (station null comprise)
+        Map<Integer, long[]> intervalles = new HashMap<>();
+        for (int i = 0; i < publies.length; i++) {
+            if (!publies[i]) continue;
+            long[] intervalle = intervalles.computeIfAbsent(stations.get(i), s -> new long[] { Long.MAX_VALUE, Long.MIN_VALUE });
+            intervalle[0] = Math.min(intervalle[0], dates[i]);
+            intervalle[1] = Math.max(intervalle[1], dates[i]);
+        }
+        if (intervalles.isEmpty()) return;
+
+        String sql =
+                "SELECT meteo_id, date_releve " +
+                        "FROM meteo " +
+                        "WHERE station_id = ? " +
+                        "AND date_releve BETWEEN ? AND ? " +
+                        "ORDER BY meteo_id";
+        String sqlSansStation =
+                "SELECT meteo_id, date_releve " +
+                        "FROM meteo " +
+                        "WHERE station_id IS NULL " +
+                        "AND date_releve BETWEEN ? AND ? " +
+                        "ORDER BY meteo_id";
+
+        // (station, date) → meteo_id ; sans station, la date n'est pas unique : le dernier inséré l'emporte
+        Map<Integer, Map<Long, Long>> ids = new HashMap<>();
+        for (Map.Entry<Integer, long[]> e : intervalles.entrySet()) {
+            Map<Long, Long> parDate = new HashMap<>();
+            try (PreparedStatement ps = cn.prepareStatement(e.getKey() != null ? sql : sqlSansStation)) {
+                int index = 1;
+                if (e.getKey() != null) ps.setInt(index++, e.getKey());
+                setInstant(ps, index, e.getValue()[0]);
+                setInstant(ps, index + 1, e.getValue()[1]);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        parDate.put(getInstant(rs, "date_releve"), rs.getLong("meteo_id"));
+                    }
+                }
             }
+            ids.put(e.getKey(), parDate);
+        }
 
-            // visibilite
-            if (m.getVisibilite() != null) {
-                ps.setInt(6, m.getVisibilite());
-            } else {
-                ps.setNull(6, Types.INTEGER);
+        for (int i = 0; i < publies.length; i++) {
+            if (!publies[i]) continue;
+            Long meteoId = ids.get(stations.get(i)).get(dates[i]);
+            if (meteoId != null) {
+                lot.ajouter(meteoId, stations.get(i), nomStation, dates[i], releves.get(i));
             }
+        }
+    }
+
+    /**
+     * Renseigne les 6 colonnes de valeurs d'un relevé à partir de l'index donné :
+     * temperature, humidite, pression, visibilite, precipitation, description.
+     */
+    private void bindValeurs(PreparedStatement ps, int index, Meteo m) throws SQLException {
+        // temperature
+        if (m.getTemperature() != null) {
+            ps.setDouble(index, m.getTemperature());
+        } else {
+            ps.setNull(index, Types.DOUBLE);
+        }
+
+        // humidite
+        if (m.getHumidite() != null) {
+            ps.setDouble(index + 1, m.getHumidite());
+        } else {
+            ps.setNull(index + 1, Types.DOUBLE);
+        }
 
-            // precipitation
-            if (m.getPrecipitation() != null) {
-                ps.setDouble(7, m.getPrecipitation());
-            } else {
-                ps.setNull(7, Types.DOUBLE);
+        // pression
+        if (m.getPression() != null) {
+            ps.setDouble(index + 2, m.getPression());
+        } else {
+            ps.setNull(index + 2, Types.DOUBLE);
+        }
+
+        // visibilite
+        if (m.getVisibilite() != null) {
+            ps.setInt(index + 3, m.getVisibilite());
+        } else {
+            ps.setNull(index + 3, Types.INTEGER);
+        }
+
+        // precipitation
+        if (m.getPrecipitation() != null) {
+            ps.setDouble(index + 4, m.getPrecipitation());
+        } else {
+            ps.setNull(index + 4, Types.DOUBLE);
+        }
+
+        // description
+        if (m.getDescription() != null) {
+            ps.setString(index + 5, m.getDescription());
+        } else {
+            ps.setNull(index + 5, Types.VARCHAR);
+        }
+    }
+
+    // -------------------------------------------------------
+    // PRÉVISIONS (upsert)
+    // -------------------------------------------------------
+
+    @Override
+    public void savePrevisions(StationMeteo station) throws Exception {
+        if (station == null) return;
+        if (station.getDonneesMeteo() == null || station.getDonneesMeteo().isEmpty()) return;
+
+        // Une ligne par (station, instant prévu) : une prévision déjà connue est mise à jour
+        String mergeSql =
+                "MERGE INTO prevision p " +
+                        "USING (SELECT CAST(? AS INTEGER) AS station_id, " +
+                        "              CAST(? AS TIMESTAMP) AS date_prevue, " +
+                        "              CAST(? AS TIMESTAMP) AS date_emission, " +
+                        "              CAST(? AS DOUBLE PRECISION) AS temperature, " +
+                        "              CAST(? AS DOUBLE PRECISION) AS humidite, " +
+                        "              CAST(? AS DOUBLE PRECISION) AS pression, " +
+                        "              CAST(? AS INTEGER) AS visibilite, " +
+                        "              CAST(? AS DOUBLE PRECISION) AS precipitation, " +
+                        "              CAST(? AS VARCHAR(255)) AS description " +
+                        "       FROM dual) src " +
+                        "ON (p.station_id = src.station_id AND p.date_prevue = src.date_prevue) " +
+                        "WHEN MATCHED THEN UPDATE SET " +
+                        "    p.date_emission = src.date_emission, " +
+                        "    p.temperature = src.temperature, " +
+                        "    p.humidite = src.humidite, " +
+                        "    p.pression = src.pression, " +
+                        "    p.visibilite = src.visibilite, " +
+                        "    p.precipitation = src.precipitation, " +
+                        "    p.description = src.description " +
+                        "WHEN NOT MATCHED THEN INSERT " +
+                        "    (station_id, date_prevue, date_emission, temperature, humidite, " +
+                        "     pression, visibilite, precipitation, description) " +
+                        "VALUES (src.station_id, src.date_prevue, src.date_emission, src.temperature, " +
+                        "        src.humidite, src.pression, src.visibilite, src.precipitation, src.description)";
+
+        try (Connexion connexion = connexion()) {
+            Connection cn = connexion.jdbc();
+            cn.setAutoCommit(false);
+
+            Integer paysId = null;
+            if (station.getPays() != null) {
+                paysId = ensurePays(connexion, station.getPays());
+            }
+            Integer stationId = ensureStation(connexion, station, paysId);
+            if (stationId == null) {
+                throw new SQLException("Station introuvable après insertion : " + station.getNom());
             }
 
-            // description
-            if (m.getDescription() != null) {
-                ps.setString(8, m.getDescription());
-            } else {
-                ps.setNull(8, Types.VARCHAR);
+            long emission = System.currentTimeMillis();
+            try (PreparedStatement ps = cn.prepareStatement(mergeSql)) {
+                for (Meteo m : station.getDonneesMeteo()) {
+                    if (!m.hasDateMesure()) continue;
+
+                    ps.setInt(1, stationId);
+                    setInstant(ps, 2, m.getDateMesureMs());
+                    setInstant(ps, 3, emission);
+                    bindValeurs(ps, 4, m);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
             }
 
-            ps.executeUpdate();
+            cn.commit();
         }
     }
 
+    @Override
+    public List<Meteo> findPrevisionsForStation(String stationName, Instant aPartirDe) throws Exception {
+        List<Meteo> result = new ArrayList<>();
+
+        String sql =
+                "SELECT p.date_prevue AS date_releve, " +
+                        "       p.temperature, " +
+                        "       p.humidite, " +
+                        "       p.pression, " +
+                        "       p.visibilite, " +
+                        "       p.precipitation, " +
+                        "       p.description " +
+                        "FROM prevision p " +
+                        "JOIN stations_meteo s ON s.station_id = p.station_id " +
+                        "WHERE s.nom = ? " +
+                        "  AND p.date_prevue >= ? " +
+                        "ORDER BY p.date_prevue ASC";
+
+        try (Connexion connexion = connexion();
+             PreparedStatement ps = connexion.jdbc().prepareStatement(sql)) {
+
+            ps.setString(1, stationName);
+            setInstant(ps, 2, aPartirDe.toEpochMilli());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    result.add(mapMeteo(rs));
+                }
+            }
+        }
+
+        return result;
+    }
+
     // -------------------------------------------------------
     // LECTURE : liste stations, dates, relevés, coordonnées
     // -------------------------------------------------------
@@ -247,8 +740,8 @@ public class OracleMeteoRepository implements MeteoRepository {
                         "FROM stations_meteo " +
                         "ORDER BY nom ASC";
 
-        try (Connection cn = getConnection();
-             PreparedStatement ps = cn.prepareStatement(sql);
+        try (Connexion connexion = connexion();
+             PreparedStatement ps = connexion.jdbc().prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
 
             while (rs.next()) {
@@ -260,8 +753,8 @@ public class OracleMeteoRepository implements MeteoRepository {
     }
 
     @Override
-    public List<Date> findMeasurementDatesForStation(String stationName) throws Exception {
-        List<Date> result = new ArrayList<>();
+    public List<Instant> findMeasurementInstantsForStation(String stationName) throws Exception {
+        List<Instant> result = new ArrayList<>();
 
         String sql =
                 "SELECT m.date_releve " +
@@ -270,16 +763,16 @@ public class OracleMeteoRepository implements MeteoRepository {
                         "WHERE s.nom = ? " +
                         "ORDER BY m.date_releve DESC"; // plus récent d'abord
 
-        try (Connection cn = getConnection();
-             PreparedStatement ps = cn.prepareStatement(sql)) {
+        try (Connexion connexion = connexion();
+             PreparedStatement ps = connexion.jdbc().prepareStatement(sql)) {
 
             ps.setString(1, stationName);
 
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    Timestamp ts = rs.getTimestamp("date_releve");
-                    if (ts != null) {
-                        result.add(new Date(ts.getTime()));
+                    long date = getInstant(rs, "date_releve");
+                    if (date != Meteo.SANS_DATE) {
+                        result.add(Instant.ofEpochMilli(date));
                     }
                 }
             }
@@ -289,7 +782,7 @@ public class OracleMeteoRepository implements MeteoRepository {
     }
 
     @Override
-    public Meteo findMeteoForStationAtDate(String stationName, Date date) throws Exception {
+    public Meteo findMeteoForStationAt(String stationName, Instant instant) throws Exception {
 
         // On matche la seconde entière, car Oracle TIMESTAMP stocke souvent les millisecondes
         String sql =
@@ -307,108 +800,737 @@ public class OracleMeteoRepository implements MeteoRepository {
                         "  AND m.date_releve < ? " +
                         "ORDER BY m.date_releve ASC";
 
-        Timestamp startTs = new Timestamp(date.getTime());
-        Timestamp endTs   = new Timestamp(date.getTime() + 1000); // +1 seconde
+        long debut = instant.toEpochMilli();
+        long fin   = debut + 1000; // +1 seconde
 
-        try (Connection cn = getConnection();
-             PreparedStatement ps = cn.prepareStatement(sql)) {
+        try (Connexion connexion = connexion();
+             PreparedStatement ps = connexion.jdbc().prepareStatement(sql)) {
 
             ps.setString(1, stationName);
-            ps.setTimestamp(2, startTs);
-            ps.setTimestamp(3, endTs);
+            setInstant(ps, 2, debut);
+            setInstant(ps, 3, fin);
 
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    Meteo m = new Meteo();
+                    return mapMeteo(rs);
+                }
+            }
+        }
 
-                    Timestamp ts = rs.getTimestamp("date_releve");
-                    if (ts != null) {
-                        m.setDateMesure(new Date(ts.getTime()));
-                    }
+        return null;
+    }
 
-                    double temp = rs.getDouble("temperature");
-                    if (!rs.wasNull()) {
-                        m.setTemperature(temp);
+    @Override
+    public List<Meteo> findMeteoForStationBetween(String stationName, Instant debut, Instant fin) throws Exception {
+        List<Meteo> result = new ArrayList<>();
+
+        StringBuilder sql = new StringBuilder(
+                "SELECT m.date_releve, " +
+                        "       m.temperature, " +
+                        "       m.humidite, " +
+                        "       m.pression, " +
+                        "       m.visibilite, " +
+                        "       m.precipitation, " +
+                        "       m.description " +
+                        "FROM meteo m " +
+                        "JOIN stations_meteo s ON s.station_id = m.station_id " +
+                        "WHERE s.nom = ? ");
+        if (debut != null) sql.append("  AND m.date_releve >= ? ");
+        if (fin != null) sql.append("  AND m.date_releve < ? ");
+        sql.append("ORDER BY m.date_releve ASC");
+
+        try (Connexion connexion = connexion();
+             PreparedStatement ps = connexion.jdbc().prepareStatement(sql.toString())) {
+
+            int i = 1;
+            ps.setString(i++, stationName);
+            if (debut != null) setInstant(ps, i++, debut.toEpochMilli());
+            if (fin != null) setInstant(ps, i, fin.toEpochMilli());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    result.add(mapMeteo(rs));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public void parcourirReleves(Collection<Integer> stations, Instant debut, Instant fin,
+                                 int tailleLot, LecteurReleves lecteur) throws Exception {
+        List<Integer> triees = new ArrayList<>(new TreeSet<>(stations));
+        LecteurRelevesComplets complet =
+                lecteur instanceof LecteurRelevesComplets ? (LecteurRelevesComplets) lecteur : null;
+
+        // Une requête par suite de numéros consécutifs (station_id BETWEEN) plutôt qu'une liste IN :
+        // l'intervalle est lu dans l'ordre de l'index (station_id, date_releve) et rendu en flux,
+        // alors qu'avec IN la base (H2 en particulier) trie tout le résultat avant la première ligne.
+        String sql =
+                "SELECT station_id, date_releve, temperature, humidite, pression, precipitation" +
+                        (complet != null ? ", visibilite, description " : " ") +
+                        "FROM meteo " +
+                        "WHERE station_id BETWEEN ? AND ? " +
+                        (debut != null ? "  AND date_releve >= ? " : "") +
+                        (fin != null ? "  AND date_releve < ? " : "") +
+                        "ORDER BY station_id, date_releve";
+
+        try (Connexion connexion = connexion();
+             PreparedStatement ps = connexion.jdbc().prepareStatement(sql)) {
+            ps.setFetchSize(tailleLot);
+            int i = 0;
+            while (i < triees.size()) {
+                int j = i;
+                while (j + 1 < triees.size() && triees.get(j + 1) == triees.get(j) + 1) j++;
+
+                int k = 1;
+                ps.setInt(k++, triees.get(i));
+                ps.setInt(k++, triees.get(j));
+                if (debut != null) setInstant(ps, k++, debut.toEpochMilli());
+                if (fin != null) setInstant(ps, k, fin.toEpochMilli());
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        LocalDateTime ldt = rs.getObject(2, LocalDateTime.class);
+                        if (ldt == null) continue;
+                        long dateMs = ldt.toEpochSecond(ZoneOffset.UTC) * 1000L + ldt.getNano() / 1_000_000;
+                        if (complet != null) {
+                            complet.releve(rs.getInt(1), dateMs, valeur(rs, 3), valeur(rs, 4), valeur(rs, 5),
+                                    valeur(rs, 6), valeur(rs, 7), rs.getString(8));
+                        } else {
+                            lecteur.releve(rs.getInt(1), dateMs,
+                                    valeur(rs, 3), valeur(rs, 4), valeur(rs, 5), valeur(rs, 6));
+                        }
                     }
+                }
+                i = j + 1;
+            }
+        }
+    }
 
-                    double hum = rs.getDouble("humidite");
-                    if (!rs.wasNull()) {
-                        m.setHumidite(hum);
+    /** Colonne numérique par position, {@link Double#NaN} si NULL. */
+    private static double valeur(ResultSet rs, int colonne) throws SQLException {
+        double v = rs.getDouble(colonne);
+        return rs.wasNull() ? Double.NaN : v;
+    }
+
+    @Override
+    public int deleteMeteoForStationBefore(String stationName, Instant limite) throws Exception {
+        String sql =
+                "DELETE FROM meteo " +
+                        "WHERE date_releve < ? " +
+                        "  AND station_id IN (SELECT station_id FROM stations_meteo WHERE nom = ?)";
+
+        try (Connexion connexion = connexion();
+             PreparedStatement ps = connexion.jdbc().prepareStatement(sql)) {
+
+            setInstant(ps, 1, limite.toEpochMilli());
+            ps.setString(2, stationName);
+            return ps.executeUpdate();
+        }
+    }
+
+    @Override
+    public int supprimerReleves(int stationId, Collection<Instant> dates) throws Exception {
+        if (dates == null || dates.isEmpty()) return 0;
+
+        // clé de l'index unique uq_meteo_station_date : une ligne au plus par instant
+        String sql =
+                "DELETE FROM meteo " +
+                        "WHERE station_id = ? " +
+                        "  AND date_releve = ?";
+
+        int supprimes = 0;
+        try (Connexion connexion = connexion()) {
+            Connection cn = connexion.jdbc();
+            cn.setAutoCommit(false);
+            try (PreparedStatement ps = cn.prepareStatement(sql)) {
+                for (Instant date : dates) {
+                    ps.setInt(1, stationId);
+                    setInstant(ps, 2, date.toEpochMilli());
+                    ps.addBatch();
+                }
+                for (int n : ps.executeBatch()) {
+                    // SUCCESS_NO_INFO (Oracle) : compté comme supprimé
+                    if (n > 0) supprimes += n;
+                    else if (n == Statement.SUCCESS_NO_INFO) supprimes++;
+                }
+                cn.commit();
+            } catch (SQLException e) {
+                cn.rollback();
+                throw e;
+            }
+        }
+        return supprimes;
+    }
+
+    @Override
+    public long purgerRelevesAvant(Instant limite) throws Exception {
+        long supprimes = 0;
+        try (Connexion connexion = connexion()) {
+            Connection cn = connexion.jdbc();
+            // Partitions entièrement antérieures à la limite : supprimées d'un bloc (quelques
+            // opérations sur le dictionnaire, sans undo/redo par ligne) ; index globaux mis à jour
+            // en différé par Oracle (12c+).
+            for (PartitionReleves p : partitionsMeteo(cn)) {
+                if (p.borneHaute.isAfter(limite)) continue;
+                try (Statement st = cn.createStatement()) {
+                    long nb;
+                    try (ResultSet rs = st.executeQuery(
+                            "SELECT COUNT(*) FROM meteo PARTITION (\"" + p.nom + "\")")) {
+                        rs.next();
+                        nb = rs.getLong(1);
                     }
+                    // la première partition (non créée par intervalle) ne peut pas être supprimée : vidée
+                    st.execute("ALTER TABLE meteo " + (p.intervalle ? "DROP" : "TRUNCATE")
+                            + " PARTITION \"" + p.nom + "\" UPDATE GLOBAL INDEXES");
+                    supprimes += nb;
+                }
+            }
 
-                    double pres = rs.getDouble("pression");
-                    if (!rs.wasNull()) {
-                        m.setPression(pres);
+            // Reste (table non partitionnée, H2, ou limite en cours de mois) : par lots,
+            // une transaction courte par lot
+            String sql =
+                    "DELETE FROM meteo WHERE meteo_id IN (" +
+                            "  SELECT meteo_id FROM meteo WHERE date_releve < ? " +
+                            "  FETCH FIRST " + LOT_PURGE + " ROWS ONLY)";
+            try (PreparedStatement ps = cn.prepareStatement(sql)) {
+                int nb;
+                do {
+                    setInstant(ps, 1, limite.toEpochMilli());
+                    nb = ps.executeUpdate();
+                    supprimes += nb;
+                } while (nb == LOT_PURGE);
+            }
+        }
+        return supprimes;
+    }
+
+    @Override
+    public long compterRelevesAvant(Instant limite) throws Exception {
+        try (Connexion connexion = connexion();
+             PreparedStatement ps = connexion.jdbc().prepareStatement("SELECT COUNT(*) FROM meteo WHERE date_releve < ?")) {
+            setInstant(ps, 1, limite.toEpochMilli());
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Partitions de la table meteo et leur borne haute (exclue), vide si la table n'est pas partitionnée.
+     */
+    protected List<PartitionReleves> partitionsMeteo(Connection cn) throws SQLException {
+        List<PartitionReleves> result = new ArrayList<>();
+        String sql =
+                "SELECT partition_name, high_value, interval " +
+                        "FROM user_tab_partitions " +
+                        "WHERE table_name = 'METEO' " +
+                        "ORDER BY partition_position";
+
+        try (PreparedStatement ps = cn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                String nom = rs.getString("partition_name");
+                String borne = rs.getString("high_value"); // colonne LONG : lue dans l'ordre du SELECT
+                boolean intervalle = "YES".equals(rs.getString("interval"));
+                Matcher m = borne != null ? BORNE_PARTITION.matcher(borne) : null;
+                if (m == null || !m.find()) continue; // MAXVALUE : jamais entièrement expirée
+                Instant borneHaute = LocalDateTime.parse(m.group(1) + "T" + m.group(2)).toInstant(ZoneOffset.UTC);
+                result.add(new PartitionReleves(nom, borneHaute, intervalle));
+            }
+        }
+        return result;
+    }
+
+    /** Partition de la table meteo : relevés antérieurs à borneHaute (et postérieurs à la précédente). */
+    protected static final class PartitionReleves {
+        final String nom;
+        final Instant borneHaute;
+        final boolean intervalle; // créée automatiquement (INTERVAL), donc supprimable
+
+        PartitionReleves(String nom, Instant borneHaute, boolean intervalle) {
+            this.nom = nom;
+            this.borneHaute = borneHaute;
+            this.intervalle = intervalle;
+        }
+    }
+
+    // -------------------------------------------------------
+    // COORDINATION DES NŒUDS DE CAPTURE (mode cluster)
+    // -------------------------------------------------------
+
+    @Override
+    public void renouvelerNoeud(String noeud, Instant expiration) throws Exception {
+        try (Connexion connexion = connexion()) {
+            Connection cn = connexion.jdbc();
+            cn.setAutoCommit(false);
+            try {
+                int maj;
+                try (PreparedStatement ps = cn.prepareStatement(
+                        "UPDATE noeuds_capture SET expire_le = ? WHERE noeud = ?")) {
+                    setInstant(ps, 1, expiration.toEpochMilli());
+                    ps.setString(2, noeud);
+                    maj = ps.executeUpdate();
+                }
+                if (maj == 0) {
+                    // premier bail du nœud (un même nom n'est utilisé que par un processus à la fois)
+                    try (PreparedStatement ps = cn.prepareStatement(
+                            "INSERT INTO noeuds_capture (noeud, expire_le) VALUES (?, ?)")) {
+                        ps.setString(1, noeud);
+                        setInstant(ps, 2, expiration.toEpochMilli());
+                        ps.executeUpdate();
                     }
+                }
+                try (PreparedStatement ps = cn.prepareStatement(
+                        "UPDATE baux_stations SET expire_le = ? WHERE noeud = ?")) {
+                    setInstant(ps, 1, expiration.toEpochMilli());
+                    ps.setString(2, noeud);
+                    ps.executeUpdate();
+                }
+                // nœuds arrêtés sans se retirer (plantage) : oubliés après un délai
+                try (PreparedStatement ps = cn.prepareStatement(
+                        "DELETE FROM noeuds_capture WHERE expire_le < ?")) {
+                    setInstant(ps, 1, expiration.toEpochMilli() - OUBLI_NOEUD_MS);
+                    ps.executeUpdate();
+                }
+                cn.commit();
+            } catch (SQLException e) {
+                cn.rollback();
+                throw e;
+            }
+        }
+    }
 
-                    int vis = rs.getInt("visibilite");
-                    if (!rs.wasNull()) {
-                        m.setVisibilite(vis);
+    @Override
+    public List<String> findNoeudsActifs(Instant maintenant) throws Exception {
+        List<String> result = new ArrayList<>();
+        try (Connexion connexion = connexion();
+             PreparedStatement ps = connexion.jdbc().prepareStatement(
+                     "SELECT noeud FROM noeuds_capture WHERE expire_le > ? ORDER BY noeud")) {
+            setInstant(ps, 1, maintenant.toEpochMilli());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    result.add(rs.getString(1));
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Set<Integer> acquerirStations(String noeud, Collection<Integer> stations,
+                                         Instant maintenant, Instant expiration) throws Exception {
+        Set<Integer> acquises = new HashSet<>();
+        if (stations == null || stations.isEmpty()) return acquises;
+        // ordre fixe : deux nœuds qui se disputent des stations verrouillent les lignes dans le même ordre
+        List<Integer> demandees = new ArrayList<>(new TreeSet<>(stations));
+
+        try (Connexion connexion = connexion()) {
+            Connection cn = connexion.jdbc();
+            cn.setAutoCommit(false);
+            try {
+                // 1. baux existants : prolongés s'ils sont à nous, repris s'ils ont expiré
+                try (PreparedStatement ps = cn.prepareStatement(
+                        "UPDATE baux_stations SET noeud = ?, expire_le = ? " +
+                                "WHERE station_id = ? AND (noeud = ? OR expire_le < ?)")) {
+                    for (Integer id : demandees) {
+                        ps.setString(1, noeud);
+                        setInstant(ps, 2, expiration.toEpochMilli());
+                        ps.setInt(3, id);
+                        ps.setString(4, noeud);
+                        setInstant(ps, 5, maintenant.toEpochMilli());
+                        ps.addBatch();
                     }
+                    ps.executeBatch();
+                }
 
-                    double precip = rs.getDouble("precipitation");
-                    if (!rs.wasNull()) {
-                        m.setPrecipitation(precip);
+                // 2. détenteur actuel des stations demandées (lignes modifiées verrouillées jusqu'au commit),
+                //    par paquets de LOT_BAUX numéros : une seule requête préparée, le dernier paquet est
+                //    complété en répétant son dernier numéro
+                Map<Integer, String> detenteurs = new HashMap<>();
+                try (PreparedStatement ps = cn.prepareStatement(
+                        "SELECT station_id, noeud FROM baux_stations WHERE station_id IN ("
+                                + String.join(", ", Collections.nCopies(LOT_BAUX, "?")) + ")")) {
+                    for (int debut = 0; debut < demandees.size(); debut += LOT_BAUX) {
+                        for (int i = 0; i < LOT_BAUX; i++) {
+                            ps.setInt(i + 1, demandees.get(Math.min(debut + i, demandees.size() - 1)));
+                        }
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                detenteurs.put(rs.getInt(1), rs.getString(2));
+                            }
+                        }
                     }
+                }
 
-                    String desc = rs.getString("description");
-                    if (desc != null) {
-                        m.setDescription(desc);
+                // 3. stations sans bail : créé, sauf si un autre nœud vient de le créer
+                try (PreparedStatement ps = cn.prepareStatement(
+                        "INSERT INTO baux_stations (station_id, noeud, expire_le) VALUES (?, ?, ?)")) {
+                    for (Integer id : demandees) {
+                        String detenteur = detenteurs.get(id);
+                        if (detenteur != null) {
+                            if (detenteur.equals(noeud)) acquises.add(id);
+                            continue;
+                        }
+                        ps.setInt(1, id);
+                        ps.setString(2, noeud);
+                        setInstant(ps, 3, expiration.toEpochMilli());
+                        try {
+                            ps.executeUpdate();
+                            acquises.add(id);
+                        } catch (SQLException e) {
+                            // seule l'instruction est annulée, la transaction continue
+                            if (!estViolationUnicite(e)) throw e;
+                        }
                     }
+                }
+                cn.commit();
+            } catch (SQLException e) {
+                cn.rollback();
+                throw e;
+            }
+        }
+        return acquises;
+    }
 
-                    return m;
+    @Override
+    public void libererStations(String noeud, Collection<Integer> stations) throws Exception {
+        if (stations == null || stations.isEmpty()) return;
+        try (Connexion connexion = connexion();
+             PreparedStatement ps = connexion.jdbc().prepareStatement(
+                     "DELETE FROM baux_stations WHERE station_id = ? AND noeud = ?")) {
+            Connection cn = connexion.jdbc();
+            cn.setAutoCommit(false);
+            try {
+                for (Integer id : new TreeSet<>(stations)) {
+                    ps.setInt(1, id);
+                    ps.setString(2, noeud);
+                    ps.addBatch();
                 }
+                ps.executeBatch();
+                cn.commit();
+            } catch (SQLException e) {
+                cn.rollback();
+                throw e;
             }
         }
+    }
 
-        return null;
+    @Override
+    public void retirerNoeud(String noeud) throws Exception {
+        try (Connexion connexion = connexion()) {
+            Connection cn = connexion.jdbc();
+            cn.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = cn.prepareStatement("DELETE FROM baux_stations WHERE noeud = ?")) {
+                    ps.setString(1, noeud);
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = cn.prepareStatement("DELETE FROM noeuds_capture WHERE noeud = ?")) {
+                    ps.setString(1, noeud);
+                    ps.executeUpdate();
+                }
+                cn.commit();
+            } catch (SQLException e) {
+                cn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // -------------------------------------------------------
+    // DATES (UTC)
+    // -------------------------------------------------------
+
+    /** Lie un instant (ms epoch) à une colonne TIMESTAMP, en heure UTC. */
+    protected static void setInstant(PreparedStatement ps, int index, long epochMs) throws SQLException {
+        ps.setObject(index, LocalDateTime.ofEpochSecond(
+                Math.floorDiv(epochMs, 1000L), (int) Math.floorMod(epochMs, 1000L) * 1_000_000, ZoneOffset.UTC));
+    }
+
+    /** Lit une colonne TIMESTAMP (heure UTC) en ms epoch, {@link Meteo#SANS_DATE} si NULL. */
+    protected static long getInstant(ResultSet rs, String colonne) throws SQLException {
+        LocalDateTime ldt = rs.getObject(colonne, LocalDateTime.class);
+        if (ldt == null) return Meteo.SANS_DATE;
+        return ldt.toEpochSecond(ZoneOffset.UTC) * 1000L + ldt.getNano() / 1_000_000;
+    }
+
+    /**
+     * Construit un {@link Meteo} à partir de la ligne courante
+     * (colonnes date_releve, temperature, humidite, pression, visibilite, precipitation, description).
+     */
+    private Meteo mapMeteo(ResultSet rs) throws SQLException {
+        Meteo m = new Meteo();
+
+        m.setDateMesureMs(getInstant(rs, "date_releve"));
+
+        double temp = rs.getDouble("temperature");
+        if (!rs.wasNull()) {
+            m.setTemperature(temp);
+        }
+
+        double hum = rs.getDouble("humidite");
+        if (!rs.wasNull()) {
+            m.setHumidite(hum);
+        }
+
+        double pres = rs.getDouble("pression");
+        if (!rs.wasNull()) {
+            m.setPression(pres);
+        }
+
+        int vis = rs.getInt("visibilite");
+        if (!rs.wasNull()) {
+            m.setVisibilite(vis);
+        }
+
+        double precip = rs.getDouble("precipitation");
+        if (!rs.wasNull()) {
+            m.setPrecipitation(precip);
+        }
+
+        String desc = rs.getString("description");
+        if (desc != null) {
+            m.setDescription(desc);
+        }
+
+        return m;
     }
 
     @Override
     public StationMeteo findStationByName(String stationName) throws Exception {
         String sql =
-                "SELECT s.nom, s.latitude, s.longitude, s.openweather_id, " +
+                "SELECT s.station_id, s.nom, s.latitude, s.longitude, s.openweather_id, " +
                         "       p.nom AS pays_nom, p.code_pays AS pays_code " +
                         "FROM stations_meteo s " +
                         "LEFT JOIN pays p ON p.pays_id = s.pays_id " +
                         "WHERE s.nom = ?";
 
-        try (Connection cn = getConnection();
-             PreparedStatement ps = cn.prepareStatement(sql)) {
+        try (Connexion connexion = connexion();
+             PreparedStatement ps = connexion.jdbc().prepareStatement(sql)) {
 
             ps.setString(1, stationName);
 
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    StationMeteo st = new StationMeteo();
+                    return mapStation(rs);
+                }
+            }
+        }
 
-                    st.setNom(rs.getString("nom"));
+        return null;
+    }
 
-                    double lat = rs.getDouble("latitude");
-                    if (!rs.wasNull()) {
-                        st.setLatitude(lat);
-                    }
+    @Override
+    public List<StationMeteo> findAllStations() throws Exception {
+        List<StationMeteo> result = new ArrayList<>();
 
-                    double lon = rs.getDouble("longitude");
-                    if (!rs.wasNull()) {
-                        st.setLongitude(lon);
-                    }
+        String sql =
+                "SELECT s.station_id, s.nom, s.latitude, s.longitude, s.openweather_id, " +
+                        "       p.nom AS pays_nom, p.code_pays AS pays_code " +
+                        "FROM stations_meteo s " +
+                        "LEFT JOIN pays p ON p.pays_id = s.pays_id " +
+                        "ORDER BY s.nom ASC";
 
-                    int owid = rs.getInt("openweather_id");
-                    if (!rs.wasNull()) {
-                        st.setOpenWeatherMapId(owid);
-                    }
+        try (Connexion connexion = connexion();
+             PreparedStatement ps = connexion.jdbc().prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
 
-                    Pays p = new Pays();
-                    p.setNom(rs.getString("pays_nom"));
-                    p.setCode(rs.getString("pays_code"));
-                    st.setPays(p);
+            while (rs.next()) {
+                result.add(mapStation(rs));
+            }
+        }
 
-                    return st;
+        return result;
+    }
+
+    @Override
+    public List<StationMeteo> findDerniersReleves(Instant depuis) throws Exception {
+        List<StationMeteo> result = new ArrayList<>();
+
+        // dernier relevé par station : MAX(date_releve) lu dans l'index (station_id, date_releve)
+        String sql =
+                "SELECT s.station_id, s.nom, s.latitude, s.longitude, s.openweather_id, " +
+                        "       p.nom AS pays_nom, p.code_pays AS pays_code, " +
+                        "       m.date_releve, m.temperature, m.humidite, m.pression, " +
+                        "       m.visibilite, m.precipitation, m.description " +
+                        "FROM (SELECT station_id, MAX(date_releve) AS dernier " +
+                        "      FROM meteo WHERE date_releve >= ? GROUP BY station_id) d " +
+                        "JOIN meteo m ON m.station_id = d.station_id AND m.date_releve = d.dernier " +
+                        "JOIN stations_meteo s ON s.station_id = m.station_id " +
+                        "LEFT JOIN pays p ON p.pays_id = s.pays_id";
+
+        try (Connexion connexion = connexion();
+             PreparedStatement ps = connexion.jdbc().prepareStatement(sql)) {
+
+            setInstant(ps, 1, depuis.toEpochMilli());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    StationMeteo st = mapStation(rs);
+                    st.addMeteo(mapMeteo(rs));
+                    result.add(st);
                 }
             }
         }
 
-        return null;
+        return result;
+    }
+
+    @Override
+    public List<Pays> findAllPays() throws Exception {
+        List<Pays> result = new ArrayList<>();
+
+        String sql =
+                "SELECT pays_id, nom, code_pays " +
+                        "FROM pays " +
+                        "ORDER BY nom ASC";
+
+        try (Connexion connexion = connexion();
+             PreparedStatement ps = connexion.jdbc().prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+
+            while (rs.next()) {
+                Pays p = new Pays();
+                p.setNumero(rs.getInt("pays_id"));
+                p.setNom(rs.getString("nom"));
+                p.setCode(rs.getString("code_pays"));
+                result.add(p);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public void enregistrerResumesJour(List<ResumeJour> resumes) throws Exception {
+        if (resumes == null || resumes.isEmpty()) return;
+
+        // Les esquisses sont liées directement dans UPDATE / INSERT (CAST vers BLOB refusé par Oracle)
+        String sql =
+                "MERGE INTO resume_jour r " +
+                        "USING (SELECT CAST(? AS INTEGER) AS station_id, CAST(? AS DATE) AS jour FROM dual) src " +
+                        "ON (r.station_id = src.station_id AND r.jour = src.jour) " +
+                        "WHEN MATCHED THEN UPDATE SET " +
+                        "    r.nb_releves = ?, r.temperature_min = ?, r.temperature_max = ?, " +
+                        "    r.temperature_somme = ?, r.precipitation = ?, " +
+                        "    r.esquisse_temperature = ?, r.esquisse_conditions = ? " +
+                        "WHEN NOT MATCHED THEN INSERT " +
+                        "    (station_id, jour, nb_releves, temperature_min, temperature_max, " +
+                        "     temperature_somme, precipitation, esquisse_temperature, esquisse_conditions) " +
+                        "VALUES (src.station_id, src.jour, ?, ?, ?, ?, ?, ?, ?)";
+
+        try (Connexion connexion = connexion()) {
+            Connection cn = connexion.jdbc();
+            cn.setAutoCommit(false);
+            try (PreparedStatement ps = cn.prepareStatement(sql)) {
+                for (ResumeJour r : resumes) {
+                    ps.setInt(1, r.getNumeroStation());
+                    ps.setObject(2, r.getJour());
+                    bindResume(ps, 3, r);
+                    bindResume(ps, 10, r);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                cn.commit();
+            } catch (SQLException e) {
+                cn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /** Renseigne les 7 colonnes de valeurs d'un résumé journalier à partir de l'index donné. */
+    private static void bindResume(PreparedStatement ps, int index, ResumeJour r) throws SQLException {
+        ps.setLong(index, r.getNbReleves());
+        if (r.getTemperatureMin() != null) {
+            ps.setDouble(index + 1, r.getTemperatureMin());
+            ps.setDouble(index + 2, r.getTemperatureMax());
+        } else {
+            ps.setNull(index + 1, Types.DOUBLE);
+            ps.setNull(index + 2, Types.DOUBLE);
+        }
+        ps.setDouble(index + 3, r.getSommeTemperatures());
+        ps.setDouble(index + 4, r.getPrecipitation());
+        ps.setBytes(index + 5, r.getEsquisseTemperature());
+        ps.setBytes(index + 6, r.getEsquisseConditions());
+    }
+
+    @Override
+    public List<ResumeJour> findResumesJour(int stationId, LocalDate premier, LocalDate dernier) throws Exception {
+        List<ResumeJour> result = new ArrayList<>();
+
+        String sql =
+                "SELECT station_id, jour, nb_releves, temperature_min, temperature_max, temperature_somme, " +
+                        "       precipitation, esquisse_temperature, esquisse_conditions " +
+                        "FROM resume_jour " +
+                        "WHERE station_id = ? " +
+                        "  AND jour BETWEEN ? AND ? " +
+                        "ORDER BY jour ASC";
+
+        try (Connexion connexion = connexion();
+             PreparedStatement ps = connexion.jdbc().prepareStatement(sql)) {
+
+            ps.setInt(1, stationId);
+            ps.setObject(2, premier);
+            ps.setObject(3, dernier);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ResumeJour r = new ResumeJour();
+                    r.setNumeroStation(rs.getInt("station_id"));
+                    r.setJour(rs.getObject("jour", LocalDate.class));
+                    r.setNbReleves(rs.getLong("nb_releves"));
+                    double min = rs.getDouble("temperature_min");
+                    if (!rs.wasNull()) {
+                        r.setTemperatureMin(min);
+                        r.setTemperatureMax(rs.getDouble("temperature_max"));
+                    }
+                    r.setSommeTemperatures(rs.getDouble("temperature_somme"));
+                    r.setPrecipitation(rs.getDouble("precipitation"));
+                    r.setEsquisseTemperature(rs.getBytes("esquisse_temperature"));
+                    r.setEsquisseConditions(rs.getBytes("esquisse_conditions"));
+                    result.add(r);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Construit une {@link StationMeteo} (sans relevés) à partir de la ligne courante
+     * (colonnes station_id, nom, latitude, longitude, openweather_id, pays_nom, pays_code).
+     */
+    private StationMeteo mapStation(ResultSet rs) throws SQLException {
+        StationMeteo st = new StationMeteo();
+
+        st.setNumero(rs.getInt("station_id"));
+        st.setNom(rs.getString("nom"));
+
+        double lat = rs.getDouble("latitude");
+        if (!rs.wasNull()) {
+            st.setLatitude(lat);
+        }
+
+        double lon = rs.getDouble("longitude");
+        if (!rs.wasNull()) {
+            st.setLongitude(lon);
+        }
+
+        int owid = rs.getInt("openweather_id");
+        if (!rs.wasNull()) {
+            st.setOpenWeatherMapId(owid);
+        }
+
+        Pays p = new Pays();
+        p.setNom(rs.getString("pays_nom"));
+        p.setCode(rs.getString("pays_code"));
+        st.setPays(p);
+
+        return st;
     }
 }
@@ -0,0 +1,184 @@
+package ch.hearc.meteo.infrastructure.persistence;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connexions JDBC gardées ouvertes d'une opération du repository à l'autre, avec leurs requêtes
+ * préparées : la base n'analyse une requête qu'une fois par connexion, au lieu d'une fois par appel.
+ *
+ * - Au plus connexionsMax connexions empruntées à la fois : au-delà, l'emprunt attend qu'une
+ *   connexion soit rendue, au plus attenteMs, puis échoue (SQLTransientConnectionException).
+ *   Une opération peut emprunter une seconde connexion pendant la première (archivage pendant
+ *   un parcours des relevés) : connexionsMax doit rester supérieur à 1.
+ * - Les connexions rendues (close) sont gardées ; une connexion fermée entre-temps (perte du
+ *   réseau, redémarrage de la base) est écartée, une connexion libre depuis plus de 30 s est
+ *   vérifiée avant d'être reprêtée.
+ * - Requêtes de chaque enregistrement (pays, station) : préparées une fois par connexion
+ *   ({@link Connexion#requete}), au plus requetesMax par connexion.
+ * - Oracle : cache implicite du pilote en plus (oracle.jdbc.implicitStatementCacheSize), qui rend
+ *   la même requête à chaque prepareStatement sur la même connexion physique.
+ *
+ * Une connexion empruntée est rendue dans l'état d'origine : transaction en cours annulée,
+ * autoCommit rétabli.
+ */
+final class PoolConnexions implements AutoCloseable {
+
+    // connexion inutilisée depuis plus longtemps : vérifiée (isValid) avant d'être reprêtée
+    private static final long VERIFICATION_MS = 30_000;
+
+    private final String url;
+    private final Properties proprietes;
+    private final int connexionsMax;
+    private final int requetesMax;
+    private final long attenteMs;
+    private final boolean cachePilote;
+    // dernière rendue en tête : la plus « chaude » est reprêtée d'abord
+    private final Deque<Connexion> libres = new ArrayDeque<>();
+    private int empruntees;
+    private boolean ferme;
+
+    private final AtomicLong connexionsOuvertes = new AtomicLong();
+    private final AtomicLong connexionsReutilisees = new AtomicLong();
+    private final AtomicLong attentes = new AtomicLong();
+    private final AtomicLong attentesExpirees = new AtomicLong();
+    private final AtomicLong requetesPreparees = new AtomicLong();
+    private final AtomicLong requetesReutilisees = new AtomicLong();
+
+    /**
+     * @param connexionsMax connexions empruntées à la fois et gardées ouvertes entre deux opérations (&gt; 0)
+     * @param requetesMax requêtes préparées gardées par connexion (0 : aucune)
+     * @param attenteMs attente d'une connexion rendue quand toutes sont empruntées (&gt;= 0)
+     */
+    PoolConnexions(String url, String user, String password, int connexionsMax, int requetesMax, long attenteMs) {
+        if (connexionsMax <= 0 || requetesMax < 0 || attenteMs < 0) {
+            throw new IllegalArgumentException("connexions > 0, requêtes >= 0 et attente >= 0 requises");
+        }
+        this.url = url;
+        this.proprietes = new Properties();
+        if (user != null) proprietes.setProperty("user", user);
+        if (password != null) proprietes.setProperty("password", password);
+        this.cachePilote = url != null && url.startsWith("jdbc:oracle:");
+        if (cachePilote && requetesMax > 0) {
+            proprietes.setProperty("oracle.jdbc.implicitStatementCacheSize", String.valueOf(requetesMax));
+        }
+        this.connexionsMax = connexionsMax;
+        this.requetesMax = requetesMax;
+        this.attenteMs = attenteMs;
+    }
+
+    /**
+     * Connexion libre du pool, ou nouvelle connexion ; attend au plus attenteMs si connexionsMax
+     * connexions sont déjà empruntées. À fermer (rendue au pool).
+     * @throws SQLTransientConnectionException aucune connexion rendue pendant l'attente
+     */
+    Connexion emprunter() throws SQLException {
+        reserver();
+        try {
+            while (true) {
+                Connexion c;
+                synchronized (this) {
+                    c = libres.pollFirst();
+                }
+                if (c == null) break;
+                if (c.utilisable(VERIFICATION_MS)) {
+                    connexionsReutilisees.incrementAndGet();
+                    c.preter();
+                    return c;
+                }
+                c.fermer();
+            }
+            Connexion c = new Connexion(DriverManager.getConnection(url, proprietes), this, requetesMax);
+            connexionsOuvertes.incrementAndGet();
+            return c;
+        } catch (SQLException | RuntimeException e) {
+            liberer();
+            throw e;
+        }
+    }
+
+    /** Place d'emprunt : attend qu'une connexion soit rendue si toutes sont empruntées. */
+    private synchronized void reserver() throws SQLException {
+        if (ferme) throw new SQLException("pool de connexions fermé");
+        if (empruntees >= connexionsMax) {
+            attentes.incrementAndGet();
+            long fin = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(attenteMs);
+            while (empruntees >= connexionsMax && !ferme) {
+                long reste = fin - System.nanoTime();
+                if (reste <= 0) {
+                    attentesExpirees.incrementAndGet();
+                    throw new SQLTransientConnectionException("aucune connexion rendue en " + attenteMs
+                            + " ms (" + connexionsMax + " connexion(s) empruntée(s))");
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, reste);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("attente d'une connexion interrompue", e);
+                }
+            }
+            if (ferme) throw new SQLException("pool de connexions fermé");
+        }
+        empruntees++;
+    }
+
+    private synchronized void liberer() {
+        empruntees--;
+        notify();
+    }
+
+    /** Connexion rendue par son emprunteur (Connexion.close) : gardée, ou fermée si perdue. */
+    void rendre(Connexion c) {
+        boolean garder = c.remettreEnEtat();
+        synchronized (this) {
+            empruntees--;
+            notify();
+            if (garder && !ferme) {
+                c.rendueMs = System.currentTimeMillis();
+                libres.addFirst(c);
+                return;
+            }
+        }
+        c.fermer();
+    }
+
+    void requetePreparee() {
+        requetesPreparees.incrementAndGet();
+    }
+
+    void requeteReutilisee() {
+        requetesReutilisees.incrementAndGet();
+    }
+
+    /** Compteurs (affichés en quittant l'application). */
+    String statistiques() {
+        int libresMaintenant;
+        synchronized (this) {
+            libresMaintenant = libres.size();
+        }
+        return connexionsOuvertes.get() + " connexion(s) ouverte(s), " + connexionsReutilisees.get()
+                + " réutilisée(s), " + libresMaintenant + " libre(s), " + attentes.get() + " attente(s) dont "
+                + attentesExpirees.get() + " expirée(s) ; " + requetesPreparees.get() + " requête(s) préparée(s), "
+                + requetesReutilisees.get() + " réutilisée(s)"
+                + (cachePilote ? ", cache implicite du pilote (" + requetesMax + " par connexion)" : "");
+    }
+
+    /** Ferme les connexions libres ; celles encore empruntées sont fermées à leur retour. */
+    @Override
+    public void close() {
+        Deque<Connexion> aFermer;
+        synchronized (this) {
+            ferme = true;
+            notifyAll();
+            aFermer = new ArrayDeque<>(libres);
+            libres.clear();
+        }
+        for (Connexion c : aFermer) c.fermer();
+    }
+}
@@ -0,0 +1,23 @@
+package ch.hearc.meteo.infrastructure.persistence;
+
+import ch.hearc.meteo.business.ResumeJour;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Résumés journaliers des stations (table resume_jour) : esquisses de percentiles et de cardinalité.
+ * Implémenté par OracleMeteoRepository (et donc H2MeteoRepository) : les résumés restent en base,
+ * ils ne sont ni archivés ni purgés avec les relevés.
+ */
+public interface ResumesJourRepository {
+
+    /**
+     * Enregistre les résumés journaliers donnés en un seul batch : un résumé déjà présent
+     * pour la même station et la même journée est remplacé (l'appelant y a fusionné l'ancien).
+     */
+    void enregistrerResumesJour(List<ResumeJour> resumes) throws Exception;
+
+    /** Retourne les résumés journaliers d'une station du premier au dernier jour inclus, par jour croissant. */
+    List<ResumeJour> findResumesJour(int stationId, LocalDate premier, LocalDate dernier) throws Exception;
+}
@@ -0,0 +1,210 @@
+package ch.hearc.meteo.service;
+
+import ch.hearc.meteo.business.Meteo;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache des lectures d'historique, à trois niveaux, devant le repository :
+ * - la liste des stations, gardée ttlStationsMs et oubliée dès qu'une nouvelle station est enregistrée ;
+ * - les dates de relevé par station, gardées ttlDatesMs et complétées à chaque relevé enregistré ;
+ * - les relevés eux-mêmes (jamais modifiés en base une fois écrits), maxReleves au plus,
+ *   les moins récemment consultés évincés d'abord (LRU).
+ *
+ * Les écritures d'un autre processus (ImportHistorique, autre instance) ne sont vues
+ * qu'à l'expiration des TTL.
+ *
+ * Une lecture de la base commencée avant un enregistrement qui la concerne n'est pas mise en cache
+ * (versions) : son résultat peut ne pas contenir le nouveau relevé. Les dates d'une station ne
+ * dépendent que des enregistrements de cette station, et la liste des stations que de ceux d'une
+ * station pas encore connue : une capture continue des autres stations n'empêche pas le cache
+ * de se remplir.
+ */
+class CacheHistorique {
+
+    private final long ttlStationsMs;
+    private final long ttlDatesMs;
+    private final int maxReleves;
+
+    // versions incrémentées avant la mise à jour du cache : par station (ses dates),
+    // et pour la liste des stations (enregistrement d'une station pas encore connue)
+    private final Map<String, Long> versionsDates = new ConcurrentHashMap<>();
+    private final AtomicLong versionListe = new AtomicLong();
+    // stations déjà lues en base ou enregistrées : leurs enregistrements ne changent pas la liste
+    private final Set<String> stationsConnues = ConcurrentHashMap.newKeySet();
+
+    private final Object verrouStations = new Object();
+    private volatile ListeStations stations;
+    private final Map<String, IndexDates> datesParStation = new ConcurrentHashMap<>();
+    private final Map<String, Meteo> releves;
+
+    private final AtomicLong succes = new AtomicLong();
+    private final AtomicLong echecs = new AtomicLong();
+
+    CacheHistorique(long ttlStationsMs, long ttlDatesMs, int maxReleves) {
+        this.ttlStationsMs = ttlStationsMs;
+        this.ttlDatesMs = ttlDatesMs;
+        this.maxReleves = maxReleves;
+        this.releves = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Meteo> plusAncien) {
+                return size() > CacheHistorique.this.maxReleves;
+            }
+        };
+    }
+
+    /** Lecture de la base, pouvant échouer. */
+    interface Chargement<T> {
+        T charger() throws Exception;
+    }
+
+    // -------------------------------------------------------
+    // Stations
+    // -------------------------------------------------------
+
+    List<String> stations(Chargement<List<String>> base) throws Exception {
+        ListeStations enCache = stations;
+        if (enCache != null && System.currentTimeMillis() - enCache.chargeLe < ttlStationsMs) {
+            succes.incrementAndGet();
+            return enCache.noms;
+        }
+        echecs.incrementAndGet();
+        long v = versionListe.get();
+        List<String> noms = Collections.unmodifiableList(new ArrayList<>(base.charger()));
+        synchronized (verrouStations) {
+            if (versionListe.get() == v) {
+                stations = new ListeStations(noms, System.currentTimeMillis());
+                stationsConnues.addAll(noms);
+            }
+        }
+        return noms;
+    }
+
+    // -------------------------------------------------------
+    // Dates de relevé
+    // -------------------------------------------------------
+
+    /** Dates de relevé de la station, de la plus récente à la plus ancienne. */
+    List<Instant> dates(String station, Chargement<List<Instant>> base) throws Exception {
+        IndexDates enCache = datesParStation.get(station);
+        if (enCache != null && System.currentTimeMillis() - enCache.chargeLe < ttlDatesMs) {
+            succes.incrementAndGet();
+            return new ArrayList<>(enCache.dates);
+        }
+        echecs.incrementAndGet();
+        Long v = versionsDates.get(station);
+        List<Instant> dates = base.charger();
+        IndexDates index = new IndexDates(dates, System.currentTimeMillis());
+        // compute : exclusif avec la mise à jour d'un enregistrement sur la même station
+        datesParStation.compute(station, (cle, actuel) -> Objects.equals(versionsDates.get(station), v) ? index : actuel);
+        return new ArrayList<>(dates);
+    }
+
+    // -------------------------------------------------------
+    // Relevés
+    // -------------------------------------------------------
+
+    /** Relevé de la station à cet instant ; une absence n'est pas mise en cache. */
+    Meteo releve(String station, Instant instant, Chargement<Meteo> base) throws Exception {
+        String cle = station + "|" + instant.toEpochMilli();
+        Meteo enCache;
+        synchronized (releves) {
+            enCache = releves.get(cle);
+        }
+        if (enCache != null) {
+            succes.incrementAndGet();
+            return MeteoServiceImpl.copie(enCache);
+        }
+        echecs.incrementAndGet();
+        Meteo m = base.charger();
+        if (m != null && maxReleves > 0) {
+            Meteo copie = MeteoServiceImpl.copie(m);
+            synchronized (releves) {
+                releves.put(cle, copie);
+            }
+        }
+        return m;
+    }
+
+    // -------------------------------------------------------
+    // Enregistrements
+    // -------------------------------------------------------
+
+    /**
+     * Relevés de la station enregistrés en base : ajoutés aux dates connues de la station,
+     * liste des stations oubliée si la station n'y figure pas encore.
+     * Un relevé sans date (horodaté par la base) rend les dates de la station inconnues.
+     */
+    void enregistres(String station, Collection<Meteo> enregistres) {
+        versionsDates.merge(station, 1L, Long::sum);
+
+        if (!stationsConnues.contains(station)) {
+            versionListe.incrementAndGet();
+            stationsConnues.add(station);
+        }
+        ListeStations enCache = stations;
+        if (enCache != null && !enCache.noms.contains(station)) {
+            synchronized (verrouStations) {
+                stations = null;
+            }
+        }
+
+        boolean sansDate = false;
+        List<Instant> nouvelles = new ArrayList<>();
+        for (Meteo m : enregistres) {
+            if (m.hasDateMesure()) nouvelles.add(m.getInstantMesure());
+            else sansDate = true;
+        }
+        if (sansDate) {
+            datesParStation.remove(station);
+        } else {
+            datesParStation.computeIfPresent(station, (cle, index) -> {
+                index.dates.addAll(nouvelles);
+                return index;
+            });
+        }
+    }
+
+    String statistiques() {
+        int nbReleves;
+        synchronized (releves) {
+            nbReleves = releves.size();
+        }
+        return succes.get() + " lectures servies depuis le cache, " + echecs.get() + " depuis la base, "
+                + datesParStation.size() + " station(s) indexée(s), " + nbReleves + " relevé(s) en cache";
+    }
+
+    private static final class ListeStations {
+        final List<String> noms;
+        final long chargeLe;
+
+        ListeStations(List<String> noms, long chargeLe) {
+            this.noms = noms;
+            this.chargeLe = chargeLe;
+        }
+    }
+
+    /** Dates d'une station, triées de la plus récente à la plus ancienne, sans doublon. */
+    private static final class IndexDates {
+        final NavigableSet<Instant> dates = new ConcurrentSkipListSet<>(Comparator.reverseOrder());
+        final long chargeLe;
+
+        IndexDates(List<Instant> dates, long chargeLe) {
+            this.dates.addAll(dates);
+            this.chargeLe = chargeLe;
+        }
+    }
+}
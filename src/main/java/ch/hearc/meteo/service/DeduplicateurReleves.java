@@ -0,0 +1,60 @@
+package ch.hearc.meteo.service;
+
+import ch.hearc.meteo.business.Meteo;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Filtre des relevés déjà vus avant la sauvegarde.
+ * OWM renvoie la même observation (même date "dt") tant que la station n'a pas publié
+ * de nouvelle mesure : ces relevés inchangés ne sont pas renvoyés à la base.
+ *
+ * Mémoire : la date du dernier relevé enregistré, par station, notée seulement une fois
+ * la sauvegarde réussie ({@link #confirmer}). Deux captures simultanées du même relevé
+ * passent donc toutes deux le filtre et la base ne le garde qu'une fois ; en contrepartie,
+ * un relevé écarté est toujours déjà en base, et un relevé dont la sauvegarde a échoué
+ * sera retenté à la capture suivante.
+ * Après un redémarrage, la contrainte d'unicité (station, date) en base prend le relais.
+ */
+class DeduplicateurReleves {
+
+    private final Map<String, Long> derniereDateParStation = new ConcurrentHashMap<>();
+
+    /**
+     * Relevés à enregistrer pour la station : ceux dont la date n'est pas celle du dernier
+     * relevé enregistré, sans doublon de date dans la liste.
+     * Les relevés sans date sont toujours conservés (horodatés à l'insertion).
+     */
+    List<Meteo> filtrer(String cleStation, List<Meteo> releves) {
+        List<Meteo> nouveaux = new ArrayList<>();
+        if (releves == null || releves.isEmpty()) return nouveaux;
+
+        Long derniere = derniereDateParStation.get(cleStation);
+        Set<Long> vues = new HashSet<>();
+        for (Meteo m : releves) {
+            if (!m.hasDateMesure()) {
+                nouveaux.add(m);
+                continue;
+            }
+            long date = m.getDateMesureMs();
+            if ((derniere != null && date == derniere) || !vues.add(date)) continue;
+            nouveaux.add(m);
+        }
+        return nouveaux;
+    }
+
+    /** Note les relevés enregistrés : la plus récente de leurs dates devient la dernière connue. */
+    void confirmer(String cleStation, List<Meteo> enregistres) {
+        long plusRecente = Long.MIN_VALUE;
+        for (Meteo m : enregistres) {
+            if (m.hasDateMesure()) plusRecente = Math.max(plusRecente, m.getDateMesureMs());
+        }
+        // merge : une confirmation arrivée en retard ne fait pas reculer la date
+        if (plusRecente != Long.MIN_VALUE) derniereDateParStation.merge(cleStation, plusRecente, Math::max);
+    }
+}
@@ -0,0 +1,72 @@
+package ch.hearc.meteo.service;
+
+import ch.hearc.meteo.business.Meteo;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Format JSON de {@link Meteo} inchangé depuis le passage de la date en millisecondes epoch :
+ * "dateMesure" est écrit comme l'ancien champ {@link Date} (adaptateur Date du Gson utilisé,
+ * donc même format), et vaut null quand la date est inconnue ({@link Meteo#SANS_DATE}).
+ * Les autres champs passent par la sérialisation par défaut.
+ * En lecture, une date au format Date ou en millisecondes (nombre) est acceptée.
+ */
+class MeteoJson implements TypeAdapterFactory {
+
+    private static final String CHAMP_DATE = "dateMesure";
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (type.getRawType() != Meteo.class) return null;
+        TypeAdapter<Meteo> champs = gson.getDelegateAdapter(this, TypeToken.get(Meteo.class));
+        TypeAdapter<Date> dates = gson.getAdapter(Date.class);
+        TypeAdapter<JsonElement> arbres = gson.getAdapter(JsonElement.class);
+
+        return (TypeAdapter<T>) new TypeAdapter<Meteo>() {
+            @Override
+            public void write(JsonWriter out, Meteo meteo) throws IOException {
+                if (meteo == null) {
+                    out.nullValue();
+                    return;
+                }
+                JsonObject objet = champs.toJsonTree(meteo).getAsJsonObject();
+                // même clé : la position du champ dans l'objet est conservée
+                objet.add(CHAMP_DATE, meteo.hasDateMesure()
+                        ? dates.toJsonTree(new Date(meteo.getDateMesureMs()))
+                        : JsonNull.INSTANCE);
+                arbres.write(out, objet);
+            }
+
+            @Override
+            public Meteo read(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                JsonObject objet = arbres.read(in).getAsJsonObject();
+                JsonElement date = objet.remove(CHAMP_DATE);
+                Meteo meteo = champs.fromJsonTree(objet);
+                if (date != null && !date.isJsonNull()) {
+                    if (date.isJsonPrimitive() && date.getAsJsonPrimitive().isNumber()) {
+                        meteo.setDateMesureMs(date.getAsLong());
+                    } else {
+                        meteo.setDateMesure(dates.fromJsonTree(date));
+                    }
+                }
+                return meteo;
+            }
+        };
+    }
+}
@@ -2,7 +2,14 @@ package ch.hearc.meteo.service;
 
 import ch.hearc.meteo.business.Meteo;
 import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.service.esquisse.ResumePeriode;
+import ch.hearc.meteo.service.geo.MeteoInterpolee;
+import ch.hearc.meteo.service.geo.StationProche;
+import ch.hearc.meteo.service.rapport.RapportMeteo;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -15,6 +22,14 @@ public interface MeteoService {
      */
     StationMeteo obtenirMeteoEtTraiter(double latitude, double longitude, String langCountry);
 
+    /**
+     * Va sur l'API de prévisions (5 jours, pas de 3 heures) pour une latitude/longitude,
+     * enrichit le pays, enregistre les prévisions si la DB est dispo
+     * (une prévision déjà connue est mise à jour, pas dupliquée),
+     * et renvoie la station avec ses prévisions dans donneesMeteo (par date croissante).
+     */
+    StationMeteo obtenirPrevisionsEtTraiter(double latitude, double longitude, String langCountry);
+
     /**
      * Sérialisation JSON (debug / affichage brut si besoin).
      */
@@ -26,15 +41,29 @@ public interface MeteoService {
     List<String> listerStationsEnregistrees();
 
     /**
-     * Liste des dates de relevés pour une station donnée,
-     * triées du plus récent au plus ancien.
+     * Liste des instants de relevés pour une station donnée,
+     * triés du plus récent au plus ancien.
      */
-    List<Date> listerDatesPourStation(String stationName);
+    List<Instant> listerInstantsPourStation(String stationName);
 
     /**
-     * Récupère un relevé historique précis.
+     * Récupère un relevé historique précis (à la seconde).
      */
-    Meteo obtenirMeteoHistorique(String stationName, Date date);
+    Meteo obtenirMeteoHistorique(String stationName, Instant instant);
+
+    /** @deprecated utiliser {@link #listerInstantsPourStation(String)} */
+    @Deprecated
+    default List<Date> listerDatesPourStation(String stationName) {
+        List<Date> dates = new ArrayList<>();
+        for (Instant i : listerInstantsPourStation(stationName)) dates.add(Date.from(i));
+        return dates;
+    }
+
+    /** @deprecated utiliser {@link #obtenirMeteoHistorique(String, Instant)} */
+    @Deprecated
+    default Meteo obtenirMeteoHistorique(String stationName, Date date) {
+        return obtenirMeteoHistorique(stationName, date.toInstant());
+    }
 
     /**
      * Récupère les coordonnées d'une station déjà enregistrée
@@ -43,4 +72,31 @@ public interface MeteoService {
      * le résultat comme pour obtenirMeteoEtTraiter.
      */
     StationMeteo capturerMeteoPourStationEnregistree(String stationName, String langCountry);
+
+    /**
+     * Stations connues les plus proches d'une position (de la plus proche à la plus lointaine).
+     * Liste vide si l'index des stations n'est pas chargé.
+     */
+    List<StationProche> trouverStationsProches(double latitude, double longitude, int nombre);
+
+    /**
+     * Météo actuelle estimée en un point à partir du dernier relevé des stations voisines,
+     * sans appel API, avec un indicateur de confiance (appel direct conseillé ou non).
+     * null si l'interpolation n'est pas activée.
+     */
+    MeteoInterpolee estimerMeteo(double latitude, double longitude);
+
+    /**
+     * Rapport statistique par station et par pays sur [debut, fin) (borne null : non appliquée) :
+     * percentiles de température, degrés-jours, jours de pluie, extrêmes datés.
+     * null sans base configurée ou en cas d'échec.
+     */
+    RapportMeteo genererRapport(Instant debut, Instant fin);
+
+    /**
+     * Statistiques d'une station du premier au dernier jour inclus, à partir de ses résumés
+     * journaliers (percentiles approchés, sans relire les relevés).
+     * null si les résumés ne sont pas actifs, si la station est inconnue ou en cas d'échec.
+     */
+    ResumePeriode resumerPeriode(String stationName, LocalDate premier, LocalDate dernier);
 }
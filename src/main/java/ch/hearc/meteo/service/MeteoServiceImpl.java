@@ -7,14 +7,39 @@ import ch.hearc.meteo.exception.ApiClientException;
 import ch.hearc.meteo.infrastructure.http.CountryClient;
 import ch.hearc.meteo.infrastructure.http.OpenWeatherMapClient;
 import ch.hearc.meteo.infrastructure.persistence.MeteoRepository;
+import ch.hearc.meteo.service.alerte.MoteurAlertes;
+import ch.hearc.meteo.service.esquisse.EsquissesJournalieres;
+import ch.hearc.meteo.service.esquisse.ResumePeriode;
+import ch.hearc.meteo.service.geo.IndexSpatialStations;
+import ch.hearc.meteo.service.geo.InterpolateurMeteo;
+import ch.hearc.meteo.service.geo.MeteoInterpolee;
+import ch.hearc.meteo.service.geo.StationProche;
+import ch.hearc.meteo.service.pipeline.ReglagePipeline;
+import ch.hearc.meteo.service.rapport.MoteurRapports;
+import ch.hearc.meteo.service.rapport.RapportMeteo;
+import ch.hearc.meteo.service.rapport.ReglageRapports;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.Collections;
-import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Implémentation du service météo.
+ *
+ * Utilisable depuis plusieurs threads à la fois (captures et lectures concurrentes) :
+ * - aucun état partagé modifiable hors des structures concurrentes (cache des derniers relevés,
+ *   dédoublonnage, index spatial) et du {@link Gson}, lui-même sûr entre threads ;
+ * - le réglage de l'accrochage est publié d'un bloc (index, rayon, fraîcheur) ;
+ * - les objets renvoyés appartiennent à l'appelant : le cache ne rend que des copies ;
+ * - la création d'une même station par deux captures simultanées est gérée par le repository
+ *   (contrainte d'unicité, relecture de la station créée par l'autre).
+ */
 public class MeteoServiceImpl implements MeteoService {
 
     private final OpenWeatherMapClient owmClient;
@@ -23,8 +48,26 @@ public class MeteoServiceImpl implements MeteoService {
     private final Gson gson = new GsonBuilder()
             .serializeNulls()
             .setPrettyPrinting()
+            .registerTypeAdapterFactory(new MeteoJson()) // dateMesure au format Date, null si inconnue
             .create();
 
+    // Index spatial des stations connues et son réglage (optionnel, voir activerIndexStations)
+    private volatile Accrochage accrochage;
+    // Dernier relevé connu par station (clé : nom + coordonnées), avec l'instant de sa récupération
+    private final Map<String, ReleveEnCache> derniersReleves = new ConcurrentHashMap<>();
+    // Relevés inchangés (même observation OWM) écartés avant la sauvegarde
+    private final DeduplicateurReleves deduplicateur = new DeduplicateurReleves();
+    // Lectures d'historique (stations, dates, relevés), voir configurerCacheHistorique
+    private volatile CacheHistorique cacheHistorique = new CacheHistorique(30_000L, 600_000L, 2_000);
+    // Règles d'alerte évaluées sur chaque relevé capturé (optionnel, voir activerAlertes)
+    private volatile MoteurAlertes moteurAlertes;
+    // Météo estimée à partir des stations voisines (optionnel, voir activerInterpolation)
+    private volatile InterpolateurMeteo interpolateur;
+    // Parallélisme et définitions des rapports, voir configurerRapports
+    private volatile ReglageRapports reglageRapports = new ReglageRapports();
+    // Résumés journaliers (esquisses) des relevés enregistrés (optionnel, voir activerEsquisses)
+    private volatile EsquissesJournalieres esquisses;
+
     public MeteoServiceImpl(OpenWeatherMapClient owmClient,
                             CountryClient countryClient,
                             MeteoRepository meteoRepository) {
@@ -36,12 +79,189 @@ public class MeteoServiceImpl implements MeteoService {
         this.meteoRepository = meteoRepository;
     }
 
+    /**
+     * Active l'accrochage aux stations connues :
+     * une position à moins de rayonAccrochageKm d'une station de l'index est ramenée
+     * aux coordonnées de cette station (pas de station en double en base), et son dernier
+     * relevé est renvoyé directement, sans appel HTTP, s'il date de moins de fraicheurCacheMs.
+     * L'index est complété à chaque nouvelle station enregistrée.
+     */
+    public void activerIndexStations(IndexSpatialStations index, double rayonAccrochageKm, long fraicheurCacheMs) {
+        this.accrochage = index != null ? new Accrochage(index, rayonAccrochageKm, fraicheurCacheMs) : null;
+    }
+
+    /**
+     * Règle le cache des lectures d'historique : durée de vie de la liste des stations
+     * et des dates de chaque station, nombre de relevés gardés en mémoire.
+     * 0 désactive le niveau correspondant. Le cache précédent est abandonné.
+     */
+    public void configurerCacheHistorique(long ttlStationsMs, long ttlDatesMs, int maxReleves) {
+        this.cacheHistorique = new CacheHistorique(ttlStationsMs, ttlDatesMs, maxReleves);
+    }
+
+    /** Évalue les règles d'alerte sur chaque nouveau relevé capturé (null : aucune évaluation). */
+    public void activerAlertes(MoteurAlertes moteur) {
+        this.moteurAlertes = moteur;
+    }
+
+    /**
+     * Active l'estimation de la météo sans appel API ({@link #estimerMeteo}) ;
+     * l'interpolateur est tenu à jour à chaque relevé capturé. null : désactivée.
+     */
+    public void activerInterpolation(InterpolateurMeteo interpolateur) {
+        this.interpolateur = interpolateur;
+    }
+
+    /** Règle les rapports suivants (threads, lecture en base, degrés-jours, seuil de pluie). */
+    public void configurerRapports(ReglageRapports reglage) {
+        this.reglageRapports = reglage != null ? reglage : new ReglageRapports();
+    }
+
+    /** Tient à jour les résumés journaliers à chaque relevé enregistré (null : aucun résumé). */
+    public void activerEsquisses(EsquissesJournalieres esquisses) {
+        this.esquisses = esquisses;
+    }
+
+    /** Compteurs du cache d'historique (affichés en quittant l'application). */
+    public String statistiquesCacheHistorique() {
+        return cacheHistorique.statistiques();
+    }
+
     @Override
     public StationMeteo obtenirMeteoEtTraiter(double latitude, double longitude, String langCountry) {
+        // 0. Station connue à proximité : relevé récent en cache, ou au moins ses coordonnées
+        Accrochage accrochage = this.accrochage;
+        IndexSpatialStations index = accrochage != null ? accrochage.index : null;
+        if (index != null) {
+            StationProche proche = index.plusProche(latitude, longitude, accrochage.rayonKm);
+            if (proche != null) {
+                StationMeteo connue = proche.getStation();
+                ReleveEnCache enCache = derniersReleves.get(connue.cle());
+                if (estFrais(enCache, accrochage.fraicheurMs)) {
+                    return copie(enCache.station, true);
+                }
+                latitude = connue.getLatitude();
+                longitude = connue.getLongitude();
+            }
+        }
+
         // 1. Appel API OpenWeather
-        StationMeteo station = owmClient.fetchMeteo(null, null, latitude, longitude, langCountry);
+        StationMeteo station = recuperer(latitude, longitude, langCountry);
 
         // 2. Enrichir le pays (nom lisible, ex: "Suisse")
+        enrichirPays(station, langCountry);
+
+        // 3. Règles d'alerte, puis sauvegarde en DB (si repo dispo) sans les relevés déjà enregistrés
+        List<Meteo> nouveaux = filtrerNouveaux(station);
+        if (meteoRepository != null && station != null) {
+            if (nouveaux.isEmpty()) {
+                System.out.println("(Info) Relevé inchangé depuis le dernier appel, pas de nouvelle sauvegarde.");
+            } else {
+                try {
+                    StationMeteo aSauver = copieSansReleves(station);
+                    aSauver.setDonneesMeteo(nouveaux);
+                    meteoRepository.save(aSauver);
+                    noterEnregistrement(station, nouveaux);
+                } catch (Exception ex) {
+                    System.err.println("[WARN] Sauvegarde DB échouée: " + ex.getMessage());
+                }
+            }
+        }
+
+        // 4. Mise à jour de l'index spatial et du dernier relevé connu
+        noterDernierReleve(station);
+
+        return station;
+    }
+
+    // -------------------------------------------------------
+    // ÉTAPES DE LA CAPTURE (partagées avec PipelineCapture)
+    // -------------------------------------------------------
+
+    /** Appel API OpenWeather pour une position (météo actuelle). */
+    StationMeteo recuperer(double latitude, double longitude, String langCountry) {
+        return owmClient.fetchMeteo(null, null, latitude, longitude, langCountry);
+    }
+
+    /**
+     * Évalue les règles d'alerte (le moteur ignore les relevés déjà évalués) et renvoie
+     * les relevés à enregistrer : ceux qui ne sont pas déjà en base (vide sans base).
+     */
+    List<Meteo> filtrerNouveaux(StationMeteo station) {
+        if (station == null) return Collections.emptyList();
+        MoteurAlertes moteur = moteurAlertes;
+        if (moteur != null) {
+            moteur.evaluer(station.cle(), station.getNom(), station.getDonneesMeteo());
+        }
+        if (meteoRepository == null) return Collections.emptyList();
+        return deduplicateur.filtrer(station.cle(), station.getDonneesMeteo());
+    }
+
+    /** Relevés de la station enregistrés en base : dédoublonnage, cache d'historique et résumés à jour. */
+    void noterEnregistrement(StationMeteo station, List<Meteo> enregistres) {
+        deduplicateur.confirmer(station.cle(), enregistres);
+        cacheHistorique.enregistres(station.getNom(), enregistres);
+        EsquissesJournalieres esquisses = this.esquisses;
+        if (esquisses != null) {
+            esquisses.noter(station.cle(), station, enregistres);
+        }
+    }
+
+    /** Index spatial, dernier relevé connu et interpolation à jour (selon ce qui est actif). */
+    void noterDernierReleve(StationMeteo station) {
+        Accrochage accrochage = this.accrochage;
+        InterpolateurMeteo interpolateur = this.interpolateur;
+        if ((accrochage == null && interpolateur == null)
+                || station == null || station.getLatitude() == null || station.getLongitude() == null) {
+            return;
+        }
+        StationMeteo avecReleves = copie(station, true);
+        if (accrochage != null) {
+            accrochage.index.ajouter(copie(station, false));
+            derniersReleves.put(station.cle(), new ReleveEnCache(avecReleves, System.currentTimeMillis()));
+        }
+        if (interpolateur != null) {
+            interpolateur.noter(avecReleves);
+        }
+    }
+
+    MeteoRepository repository() {
+        return meteoRepository;
+    }
+
+    /**
+     * Pipeline de capture en masse (récupération, pays, filtre, écriture), à étapes parallèles
+     * et tampons bornés. Réutilisable d'un cycle à l'autre.
+     */
+    public PipelineCapture creerPipelineCapture(ReglagePipeline reglage) {
+        return new PipelineCapture(this, reglage);
+    }
+
+    @Override
+    public StationMeteo obtenirPrevisionsEtTraiter(double latitude, double longitude, String langCountry) {
+        // 1. Appel API OpenWeather (forecast 5 jours / 3 heures)
+        StationMeteo station = owmClient.fetchPrevisions(latitude, longitude, langCountry);
+
+        // 2. Enrichir le pays
+        enrichirPays(station, langCountry);
+
+        // 3. Sauvegarde (insertion ou mise à jour des prévisions déjà connues)
+        if (meteoRepository != null) {
+            try {
+                meteoRepository.savePrevisions(station);
+            } catch (Exception ex) {
+                System.err.println("[WARN] Sauvegarde prévisions DB échouée: " + ex.getMessage());
+            }
+        }
+
+        return station;
+    }
+
+    /**
+     * Remplace le pays (code seul) par le pays complet (nom lisible) via l'API Country,
+     * avec repli sur les noms de pays de {@link Locale} si l'API échoue ou ne répond rien.
+     */
+    void enrichirPays(StationMeteo station, String langCountry) {
         if (station != null
                 && station.getPays() != null
                 && station.getPays().getCode() != null
@@ -74,17 +294,96 @@ public class MeteoServiceImpl implements MeteoService {
                 }
             }
         }
+    }
 
-        // 3. Sauvegarde en DB (si repo dispo)
-        if (meteoRepository != null) {
-            try {
-                meteoRepository.save(station);
-            } catch (Exception ex) {
-                System.err.println("[WARN] Sauvegarde DB échouée: " + ex.getMessage());
+    @Override
+    public List<StationProche> trouverStationsProches(double latitude, double longitude, int nombre) {
+        Accrochage accrochage = this.accrochage;
+        if (accrochage == null) {
+            return Collections.emptyList();
+        }
+        return accrochage.index.plusProches(latitude, longitude, nombre);
+    }
+
+    @Override
+    public MeteoInterpolee estimerMeteo(double latitude, double longitude) {
+        InterpolateurMeteo interpolateur = this.interpolateur;
+        return interpolateur != null ? interpolateur.interpoler(latitude, longitude) : null;
+    }
+
+    /**
+     * Fraîcheur mesurée depuis la récupération (la date du relevé est celle de l'observation OWM,
+     * qui peut déjà avoir plusieurs minutes au moment de l'appel).
+     */
+    private static boolean estFrais(ReleveEnCache releve, long fraicheurMs) {
+        return releve != null && System.currentTimeMillis() - releve.recupereLe < fraicheurMs;
+    }
+
+    static StationMeteo copieSansReleves(StationMeteo station) {
+        StationMeteo copie = new StationMeteo();
+        copie.setNumero(station.getNumero());
+        copie.setNom(station.getNom());
+        copie.setPays(station.getPays());
+        copie.setLatitude(station.getLatitude());
+        copie.setLongitude(station.getLongitude());
+        copie.setOpenWeatherMapId(station.getOpenWeatherMapId());
+        return copie;
+    }
+
+    /** Copie de la station, de son pays et éventuellement de ses relevés (rien de partagé avec l'original). */
+    private static StationMeteo copie(StationMeteo station, boolean avecReleves) {
+        StationMeteo copie = copieSansReleves(station);
+        if (station.getPays() != null) {
+            Pays pays = new Pays();
+            pays.setNumero(station.getPays().getNumero());
+            pays.setCode(station.getPays().getCode());
+            pays.setNom(station.getPays().getNom());
+            copie.setPays(pays);
+        }
+        if (avecReleves && station.getDonneesMeteo() != null) {
+            for (Meteo m : station.getDonneesMeteo()) {
+                copie.addMeteo(copie(m));
             }
         }
+        return copie;
+    }
 
-        return station;
+    /** Copie d'un relevé (rien de partagé avec l'original). */
+    static Meteo copie(Meteo m) {
+        Meteo c = new Meteo();
+        c.setNumero(m.getNumero());
+        c.setDateMesureMs(m.getDateMesureMs());
+        c.setTemperature(m.getTemperature());
+        c.setDescription(m.getDescription());
+        c.setPression(m.getPression());
+        c.setHumidite(m.getHumidite());
+        c.setVisibilite(m.getVisibilite());
+        c.setPrecipitation(m.getPrecipitation());
+        return c;
+    }
+
+    /** Réglage de l'accrochage, remplacé d'un bloc par activerIndexStations. */
+    private static final class Accrochage {
+        final IndexSpatialStations index;
+        final double rayonKm;
+        final long fraicheurMs;
+
+        Accrochage(IndexSpatialStations index, double rayonKm, long fraicheurMs) {
+            this.index = index;
+            this.rayonKm = rayonKm;
+            this.fraicheurMs = fraicheurMs;
+        }
+    }
+
+    /** Dernier relevé d'une station et instant de sa récupération. */
+    private static final class ReleveEnCache {
+        final StationMeteo station;
+        final long recupereLe;
+
+        ReleveEnCache(StationMeteo station, long recupereLe) {
+            this.station = station;
+            this.recupereLe = recupereLe;
+        }
     }
 
     @Override
@@ -92,13 +391,40 @@ public class MeteoServiceImpl implements MeteoService {
         return gson.toJson(obj);
     }
 
+    @Override
+    public RapportMeteo genererRapport(Instant debut, Instant fin) {
+        if (meteoRepository == null) {
+            return null;
+        }
+        try {
+            return new MoteurRapports(meteoRepository, reglageRapports).generer(debut, fin);
+        } catch (Exception e) {
+            System.err.println("[WARN] Génération du rapport échouée: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public ResumePeriode resumerPeriode(String stationName, LocalDate premier, LocalDate dernier) {
+        EsquissesJournalieres esquisses = this.esquisses;
+        if (esquisses == null) {
+            return null;
+        }
+        try {
+            return esquisses.resumer(stationName, premier, dernier);
+        } catch (Exception e) {
+            System.err.println("[WARN] Lecture des résumés journaliers échouée: " + e.getMessage());
+            return null;
+        }
+    }
+
     @Override
     public List<String> listerStationsEnregistrees() {
         if (meteoRepository == null) {
             return Collections.emptyList();
         }
         try {
-            return meteoRepository.findAllStationNames();
+            return cacheHistorique.stations(meteoRepository::findAllStationNames);
         } catch (Exception e) {
             System.err.println("[WARN] Lecture stations DB échouée: " + e.getMessage());
             return Collections.emptyList();
@@ -106,12 +432,13 @@ public class MeteoServiceImpl implements MeteoService {
     }
 
     @Override
-    public List<Date> listerDatesPourStation(String stationName) {
+    public List<Instant> listerInstantsPourStation(String stationName) {
         if (meteoRepository == null) {
             return Collections.emptyList();
         }
         try {
-            return meteoRepository.findMeasurementDatesForStation(stationName);
+            return cacheHistorique.dates(stationName,
+                    () -> meteoRepository.findMeasurementInstantsForStation(stationName));
         } catch (Exception e) {
             System.err.println("[WARN] Lecture dates DB échouée: " + e.getMessage());
             return Collections.emptyList();
@@ -119,12 +446,13 @@ public class MeteoServiceImpl implements MeteoService {
     }
 
     @Override
-    public Meteo obtenirMeteoHistorique(String stationName, Date date) {
+    public Meteo obtenirMeteoHistorique(String stationName, Instant instant) {
         if (meteoRepository == null) {
             return null;
         }
         try {
-            return meteoRepository.findMeteoForStationAtDate(stationName, date);
+            return cacheHistorique.releve(stationName, instant,
+                    () -> meteoRepository.findMeteoForStationAt(stationName, instant));
         } catch (Exception e) {
             System.err.println("[WARN] Lecture relevé DB échouée: " + e.getMessage());
             return null;
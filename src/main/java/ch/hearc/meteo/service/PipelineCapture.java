@@ -0,0 +1,215 @@
+package ch.hearc.meteo.service;
+
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.infrastructure.persistence.MeteoRepository;
+import ch.hearc.meteo.service.pipeline.Etape;
+import ch.hearc.meteo.service.pipeline.MetriquesEtape;
+import ch.hearc.meteo.service.pipeline.ReglagePipeline;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Capture de nombreuses positions d'un coup, en pipeline {@link Flow} :
+ *
+ *   positions -> récupération (OWM) -> pays -> filtre (alertes, dédoublonnage) -> écriture (lots)
+ *
+ * Mêmes étapes que {@link MeteoServiceImpl#obtenirMeteoEtTraiter}, mais chacune avec ses threads
+ * et des tampons bornés entre étapes ({@link Etape}) : si la base n'absorbe pas le débit,
+ * l'écriture ralentit le filtre, puis les appels HTTP, puis la soumission des positions.
+ * L'écriture regroupe les relevés de plusieurs stations par transaction.
+ *
+ * Sans base, les relevés sont récupérés et évalués par les alertes, mais pas enregistrés.
+ */
+public class PipelineCapture {
+
+    private final MeteoServiceImpl service;
+    private final ReglagePipeline reglage;
+    // numéro en base par station (clé : nom + coordonnées), d'un cycle à l'autre
+    private final Map<String, Integer> numerosStations = new ConcurrentHashMap<>();
+
+    PipelineCapture(MeteoServiceImpl service, ReglagePipeline reglage) {
+        this.service = service;
+        this.reglage = reglage != null ? reglage : new ReglagePipeline();
+    }
+
+    /**
+     * Capture la météo actuelle de chaque position (latitude / longitude des stations données)
+     * et attend la fin du cycle.
+     */
+    public BilanCapture executer(List<StationMeteo> positions, String langCountry) throws InterruptedException {
+        int capacite = reglage.getCapacite();
+        AtomicInteger compteur = new AtomicInteger();
+        ExecutorService livraison = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "pipeline-" + compteur.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            SubmissionPublisher<StationMeteo> source = new SubmissionPublisher<>(livraison, capacite);
+
+            Etape<StationMeteo, StationMeteo> recuperation = Etape.parElement("récupération",
+                    reglage.getThreadsRecuperation(), capacite,
+                    p -> service.recuperer(p.getLatitude(), p.getLongitude(), langCountry), livraison);
+
+            Etape<StationMeteo, StationMeteo> pays = Etape.parElement("pays",
+                    reglage.getThreadsPays(), capacite,
+                    s -> {
+                        service.enrichirPays(s, langCountry);
+                        return s;
+                    }, livraison);
+
+            Etape<StationMeteo, Capture> filtre = Etape.parElement("filtre",
+                    reglage.getThreadsFiltre(), capacite,
+                    s -> {
+                        service.noterDernierReleve(s);
+                        List<Meteo> nouveaux = service.filtrerNouveaux(s);
+                        return nouveaux.isEmpty() ? null : new Capture(s, nouveaux);
+                    }, livraison);
+
+            Etape<Capture, StationMeteo> ecriture = new Etape<>("écriture",
+                    reglage.getThreadsEcriture(), capacite, reglage.getTailleLot(),
+                    this::enregistrer, livraison);
+
+            Puits puits = new Puits();
+            source.subscribe(recuperation);
+            recuperation.subscribe(pays);
+            pays.subscribe(filtre);
+            filtre.subscribe(ecriture);
+            ecriture.subscribe(puits);
+
+            long t0 = System.nanoTime();
+            for (StationMeteo p : positions) {
+                if (p.getLatitude() == null || p.getLongitude() == null) continue;
+                source.submit(p); // bloque si la récupération est saturée
+            }
+            source.close();
+
+            try {
+                puits.termine.get();
+            } catch (ExecutionException e) {
+                System.err.println("[WARN] Pipeline de capture interrompu : " + e.getCause());
+            }
+            long dureeMs = (System.nanoTime() - t0) / 1_000_000L;
+
+            List<MetriquesEtape> metriques = new ArrayList<>();
+            metriques.add(recuperation.metriques());
+            metriques.add(pays.metriques());
+            metriques.add(filtre.metriques());
+            metriques.add(ecriture.metriques());
+            return new BilanCapture(positions.size(), puits.recus.get(), dureeMs, metriques);
+        } finally {
+            livraison.shutdown();
+        }
+    }
+
+    /** Étape d'écriture : relevés de tout le lot en un batch, une transaction. */
+    private List<StationMeteo> enregistrer(List<Capture> lot) throws Exception {
+        MeteoRepository repo = service.repository();
+        Map<Integer, List<Meteo>> parStation = new LinkedHashMap<>();
+        for (Capture c : lot) {
+            parStation.computeIfAbsent(numeroStation(repo, c.station), k -> new ArrayList<>()).addAll(c.nouveaux);
+        }
+        repo.saveMeteoParStation(parStation);
+
+        List<StationMeteo> enregistrees = new ArrayList<>(lot.size());
+        for (Capture c : lot) {
+            service.noterEnregistrement(c.station, c.nouveaux);
+            enregistrees.add(c.station);
+        }
+        return enregistrees;
+    }
+
+    private Integer numeroStation(MeteoRepository repo, StationMeteo station) throws Exception {
+        String cle = station.cle();
+        Integer numero = numerosStations.get(cle);
+        if (numero == null) {
+            // ensureStationId est idempotent : deux threads d'écriture peuvent le demander ensemble
+            numero = repo.ensureStationId(MeteoServiceImpl.copieSansReleves(station));
+            numerosStations.put(cle, numero);
+        }
+        return numero;
+    }
+
+    /** Station récupérée et ses relevés à enregistrer. */
+    private static final class Capture {
+        final StationMeteo station;
+        final List<Meteo> nouveaux;
+
+        Capture(StationMeteo station, List<Meteo> nouveaux) {
+            this.station = station;
+            this.nouveaux = nouveaux;
+        }
+    }
+
+    /** Fin du pipeline : compte les stations enregistrées, signale la fin du flux. */
+    private static final class Puits implements Flow.Subscriber<StationMeteo> {
+        final AtomicLong recus = new AtomicLong();
+        final CompletableFuture<Void> termine = new CompletableFuture<>();
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(StationMeteo item) {
+            recus.incrementAndGet();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            termine.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            termine.complete(null);
+        }
+    }
+
+    /** Résultat d'un cycle : positions soumises, stations enregistrées, compteurs par étape. */
+    public static class BilanCapture {
+        private final int positions;
+        private final long enregistrees;
+        private final long dureeMs;
+        private final List<MetriquesEtape> etapes;
+
+        BilanCapture(int positions, long enregistrees, long dureeMs, List<MetriquesEtape> etapes) {
+            this.positions = positions;
+            this.enregistrees = enregistrees;
+            this.dureeMs = dureeMs;
+            this.etapes = etapes;
+        }
+
+        public int getPositions() { return positions; }
+        public long getEnregistrees() { return enregistrees; }
+        public long getDureeMs() { return dureeMs; }
+        public List<MetriquesEtape> getEtapes() { return new ArrayList<>(etapes); }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format(Locale.ROOT,
+                    "%d position(s), %d station(s) enregistrée(s) en %d ms (%.0f positions/s)",
+                    positions, enregistrees, dureeMs, dureeMs > 0 ? positions * 1000.0 / dureeMs : 0));
+            for (MetriquesEtape m : etapes) {
+                sb.append(System.lineSeparator()).append("  ").append(m);
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ch.hearc.meteo.service;
+
+import ch.hearc.meteo.infrastructure.persistence.MeteoRepository;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tâche de rétention : supprime de la base les relevés de plus de N mois, au démarrage
+ * puis à intervalle régulier, depuis un thread dédié.
+ *
+ * La limite est toujours un début de mois (UTC) : elle tombe sur une borne de partition
+ * de la table meteo (Oracle), qui est donc purgée par partitions entières, à coût constant
+ * quel que soit le volume. Les relevés sont conservés entre N et N+1 mois.
+ * Avec une archive configurée, les relevés sont archivés avant d'être purgés (voir
+ * {@link ch.hearc.meteo.infrastructure.persistence.ArchiveMeteoRepository}).
+ */
+public class RetentionReleves implements AutoCloseable {
+
+    private final MeteoRepository repository;
+    private final int moisConserves;
+    private ScheduledExecutorService planificateur;
+
+    public RetentionReleves(MeteoRepository repository, int moisConserves) {
+        if (repository == null) {
+            throw new IllegalArgumentException("repository requis");
+        }
+        if (moisConserves <= 0) {
+            throw new IllegalArgumentException("durée de rétention invalide : " + moisConserves + " mois");
+        }
+        this.repository = repository;
+        this.moisConserves = moisConserves;
+    }
+
+    /** Début du mois (UTC) situé moisConserves mois avant maintenant. */
+    Instant limite(Instant maintenant) {
+        return YearMonth.from(maintenant.atZone(ZoneOffset.UTC))
+                .minusMonths(moisConserves)
+                .atDay(1)
+                .atStartOfDay(ZoneOffset.UTC)
+                .toInstant();
+    }
+
+    /**
+     * Purge les relevés antérieurs à la limite.
+     * @return nombre de relevés supprimés
+     */
+    public long executer() throws Exception {
+        Instant limite = limite(Instant.now());
+        long debut = System.nanoTime();
+        long nb = repository.purgerRelevesAvant(limite);
+        System.out.println("(Info) Rétention : " + nb + " relevé(s) antérieur(s) au " + limite
+                + " supprimé(s) en " + (System.nanoTime() - debut) / 1_000_000 + " ms");
+        return nb;
+    }
+
+    /** Exécute la purge tout de suite puis toutes les intervalleHeures heures, en arrière-plan. */
+    public synchronized void planifier(long intervalleHeures) {
+        if (planificateur != null) return;
+        planificateur = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "retention-releves");
+            t.setDaemon(true);
+            return t;
+        });
+        planificateur.scheduleWithFixedDelay(() -> {
+            try {
+                executer();
+            } catch (Exception e) {
+                // une exception sortie de la tâche annulerait les exécutions suivantes
+                System.err.println("[WARN] Rétention des relevés échouée : " + e.getMessage());
+            }
+        }, 0, Math.max(1, intervalleHeures), TimeUnit.HOURS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (planificateur != null) {
+            planificateur.shutdownNow();
+            planificateur = null;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ch.hearc.meteo.service.alerte;
+
+import com.google.gson.JsonObject;
+
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Alerte levée par une règle sur un relevé.
+ */
+public class Alerte {
+    private final String station;
+    private final Grandeur grandeur;
+    private final long dateMesureMs;
+    private final double valeur;
+    private final String regle;
+    private final double indicateur;
+
+    /**
+     * @param regle      règle déclenchée, telle que configurée (ex : "pression.zscore>3")
+     * @param indicateur valeur comparée au seuil : la mesure, son z-score ou sa variation
+     */
+    public Alerte(String station, Grandeur grandeur, long dateMesureMs, double valeur, String regle, double indicateur) {
+        this.station = station;
+        this.grandeur = grandeur;
+        this.dateMesureMs = dateMesureMs;
+        this.valeur = valeur;
+        this.regle = regle;
+        this.indicateur = indicateur;
+    }
+
+    public String getStation() { return station; }
+    public Grandeur getGrandeur() { return grandeur; }
+    public long getDateMesureMs() { return dateMesureMs; }
+    public double getValeur() { return valeur; }
+    public String getRegle() { return regle; }
+    public double getIndicateur() { return indicateur; }
+
+    /** Une ligne JSON (fichier, webhook). */
+    String versJson() {
+        JsonObject o = new JsonObject();
+        o.addProperty("station", station);
+        o.addProperty("grandeur", grandeur.getNom());
+        o.addProperty("dateMesure", Instant.ofEpochMilli(dateMesureMs).toString());
+        o.addProperty("valeur", valeur);
+        o.addProperty("unite", grandeur.getUnite());
+        o.addProperty("regle", regle);
+        o.addProperty("indicateur", indicateur);
+        return o.toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s %s : %s = %.1f %s (règle %s, indicateur %.2f)",
+                Instant.ofEpochMilli(dateMesureMs), station, grandeur.getNom(), valeur, grandeur.getUnite(),
+                regle, indicateur);
+    }
+}
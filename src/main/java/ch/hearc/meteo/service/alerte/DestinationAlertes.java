@@ -0,0 +1,18 @@
+package ch.hearc.meteo.service.alerte;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination des alertes levées (console, fichier, webhook...).
+ * Appelée depuis les threads de capture : ne doit pas bloquer longtemps ni lever d'exception.
+ */
+public interface DestinationAlertes extends Closeable {
+
+    void publier(Alerte alerte);
+
+    /** Libère les ressources (fichier, thread d'envoi) ; rien par défaut. */
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,47 @@
+package ch.hearc.meteo.service.alerte;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Alertes ajoutées à un fichier, une ligne JSON par alerte (JSON Lines).
+ * Le fichier est ouvert une fois, en ajout ; chaque alerte est écrite aussitôt (flush).
+ */
+public class FichierAlertes implements DestinationAlertes {
+
+    private final Path fichier;
+    private final BufferedWriter sortie;
+    private boolean enEchec;
+
+    public FichierAlertes(Path fichier) throws IOException {
+        this.fichier = fichier;
+        Path dossier = fichier.toAbsolutePath().getParent();
+        if (dossier != null) Files.createDirectories(dossier);
+        this.sortie = Files.newBufferedWriter(fichier, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public synchronized void publier(Alerte alerte) {
+        try {
+            sortie.write(alerte.versJson());
+            sortie.newLine();
+            sortie.flush();
+            enEchec = false;
+        } catch (IOException e) {
+            if (!enEchec) {
+                System.err.println("[WARN] Écriture alerte dans " + fichier + " échouée : " + e.getMessage());
+            }
+            enEchec = true; // un seul avertissement par série d'échecs
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sortie.close();
+    }
+}
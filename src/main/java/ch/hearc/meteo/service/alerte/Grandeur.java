@@ -0,0 +1,46 @@
+package ch.hearc.meteo.service.alerte;
+
+import ch.hearc.meteo.business.Meteo;
+
+import java.util.Locale;
+
+/**
+ * Grandeurs d'un relevé surveillées par les règles d'alerte.
+ */
+public enum Grandeur {
+    TEMPERATURE("temperature", "°C"),
+    PRESSION("pression", "hPa"),
+    PRECIPITATION("precipitation", "mm");
+
+    private final String nom;
+    private final String unite;
+
+    Grandeur(String nom, String unite) {
+        this.nom = nom;
+        this.unite = unite;
+    }
+
+    public String getNom() { return nom; }
+    public String getUnite() { return unite; }
+
+    /** Valeur de la grandeur dans le relevé, null si non mesurée. */
+    Double valeur(Meteo m) {
+        switch (this) {
+            case TEMPERATURE:
+                return m.getTemperature();
+            case PRESSION:
+                return m.getPression();
+            default:
+                return m.getPrecipitation();
+        }
+    }
+
+    /** @throws IllegalArgumentException grandeur inconnue */
+    static Grandeur parNom(String nom) {
+        String n = nom.trim().toLowerCase(Locale.ROOT);
+        for (Grandeur g : values()) {
+            if (g.nom.equals(n)) return g;
+        }
+        throw new IllegalArgumentException("grandeur inconnue : " + nom + " (temperature, pression, precipitation)");
+    }
+}
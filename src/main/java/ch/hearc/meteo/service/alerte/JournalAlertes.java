@@ -0,0 +1,12 @@
+package ch.hearc.meteo.service.alerte;
+
+/**
+ * Alertes affichées dans la console.
+ */
+public class JournalAlertes implements DestinationAlertes {
+
+    @Override
+    public void publier(Alerte alerte) {
+        System.out.println("[ALERTE] " + alerte);
+    }
+}
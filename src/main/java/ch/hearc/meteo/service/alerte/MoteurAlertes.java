@@ -0,0 +1,150 @@
+package ch.hearc.meteo.service.alerte;
+
+import ch.hearc.meteo.business.Meteo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Évalue les règles d'alerte sur chaque relevé capturé, sans lire la base.
+ *
+ * Par station, en mémoire : les statistiques glissantes des grandeurs surveillées,
+ * la date du dernier relevé évalué et l'état de chaque règle.
+ * Chaque relevé coûte O(nombre de règles), quel que soit l'historique de la station.
+ *
+ * - Un relevé déjà évalué (même date ou plus ancien, ex. même observation OWM renvoyée
+ *   deux fois) est ignoré : il ne fausse pas les statistiques.
+ * - Une alerte n'est levée qu'au franchissement du seuil : tant que la règle reste dépassée,
+ *   les relevés suivants ne relèvent pas la même alerte.
+ * - Les z-score ne sont calculés qu'à partir de minimumReleves relevés de la station.
+ *
+ * Utilisable depuis plusieurs threads ; les relevés d'une même station sont évalués un à un.
+ */
+public class MoteurAlertes implements Closeable {
+
+    private final List<Regle> regles;
+    private final double alpha;
+    private final int tailleFenetre;
+    private final int minimumReleves;
+    private final List<DestinationAlertes> destinations;
+    private final boolean[] grandeursSurveillees = new boolean[Grandeur.values().length];
+
+    private final Map<String, EtatStation> etats = new ConcurrentHashMap<>();
+    private final AtomicLong relevesEvalues = new AtomicLong();
+    private final AtomicLong alertesLevees = new AtomicLong();
+
+    /**
+     * @param alpha          poids d'un nouveau relevé dans la moyenne lissée (0 < alpha <= 1)
+     * @param tailleFenetre  nombre de relevés sur lequel est mesurée la variation
+     * @param minimumReleves relevés de la station avant le premier z-score
+     */
+    public MoteurAlertes(List<Regle> regles, double alpha, int tailleFenetre, int minimumReleves,
+                         List<DestinationAlertes> destinations) {
+        if (!(alpha > 0 && alpha <= 1)) {
+            throw new IllegalArgumentException("alpha EWMA invalide : " + alpha);
+        }
+        if (tailleFenetre <= 0) {
+            throw new IllegalArgumentException("fenêtre de variation invalide : " + tailleFenetre);
+        }
+        this.regles = new ArrayList<>(regles);
+        this.alpha = alpha;
+        this.tailleFenetre = tailleFenetre;
+        this.minimumReleves = minimumReleves;
+        this.destinations = new ArrayList<>(destinations);
+        for (Regle r : this.regles) {
+            grandeursSurveillees[r.grandeur().ordinal()] = true;
+        }
+    }
+
+    /**
+     * Évalue les relevés d'une station (dans l'ordre chronologique) et publie les alertes levées.
+     * @param cleStation identifiant de la station (nom + coordonnées)
+     * @param station    nom affiché dans les alertes
+     */
+    public void evaluer(String cleStation, String station, List<Meteo> releves) {
+        if (releves == null || releves.isEmpty() || regles.isEmpty()) return;
+
+        EtatStation etat = etats.computeIfAbsent(cleStation, k -> new EtatStation());
+        List<Alerte> alertes = null;
+        synchronized (etat) {
+            for (Meteo m : releves) {
+                long date = m.hasDateMesure() ? m.getDateMesureMs() : System.currentTimeMillis();
+                if (date <= etat.derniereDate) continue;
+                etat.derniereDate = date;
+                relevesEvalues.incrementAndGet();
+
+                for (int i = 0; i < regles.size(); i++) {
+                    Regle r = regles.get(i);
+                    Double valeur = r.grandeur().valeur(m);
+                    if (valeur == null) continue;
+                    double indicateur = r.indicateur(valeur, etat.stats[r.grandeur().ordinal()], minimumReleves);
+                    boolean depasse = r.depasse(indicateur);
+                    if (depasse && !etat.reglesDepassees[i]) {
+                        if (alertes == null) alertes = new ArrayList<>();
+                        alertes.add(new Alerte(station, r.grandeur(), date, valeur, r.toString(), indicateur));
+                    }
+                    etat.reglesDepassees[i] = depasse;
+                }
+
+                // statistiques mises à jour après l'évaluation : le relevé est comparé à son passé
+                for (Grandeur g : Grandeur.values()) {
+                    Double valeur = g.valeur(m);
+                    if (valeur != null && etat.stats[g.ordinal()] != null) {
+                        etat.stats[g.ordinal()].ajouter(valeur);
+                    }
+                }
+            }
+        }
+
+        // publication hors verrou : une destination lente ne bloque pas les autres stations
+        if (alertes != null) {
+            alertesLevees.addAndGet(alertes.size());
+            for (Alerte a : alertes) {
+                for (DestinationAlertes d : destinations) {
+                    try {
+                        d.publier(a);
+                    } catch (RuntimeException e) {
+                        System.err.println("[WARN] Publication alerte échouée : " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    public List<Regle> getRegles() {
+        return new ArrayList<>(regles);
+    }
+
+    public String statistiques() {
+        return relevesEvalues.get() + " relevé(s) évalué(s), " + alertesLevees.get() + " alerte(s), "
+                + etats.size() + " station(s) suivie(s)";
+    }
+
+    /** Ferme les destinations (fichier, webhook). */
+    @Override
+    public void close() throws IOException {
+        for (DestinationAlertes d : destinations) {
+            d.close();
+        }
+    }
+
+    /** État d'une station, modifié sous son propre verrou. */
+    private final class EtatStation {
+        long derniereDate = Long.MIN_VALUE;
+        final StatistiquesGlissantes[] stats = new StatistiquesGlissantes[Grandeur.values().length];
+        final boolean[] reglesDepassees = new boolean[regles.size()];
+
+        EtatStation() {
+            for (Grandeur g : Grandeur.values()) {
+                if (grandeursSurveillees[g.ordinal()]) {
+                    stats[g.ordinal()] = new StatistiquesGlissantes(alpha, tailleFenetre);
+                }
+            }
+        }
+    }
+}
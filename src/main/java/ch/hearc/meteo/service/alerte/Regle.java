@@ -0,0 +1,97 @@
+package ch.hearc.meteo.service.alerte;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Règle d'alerte sur une grandeur, écrite comme dans la configuration (alertes.regles) :
+ * - "temperature>35", "temperature<-15" : seuil sur la valeur mesurée ;
+ * - "pression.zscore>3" : écart à la moyenne lissée de la station, en écarts-types (dans les deux sens) ;
+ * - "temperature.variation>8" : écart, dans un sens ou l'autre, avec la valeur d'il y a N relevés.
+ */
+public final class Regle {
+
+    private static final Pattern FORME = Pattern.compile(
+            "\\s*([a-zA-Z]+)(?:\\.(zscore|variation))?\\s*([<>])\\s*(-?\\d+(?:\\.\\d+)?)\\s*");
+
+    enum Type { SEUIL, ZSCORE, VARIATION }
+
+    private final String texte;
+    private final Grandeur grandeur;
+    private final Type type;
+    private final boolean superieur;
+    private final double seuil;
+
+    private Regle(String texte, Grandeur grandeur, Type type, boolean superieur, double seuil) {
+        this.texte = texte;
+        this.grandeur = grandeur;
+        this.type = type;
+        this.superieur = superieur;
+        this.seuil = seuil;
+    }
+
+    /** @throws IllegalArgumentException règle mal écrite */
+    public static Regle lire(String texte) {
+        Matcher m = FORME.matcher(texte);
+        if (!m.matches()) {
+            throw new IllegalArgumentException("règle d'alerte invalide : " + texte);
+        }
+        Grandeur grandeur = Grandeur.parNom(m.group(1));
+        Type type = m.group(2) == null ? Type.SEUIL : Type.valueOf(m.group(2).toUpperCase(Locale.ROOT));
+        boolean superieur = ">".equals(m.group(3));
+        double seuil = Double.parseDouble(m.group(4));
+        if (type != Type.SEUIL && (!superieur || seuil <= 0)) {
+            throw new IllegalArgumentException("règle d'alerte invalide : " + texte
+                    + " (zscore et variation : > et seuil positif)");
+        }
+        return new Regle(texte.trim(), grandeur, type, superieur, seuil);
+    }
+
+    /** Règles séparées par des virgules ; vide si texte vide. */
+    public static List<Regle> lireListe(String texte) {
+        List<Regle> regles = new ArrayList<>();
+        if (texte == null) return regles;
+        for (String r : texte.split(",")) {
+            if (!r.isBlank()) regles.add(lire(r));
+        }
+        return regles;
+    }
+
+    Grandeur grandeur() {
+        return grandeur;
+    }
+
+    Type type() {
+        return type;
+    }
+
+    /**
+     * Valeur à comparer au seuil pour cette mesure (la mesure, son z-score ou sa variation) ;
+     * NaN si pas encore calculable (historique de la station trop court).
+     */
+    double indicateur(double valeur, StatistiquesGlissantes stats, int minimumReleves) {
+        switch (type) {
+            case ZSCORE:
+                return stats.nombre() >= minimumReleves ? stats.zScore(valeur) : Double.NaN;
+            case VARIATION:
+                return stats.variation(valeur);
+            default:
+                return valeur;
+        }
+    }
+
+    /** Indicateur au-delà du seuil (zscore et variation : en valeur absolue). */
+    boolean depasse(double indicateur) {
+        if (Double.isNaN(indicateur)) return false;
+        if (type != Type.SEUIL) return Math.abs(indicateur) > seuil;
+        return superieur ? indicateur > seuil : indicateur < seuil;
+    }
+
+    @Override
+    public String toString() {
+        return texte;
+    }
+}
@@ -0,0 +1,59 @@
+package ch.hearc.meteo.service.alerte;
+
+/**
+ * Statistiques d'une grandeur pour une station, mises à jour relevé par relevé en O(1) :
+ * - moyenne et variance lissées exponentiellement (EWMA), d'où le z-score d'une nouvelle valeur ;
+ * - les N dernières valeurs (tampon circulaire), d'où la variation sur la fenêtre.
+ * Les z-score et variation d'une valeur sont calculés avant de l'ajouter.
+ *
+ * Non synchronisée : protégée par l'état de la station qui la contient.
+ */
+final class StatistiquesGlissantes {
+
+    private final double alpha;
+    private final double[] fenetre;
+
+    private long nombre;
+    private double moyenne;
+    private double variance;
+    private int prochain; // case du tampon écrite au prochain ajout (= plus ancienne valeur si plein)
+
+    StatistiquesGlissantes(double alpha, int tailleFenetre) {
+        this.alpha = alpha;
+        this.fenetre = new double[tailleFenetre];
+    }
+
+    /** Nombre de valeurs ajoutées. */
+    long nombre() {
+        return nombre;
+    }
+
+    /** Écart de la valeur à la moyenne, en écarts-types ; NaN tant que la variance est nulle. */
+    double zScore(double valeur) {
+        if (nombre == 0 || variance <= 1e-12) return Double.NaN;
+        return (valeur - moyenne) / Math.sqrt(variance);
+    }
+
+    /** Écart entre la valeur et la plus ancienne valeur de la fenêtre ; NaN si aucune valeur. */
+    double variation(double valeur) {
+        if (nombre == 0) return Double.NaN;
+        int plusAncienne = nombre < fenetre.length ? 0 : prochain;
+        return valeur - fenetre[plusAncienne];
+    }
+
+    void ajouter(double valeur) {
+        if (nombre == 0) {
+            moyenne = valeur;
+            variance = 0;
+        } else {
+            // Moyenne et variance exponentielles (forme incrémentale de West)
+            double ecart = valeur - moyenne;
+            double increment = alpha * ecart;
+            moyenne += increment;
+            variance = (1 - alpha) * (variance + ecart * increment);
+        }
+        fenetre[prochain] = valeur;
+        prochain = (prochain + 1) % fenetre.length;
+        nombre++;
+    }
+}
@@ -0,0 +1,89 @@
+package ch.hearc.meteo.service.alerte;
+
+import ch.hearc.meteo.infrastructure.http.TransportHttp;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Alertes envoyées à un webhook HTTP (POST, une alerte JSON par requête).
+ *
+ * L'envoi se fait depuis un thread dédié : la capture n'attend jamais le webhook.
+ * File bornée : si le webhook ne suit pas, les alertes en trop sont perdues (comptées),
+ * sans retenter les envois en échec.
+ */
+public class WebhookAlertes implements DestinationAlertes {
+
+    private static final int TAILLE_FILE = 1_000;
+
+    private final URI url;
+    private final TransportHttp transport;
+    private final BlockingQueue<Alerte> file = new ArrayBlockingQueue<>(TAILLE_FILE);
+    private final Thread envoi;
+    private volatile boolean ferme;
+
+    private final AtomicLong envoyees = new AtomicLong();
+    private final AtomicLong echecs = new AtomicLong();
+    private final AtomicLong perdues = new AtomicLong();
+
+    public WebhookAlertes(URI url, TransportHttp transport) {
+        this.url = url;
+        this.transport = transport;
+        this.envoi = new Thread(this::envoyer, "alertes-webhook");
+        this.envoi.setDaemon(true);
+        this.envoi.start();
+    }
+
+    @Override
+    public void publier(Alerte alerte) {
+        if (ferme || !file.offer(alerte)) {
+            perdues.incrementAndGet();
+        }
+    }
+
+    private void envoyer() {
+        boolean enEchec = false;
+        while (!ferme || !file.isEmpty()) {
+            Alerte alerte;
+            try {
+                alerte = file.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (alerte == null) continue;
+            try {
+                int statut = transport.postJson(url, alerte.versJson());
+                if (statut / 100 != 2) throw new IOException("HTTP " + statut);
+                envoyees.incrementAndGet();
+                enEchec = false;
+            } catch (IOException e) {
+                echecs.incrementAndGet();
+                if (!enEchec) {
+                    System.err.println("[WARN] Webhook alertes " + url + " injoignable : " + e.getMessage());
+                }
+                enEchec = true; // un seul avertissement par série d'échecs
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /** Envoie les alertes encore en file (5 s au plus) puis arrête le thread d'envoi. */
+    @Override
+    public void close() throws IOException {
+        ferme = true;
+        try {
+            envoi.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String statistiques() {
+        return envoyees.get() + " envoyée(s), " + echecs.get() + " échec(s), " + perdues.get() + " perdue(s)";
+    }
+}
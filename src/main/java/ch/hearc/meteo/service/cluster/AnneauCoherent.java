@@ -0,0 +1,57 @@
+package ch.hearc.meteo.service.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Hachage cohérent des stations sur les nœuds actifs.
+ *
+ * Chaque nœud occupe plusieurs points (nœuds virtuels) d'un anneau de hachage 64 bits ;
+ * une station revient au premier point qui suit le hachage de son numéro.
+ * Quand un nœud arrive ou disparaît, seules les stations de ses points changent de nœud :
+ * les autres restent où elles sont (pas de redistribution générale, comme avec un modulo).
+ *
+ * Tous les nœuds calculent le même anneau à partir de la même liste de nœuds actifs.
+ */
+final class AnneauCoherent {
+
+    private final TreeMap<Long, String> points = new TreeMap<>();
+
+    AnneauCoherent(Collection<String> noeuds, int pointsParNoeud) {
+        for (String noeud : noeuds) {
+            for (int i = 0; i < pointsParNoeud; i++) {
+                points.put(hacher(noeud + "#" + i), noeud);
+            }
+        }
+    }
+
+    /** Nœud responsable de la station (null si aucun nœud actif). */
+    String noeudPour(int stationId) {
+        if (points.isEmpty()) return null;
+        Map.Entry<Long, String> e = points.ceilingEntry(melanger(stationId));
+        return (e != null ? e : points.firstEntry()).getValue();
+    }
+
+    boolean estVide() {
+        return points.isEmpty();
+    }
+
+    /** FNV-1a 64 bits, puis mélange : points bien répartis même pour des noms voisins. */
+    static long hacher(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return melanger(h);
+    }
+
+    /** Finaliseur de SplitMix64 : des numéros consécutifs tombent loin les uns des autres. */
+    static long melanger(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+}
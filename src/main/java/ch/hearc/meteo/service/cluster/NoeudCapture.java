@@ -0,0 +1,205 @@
+package ch.hearc.meteo.service.cluster;
+
+import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.infrastructure.persistence.BauxRepository;
+import ch.hearc.meteo.infrastructure.persistence.MeteoRepository;
+import ch.hearc.meteo.service.PipelineCapture;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Nœud de capture du mode cluster : plusieurs processus se partagent les stations enregistrées,
+ * coordonnés uniquement par la base (tables noeuds_capture et baux_stations).
+ *
+ * - Bail du nœud : renouvelé toutes les bail/3 ; un nœud dont le bail a expiré est considéré
+ *   comme arrêté par les autres. Le renouvellement prolonge aussi les baux de ses stations.
+ * - À chaque cycle, le nœud répartit les stations sur les nœuds actifs par hachage cohérent
+ *   ({@link AnneauCoherent}), rend les stations qui ne lui reviennent plus, prend le bail de
+ *   celles qui lui reviennent, puis capture (en pipeline) uniquement celles dont il détient le bail.
+ * - Une station n'est jamais capturée par deux nœuds à la fois : son bail n'est repris par un
+ *   autre nœud qu'une fois rendu (changement de répartition) ou expiré (nœud arrêté brutalement).
+ *   Pendant une redistribution, une station peut donc être sautée un cycle, jamais doublée.
+ *
+ * Les horloges des machines doivent être synchronisées (NTP) : les baux sont datés par chaque nœud.
+ */
+public class NoeudCapture implements AutoCloseable {
+
+    private static final int POINTS_PAR_NOEUD = 128;
+
+    private final MeteoRepository repository;
+    private final BauxRepository baux;
+    private final PipelineCapture pipeline;
+    private final String nom;
+    private final long bailMs;
+    private final long intervalleMs;
+    private final String langCountry;
+
+    private ScheduledExecutorService planificateur;
+    // stations dont le nœud détient le bail (remplacé à chaque cycle, jamais modifié)
+    private volatile Set<Integer> detenues = Collections.emptySet();
+    private List<String> derniersNoeuds = Collections.emptyList();
+
+    private final AtomicLong cycles = new AtomicLong();
+    private final AtomicLong capturees = new AtomicLong();
+    private final AtomicLong enregistrees = new AtomicLong();
+    private final AtomicLong echecs = new AtomicLong();
+
+    /**
+     * @param baux         baux des nœuds et des stations, dans la base partagée par les nœuds
+     * @param bailMs       durée des baux : délai de reprise des stations d'un nœud arrêté brutalement
+     * @param intervalleMs délai entre deux cycles de capture
+     */
+    public NoeudCapture(MeteoRepository repository, BauxRepository baux, PipelineCapture pipeline, String nom,
+                        long bailMs, long intervalleMs, String langCountry) {
+        if (repository == null || baux == null || pipeline == null) {
+            throw new IllegalArgumentException("repository, baux et pipeline requis");
+        }
+        if (nom == null || nom.isBlank() || nom.length() > 100) {
+            throw new IllegalArgumentException("nom de nœud invalide : " + nom);
+        }
+        if (bailMs < 1_000 || intervalleMs <= 0) {
+            throw new IllegalArgumentException("bail (>= 1 s) et intervalle (> 0) requis");
+        }
+        this.repository = repository;
+        this.baux = baux;
+        this.pipeline = pipeline;
+        this.nom = nom;
+        this.bailMs = bailMs;
+        this.intervalleMs = intervalleMs;
+        this.langCountry = langCountry;
+    }
+
+    public String getNom() {
+        return nom;
+    }
+
+    /** Rejoint le cluster puis capture toutes les intervalleMs, en arrière-plan. */
+    public synchronized void demarrer() {
+        if (planificateur != null) return;
+        renouveler(); // bail pris avant le premier cycle : le nœud s'y compte parmi les actifs
+        planificateur = Executors.newScheduledThreadPool(2, r -> {
+            Thread t = new Thread(r, "noeud-" + nom);
+            t.setDaemon(true);
+            return t;
+        });
+        planificateur.scheduleAtFixedRate(this::renouveler, bailMs / 3, bailMs / 3, TimeUnit.MILLISECONDS);
+        planificateur.scheduleWithFixedDelay(this::cycleSansEchec, 0, intervalleMs, TimeUnit.MILLISECONDS);
+        System.out.println("(Info) Nœud " + nom + " démarré (bail " + bailMs + " ms, cycle toutes les "
+                + intervalleMs + " ms).");
+    }
+
+    private void renouveler() {
+        try {
+            baux.renouvelerNoeud(nom, Instant.now().plusMillis(bailMs));
+        } catch (Exception e) {
+            System.err.println("[WARN] Nœud " + nom + " : renouvellement du bail échoué : " + e.getMessage());
+        }
+    }
+
+    private void cycleSansEchec() {
+        try {
+            cycle();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // une exception sortie de la tâche annulerait les cycles suivants
+            echecs.incrementAndGet();
+            System.err.println("[WARN] Nœud " + nom + " : cycle de capture échoué : " + e.getMessage());
+        }
+    }
+
+    /** Un cycle : répartition, baux, capture des stations détenues. */
+    void cycle() throws Exception {
+        Instant maintenant = Instant.now();
+        List<String> noeuds = baux.findNoeudsActifs(maintenant);
+        if (!noeuds.contains(nom)) {
+            // bail expiré (base injoignable trop longtemps) : nos stations ont pu être reprises
+            if (!detenues.isEmpty()) {
+                System.err.println("[WARN] Nœud " + nom + " : bail expiré, " + detenues.size()
+                        + " station(s) abandonnée(s) jusqu'au prochain renouvellement.");
+                detenues = Collections.emptySet();
+            }
+            return;
+        }
+        long n = cycles.incrementAndGet();
+        if (!noeuds.equals(derniersNoeuds)) {
+            System.out.println("(Info) Nœud " + nom + " : " + noeuds.size() + " nœud(s) actif(s) " + noeuds);
+            derniersNoeuds = noeuds;
+        }
+
+        AnneauCoherent anneau = new AnneauCoherent(noeuds, POINTS_PAR_NOEUD);
+        Map<Integer, StationMeteo> attribuees = new LinkedHashMap<>();
+        for (StationMeteo s : repository.findAllStations()) {
+            if (s.getNumero() != null && nom.equals(anneau.noeudPour(s.getNumero()))) {
+                attribuees.put(s.getNumero(), s);
+            }
+        }
+
+        // stations passées à un autre nœud : rendues tout de suite, il les prendra à son prochain cycle
+        List<Integer> rendues = new ArrayList<>();
+        for (Integer id : detenues) {
+            if (!attribuees.containsKey(id)) rendues.add(id);
+        }
+        baux.libererStations(nom, rendues);
+
+        Set<Integer> acquises = baux.acquerirStations(nom, attribuees.keySet(),
+                Instant.now(), Instant.now().plusMillis(bailMs));
+        detenues = Collections.unmodifiableSet(new HashSet<>(acquises));
+
+        List<StationMeteo> aCapturer = new ArrayList<>(acquises.size());
+        for (Map.Entry<Integer, StationMeteo> e : attribuees.entrySet()) {
+            if (acquises.contains(e.getKey())) aCapturer.add(e.getValue());
+        }
+        if (aCapturer.isEmpty()) return;
+
+        PipelineCapture.BilanCapture bilan = pipeline.executer(aCapturer, langCountry);
+        capturees.addAndGet(bilan.getPositions());
+        enregistrees.addAndGet(bilan.getEnregistrees());
+        System.out.println("(Info) Nœud " + nom + ", cycle " + n + " : " + aCapturer.size() + "/" + attribuees.size()
+                + " station(s) attribuée(s) capturée(s), " + bilan.getEnregistrees() + " avec un nouveau relevé, en "
+                + bilan.getDureeMs() + " ms");
+    }
+
+    public String statistiques() {
+        return cycles.get() + " cycle(s), " + capturees.get() + " capture(s) de station, "
+                + enregistrees.get() + " avec un nouveau relevé, " + detenues.size() + " station(s) détenue(s), "
+                + echecs.get() + " cycle(s) en échec";
+    }
+
+    /**
+     * Arrêt propre : termine le cycle en cours (au plus la durée d'un bail), puis rend toutes
+     * les stations et le bail du nœud pour une reprise immédiate par les autres.
+     */
+    @Override
+    public synchronized void close() {
+        if (planificateur == null) return;
+        planificateur.shutdown();
+        try {
+            if (!planificateur.awaitTermination(bailMs, TimeUnit.MILLISECONDS)) {
+                planificateur.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            planificateur.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        planificateur = null;
+        try {
+            baux.retirerNoeud(nom);
+        } catch (Exception e) {
+            System.err.println("[WARN] Nœud " + nom + " : retrait échoué (stations reprises à l'expiration du bail) : "
+                    + e.getMessage());
+        }
+        detenues = Collections.emptySet();
+    }
+}
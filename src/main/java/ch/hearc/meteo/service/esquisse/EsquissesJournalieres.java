@@ -0,0 +1,302 @@
+package ch.hearc.meteo.service.esquisse;
+
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.ResumeJour;
+import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.infrastructure.persistence.MeteoRepository;
+import ch.hearc.meteo.infrastructure.persistence.ResumesJourRepository;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Résumés journaliers des relevés de chaque station, tenus à jour à chaque relevé enregistré
+ * et écrits en base (table resume_jour) par lots, à intervalle régulier.
+ *
+ * Chaque résumé contient des compteurs exacts (relevés, min, max, somme, précipitations) et deux
+ * esquisses fusionnables : t-digest des températures, HyperLogLog des conditions (descriptions).
+ * Une question sur une période (« p95 de la température de cette station l'an dernier ») fusionne
+ * quelques centaines de résumés de quelques centaines d'octets, au lieu de trier tous les relevés.
+ *
+ * - En mémoire : les journées modifiées depuis la dernière écriture, et celles d'aujourd'hui et
+ *   d'hier (relevés tardifs) ; les journées plus anciennes sont oubliées une fois écrites.
+ * - Avant la première écriture d'une journée, le résumé déjà en base (démarrage précédent,
+ *   relevé tardif) y est fusionné : l'écriture remplace alors la ligne.
+ * - Un seul écrivain par station : en mode cluster, chaque station est capturée par un seul nœud.
+ *
+ * Utilisable depuis plusieurs threads (captures parallèles).
+ */
+public class EsquissesJournalieres implements AutoCloseable {
+
+    // 1024 registres : 3 % d'erreur, au plus 1 Ko sérialisé (quelques octets pour quelques conditions)
+    static final int PRECISION_CONDITIONS = 10;
+
+    private final MeteoRepository repository;
+    private final ResumesJourRepository resumesJour;
+    private final ZoneId zone;
+    private final double compression;
+    // journées en cours, clé : clé de la station + jour
+    private final Map<String, Journee> journees = new ConcurrentHashMap<>();
+    // clé de la station -> station_id
+    private final Map<String, Integer> numeros = new ConcurrentHashMap<>();
+    private final AtomicLong relevesNotes = new AtomicLong();
+    private final AtomicLong resumesEcrits = new AtomicLong();
+    private ScheduledExecutorService planificateur;
+
+    /**
+     * @param repository  stations (numéro d'une station, station par nom)
+     * @param resumesJour résumés journaliers en base
+     */
+    public EsquissesJournalieres(MeteoRepository repository, ResumesJourRepository resumesJour,
+                                 ZoneId zone, double compression) {
+        if (repository == null || resumesJour == null || zone == null) {
+            throw new IllegalArgumentException("repository, résumés et zone requis");
+        }
+        new TDigest(compression); // valide la compression
+        this.repository = repository;
+        this.resumesJour = resumesJour;
+        this.zone = zone;
+        this.compression = compression;
+    }
+
+    /** Ajoute des relevés enregistrés d'une station (cleStation : identifie la station en mémoire). */
+    public void noter(String cleStation, StationMeteo station, List<Meteo> releves) {
+        if (station == null || releves == null) return;
+        for (Meteo m : releves) {
+            if (m == null || !m.hasDateMesure()) continue;
+            LocalDate jour = Instant.ofEpochMilli(m.getDateMesureMs()).atZone(zone).toLocalDate();
+            String cle = cleStation + '|' + jour;
+            while (true) {
+                Journee j = journees.computeIfAbsent(cle, k -> new Journee(cleStation, station, jour));
+                synchronized (j) {
+                    // journée retirée entre-temps par l'écriture : une nouvelle est créée
+                    if (j.retiree) continue;
+                    j.ajouter(m);
+                }
+                break;
+            }
+            relevesNotes.incrementAndGet();
+        }
+    }
+
+    /**
+     * Écrit en base les journées modifiées (un seul batch) et oublie les journées closes déjà écrites.
+     * @return nombre de résumés écrits
+     */
+    public synchronized int ecrire() throws Exception {
+        LocalDate hier = LocalDate.now(zone).minusDays(1);
+        List<ResumeJour> resumes = new ArrayList<>();
+        List<Journee> ecrites = new ArrayList<>();
+
+        for (Iterator<Journee> it = journees.values().iterator(); it.hasNext(); ) {
+            Journee j = it.next();
+            synchronized (j) {
+                if (!j.modifiee) {
+                    if (j.jour.isBefore(hier)) {
+                        j.retiree = true;
+                        it.remove();
+                    }
+                    continue;
+                }
+                Integer numero = numeros.get(j.cleStation);
+                if (numero == null) {
+                    numero = repository.ensureStationId(j.station);
+                    numeros.put(j.cleStation, numero);
+                }
+                if (!j.chargee) {
+                    for (ResumeJour existant : resumesJour.findResumesJour(numero, j.jour, j.jour)) {
+                        j.fusionner(existant);
+                    }
+                    j.chargee = true;
+                }
+                resumes.add(j.resume(numero));
+                j.modifiee = false;
+                ecrites.add(j);
+            }
+        }
+        if (resumes.isEmpty()) return 0;
+
+        try {
+            resumesJour.enregistrerResumesJour(resumes);
+        } catch (Exception e) {
+            // réécrites à la prochaine écriture
+            for (Journee j : ecrites) {
+                synchronized (j) {
+                    j.modifiee = true;
+                }
+            }
+            throw e;
+        }
+        resumesEcrits.addAndGet(resumes.size());
+        return resumes.size();
+    }
+
+    /**
+     * Statistiques d'une station du premier au dernier jour inclus, à partir des résumés en base
+     * (les journées en mémoire sont écrites d'abord). null si la station est inconnue.
+     */
+    public ResumePeriode resumer(String stationName, LocalDate premier, LocalDate dernier) throws Exception {
+        ecrire();
+        StationMeteo station = repository.findStationByName(stationName);
+        if (station == null || station.getNumero() == null) return null;
+
+        TDigest temperatures = new TDigest(compression);
+        HyperLogLog conditions = new HyperLogLog(PRECISION_CONDITIONS);
+        int jours = 0;
+        long releves = 0;
+        long octets = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double somme = 0;
+        double precipitation = 0;
+        for (ResumeJour r : resumesJour.findResumesJour(station.getNumero(), premier, dernier)) {
+            jours++;
+            releves += r.getNbReleves();
+            if (r.getTemperatureMin() != null) {
+                min = Math.min(min, r.getTemperatureMin());
+                max = Math.max(max, r.getTemperatureMax());
+            }
+            somme += r.getSommeTemperatures();
+            precipitation += r.getPrecipitation();
+            if (r.getEsquisseTemperature() != null) {
+                temperatures.fusionner(TDigest.depuisOctets(r.getEsquisseTemperature()));
+                octets += r.getEsquisseTemperature().length;
+            }
+            if (r.getEsquisseConditions() != null) {
+                conditions.fusionner(HyperLogLog.depuisOctets(r.getEsquisseConditions()));
+                octets += r.getEsquisseConditions().length;
+            }
+        }
+        boolean avecTemperature = min != Double.POSITIVE_INFINITY;
+        return new ResumePeriode(station.getNom(), premier, dernier, jours, releves,
+                avecTemperature ? min : null, avecTemperature ? max : null, somme, precipitation,
+                conditions, octets, temperatures);
+    }
+
+    /** Écrit les résumés toutes les intervalleSecondes secondes, en arrière-plan. */
+    public synchronized void planifier(long intervalleSecondes) {
+        if (planificateur != null) return;
+        planificateur = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "esquisses-journalieres");
+            t.setDaemon(true);
+            return t;
+        });
+        long intervalle = Math.max(1, intervalleSecondes);
+        planificateur.scheduleWithFixedDelay(() -> {
+            try {
+                ecrire();
+            } catch (Exception e) {
+                // une exception sortie de la tâche annulerait les exécutions suivantes
+                System.err.println("[WARN] Écriture des résumés journaliers échouée : " + e.getMessage());
+            }
+        }, intervalle, intervalle, TimeUnit.SECONDS);
+    }
+
+    /** Compteurs (affichés en quittant l'application). */
+    public String statistiques() {
+        return relevesNotes.get() + " relevé(s) résumé(s), " + resumesEcrits.get() + " écriture(s) de résumé, "
+                + journees.size() + " journée(s) en mémoire";
+    }
+
+    /** Arrête l'écriture périodique et écrit les dernières journées modifiées. */
+    @Override
+    public synchronized void close() {
+        if (planificateur != null) {
+            planificateur.shutdownNow();
+            planificateur = null;
+        }
+        try {
+            ecrire();
+        } catch (Exception e) {
+            System.err.println("[WARN] Écriture des résumés journaliers échouée : " + e.getMessage());
+        }
+    }
+
+    /** Résumé d'une journée d'une station, en cours de construction. Protégé par son propre verrou. */
+    private final class Journee {
+        final String cleStation;
+        final StationMeteo station;
+        final LocalDate jour;
+        long nbReleves;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double somme;
+        double precipitation;
+        final TDigest temperatures = new TDigest(compression);
+        final HyperLogLog conditions = new HyperLogLog(PRECISION_CONDITIONS);
+        boolean modifiee;
+        boolean chargee;
+        boolean retiree;
+
+        Journee(String cleStation, StationMeteo station, LocalDate jour) {
+            this.cleStation = cleStation;
+            // sans les relevés : seuls nom, position et pays servent (station_id)
+            StationMeteo s = new StationMeteo();
+            s.setNumero(station.getNumero());
+            s.setNom(station.getNom());
+            s.setLatitude(station.getLatitude());
+            s.setLongitude(station.getLongitude());
+            s.setPays(station.getPays());
+            s.setOpenWeatherMapId(station.getOpenWeatherMapId());
+            this.station = s;
+            this.jour = jour;
+        }
+
+        void ajouter(Meteo m) {
+            nbReleves++;
+            if (m.getTemperature() != null) {
+                double t = m.getTemperature();
+                temperatures.ajouter(t);
+                somme += t;
+                if (t < min) min = t;
+                if (t > max) max = t;
+            }
+            if (m.getPrecipitation() != null) precipitation += m.getPrecipitation();
+            if (m.getDescription() != null) conditions.ajouter(m.getDescription().trim().toLowerCase(Locale.ROOT));
+            modifiee = true;
+        }
+
+        void fusionner(ResumeJour r) {
+            nbReleves += r.getNbReleves();
+            if (r.getTemperatureMin() != null) {
+                min = Math.min(min, r.getTemperatureMin());
+                max = Math.max(max, r.getTemperatureMax());
+            }
+            somme += r.getSommeTemperatures();
+            precipitation += r.getPrecipitation();
+            if (r.getEsquisseTemperature() != null) {
+                temperatures.fusionner(TDigest.depuisOctets(r.getEsquisseTemperature()));
+            }
+            if (r.getEsquisseConditions() != null) {
+                conditions.fusionner(HyperLogLog.depuisOctets(r.getEsquisseConditions()));
+            }
+        }
+
+        ResumeJour resume(int numero) {
+            ResumeJour r = new ResumeJour();
+            r.setNumeroStation(numero);
+            r.setJour(jour);
+            r.setNbReleves(nbReleves);
+            if (temperatures.taille() > 0) {
+                r.setTemperatureMin(min);
+                r.setTemperatureMax(max);
+            }
+            r.setSommeTemperatures(somme);
+            r.setPrecipitation(precipitation);
+            r.setEsquisseTemperature(temperatures.enOctets());
+            r.setEsquisseConditions(conditions.enOctets());
+            return r;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package ch.hearc.meteo.service.esquisse;
+
+import java.time.LocalDate;
+
+/**
+ * Statistiques d'une station sur une période, obtenues en fusionnant ses résumés journaliers
+ * (sans relire les relevés) : percentiles approchés (t-digest), conditions distinctes estimées
+ * (HyperLogLog), le reste exact.
+ */
+public class ResumePeriode {
+
+    private final String station;
+    private final LocalDate premier;
+    private final LocalDate dernier;
+    private final int jours;
+    private final long releves;
+    private final Double temperatureMin;
+    private final Double temperatureMax;
+    private final Double temperatureMoyenne;
+    private final double precipitationTotale;
+    private final long conditionsDistinctes;
+    private final long octetsLus;
+    private final TDigest temperatures;
+
+    ResumePeriode(String station, LocalDate premier, LocalDate dernier, int jours, long releves,
+                  Double temperatureMin, Double temperatureMax, double sommeTemperatures,
+                  double precipitationTotale, HyperLogLog conditions, long octetsLus, TDigest temperatures) {
+        this.station = station;
+        this.premier = premier;
+        this.dernier = dernier;
+        this.jours = jours;
+        this.releves = releves;
+        this.temperatureMin = temperatureMin;
+        this.temperatureMax = temperatureMax;
+        this.temperatureMoyenne = temperatures.taille() > 0 ? sommeTemperatures / temperatures.taille() : null;
+        this.precipitationTotale = precipitationTotale;
+        this.conditionsDistinctes = conditions.estimation();
+        this.octetsLus = octetsLus;
+        this.temperatures = temperatures;
+    }
+
+    public String getStation() { return station; }
+    public LocalDate getPremier() { return premier; }
+    public LocalDate getDernier() { return dernier; }
+    /** Journées ayant au moins un relevé. */
+    public int getJours() { return jours; }
+    public long getReleves() { return releves; }
+    public Double getTemperatureMin() { return temperatureMin; }
+    public Double getTemperatureMax() { return temperatureMax; }
+    public Double getTemperatureMoyenne() { return temperatureMoyenne; }
+    public double getPrecipitationTotale() { return precipitationTotale; }
+    /** Nombre estimé de conditions (descriptions) différentes sur la période. */
+    public long getConditionsDistinctes() { return conditionsDistinctes; }
+    /** Taille des esquisses lues en base. */
+    public long getOctetsLus() { return octetsLus; }
+    public long getNbTemperatures() { return temperatures.taille(); }
+
+    /** Percentile p (0 à 100) des températures ; null sans température. */
+    public Double temperaturePercentile(double p) {
+        return temperatures.taille() > 0 ? temperatures.quantile(p / 100.0) : null;
+    }
+
+    @Override
+    public String toString() {
+        return station + " du " + premier + " au " + dernier + " : " + jours + " jour(s), " + releves
+                + " relevé(s), esquisses " + octetsLus + " octets";
+    }
+}
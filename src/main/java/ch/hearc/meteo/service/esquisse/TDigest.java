@@ -0,0 +1,288 @@
+package ch.hearc.meteo.service.esquisse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Esquisse de quantiles (t-digest, variante « fusion ») : résume une série de valeurs en
+ * quelques dizaines de centroïdes (moyenne, poids), plus serrés vers les extrémités qu'au
+ * milieu, d'où une bonne précision sur p1 / p99.
+ *
+ * - Fusionnable : le t-digest d'une année est la fusion des t-digests de ses journées.
+ * - Taille bornée par la compression (environ compression * 1.6 centroïdes au plus), quel
+ *   que soit le nombre de valeurs ; forme sérialisée de quelques centaines d'octets.
+ *
+ * Non synchronisé : l'appelant protège une instance partagée entre threads.
+ */
+public final class TDigest {
+
+    private static final byte VERSION = 1;
+    private static final long PAS_MOYENNES = 65_535;
+
+    private final double compression;
+    // centroïdes triés par moyenne
+    private double[] moyennes;
+    private long[] poids;
+    private int nbCentroides;
+    // valeurs ajoutées depuis la dernière compression (poids 1 ou centroïdes d'un autre digest)
+    private double[] tamponValeurs;
+    private long[] tamponPoids;
+    private int nbTampon;
+
+    private long total;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /** @param compression entre 10 et 1000 ; 100 : erreur de l'ordre de 1 % du rang au milieu, bien moins aux extrémités */
+    public TDigest(double compression) {
+        if (!(compression >= 10 && compression <= 1000)) {
+            throw new IllegalArgumentException("compression invalide : " + compression);
+        }
+        this.compression = compression;
+        int capacite = (int) Math.ceil(compression * Math.PI / 2) + 10;
+        this.moyennes = new double[capacite];
+        this.poids = new long[capacite];
+        this.tamponValeurs = new double[capacite * 4];
+        this.tamponPoids = new long[capacite * 4];
+    }
+
+    public double getCompression() { return compression; }
+
+    /** Nombre de valeurs résumées. */
+    public long taille() { return total; }
+
+    /** Plus petite valeur ajoutée ({@link Double#NaN} si vide). */
+    public double min() { return total > 0 ? min : Double.NaN; }
+
+    /** Plus grande valeur ajoutée ({@link Double#NaN} si vide). */
+    public double max() { return total > 0 ? max : Double.NaN; }
+
+    /** Ajoute une valeur (NaN ignoré). */
+    public void ajouter(double valeur) {
+        ajouter(valeur, 1);
+    }
+
+    private void ajouter(double valeur, long p) {
+        if (Double.isNaN(valeur) || p <= 0) return;
+        if (nbTampon == tamponValeurs.length) compresser();
+        tamponValeurs[nbTampon] = valeur;
+        tamponPoids[nbTampon] = p;
+        nbTampon++;
+        total += p;
+        if (valeur < min) min = valeur;
+        if (valeur > max) max = valeur;
+    }
+
+    /** Ajoute toutes les valeurs résumées par un autre digest (qui n'est pas modifié). */
+    public void fusionner(TDigest autre) {
+        if (autre == null || autre.total == 0) return;
+        for (int i = 0; i < autre.nbCentroides; i++) ajouter(autre.moyennes[i], autre.poids[i]);
+        for (int i = 0; i < autre.nbTampon; i++) ajouter(autre.tamponValeurs[i], autre.tamponPoids[i]);
+        // min / max exacts de l'autre (ses centroïdes extrêmes peuvent en être des moyennes)
+        if (autre.min < min) min = autre.min;
+        if (autre.max > max) max = autre.max;
+    }
+
+    /**
+     * Quantile q (0 à 1), par interpolation entre les centres des centroïdes ;
+     * q = 0 et q = 1 donnent le min et le max exacts. NaN si vide.
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) throw new IllegalArgumentException("quantile hors de [0, 1] : " + q);
+        compresser();
+        if (total == 0) return Double.NaN;
+        if (nbCentroides == 1 || q == 0) return q == 1 ? max : min;
+        if (q == 1) return max;
+
+        double rang = q * total;
+        // avant le centre du premier centroïde : entre le min et ce centre
+        double centre = poids[0] / 2.0;
+        if (rang < centre) {
+            return poids[0] == 1 ? moyennes[0] : min + (moyennes[0] - min) * rang / centre;
+        }
+        double cumul = 0;
+        for (int i = 0; i < nbCentroides - 1; i++) {
+            double centreI = cumul + poids[i] / 2.0;
+            double centreSuivant = cumul + poids[i] + poids[i + 1] / 2.0;
+            if (rang < centreSuivant) {
+                // centroïdes d'une seule valeur : la valeur exacte, sans interpolation
+                if (poids[i] == 1 && rang < cumul + 1) return moyennes[i];
+                if (poids[i + 1] == 1 && rang >= cumul + poids[i]) return moyennes[i + 1];
+                double t = (rang - centreI) / (centreSuivant - centreI);
+                return moyennes[i] + t * (moyennes[i + 1] - moyennes[i]);
+            }
+            cumul += poids[i];
+        }
+        // après le centre du dernier centroïde : entre ce centre et le max
+        int dernier = nbCentroides - 1;
+        if (poids[dernier] == 1) return moyennes[dernier];
+        double centreDernier = total - poids[dernier] / 2.0;
+        return moyennes[dernier] + (max - moyennes[dernier]) * (rang - centreDernier) / (total - centreDernier);
+    }
+
+    /**
+     * Fusionne le tampon dans les centroïdes : valeurs triées par moyenne, puis regroupées
+     * tant que le centroïde reste sous la limite de taille de sa position (fonction k1,
+     * en arc sinus : petits centroïdes aux extrémités).
+     */
+    private void compresser() {
+        if (nbTampon == 0) return;
+        int n = nbCentroides + nbTampon;
+        double[] v = new double[n];
+        long[] p = new long[n];
+        System.arraycopy(moyennes, 0, v, 0, nbCentroides);
+        System.arraycopy(poids, 0, p, 0, nbCentroides);
+        System.arraycopy(tamponValeurs, 0, v, nbCentroides, nbTampon);
+        System.arraycopy(tamponPoids, 0, p, nbCentroides, nbTampon);
+        trier(v, p, n);
+
+        nbCentroides = 0;
+        double cumul = 0;
+        double kGauche = k(0);
+        double moyenne = v[0];
+        long poidsCourant = p[0];
+        for (int i = 1; i < n; i++) {
+            double qDroite = (cumul + poidsCourant + p[i]) / total;
+            if (k(qDroite) - kGauche <= 1.0) {
+                poidsCourant += p[i];
+                moyenne += (v[i] - moyenne) * p[i] / poidsCourant;
+            } else {
+                ajouterCentroide(moyenne, poidsCourant);
+                cumul += poidsCourant;
+                kGauche = k(cumul / total);
+                moyenne = v[i];
+                poidsCourant = p[i];
+            }
+        }
+        ajouterCentroide(moyenne, poidsCourant);
+        nbTampon = 0;
+    }
+
+    private double k(double q) {
+        return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, Math.max(0, q)) - 1);
+    }
+
+    private void ajouterCentroide(double moyenne, long p) {
+        if (nbCentroides == moyennes.length) {
+            moyennes = Arrays.copyOf(moyennes, nbCentroides * 2);
+            poids = Arrays.copyOf(poids, nbCentroides * 2);
+        }
+        moyennes[nbCentroides] = moyenne;
+        poids[nbCentroides] = p;
+        nbCentroides++;
+    }
+
+    /** Tri par valeur des deux tableaux ensemble (tri par insertion sous 32 éléments, sinon par index). */
+    private static void trier(double[] v, long[] p, int n) {
+        if (n < 32) {
+            for (int i = 1; i < n; i++) {
+                double vi = v[i];
+                long pi = p[i];
+                int j = i - 1;
+                while (j >= 0 && v[j] > vi) {
+                    v[j + 1] = v[j];
+                    p[j + 1] = p[j];
+                    j--;
+                }
+                v[j + 1] = vi;
+                p[j + 1] = pi;
+            }
+            return;
+        }
+        Integer[] ordre = new Integer[n];
+        for (int i = 0; i < n; i++) ordre[i] = i;
+        Arrays.sort(ordre, (a, b) -> Double.compare(v[a], v[b]));
+        double[] vTries = new double[n];
+        long[] pTries = new long[n];
+        for (int i = 0; i < n; i++) {
+            vTries[i] = v[ordre[i]];
+            pTries[i] = p[ordre[i]];
+        }
+        System.arraycopy(vTries, 0, v, 0, n);
+        System.arraycopy(pTries, 0, p, 0, n);
+    }
+
+    /**
+     * Forme sérialisée : version, compression, total, min, max, nombre de centroïdes, puis pour
+     * chacun la moyenne et le poids en entiers variables (1 octet sous 128). Les moyennes, triées,
+     * sont ramenées sur 65 536 pas entre min et max et écrites en écarts avec la précédente
+     * (1 à 3 octets) : pas de 0.0005 °C pour des températures étalées sur 30 °C.
+     */
+    public byte[] enOctets() {
+        compresser();
+        ByteArrayOutputStream octets = new ByteArrayOutputStream(32 + nbCentroides * 3);
+        try (DataOutputStream out = new DataOutputStream(octets)) {
+            out.writeByte(VERSION);
+            out.writeShort((int) compression);
+            ecrireVarLong(out, total);
+            out.writeDouble(total > 0 ? min : 0);
+            out.writeDouble(total > 0 ? max : 0);
+            ecrireVarLong(out, nbCentroides);
+            double etendue = max - min;
+            long precedent = 0;
+            for (int i = 0; i < nbCentroides; i++) {
+                long pas = etendue > 0 ? Math.round((moyennes[i] - min) / etendue * PAS_MOYENNES) : 0;
+                pas = Math.max(precedent, Math.min(PAS_MOYENNES, pas));
+                ecrireVarLong(out, pas - precedent);
+                ecrireVarLong(out, poids[i]);
+                precedent = pas;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // impossible en mémoire
+        }
+        return octets.toByteArray();
+    }
+
+    /** Relit la forme produite par {@link #enOctets()} ; IllegalArgumentException si invalide. */
+    public static TDigest depuisOctets(byte[] octets) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(octets))) {
+            if (in.readByte() != VERSION) throw new IllegalArgumentException("version de t-digest inconnue");
+            TDigest d = new TDigest(in.readShort());
+            long total = lireVarLong(in);
+            double min = in.readDouble();
+            double max = in.readDouble();
+            long n = lireVarLong(in);
+            long somme = 0;
+            long pas = 0;
+            for (long i = 0; i < n; i++) {
+                pas += lireVarLong(in);
+                long p = lireVarLong(in);
+                // borné : min + (max - min) * 1 peut dépasser max d'un ulp
+                d.ajouterCentroide(Math.min(max, min + (max - min) * pas / PAS_MOYENNES), p);
+                somme += p;
+            }
+            if (somme != total || pas > PAS_MOYENNES) throw new IllegalArgumentException("t-digest incohérent");
+            d.total = total;
+            if (total > 0) {
+                d.min = min;
+                d.max = max;
+            }
+            return d;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("t-digest tronqué", e);
+        }
+    }
+
+    static void ecrireVarLong(DataOutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    static long lireVarLong(DataInputStream in) throws IOException {
+        long v = 0;
+        for (int decalage = 0; decalage < 64; decalage += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << decalage;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("entier variable trop long");
+    }
+}
@@ -0,0 +1,233 @@
+package ch.hearc.meteo.service.geo;
+
+import ch.hearc.meteo.business.StationMeteo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Index spatial en mémoire des stations connues : grille régulière latitude/longitude.
+ * Chaque cellule contient les stations qui y tombent ; les recherches parcourent
+ * des anneaux de cellules de plus en plus larges autour du point demandé.
+ *
+ * Distances en km (formule de haversine). Lectures et insertions concurrentes possibles.
+ */
+public class IndexSpatialStations {
+
+    private static final double RAYON_TERRE_KM = 6371.0088;
+    private static final double KM_PAR_DEGRE = Math.PI * RAYON_TERRE_KM / 180.0;
+
+    private final double tailleCellule; // en degrés
+    private final int nbCellulesLon;
+    private final Map<Long, List<StationMeteo>> cellules = new ConcurrentHashMap<>();
+
+    /** Grille de 0.5° (~55 km en latitude). */
+    public IndexSpatialStations() {
+        this(0.5);
+    }
+
+    public IndexSpatialStations(double tailleCelluleDegres) {
+        if (tailleCelluleDegres <= 0 || tailleCelluleDegres > 90) {
+            throw new IllegalArgumentException("taille de cellule invalide : " + tailleCelluleDegres);
+        }
+        this.tailleCellule = tailleCelluleDegres;
+        this.nbCellulesLon = (int) Math.ceil(360.0 / tailleCelluleDegres);
+    }
+
+    /**
+     * Remplace le contenu de l'index (chargement initial depuis la base).
+     * À appeler avant de partager l'index : une recherche simultanée verrait un index partiel.
+     */
+    public void charger(Collection<StationMeteo> stations) {
+        cellules.clear();
+        for (StationMeteo s : stations) {
+            ajouter(s);
+        }
+    }
+
+    /**
+     * Ajoute une station (sans coordonnées : ignorée).
+     * Une station de même nom aux mêmes coordonnées est remplacée.
+     */
+    public void ajouter(StationMeteo station) {
+        if (station == null || station.getLatitude() == null || station.getLongitude() == null) return;
+
+        List<StationMeteo> cellule = cellules.computeIfAbsent(
+                cle(ligne(station.getLatitude()), colonne(station.getLongitude())),
+                k -> new CopyOnWriteArrayList<>());
+        // remplacement atomique : deux ajouts simultanés de la même station n'en laissent qu'une
+        // (les lectures parcourent une copie de la cellule et ne sont pas bloquées)
+        synchronized (cellule) {
+            cellule.removeIf(s -> memeStation(s, station));
+            cellule.add(station);
+        }
+    }
+
+    public int taille() {
+        int n = 0;
+        for (List<StationMeteo> c : cellules.values()) n += c.size();
+        return n;
+    }
+
+    /**
+     * Les k stations les plus proches, de la plus proche à la plus lointaine.
+     */
+    public List<StationProche> plusProches(double latitude, double longitude, int k) {
+        return plusProches(latitude, longitude, k, Double.MAX_VALUE);
+    }
+
+    /**
+     * Les k stations les plus proches à moins de {@code rayonKm} (éventuellement moins de k),
+     * de la plus proche à la plus lointaine. La recherche s'arrête au rayon : pas de parcours
+     * de tout le globe autour d'un point isolé.
+     */
+    public List<StationProche> plusProches(double latitude, double longitude, int k, double rayonKm) {
+        List<StationProche> candidats = new ArrayList<>();
+        if (k <= 0 || cellules.isEmpty()) return candidats;
+
+        int ligne0 = ligne(latitude);
+        int colonne0 = colonne(longitude);
+        int anneauMax = Math.max((int) Math.ceil(180.0 / tailleCellule), nbCellulesLon / 2 + 1);
+
+        Set<Long> visitees = new HashSet<>();
+        for (int anneau = 0; anneau <= anneauMax; anneau++) {
+            parcourirAnneau(ligne0, colonne0, anneau, latitude, longitude, rayonKm, visitees, candidats);
+            if (distanceMinHorsAnneaux(latitude, longitude, anneau) > rayonKm) break;
+
+            if (candidats.size() >= k) {
+                candidats.sort(Comparator.comparingDouble(StationProche::getDistanceKm));
+                // aucune cellule hors des anneaux parcourus ne peut être plus proche que la k-ième
+                if (candidats.get(k - 1).getDistanceKm() <= distanceMinHorsAnneaux(latitude, longitude, anneau)) {
+                    break;
+                }
+            }
+        }
+
+        candidats.sort(Comparator.comparingDouble(StationProche::getDistanceKm));
+        return candidats.size() > k ? new ArrayList<>(candidats.subList(0, k)) : candidats;
+    }
+
+    /** La station la plus proche à moins de {@code rayonKm}, ou null. */
+    public StationProche plusProche(double latitude, double longitude, double rayonKm) {
+        List<StationProche> r = plusProches(latitude, longitude, 1, rayonKm);
+        return !r.isEmpty() ? r.get(0) : null;
+    }
+
+    /**
+     * Toutes les stations à moins de {@code rayonKm}, de la plus proche à la plus lointaine.
+     */
+    public List<StationProche> dansRayon(double latitude, double longitude, double rayonKm) {
+        List<StationProche> result = new ArrayList<>();
+        int ligne0 = ligne(latitude);
+        int colonne0 = colonne(longitude);
+        int anneauMax = Math.max((int) Math.ceil(180.0 / tailleCellule), nbCellulesLon / 2 + 1);
+
+        Set<Long> visitees = new HashSet<>();
+        for (int anneau = 0; anneau <= anneauMax; anneau++) {
+            parcourirAnneau(ligne0, colonne0, anneau, latitude, longitude, rayonKm, visitees, result);
+            if (distanceMinHorsAnneaux(latitude, longitude, anneau) > rayonKm) break;
+        }
+        result.sort(Comparator.comparingDouble(StationProche::getDistanceKm));
+        return result;
+    }
+
+    // -------------------------------------------------------
+    // GRILLE
+    // -------------------------------------------------------
+
+    /**
+     * Ajoute les stations des cellules situées exactement à {@code anneau} cellules du centre.
+     * {@code visitees} évite de relire une cellule quand l'anneau fait le tour du globe en longitude ;
+     * tant que les anneaux en sont loin, aucune cellule ne peut être lue deux fois : pas de suivi.
+     */
+    private void parcourirAnneau(int ligne0, int colonne0, int anneau, double lat, double lon,
+                                 double rayonKm, Set<Long> visitees, List<StationProche> sortie) {
+        int nbLignes = (int) Math.ceil(180.0 / tailleCellule);
+        boolean presqueTour = 2 * anneau + 4 >= nbCellulesLon;
+        for (int dl = -anneau; dl <= anneau; dl++) {
+            int l = ligne0 + dl;
+            if (l < 0 || l >= nbLignes) continue;
+
+            // lignes du haut et du bas : toutes les colonnes ; sinon seulement les deux colonnes extrêmes
+            int pas = (Math.abs(dl) == anneau || anneau == 0) ? 1 : 2 * anneau;
+            for (int dc = -anneau; dc <= anneau; dc += pas) {
+                long cle = cle(l, Math.floorMod(colonne0 + dc, nbCellulesLon));
+                if (presqueTour && !visitees.add(cle)) continue;
+
+                List<StationMeteo> cellule = cellules.get(cle);
+                if (cellule == null) continue;
+
+                for (StationMeteo s : cellule) {
+                    // l'écart de latitude minore la distance : haversine évitée hors du rayon
+                    if (Math.abs(s.getLatitude() - lat) * KM_PAR_DEGRE > rayonKm) continue;
+                    double d = distanceKm(lat, lon, s.getLatitude(), s.getLongitude());
+                    if (d <= rayonKm) sortie.add(new StationProche(s, d));
+                }
+            }
+        }
+    }
+
+    /**
+     * Minorant de la distance entre le point et toute cellule au-delà de l'anneau donné.
+     * - en latitude : écart minimal en degrés × km par degré ;
+     * - en longitude : distance au méridien situé à l'écart minimal, asin(cos φ · sin Δλ),
+     *   qui reste valable même quand l'orthodromie passe près du pôle.
+     */
+    private double distanceMinHorsAnneaux(double latitude, double longitude, int anneau) {
+        int nbLignes = (int) Math.ceil(180.0 / tailleCellule);
+        int ligne0 = ligne(latitude);
+
+        double borneLat = Double.MAX_VALUE;
+        if (ligne0 - anneau > 0 || ligne0 + anneau < nbLignes - 1) {
+            double posLat = (latitude + 90.0) - ligne0 * tailleCellule;
+            double dLat = anneau * tailleCellule + Math.min(posLat, tailleCellule - posLat);
+            borneLat = dLat * KM_PAR_DEGRE;
+        }
+
+        double borneLon = Double.MAX_VALUE;
+        if (2 * anneau + 1 < nbCellulesLon) {
+            double posLon = (longitude + 180.0) - Math.floor((longitude + 180.0) / tailleCellule) * tailleCellule;
+            double dLon = anneau * tailleCellule + Math.min(posLon, tailleCellule - posLon);
+            double sinus = Math.cos(Math.toRadians(latitude)) * Math.sin(Math.toRadians(Math.min(dLon, 90.0)));
+            borneLon = RAYON_TERRE_KM * Math.asin(Math.min(1.0, Math.max(sinus, 0.0)));
+        }
+
+        return Math.min(borneLat, borneLon);
+    }
+
+    private int ligne(double latitude) {
+        int l = (int) Math.floor((latitude + 90.0) / tailleCellule);
+        return Math.min(Math.max(l, 0), (int) Math.ceil(180.0 / tailleCellule) - 1);
+    }
+
+    private int colonne(double longitude) {
+        return Math.floorMod((int) Math.floor((longitude + 180.0) / tailleCellule), nbCellulesLon);
+    }
+
+    private static long cle(int ligne, int colonne) {
+        return ((long) ligne << 32) | (colonne & 0xFFFFFFFFL);
+    }
+
+    private static boolean memeStation(StationMeteo a, StationMeteo b) {
+        return a.getNom() != null && a.getNom().equals(b.getNom())
+                && Math.abs(a.getLatitude() - b.getLatitude()) < 0.000001
+                && Math.abs(a.getLongitude() - b.getLongitude()) < 0.000001;
+    }
+
+    /** Distance orthodromique en km (haversine). */
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * RAYON_TERRE_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+}
@@ -0,0 +1,243 @@
+package ch.hearc.meteo.service.geo;
+
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.StationMeteo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Météo actuelle en un point quelconque, estimée sans appel API à partir du dernier relevé
+ * des stations voisines : pondération par l'inverse du carré de la distance (IDW).
+ *
+ * - Les derniers relevés sont gardés en mémoire, une station par entrée, dans un
+ *   {@link IndexSpatialStations} dédié à grille fine : une estimation ne lit que les quelques
+ *   cellules autour du point (quelques microsecondes), sans base ni réseau.
+ * - Seules les stations à moins de rayonKm, dont le relevé a moins de ageMaxMs, sont utilisées
+ *   (au plus maxStations, prises parmi les 2 × maxStations plus proches : une zone aux relevés
+ *   trop anciens fait baisser la confiance plutôt que d'aller chercher des stations plus loin).
+ * - Une station à moins de {@value #PROCHE_KM} km suffit : c'est le rayon d'accrochage habituel,
+ *   un appel API y renverrait de toute façon la météo de cette station.
+ *
+ * Chargé au démarrage avec les derniers relevés en base, puis tenu à jour à chaque capture
+ * ({@link #noter(StationMeteo)}). Lectures et mises à jour concurrentes possibles.
+ */
+public class InterpolateurMeteo {
+
+    /** En deçà, la station est considérée comme au point demandé (évite un poids infini). */
+    private static final double DISTANCE_MIN_KM = 0.05;
+    private static final double PROCHE_KM = 2.0;
+    /** Écart-type des températures voisines (°C) pour lequel la confiance de désaccord vaut 0.5. */
+    private static final double ECART_REFERENCE = 2.0;
+    /** Cellules de 0.25° (~28 km) : les plus proches voisines tiennent dans un ou deux anneaux. */
+    private static final double CELLULE_DEGRES = 0.25;
+
+    private final IndexSpatialStations index = new IndexSpatialStations(CELLULE_DEGRES);
+    // dernier relevé par station (clé : nom + coordonnées), station à un seul relevé, jamais modifiée
+    private final Map<String, StationMeteo> derniers = new ConcurrentHashMap<>();
+
+    private final double rayonKm;
+    private final int maxStations;
+    private final int minStations;
+    private final long ageMaxMs;
+    private final double confianceMin;
+
+    /**
+     * @param rayonKm      distance maximale des stations utilisées
+     * @param maxStations  nombre maximal de stations utilisées (les plus proches)
+     * @param minStations  en dessous, appel direct conseillé (sauf station à moins de 2 km)
+     * @param ageMaxMs     âge maximal d'un relevé utilisé
+     * @param confianceMin en dessous, appel direct conseillé
+     */
+    public InterpolateurMeteo(double rayonKm, int maxStations, int minStations, long ageMaxMs, double confianceMin) {
+        if (rayonKm <= 0 || maxStations < 1 || minStations < 1 || ageMaxMs <= 0) {
+            throw new IllegalArgumentException("rayon, nombre de stations et âge maximal doivent être positifs");
+        }
+        this.rayonKm = rayonKm;
+        this.maxStations = maxStations;
+        this.minStations = Math.min(minStations, maxStations);
+        this.ageMaxMs = ageMaxMs;
+        this.confianceMin = confianceMin;
+    }
+
+    /** Chargement initial (derniers relevés en base, voir MeteoRepository.findDerniersReleves). */
+    public void charger(Collection<StationMeteo> stations) {
+        for (StationMeteo s : stations) {
+            noter(s);
+        }
+    }
+
+    /**
+     * Retient le relevé le plus récent de la station, s'il est plus récent que celui déjà connu.
+     * La station et ses relevés ne doivent plus être modifiés par l'appelant.
+     */
+    public void noter(StationMeteo station) {
+        if (station == null || station.getNom() == null
+                || station.getLatitude() == null || station.getLongitude() == null) return;
+        Meteo releve = plusRecent(station.getDonneesMeteo());
+        if (releve == null) return;
+
+        StationMeteo entree = new StationMeteo();
+        entree.setNumero(station.getNumero());
+        entree.setNom(station.getNom());
+        entree.setLatitude(station.getLatitude());
+        entree.setLongitude(station.getLongitude());
+        entree.addMeteo(releve);
+
+        String cle = station.cle();
+        // index mis à jour sous le verrou de la clé : index et table restent dans le même ordre
+        derniers.compute(cle, (k, ancien) -> {
+            if (ancien != null && releve(ancien).getDateMesureMs() >= releve.getDateMesureMs()) return ancien;
+            index.ajouter(entree);
+            return entree;
+        });
+    }
+
+    /** Nombre de stations dont un relevé est connu (récent ou non). */
+    public int taille() {
+        return derniers.size();
+    }
+
+    public MeteoInterpolee interpoler(double latitude, double longitude) {
+        long maintenant = System.currentTimeMillis();
+
+        List<StationProche> voisins = new ArrayList<>(maxStations);
+        for (StationProche sp : index.plusProches(latitude, longitude, 2 * maxStations, rayonKm)) {
+            if (maintenant - releve(sp.getStation()).getDateMesureMs() > ageMaxMs) continue;
+            voisins.add(sp);
+            if (voisins.size() == maxStations) break;
+        }
+        if (voisins.isEmpty()) {
+            return new MeteoInterpolee(latitude, longitude, null, 0, null, Double.NaN, 0L, 0.0, 0.0, true,
+                    String.format(Locale.ROOT, "aucun relevé récent à moins de %.0f km", rayonKm));
+        }
+
+        // sommes pondérées : température, humidité, pression, précipitations, visibilité, âge
+        double[] somme = new double[5];
+        double[] poids = new double[5];
+        double poidsTotal = 0;
+        double ageSomme = 0;
+        double dx = 0, dy = 0, poidsDirection = 0;
+        double cosLat = Math.cos(Math.toRadians(latitude));
+
+        for (StationProche sp : voisins) {
+            StationMeteo s = sp.getStation();
+            Meteo m = releve(s);
+            double d = Math.max(sp.getDistanceKm(), DISTANCE_MIN_KM);
+            double w = 1.0 / (d * d);
+
+            ajouter(somme, poids, 0, m.getTemperature(), w);
+            ajouter(somme, poids, 1, m.getHumidite(), w);
+            ajouter(somme, poids, 2, m.getPression(), w);
+            ajouter(somme, poids, 3, m.getPrecipitation(), w);
+            ajouter(somme, poids, 4, m.getVisibilite() != null ? m.getVisibilite().doubleValue() : null, w);
+            poidsTotal += w;
+            ageSomme += w * (maintenant - m.getDateMesureMs());
+
+            // direction de la station vue du point (vecteur unitaire, plan local)
+            if (sp.getDistanceKm() > DISTANCE_MIN_KM) {
+                double ex = (s.getLongitude() - longitude) * cosLat;
+                double ey = s.getLatitude() - latitude;
+                double norme = Math.hypot(ex, ey);
+                if (norme > 0) {
+                    dx += w * ex / norme;
+                    dy += w * ey / norme;
+                    poidsDirection += w;
+                }
+            }
+        }
+
+        StationProche premier = voisins.get(0);
+        Meteo estimee = new Meteo();
+        estimee.setDateMesureMs(maintenant - (long) (ageSomme / poidsTotal));
+        estimee.setTemperature(moyenne(somme, poids, 0));
+        estimee.setHumidite(moyenne(somme, poids, 1));
+        estimee.setPression(moyenne(somme, poids, 2));
+        estimee.setPrecipitation(moyenne(somme, poids, 3));
+        Double visibilite = moyenne(somme, poids, 4);
+        estimee.setVisibilite(visibilite != null ? (int) Math.round(visibilite) : null);
+        estimee.setDescription(releve(premier.getStation()).getDescription());
+
+        // désaccord des stations : écart-type pondéré des températures autour de l'estimation
+        double ecart = 0;
+        if (estimee.getTemperature() != null) {
+            double variance = 0;
+            for (StationProche sp : voisins) {
+                Double t = releve(sp.getStation()).getTemperature();
+                if (t == null) continue;
+                double d = Math.max(sp.getDistanceKm(), DISTANCE_MIN_KM);
+                variance += (t - estimee.getTemperature()) * (t - estimee.getTemperature()) / (d * d);
+            }
+            ecart = Math.sqrt(variance / poids[0]);
+        }
+
+        // facteurs de confiance, chacun entre 0 et 1
+        int n = voisins.size();
+        double distance = premier.getDistanceKm();
+        boolean proche = distance <= PROCHE_KM;
+        double fNombre = proche ? 1.0 : Math.min(1.0, (double) n / minStations);
+        double fDistance = 1.0 - distance / rayonKm;
+        // stations tout autour du point (1) ou toutes du même côté : extrapolation (0)
+        double fCouverture = proche || poidsDirection == 0 ? 1.0 : 1.0 - Math.hypot(dx, dy) / poidsDirection;
+        double fAge = Math.max(0.0, 1.0 - (ageSomme / poidsTotal) / ageMaxMs);
+        double fDesaccord = 1.0 / (1.0 + ecart / ECART_REFERENCE);
+        double confiance = fNombre * (0.35 * fDistance + 0.25 * fCouverture + 0.2 * fAge + 0.2 * fDesaccord);
+
+        String raison = null;
+        if (fNombre < 1.0) {
+            raison = n + " station(s) récente(s) seulement à moins de " + Math.round(rayonKm) + " km";
+        } else if (confiance < confianceMin) {
+            raison = raisonPrincipale(fDistance, fCouverture, fAge, fDesaccord, distance, ageSomme / poidsTotal, ecart);
+        }
+
+        return new MeteoInterpolee(latitude, longitude, estimee, n, premier.getStation().getNom(), distance,
+                (long) (ageSomme / poidsTotal), ecart, confiance, raison != null, raison);
+    }
+
+    /** Le facteur le plus faible, en clair. */
+    private static String raisonPrincipale(double fDistance, double fCouverture, double fAge, double fDesaccord,
+                                           double distanceKm, double ageMs, double ecart) {
+        double min = Math.min(Math.min(fDistance, fCouverture), Math.min(fAge, fDesaccord));
+        if (min == fDistance) {
+            return String.format(Locale.ROOT, "station la plus proche à %.1f km", distanceKm);
+        }
+        if (min == fCouverture) {
+            return "stations toutes du même côté du point (extrapolation)";
+        }
+        if (min == fAge) {
+            return "relevés vieux de " + Math.round(ageMs / 60_000.0) + " min en moyenne";
+        }
+        return String.format(Locale.ROOT, "stations en désaccord (écart de %.1f °C)", ecart);
+    }
+
+    private static void ajouter(double[] somme, double[] poids, int i, Double valeur, double w) {
+        if (valeur == null) return;
+        somme[i] += w * valeur;
+        poids[i] += w;
+    }
+
+    private static Double moyenne(double[] somme, double[] poids, int i) {
+        return poids[i] > 0 ? somme[i] / poids[i] : null;
+    }
+
+    private static Meteo releve(StationMeteo station) {
+        return station.getDonneesMeteo().get(0);
+    }
+
+    /** Relevé daté le plus récent (null si aucun). */
+    private static Meteo plusRecent(List<Meteo> releves) {
+        Meteo plusRecent = null;
+        if (releves == null) return null;
+        for (Meteo m : releves) {
+            if (m != null && m.hasDateMesure()
+                    && (plusRecent == null || m.getDateMesureMs() > plusRecent.getDateMesureMs())) {
+                plusRecent = m;
+            }
+        }
+        return plusRecent;
+    }
+}
@@ -0,0 +1,67 @@
+package ch.hearc.meteo.service.geo;
+
+import ch.hearc.meteo.business.Meteo;
+
+import java.util.Locale;
+
+/**
+ * Résultat d'une interpolation ({@link InterpolateurMeteo}) : météo estimée en un point
+ * à partir des derniers relevés des stations voisines, et indicateur de confiance.
+ *
+ * La confiance (0 à 1) tient compte du nombre de stations, de la distance de la plus proche,
+ * de leur répartition autour du point, de l'âge des relevés et de leur désaccord.
+ * Quand {@link #isAppelConseille()} est vrai, l'estimation n'est pas assez sûre :
+ * un appel direct à l'API est conseillé ({@link #getRaison()} dit pourquoi).
+ */
+public class MeteoInterpolee {
+    private final double latitude;
+    private final double longitude;
+    private final Meteo meteo;              // null si aucune station utilisable
+    private final int nbStations;
+    private final String stationPlusProche;
+    private final double distancePlusProcheKm;
+    private final long ageMoyenMs;
+    private final double ecartTemperature;  // écart-type pondéré des températures voisines (°C)
+    private final double confiance;
+    private final boolean appelConseille;
+    private final String raison;
+
+    public MeteoInterpolee(double latitude, double longitude, Meteo meteo, int nbStations,
+                           String stationPlusProche, double distancePlusProcheKm, long ageMoyenMs,
+                           double ecartTemperature, double confiance, boolean appelConseille, String raison) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.meteo = meteo;
+        this.nbStations = nbStations;
+        this.stationPlusProche = stationPlusProche;
+        this.distancePlusProcheKm = distancePlusProcheKm;
+        this.ageMoyenMs = ageMoyenMs;
+        this.ecartTemperature = ecartTemperature;
+        this.confiance = confiance;
+        this.appelConseille = appelConseille;
+        this.raison = raison;
+    }
+
+    public double getLatitude() { return latitude; }
+    public double getLongitude() { return longitude; }
+    public Meteo getMeteo() { return meteo; }
+    public int getNbStations() { return nbStations; }
+    public String getStationPlusProche() { return stationPlusProche; }
+    public double getDistancePlusProcheKm() { return distancePlusProcheKm; }
+    public long getAgeMoyenMs() { return ageMoyenMs; }
+    public double getEcartTemperature() { return ecartTemperature; }
+    public double getConfiance() { return confiance; }
+    public boolean isAppelConseille() { return appelConseille; }
+    /** Pourquoi un appel direct est conseillé (null sinon). */
+    public String getRaison() { return raison; }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "MeteoInterpolee{(%.4f, %.4f), stations=%d, plusProche='%s' à %.1f km, temperature=%s, "
+                        + "confiance=%.2f, appelConseille=%s%s}",
+                latitude, longitude, nbStations, stationPlusProche, distancePlusProcheKm,
+                meteo != null ? meteo.getTemperature() : null, confiance, appelConseille,
+                raison != null ? " (" + raison + ")" : "");
+    }
+}
@@ -0,0 +1,24 @@
+package ch.hearc.meteo.service.geo;
+
+import ch.hearc.meteo.business.StationMeteo;
+
+/**
+ * Résultat d'une recherche spatiale : une station connue et sa distance au point demandé.
+ */
+public class StationProche {
+    private final StationMeteo station;
+    private final double distanceKm;
+
+    public StationProche(StationMeteo station, double distanceKm) {
+        this.station = station;
+        this.distanceKm = distanceKm;
+    }
+
+    public StationMeteo getStation() { return station; }
+    public double getDistanceKm() { return distanceKm; }
+
+    @Override
+    public String toString() {
+        return "StationProche{" + "station='" + station.getNom() + '\'' + ", distanceKm=" + distanceKm + '}';
+    }
+}
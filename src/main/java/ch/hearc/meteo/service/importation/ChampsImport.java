@@ -0,0 +1,109 @@
+package ch.hearc.meteo.service.importation;
+
+import ch.hearc.meteo.business.Meteo;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Conversions communes aux formats CSV et JSON : nombres, dates, contrôle des champs requis.
+ * Une valeur invalide lève {@link IllegalArgumentException} : la ligne est alors rejetée.
+ */
+final class ChampsImport {
+
+    // "2019-01-01 00:00:00", suivi éventuellement d'un décalage (dt_iso OWM : "+0000 UTC")
+    private static final DateTimeFormatter DATE_HEURE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    // au-delà : valeur en millisecondes plutôt qu'en secondes (an 5138 en secondes)
+    private static final long LIMITE_SECONDES = 100_000_000_000L;
+
+    private ChampsImport() {
+    }
+
+    static EnregistrementImport enregistrement(String station, Double latitude, Double longitude,
+                                               String codePays, Long dateMs, Meteo meteo) {
+        if (station == null || station.isBlank()) {
+            throw new IllegalArgumentException("station absente");
+        }
+        if (latitude == null || longitude == null) {
+            throw new IllegalArgumentException("coordonnées absentes");
+        }
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new IllegalArgumentException("coordonnées invalides : " + latitude + ", " + longitude);
+        }
+        if (dateMs == null) {
+            throw new IllegalArgumentException("date absente");
+        }
+        meteo.setDateMesureMs(dateMs);
+        String pays = codePays != null && !codePays.isBlank() ? codePays.trim().toUpperCase() : null;
+        return new EnregistrementImport(station.trim(), latitude, longitude, pays, meteo);
+    }
+
+    /** Nombre décimal, null si vide. */
+    static Double nombre(String texte) {
+        if (texte == null || texte.isBlank()) return null;
+        try {
+            return Double.parseDouble(texte.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("nombre invalide : " + texte);
+        }
+    }
+
+    static Integer entier(Double valeur) {
+        return valeur != null ? (int) Math.round(valeur) : null;
+    }
+
+    /** Champ "dt" OWM : secondes depuis 1970 (millisecondes acceptées). */
+    static Long epoch(long valeur) {
+        return Math.abs(valeur) < LIMITE_SECONDES ? valeur * 1000L : valeur;
+    }
+
+    /**
+     * Date en epoch ms, null si vide. Formats acceptés :
+     * secondes ou millisecondes depuis 1970, ISO-8601 ("2019-01-01T00:00:00Z", avec ou sans décalage),
+     * "yyyy-MM-dd HH:mm:ss" en UTC, éventuellement suivi d'un décalage ("+0000 UTC" des exports OWM).
+     */
+    static Long date(String texte) {
+        if (texte == null || texte.isBlank()) return null;
+        String t = texte.trim();
+        try {
+            if (estEntier(t)) {
+                return epoch(Long.parseLong(t));
+            }
+            // séparateur ISO en 11e position ("UTC" en fin de dt_iso contient aussi un T)
+            if (t.length() > 10 && (t.charAt(10) == 'T' || t.charAt(10) == 't')) {
+                char dernier = t.charAt(t.length() - 1);
+                if (dernier == 'Z' || dernier == 'z') return Instant.parse(t).toEpochMilli();
+                if (t.lastIndexOf('+') > 10 || t.lastIndexOf('-') > 10) {
+                    return OffsetDateTime.parse(t).toInstant().toEpochMilli();
+                }
+                return LocalDateTime.parse(t).toInstant(ZoneOffset.UTC).toEpochMilli();
+            }
+            if (t.length() < 19) {
+                throw new IllegalArgumentException("date invalide : " + texte);
+            }
+            long ms = LocalDateTime.parse(t.substring(0, 19), DATE_HEURE).toInstant(ZoneOffset.UTC).toEpochMilli();
+            String reste = t.substring(19).trim();
+            if (reste.length() >= 5 && (reste.charAt(0) == '+' || reste.charAt(0) == '-') && estEntier(reste.substring(1, 5))) {
+                int hhmm = Integer.parseInt(reste.substring(1, 5));
+                long decalageMs = ((hhmm / 100) * 60L + hhmm % 100) * 60_000L;
+                ms -= reste.charAt(0) == '+' ? decalageMs : -decalageMs;
+            }
+            return ms;
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("date invalide : " + texte);
+        }
+    }
+
+    private static boolean estEntier(String t) {
+        if (t.isEmpty()) return false;
+        for (int i = 0; i < t.length(); i++) {
+            char c = t.charAt(i);
+            if ((c < '0' || c > '9') && !(i == 0 && c == '-' && t.length() > 1)) return false;
+        }
+        return true;
+    }
+}
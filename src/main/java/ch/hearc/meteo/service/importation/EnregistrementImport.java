@@ -0,0 +1,38 @@
+package ch.hearc.meteo.service.importation;
+
+import ch.hearc.meteo.business.Meteo;
+
+/**
+ * Une ligne du fichier importé, déjà convertie : station (nom, coordonnées, code pays) et relevé.
+ */
+final class EnregistrementImport {
+
+    private final String station;
+    private final double latitude;
+    private final double longitude;
+    private final String codePays; // peut être null
+    private final Meteo meteo;
+
+    EnregistrementImport(String station, double latitude, double longitude, String codePays, Meteo meteo) {
+        this.station = station;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.codePays = codePays;
+        this.meteo = meteo;
+    }
+
+    String getStation() { return station; }
+    double getLatitude() { return latitude; }
+    double getLongitude() { return longitude; }
+    String getCodePays() { return codePays; }
+    Meteo getMeteo() { return meteo; }
+
+    /** Clé du cache des stations : même règle que le repository (nom + coordonnées au 1e-6 près). */
+    String cleStation() {
+        return cleStation(station, latitude, longitude);
+    }
+
+    static String cleStation(String nom, double latitude, double longitude) {
+        return nom + "|" + Math.round(latitude * 1_000_000d) + "|" + Math.round(longitude * 1_000_000d);
+    }
+}
@@ -0,0 +1,349 @@
+package ch.hearc.meteo.service.importation;
+
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.Pays;
+import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.infrastructure.persistence.MeteoRepository;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Import en masse de relevés historiques (export OWM "History Bulk", CSV ou JSON, ou nos propres exports).
+ *
+ * Pipeline :
+ * - lecture : le thread appelant lit le fichier en flux et découpe en lots de {@code tailleLot} éléments
+ *   bruts, déposés dans une file bornée (mémoire limitée à quelques lots, quelle que soit la taille du fichier) ;
+ * - traitement : {@code nbThreads} threads convertissent les lots (analyse CSV / JSON), résolvent les stations
+ *   (cache nom + coordonnées -> station_id, préchargé depuis la base) puis insèrent chaque lot
+ *   en un seul batch et une seule transaction ({@link MeteoRepository#saveMeteoParStation}) ;
+ *   au plus {@code nbEcritures} insertions à la fois : la base embarquée H2 écrit plus vite avec
+ *   une seule transaction en cours, pendant que les autres threads préparent les lots suivants ;
+ * - reprise : après chaque lot validé, le point de reprise est avancé ({@link SuiviReprise}) ;
+ *   un import interrompu reprend au dernier lot validé.
+ *
+ * Les relevés déjà en base (même station, même date) sont ignorés : réimporter un fichier est sans effet.
+ * Les lignes invalides sont comptées et ignorées (les premières sont affichées).
+ */
+public class ImportateurHistorique {
+
+    private static final int REJETS_AFFICHES = 10;
+    private static final long PROGRESSION_S = 5;
+
+    private final MeteoRepository repository;
+    private final int nbThreads;
+    private final Semaphore ecritures;
+    private final int tailleLot;
+
+    // clé nom|lat|lon -> station_id ; code pays -> pays connu (nom complet)
+    private final Map<String, Integer> stations = new ConcurrentHashMap<>();
+    private final Map<String, Pays> paysConnus = new ConcurrentHashMap<>();
+
+    /** Autant d'insertions simultanées que de threads de traitement. */
+    public ImportateurHistorique(MeteoRepository repository, int nbThreads, int tailleLot) {
+        this(repository, nbThreads, nbThreads, tailleLot);
+    }
+
+    /**
+     * @param nbThreads   threads de traitement (conversion + insertion)
+     * @param nbEcritures insertions en base simultanées (au plus nbThreads)
+     * @param tailleLot   éléments par lot, donc par transaction
+     */
+    public ImportateurHistorique(MeteoRepository repository, int nbThreads, int nbEcritures, int tailleLot) {
+        if (repository == null) {
+            throw new IllegalArgumentException("repository requis");
+        }
+        if (nbThreads <= 0 || nbEcritures <= 0 || tailleLot <= 0) {
+            throw new IllegalArgumentException("threads, écritures et taille de lot doivent être positifs");
+        }
+        this.repository = repository;
+        this.nbThreads = nbThreads;
+        this.ecritures = new Semaphore(Math.min(nbEcritures, nbThreads));
+        this.tailleLot = tailleLot;
+    }
+
+    /**
+     * Importe le fichier (format selon l'extension, voir {@link SourceImport#ouvrir}).
+     * @param repartirDuDebut ignorer le point de reprise d'un import précédent interrompu
+     * @throws Exception fichier illisible, ou échec d'écriture en base (l'import peut être relancé :
+     *                   il reprend au dernier lot validé)
+     */
+    public Bilan importer(Path fichier, boolean repartirDuDebut) throws Exception {
+        chargerReferentiel();
+        SuiviReprise reprise = SuiviReprise.ouvrir(fichier, repartirDuDebut);
+        if (reprise.positionDepart() > 0) {
+            System.out.println("(Info) Import : reprise après " + reprise.positionDepart() + " éléments déjà importés.");
+        }
+
+        try (SourceImport<?> source = SourceImport.ouvrir(fichier)) {
+            Bilan bilan = executer(source, reprise);
+            reprise.supprimer();
+            return bilan;
+        }
+    }
+
+    /** Stations et pays déjà en base : pas de requête de résolution pour eux. */
+    private void chargerReferentiel() throws Exception {
+        for (StationMeteo s : repository.findAllStations()) {
+            if (s.getNumero() == null || s.getNom() == null || s.getLatitude() == null || s.getLongitude() == null) continue;
+            stations.put(EnregistrementImport.cleStation(s.getNom(), s.getLatitude(), s.getLongitude()), s.getNumero());
+        }
+        for (Pays p : repository.findAllPays()) {
+            if (p.getCode() != null) paysConnus.put(p.getCode().toUpperCase(), p);
+        }
+    }
+
+    private <T> Bilan executer(SourceImport<T> source, SuiviReprise reprise) throws Exception {
+        long debut = System.nanoTime();
+        Compteurs compteurs = new Compteurs();
+        AtomicReference<Exception> echec = new AtomicReference<>();
+
+        // file bornée : la lecture attend quand les threads de traitement sont en retard
+        BlockingQueue<Lot<T>> file = new ArrayBlockingQueue<>(nbThreads * 2);
+        AtomicInteger numeroThread = new AtomicInteger();
+        ExecutorService traitement = Executors.newFixedThreadPool(nbThreads, r -> {
+            Thread t = new Thread(r, "import-" + numeroThread.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < nbThreads; i++) {
+            traitement.execute(() -> traiterLots(file, source, reprise, compteurs, echec));
+        }
+
+        ScheduledExecutorService progression = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "import-progression");
+            t.setDaemon(true);
+            return t;
+        });
+        long[] precedent = {0L, debut};
+        progression.scheduleAtFixedRate(() -> {
+            long maintenant = System.nanoTime();
+            long lus = compteurs.lus.get();
+            long debit = (lus - precedent[0]) * 1_000_000_000L / Math.max(1, maintenant - precedent[1]);
+            precedent[0] = lus;
+            precedent[1] = maintenant;
+            System.out.println("(Info) Import : " + compteurs + ", " + debit + " lignes/s"
+                    + " (reprise possible après " + reprise.position() + ")");
+        }, PROGRESSION_S, PROGRESSION_S, TimeUnit.SECONDS);
+
+        try {
+            // éléments déjà importés lors d'une exécution précédente
+            for (long i = 0; i < reprise.positionDepart(); i++) {
+                if (source.suivant() == null) break;
+            }
+
+            long position = reprise.positionDepart();
+            long numeroLot = 0;
+            boolean fin = false;
+            while (!fin && echec.get() == null) {
+                List<T> bruts = new ArrayList<>(tailleLot);
+                T brut;
+                while (bruts.size() < tailleLot && (brut = source.suivant()) != null) {
+                    bruts.add(brut);
+                }
+                fin = bruts.size() < tailleLot;
+                if (bruts.isEmpty()) break;
+
+                position += bruts.size();
+                compteurs.lus.addAndGet(bruts.size());
+                file.put(new Lot<>(numeroLot++, position, bruts));
+            }
+        } catch (Exception e) {
+            echec.compareAndSet(null, e);
+        } finally {
+            // un lot vide par thread : signal de fin (les threads en échec vident la file jusque-là)
+            for (int i = 0; i < nbThreads; i++) {
+                file.put(new Lot<>(-1, -1, null));
+            }
+            traitement.shutdown();
+            traitement.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            progression.shutdownNow();
+        }
+
+        long dureeMs = (System.nanoTime() - debut) / 1_000_000L;
+        if (echec.get() != null) {
+            System.err.println("[WARN] Import interrompu (" + compteurs + "), relancer pour reprendre après "
+                    + reprise.position() + " éléments.");
+            throw echec.get();
+        }
+        return new Bilan(reprise.positionDepart(), compteurs.lus.get(), compteurs.inseres.get(),
+                compteurs.dejaPresents.get(), compteurs.rejetes.get(), compteurs.stationsResolues.get(), dureeMs);
+    }
+
+    private <T> void traiterLots(BlockingQueue<Lot<T>> file, SourceImport<T> source, SuiviReprise reprise,
+                                 Compteurs compteurs, AtomicReference<Exception> echec) {
+        try {
+            while (true) {
+                Lot<T> lot = file.take();
+                if (lot.bruts == null) return;
+                if (echec.get() != null) continue; // on vide la file sans traiter
+
+                try {
+                    traiterLot(lot, source, compteurs);
+                    reprise.terminer(lot.numero, lot.positionFin);
+                } catch (Exception e) {
+                    echec.compareAndSet(null, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> void traiterLot(Lot<T> lot, SourceImport<T> source, Compteurs compteurs) throws Exception {
+        Map<Integer, List<Meteo>> parStation = new HashMap<>();
+        int aInserer = 0;
+
+        for (T brut : lot.bruts) {
+            EnregistrementImport e;
+            try {
+                e = source.convertir(brut);
+            } catch (IllegalArgumentException ex) {
+                if (compteurs.rejetes.incrementAndGet() <= REJETS_AFFICHES) {
+                    System.err.println("[WARN] Import : ligne rejetée (" + ex.getMessage() + ") : " + apercu(brut));
+                }
+                continue;
+            }
+            parStation.computeIfAbsent(stationId(e, compteurs), k -> new ArrayList<>()).add(e.getMeteo());
+            aInserer++;
+        }
+
+        int inseres;
+        ecritures.acquire();
+        try {
+            inseres = repository.saveMeteoParStation(parStation);
+        } finally {
+            ecritures.release();
+        }
+        compteurs.inseres.addAndGet(inseres);
+        compteurs.dejaPresents.addAndGet(aInserer - inseres);
+    }
+
+    /**
+     * station_id depuis le cache, sinon résolu (ou créé) en base.
+     * Les nouvelles stations sont résolues une à la fois : deux threads qui rencontrent
+     * la même station inconnue ne la créent pas deux fois.
+     */
+    private Integer stationId(EnregistrementImport e, Compteurs compteurs) throws Exception {
+        String cle = e.cleStation();
+        Integer id = stations.get(cle);
+        if (id != null) return id;
+
+        synchronized (stations) {
+            id = stations.get(cle);
+            if (id != null) return id;
+
+            StationMeteo station = new StationMeteo();
+            station.setNom(e.getStation());
+            station.setLatitude(e.getLatitude());
+            station.setLongitude(e.getLongitude());
+            if (e.getCodePays() != null) {
+                Pays pays = paysConnus.get(e.getCodePays());
+                if (pays == null) {
+                    // pays inconnu de la base : le code tient lieu de nom
+                    pays = new Pays();
+                    pays.setCode(e.getCodePays());
+                    pays.setNom(e.getCodePays());
+                    paysConnus.put(e.getCodePays(), pays);
+                }
+                station.setPays(pays);
+            }
+
+            id = repository.ensureStationId(station);
+            stations.put(cle, id);
+            compteurs.stationsResolues.incrementAndGet();
+            return id;
+        }
+    }
+
+    private static String apercu(Object brut) {
+        String s = String.valueOf(brut);
+        return s.length() > 120 ? s.substring(0, 120) + "..." : s;
+    }
+
+    // -------------------------------------------------------
+    // LOTS / COMPTEURS / BILAN
+    // -------------------------------------------------------
+
+    private static final class Lot<T> {
+        final long numero;
+        final long positionFin; // éléments du fichier lus à la fin de ce lot
+        final List<T> bruts;    // null : fin de l'import
+
+        Lot(long numero, long positionFin, List<T> bruts) {
+            this.numero = numero;
+            this.positionFin = positionFin;
+            this.bruts = bruts;
+        }
+    }
+
+    private static final class Compteurs {
+        final AtomicLong lus = new AtomicLong();
+        final AtomicLong inseres = new AtomicLong();
+        final AtomicLong dejaPresents = new AtomicLong();
+        final AtomicLong rejetes = new AtomicLong();
+        final AtomicLong stationsResolues = new AtomicLong();
+
+        @Override
+        public String toString() {
+            return lus.get() + " lus, " + inseres.get() + " insérés, " + dejaPresents.get() + " déjà présents, "
+                    + rejetes.get() + " rejetés";
+        }
+    }
+
+    /** Résultat d'un import terminé. */
+    public static class Bilan {
+        private final long repriseApres;
+        private final long lus;
+        private final long inseres;
+        private final long dejaPresents;
+        private final long rejetes;
+        private final long stationsResolues;
+        private final long dureeMs;
+
+        Bilan(long repriseApres, long lus, long inseres, long dejaPresents, long rejetes,
+              long stationsResolues, long dureeMs) {
+            this.repriseApres = repriseApres;
+            this.lus = lus;
+            this.inseres = inseres;
+            this.dejaPresents = dejaPresents;
+            this.rejetes = rejetes;
+            this.stationsResolues = stationsResolues;
+            this.dureeMs = dureeMs;
+        }
+
+        public long getRepriseApres() { return repriseApres; }
+        public long getLus() { return lus; }
+        public long getInseres() { return inseres; }
+        public long getDejaPresents() { return dejaPresents; }
+        public long getRejetes() { return rejetes; }
+        public long getStationsResolues() { return stationsResolues; }
+        public long getDureeMs() { return dureeMs; }
+
+        /** Éléments lus par seconde sur l'ensemble de l'import. */
+        public long getDebit() {
+            return lus * 1000L / Math.max(1, dureeMs);
+        }
+
+        @Override
+        public String toString() {
+            return lus + " lus, " + inseres + " insérés, " + dejaPresents + " déjà présents, " + rejetes + " rejetés, "
+                    + stationsResolues + " nouvelles stations résolues, en " + (dureeMs / 1000.0) + " s ("
+                    + getDebit() + " lignes/s)" + (repriseApres > 0 ? ", reprise après " + repriseApres : "");
+        }
+    }
+}
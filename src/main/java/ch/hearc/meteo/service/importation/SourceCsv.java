@@ -0,0 +1,171 @@
+package ch.hearc.meteo.service.importation;
+
+import ch.hearc.meteo.business.Meteo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Fichier CSV avec ligne d'en-tête, séparateur ',' ou ';'.
+ * Les colonnes sont reconnues par leur nom, dans nos exports comme dans l'export
+ * historique OpenWeatherMap ("History Bulk") :
+ * - station / nom / city_name, latitude / lat, longitude / lon, pays / country (optionnel) ;
+ * - dt (secondes depuis 1970) ou date / date_releve / dt_iso ;
+ * - temperature / temp, humidite / humidity, pression / pressure, visibilite / visibility,
+ *   precipitation / rain_1h, description / weather_description (toutes optionnelles).
+ * Les autres colonnes sont ignorées. Les champs entre guillemets ne peuvent pas contenir de saut de ligne.
+ * Avec le séparateur ';' (export Excel), la virgule décimale est acceptée.
+ */
+final class SourceCsv implements SourceImport<String> {
+
+    private final BufferedReader lecteur;
+    private final char separateur;
+
+    private final int iStation;
+    private final int iLatitude;
+    private final int iLongitude;
+    private final int iPays;
+    private final int iDt;
+    private final int iDate;
+    private final int iTemperature;
+    private final int iHumidite;
+    private final int iPression;
+    private final int iVisibilite;
+    private final int iPrecipitation;
+    private final int iDescription;
+
+    SourceCsv(BufferedReader lecteur) throws IOException {
+        this.lecteur = lecteur;
+        String entete = lecteur.readLine();
+        if (entete == null) {
+            throw new IOException("Fichier CSV vide");
+        }
+        if (!entete.isEmpty() && entete.charAt(0) == '﻿') {
+            entete = entete.substring(1); // BOM UTF-8
+        }
+        this.separateur = entete.indexOf(';') >= 0 && entete.indexOf(',') < 0 ? ';' : ',';
+
+        List<String> colonnes = new ArrayList<>();
+        for (String c : decouper(entete, separateur)) {
+            colonnes.add(c.trim().toLowerCase(Locale.ROOT));
+        }
+        iStation = colonne(colonnes, "station", "nom", "city_name", "name");
+        iLatitude = colonne(colonnes, "latitude", "lat");
+        iLongitude = colonne(colonnes, "longitude", "lon");
+        iPays = colonne(colonnes, "pays", "code_pays", "country");
+        iDt = colonne(colonnes, "dt");
+        iDate = colonne(colonnes, "date", "date_releve", "dt_iso");
+        iTemperature = colonne(colonnes, "temperature", "temp");
+        iHumidite = colonne(colonnes, "humidite", "humidity");
+        iPression = colonne(colonnes, "pression", "pressure");
+        iVisibilite = colonne(colonnes, "visibilite", "visibility");
+        iPrecipitation = colonne(colonnes, "precipitation", "rain_1h");
+        iDescription = colonne(colonnes, "description", "weather_description");
+
+        if (iStation < 0 || iLatitude < 0 || iLongitude < 0 || (iDt < 0 && iDate < 0)) {
+            throw new IOException("Colonnes requises absentes de l'en-tête CSV : station, latitude, longitude, date (ou dt)");
+        }
+    }
+
+    @Override
+    public String suivant() throws IOException {
+        String ligne;
+        do {
+            ligne = lecteur.readLine();
+        } while (ligne != null && ligne.isBlank());
+        return ligne;
+    }
+
+    @Override
+    public EnregistrementImport convertir(String ligne) {
+        List<String> champs = decouper(ligne, separateur);
+
+        Meteo m = new Meteo();
+        m.setTemperature(nombre(champ(champs, iTemperature)));
+        m.setHumidite(nombre(champ(champs, iHumidite)));
+        m.setPression(nombre(champ(champs, iPression)));
+        m.setVisibilite(ChampsImport.entier(nombre(champ(champs, iVisibilite))));
+        m.setPrecipitation(nombre(champ(champs, iPrecipitation)));
+        m.setDescription(champ(champs, iDescription));
+
+        // dt (exact) prioritaire sur la date texte
+        Long date = ChampsImport.date(champ(champs, iDt));
+        if (date == null) date = ChampsImport.date(champ(champs, iDate));
+
+        return ChampsImport.enregistrement(champ(champs, iStation),
+                nombre(champ(champs, iLatitude)),
+                nombre(champ(champs, iLongitude)),
+                champ(champs, iPays), date, m);
+    }
+
+    @Override
+    public void close() throws IOException {
+        lecteur.close();
+    }
+
+    private Double nombre(String texte) {
+        if (texte != null && separateur == ';') texte = texte.replace(',', '.');
+        return ChampsImport.nombre(texte);
+    }
+
+    private static int colonne(List<String> colonnes, String... noms) {
+        for (String nom : noms) {
+            int i = colonnes.indexOf(nom);
+            if (i >= 0) return i;
+        }
+        return -1;
+    }
+
+    /** Valeur du champ, null si colonne absente ou champ vide. */
+    private static String champ(List<String> champs, int index) {
+        if (index < 0 || index >= champs.size()) return null;
+        String v = champs.get(index);
+        return v.isBlank() ? null : v;
+    }
+
+    /** Découpe une ligne ; guillemets doubles pris en compte ("" pour un guillemet dans un champ). */
+    private static List<String> decouper(String ligne, char separateur) {
+        List<String> champs = new ArrayList<>();
+        if (ligne.indexOf('"') < 0) {
+            int debut = 0;
+            for (int i = 0; i < ligne.length(); i++) {
+                if (ligne.charAt(i) == separateur) {
+                    champs.add(ligne.substring(debut, i));
+                    debut = i + 1;
+                }
+            }
+            champs.add(ligne.substring(debut));
+            return champs;
+        }
+
+        StringBuilder courant = new StringBuilder();
+        boolean entreGuillemets = false;
+        for (int i = 0; i < ligne.length(); i++) {
+            char c = ligne.charAt(i);
+            if (entreGuillemets) {
+                if (c == '"') {
+                    if (i + 1 < ligne.length() && ligne.charAt(i + 1) == '"') {
+                        courant.append('"');
+                        i++;
+                    } else {
+                        entreGuillemets = false;
+                    }
+                } else {
+                    courant.append(c);
+                }
+            } else if (c == '"') {
+                entreGuillemets = true;
+            } else if (c == separateur) {
+                champs.add(courant.toString());
+                courant.setLength(0);
+            } else {
+                courant.append(c);
+            }
+        }
+        champs.add(courant.toString());
+        return champs;
+    }
+}
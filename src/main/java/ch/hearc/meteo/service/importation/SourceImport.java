@@ -0,0 +1,62 @@
+package ch.hearc.meteo.service.importation;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Fichier à importer, lu en flux : un élément brut à la fois (ligne CSV, objet JSON...),
+ * sans charger le fichier en mémoire.
+ *
+ * {@link #suivant()} est appelé par le seul thread de lecture ;
+ * {@link #convertir(Object)} par les threads de traitement, en parallèle.
+ *
+ * @param <T> élément brut lu dans le fichier
+ */
+interface SourceImport<T> extends Closeable {
+
+    int TAILLE_TAMPON = 1 << 20; // 1 Mio
+
+    /** Prochain élément brut, ou null en fin de fichier. */
+    T suivant() throws IOException;
+
+    /**
+     * Convertit un élément brut (sans état partagé : appelé en parallèle).
+     * @throws IllegalArgumentException si l'élément est invalide (ligne rejetée)
+     */
+    EnregistrementImport convertir(T brut);
+
+    /**
+     * Ouvre le fichier selon son extension : .csv, .json (tableau ou un objet par ligne),
+     * .jsonl / .ndjson ; suffixe .gz possible (ex: history.csv.gz).
+     */
+    static SourceImport<?> ouvrir(Path fichier) throws IOException {
+        String nom = fichier.getFileName().toString().toLowerCase(Locale.ROOT);
+        InputStream in = Files.newInputStream(fichier);
+        try {
+            if (nom.endsWith(".gz")) {
+                in = new GZIPInputStream(in, 1 << 16);
+                nom = nom.substring(0, nom.length() - 3);
+            }
+            BufferedReader lecteur = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), TAILLE_TAMPON);
+
+            if (nom.endsWith(".csv") || nom.endsWith(".txt")) {
+                return new SourceCsv(lecteur);
+            }
+            if (nom.endsWith(".json") || nom.endsWith(".jsonl") || nom.endsWith(".ndjson")) {
+                return new SourceJson(lecteur);
+            }
+            throw new IOException("Format non reconnu (attendu .csv, .json, .jsonl, éventuellement .gz) : " + fichier);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+}
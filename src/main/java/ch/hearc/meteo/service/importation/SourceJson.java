@@ -0,0 +1,157 @@
+package ch.hearc.meteo.service.importation;
+
+import ch.hearc.meteo.business.Meteo;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * Fichier JSON : soit un tableau d'objets ([{...}, {...}], export OWM "History Bulk"),
+ * lu élément par élément avec un {@link JsonReader}, soit un objet par ligne (JSON Lines).
+ *
+ * Chaque objet est plat (mêmes noms que les colonnes CSV, voir {@link SourceCsv})
+ * ou imbriqué comme les réponses OWM : coord.lat, main.temp, main.humidity, main.pressure,
+ * rain.1h, weather[0].description, sys.country.
+ *
+ * Éléments bruts : {@link JsonElement} (tableau) ou String (JSON Lines, analysée par les
+ * threads de traitement plutôt que par le thread de lecture).
+ */
+final class SourceJson implements SourceImport<Object> {
+
+    private final BufferedReader lecteur;
+    private final JsonReader tableau; // null en JSON Lines
+
+    SourceJson(BufferedReader lecteur) throws IOException {
+        this.lecteur = lecteur;
+        if (premierCaractere(lecteur) == '[') {
+            this.tableau = new JsonReader(lecteur);
+            this.tableau.beginArray();
+        } else {
+            this.tableau = null;
+        }
+    }
+
+    @Override
+    public Object suivant() throws IOException {
+        if (tableau != null) {
+            if (!tableau.hasNext()) return null;
+            try {
+                return JsonParser.parseReader(tableau);
+            } catch (JsonParseException e) {
+                // position perdue dans le tableau : pas de reprise possible au-delà
+                throw new IOException("JSON illisible : " + e.getMessage(), e);
+            }
+        }
+        String ligne;
+        do {
+            ligne = lecteur.readLine();
+        } while (ligne != null && ligne.isBlank());
+        return ligne;
+    }
+
+    @Override
+    public EnregistrementImport convertir(Object brut) {
+        JsonElement element;
+        try {
+            element = brut instanceof String ? JsonParser.parseString((String) brut) : (JsonElement) brut;
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("JSON invalide");
+        }
+        if (element == null || !element.isJsonObject()) {
+            throw new IllegalArgumentException("objet JSON attendu");
+        }
+        JsonObject o = element.getAsJsonObject();
+        JsonObject main = objet(o, "main");
+        JsonObject coord = objet(o, "coord");
+
+        Meteo m = new Meteo();
+        m.setTemperature(premier(nombre(o, "temperature", "temp"), nombre(main, "temp")));
+        m.setHumidite(premier(nombre(o, "humidite", "humidity"), nombre(main, "humidity")));
+        m.setPression(premier(nombre(o, "pression", "pressure"), nombre(main, "pressure")));
+        m.setVisibilite(ChampsImport.entier(nombre(o, "visibilite", "visibility")));
+        m.setPrecipitation(premier(nombre(o, "precipitation", "rain_1h"), nombre(objet(o, "rain"), "1h")));
+        String description = texte(o, "description", "weather_description");
+        if (description == null) {
+            JsonElement weather = o.get("weather");
+            if (weather != null && weather.isJsonArray() && ((JsonArray) weather).size() > 0
+                    && ((JsonArray) weather).get(0).isJsonObject()) {
+                description = texte(((JsonArray) weather).get(0).getAsJsonObject(), "description");
+            }
+        }
+        m.setDescription(description);
+
+        Long date = null;
+        Double dt = nombre(o, "dt");
+        if (dt != null) {
+            date = ChampsImport.epoch(dt.longValue());
+        } else {
+            date = ChampsImport.date(texte(o, "date", "date_releve", "dt_iso"));
+        }
+
+        String pays = texte(o, "pays", "code_pays", "country");
+        if (pays == null) pays = texte(objet(o, "sys"), "country");
+
+        return ChampsImport.enregistrement(texte(o, "station", "nom", "city_name", "name"),
+                premier(nombre(o, "latitude", "lat"), nombre(coord, "lat")),
+                premier(nombre(o, "longitude", "lon"), nombre(coord, "lon")),
+                pays, date, m);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (tableau != null) tableau.close();
+        lecteur.close();
+    }
+
+    /** Premier caractère significatif, sans le consommer (espaces et BOM ignorés). */
+    private static int premierCaractere(BufferedReader lecteur) throws IOException {
+        while (true) {
+            lecteur.mark(1);
+            int c = lecteur.read();
+            if (c < 0) return c;
+            if (!Character.isWhitespace(c) && c != '﻿') {
+                lecteur.reset();
+                return c;
+            }
+        }
+    }
+
+    private static JsonObject objet(JsonObject o, String nom) {
+        if (o == null) return null;
+        JsonElement e = o.get(nom);
+        return e != null && e.isJsonObject() ? e.getAsJsonObject() : null;
+    }
+
+    private static Double nombre(JsonObject o, String... noms) {
+        if (o == null) return null;
+        for (String nom : noms) {
+            JsonElement e = o.get(nom);
+            if (e == null || e.isJsonNull() || !e.isJsonPrimitive()) continue;
+            if (e.getAsJsonPrimitive().isNumber()) return e.getAsDouble();
+            return ChampsImport.nombre(e.getAsString()); // nombre écrit en texte
+        }
+        return null;
+    }
+
+    private static String texte(JsonObject o, String... noms) {
+        if (o == null) return null;
+        for (String nom : noms) {
+            JsonElement e = o.get(nom);
+            if (e != null && e.isJsonPrimitive()) {
+                String v = e.getAsString();
+                if (!v.isBlank()) return v;
+            }
+        }
+        return null;
+    }
+
+    private static Double premier(Double a, Double b) {
+        return a != null ? a : b;
+    }
+}
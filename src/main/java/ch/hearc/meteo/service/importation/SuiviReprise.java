@@ -0,0 +1,120 @@
+package ch.hearc.meteo.service.importation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Point de reprise d'un import, dans un fichier à côté du fichier importé ("history.csv.reprise").
+ *
+ * Les lots sont validés en base dans le désordre (plusieurs threads) : le point de reprise
+ * ne retient que le nombre d'éléments dont tous les lots précédents sont validés.
+ * Un import interrompu repart de là ; les quelques lots déjà validés au-delà sont
+ * relus et ignorés par la base (relevé déjà présent pour la station et la date).
+ *
+ * Le point de reprise n'est utilisé que si le fichier importé n'a pas changé (taille, date).
+ */
+final class SuiviReprise {
+
+    private final Path fichierReprise;
+    private final long taille;
+    private final long modifie;
+    private final long positionDepart;
+
+    private final Map<Long, Long> lotsEnAvance = new TreeMap<>(); // numéro de lot -> position de fin
+    private long prochainLot;
+    private long position;
+
+    private SuiviReprise(Path fichierReprise, long taille, long modifie, long positionDepart) {
+        this.fichierReprise = fichierReprise;
+        this.taille = taille;
+        this.modifie = modifie;
+        this.positionDepart = positionDepart;
+        this.position = positionDepart;
+    }
+
+    /**
+     * @param repartirDuDebut ignorer un point de reprise existant
+     */
+    static SuiviReprise ouvrir(Path source, boolean repartirDuDebut) throws IOException {
+        Path fichierReprise = source.resolveSibling(source.getFileName() + ".reprise");
+        long taille = Files.size(source);
+        long modifie = Files.getLastModifiedTime(source).toMillis();
+
+        long depart = 0;
+        if (!repartirDuDebut && Files.exists(fichierReprise)) {
+            Properties p = new Properties();
+            try (InputStream in = Files.newInputStream(fichierReprise)) {
+                p.load(in);
+            }
+            try {
+                if (Long.parseLong(p.getProperty("taille", "-1")) == taille
+                        && Long.parseLong(p.getProperty("modifie", "-1")) == modifie) {
+                    depart = Long.parseLong(p.getProperty("position", "0"));
+                } else {
+                    System.err.println("[WARN] " + source.getFileName()
+                            + " a changé depuis l'import interrompu : reprise ignorée, import depuis le début.");
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("[WARN] Point de reprise illisible (" + fichierReprise + ") : import depuis le début.");
+            }
+        }
+        return new SuiviReprise(fichierReprise, taille, modifie, depart);
+    }
+
+    /** Nombre d'éléments du fichier à sauter (déjà importés). */
+    long positionDepart() {
+        return positionDepart;
+    }
+
+    /** Nombre d'éléments importés sans trou depuis le début du fichier. */
+    synchronized long position() {
+        return position;
+    }
+
+    /**
+     * Note un lot validé en base (lots numérotés à partir de 0 depuis la reprise)
+     * et avance le point de reprise si tous les lots précédents le sont aussi.
+     */
+    synchronized void terminer(long numeroLot, long positionFin) throws IOException {
+        lotsEnAvance.put(numeroLot, positionFin);
+        boolean avance = false;
+        Long fin;
+        while ((fin = lotsEnAvance.remove(prochainLot)) != null) {
+            position = fin;
+            prochainLot++;
+            avance = true;
+        }
+        if (avance) ecrire();
+    }
+
+    /** Import terminé : le point de reprise n'a plus d'utilité. */
+    void supprimer() throws IOException {
+        Files.deleteIfExists(fichierReprise);
+    }
+
+    private void ecrire() throws IOException {
+        Properties p = new Properties();
+        p.setProperty("position", Long.toString(position));
+        p.setProperty("taille", Long.toString(taille));
+        p.setProperty("modifie", Long.toString(modifie));
+
+        // écrit à côté puis renommé : jamais de point de reprise à moitié écrit
+        Path tmp = fichierReprise.resolveSibling(fichierReprise.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            p.store(out, "Point de reprise de l'import (éléments déjà importés)");
+        }
+        try {
+            Files.move(tmp, fichierReprise, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, fichierReprise, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package ch.hearc.meteo.service.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Étape d'un pipeline {@link Flow} : reçoit des éléments de l'étape précédente, les traite
+ * avec ses propres threads (parallelisme) et transmet les résultats à l'étape suivante.
+ *
+ * Contre-pression :
+ * - en entrée, au plus capacite éléments demandés à l'amont et non encore traités ;
+ * - en sortie, un tampon borné (capacite) par abonné : quand l'aval ne suit pas,
+ *   l'émission bloque les threads de l'étape, qui cessent de demander à l'amont.
+ * Un ralentissement en bout de chaîne (écriture en base) remonte ainsi jusqu'à la source.
+ *
+ * Traitement par lots : un thread prend un élément puis complète son lot, jusqu'à tailleLot,
+ * avec ce qui est déjà en attente (sans attendre). Un élément dont le traitement échoue
+ * est compté et abandonné (les autres continuent).
+ *
+ * Une étape sert pour un seul flux : elle se termine avec lui.
+ *
+ * @param <E> éléments reçus
+ * @param <S> éléments émis
+ */
+public class Etape<E, S> implements Flow.Processor<E, S> {
+
+    /** Traitement d'un lot : résultats à émettre (éventuellement aucun). */
+    public interface Traitement<E, S> {
+        List<S> traiter(List<E> lot) throws Exception;
+    }
+
+    private static final Object FIN = new Object();
+    private static final int AVERTISSEMENTS_MAX = 3;
+
+    private final String nom;
+    private final int parallelisme;
+    private final int capacite;
+    private final int tailleLot;
+    private final Traitement<E, S> traitement;
+    private final BlockingQueue<Object> entree;
+    private final SubmissionPublisher<S> sortie;
+
+    private volatile Flow.Subscription amont;
+    private volatile Throwable erreurAmont;
+    private final AtomicInteger threadsActifs = new AtomicInteger();
+
+    private final AtomicLong recus = new AtomicLong();
+    private final AtomicLong emis = new AtomicLong();
+    private final AtomicLong echecs = new AtomicLong();
+    private final AtomicLong lots = new AtomicLong();
+    private final AtomicLong nanosTraitement = new AtomicLong();
+    private final AtomicLong nanosTraitementMax = new AtomicLong();
+    private final AtomicLong nanosAttenteAval = new AtomicLong();
+    private final AtomicInteger enAttenteMax = new AtomicInteger();
+    private volatile long debut;
+    private volatile long fin;
+
+    /**
+     * @param livraison exécuteur des livraisons vers l'aval ({@link SubmissionPublisher})
+     */
+    public Etape(String nom, int parallelisme, int capacite, int tailleLot,
+                 Traitement<E, S> traitement, Executor livraison) {
+        if (parallelisme <= 0 || capacite <= 0 || tailleLot <= 0) {
+            throw new IllegalArgumentException("étape " + nom + " : parallélisme, capacité et lot doivent être > 0");
+        }
+        this.nom = nom;
+        this.parallelisme = parallelisme;
+        this.capacite = capacite;
+        this.tailleLot = tailleLot;
+        this.traitement = traitement;
+        this.entree = new ArrayBlockingQueue<>(capacite + parallelisme); // + une fin par thread
+        this.sortie = new SubmissionPublisher<>(livraison, capacite);
+    }
+
+    /** Étape élément par élément. */
+    public static <E, S> Etape<E, S> parElement(String nom, int parallelisme, int capacite,
+                                               Transformation<E, S> transformation, Executor livraison) {
+        return new Etape<>(nom, parallelisme, capacite, 1, lot -> {
+            S s = transformation.transformer(lot.get(0));
+            List<S> r = new ArrayList<>(1);
+            if (s != null) r.add(s);
+            return r;
+        }, livraison);
+    }
+
+    /** Transformation d'un élément ; null : élément écarté. */
+    public interface Transformation<E, S> {
+        S transformer(E element) throws Exception;
+    }
+
+    // -------------------------------------------------------
+    // ABONNÉ (amont)
+    // -------------------------------------------------------
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (amont != null) {
+            subscription.cancel();
+            return;
+        }
+        amont = subscription;
+        debut = System.nanoTime();
+        threadsActifs.set(parallelisme);
+        for (int i = 0; i < parallelisme; i++) {
+            Thread t = new Thread(this::travailler, "etape-" + nom + "-" + (i + 1));
+            t.setDaemon(true);
+            t.start();
+        }
+        subscription.request(capacite);
+    }
+
+    @Override
+    public void onNext(E element) {
+        recus.incrementAndGet();
+        // toujours de la place : jamais plus de capacite éléments demandés et non traités
+        entree.offer(element);
+        enAttenteMax.accumulateAndGet(entree.size(), Math::max);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        erreurAmont = throwable;
+        terminerEntree();
+    }
+
+    @Override
+    public void onComplete() {
+        terminerEntree();
+    }
+
+    private void terminerEntree() {
+        for (int i = 0; i < parallelisme; i++) {
+            try {
+                entree.put(FIN);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // -------------------------------------------------------
+    // ÉDITEUR (aval)
+    // -------------------------------------------------------
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super S> subscriber) {
+        sortie.subscribe(subscriber);
+    }
+
+    // -------------------------------------------------------
+    // THREADS DE L'ÉTAPE
+    // -------------------------------------------------------
+
+    @SuppressWarnings("unchecked")
+    private void travailler() {
+        List<E> lot = new ArrayList<>(tailleLot);
+        boolean termine = false;
+        try {
+            while (!termine) {
+                Object o = entree.take();
+                if (o == FIN) break;
+                lot.add((E) o);
+                while (lot.size() < tailleLot) {
+                    Object suivant = entree.poll();
+                    if (suivant == null) break;
+                    if (suivant == FIN) {
+                        termine = true;
+                        break;
+                    }
+                    lot.add((E) suivant);
+                }
+                traiterLot(lot);
+                amont.request(lot.size());
+                lot.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (threadsActifs.decrementAndGet() == 0) {
+                fin = System.nanoTime();
+                if (erreurAmont != null) sortie.closeExceptionally(erreurAmont);
+                else sortie.close();
+            }
+        }
+    }
+
+    private void traiterLot(List<E> lot) {
+        long t0 = System.nanoTime();
+        List<S> resultats;
+        try {
+            resultats = traitement.traiter(lot);
+        } catch (Exception e) {
+            if (echecs.getAndAdd(lot.size()) < AVERTISSEMENTS_MAX) {
+                System.err.println("[WARN] Étape " + nom + " : " + e.getMessage());
+            }
+            resultats = null;
+        }
+        long duree = System.nanoTime() - t0;
+        nanosTraitement.addAndGet(duree);
+        nanosTraitementMax.accumulateAndGet(duree, Math::max);
+        lots.incrementAndGet();
+
+        if (resultats == null) return;
+        for (S s : resultats) {
+            long t1 = System.nanoTime();
+            sortie.submit(s); // bloque si l'aval est saturé
+            nanosAttenteAval.addAndGet(System.nanoTime() - t1);
+            emis.incrementAndGet();
+        }
+    }
+
+    /** Photographie des compteurs de l'étape. */
+    public MetriquesEtape metriques() {
+        long finOuMaintenant = fin != 0 ? fin : System.nanoTime();
+        long dureeNanos = debut != 0 ? finOuMaintenant - debut : 0;
+        return new MetriquesEtape(nom, parallelisme, recus.get(), emis.get(), echecs.get(), lots.get(),
+                nanosTraitement.get(), nanosTraitementMax.get(), nanosAttenteAval.get(),
+                entree.size(), enAttenteMax.get(), dureeNanos);
+    }
+}
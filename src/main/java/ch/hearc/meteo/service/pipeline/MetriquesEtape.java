@@ -0,0 +1,79 @@
+package ch.hearc.meteo.service.pipeline;
+
+import java.util.Locale;
+
+/**
+ * Compteurs d'une étape de pipeline (photographie).
+ * - débit : éléments traités par seconde depuis l'abonnement de l'étape ;
+ * - latence : temps moyen / max de traitement d'un lot ;
+ * - attente aval : temps passé bloqué à émettre vers une étape suivante saturée (contre-pression) ;
+ * - en attente : éléments reçus pas encore traités (actuel / max).
+ */
+public class MetriquesEtape {
+    private final String nom;
+    private final int parallelisme;
+    private final long recus;
+    private final long emis;
+    private final long echecs;
+    private final long lots;
+    private final long nanosTraitement;
+    private final long nanosTraitementMax;
+    private final long nanosAttenteAval;
+    private final int enAttente;
+    private final int enAttenteMax;
+    private final long dureeNanos;
+
+    MetriquesEtape(String nom, int parallelisme, long recus, long emis, long echecs, long lots,
+                   long nanosTraitement, long nanosTraitementMax, long nanosAttenteAval,
+                   int enAttente, int enAttenteMax, long dureeNanos) {
+        this.nom = nom;
+        this.parallelisme = parallelisme;
+        this.recus = recus;
+        this.emis = emis;
+        this.echecs = echecs;
+        this.lots = lots;
+        this.nanosTraitement = nanosTraitement;
+        this.nanosTraitementMax = nanosTraitementMax;
+        this.nanosAttenteAval = nanosAttenteAval;
+        this.enAttente = enAttente;
+        this.enAttenteMax = enAttenteMax;
+        this.dureeNanos = dureeNanos;
+    }
+
+    public String getNom() { return nom; }
+    public int getParallelisme() { return parallelisme; }
+    public long getRecus() { return recus; }
+    public long getEmis() { return emis; }
+    public long getEchecs() { return echecs; }
+    public long getLots() { return lots; }
+    public int getEnAttente() { return enAttente; }
+    public int getEnAttenteMax() { return enAttenteMax; }
+
+    /** Éléments reçus par seconde. */
+    public double getDebit() {
+        return dureeNanos > 0 ? recus * 1e9 / dureeNanos : 0;
+    }
+
+    /** Durée moyenne de traitement d'un lot, en ms. */
+    public double getLatenceMoyenneMs() {
+        return lots > 0 ? nanosTraitement / 1e6 / lots : 0;
+    }
+
+    public double getLatenceMaxMs() {
+        return nanosTraitementMax / 1e6;
+    }
+
+    /** Temps cumulé (tous threads) bloqué par l'étape suivante, en ms. */
+    public double getAttenteAvalMs() {
+        return nanosAttenteAval / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "%-12s x%-2d reçus %6d, émis %6d, échecs %4d, %7.0f/s, lot %.2f ms (max %.1f), "
+                        + "bloqué par l'aval %.0f ms, en attente max %d",
+                nom, parallelisme, recus, emis, echecs, getDebit(), getLatenceMoyenneMs(), getLatenceMaxMs(),
+                getAttenteAvalMs(), enAttenteMax);
+    }
+}
@@ -0,0 +1,40 @@
+package ch.hearc.meteo.service.pipeline;
+
+/**
+ * Réglage du pipeline de capture : threads par étape, taille des tampons entre étapes,
+ * relevés par transaction d'écriture.
+ */
+public class ReglagePipeline {
+    private int threadsRecuperation = 8;
+    private int threadsPays = 2;
+    private int threadsFiltre = 1;
+    private int threadsEcriture = 1;
+    private int capacite = 256;
+    private int tailleLot = 500;
+
+    public int getThreadsRecuperation() { return threadsRecuperation; }
+    public void setThreadsRecuperation(int threadsRecuperation) { this.threadsRecuperation = threadsRecuperation; }
+
+    public int getThreadsPays() { return threadsPays; }
+    public void setThreadsPays(int threadsPays) { this.threadsPays = threadsPays; }
+
+    public int getThreadsFiltre() { return threadsFiltre; }
+    public void setThreadsFiltre(int threadsFiltre) { this.threadsFiltre = threadsFiltre; }
+
+    public int getThreadsEcriture() { return threadsEcriture; }
+    public void setThreadsEcriture(int threadsEcriture) { this.threadsEcriture = threadsEcriture; }
+
+    /** Éléments en transit au plus entre deux étapes (demandés + tamponnés). */
+    public int getCapacite() { return capacite; }
+    public void setCapacite(int capacite) { this.capacite = capacite; }
+
+    /** Stations écrites au plus par transaction. */
+    public int getTailleLot() { return tailleLot; }
+    public void setTailleLot(int tailleLot) { this.tailleLot = tailleLot; }
+
+    @Override
+    public String toString() {
+        return "récupération x" + threadsRecuperation + ", pays x" + threadsPays + ", filtre x" + threadsFiltre
+                + ", écriture x" + threadsEcriture + ", tampons " + capacite + ", lots de " + tailleLot;
+    }
+}
@@ -0,0 +1,222 @@
+package ch.hearc.meteo.service.rapport;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Statistiques d'une station (ou d'un pays, par fusion) accumulées relevé par relevé,
+ * en champs primitifs : aucun objet créé par relevé.
+ *
+ * - Percentiles de température : histogramme au dixième de degré de -100 à +70 °C (valeurs
+ *   au-delà ramenées aux bornes), fusionnable d'une station à l'autre ; exact à 0.05 °C près.
+ * - Journées découpées dans le fuseau du rapport ; les relevés d'une station arrivent par date
+ *   croissante, la journée courante est close dès qu'un relevé tombe hors de ses bornes.
+ *   Degrés-jours sur la moyenne des températures de la journée ; journée pluvieuse si le cumul
+ *   des précipitations relevées atteint le seuil.
+ *
+ * Non partagé entre threads : chaque tâche a ses accumulateurs.
+ */
+final class AccumulateurStation {
+
+    static final double TEMPERATURE_MIN = -100.0;
+    static final int CASES = 1_701; // -100.0 à +70.0 °C par 0.1
+
+    final int stationId;
+    int stations = 1;
+
+    long releves;
+    long premier = Long.MAX_VALUE;
+    long dernier = Long.MIN_VALUE;
+
+    long nbTemperatures;
+    double sommeTemperatures;
+    double temperatureMin = Double.POSITIVE_INFINITY;
+    long temperatureMinLe;
+    int temperatureMinStation;
+    double temperatureMax = Double.NEGATIVE_INFINITY;
+    long temperatureMaxLe;
+    int temperatureMaxStation;
+    final int[] histogramme = new int[CASES];
+
+    long nbHumidites;
+    double sommeHumidites;
+
+    double pressionMin = Double.POSITIVE_INFINITY;
+    long pressionMinLe;
+    int pressionMinStation;
+    double pressionMax = Double.NEGATIVE_INFINITY;
+    long pressionMaxLe;
+    int pressionMaxStation;
+
+    double precipitationTotale;
+    double precipitationMax = Double.NEGATIVE_INFINITY;
+    long precipitationMaxLe;
+    int precipitationMaxStation;
+
+    long jours;
+    long joursPluie;
+    double degresJourChauffage;
+    double degresJourClimatisation;
+
+    // journée en cours : [jourDebut, jourFin) en ms epoch
+    private long jourDebut = Long.MAX_VALUE;
+    private long jourFin = Long.MIN_VALUE;
+    private double jourSommeTemperatures;
+    private int jourNbTemperatures;
+    private double jourPrecipitation;
+
+    AccumulateurStation(int stationId) {
+        this.stationId = stationId;
+    }
+
+    void ajouter(long dateMs, double temperature, double humidite, double pression, double precipitation,
+                 ReglageRapports reglage) {
+        if (dateMs < jourDebut || dateMs >= jourFin) {
+            fermerJour(reglage);
+            ouvrirJour(dateMs, reglage.getZone());
+        }
+
+        releves++;
+        if (dateMs < premier) premier = dateMs;
+        if (dateMs > dernier) dernier = dateMs;
+
+        if (!Double.isNaN(temperature)) {
+            nbTemperatures++;
+            sommeTemperatures += temperature;
+            histogramme[caseDe(temperature)]++;
+            if (temperature < temperatureMin) {
+                temperatureMin = temperature;
+                temperatureMinLe = dateMs;
+                temperatureMinStation = stationId;
+            }
+            if (temperature > temperatureMax) {
+                temperatureMax = temperature;
+                temperatureMaxLe = dateMs;
+                temperatureMaxStation = stationId;
+            }
+            jourSommeTemperatures += temperature;
+            jourNbTemperatures++;
+        }
+        if (!Double.isNaN(humidite)) {
+            nbHumidites++;
+            sommeHumidites += humidite;
+        }
+        if (!Double.isNaN(pression)) {
+            if (pression < pressionMin) {
+                pressionMin = pression;
+                pressionMinLe = dateMs;
+                pressionMinStation = stationId;
+            }
+            if (pression > pressionMax) {
+                pressionMax = pression;
+                pressionMaxLe = dateMs;
+                pressionMaxStation = stationId;
+            }
+        }
+        if (!Double.isNaN(precipitation)) {
+            precipitationTotale += precipitation;
+            jourPrecipitation += precipitation;
+            if (precipitation > precipitationMax) {
+                precipitationMax = precipitation;
+                precipitationMaxLe = dateMs;
+                precipitationMaxStation = stationId;
+            }
+        }
+    }
+
+    /** Clôt la dernière journée : à appeler une fois tous les relevés de la station lus. */
+    void terminer(ReglageRapports reglage) {
+        fermerJour(reglage);
+        jourDebut = Long.MAX_VALUE;
+        jourFin = Long.MIN_VALUE;
+    }
+
+    /**
+     * Ajoute les statistiques d'une autre station (agrégat par pays) : compteurs, sommes
+     * et histogrammes additionnés, extrêmes comparés (la station qui les détient est gardée).
+     */
+    void fusionner(AccumulateurStation autre) {
+        stations += autre.stations;
+        releves += autre.releves;
+        premier = Math.min(premier, autre.premier);
+        dernier = Math.max(dernier, autre.dernier);
+
+        nbTemperatures += autre.nbTemperatures;
+        sommeTemperatures += autre.sommeTemperatures;
+        for (int i = 0; i < CASES; i++) histogramme[i] += autre.histogramme[i];
+        if (autre.temperatureMin < temperatureMin) {
+            temperatureMin = autre.temperatureMin;
+            temperatureMinLe = autre.temperatureMinLe;
+            temperatureMinStation = autre.temperatureMinStation;
+        }
+        if (autre.temperatureMax > temperatureMax) {
+            temperatureMax = autre.temperatureMax;
+            temperatureMaxLe = autre.temperatureMaxLe;
+            temperatureMaxStation = autre.temperatureMaxStation;
+        }
+
+        nbHumidites += autre.nbHumidites;
+        sommeHumidites += autre.sommeHumidites;
+
+        if (autre.pressionMin < pressionMin) {
+            pressionMin = autre.pressionMin;
+            pressionMinLe = autre.pressionMinLe;
+            pressionMinStation = autre.pressionMinStation;
+        }
+        if (autre.pressionMax > pressionMax) {
+            pressionMax = autre.pressionMax;
+            pressionMaxLe = autre.pressionMaxLe;
+            pressionMaxStation = autre.pressionMaxStation;
+        }
+
+        precipitationTotale += autre.precipitationTotale;
+        if (autre.precipitationMax > precipitationMax) {
+            precipitationMax = autre.precipitationMax;
+            precipitationMaxLe = autre.precipitationMaxLe;
+            precipitationMaxStation = autre.precipitationMaxStation;
+        }
+
+        jours += autre.jours;
+        joursPluie += autre.joursPluie;
+        degresJourChauffage += autre.degresJourChauffage;
+        degresJourClimatisation += autre.degresJourClimatisation;
+    }
+
+    /** Percentile (0 à 1) des températures, au plus proche rang ; NaN sans température. */
+    double percentile(double p) {
+        if (nbTemperatures == 0) return Double.NaN;
+        long rang = Math.max(1, (long) Math.ceil(p * nbTemperatures));
+        long cumul = 0;
+        for (int i = 0; i < CASES; i++) {
+            cumul += histogramme[i];
+            if (cumul >= rang) return TEMPERATURE_MIN + i / 10.0;
+        }
+        return TEMPERATURE_MIN + (CASES - 1) / 10.0;
+    }
+
+    private static int caseDe(double temperature) {
+        long i = Math.round((temperature - TEMPERATURE_MIN) * 10.0);
+        return (int) Math.max(0, Math.min(CASES - 1, i));
+    }
+
+    private void ouvrirJour(long dateMs, ZoneId zone) {
+        LocalDate jour = Instant.ofEpochMilli(dateMs).atZone(zone).toLocalDate();
+        jourDebut = jour.atStartOfDay(zone).toInstant().toEpochMilli();
+        jourFin = jour.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private void fermerJour(ReglageRapports reglage) {
+        if (jourFin == Long.MIN_VALUE) return; // aucune journée ouverte
+        jours++;
+        if (jourPrecipitation >= reglage.getSeuilPluieMm()) joursPluie++;
+        if (jourNbTemperatures > 0) {
+            double moyenne = jourSommeTemperatures / jourNbTemperatures;
+            degresJourChauffage += Math.max(0.0, reglage.getBaseDegresJour() - moyenne);
+            degresJourClimatisation += Math.max(0.0, moyenne - reglage.getBaseDegresJour());
+        }
+        jourSommeTemperatures = 0;
+        jourNbTemperatures = 0;
+        jourPrecipitation = 0;
+    }
+}
@@ -0,0 +1,185 @@
+package ch.hearc.meteo.service.rapport;
+
+import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.infrastructure.persistence.LecteurReleves;
+import ch.hearc.meteo.infrastructure.persistence.MeteoRepository;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moteur de rapports : statistiques par station et par pays sur une période.
+ *
+ * - Les stations sont réparties sur un pool fork/join : une tâche est coupée en deux tant
+ *   qu'elle couvre plus de stationsParTache stations ; chaque tâche terminale lit les relevés
+ *   de ses stations en une requête, en flux (curseur, {@link MeteoRepository#parcourirReleves}),
+ *   dans des accumulateurs primitifs ({@link AccumulateurStation}) : la mémoire ne dépend pas
+ *   du nombre de relevés.
+ * - Les pays sont ensuite obtenus en fusionnant les accumulateurs de leurs stations.
+ *
+ * Une instance par rapport ou réutilisée : aucun état entre deux appels.
+ */
+public class MoteurRapports {
+
+    private final MeteoRepository repository;
+    private final ReglageRapports reglage;
+
+    public MoteurRapports(MeteoRepository repository, ReglageRapports reglage) {
+        if (repository == null || reglage == null) {
+            throw new IllegalArgumentException("repository et reglage requis");
+        }
+        if (reglage.getThreads() < 1 || reglage.getStationsParTache() < 1 || reglage.getTailleLot() < 1) {
+            throw new IllegalArgumentException("réglage des rapports invalide : " + reglage);
+        }
+        this.repository = repository;
+        this.reglage = reglage;
+    }
+
+    /** Rapport sur [debut, fin) ; une borne null n'est pas appliquée. */
+    public RapportMeteo generer(Instant debut, Instant fin) throws Exception {
+        long t0 = System.nanoTime();
+        List<StationMeteo> stations = repository.findAllStations();
+        stations.sort(Comparator.comparing(StationMeteo::getNumero)); // tâches voisines sur des numéros voisins
+
+        AtomicLong relevesLus = new AtomicLong();
+        ForkJoinPool pool = new ForkJoinPool(reglage.getThreads());
+        List<AccumulateurStation> accumulateurs;
+        try {
+            accumulateurs = pool.invoke(new TacheStations(stations, 0, stations.size(), debut, fin, relevesLus));
+        } catch (RuntimeException e) {
+            // erreur de lecture d'une tâche : la cause d'origine (SQLException, IOException...)
+            for (Throwable c = e; c != null; c = c.getCause()) {
+                if (c instanceof Exception && !(c instanceof RuntimeException)) throw (Exception) c;
+            }
+            throw e;
+        } finally {
+            pool.shutdown();
+        }
+
+        Map<Integer, StationMeteo> parNumero = new HashMap<>();
+        Map<Integer, String> noms = new HashMap<>();
+        for (StationMeteo s : stations) {
+            parNumero.put(s.getNumero(), s);
+            noms.put(s.getNumero(), s.getNom());
+        }
+
+        List<StatistiquesMeteo> lignesStations = new ArrayList<>();
+        Map<String, AccumulateurStation> parPays = new LinkedHashMap<>();
+        Map<String, String> nomsPays = new HashMap<>();
+        for (AccumulateurStation a : accumulateurs) {
+            if (a.releves == 0) continue;
+            StationMeteo s = parNumero.get(a.stationId);
+            String codePays = s.getPays() != null && s.getPays().getCode() != null ? s.getPays().getCode() : "?";
+            lignesStations.add(StatistiquesMeteo.depuis(StatistiquesMeteo.NIVEAU_STATION, s.getNom(), codePays,
+                    a, noms, reglage.getZone()));
+
+            AccumulateurStation pays = parPays.get(codePays);
+            if (pays == null) {
+                pays = new AccumulateurStation(-1);
+                pays.stations = 0;
+                parPays.put(codePays, pays);
+                nomsPays.put(codePays, s.getPays() != null && s.getPays().getNom() != null
+                        ? s.getPays().getNom() : codePays);
+            }
+            pays.fusionner(a);
+        }
+
+        List<StatistiquesMeteo> lignesPays = new ArrayList<>();
+        for (Map.Entry<String, AccumulateurStation> e : parPays.entrySet()) {
+            lignesPays.add(StatistiquesMeteo.depuis(StatistiquesMeteo.NIVEAU_PAYS, nomsPays.get(e.getKey()),
+                    e.getKey(), e.getValue(), noms, reglage.getZone()));
+        }
+        lignesStations.sort(Comparator.comparing(StatistiquesMeteo::getNom));
+        lignesPays.sort(Comparator.comparing(StatistiquesMeteo::getNom));
+
+        DateTimeFormatter format = DateTimeFormatter.ISO_OFFSET_DATE_TIME.withZone(reglage.getZone());
+        return new RapportMeteo(debut != null ? format.format(debut) : null, fin != null ? format.format(fin) : null,
+                reglage.toString(), relevesLus.get(), (System.nanoTime() - t0) / 1_000_000,
+                lignesStations, lignesPays);
+    }
+
+    /** Stations [de, a) de la liste : découpée en deux, ou lue en une requête. */
+    private final class TacheStations extends RecursiveTask<List<AccumulateurStation>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<StationMeteo> stations;
+        private final int de;
+        private final int a;
+        private final Instant debut;
+        private final Instant fin;
+        private final AtomicLong relevesLus;
+
+        TacheStations(List<StationMeteo> stations, int de, int a, Instant debut, Instant fin, AtomicLong relevesLus) {
+            this.stations = stations;
+            this.de = de;
+            this.a = a;
+            this.debut = debut;
+            this.fin = fin;
+            this.relevesLus = relevesLus;
+        }
+
+        @Override
+        protected List<AccumulateurStation> compute() {
+            if (a - de > reglage.getStationsParTache()) {
+                int milieu = (de + a) >>> 1;
+                TacheStations gauche = new TacheStations(stations, de, milieu, debut, fin, relevesLus);
+                gauche.fork();
+                List<AccumulateurStation> droite = new TacheStations(stations, milieu, a, debut, fin, relevesLus).compute();
+                List<AccumulateurStation> resultat = gauche.join();
+                resultat.addAll(droite);
+                return resultat;
+            }
+            return lire();
+        }
+
+        private List<AccumulateurStation> lire() {
+            Map<Integer, AccumulateurStation> parNumero = new LinkedHashMap<>();
+            for (int i = de; i < a; i++) {
+                Integer numero = stations.get(i).getNumero();
+                parNumero.put(numero, new AccumulateurStation(numero));
+            }
+            Lecture lecture = new Lecture(parNumero);
+            try {
+                repository.parcourirReleves(parNumero.keySet(), debut, fin, reglage.getTailleLot(), lecture);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("Lecture des relevés échouée : " + e.getMessage(), e);
+            }
+            for (AccumulateurStation acc : parNumero.values()) acc.terminer(reglage);
+            relevesLus.addAndGet(lecture.lus);
+            return new ArrayList<>(parNumero.values());
+        }
+    }
+
+    /** Aiguille chaque relevé lu vers l'accumulateur de sa station (lignes groupées par station). */
+    private final class Lecture implements LecteurReleves {
+        private final Map<Integer, AccumulateurStation> parNumero;
+        private AccumulateurStation courant;
+        private long lus;
+
+        Lecture(Map<Integer, AccumulateurStation> parNumero) {
+            this.parNumero = parNumero;
+        }
+
+        @Override
+        public void releve(int stationId, long dateMs, double temperature, double humidite,
+                           double pression, double precipitation) {
+            if (courant == null || courant.stationId != stationId) {
+                courant = parNumero.get(stationId);
+                if (courant == null) return;
+            }
+            courant.ajouter(dateMs, temperature, humidite, pression, precipitation, reglage);
+            lus++;
+        }
+    }
+}
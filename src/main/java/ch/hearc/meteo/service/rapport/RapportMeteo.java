@@ -0,0 +1,113 @@
+package ch.hearc.meteo.service.rapport;
+
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Rapport sur une période : une ligne par station ayant des relevés, une ligne par pays.
+ * Export CSV (une ligne par station puis par pays, colonne niveau) ou JSON (deux tableaux).
+ */
+public class RapportMeteo {
+
+    static final String[] COLONNES_CSV = {"niveau", "nom", "pays", "stations", "releves",
+            "premier_releve", "dernier_releve",
+            "temperature_moyenne", "temperature_p10", "temperature_mediane", "temperature_p90",
+            "temperature_min", "temperature_min_le", "temperature_min_station",
+            "temperature_max", "temperature_max_le", "temperature_max_station",
+            "humidite_moyenne",
+            "pression_min", "pression_min_le", "pression_min_station",
+            "pression_max", "pression_max_le", "pression_max_station",
+            "precipitation_totale", "precipitation_max", "precipitation_max_le", "precipitation_max_station",
+            "jours", "jours_pluie", "degres_jour_chauffage", "degres_jour_climatisation"};
+
+    private final String debut;
+    private final String fin;
+    private final String reglage;
+    private final long relevesLus;
+    private final long dureeMs;
+    private final List<StatistiquesMeteo> stations;
+    private final List<StatistiquesMeteo> pays;
+
+    RapportMeteo(String debut, String fin, String reglage, long relevesLus, long dureeMs,
+                 List<StatistiquesMeteo> stations, List<StatistiquesMeteo> pays) {
+        this.debut = debut;
+        this.fin = fin;
+        this.reglage = reglage;
+        this.relevesLus = relevesLus;
+        this.dureeMs = dureeMs;
+        this.stations = stations;
+        this.pays = pays;
+    }
+
+    /** Début de la période (inclus), ISO 8601 ; null : depuis le premier relevé. */
+    public String getDebut() { return debut; }
+    /** Fin de la période (exclue), ISO 8601 ; null : jusqu'au dernier relevé. */
+    public String getFin() { return fin; }
+    public long getRelevesLus() { return relevesLus; }
+    public long getDureeMs() { return dureeMs; }
+    /** Stations ayant au moins un relevé sur la période, par nom. */
+    public List<StatistiquesMeteo> getStations() { return stations; }
+    /** Pays, par nom. */
+    public List<StatistiquesMeteo> getPays() { return pays; }
+
+    /** CSV si le nom du fichier ne finit pas par .json, JSON sinon (UTF-8). */
+    public void ecrire(Path fichier) throws IOException {
+        try (Writer w = Files.newBufferedWriter(fichier, StandardCharsets.UTF_8)) {
+            if (fichier.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json")) {
+                ecrireJson(w);
+            } else {
+                ecrireCsv(w);
+            }
+        }
+    }
+
+    /** Séparateur virgule, point décimal, dates ISO 8601, valeur absente : champ vide. */
+    public void ecrireCsv(Writer w) throws IOException {
+        w.write(String.join(",", COLONNES_CSV));
+        w.write('\n');
+        for (StatistiquesMeteo s : stations) ligneCsv(w, s);
+        for (StatistiquesMeteo s : pays) ligneCsv(w, s);
+        w.flush();
+    }
+
+    public void ecrireJson(Writer w) throws IOException {
+        new GsonBuilder().serializeNulls().setPrettyPrinting().create().toJson(this, w);
+        w.flush();
+    }
+
+    private static void ligneCsv(Writer w, StatistiquesMeteo s) throws IOException {
+        Object[] valeurs = s.valeurs();
+        for (int i = 0; i < valeurs.length; i++) {
+            if (i > 0) w.write(',');
+            Object v = valeurs[i];
+            if (v == null) continue;
+            if (v instanceof Double) {
+                w.write(String.format(Locale.ROOT, "%.2f", (Double) v));
+            } else if (v instanceof String) {
+                w.write(champCsv((String) v));
+            } else {
+                w.write(v.toString());
+            }
+        }
+        w.write('\n');
+    }
+
+    /** Guillemets si le texte contient un séparateur, un guillemet ou un saut de ligne. */
+    private static String champCsv(String texte) {
+        if (texte.indexOf(',') < 0 && texte.indexOf('"') < 0 && texte.indexOf('\n') < 0) return texte;
+        return '"' + texte.replace("\"", "\"\"") + '"';
+    }
+
+    @Override
+    public String toString() {
+        return stations.size() + " station(s), " + pays.size() + " pays, " + relevesLus + " relevé(s) lus en "
+                + dureeMs + " ms (" + (dureeMs > 0 ? relevesLus * 1000 / dureeMs : relevesLus) + " relevés/s)";
+    }
+}
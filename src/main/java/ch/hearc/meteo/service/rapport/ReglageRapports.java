@@ -0,0 +1,46 @@
+package ch.hearc.meteo.service.rapport;
+
+import java.time.ZoneId;
+
+/**
+ * Réglage des rapports : parallélisme, lecture en base, définitions climatologiques
+ * (base des degrés-jours, seuil d'un jour de pluie, fuseau des journées).
+ */
+public class ReglageRapports {
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int stationsParTache = 8;
+    private int tailleLot = 5_000;
+    private double baseDegresJour = 18.0;
+    private double seuilPluieMm = 1.0;
+    private ZoneId zone = ZoneId.systemDefault();
+
+    /** Threads du pool fork/join (lectures en base simultanées au plus). */
+    public int getThreads() { return threads; }
+    public void setThreads(int threads) { this.threads = threads; }
+
+    /** Stations lues par une même requête : en dessous, une tâche n'est plus découpée. */
+    public int getStationsParTache() { return stationsParTache; }
+    public void setStationsParTache(int stationsParTache) { this.stationsParTache = stationsParTache; }
+
+    /** Lignes lues par aller-retour avec la base (fetch size du curseur). */
+    public int getTailleLot() { return tailleLot; }
+    public void setTailleLot(int tailleLot) { this.tailleLot = tailleLot; }
+
+    /** Température de base (°C) des degrés-jours de chauffage et de climatisation. */
+    public double getBaseDegresJour() { return baseDegresJour; }
+    public void setBaseDegresJour(double baseDegresJour) { this.baseDegresJour = baseDegresJour; }
+
+    /** Cumul de précipitations (mm) à partir duquel une journée compte comme pluvieuse. */
+    public double getSeuilPluieMm() { return seuilPluieMm; }
+    public void setSeuilPluieMm(double seuilPluieMm) { this.seuilPluieMm = seuilPluieMm; }
+
+    /** Fuseau dans lequel les journées sont découpées (et les dates du rapport affichées). */
+    public ZoneId getZone() { return zone; }
+    public void setZone(ZoneId zone) { this.zone = zone; }
+
+    @Override
+    public String toString() {
+        return threads + " thread(s), " + stationsParTache + " station(s) par tâche, lecture par " + tailleLot
+                + " lignes, degrés-jours base " + baseDegresJour + " °C, pluie dès " + seuilPluieMm + " mm, " + zone;
+    }
+}
@@ -0,0 +1,166 @@
+package ch.hearc.meteo.service.rapport;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+/**
+ * Une ligne de rapport : statistiques d'une station, ou d'un pays (toutes ses stations).
+ *
+ * - Extrêmes avec leur date (ISO 8601, fuseau du rapport) et la station qui les détient.
+ * - Percentiles de température au dixième de degré.
+ * - Pour un pays, jours, jours de pluie, cumul de précipitations et degrés-jours sont
+ *   la moyenne de ses stations (une somme sur les stations n'aurait pas de sens climatique).
+ *
+ * Valeur absente (aucun relevé ne la fournit) : null.
+ */
+public class StatistiquesMeteo {
+
+    public static final String NIVEAU_STATION = "station";
+    public static final String NIVEAU_PAYS = "pays";
+
+    private String niveau;
+    private String nom;
+    private String pays;
+    private int stations;
+    private long releves;
+    private String premierReleve;
+    private String dernierReleve;
+
+    private Double temperatureMoyenne;
+    private Double temperatureP10;
+    private Double temperatureMediane;
+    private Double temperatureP90;
+    private Double temperatureMin;
+    private String temperatureMinLe;
+    private String temperatureMinStation;
+    private Double temperatureMax;
+    private String temperatureMaxLe;
+    private String temperatureMaxStation;
+
+    private Double humiditeMoyenne;
+
+    private Double pressionMin;
+    private String pressionMinLe;
+    private String pressionMinStation;
+    private Double pressionMax;
+    private String pressionMaxLe;
+    private String pressionMaxStation;
+
+    private Double precipitationTotale;
+    private Double precipitationMax;
+    private String precipitationMaxLe;
+    private String precipitationMaxStation;
+
+    private double jours;
+    private double joursPluie;
+    private Double degresJourChauffage;
+    private Double degresJourClimatisation;
+
+    /** Ligne construite à partir d'un accumulateur clos ; noms : numéro de station -> nom. */
+    static StatistiquesMeteo depuis(String niveau, String nom, String pays, AccumulateurStation a,
+                                    Map<Integer, String> noms, ZoneId zone) {
+        DateTimeFormatter format = DateTimeFormatter.ISO_OFFSET_DATE_TIME.withZone(zone);
+        StatistiquesMeteo s = new StatistiquesMeteo();
+        double parStation = Math.max(1, a.stations);
+
+        s.niveau = niveau;
+        s.nom = nom;
+        s.pays = pays;
+        s.stations = a.stations;
+        s.releves = a.releves;
+        if (a.releves > 0) {
+            s.premierReleve = format.format(Instant.ofEpochMilli(a.premier));
+            s.dernierReleve = format.format(Instant.ofEpochMilli(a.dernier));
+        }
+
+        if (a.nbTemperatures > 0) {
+            s.temperatureMoyenne = a.sommeTemperatures / a.nbTemperatures;
+            s.temperatureP10 = a.percentile(0.10);
+            s.temperatureMediane = a.percentile(0.50);
+            s.temperatureP90 = a.percentile(0.90);
+            s.temperatureMin = a.temperatureMin;
+            s.temperatureMinLe = format.format(Instant.ofEpochMilli(a.temperatureMinLe));
+            s.temperatureMinStation = noms.get(a.temperatureMinStation);
+            s.temperatureMax = a.temperatureMax;
+            s.temperatureMaxLe = format.format(Instant.ofEpochMilli(a.temperatureMaxLe));
+            s.temperatureMaxStation = noms.get(a.temperatureMaxStation);
+            s.degresJourChauffage = a.degresJourChauffage / parStation;
+            s.degresJourClimatisation = a.degresJourClimatisation / parStation;
+        }
+        if (a.nbHumidites > 0) {
+            s.humiditeMoyenne = a.sommeHumidites / a.nbHumidites;
+        }
+        if (a.pressionMin != Double.POSITIVE_INFINITY) {
+            s.pressionMin = a.pressionMin;
+            s.pressionMinLe = format.format(Instant.ofEpochMilli(a.pressionMinLe));
+            s.pressionMinStation = noms.get(a.pressionMinStation);
+            s.pressionMax = a.pressionMax;
+            s.pressionMaxLe = format.format(Instant.ofEpochMilli(a.pressionMaxLe));
+            s.pressionMaxStation = noms.get(a.pressionMaxStation);
+        }
+        if (a.precipitationMax != Double.NEGATIVE_INFINITY) {
+            s.precipitationTotale = a.precipitationTotale / parStation;
+            s.precipitationMax = a.precipitationMax;
+            s.precipitationMaxLe = format.format(Instant.ofEpochMilli(a.precipitationMaxLe));
+            s.precipitationMaxStation = noms.get(a.precipitationMaxStation);
+        }
+        s.jours = a.jours / parStation;
+        s.joursPluie = a.joursPluie / parStation;
+        return s;
+    }
+
+    /** {@link #NIVEAU_STATION} ou {@link #NIVEAU_PAYS}. */
+    public String getNiveau() { return niveau; }
+    /** Nom de la station, ou du pays. */
+    public String getNom() { return nom; }
+    /** Code du pays. */
+    public String getPays() { return pays; }
+    public int getStations() { return stations; }
+    public long getReleves() { return releves; }
+    public String getPremierReleve() { return premierReleve; }
+    public String getDernierReleve() { return dernierReleve; }
+
+    public Double getTemperatureMoyenne() { return temperatureMoyenne; }
+    public Double getTemperatureP10() { return temperatureP10; }
+    public Double getTemperatureMediane() { return temperatureMediane; }
+    public Double getTemperatureP90() { return temperatureP90; }
+    public Double getTemperatureMin() { return temperatureMin; }
+    public String getTemperatureMinLe() { return temperatureMinLe; }
+    public String getTemperatureMinStation() { return temperatureMinStation; }
+    public Double getTemperatureMax() { return temperatureMax; }
+    public String getTemperatureMaxLe() { return temperatureMaxLe; }
+    public String getTemperatureMaxStation() { return temperatureMaxStation; }
+
+    public Double getHumiditeMoyenne() { return humiditeMoyenne; }
+
+    public Double getPressionMin() { return pressionMin; }
+    public String getPressionMinLe() { return pressionMinLe; }
+    public String getPressionMinStation() { return pressionMinStation; }
+    public Double getPressionMax() { return pressionMax; }
+    public String getPressionMaxLe() { return pressionMaxLe; }
+    public String getPressionMaxStation() { return pressionMaxStation; }
+
+    public Double getPrecipitationTotale() { return precipitationTotale; }
+    public Double getPrecipitationMax() { return precipitationMax; }
+    public String getPrecipitationMaxLe() { return precipitationMaxLe; }
+    public String getPrecipitationMaxStation() { return precipitationMaxStation; }
+
+    public double getJours() { return jours; }
+    public double getJoursPluie() { return joursPluie; }
+    public Double getDegresJourChauffage() { return degresJourChauffage; }
+    public Double getDegresJourClimatisation() { return degresJourClimatisation; }
+
+    /** Valeurs dans l'ordre des colonnes de {@link RapportMeteo#COLONNES_CSV}. */
+    Object[] valeurs() {
+        return new Object[]{niveau, nom, pays, stations, releves, premierReleve, dernierReleve,
+                temperatureMoyenne, temperatureP10, temperatureMediane, temperatureP90,
+                temperatureMin, temperatureMinLe, temperatureMinStation,
+                temperatureMax, temperatureMaxLe, temperatureMaxStation,
+                humiditeMoyenne,
+                pressionMin, pressionMinLe, pressionMinStation, pressionMax, pressionMaxLe, pressionMaxStation,
+                precipitationTotale, precipitationMax, precipitationMaxLe, precipitationMaxStation,
+                jours, joursPluie, degresJourChauffage, degresJourClimatisation};
+    }
+}
@@ -0,0 +1,96 @@
+/* Schéma de la base embarquée H2.
+   Même structure que database/schema.sql (Oracle) : les colonnes identité
+   remplacent les séquences, et la table meteo n'est pas partitionnée (H2 ne le permet pas).
+   Le script est rejoué à chaque démarrage : il doit rester idempotent.
+ */
+CREATE TABLE IF NOT EXISTS pays (
+    pays_id INT GENERATED BY DEFAULT AS IDENTITY,
+    nom VARCHAR(255) NOT NULL,
+    code_pays VARCHAR(10) UNIQUE,
+    CONSTRAINT pk_pays PRIMARY KEY (pays_id)
+);
+
+CREATE TABLE IF NOT EXISTS stations_meteo (
+    station_id INT GENERATED BY DEFAULT AS IDENTITY,
+    pays_id INT,
+    nom VARCHAR(255) NOT NULL,
+    latitude DOUBLE PRECISION NOT NULL,
+    longitude DOUBLE PRECISION NOT NULL,
+    openweather_id INT,
+    CONSTRAINT pk_stations_meteo PRIMARY KEY (station_id),
+    CONSTRAINT fk_stations_meteo_pays FOREIGN KEY (pays_id) REFERENCES pays (pays_id)
+);
+
+CREATE TABLE IF NOT EXISTS meteo (
+    meteo_id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    station_id INT,
+    date_releve TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    temperature DOUBLE PRECISION,
+    humidite DOUBLE PRECISION,
+    pression DOUBLE PRECISION,
+    visibilite INT,
+    precipitation DOUBLE PRECISION,
+    description VARCHAR(255),
+    CONSTRAINT pk_meteo PRIMARY KEY (meteo_id),
+    CONSTRAINT fk_meteo_station FOREIGN KEY (station_id) REFERENCES stations_meteo (station_id)
+);
+
+/* Prévisions : une ligne par station et par instant prévu (écrasée à chaque récupération) */
+CREATE TABLE IF NOT EXISTS prevision (
+    prevision_id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    station_id INT NOT NULL,
+    date_prevue TIMESTAMP NOT NULL,
+    date_emission TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    temperature DOUBLE PRECISION,
+    humidite DOUBLE PRECISION,
+    pression DOUBLE PRECISION,
+    visibilite INT,
+    precipitation DOUBLE PRECISION,
+    description VARCHAR(255),
+    CONSTRAINT pk_prevision PRIMARY KEY (prevision_id),
+    CONSTRAINT uq_prevision_station_date UNIQUE (station_id, date_prevue),
+    CONSTRAINT fk_prevision_station FOREIGN KEY (station_id) REFERENCES stations_meteo (station_id)
+);
+
+/* Index utilisés par les lectures historiques (recherche par nom, puis par date).
+   uq_meteo_station_date : un relevé par station et par instant ; uq_stations_meteo : une station
+   par nom et position (index uniques plutôt que contraintes de table, pour s'appliquer aussi
+   aux bases déjà créées). */
+CREATE INDEX IF NOT EXISTS idx_stations_meteo_nom ON stations_meteo (nom);
+CREATE UNIQUE INDEX IF NOT EXISTS uq_meteo_station_date ON meteo (station_id, date_releve);
+CREATE UNIQUE INDEX IF NOT EXISTS uq_stations_meteo ON stations_meteo (nom, latitude, longitude);
+
+/* Rétention : sans partitions, les relevés anciens sont supprimés par lots (date_releve < limite). */
+CREATE INDEX IF NOT EXISTS idx_meteo_date ON meteo (date_releve);
+
+/* Coordination du mode cluster : bail de chaque nœud actif, nœud qui capture chaque station. */
+CREATE TABLE IF NOT EXISTS noeuds_capture (
+    noeud VARCHAR(100) NOT NULL,
+    expire_le TIMESTAMP NOT NULL,
+    CONSTRAINT pk_noeuds_capture PRIMARY KEY (noeud)
+);
+
+CREATE TABLE IF NOT EXISTS baux_stations (
+    station_id INT NOT NULL,
+    noeud VARCHAR(100) NOT NULL,
+    expire_le TIMESTAMP NOT NULL,
+    CONSTRAINT pk_baux_stations PRIMARY KEY (station_id),
+    CONSTRAINT fk_baux_stations_station FOREIGN KEY (station_id) REFERENCES stations_meteo (station_id) ON DELETE CASCADE
+);
+CREATE INDEX IF NOT EXISTS idx_baux_stations_noeud ON baux_stations (noeud);
+
+/* Résumés journaliers : une ligne par station et par journée, avec les esquisses sérialisées
+   (t-digest des températures, HyperLogLog des conditions) ; conservés après la purge des relevés. */
+CREATE TABLE IF NOT EXISTS resume_jour (
+    station_id INT NOT NULL,
+    jour DATE NOT NULL,
+    nb_releves BIGINT NOT NULL,
+    temperature_min DOUBLE PRECISION,
+    temperature_max DOUBLE PRECISION,
+    temperature_somme DOUBLE PRECISION,
+    precipitation DOUBLE PRECISION,
+    esquisse_temperature BLOB,
+    esquisse_conditions BLOB,
+    CONSTRAINT pk_resume_jour PRIMARY KEY (station_id, jour),
+    CONSTRAINT fk_resume_jour_station FOREIGN KEY (station_id) REFERENCES stations_meteo (station_id) ON DELETE CASCADE
+);
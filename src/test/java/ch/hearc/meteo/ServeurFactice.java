@@ -0,0 +1,175 @@
+package ch.hearc.meteo;
+
+import ch.hearc.meteo.infrastructure.http.CountryClient;
+import ch.hearc.meteo.infrastructure.http.OpenWeatherMapClient;
+import ch.hearc.meteo.infrastructure.http.PoolClesApi;
+import ch.hearc.meteo.infrastructure.http.TransportHttp;
+import ch.hearc.meteo.infrastructure.persistence.MeteoRepository;
+import ch.hearc.meteo.service.MeteoServiceImpl;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Faux services OpenWeatherMap ({@code /data/2.5/weather}) et Country ({@code /country}) sur un
+ * serveur HTTP local, pour les tests sans réseau. Le faux OWM répond, après la latence simulée,
+ * par l'observation que le test construit à partir des paramètres de l'appel (lat, lon, appid...) ;
+ * le faux Country répond toujours « CH / Suisse ».
+ */
+public final class ServeurFactice implements AutoCloseable {
+
+    /** Observation servie par le faux OWM pour un appel. */
+    public interface Observateur {
+        Observation observer(Map<String, String> parametres);
+    }
+
+    /** Météo actuelle d'une position, telle que sérialisée par le faux OWM. */
+    public static final class Observation {
+        final double latitude;
+        final double longitude;
+        final double temperature;
+        final long dt;
+        final int idOwm;
+        final String nom;
+
+        public Observation(double latitude, double longitude, double temperature, long dt, int idOwm, String nom) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.temperature = temperature;
+            this.dt = dt;
+            this.idOwm = idOwm;
+            this.nom = nom;
+        }
+
+        String json() {
+            // température en toutes décimales : la valeur relue en base se compare à l'identique
+            return String.format(Locale.ROOT,
+                    "{\"coord\":{\"lon\":%.4f,\"lat\":%.4f},\"weather\":[{\"description\":\"ciel dégagé\"}],"
+                            + "\"main\":{\"temp\":%s,\"pressure\":1015,\"humidity\":60},\"visibility\":10000,"
+                            + "\"dt\":%d,\"sys\":{\"country\":\"CH\"},\"id\":%d,\"name\":\"%s\"}",
+                    longitude, latitude, temperature, dt, idOwm, nom);
+        }
+    }
+
+    private final HttpServer serveur;
+    private final ExecutorService executeur;
+    private final AtomicLong octetsServis = new AtomicLong();
+
+    private ServeurFactice(int latenceMs, Observateur owm) throws IOException {
+        // en-têtes et corps écrits séparément : sans TCP_NODELAY, l'accusé de réception retardé
+        // ajoute ~40 ms par réponse et masquerait la latence simulée
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        serveur = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serveur.createContext("/data/2.5/weather", ex -> {
+            pause(latenceMs);
+            repondre(ex, owm.observer(parametres(ex)).json());
+        });
+        serveur.createContext("/country", ex -> {
+            pause(latenceMs);
+            repondre(ex, "{\"code\":\"CH\",\"name\":\"Suisse\"}");
+        });
+        executeur = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "faux-serveur");
+            t.setDaemon(true);
+            return t;
+        });
+        serveur.setExecutor(executeur);
+        serveur.start();
+    }
+
+    /** Démarre les faux services sur un port libre. */
+    public static ServeurFactice demarrer(int latenceMs, Observateur owm) throws IOException {
+        return new ServeurFactice(latenceMs, owm);
+    }
+
+    /** URL de base, ex. {@code http://localhost:53124}. */
+    public String getUrl() {
+        return "http://localhost:" + serveur.getAddress().getPort();
+    }
+
+    public String getUrlMeteo() {
+        return getUrl() + "/data/2.5/weather";
+    }
+
+    public String getUrlPays() {
+        return getUrl() + "/country";
+    }
+
+    /** Octets des corps de réponse servis depuis le démarrage. */
+    public long getOctetsServis() {
+        return octetsServis.get();
+    }
+
+    /** Service complet branché sur les faux services (une clé API, quota illimité). */
+    public MeteoServiceImpl service(TransportHttp transport, MeteoRepository repo) {
+        OpenWeatherMapClient owm = new OpenWeatherMapClient(getUrlMeteo(), null,
+                new PoolClesApi(Collections.singletonList("cle-test"), 1_000_000), transport);
+        return new MeteoServiceImpl(owm, new CountryClient(getUrlPays(), transport), repo);
+    }
+
+    @Override
+    public void close() {
+        serveur.stop(0);
+        executeur.shutdownNow();
+    }
+
+    /** Température déterministe par position et observation : une valeur relue se vérifie. */
+    public static double temperature(int position, long dt) {
+        return ((position * 31L + dt / 60) % 400) / 10.0 - 10.0;
+    }
+
+    /** Exécute l'action traces du service masquées (relevé inchangé, etc.), par exemple pendant une mesure. */
+    public static <T> T sansTraces(Callable<T> action) throws Exception {
+        PrintStream sortie = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            return action.call();
+        } finally {
+            System.setOut(sortie);
+        }
+    }
+
+    private static Map<String, String> parametres(HttpExchange ex) {
+        Map<String, String> q = new HashMap<>();
+        String requete = ex.getRequestURI().getRawQuery();
+        if (requete != null) {
+            for (String kv : requete.split("&")) {
+                int i = kv.indexOf('=');
+                if (i > 0) q.put(kv.substring(0, i), kv.substring(i + 1));
+            }
+        }
+        return q;
+    }
+
+    private void repondre(HttpExchange ex, String json) throws IOException {
+        byte[] corps = json.getBytes(StandardCharsets.UTF_8);
+        octetsServis.addAndGet(corps.length);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(200, corps.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(corps);
+        }
+    }
+
+    private static void pause(int ms) {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package ch.hearc.meteo.application;
+
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.Pays;
+import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.exception.ApiClientException;
+import ch.hearc.meteo.infrastructure.http.CountryClient;
+import ch.hearc.meteo.infrastructure.http.TransportHttp;
+import ch.hearc.meteo.infrastructure.persistence.H2MeteoRepository;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pipeline de démarrage ({@link Demarrage}) :
+ *
+ * 1. étapes indépendantes exécutées en même temps (chacune attend l'autre : impossible en série) ;
+ * 2. étape dépendante lancée après son prérequis, avec sa valeur ; étape en échec sans bloquer le démarrage ;
+ *    durée de chaque étape et ligne "Application prête." affichées ;
+ * 3. cache des pays prérempli depuis la table pays (étape "cache pays") : pays connus servis sans appel HTTP.
+ */
+class DemarrageTest {
+
+    private static final int ETAPES_PARALLELES = 2; // taille minimale du pool de démarrage
+    private static final long PAUSE_MS = 200;
+
+    @Test
+    void etapesIndependantesEnParallele() throws Exception {
+        Demarrage demarrage = new Demarrage();
+        CountDownLatch toutesLancees = new CountDownLatch(ETAPES_PARALLELES);
+        List<CompletableFuture<Boolean>> etapes = new ArrayList<>();
+        for (int i = 0; i < ETAPES_PARALLELES; i++) {
+            etapes.add(demarrage.lancer("étape " + i, () -> {
+                toutesLancees.countDown();
+                try {
+                    return toutesLancees.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }));
+        }
+        String sortie = sortie(demarrage::attendrePret);
+        for (CompletableFuture<Boolean> etape : etapes) {
+            assertTrue(etape.get(), "les étapes ont tourné en même temps");
+        }
+        for (int i = 0; i < ETAPES_PARALLELES; i++) {
+            assertTrue(sortie.contains("étape " + i + " "), "durée de l'étape " + i + " : " + sortie);
+        }
+        assertTrue(sortie.contains("Application prête."), sortie);
+    }
+
+    @Test
+    void etapeDependanteEtEtapeEnEchec() throws Exception {
+        Demarrage demarrage = new Demarrage();
+        assertEquals("config", demarrage.mesurer("configuration", () -> "config"), "étape du thread courant");
+
+        AtomicLong finPrerequis = new AtomicLong();
+        CompletableFuture<Integer> base = demarrage.lancer("base", () -> {
+            pause(PAUSE_MS);
+            finPrerequis.set(System.nanoTime());
+            return 42;
+        });
+        CompletableFuture<Long> dependante = demarrage.lancerApres("index", base, v -> {
+            assertEquals(42, v.intValue(), "valeur du prérequis");
+            return System.nanoTime();
+        });
+        demarrage.lancer("en échec", () -> {
+            throw new IllegalStateException("sonde indisponible");
+        });
+
+        ByteArrayOutputStream erreurs = new ByteArrayOutputStream();
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(erreurs, true, StandardCharsets.UTF_8));
+        String sortie;
+        try {
+            sortie = sortie(demarrage::attendrePret);
+        } finally {
+            System.setErr(err);
+        }
+
+        assertTrue(dependante.isDone() && !dependante.isCompletedExceptionally());
+        assertTrue(dependante.get() >= finPrerequis.get(), "lancée après la fin de son prérequis");
+        assertTrue(erreurs.toString(StandardCharsets.UTF_8).contains("sonde indisponible"), "échec signalé");
+        assertTrue(sortie.contains("configuration ") && sortie.contains("base ") && sortie.contains("index "), sortie);
+        assertTrue(sortie.contains("Application prête."), "démarrage malgré l'étape en échec");
+    }
+
+    @Test
+    void paysConnusServisSansAppel() throws Exception {
+        H2MeteoRepository repo = new H2MeteoRepository("jdbc:h2:mem:demarrage;DB_CLOSE_DELAY=-1", "sa", "");
+        repo.initialiserSchema();
+        repo.save(station("Neuchâtel", "CH", "Suisse"));
+        repo.save(station("Pontarlier", "FR", "France"));
+
+        // service Country injoignable : tout appel HTTP échouerait
+        TransportHttp transport = new TransportHttp(Duration.ofMillis(500), Duration.ofSeconds(1), 1);
+        CountryClient client = new CountryClient("http://127.0.0.1:1/country", transport);
+        Demarrage demarrage = new Demarrage();
+        CompletableFuture<List<Pays>> pays = demarrage.lancer("pays", () -> {
+            try {
+                return repo.findAllPays();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        demarrage.lancerApres("cache pays", pays, p -> {
+            client.prechargerCache(p, "fr");
+            return p.size();
+        });
+        sortie(demarrage::attendrePret);
+
+        assertEquals(2, pays.get().size());
+        assertEquals("Suisse", client.fetchPaysByAlpha2("ch", "fr").getNom());
+        assertEquals("France", client.fetchPaysByAlpha2("FR", "fr").getNom());
+        assertTrue(client.statistiques().contains("2 servis depuis le cache"), client.statistiques());
+        assertEquals(0, transport.metriques().getRequetes(), "aucun appel HTTP");
+        assertThrows(ApiClientException.class, () -> client.fetchPaysByAlpha2("DE", "fr"),
+                "pays inconnu : appel au service (injoignable)");
+    }
+
+    // -------------------------------------------------------
+    // Utilitaires
+    // -------------------------------------------------------
+
+    /** Exécute l'action et renvoie ce qu'elle a affiché sur la sortie standard. */
+    private static String sortie(Runnable action) {
+        ByteArrayOutputStream tampon = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(tampon, true, StandardCharsets.UTF_8));
+        try {
+            action.run();
+        } finally {
+            System.setOut(out);
+        }
+        String texte = tampon.toString(StandardCharsets.UTF_8);
+        out.print(texte);
+        return texte;
+    }
+
+    private static void pause(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static StationMeteo station(String nom, String code, String nomPays) {
+        Pays pays = new Pays();
+        pays.setCode(code);
+        pays.setNom(nomPays);
+        StationMeteo s = new StationMeteo();
+        s.setNom(nom);
+        s.setLatitude(46.9);
+        s.setLongitude(6.5);
+        s.setPays(pays);
+        Meteo m = new Meteo();
+        m.setDateMesureMs(1_700_000_000_000L);
+        m.setTemperature(12.5);
+        s.addMeteo(m);
+        return s;
+    }
+}
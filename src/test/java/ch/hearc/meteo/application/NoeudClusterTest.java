@@ -0,0 +1,293 @@
+package ch.hearc.meteo.application;
+
+import ch.hearc.meteo.ServeurFactice;
+import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.infrastructure.persistence.H2MeteoRepository;
+import org.h2.tools.Server;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Mode cluster : plusieurs JVM {@link NoeudCluster} sur cette machine, une base H2 en mémoire
+ * partagée via un serveur TCP H2 lancé ici, faux OWM et Country (chaque nœud a sa clé API :
+ * le faux OWM sait quel nœud capture quelle station).
+ *
+ * Déroulement : démarrage de tous les nœuds sauf un, régime établi, arrivée du dernier nœud
+ * (redistribution), arrêt brutal d'un nœud (kill -9), reprise de ses stations par les autres,
+ * fenêtre d'observation, arrêt propre des autres.
+ * Vérifie :
+ * - jamais deux nœuds sur une même station : une station ne revient jamais à un nœud qui l'a cédée
+ *   (hors nœud arrêté), et un seul nœud par station pendant la fenêtre finale ;
+ * - reprise : toutes les stations, y compris celles du nœud arrêté, capturées pendant la fenêtre finale ;
+ * - base : aucun relevé en double, un relevé récent pour chaque station.
+ *
+ * Journaux des nœuds dans un répertoire temporaire (affiché).
+ */
+class NoeudClusterTest {
+
+    private static final int NOEUDS = 3;
+    private static final int STATIONS = 300;
+    private static final String BASE = "mem:cluster";
+    private static final long DT_BASE = 1_700_000_000L; // secondes
+    private static final long PERIODE_OBSERVATION_MS = 2_000; // nouvelle observation OWM toutes les 2 s
+    private static final int BAIL_SECONDES = 4;
+    private static final int COLONNES = 50;
+
+    /** Appel reçu par le faux OWM : station, nœud (clé API), instant. */
+    private static final class Capture {
+        final int position;
+        final String noeud;
+        final long ms;
+
+        Capture(int position, String noeud, long ms) {
+            this.position = position;
+            this.noeud = noeud;
+            this.ms = ms;
+        }
+    }
+
+    private final ConcurrentLinkedQueue<Capture> captures = new ConcurrentLinkedQueue<>();
+
+    @Test
+    void arriveeEtArretBrutalDUnNoeud() throws Exception {
+        ServeurFactice http = ServeurFactice.demarrer(0, q -> {
+            int p = position(Double.parseDouble(q.get("lat")), Double.parseDouble(q.get("lon")));
+            long maintenant = System.currentTimeMillis();
+            captures.add(new Capture(p, q.getOrDefault("appid", "?").replace("cle-", ""), maintenant));
+            long dt = dt(maintenant);
+            return new ServeurFactice.Observation(latitude(p), longitude(p),
+                    ServeurFactice.temperature(p, dt), dt, 200_000 + p, nom(p));
+        });
+        int portH2 = portLibre();
+        Server h2 = Server.createTcpServer("-tcpPort", String.valueOf(portH2), "-ifNotExists").start();
+        Path repertoire = Files.createTempDirectory("cluster");
+        Map<String, Process> noeuds = new LinkedHashMap<>();
+
+        try {
+            // la base reste ouverte dans cette JVM (DB_CLOSE_DELAY) : partagée par les nœuds via TCP
+            H2MeteoRepository repo = new H2MeteoRepository("jdbc:h2:" + BASE, "sa", "");
+            repo.initialiserSchema();
+            for (int p = 0; p < STATIONS; p++) {
+                StationMeteo s = new StationMeteo();
+                s.setNom(nom(p));
+                s.setLatitude(latitude(p));
+                s.setLongitude(longitude(p));
+                repo.ensureStationId(s);
+            }
+            System.out.println("(Info) " + STATIONS + " station(s) en base, journaux des nœuds : " + repertoire);
+
+            for (int i = 1; i < NOEUDS; i++) {
+                String nom = "n" + i;
+                noeuds.put(nom, lancerNoeud(nom, http.getUrl(), portH2, repertoire));
+            }
+            attendreNoeuds(NOEUDS - 1);
+            Thread.sleep(4_000);
+            System.out.println("(Info) Régime établi, captures par nœud : " + parNoeud(0, System.currentTimeMillis()));
+
+            // arrivée d'un nœud : une part des stations lui est cédée
+            String dernier = "n" + NOEUDS;
+            noeuds.put(dernier, lancerNoeud(dernier, http.getUrl(), portH2, repertoire));
+            long tArrivee = System.currentTimeMillis();
+            attendreNoeuds(NOEUDS);
+            Thread.sleep(4_000);
+            System.out.println("(Info) Nœud " + dernier + " arrivé, captures par nœud : "
+                    + parNoeud(tArrivee, System.currentTimeMillis()));
+
+            // arrêt brutal d'un nœud : ses baux expirent, ses stations sont reprises
+            String arrete = "n2";
+            noeuds.get(arrete).destroyForcibly().waitFor();
+            System.out.println("(Info) Nœud " + arrete + " arrêté brutalement.");
+            Thread.sleep(BAIL_SECONDES * 1_000L + 4_000);
+
+            long tFenetre = System.currentTimeMillis();
+            Thread.sleep(6_000);
+            long tFin = System.currentTimeMillis();
+            Map<String, Integer> fenetre = parNoeud(tFenetre, tFin);
+            System.out.printf(Locale.ROOT, "(Info) Fenêtre finale (%d ms), captures par nœud : %s, %.0f captures/s%n",
+                    tFin - tFenetre, fenetre,
+                    fenetre.values().stream().mapToInt(Integer::intValue).sum() * 1000.0 / (tFin - tFenetre));
+
+            verifierExclusivite(arrete, tFin);
+            verifierFenetre(arrete, tFenetre, tFin);
+            verifierBase(tFenetre);
+        } finally {
+            // arrêt propre des autres nœuds (SIGTERM : stations rendues)
+            for (Process p : noeuds.values()) {
+                if (p.isAlive()) p.destroy();
+            }
+            for (Map.Entry<String, Process> e : noeuds.entrySet()) {
+                if (!e.getValue().waitFor(30, TimeUnit.SECONDS)) {
+                    System.err.println("[WARN] Nœud " + e.getKey() + " toujours actif, arrêté brutalement.");
+                    e.getValue().destroyForcibly();
+                }
+            }
+            h2.stop();
+            http.close();
+        }
+    }
+
+    private static Process lancerNoeud(String nom, String urlHttp, int portH2, Path repertoire) throws IOException {
+        Path config = repertoire.resolve(nom + ".properties");
+        try (Writer w = Files.newBufferedWriter(config, StandardCharsets.ISO_8859_1)) {
+            w.write("openweathermap.url=" + urlHttp + "/data/2.5/weather\n");
+            w.write("openweathermap.key=cle-" + nom + "\n");
+            w.write("openweathermap.quota.minute=1000000\n");
+            w.write("country.url=" + urlHttp + "/country\n");
+            w.write("persistence.mode=h2\n");
+            w.write("h2.jdbc.url=jdbc:h2:tcp://localhost:" + portH2 + "/" + BASE + "\n");
+            w.write("cluster.bail.secondes=" + BAIL_SECONDES + "\n");
+            w.write("cluster.intervalle.secondes=1\n");
+            w.write("pipeline.threads.recuperation=4\n");
+        }
+        String java = ProcessHandle.current().info().command().orElse("java");
+        // sous Maven, java.class.path ne contient que le lanceur de surefire
+        String classpath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+        ProcessBuilder pb = new ProcessBuilder(java, "-Dfile.encoding=UTF-8", "-cp", classpath,
+                NoeudCluster.class.getName(), "--config", config.toString(), "--noeud", nom);
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(repertoire.resolve(nom + ".log").toFile());
+        return pb.start();
+    }
+
+    // -------------------------------------------------------
+    // VÉRIFICATIONS
+    // -------------------------------------------------------
+
+    /**
+     * Avec le hachage cohérent, une station ne change de nœud que vers un nœud qui arrive
+     * ou depuis un nœud qui disparaît. Sans le nœud arrêté, un nœud qui a cédé une station
+     * ne doit donc jamais la reprendre : sinon deux nœuds se la sont disputée.
+     */
+    private void verifierExclusivite(String arrete, long tFin) {
+        Map<Integer, List<Capture>> parStation = new TreeMap<>();
+        for (Capture c : captures) {
+            if (c.ms <= tFin && !c.noeud.equals(arrete)) {
+                parStation.computeIfAbsent(c.position, k -> new ArrayList<>()).add(c);
+            }
+        }
+        List<String> conflits = new ArrayList<>();
+        int changements = 0;
+        for (Map.Entry<Integer, List<Capture>> e : parStation.entrySet()) {
+            List<Capture> liste = e.getValue();
+            liste.sort((a, b) -> Long.compare(a.ms, b.ms));
+            Set<String> cedants = new HashSet<>();
+            String courant = null;
+            for (Capture c : liste) {
+                if (c.noeud.equals(courant)) continue;
+                if (cedants.contains(c.noeud)) {
+                    conflits.add(nom(e.getKey()) + " reprise par " + c.noeud + " après l'avoir cédée");
+                }
+                if (courant != null) {
+                    cedants.add(courant);
+                    changements++;
+                }
+                courant = c.noeud;
+            }
+        }
+        System.out.println("(Info) Changements de nœud (hors nœud arrêté) : " + changements
+                + ", conflits : " + conflits.size());
+        assertTrue(conflits.isEmpty(), "stations disputées : " + conflits.subList(0, Math.min(5, conflits.size())));
+    }
+
+    /** Pendant la fenêtre finale : chaque station capturée, par un seul nœud, jamais par le nœud arrêté. */
+    private void verifierFenetre(String arrete, long debut, long fin) {
+        Map<Integer, Set<String>> noeudsParStation = new HashMap<>();
+        for (Capture c : captures) {
+            if (c.ms >= debut && c.ms <= fin) {
+                noeudsParStation.computeIfAbsent(c.position, k -> new HashSet<>()).add(c.noeud);
+            }
+        }
+        List<String> partagees = new ArrayList<>();
+        for (Map.Entry<Integer, Set<String>> e : noeudsParStation.entrySet()) {
+            if (e.getValue().size() > 1 || e.getValue().contains(arrete)) {
+                partagees.add(nom(e.getKey()) + " capturée par " + e.getValue());
+            }
+        }
+        assertEquals(STATIONS, noeudsParStation.size(), "stations capturées pendant la fenêtre finale");
+        assertTrue(partagees.isEmpty(), "stations capturées par plusieurs nœuds : "
+                + partagees.subList(0, Math.min(5, partagees.size())));
+    }
+
+    /** Aucun relevé en double ; chaque station a un relevé d'une observation de la fenêtre finale. */
+    private static void verifierBase(long debutFenetre) throws Exception {
+        Instant recent = Instant.ofEpochSecond(dt(debutFenetre + PERIODE_OBSERVATION_MS));
+        try (Connection cn = DriverManager.getConnection("jdbc:h2:" + BASE, "sa", "");
+             Statement st = cn.createStatement()) {
+            long releves = compter(st, "SELECT COUNT(*) FROM meteo");
+            long distincts = compter(st, "SELECT COUNT(*) FROM (SELECT DISTINCT station_id, date_releve FROM meteo)");
+            long aJour = compter(st, "SELECT COUNT(*) FROM (SELECT station_id FROM meteo GROUP BY station_id "
+                    + "HAVING MAX(date_releve) >= TIMESTAMP '" + recent.toString().replace('T', ' ').replace("Z", "") + "')");
+            assertEquals(distincts, releves, "relevés en double");
+            assertEquals(STATIONS, aJour, "stations à jour");
+        }
+    }
+
+    private static long compter(Statement st, String sql) throws Exception {
+        try (ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /** Attend (2 min au plus) que le faux OWM ait reçu des appels de nb nœuds. */
+    private void attendreNoeuds(int nb) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 120_000;
+        while (parNoeud(0, Long.MAX_VALUE).size() < nb && System.currentTimeMillis() < limite) {
+            Thread.sleep(200);
+        }
+        assertEquals(nb, parNoeud(0, Long.MAX_VALUE).size(), "nœuds actifs après 2 min");
+    }
+
+    private Map<String, Integer> parNoeud(long debut, long fin) {
+        Map<String, Integer> result = new TreeMap<>();
+        for (Capture c : captures) {
+            if (c.ms >= debut && c.ms <= fin) result.merge(c.noeud, 1, Integer::sum);
+        }
+        return result;
+    }
+
+    private static int portLibre() throws IOException {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+
+    /** Observation servie à cet instant (secondes epoch) : une nouvelle toutes les PERIODE_OBSERVATION_MS. */
+    private static long dt(long ms) {
+        return DT_BASE + (ms / PERIODE_OBSERVATION_MS) * 60;
+    }
+
+    // grille de COLONNES positions par ligne, espacées de 0.05°
+    private static double latitude(int p) { return 40.0 + (p / COLONNES) * 0.05; }
+    private static double longitude(int p) { return (p % COLONNES) * 0.05; }
+    private static String nom(int p) { return "Station " + p; }
+
+    private static int position(double lat, double lon) {
+        return (int) Math.round((lat - 40.0) / 0.05) * COLONNES + (int) Math.round(lon / 0.05);
+    }
+}
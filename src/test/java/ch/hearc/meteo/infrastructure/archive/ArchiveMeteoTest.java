@@ -0,0 +1,188 @@
+package ch.hearc.meteo.infrastructure.archive;
+
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.StationMeteo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cache des segments projetés de {@link ArchiveMeteo}, borné à quelques segments :
+ *
+ * 1. références d'un {@link SegmentReader} : fermé à la dernière libération, plus aucune acquisition ;
+ * 2. un an de relevés lu mois par mois avec 3 segments ouverts au plus : contenu exact, cache borné,
+ *    et une seule version de fichier par mois après les réécritures ;
+ * 3. 4 threads lisent des mois au hasard (plage, dates, relevé à la seconde) pendant que l'archive
+ *    réécrit les mêmes mois (nouveaux relevés intercalés) : chaque relevé lu est cohérent avec sa
+ *    date, aucun mois ne perd de relevés, le cache reste borné.
+ */
+class ArchiveMeteoTest {
+
+    private static final int MOIS = 12;
+    private static final long PAS = 3_600_000L; // un relevé par heure
+    private static final int SEGMENTS_OUVERTS = 3;
+    private static final int LECTURES = 4_000;
+    private static final int THREADS = 4;
+
+    @TempDir
+    Path racine;
+
+    @Test
+    void segmentFermeALaDerniereLiberation() throws Exception {
+        Path fichier = racine.resolve("segment.mseg");
+        Files.write(fichier, SegmentWriter.encoder(releves(YearMonth.of(2024, 1), 0)));
+
+        SegmentReader lecteur = SegmentReader.mapper(fichier);
+        assertTrue(lecteur.acquerir());
+        lecteur.liberer(); // référence du créateur
+        assertFalse(lecteur.estFerme(), "une lecture en cours garde la projection");
+        assertEquals(744, lecteur.lireTout().size());
+        lecteur.liberer();
+        assertTrue(lecteur.estFerme());
+        assertFalse(lecteur.acquerir(), "plus d'acquisition après fermeture");
+    }
+
+    @Test
+    void lectureMoisParMoisAvecCacheBorne() throws Exception {
+        ArchiveMeteo archive = new ArchiveMeteo(racine, SEGMENTS_OUVERTS);
+        StationMeteo station = station();
+        List<Meteo> annee = new ArrayList<>();
+        for (int m = 1; m <= MOIS; m++) annee.addAll(releves(YearMonth.of(2024, m), 0));
+        assertEquals(annee.size(), archive.archiver(station, annee));
+        assertTrue(archive.nbSegmentsOuverts() <= SEGMENTS_OUVERTS, "cache borné après l'écriture");
+
+        for (int tour = 0; tour < 3; tour++) {
+            for (int m = 1; m <= MOIS; m++) {
+                YearMonth ym = YearMonth.of(2024, m);
+                List<Meteo> lus = archive.lirePlage(station, debut(ym), debut(ym.plusMonths(1)));
+                assertEquals(ym.lengthOfMonth() * 24, lus.size(), "relevés de " + ym);
+                for (Meteo lu : lus) assertEquals(temperature(lu.getDateMesureMs()), lu.getTemperature());
+                assertTrue(archive.nbSegmentsOuverts() <= SEGMENTS_OUVERTS,
+                        "segments ouverts : " + archive.nbSegmentsOuverts());
+            }
+        }
+
+        // réécriture de chaque mois : l'ancienne version, fermée, est supprimée
+        List<Meteo> demiHeures = new ArrayList<>();
+        for (int m = 1; m <= MOIS; m++) demiHeures.addAll(releves(YearMonth.of(2024, m), PAS / 2));
+        assertEquals(demiHeures.size(), archive.archiver(station, demiHeures));
+        assertEquals(2 * annee.size(), archive.listerDates("Neuchâtel").size());
+        try (Stream<Path> fichiers = Files.walk(racine)) {
+            assertEquals(MOIS, fichiers.filter(p -> p.toString().endsWith(".mseg")).count(),
+                    "une seule version par mois");
+        }
+    }
+
+    @Test
+    void lecturesConcurrentesPendantLesReecritures() throws Exception {
+        ArchiveMeteo archive = new ArchiveMeteo(racine, SEGMENTS_OUVERTS);
+        StationMeteo station = station();
+        for (int m = 1; m <= MOIS; m++) archive.archiver(station, releves(YearMonth.of(2024, m), 0));
+
+        AtomicBoolean fini = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> lecteurs = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long graine = t;
+            lecteurs.add(pool.submit(() -> {
+                Random alea = new Random(graine);
+                int lectures = 0;
+                while (lectures < LECTURES || !fini.get()) {
+                    YearMonth ym = YearMonth.of(2024, 1 + alea.nextInt(MOIS));
+                    int attendusMin = ym.lengthOfMonth() * 24;
+                    switch (alea.nextInt(3)) {
+                        case 0: {
+                            List<Meteo> lus = archive.lirePlage(station, debut(ym), debut(ym.plusMonths(1)));
+                            assertTrue(lus.size() >= attendusMin, ym + " : " + lus.size() + " relevé(s)");
+                            for (Meteo lu : lus) assertEquals(temperature(lu.getDateMesureMs()), lu.getTemperature());
+                            break;
+                        }
+                        case 1: {
+                            long t0 = debut(ym).toEpochMilli() + alea.nextInt(ym.lengthOfMonth() * 24) * PAS;
+                            Meteo lu = archive.trouver("Neuchâtel", Instant.ofEpochMilli(t0));
+                            assertNotNull(lu, "relevé à " + Instant.ofEpochMilli(t0));
+                            assertEquals(temperature(t0), lu.getTemperature());
+                            break;
+                        }
+                        default:
+                            assertTrue(archive.listerDates("Neuchâtel").size() >= MOIS * 24 * 28);
+                            break;
+                    }
+                    lectures++;
+                }
+                return lectures;
+            }));
+        }
+
+        // réécritures : relevés intercalés, un mois après l'autre, deux fois
+        try {
+            for (int tour = 1; tour <= 2; tour++) {
+                for (int m = 1; m <= MOIS; m++) {
+                    archive.archiver(station, releves(YearMonth.of(2024, m), tour * PAS / 3));
+                }
+            }
+        } finally {
+            fini.set(true);
+        }
+        int lectures = 0;
+        for (Future<Integer> f : lecteurs) lectures += f.get();
+        pool.shutdown();
+
+        System.out.println("(Info) " + lectures + " lecture(s) concurrentes, " + archive.nbSegmentsOuverts()
+                + " segment(s) ouvert(s)");
+        assertTrue(archive.nbSegmentsOuverts() <= SEGMENTS_OUVERTS);
+        assertEquals(3 * 366 * 24, archive.listerDates("Neuchâtel").size(), "relevés de 2024 (bissextile), 3 par heure");
+    }
+
+    // -------------------------------------------------------
+    // Utilitaires
+    // -------------------------------------------------------
+
+    private static StationMeteo station() {
+        StationMeteo s = new StationMeteo();
+        s.setNom("Neuchâtel");
+        s.setLatitude(46.99);
+        s.setLongitude(6.93);
+        return s;
+    }
+
+    /** Un relevé par heure du mois, décalé de decalageMs ; température fonction de la date. */
+    private static List<Meteo> releves(YearMonth ym, long decalageMs) {
+        List<Meteo> result = new ArrayList<>();
+        long debut = debut(ym).toEpochMilli();
+        for (int i = 0; i < ym.lengthOfMonth() * 24; i++) {
+            Meteo m = new Meteo();
+            m.setDateMesureMs(debut + i * PAS + decalageMs);
+            m.setTemperature(temperature(m.getDateMesureMs()));
+            m.setDescription("ciel dégagé");
+            result.add(m);
+        }
+        return result;
+    }
+
+    private static double temperature(long dateMs) {
+        return (dateMs / 60_000) % 1_000 / 10.0;
+    }
+
+    private static Instant debut(YearMonth ym) {
+        return ym.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+    }
+}
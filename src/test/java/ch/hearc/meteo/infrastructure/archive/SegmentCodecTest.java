@@ -0,0 +1,369 @@
+package ch.hearc.meteo.infrastructure.archive;
+
+import ch.hearc.meteo.business.Meteo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Aller-retour du format de segment ({@link SegmentWriter} puis {@link SegmentReader}) :
+ *
+ * 1. bits : écriture / relecture de largeurs 0 à 64, valeurs signées, alignement sur l'octet ;
+ * 2. valeurs : NaN, infinis, -0.0, champs absents, valeurs identiques, négatives, aléatoires,
+ *    descriptions (dictionnaire de plus de 256 entrées, UTF-8) — relues au bit près ;
+ * 3. dates : pas irréguliers (de la milliseconde à plusieurs mois, retours à un pas régulier,
+ *    dates égales), tous les préfixes delta-of-delta ;
+ * 4. blocs : segments de 1, 255, 256, 257 et 513 relevés (dernier bloc d'un seul relevé),
+ *    lectures par plage à cheval sur les frontières de blocs ;
+ * 5. {@link SegmentReader#trouverSeconde(long)} : date exacte, dans la seconde, entre deux relevés,
+ *    avant le premier, après le dernier, premier et dernier relevé de chaque bloc.
+ */
+class SegmentCodecTest {
+
+    private static final long DEBUT = 1_700_000_000_000L;
+    private static final int BLOC = SegmentFormat.BLOC_TAILLE;
+
+    // -------------------------------------------------------
+    // 1. Bits
+    // -------------------------------------------------------
+
+    @Test
+    void bitsRelusALIdentique() {
+        Random alea = new Random(27);
+        int n = 5_000;
+        int[] largeurs = new int[n];
+        long[] valeurs = new long[n];
+        int[] bourrage = new int[n];
+
+        BitWriter ecrivain = new BitWriter();
+        long position = 0;
+        for (int i = 0; i < n; i++) {
+            largeurs[i] = alea.nextInt(65);
+            long v = alea.nextLong();
+            valeurs[i] = largeurs[i] == 64 ? v : v & ((1L << largeurs[i]) - 1);
+            ecrivain.writeBits(valeurs[i], largeurs[i]);
+            position += largeurs[i];
+            if (i % 97 == 0) {
+                ecrivain.alignToByte();
+                bourrage[i] = (int) ((8 - (position & 7)) & 7);
+                position += bourrage[i];
+            }
+        }
+        assertEquals((position + 7) >>> 3, ecrivain.byteLength(), "taille en octets");
+
+        BitReader lecteur = new BitReader(ByteBuffer.wrap(ecrivain.toByteArray()), 0);
+        for (int i = 0; i < n; i++) {
+            assertEquals(valeurs[i], lecteur.readBits(largeurs[i]), "valeur " + i + " sur " + largeurs[i] + " bits");
+            assertEquals(0, lecteur.readBits(bourrage[i]), "bourrage après la valeur " + i);
+        }
+    }
+
+    @ParameterizedTest(name = "{0} bits")
+    @ValueSource(ints = {7, 12, 20})
+    void bitsSignes(int largeur) {
+        long min = -(1L << (largeur - 1));
+        long max = (1L << (largeur - 1)) - 1;
+        long[] valeurs = {min, min + 1, -1, 0, 1, max - 1, max};
+
+        BitWriter ecrivain = new BitWriter();
+        ecrivain.writeBit(true); // décalage : lectures non alignées
+        for (long v : valeurs) ecrivain.writeBits(v, largeur);
+
+        BitReader lecteur = new BitReader(ByteBuffer.wrap(ecrivain.toByteArray()), 0);
+        lecteur.readBit();
+        for (long v : valeurs) {
+            assertEquals(v, lecteur.readSignedBits(largeur), "valeur signée " + v);
+        }
+    }
+
+    // -------------------------------------------------------
+    // 2. Valeurs
+    // -------------------------------------------------------
+
+    @Test
+    void valeursParticulieres() throws IOException {
+        double[] speciales = {Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, -0.0, 0.0,
+                Double.MIN_VALUE, -Double.MAX_VALUE, Double.longBitsToDouble(0x7ff8_0000_0000_0001L)};
+        List<Meteo> releves = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Meteo m = releve(DEBUT + i * 60_000L);
+            double v = speciales[i % speciales.length];
+            m.setTemperature(v);
+            m.setHumidite(i % 3 == 0 ? null : -v);
+            m.setPression(i % 5 == 0 ? null : v);
+            m.setVisibilite(i % 7 == 0 ? null : (i % 2 == 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE));
+            m.setPrecipitation(null);
+            releves.add(m);
+        }
+
+        assertAllerRetour(releves);
+    }
+
+    @Test
+    void valeursIdentiquesEtNegatives() throws IOException {
+        List<Meteo> releves = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            Meteo m = releve(DEBUT + i * 600_000L);
+            m.setTemperature(i < 300 ? -12.5 : -12.5 - (i % 4) * 0.1);
+            m.setHumidite(55.0);
+            m.setPression(i % 50 == 0 ? -1013.25 : 1013.25);
+            m.setVisibilite(i % 10 == 0 ? -1 : 10_000);
+            m.setPrecipitation(i % 2 == 0 ? 0.0 : -0.0);
+            m.setDescription("ciel dégagé");
+            releves.add(m);
+        }
+
+        assertAllerRetour(releves);
+    }
+
+    @Test
+    void valeursAleatoiresEtChampsAbsents() throws IOException {
+        Random alea = new Random(270);
+        List<Meteo> releves = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            Meteo m = releve(DEBUT + i * 1_000L);
+            if (alea.nextInt(4) > 0) m.setTemperature(alea.nextGaussian() * 15);
+            if (alea.nextInt(4) > 0) m.setHumidite(Double.longBitsToDouble(alea.nextLong()));
+            if (alea.nextInt(4) > 0) m.setPression(950 + alea.nextInt(1000) / 10.0);
+            if (alea.nextInt(4) > 0) m.setVisibilite(alea.nextInt());
+            if (alea.nextInt(4) > 0) m.setPrecipitation(alea.nextDouble());
+            releves.add(m);
+        }
+        // un bloc entier sans aucune valeur
+        for (int i = BLOC; i < 2 * BLOC; i++) {
+            Meteo vide = releve(releves.get(i).getDateMesureMs());
+            releves.set(i, vide);
+        }
+
+        assertAllerRetour(releves);
+    }
+
+    @Test
+    void dictionnaireDesDescriptions() throws IOException {
+        List<Meteo> releves = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            Meteo m = releve(DEBUT + i * 3_600_000L);
+            // 300 entrées : codes sur 9 bits ; absente une fois sur 7
+            m.setDescription(i % 7 == 0 ? null : "conditions n°" + (i % 300) + " — «neige» ❄");
+            releves.add(m);
+        }
+        releves.get(1).setDescription("");
+
+        assertAllerRetour(releves);
+    }
+
+    // -------------------------------------------------------
+    // 3. Dates
+    // -------------------------------------------------------
+
+    @Test
+    void datesIrregulieres() throws IOException {
+        long[] pas = {1, 1, 1, 0, 0, 60_000, 60_000, 60_000, 61_000, 59_999, 3_600_000, 1, 86_400_000L * 40,
+                600_000, 600_000, 600_000 + 63, 600_000 - 64, 600_000 + 2047, 600_000 - 2048,
+                600_000 + 524_287, 600_000 - 524_288, 600_000 + 524_288, 5, 86_400_000L * 365 * 30};
+        List<Meteo> releves = new ArrayList<>();
+        long t = -DEBUT; // avant 1970 : dates négatives
+        for (int tour = 0; tour < 40; tour++) {
+            for (long p : pas) {
+                t += p;
+                Meteo m = releve(t);
+                m.setTemperature((double) tour);
+                releves.add(m);
+            }
+        }
+
+        SegmentReader lecteur = assertAllerRetour(releves);
+        long[] attendues = releves.stream().mapToLong(Meteo::getDateMesureMs).toArray();
+        assertArrayEquals(attendues, lecteur.lireDates(), "dates sans décodage des valeurs");
+        assertEquals(attendues[0], lecteur.dateMin());
+        assertEquals(attendues[attendues.length - 1], lecteur.dateMax());
+    }
+
+    @Test
+    void datesAleatoires() throws IOException {
+        Random alea = new Random(2700);
+        List<Meteo> releves = new ArrayList<>();
+        long t = DEBUT;
+        for (int i = 0; i < 3_000; i++) {
+            switch (alea.nextInt(4)) {
+                case 0:
+                    t += 600_000;
+                    break;
+                case 1:
+                    t += alea.nextInt(1_000);
+                    break;
+                case 2:
+                    t += alea.nextInt(100_000_000);
+                    break;
+                default:
+                    t += (long) alea.nextInt(Integer.MAX_VALUE) * 1_000;
+            }
+            releves.add(releve(t));
+        }
+
+        SegmentReader lecteur = assertAllerRetour(releves);
+        assertArrayEquals(releves.stream().mapToLong(Meteo::getDateMesureMs).toArray(), lecteur.lireDates());
+    }
+
+    // -------------------------------------------------------
+    // 4. Blocs
+    // -------------------------------------------------------
+
+    @ParameterizedTest(name = "{0} relevé(s)")
+    @ValueSource(ints = {1, 2, BLOC - 1, BLOC, BLOC + 1, 2 * BLOC + 1})
+    void frontieresDeBlocs(int n) throws IOException {
+        List<Meteo> releves = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Meteo m = releve(DEBUT + i * 600_000L);
+            m.setTemperature(i * 0.5 - 20);
+            m.setHumidite(i % 2 == 0 ? null : 80.0);
+            m.setDescription(i == n - 1 ? "dernier" : "pluie");
+            releves.add(m);
+        }
+
+        SegmentReader lecteur = assertAllerRetour(releves);
+        assertEquals(n, lecteur.nbReleves());
+        assertEquals(n, lecteur.lireDates().length);
+
+        // plages [a, b) dont les bornes tombent avant, sur et après chaque frontière de bloc
+        int[] indices = {0, 1, BLOC - 1, BLOC, BLOC + 1, 2 * BLOC - 1, 2 * BLOC, 2 * BLOC + 1, n - 1, n};
+        for (int a : indices) {
+            for (int b : indices) {
+                if (a > n || b > n || a > b) continue;
+                long debut = a < n ? releves.get(a).getDateMesureMs() : Long.MAX_VALUE - 1;
+                long fin = b < n ? releves.get(b).getDateMesureMs() : Long.MAX_VALUE;
+                assertMemesReleves(releves.subList(a, b), lecteur.lirePlage(debut, fin),
+                        "plage [" + a + ", " + b + ")");
+            }
+        }
+        assertEquals(0, lecteur.lirePlage(Long.MIN_VALUE, DEBUT).size(), "plage avant le premier relevé");
+    }
+
+    @Test
+    void segmentVide() throws IOException {
+        SegmentReader lecteur = new SegmentReader(ByteBuffer.wrap(SegmentWriter.encoder(new ArrayList<>())));
+
+        assertEquals(0, lecteur.nbReleves());
+        assertEquals(0, lecteur.lireTout().size());
+        assertEquals(0, lecteur.lireDates().length);
+        assertNull(lecteur.trouverSeconde(DEBUT));
+    }
+
+    @Test
+    void segmentInvalideRefuse() throws IOException {
+        byte[] contenu = SegmentWriter.encoder(List.of(releve(DEBUT)));
+
+        assertThrows(IOException.class, () -> new SegmentReader(ByteBuffer.wrap(new byte[8])));
+        byte[] tronque = Arrays.copyOf(contenu, contenu.length - 1);
+        assertThrows(IOException.class, () -> new SegmentReader(ByteBuffer.wrap(tronque)));
+        byte[] autreVersion = contenu.clone();
+        autreVersion[autreVersion.length - 5] = 99;
+        assertThrows(IOException.class, () -> new SegmentReader(ByteBuffer.wrap(autreVersion)));
+    }
+
+    // -------------------------------------------------------
+    // 5. trouverSeconde
+    // -------------------------------------------------------
+
+    @Test
+    void trouverSeconde() throws IOException {
+        // relevés toutes les 10 min, à des millisecondes quelconques dans leur seconde
+        Random alea = new Random(27_000);
+        List<Meteo> releves = new ArrayList<>();
+        for (int i = 0; i < 3 * BLOC + 10; i++) {
+            Meteo m = releve(DEBUT + i * 600_000L + alea.nextInt(1_000));
+            m.setTemperature((double) i);
+            releves.add(m);
+        }
+        SegmentReader lecteur = assertAllerRetour(releves);
+
+        for (int i = 0; i < releves.size(); i++) {
+            Meteo attendu = releves.get(i);
+            long seconde = attendu.getDateMesureMs() / 1_000 * 1_000;
+            assertMemeReleve(attendu, lecteur.trouverSeconde(seconde), "seconde du relevé " + i);
+            assertMemeReleve(attendu, lecteur.trouverSeconde(attendu.getDateMesureMs()), "date exacte du relevé " + i);
+            assertNull(lecteur.trouverSeconde(seconde + 1_000), "seconde suivant le relevé " + i);
+            assertNull(lecteur.trouverSeconde(seconde + 300_000), "entre les relevés " + i + " et " + (i + 1));
+        }
+        assertNull(lecteur.trouverSeconde(DEBUT - 1_000), "avant le premier relevé");
+        assertNull(lecteur.trouverSeconde(Long.MIN_VALUE / 2), "bien avant le premier relevé");
+        assertNull(lecteur.trouverSeconde(releves.get(releves.size() - 1).getDateMesureMs() + 1_000),
+                "après le dernier relevé");
+
+        // premier et dernier relevé de chaque bloc
+        for (int b = 0; b * BLOC < releves.size(); b++) {
+            int premier = b * BLOC;
+            int dernier = Math.min(premier + BLOC, releves.size()) - 1;
+            assertMemeReleve(releves.get(premier), lecteur.trouverSeconde(releves.get(premier).getDateMesureMs()),
+                    "premier relevé du bloc " + b);
+            assertMemeReleve(releves.get(dernier), lecteur.trouverSeconde(releves.get(dernier).getDateMesureMs()),
+                    "dernier relevé du bloc " + b);
+        }
+    }
+
+    @Test
+    void trouverSecondeAvecDeuxRelevesDansLaMemeSeconde() throws IOException {
+        Meteo premier = releve(DEBUT + 100);
+        premier.setTemperature(1.0);
+        Meteo second = releve(DEBUT + 900);
+        second.setTemperature(2.0);
+        SegmentReader lecteur = assertAllerRetour(List.of(premier, second));
+
+        assertMemeReleve(premier, lecteur.trouverSeconde(DEBUT), "premier relevé de la seconde");
+        assertMemeReleve(second, lecteur.trouverSeconde(DEBUT + 500), "relevé suivant dans la seconde");
+    }
+
+    // -------------------------------------------------------
+    // Utilitaires
+    // -------------------------------------------------------
+
+    private static Meteo releve(long dateMs) {
+        Meteo m = new Meteo();
+        m.setDateMesureMs(dateMs);
+        return m;
+    }
+
+    /** Encode, relit entièrement et compare ; renvoie le lecteur pour les vérifications suivantes. */
+    private static SegmentReader assertAllerRetour(List<Meteo> releves) throws IOException {
+        SegmentReader lecteur = new SegmentReader(ByteBuffer.wrap(SegmentWriter.encoder(releves)));
+        assertEquals(releves.size(), lecteur.nbReleves(), "nombre de relevés");
+        assertMemesReleves(releves, lecteur.lireTout(), "lecture complète");
+        return lecteur;
+    }
+
+    private static void assertMemesReleves(List<Meteo> attendus, List<Meteo> lus, String contexte) {
+        assertEquals(attendus.size(), lus.size(), contexte + " : nombre de relevés");
+        for (int i = 0; i < attendus.size(); i++) {
+            assertMemeReleve(attendus.get(i), lus.get(i), contexte + ", relevé " + i);
+        }
+    }
+
+    /** Comparaison au bit près (NaN de charge utile différente, -0.0 et 0.0 distingués). */
+    private static void assertMemeReleve(Meteo attendu, Meteo lu, String contexte) {
+        assertNotNull(lu, contexte + " : relevé introuvable");
+        assertEquals(attendu.getDateMesureMs(), lu.getDateMesureMs(), contexte + " : date");
+        assertEquals(bits(attendu.getTemperature()), bits(lu.getTemperature()), contexte + " : température");
+        assertEquals(bits(attendu.getHumidite()), bits(lu.getHumidite()), contexte + " : humidité");
+        assertEquals(bits(attendu.getPression()), bits(lu.getPression()), contexte + " : pression");
+        assertEquals(attendu.getVisibilite(), lu.getVisibilite(), contexte + " : visibilité");
+        assertEquals(bits(attendu.getPrecipitation()), bits(lu.getPrecipitation()), contexte + " : précipitation");
+        assertEquals(attendu.getDescription(), lu.getDescription(), contexte + " : description");
+    }
+
+    private static Long bits(Double v) {
+        return v != null ? Double.doubleToRawLongBits(v) : null;
+    }
+}
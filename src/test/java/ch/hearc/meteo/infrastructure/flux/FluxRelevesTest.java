@@ -0,0 +1,346 @@
+package ch.hearc.meteo.infrastructure.flux;
+
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.Pays;
+import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.infrastructure.persistence.H2MeteoRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Flux des relevés enregistrés ({@link FluxReleves}, {@link LecteurFlux}), sans serveur de base
+ * (H2 en mémoire) ni réseau : segments de 64 Ko dans un répertoire temporaire. Un seul scénario,
+ * chaque étape repartant de l'état laissé par la précédente :
+ *
+ * 1. Enregistrements concurrents (save sur 50 stations, 4 threads) et par lots (saveMeteoParStation),
+ *    dont des relevés déjà en base ; un lecteur du même processus suit le flux en direct (latence
+ *    entre la publication et la lecture).
+ * 2. Un lecteur « autre processus » (sondage des fichiers) lit en parallèle, s'arrête au milieu,
+ *    relit une fois sans valider, puis reprend depuis sa position validée.
+ * 3. Vérifie : chaque relevé en base exactement une fois dans le flux, avec son meteo_id, positions
+ *    continues (aucun trou), relevés déjà en base non republiés, plusieurs segments.
+ * 4. Fin de segment corrompue (arrêt pendant l'écriture) : retirée à la réouverture, lecture reprise.
+ * 5. Rétention (segmentsGardes) : anciens segments supprimés, un lecteur en retard repart du premier
+ *    segment conservé ; second écrivain sur le même répertoire refusé.
+ * 6. Arrêt entre la validation et la publication (flux fermé sous le repository) : relevés validés
+ *    non publiés, rattrapés depuis la base à la réactivation, sans republier ceux déjà dans le flux.
+ */
+class FluxRelevesTest {
+
+    private static final int PAR_THREAD = 5_000;
+    private static final int NB_STATIONS = 50;
+    private static final int THREADS = 4;
+    private static final long DEBUT_MS = 1_700_000_000_000L;
+    private static final long TAILLE_SEGMENT = 64 * 1024;
+
+    @TempDir
+    Path repertoire;
+
+    @Test
+    void publicationLectureRepriseEtRattrapage() throws Exception {
+        int parThread = PAR_THREAD;
+        String url = "jdbc:h2:mem:flux;DB_CLOSE_DELAY=-1";
+        H2MeteoRepository repo = new H2MeteoRepository(url, "sa", "");
+        repo.configurerConnexions(THREADS + 2, 16);
+        repo.initialiserSchema();
+
+        try {
+            FluxReleves flux = new FluxReleves(repertoire, TAILLE_SEGMENT, 0, false);
+            repo.activerFlux(flux);
+
+            // 1. lecteur en direct (même processus : réveillé à chaque publication)
+            AtomicBoolean fini = new AtomicBoolean();
+            List<Long> latencesMs = Collections.synchronizedList(new ArrayList<>());
+            List<EvenementReleve> direct = Collections.synchronizedList(new ArrayList<>());
+            ExecutorService lecteurs = Executors.newFixedThreadPool(2);
+            Future<?> suivi = lecteurs.submit(() -> {
+                try (LecteurFlux lecteur = flux.lecteur("direct")) {
+                    while (!fini.get() || lecteur.retard() > 0) {
+                        List<EvenementReleve> lus = lecteur.lire(1_000, 50);
+                        long maintenant = System.currentTimeMillis();
+                        for (EvenementReleve e : lus) latencesMs.add(maintenant - e.getDateEcritureMs());
+                        direct.addAll(lus);
+                        if (!lus.isEmpty()) lecteur.valider();
+                    }
+                }
+                return null;
+            });
+
+            // 2. lecteur d'un autre processus : s'arrête à mi-chemin puis reprend
+            List<EvenementReleve> externe = Collections.synchronizedList(new ArrayList<>());
+            int attendus = THREADS * parThread + parThread / 2;
+            Future<long[]> externeFini = lecteurs.submit(() -> lireAvecReprise(repertoire, externe, attendus, fini));
+
+            long debut = System.nanoTime();
+            ExecutorService ecrivains = Executors.newFixedThreadPool(THREADS + 1);
+            List<Future<?>> taches = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int numero = t;
+                taches.add(ecrivains.submit(() -> {
+                    for (int i = 0; i < parThread; i++) repo.save(station(i, numero * parThread + i));
+                    // relevés déjà en base : ne doivent pas être republiés
+                    for (int i = 0; i < parThread; i += 10) repo.save(station(i, numero * parThread + i));
+                    return null;
+                }));
+            }
+            taches.add(ecrivains.submit(() -> {
+                Map<Integer, Integer> ids = new HashMap<>();
+                for (int s = 0; s < NB_STATIONS; s++) ids.put(s, repo.ensureStationId(station(s, 0)));
+                int premier = THREADS * parThread;
+                for (int i = 0; i < parThread / 2; i += 100) {
+                    Map<Integer, List<Meteo>> lot = new HashMap<>();
+                    for (int j = i; j < Math.min(i + 100, parThread / 2); j++) {
+                        lot.computeIfAbsent(ids.get(j % NB_STATIONS), k -> new ArrayList<>())
+                                .add(station(j, premier + j).getDonneesMeteo().get(0));
+                    }
+                    repo.saveMeteoParStation(lot);
+                    repo.saveMeteoParStation(lot); // rejoué : rien de nouveau
+                }
+                return null;
+            }));
+            for (Future<?> f : taches) f.get();
+            double dureeMs = (System.nanoTime() - debut) / 1e6;
+            ecrivains.shutdown();
+            fini.set(true);
+            suivi.get();
+            long[] reprise = externeFini.get();
+            lecteurs.shutdown();
+
+            Map<String, Long> enBase = relevesEnBase(url);
+            int segments = nombreSegments(repertoire);
+            System.out.printf(Locale.ROOT, "(Info) %d relevé(s) enregistré(s) en %.0f ms, %s%n",
+                    enBase.size(), dureeMs, flux.statistiques());
+            Collections.sort(latencesMs);
+            System.out.printf(Locale.ROOT, "(Info) Lecture en direct : latence médiane %d ms, p99 %d ms, max %d ms%n",
+                    latencesMs.get(latencesMs.size() / 2), latencesMs.get(latencesMs.size() * 99 / 100),
+                    latencesMs.get(latencesMs.size() - 1));
+            System.out.println("(Info) Lecteur externe : arrêté à la position validée " + reprise[0]
+                    + ", reprise à la position " + reprise[2]);
+
+            assertEquals(attendus, enBase.size(), "un relevé par ligne en base");
+            assertTrue(identiques(direct, enBase),
+                    "lecteur direct : chaque relevé une fois, avec son meteo_id (" + direct.size() + " lu(s))");
+            assertTrue(continues(direct, 0), "lecteur direct : positions continues");
+            assertEquals(reprise[0], reprise[2], "lecteur externe : reprise à la position validée");
+            assertTrue(reprise[1] < 0 || reprise[1] == reprise[0],
+                    "lecteur externe : lot non validé commencé à la position validée (" + reprise[1] + ")");
+            assertTrue(identiques(externe, enBase),
+                    "lecteur externe : chaque relevé une fois après reprise (" + externe.size() + " lu(s))");
+            assertTrue(continues(externe, 0), "lecteur externe : positions continues");
+            assertTrue(noms(direct), "noms des stations (save) et stations sans nom (saveMeteoParStation)");
+            assertTrue(segments > 1, "plusieurs segments : " + segments);
+
+            // 4. arrêt pendant une écriture : fin incomplète retirée à la réouverture
+            repo.desactiverFlux();
+            flux.close();
+            Path dernier = dernierSegment(repertoire);
+            long tailleAvant = Files.size(dernier);
+            try (FileChannel c = FileChannel.open(dernier, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                c.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 5, 6, 7}));
+            }
+            FluxReleves rouvert = new FluxReleves(repertoire, TAILLE_SEGMENT, 3, false);
+            assertEquals(tailleAvant, Files.size(dernier), "fin incomplète retirée");
+            assertThrows(IOException.class, () -> new FluxReleves(repertoire).close(), "second écrivain refusé");
+
+            repo.activerFlux(rouvert);
+            int suite = THREADS * parThread + parThread;
+            for (int i = 0; i < 100; i++) repo.save(station(i, suite + i));
+            try (LecteurFlux direct2 = rouvert.lecteur("direct")) {
+                List<EvenementReleve> lus = direct2.lire(1_000, 1_000);
+                assertEquals(100, lus.size(), "relevés lus après la fin retirée");
+                assertTrue(continues(lus, direct2.positionValidee()), "reprise après la fin retirée");
+            }
+
+            // 5. rétention : 3 segments gardés, publication de nouveaux relevés
+            for (int i = 100; i < parThread; i++) repo.save(station(i, suite + i));
+            int gardes = nombreSegments(repertoire);
+            assertTrue(gardes <= 3, "rétention des segments : " + gardes + " segment(s)");
+            try (LecteurFlux enRetard = rouvert.lecteur("en-retard")) {
+                List<EvenementReleve> lus = enRetard.lire(parThread * 2, 1_000);
+                assertFalse(lus.isEmpty(), "lecteur en retard : relevés conservés");
+                assertTrue(lus.get(0).getPosition() > 0 && continues(lus, lus.get(0).getPosition()),
+                        "lecteur en retard repris au premier segment conservé : " + lus.size()
+                                + " relevé(s) depuis " + lus.get(0).getPosition());
+            }
+
+            // 6. arrêt entre la validation et la publication : le flux disparaît sous le repository
+            long idAvantArret = rouvert.dernierIdPublie();
+            rouvert.close();
+            for (int i = 0; i < 200; i++) repo.save(station(i, suite + parThread + i));
+            FluxReleves apresArret = new FluxReleves(repertoire, TAILLE_SEGMENT, 3, false);
+            repo.activerFlux(apresArret);
+            Map<String, Long> enBaseApres = relevesEnBase(url);
+            List<EvenementReleve> conserves;
+            try (LecteurFlux complet = apresArret.lecteur("complet")) {
+                conserves = complet.lire(Integer.MAX_VALUE, 1_000);
+            }
+            Set<Long> idsFlux = new HashSet<>();
+            boolean sansDoublon = true;
+            for (EvenementReleve e : conserves) sansDoublon &= idsFlux.add(e.getMeteoId());
+            long manquants = enBaseApres.values().stream()
+                    .filter(id -> id > idAvantArret && !idsFlux.contains(id)).count();
+            assertEquals(0, manquants, "relevés validés pendant l'arrêt rattrapés depuis la base");
+            assertTrue(apresArret.dernierIdPublie() > idAvantArret, "dernier meteo_id publié après le rattrapage");
+            assertTrue(sansDoublon, "rattrapage sans republier les relevés déjà dans le flux ("
+                    + conserves.size() + " relevé(s) conservé(s))");
+            repo.desactiverFlux();
+            apresArret.close();
+        } finally {
+            repo.fermerConnexions();
+        }
+    }
+
+    /**
+     * Lecteur par sondage des fichiers : lit et valide la moitié des relevés attendus, relit un lot
+     * sans le valider puis s'arrête ; un nouveau lecteur reprend à la position validée.
+     * @return position validée à l'arrêt, position du lot relu sans validation (-1 si vide),
+     *         position de reprise
+     */
+    private static long[] lireAvecReprise(Path repertoire, List<EvenementReleve> lus, int attendus,
+                                          AtomicBoolean fini) throws Exception {
+        long validee;
+        long relusPosition;
+        try (LecteurFlux lecteur = LecteurFlux.ouvrir(repertoire, "externe")) {
+            while (lus.size() < attendus / 2) {
+                List<EvenementReleve> lot = lecteur.lire(200, 50);
+                lus.addAll(lot);
+                if (!lot.isEmpty()) lecteur.valider();
+            }
+            validee = lecteur.positionValidee();
+            List<EvenementReleve> nonValides = lecteur.lire(200, 1_000);
+            relusPosition = nonValides.isEmpty() ? -1 : nonValides.get(0).getPosition();
+        }
+        long reprise;
+        try (LecteurFlux lecteur = LecteurFlux.ouvrir(repertoire, "externe")) {
+            reprise = lecteur.position();
+            while (!fini.get() || lecteur.retard() > 0) {
+                List<EvenementReleve> lot = lecteur.lire(500, 50);
+                lus.addAll(lot);
+                if (!lot.isEmpty()) lecteur.valider();
+            }
+        }
+        return new long[]{validee, relusPosition, reprise};
+    }
+
+    /** Même ensemble (station, date) que la base, sans doublon, avec le meteo_id de la base. */
+    private static boolean identiques(List<EvenementReleve> lus, Map<String, Long> enBase) {
+        Set<String> vus = new HashSet<>();
+        for (EvenementReleve e : lus) {
+            String cle = cle(e.getStationId(), e.getReleve().getDateMesureMs());
+            if (!vus.add(cle) || !Long.valueOf(e.getMeteoId()).equals(enBase.get(cle))) return false;
+        }
+        return vus.equals(enBase.keySet());
+    }
+
+    /** Chaque événement commence où le précédent finit, à partir de la position donnée. */
+    private static boolean continues(List<EvenementReleve> lus, long depuis) {
+        List<EvenementReleve> tries = new ArrayList<>(lus);
+        tries.sort(Comparator.comparingLong(EvenementReleve::getPosition));
+        long attendue = depuis;
+        for (EvenementReleve e : tries) {
+            if (e.getPosition() != attendue) return false;
+            attendue = e.getPositionSuivante();
+        }
+        return true;
+    }
+
+    /** Nom présent pour les relevés de save, absent pour ceux de saveMeteoParStation. */
+    private static boolean noms(List<EvenementReleve> lus) {
+        boolean avecNom = false;
+        boolean sansNom = false;
+        for (EvenementReleve e : lus) {
+            if (e.getNomStation() != null) {
+                avecNom = true;
+                if (!e.getNomStation().startsWith("Station ")) return false;
+            } else {
+                sansNom = true;
+            }
+        }
+        return avecNom && sansNom;
+    }
+
+    /** (station, date) → meteo_id des relevés en base. */
+    private static Map<String, Long> relevesEnBase(String url) throws Exception {
+        Map<String, Long> ids = new HashMap<>();
+        try (Connection cn = DriverManager.getConnection(url, "sa", "");
+             Statement st = cn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT station_id, date_releve, meteo_id FROM meteo")) {
+            while (rs.next()) {
+                LocalDateTime date = rs.getObject(2, LocalDateTime.class);
+                ids.put(cle(rs.getInt(1), date.toInstant(ZoneOffset.UTC).toEpochMilli()), rs.getLong(3));
+            }
+        }
+        return ids;
+    }
+
+    private static String cle(Integer stationId, long dateMs) {
+        return stationId + "@" + dateMs;
+    }
+
+    private static int nombreSegments(Path repertoire) throws IOException {
+        try (Stream<Path> s = Files.list(repertoire)) {
+            return (int) s.filter(p -> p.getFileName().toString().endsWith(".flux")).count();
+        }
+    }
+
+    private static Path dernierSegment(Path repertoire) throws IOException {
+        try (Stream<Path> s = Files.list(repertoire)) {
+            return s.filter(p -> p.getFileName().toString().endsWith(".flux"))
+                    .max(Comparator.comparing(Path::toString)).orElseThrow(IOException::new);
+        }
+    }
+
+    /** Un relevé de la station i % 50, à l'instant n (minutes), unique pour chaque n. */
+    private static StationMeteo station(int i, int n) {
+        int numero = i % NB_STATIONS;
+        Pays pays = new Pays();
+        pays.setCode(numero % 2 == 0 ? "CH" : "FR");
+        pays.setNom(numero % 2 == 0 ? "Suisse" : "France");
+        StationMeteo s = new StationMeteo();
+        s.setNom(String.format(Locale.ROOT, "Station %02d", numero));
+        s.setLatitude(46.0 + numero * 0.01);
+        s.setLongitude(6.5 + numero * 0.01);
+        s.setPays(pays);
+        Meteo m = new Meteo();
+        m.setDateMesureMs(DEBUT_MS + n * 60_000L);
+        m.setTemperature(10 + (n % 200) / 10.0);
+        m.setHumidite(70.0);
+        m.setPression(1013.0);
+        m.setDescription("nuageux");
+        s.setDonneesMeteo(new ArrayList<>(Arrays.asList(m)));
+        return s;
+    }
+}
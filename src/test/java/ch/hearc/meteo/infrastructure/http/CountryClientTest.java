@@ -0,0 +1,253 @@
+package ch.hearc.meteo.infrastructure.http;
+
+import ch.hearc.meteo.business.Pays;
+import ch.hearc.meteo.exception.ApiClientException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cache et revalidation du client Country ({@link CountryClient}) sur un faux service local :
+ *
+ * 1. pays frais servi sans appel ; pays expiré revalidé par If-None-Match, 304 sans corps ;
+ *    nouvelle version (autre ETag) relue ; If-Modified-Since si seul Last-Modified est connu ;
+ * 2. service en erreur : ancienne réponse servie ; sans cache, erreur ; pays renvoyés en copie ;
+ * 3. liste complète préchargée en une requête ;
+ * 4. 8 threads sur des pays expirés : réponses exactes, que des 304 après le premier passage ;
+ * 5. aucune trace sur la sortie standard par appel (régression : traces DEBUG retirées).
+ */
+class CountryClientTest {
+
+    private static final int THREADS = 8;
+    private static final int APPELS = 200;
+
+    private HttpServer serveur;
+    private final AtomicInteger requetes = new AtomicInteger();
+    private final AtomicInteger reponses304 = new AtomicInteger();
+    private final AtomicReference<String> versionSuisse = new AtomicReference<>("v1");
+    private final AtomicReference<String> dernierIfModifiedSince = new AtomicReference<>();
+    private volatile int statutForce;
+
+    @BeforeEach
+    void demarrer() throws IOException {
+        serveur = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serveur.createContext("/country", this::servir);
+        serveur.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "faux-country");
+            t.setDaemon(true);
+            return t;
+        }));
+        serveur.start();
+    }
+
+    @AfterEach
+    void arreter() {
+        serveur.stop(0);
+    }
+
+    @Test
+    void revalidationConditionnelle() throws Exception {
+        CountryClient client = client(60_000);
+        assertEquals("Suisse", client.fetchPaysByAlpha2("ch", "fr").getNom());
+        assertEquals("Suisse", client.fetchPaysByAlpha2("CH", "FR").getNom(), "frais : servi du cache");
+        assertEquals(1, requetes.get());
+
+        // max-age=0 : chaque lecture revalide, 304 tant que l'ETag ne change pas
+        CountryClient expire = client(0);
+        expire.fetchPaysByAlpha2("CH", "fr");
+        for (int i = 0; i < 5; i++) assertEquals("Suisse", expire.fetchPaysByAlpha2("CH", "fr").getNom());
+        assertEquals(5, reponses304.get());
+        assertTrue(expire.statistiques().startsWith("1 réponses complètes, 5 x 304"), expire.statistiques());
+
+        versionSuisse.set("v2");
+        assertEquals("Suisse (v2)", expire.fetchPaysByAlpha2("CH", "fr").getNom(), "nouvelle version relue");
+        assertEquals(5, reponses304.get());
+
+        // Last-Modified seul : revalidation par date
+        expire.fetchPaysByAlpha2("DE", "fr");
+        assertEquals("Allemagne", expire.fetchPaysByAlpha2("DE", "fr").getNom());
+        assertEquals("Wed, 15 Nov 2023 08:00:00 GMT", dernierIfModifiedSince.get());
+        assertEquals(6, reponses304.get());
+    }
+
+    @Test
+    void serviceEnErreur() throws Exception {
+        CountryClient client = client(0);
+        Pays suisse = client.fetchPaysByAlpha2("CH", "fr");
+        suisse.setNom("modifié par l'appelant");
+
+        statutForce = 503;
+        PrintStream err = System.err;
+        ByteArrayOutputStream erreurs = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(erreurs, true, StandardCharsets.UTF_8));
+        try {
+            assertEquals("Suisse", client.fetchPaysByAlpha2("CH", "fr").getNom(), "ancienne réponse, intacte");
+            ApiClientException e = assertThrows(ApiClientException.class, () -> client.fetchPaysByAlpha2("IT", "fr"));
+            assertTrue(e.getMessage().contains("503"), e.getMessage());
+        } finally {
+            System.setErr(err);
+        }
+        assertTrue(erreurs.toString(StandardCharsets.UTF_8).contains("servi depuis le cache"));
+
+        statutForce = 0;
+        assertNull(client.fetchPaysByAlpha2("XX", "fr"), "réponse vide");
+        assertThrows(ApiClientException.class, () -> client.fetchPaysByAlpha2("ZZ", "fr"), "404");
+    }
+
+    @Test
+    void listeComplete() {
+        CountryClient client = client(60_000);
+        assertEquals(3, client.prechargerTous("fr"));
+        int apres = requetes.get();
+        assertEquals("Allemagne", client.fetchPaysByAlpha2("de", "fr").getNom());
+        assertEquals("Italie", client.fetchPaysByAlpha2("IT", "fr").getNom());
+        assertEquals(apres, requetes.get(), "servis depuis la liste, sans appel");
+        assertTrue(client.statistiques().endsWith("3 pays en cache"), client.statistiques());
+    }
+
+    @Test
+    void revalidationsConcurrentes() throws Exception {
+        CountryClient client = client(0);
+        String[] codes = {"CH", "DE"}; // avec validateurs (ETag, Last-Modified)
+        String[] noms = {"Suisse", "Allemagne"};
+        for (String code : codes) client.fetchPaysByAlpha2(code, "fr");
+        int completesAvant = requetes.get() - reponses304.get();
+
+        CountDownLatch depart = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> taches = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int decalage = t;
+            taches.add(pool.submit(() -> {
+                depart.await();
+                for (int i = 0; i < APPELS / THREADS; i++) {
+                    int p = (i + decalage) % codes.length;
+                    assertEquals(noms[p], client.fetchPaysByAlpha2(codes[p], "fr").getNom());
+                }
+                return null;
+            }));
+        }
+        depart.countDown();
+        for (Future<?> f : taches) f.get();
+        pool.shutdown();
+
+        assertEquals(completesAvant, requetes.get() - reponses304.get(), "aucune réponse complète de plus");
+        assertEquals(APPELS, reponses304.get());
+    }
+
+    @Test
+    void aucuneTraceParAppel() throws Exception {
+        CountryClient client = client(0);
+        PrintStream out = System.out;
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(sortie, true, StandardCharsets.UTF_8));
+        try {
+            for (int i = 0; i < 50; i++) {
+                client.fetchPaysByAlpha2(i % 2 == 0 ? "CH" : "DE", "fr"); // 200 puis 304
+            }
+            client(60_000).prechargerTous("fr");
+            client.fetchPaysByAlpha2("XX", "fr");
+        } finally {
+            System.setOut(out);
+        }
+        assertEquals("", sortie.toString(StandardCharsets.UTF_8), "sortie standard : rien par appel");
+    }
+
+    // -------------------------------------------------------
+    // Utilitaires
+    // -------------------------------------------------------
+
+    private CountryClient client(long fraicheurMs) {
+        return new CountryClient("http://localhost:" + serveur.getAddress().getPort() + "/country",
+                new TransportHttp(Duration.ofSeconds(2), Duration.ofSeconds(5), 2), fraicheurMs);
+    }
+
+    /**
+     * CH : ETag (version modifiable) ; DE : Last-Modified seul ; IT : ni l'un ni l'autre ;
+     * XX : corps "null" ; autre code : 404. Liste complète sur /country.
+     */
+    private void servir(HttpExchange ex) throws IOException {
+        requetes.incrementAndGet();
+        if (statutForce != 0) {
+            repondre(ex, statutForce, "{\"erreur\":\"indisponible\"}");
+            return;
+        }
+        String chemin = ex.getRequestURI().getPath();
+        String code = chemin.length() > "/country/".length() ? chemin.substring("/country/".length()).toUpperCase() : "";
+        switch (code) {
+            case "": {
+                repondre(ex, 200, "[{\"code\":\"ch\",\"name\":\"Suisse\"},{\"code\":\"DE\",\"name\":\"Allemagne\"},"
+                        + "{\"code\":\"IT\",\"name\":\"Italie\"},{\"code\":\"AQ\",\"name\":\"\"}]");
+                break;
+            }
+            case "CH": {
+                String etag = "\"" + versionSuisse.get() + "\"";
+                ex.getResponseHeaders().set("ETag", etag);
+                if (etag.equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+                    pasModifie(ex);
+                } else {
+                    repondre(ex, 200, "{\"code\":\"CH\",\"name\":\"Suisse"
+                            + ("v1".equals(versionSuisse.get()) ? "" : " (" + versionSuisse.get() + ")") + "\"}");
+                }
+                break;
+            }
+            case "DE": {
+                String date = "Wed, 15 Nov 2023 08:00:00 GMT";
+                ex.getResponseHeaders().set("Last-Modified", date);
+                String depuis = ex.getRequestHeaders().getFirst("If-Modified-Since");
+                if (depuis != null) dernierIfModifiedSince.set(depuis);
+                if (date.equals(depuis)) pasModifie(ex);
+                else repondre(ex, 200, "{\"code\":\"DE\",\"name\":\"Allemagne\"}");
+                break;
+            }
+            case "IT":
+                repondre(ex, 200, "{\"code\":\"IT\",\"name\":\"Italie\"}");
+                break;
+            case "XX":
+                repondre(ex, 200, "null");
+                break;
+            default:
+                repondre(ex, 404, "{\"message\":\"inconnu\"}");
+                break;
+        }
+    }
+
+    private void pasModifie(HttpExchange ex) throws IOException {
+        reponses304.incrementAndGet();
+        ex.getResponseHeaders().set("Cache-Control", "max-age=0");
+        ex.sendResponseHeaders(304, -1);
+        ex.close();
+    }
+
+    private static void repondre(HttpExchange ex, int statut, String json) throws IOException {
+        byte[] corps = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(statut, corps.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(corps);
+        }
+    }
+}
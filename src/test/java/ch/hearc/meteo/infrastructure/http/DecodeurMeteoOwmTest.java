@@ -0,0 +1,282 @@
+package ch.hearc.meteo.infrastructure.http;
+
+import ch.hearc.meteo.dto.OpenWeatherMapResponse;
+import ch.hearc.meteo.dto.ReleveOwm;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Décodage de la météo actuelle OpenWeatherMap ({@link DecodeurMeteoOwm}), comparé au mapping Gson
+ * vers {@link OpenWeatherMapResponse} utilisé auparavant :
+ *
+ * 1. équivalence sur des réponses générées (nombres négatifs, exposants, null, sections absentes,
+ *    champs inconnus imbriqués, accents en UTF-8 et en \\u, caractères hors BMP, blancs) : mêmes
+ *    valeurs, au bit près pour les nombres ;
+ * 2. documents invalides (tronqués, virgule en trop...) : JsonParseException, comme Gson ;
+ * 3. mémoire allouée et durée par décodage d'une réponse type, mesurées sur le thread
+ *    (com.sun.management.ThreadMXBean), après préchauffage.
+ */
+class DecodeurMeteoOwmTest {
+
+    private static final int REPONSES = 100_000;
+    private static final int MESURES = 1_000_000;
+
+    private static final String REPONSE_TYPE =
+            "{\"coord\":{\"lon\":6.9319,\"lat\":46.9931},"
+                    + "\"weather\":[{\"id\":803,\"main\":\"Clouds\",\"description\":\"nuageux\",\"icon\":\"04d\"}],"
+                    + "\"base\":\"stations\","
+                    + "\"main\":{\"temp\":12.34,\"feels_like\":11.52,\"temp_min\":10.9,\"temp_max\":13.8,"
+                    + "\"pressure\":1018,\"humidity\":71,\"sea_level\":1018,\"grnd_level\":950},"
+                    + "\"visibility\":10000,\"wind\":{\"speed\":3.6,\"deg\":240,\"gust\":6.2},"
+                    + "\"rain\":{\"1h\":0.25},\"clouds\":{\"all\":75},\"dt\":1700000000,"
+                    + "\"sys\":{\"type\":2,\"id\":2011206,\"country\":\"CH\",\"sunrise\":1699987171,\"sunset\":1700021580},"
+                    + "\"timezone\":3600,\"id\":2659496,\"name\":\"Neuchâtel\",\"cod\":200}";
+
+    private static final String[] NOMS = {"Neuchâtel", "Zürich", "Genève", "São Paulo", "Kraków", "Москва",
+            "東京", "La Chaux-de-Fonds", "Saint-Étienne", "Ålesund", "Reykjavík", "Çanakkale"};
+    private static final String[] DESCRIPTIONS = {"ciel dégagé", "peu nuageux", "couvert", "pluie légère",
+            "orage", "neige", "brume", "averses de pluie", "bruine légère"};
+
+    private static final Gson GSON = new Gson();
+
+    // -------------------------------------------------------
+    // 1. Équivalence avec Gson
+    // -------------------------------------------------------
+
+    @Test
+    void memesValeursQueGson() {
+        Random alea = new Random(48);
+        DecodeurMeteoOwm decodeur = new DecodeurMeteoOwm();
+        int differences = 0;
+        String premierEcart = null;
+        for (int i = 0; i < REPONSES; i++) {
+            String json = genererReponse(alea);
+            byte[] octets = json.getBytes(StandardCharsets.UTF_8);
+            OpenWeatherMapResponse dto = GSON.fromJson(json, OpenWeatherMapResponse.class);
+            ReleveOwm releve = decodeur.decoder(octets, octets.length);
+            String ecart = comparer(dto, releve);
+            if (ecart != null && differences++ == 0) premierEcart = ecart + " : " + json;
+        }
+        System.out.printf(Locale.ROOT, "(Info) Équivalence avec Gson : %d réponse(s), %d écart(s)%n",
+                REPONSES, differences);
+        assertEquals(0, differences, "écarts avec Gson, dont " + premierEcart);
+    }
+
+    /** null si le relevé décodé contient les mêmes valeurs que le DTO Gson, sinon le champ en écart. */
+    private static String comparer(OpenWeatherMapResponse dto, ReleveOwm r) {
+        if (dto == null || r == null) return dto == null && r == null ? null : "document null";
+        OpenWeatherMapResponse.Coord c = dto.getCoord();
+        if (!memeNombre(c != null ? c.getLat() : null, r, ReleveOwm.LATITUDE, r.getLatitude())) return "lat";
+        if (!memeNombre(c != null ? c.getLon() : null, r, ReleveOwm.LONGITUDE, r.getLongitude())) return "lon";
+        OpenWeatherMapResponse.Main m = dto.getMain();
+        if (!memeNombre(m != null ? m.getTemp() : null, r, ReleveOwm.TEMPERATURE, r.getTemperature())) return "temp";
+        if (!memeNombre(m != null ? m.getPressure() : null, r, ReleveOwm.PRESSION, r.getPression())) return "pressure";
+        Integer humidite = m != null ? m.getHumidity() : null;
+        if (!memeNombre(humidite != null ? humidite.doubleValue() : null, r, ReleveOwm.HUMIDITE, r.getHumidite())) {
+            return "humidity";
+        }
+        Integer visibilite = dto.getVisibility();
+        if ((visibilite != null) != r.a(ReleveOwm.VISIBILITE)
+                || (visibilite != null && visibilite != r.getVisibilite())) return "visibility";
+        Double pluie = dto.getRain() != null ? dto.getRain().getH1() : null;
+        if (!memeNombre(pluie, r, ReleveOwm.PRECIPITATION, r.getPrecipitation())) return "rain";
+        Long dt = dto.getDt();
+        if ((dt != null) != r.a(ReleveOwm.DATE) || (dt != null && dt != r.getDateSecondes())) return "dt";
+        Integer id = dto.getId();
+        if ((id != null) != r.a(ReleveOwm.ID_OWM) || (id != null && id != r.getIdOwm())) return "id";
+        if (!Objects.equals(dto.getName(), r.getNom())) return "name";
+        if (!Objects.equals(dto.getSys() != null ? dto.getSys().getCountry() : null, r.getCodePays())) return "country";
+        String description = dto.getWeather() != null && !dto.getWeather().isEmpty() && dto.getWeather().get(0) != null
+                ? dto.getWeather().get(0).getDescription() : null;
+        if (!Objects.equals(description, r.getDescription())) return "description";
+        return null;
+    }
+
+    private static boolean memeNombre(Double attendu, ReleveOwm r, int champ, double valeur) {
+        if (attendu == null) return !r.a(champ);
+        return r.a(champ) && Double.doubleToLongBits(attendu) == Double.doubleToLongBits(valeur);
+    }
+
+    /** Réponse OWM aléatoire : champs dans le désordre, absents, null, inconnus, nombres variés. */
+    private static String genererReponse(Random alea) {
+        StringBuilder sb = new StringBuilder("{");
+        String blanc = alea.nextInt(5) == 0 ? " \n\t" : "";
+        boolean premier = true;
+        String[] sections = {"coord", "weather", "main", "visibility", "rain", "dt", "sys", "id", "name", "inconnu"};
+        for (int k = sections.length - 1; k > 0; k--) {
+            int j = alea.nextInt(k + 1);
+            String t = sections[k];
+            sections[k] = sections[j];
+            sections[j] = t;
+        }
+        for (String section : sections) {
+            if (alea.nextInt(8) == 0) continue; // absente
+            if (!premier) sb.append(',').append(blanc);
+            premier = false;
+            sb.append('"').append(section).append('"').append(blanc).append(':').append(blanc);
+            if (alea.nextInt(15) == 0) {
+                sb.append("null");
+                continue;
+            }
+            switch (section) {
+                case "coord":
+                    sb.append("{\"lon\":").append(nombre(alea, 180)).append(",\"lat\":").append(nombre(alea, 90)).append('}');
+                    break;
+                case "weather":
+                    sb.append('[');
+                    int nb = alea.nextInt(3);
+                    for (int i = 0; i < nb; i++) {
+                        if (i > 0) sb.append(',');
+                        sb.append("{\"id\":").append(200 + alea.nextInt(600)).append(",\"main\":\"Clouds\",\"description\":")
+                                .append(chaine(alea, DESCRIPTIONS)).append(",\"icon\":\"04d\"}");
+                    }
+                    sb.append(']');
+                    break;
+                case "main":
+                    sb.append("{\"temp\":").append(nombre(alea, 40)).append(",\"feels_like\":").append(nombre(alea, 40))
+                            .append(",\"pressure\":").append(alea.nextInt(4) == 0 ? "null" : String.valueOf(900 + alea.nextInt(150)))
+                            .append(",\"humidity\":").append(alea.nextInt(101)).append('}');
+                    break;
+                case "visibility":
+                case "id":
+                    sb.append(alea.nextInt(10_000_000));
+                    break;
+                case "rain":
+                    sb.append(alea.nextBoolean() ? "{\"1h\":" + nombre(alea, 5) + "}" : "{\"3h\":1.5}");
+                    break;
+                case "dt":
+                    sb.append(1_600_000_000L + alea.nextInt(200_000_000));
+                    break;
+                case "sys":
+                    sb.append("{\"type\":2,\"country\":").append(chaine(alea, new String[]{"CH", "FR", "DE", "JP", "RU"}))
+                            .append(",\"sunrise\":1699987171}");
+                    break;
+                case "name":
+                    sb.append(chaine(alea, NOMS));
+                    break;
+                default:
+                    // champ inconnu imbriqué, avec des chaînes contenant des délimiteurs
+                    sb.append("{\"a\":[1,2,{\"b\":\"x}]\\\"y\"}],\"c\":true,\"d\":false,\"e\":null,\"f\":-1.5e-3}");
+                    break;
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String nombre(Random alea, double amplitude) {
+        switch (alea.nextInt(6)) {
+            case 0: return String.valueOf(alea.nextInt((int) amplitude + 1) * (alea.nextBoolean() ? 1 : -1));
+            case 1: return String.format(Locale.ROOT, "%.2f", (alea.nextDouble() * 2 - 1) * amplitude);
+            case 2: return String.format(Locale.ROOT, "%.4f", (alea.nextDouble() * 2 - 1) * amplitude);
+            case 3: return String.valueOf((alea.nextDouble() * 2 - 1) * amplitude); // jusqu'à 17 chiffres
+            case 4: return String.format(Locale.ROOT, "%.3e", (alea.nextDouble() * 2 - 1) * amplitude);
+            default: return "null";
+        }
+    }
+
+    /** Chaîne JSON, tantôt en UTF-8, tantôt avec les caractères non ASCII échappés (\\u), parfois null. */
+    private static String chaine(Random alea, String[] valeurs) {
+        if (alea.nextInt(20) == 0) return "null";
+        String v = valeurs[alea.nextInt(valeurs.length)];
+        if (alea.nextInt(10) == 0) v += " \"😀\" \\ /";
+        StringBuilder sb = new StringBuilder("\"");
+        boolean echapper = alea.nextBoolean();
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c == '/' && echapper) sb.append("\\/");
+            else if (c > 127 && echapper) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    // -------------------------------------------------------
+    // 2. Documents invalides
+    // -------------------------------------------------------
+
+    @Test
+    void documentsInvalidesRefuses() {
+        String[] invalides = {
+                "{\"coord\":{\"lon\":6.9,\"lat\":46.9}",
+                "{\"name\":\"Neuch",
+                "{\"main\":{\"temp\":12.3,}}",
+                "{\"main\":{\"temp\":-}}",
+                "{\"dt\":1700000000}}",
+                "{\"weather\":[{\"description\":\"x\"}}",
+                "[1,2]",
+                "{\"name\":\"a\\x\"}",
+        };
+        DecodeurMeteoOwm decodeur = new DecodeurMeteoOwm();
+        for (String json : invalides) {
+            byte[] octets = json.getBytes(StandardCharsets.UTF_8);
+            assertThrows(JsonParseException.class, () -> decodeur.decoder(octets, octets.length),
+                    "document invalide accepté : " + json);
+        }
+        byte[] vide = "  null ".getBytes(StandardCharsets.UTF_8);
+        assertNull(decodeur.decoder(vide, vide.length), "document null");
+        assertNull(decodeur.decoder(new byte[0], 0), "document vide");
+    }
+
+    // -------------------------------------------------------
+    // 3. Mémoire et durée
+    // -------------------------------------------------------
+
+    @Test
+    void decodageSansAllocation() throws Exception {
+        int n = MESURES;
+        byte[] octets = REPONSE_TYPE.getBytes(StandardCharsets.UTF_8);
+        ByteArrayInputStream flux = new ByteArrayInputStream(octets);
+        DecodeurMeteoOwm decodeur = new DecodeurMeteoOwm();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        long[] gson = new long[2];
+        long[] decode = new long[2];
+        double controle = 0;
+        for (int tour = 0; tour < 3; tour++) { // deux tours de préchauffage, le dernier est mesuré
+            int repetitions = tour < 2 ? Math.min(n, 200_000) : n;
+            long octetsAvant = threads.getThreadAllocatedBytes(thread);
+            long debut = System.nanoTime();
+            for (int i = 0; i < repetitions; i++) {
+                flux.reset();
+                OpenWeatherMapResponse dto = GSON.fromJson(
+                        new InputStreamReader(flux, StandardCharsets.UTF_8), OpenWeatherMapResponse.class);
+                controle += dto.getMain().getTemp();
+            }
+            gson[0] = System.nanoTime() - debut;
+            gson[1] = threads.getThreadAllocatedBytes(thread) - octetsAvant;
+
+            octetsAvant = threads.getThreadAllocatedBytes(thread);
+            debut = System.nanoTime();
+            for (int i = 0; i < repetitions; i++) {
+                flux.reset();
+                controle += decodeur.decoder(flux).getTemperature();
+            }
+            decode[0] = System.nanoTime() - debut;
+            decode[1] = threads.getThreadAllocatedBytes(thread) - octetsAvant;
+        }
+        double octetsGson = (double) gson[1] / n;
+        double octetsDecodeur = (double) decode[1] / n;
+        System.out.printf(Locale.ROOT, "(Info) Gson -> DTO      : %7.0f ns, %7.1f octets alloués par réponse%n",
+                (double) gson[0] / n, octetsGson);
+        System.out.printf(Locale.ROOT, "(Info) Décodeur -> relevé : %5.0f ns, %7.1f octets alloués par réponse (contrôle %.0f)%n",
+                (double) decode[0] / n, octetsDecodeur, controle);
+        // quelques octets tolérés : compteurs de la JVM elle-même pendant la mesure
+        assertTrue(octetsDecodeur < 8, "octets alloués par réponse décodée : " + octetsDecodeur);
+    }
+}
@@ -0,0 +1,228 @@
+package ch.hearc.meteo.infrastructure.http;
+
+import ch.hearc.meteo.exception.ApiClientException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pool de clés d'API ({@link PoolClesApi}) :
+ *
+ * 1. répartition selon le budget restant, quota atteint sur toutes les clés, clés invalides ;
+ * 2. 8 threads se disputent 4 clés : exactement la somme des quotas accordée, autant par clé ;
+ * 3. client OWM sur un faux serveur : clé refusée (401) puis limitée (429) retirées de la rotation,
+ *    les autres servent les appels ;
+ * 4. délai dépassé et serveur arrêté : comptés par clé sans suspendre la clé, et l'appel
+ *    qui n'a pas pu se connecter est rendu au quota.
+ */
+class PoolClesApiTest {
+
+    private static final int QUOTA = 250;
+    private static final int THREADS = 8;
+
+    @Test
+    void repartitionEtQuota() {
+        assertThrows(IllegalArgumentException.class, () -> PoolClesApi.depuisListe(" , ", 60));
+        assertThrows(IllegalArgumentException.class, () -> PoolClesApi.depuisListe("a", 0));
+        PoolClesApi pool = PoolClesApi.depuisListe("cle-aaaa, cle-bbbb,,cle-cccc ", 5);
+        assertEquals(3, pool.taille());
+
+        Map<String, Integer> parCle = new HashMap<>();
+        for (int i = 0; i < 15; i++) {
+            parCle.merge(pool.acquerir().valeur(), 1, Integer::sum);
+        }
+        assertEquals(Map.of("cle-aaaa", 5, "cle-bbbb", 5, "cle-cccc", 5), parCle, "budget réparti");
+        ApiClientException e = assertThrows(ApiClientException.class, pool::acquerir);
+        assertTrue(e.getMessage().contains("prochaine disponibilité"), e.getMessage());
+        for (PoolClesApi.UsageCle u : pool.usage()) {
+            assertEquals(0, u.getRestantMinute());
+            assertTrue(u.getCle().startsWith("****") && !u.getCle().contains("cle-"), "clé masquée : " + u.getCle());
+        }
+    }
+
+    @Test
+    void clesDisputeesParPlusieursThreads() throws Exception {
+        PoolClesApi pool = PoolClesApi.depuisListe("k1,k2,k3,k4", QUOTA);
+        Map<String, AtomicInteger> parCle = new ConcurrentHashMap<>();
+        AtomicInteger refus = new AtomicInteger();
+        CountDownLatch depart = new CountDownLatch(1);
+        ExecutorService executeur = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> taches = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            taches.add(executeur.submit(() -> {
+                depart.await();
+                for (int i = 0; i < QUOTA; i++) {
+                    try {
+                        PoolClesApi.Cle cle = pool.acquerir();
+                        parCle.computeIfAbsent(cle.valeur(), k -> new AtomicInteger()).incrementAndGet();
+                        pool.signaler(cle, 200);
+                    } catch (ApiClientException e) {
+                        refus.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        depart.countDown();
+        for (Future<?> f : taches) f.get();
+        executeur.shutdown();
+
+        assertEquals(THREADS * QUOTA - 4 * QUOTA, refus.get(), "au-delà de la somme des quotas : refus");
+        for (String cle : Arrays.asList("k1", "k2", "k3", "k4")) {
+            assertEquals(QUOTA, parCle.get(cle).get(), "appels accordés à " + cle);
+        }
+        long succes = 0;
+        for (PoolClesApi.UsageCle u : pool.usage()) succes += u.getSucces();
+        assertEquals(4 * QUOTA, succes);
+    }
+
+    @Test
+    void clesRefuseesRetireesDeLaRotation() throws Exception {
+        HttpServer serveur = serveur(ex -> {
+            String appid = parametre(ex, "appid");
+            if ("cle-invalide-0401".equals(appid)) repondre(ex, 401, "{\"cod\":401,\"message\":\"Invalid API key\"}");
+            else if ("cle-limitee-0429".equals(appid)) repondre(ex, 429, "{\"cod\":429}");
+            else repondre(ex, 200, OBSERVATION);
+        });
+        PoolClesApi pool = PoolClesApi.depuisListe("cle-invalide-0401,cle-limitee-0429,cle-valide-0200", 60);
+        OpenWeatherMapClient owm = new OpenWeatherMapClient(url(serveur), pool);
+        int echecs = 0;
+        ByteArrayOutputStream erreurs = new ByteArrayOutputStream();
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(erreurs, true, StandardCharsets.UTF_8));
+        try {
+            for (int i = 0; i < 20; i++) {
+                try {
+                    assertNotNull(owm.fetchMeteo(null, null, 46.99, 6.93, "fr"));
+                } catch (ApiClientException e) {
+                    echecs++;
+                }
+            }
+        } finally {
+            System.setErr(err);
+            serveur.stop(0);
+        }
+
+        assertEquals(2, echecs, "un seul appel refusé par clé fautive");
+        Map<String, PoolClesApi.UsageCle> usage = parCle(pool);
+        assertEquals(1, usage.get("****0401").getRefus401());
+        assertEquals(1, usage.get("****0429").getRefus429());
+        assertTrue(usage.get("****0401").isSuspendue() && usage.get("****0429").isSuspendue());
+        assertEquals(18, usage.get("****0200").getSucces(), "la clé valide sert le reste");
+        String warn = erreurs.toString(StandardCharsets.UTF_8);
+        assertTrue(warn.contains("refusée (401)") && warn.contains("limitée (429)"), warn);
+    }
+
+    @Test
+    void erreursReseauEtDelaisComptesParCle() throws Exception {
+        HttpServer serveur = serveur(ex -> {
+            pause(500);
+            repondre(ex, 200, OBSERVATION);
+        });
+        PoolClesApi pool = PoolClesApi.depuisListe("cle-unique", 60);
+        TransportHttp transport = new TransportHttp(Duration.ofMillis(500), Duration.ofMillis(100), 2);
+        OpenWeatherMapClient owm = new OpenWeatherMapClient(url(serveur), null, pool, transport);
+        try {
+            ApiClientException e = assertThrows(ApiClientException.class,
+                    () -> owm.fetchMeteo(null, null, 46.99, 6.93, "fr"));
+            assertTrue(e.getMessage().contains("délai de réponse dépassé"), e.getMessage());
+        } finally {
+            serveur.stop(0);
+        }
+        PoolClesApi.UsageCle usage = pool.usage().get(0);
+        assertEquals(1, usage.getDelaisDepasses());
+        assertEquals(59, usage.getRestantMinute(), "la requête est partie : elle compte dans le quota");
+
+        // serveur arrêté : connexion refusée, l'appel n'a pas atteint OWM
+        assertThrows(ApiClientException.class, () -> owm.fetchMeteo(null, null, 46.99, 6.93, "fr"));
+        assertThrows(ApiClientException.class, () -> owm.fetchPrevisions(46.99, 6.93, "fr"));
+        usage = pool.usage().get(0);
+        assertEquals(2, usage.getErreursReseau(), "connexions refusées (météo et prévisions)");
+        assertEquals(59, usage.getRestantMinute(), "appels sans connexion rendus au quota");
+        assertEquals(3, usage.getAppels());
+        assertFalse(usage.isSuspendue(), "erreur réseau : la clé n'est pas en cause");
+        assertTrue(usage.toString().contains("2 erreurs réseau, 1 délais dépassés"), usage.toString());
+    }
+
+    // -------------------------------------------------------
+    // Utilitaires
+    // -------------------------------------------------------
+
+    private static final String OBSERVATION = "{\"coord\":{\"lon\":6.93,\"lat\":46.99},"
+            + "\"weather\":[{\"description\":\"ciel dégagé\"}],\"main\":{\"temp\":12.5,\"pressure\":1015,"
+            + "\"humidity\":60},\"dt\":1700000000,\"sys\":{\"country\":\"CH\"},\"id\":2659496,\"name\":\"Neuchâtel\"}";
+
+    private interface Reponse {
+        void traiter(HttpExchange ex) throws IOException;
+    }
+
+    private static HttpServer serveur(Reponse reponse) throws IOException {
+        HttpServer serveur = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serveur.createContext("/data/2.5/weather", reponse::traiter);
+        serveur.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "faux-owm");
+            t.setDaemon(true);
+            return t;
+        }));
+        serveur.start();
+        return serveur;
+    }
+
+    private static String url(HttpServer serveur) {
+        return "http://localhost:" + serveur.getAddress().getPort() + "/data/2.5/weather";
+    }
+
+    private static String parametre(HttpExchange ex, String nom) {
+        for (String kv : ex.getRequestURI().getRawQuery().split("&")) {
+            if (kv.startsWith(nom + "=")) return kv.substring(nom.length() + 1);
+        }
+        return null;
+    }
+
+    private static void repondre(HttpExchange ex, int statut, String json) throws IOException {
+        byte[] corps = json.getBytes(StandardCharsets.UTF_8);
+        ex.sendResponseHeaders(statut, corps.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(corps);
+        }
+    }
+
+    private static Map<String, PoolClesApi.UsageCle> parCle(PoolClesApi pool) {
+        Map<String, PoolClesApi.UsageCle> result = new HashMap<>();
+        for (PoolClesApi.UsageCle u : pool.usage()) result.put(u.getCle(), u);
+        return result;
+    }
+
+    private static void pause(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
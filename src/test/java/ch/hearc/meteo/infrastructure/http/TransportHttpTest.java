@@ -0,0 +1,236 @@
+package ch.hearc.meteo.infrastructure.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Transport HTTP partagé ({@link TransportHttp}) sur un serveur HTTP local :
+ *
+ * 1. corps gzip décompressé avant le retour de get() (octets comptés), en-têtes demandés envoyés,
+ *    statut d'erreur rendu avec son corps, POST JSON ;
+ * 2. corps gzip invalide, corps interrompu (en-têtes puis silence), serveur arrêté :
+ *    erreur dans le délai de la requête, comptée dans les métriques ;
+ * 3. 8 threads sur une réponse lente : requêtes simultanées comptées, aucune perdue ;
+ * 4. client HTTP (et ses threads) créé au premier appel seulement ; paramètres invalides refusés.
+ */
+class TransportHttpTest {
+
+    private static final int THREADS = 8;
+    private static final int APPELS_PAR_THREAD = 25;
+    private static final String DOCUMENT;
+
+    static {
+        StringBuilder json = new StringBuilder("{\"list\":[");
+        for (int i = 0; i < 500; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"dt\":").append(1_700_000_000L + i * 10_800L).append(",\"description\":\"ciel dégagé\"}");
+        }
+        DOCUMENT = json.append("]}").toString();
+    }
+
+    private HttpServer serveur;
+    private final AtomicReference<String> dernierAcceptEncoding = new AtomicReference<>();
+    private final AtomicReference<String> dernierIfNoneMatch = new AtomicReference<>();
+    private final AtomicReference<String> dernierCorpsPoste = new AtomicReference<>();
+
+    @BeforeEach
+    void demarrer() throws IOException {
+        serveur = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serveur.createContext("/gzip", ex -> {
+            dernierAcceptEncoding.set(ex.getRequestHeaders().getFirst("Accept-Encoding"));
+            dernierIfNoneMatch.set(ex.getRequestHeaders().getFirst("If-None-Match"));
+            byte[] corps = gzip(DOCUMENT.getBytes(StandardCharsets.UTF_8));
+            ex.getResponseHeaders().set("Content-Encoding", "gzip");
+            repondre(ex, 200, corps);
+        });
+        serveur.createContext("/gzip-invalide", ex -> {
+            ex.getResponseHeaders().set("Content-Encoding", "gzip");
+            repondre(ex, 200, "pas du gzip".getBytes(StandardCharsets.UTF_8));
+        });
+        serveur.createContext("/absent", ex -> repondre(ex, 404, "{\"message\":\"introuvable\"}".getBytes(StandardCharsets.UTF_8)));
+        serveur.createContext("/interrompu", ex -> {
+            ex.sendResponseHeaders(200, 1_000);
+            OutputStream out = ex.getResponseBody();
+            out.write("{\"debut\":".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            pause(3_000); // reste du corps jamais envoyé dans le délai
+            ex.close();
+        });
+        serveur.createContext("/lent", ex -> {
+            pause(50);
+            repondre(ex, 200, "{}".getBytes(StandardCharsets.UTF_8));
+        });
+        serveur.createContext("/webhook", ex -> {
+            dernierCorpsPoste.set(new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            repondre(ex, 204, null);
+        });
+        serveur.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "serveur-local");
+            t.setDaemon(true);
+            return t;
+        }));
+        serveur.start();
+    }
+
+    @AfterEach
+    void arreter() {
+        serveur.stop(0);
+    }
+
+    @Test
+    void corpsDecompresseEtEnTetes() throws Exception {
+        TransportHttp transport = new TransportHttp(Duration.ofSeconds(2), Duration.ofSeconds(5), 2);
+        try (TransportHttp.ReponseHttp r = transport.get(uri("/gzip"), Map.of("If-None-Match", "\"v1\""))) {
+            // décompressé pendant get() : compté avant toute lecture du corps par l'appelant
+            TransportHttp.Metriques m = transport.metriques();
+            assertEquals(DOCUMENT.getBytes(StandardCharsets.UTF_8).length, m.getOctetsDecompresses());
+            assertTrue(m.getOctetsRecus() < m.getOctetsDecompresses() / 5, "corps transmis compressé : " + m);
+            assertEquals(1, m.getReponsesGzip());
+            assertEquals(200, r.statut());
+            assertEquals("gzip", r.entete("content-encoding"), "en-têtes reçus conservés");
+            assertEquals(DOCUMENT, r.corpsTexte());
+        }
+        assertEquals("gzip", dernierAcceptEncoding.get());
+        assertEquals("\"v1\"", dernierIfNoneMatch.get(), "en-tête de l'appelant envoyé");
+
+        try (TransportHttp.ReponseHttp r = transport.get(uri("/absent"))) {
+            assertEquals(404, r.statut(), "statut d'erreur rendu, pas d'exception");
+            assertTrue(!r.estSucces() && r.corpsTexte().contains("introuvable"));
+        }
+        assertEquals(204, transport.postJson(uri("/webhook"), "{\"alerte\":\"gel\"}"));
+        assertEquals("{\"alerte\":\"gel\"}", dernierCorpsPoste.get());
+
+        TransportHttp.Metriques m = transport.metriques();
+        assertEquals(3, m.getRequetes());
+        assertEquals(3, m.getReponsesHttp11(), "serveur local HTTP/1.1 : repli négocié");
+        assertEquals(0, m.getErreursReseau() + m.getDelaisRequeteDepasses());
+    }
+
+    @Test
+    void erreursDansLeDelai() throws Exception {
+        TransportHttp transport = new TransportHttp(Duration.ofSeconds(1), Duration.ofMillis(500), 2);
+        assertThrows(IOException.class, () -> transport.get(uri("/gzip-invalide")), "gzip invalide");
+        assertEquals(1, transport.metriques().getErreursReseau());
+
+        long t0 = System.nanoTime();
+        HttpTimeoutException e = assertThrows(HttpTimeoutException.class, () -> transport.get(uri("/interrompu")));
+        long ms = (System.nanoTime() - t0) / 1_000_000L;
+        assertTrue(ms < 2_000, "corps interrompu : abandon après le délai de la requête (" + ms + " ms)");
+        assertTrue(e.getMessage().contains("500 ms"), e.getMessage());
+        assertEquals(1, transport.metriques().getDelaisRequeteDepasses());
+
+        URI arrete = uri("/lent");
+        serveur.stop(0);
+        assertThrows(IOException.class, () -> transport.get(arrete), "serveur arrêté");
+        assertEquals(2, transport.metriques().getErreursReseau());
+        assertTrue(transport.metriques().toString().contains("erreurs réseau 2"), transport.metriques().toString());
+    }
+
+    @Test
+    void requetesSimultanees() throws Exception {
+        TransportHttp transport = new TransportHttp(Duration.ofSeconds(2), Duration.ofSeconds(10), 4);
+        CountDownLatch depart = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> taches = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            taches.add(pool.submit(() -> {
+                depart.await();
+                int ok = 0;
+                for (int i = 0; i < APPELS_PAR_THREAD; i++) {
+                    try (TransportHttp.ReponseHttp r = transport.get(uri("/lent"))) {
+                        if (r.statut() == 200 && "{}".equals(r.corpsTexte())) ok++;
+                    }
+                }
+                return ok;
+            }));
+        }
+        depart.countDown();
+        int ok = 0;
+        for (Future<Integer> f : taches) ok += f.get();
+        pool.shutdown();
+
+        TransportHttp.Metriques m = transport.metriques();
+        System.out.println("(Info) " + m);
+        assertEquals(THREADS * APPELS_PAR_THREAD, ok);
+        assertEquals(THREADS * APPELS_PAR_THREAD, m.getRequetes());
+        assertTrue(m.getEnCoursMax() > 1 && m.getEnCoursMax() <= THREADS, "simultanées max : " + m.getEnCoursMax());
+        assertTrue(m.getDureeTotaleMs() >= THREADS * APPELS_PAR_THREAD * 50L, "durée cumulée des requêtes");
+    }
+
+    @Test
+    void clientCreeAuPremierAppel() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> new TransportHttp(Duration.ZERO, Duration.ofSeconds(1), 1));
+        assertThrows(IllegalArgumentException.class, () -> new TransportHttp(Duration.ofSeconds(1), null, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TransportHttp(Duration.ofSeconds(1), Duration.ofSeconds(1), 0));
+
+        long avant = threadsHttp();
+        TransportHttp transport = new TransportHttp(Duration.ofSeconds(1), Duration.ofSeconds(2), 1);
+        assertEquals(avant, threadsHttp(), "aucun thread HTTP avant le premier appel");
+        try (TransportHttp.ReponseHttp r = transport.get(uri("/lent"))) {
+            assertEquals(200, r.statut());
+        }
+        assertTrue(threadsHttp() > avant, "threads du client démarrés au premier appel");
+    }
+
+    // -------------------------------------------------------
+    // Utilitaires
+    // -------------------------------------------------------
+
+    private URI uri(String chemin) {
+        return URI.create("http://localhost:" + serveur.getAddress().getPort() + chemin);
+    }
+
+    private static long threadsHttp() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.isAlive() && t.getName().startsWith("http-"))
+                .count();
+    }
+
+    private static byte[] gzip(byte[] octets) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(octets);
+        }
+        return out.toByteArray();
+    }
+
+    private static void repondre(HttpExchange ex, int statut, byte[] corps) throws IOException {
+        ex.sendResponseHeaders(statut, corps == null ? -1 : corps.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            if (corps != null) out.write(corps);
+        }
+    }
+
+    private static void pause(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
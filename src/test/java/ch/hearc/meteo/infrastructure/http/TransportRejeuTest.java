@@ -0,0 +1,206 @@
+package ch.hearc.meteo.infrastructure.http;
+
+import ch.hearc.meteo.ServeurFactice;
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.Pays;
+import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.infrastructure.persistence.H2MeteoRepository;
+import ch.hearc.meteo.service.MeteoServiceImpl;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Enregistrement et rejeu hors ligne des API ({@link TransportEnregistreur}, {@link TransportRejeu})
+ * sur le service complet (base H2 en mémoire) :
+ * 1. enregistrement : N positions capturées en trois cycles auprès des faux OWM et Country ;
+ * 2. faux services arrêtés, rejeu des mêmes captures sans latence : base identique à l'enregistrement ;
+ * 3. charge : plusieurs fois le volume enregistré sur plusieurs threads, latence enregistrée ;
+ * 4. deux exécutions log-normales de même graine, en charge sur plusieurs threads, simulent la même
+ *    latence totale : les tirages ne dépendent pas de l'ordre d'arrivée des requêtes. Le cache des
+ *    pays est prérempli, sans quoi le nombre d'appels au service des pays dépendrait lui aussi de
+ *    l'ordre d'arrivée (plusieurs threads résolvant le même pays à la fois).
+ */
+class TransportRejeuTest {
+
+    private static final int POSITIONS = 300;
+    private static final int LATENCE_MS = 5;
+    private static final int VOLUME = 10;
+    private static final long DT_BASE = 1_700_000_000L; // secondes
+    private static final int CYCLES = 3;
+    private static final int THREADS_CHARGE = 8;
+
+    // observation servie par le faux OWM pendant le cycle en cours
+    private static volatile long dtCourant = DT_BASE;
+    private static int numeroBase;
+
+    private static Path fichier;
+    private static String urlArretee;
+    private static List<String> attendu;
+
+    /** Enregistrement contre les faux services, arrêtés ensuite : les rejeux n'ont plus de serveur. */
+    @BeforeAll
+    static void enregistrer() throws Exception {
+        fichier = Files.createTempFile("meteo-api", ".rej");
+        H2MeteoRepository repo = nouvelleBase();
+        long octetsServis;
+        try (ServeurFactice serveur = ServeurFactice.demarrer(LATENCE_MS, q -> {
+            int p = (int) Math.round((Double.parseDouble(q.get("lat")) - 46.0) * 100);
+            long dt = dtCourant;
+            return new ServeurFactice.Observation(latitude(p), longitude(p),
+                    ServeurFactice.temperature(p, dt), dt, 1000 + p, nom(p));
+        });
+             TransportEnregistreur enregistreur = new TransportEnregistreur(
+                     Duration.ofSeconds(5), Duration.ofSeconds(10), 4, fichier)) {
+            urlArretee = serveur.getUrl();
+            MeteoServiceImpl service = serveur.service(enregistreur, repo);
+            for (int cycle = 0; cycle < CYCLES; cycle++) {
+                dtCourant = DT_BASE + cycle * 600L;
+                assertEquals(0, capturer(service, 1, 1), "erreurs à l'enregistrement");
+            }
+            octetsServis = serveur.getOctetsServis();
+        }
+        attendu = contenu(repo);
+        System.out.printf(Locale.ROOT, "(Info) Enregistrement : %d relevés en base, fichier %d octets "
+                        + "pour %d octets de réponses (%.1f %%)%n",
+                attendu.size(), Files.size(fichier), octetsServis, Files.size(fichier) * 100.0 / Math.max(1, octetsServis));
+        assertEquals(POSITIONS * CYCLES, attendu.size(), "relevés enregistrés");
+    }
+
+    @AfterAll
+    static void supprimer() throws Exception {
+        Files.deleteIfExists(fichier);
+    }
+
+    @Test
+    void rejeuALIdentique() throws Exception {
+        TransportRejeu rejeu = new TransportRejeu(fichier, TransportRejeu.Latence.aucune());
+        H2MeteoRepository repo = nouvelleBase();
+        MeteoServiceImpl service = service(rejeu, repo, false);
+        int erreurs = 0;
+        for (int cycle = 0; cycle < CYCLES; cycle++) {
+            erreurs += capturer(service, 1, 1);
+        }
+        System.out.println("(Info) Rejeu sans latence : " + rejeu.statistiques());
+        assertEquals(0, erreurs, "erreurs au rejeu");
+        assertTrue(rejeu.metriques().getRequetes() > 0, "requêtes rejouées");
+        assertEquals(attendu, contenu(repo), "base identique à l'enregistrement");
+    }
+
+    @Test
+    void chargeAvecLatenceEnregistree() throws Exception {
+        charge("latence enregistrée", TransportRejeu.Latence.enregistree(1), VOLUME, THREADS_CHARGE, false);
+    }
+
+    @Test
+    void latenceLogNormaleReproductible() throws Exception {
+        TransportRejeu.Latence lognormale = TransportRejeu.Latence.lognormale(20, 200, 10, 42);
+        TransportHttp.Metriques m1 = charge("log-normale", lognormale, VOLUME, THREADS_CHARGE, true);
+        TransportHttp.Metriques m2 = charge("log-normale, même graine", lognormale, VOLUME, THREADS_CHARGE, true);
+        assertEquals(m1.getRequetes(), m2.getRequetes(), "même suite de requêtes");
+        assertEquals(m1.getDureeTotaleMs(), m2.getDureeTotaleMs(), "latence simulée totale (ms)");
+    }
+
+    /** Rejeu de volume fois les captures enregistrées, réparties entre les threads. */
+    private static TransportHttp.Metriques charge(String nom, TransportRejeu.Latence latence, int volume,
+                                                  int threads, boolean paysEnCache) throws Exception {
+        TransportRejeu rejeu = new TransportRejeu(fichier, latence);
+        H2MeteoRepository repo = nouvelleBase();
+        MeteoServiceImpl service = service(rejeu, repo, paysEnCache);
+        long t0 = System.nanoTime();
+        int erreurs = capturer(service, volume * CYCLES, threads);
+        long dureeMs = (System.nanoTime() - t0) / 1_000_000L;
+
+        TransportHttp.Metriques m = rejeu.metriques();
+        int operations = POSITIONS * CYCLES * volume;
+        System.out.printf(Locale.ROOT, "(Info) Charge x%d, %d thread(s), %s : %d captures en %d ms (%.0f op/s), "
+                        + "latence simulée moyenne %.2f ms%n",
+                volume, threads, nom, operations, dureeMs, operations * 1000.0 / Math.max(1, dureeMs),
+                m.getDureeTotaleMs() / (double) Math.max(1, m.getRequetes()));
+        assertEquals(0, erreurs, "erreurs en charge (" + nom + ")");
+        assertEquals(attendu, contenu(repo), "base identique à l'enregistrement (" + nom + ")");
+        return m;
+    }
+
+    /**
+     * Tours captures de chaque position (dans l'ordre des positions), réparties entre les threads.
+     * @return nombre d'erreurs
+     */
+    private static int capturer(MeteoServiceImpl service, int tours, int threads) throws Exception {
+        AtomicInteger prochaine = new AtomicInteger();
+        AtomicInteger erreurs = new AtomicInteger();
+        int total = POSITIONS * tours;
+        List<Thread> travailleurs = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            travailleurs.add(new Thread(() -> {
+                int n;
+                while ((n = prochaine.getAndIncrement()) < total) {
+                    int p = n % POSITIONS;
+                    try {
+                        StationMeteo s = service.obtenirMeteoEtTraiter(latitude(p), longitude(p), "fr");
+                        if (s == null || !nom(p).equals(s.getNom())) erreurs.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        if (erreurs.incrementAndGet() <= 3) System.err.println("[WARN]   " + nom(p) + " : " + e);
+                    }
+                }
+            }, "rejeu-" + t));
+        }
+        return ServeurFactice.sansTraces(() -> {
+            for (Thread th : travailleurs) th.start();
+            for (Thread th : travailleurs) th.join();
+            return erreurs.get();
+        });
+    }
+
+    /** Service branché sur les faux services arrêtés : seul le rejeu peut répondre. */
+    private static MeteoServiceImpl service(TransportHttp transport, H2MeteoRepository repo, boolean paysEnCache) {
+        OpenWeatherMapClient owm = new OpenWeatherMapClient(urlArretee + "/data/2.5/weather", null,
+                new PoolClesApi(Collections.singletonList("cle-test"), 1_000_000), transport);
+        CountryClient pays = new CountryClient(urlArretee + "/country", transport);
+        if (paysEnCache) {
+            Pays suisse = new Pays();
+            suisse.setCode("CH");
+            suisse.setNom("Suisse");
+            pays.prechargerCache(Collections.singletonList(suisse), "fr");
+        }
+        return new MeteoServiceImpl(owm, pays, repo);
+    }
+
+    private static H2MeteoRepository nouvelleBase() throws Exception {
+        H2MeteoRepository repo = new H2MeteoRepository(
+                "jdbc:h2:mem:rejeu" + (numeroBase++) + ";DB_CLOSE_DELAY=-1", "sa", "");
+        repo.initialiserSchema();
+        return repo;
+    }
+
+    /** Stations et relevés de la base, triés : "station|pays|instant|température". */
+    private static List<String> contenu(H2MeteoRepository repo) throws Exception {
+        List<String> lignes = new ArrayList<>();
+        for (StationMeteo s : repo.findAllStations()) {
+            for (Meteo m : repo.findMeteoForStationBetween(s.getNom(), (Instant) null, (Instant) null)) {
+                lignes.add(s.getNom() + "|" + (s.getPays() != null ? s.getPays().getNom() : null)
+                        + "|" + m.getDateMesureMs() + "|" + m.getTemperature());
+            }
+        }
+        Collections.sort(lignes);
+        return lignes;
+    }
+
+    // positions espacées de 0.01° : jusqu'à 1000 positions distinctes
+    private static double latitude(int p) { return 46.0 + p * 0.01; }
+    private static double longitude(int p) { return 6.0 + (p % 100) * 0.01; }
+    private static String nom(int p) { return "Station " + p; }
+}
@@ -0,0 +1,160 @@
+package ch.hearc.meteo.infrastructure.persistence;
+
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.Pays;
+import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.infrastructure.archive.ArchiveMeteo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Archivage des relevés anciens ({@link ArchiveMeteoRepository#archiverAvant}) sur une base H2 en mémoire :
+ *
+ * 1. deux stations homonymes à des positions différentes, dont les relevés tombent aux mêmes instants :
+ *    archivées chacune dans leur dossier, aucun relevé perdu, toutes les colonnes relues à l'identique ;
+ * 2. seuls les relevés archivés sont supprimés de la base ({@link MeteoRepository#supprimerReleves}) :
+ *    un relevé ancien inséré après l'archivage reste en base, puis est archivé au passage suivant ;
+ * 3. historique et parcours en flux (rapports) identiques avant et après l'archivage.
+ */
+class ArchiveMeteoRepositoryTest {
+
+    private static final long DEBUT_MS = 1_700_000_000_000L; // 2023-11-14T22:13:20Z
+    private static final long HEURE = 3_600_000L;
+    private static final int NB_RELEVES = 24 * 60; // deux mois, à cheval sur trois mois calendaires
+    private static int numeroBase;
+
+    @TempDir
+    Path dossier;
+
+    @Test
+    void homonymesArchivesSeparementSansPerte() throws Exception {
+        H2MeteoRepository base = nouvelleBase();
+        ArchiveMeteoRepository repo = new ArchiveMeteoRepository(base, new ArchiveMeteo(dossier));
+        base.save(station("Saint-Martin", 46.1, 7.3, DEBUT_MS, NB_RELEVES, 0));
+        base.save(station("Saint-Martin", 18.07, -63.05, DEBUT_MS, NB_RELEVES, 100));
+
+        List<Meteo> avant = repo.findMeteoForStationBetween("Saint-Martin", (Instant) null, null);
+        List<Integer> numeros = numeros(base);
+        List<long[]> fluxAvant = parcourir(repo, numeros);
+
+        Instant limite = Instant.ofEpochMilli(DEBUT_MS + (NB_RELEVES - 10) * HEURE);
+        assertEquals(2 * (NB_RELEVES - 10), repo.archiverAvant(limite), "relevés archivés");
+        assertEquals(20, base.findMeasurementInstantsForStation("Saint-Martin").size(), "restent en base");
+
+        Path dossierNom = dossier.resolve("Saint-Martin");
+        try (Stream<Path> positions = Files.list(dossierNom)) {
+            assertEquals(2, positions.count(), "un dossier par position");
+        }
+
+        assertEquals(2 * NB_RELEVES, repo.findMeasurementInstantsForStation("Saint-Martin").size(),
+                "historique complet, base + archive");
+        List<Meteo> apres = repo.findMeteoForStationBetween("Saint-Martin", (Instant) null, null);
+        assertEquals(textes(avant), textes(apres), "mêmes relevés, toutes colonnes, avant et après l'archivage");
+        Meteo archive = repo.findMeteoForStationAt("Saint-Martin", Instant.ofEpochMilli(DEBUT_MS + 5 * HEURE));
+        assertNotNull(archive);
+        assertEquals(5.5, archive.getTemperature(), "le plus ancien des homonymes à cette seconde");
+        assertEquals(Integer.valueOf(10_000), archive.getVisibilite(), "visibilité archivée");
+        assertEquals("pluie", archive.getDescription(), "description archivée");
+
+        List<long[]> fluxApres = parcourir(repo, numeros);
+        assertEquals(fluxAvant.size(), fluxApres.size(), "parcours en flux : même nombre de relevés");
+        for (int i = 0; i < fluxAvant.size(); i++) {
+            assertTrue(Arrays.equals(fluxAvant.get(i), fluxApres.get(i)), "parcours en flux : relevé " + i);
+        }
+    }
+
+    @Test
+    void seulsLesRelevesArchivesSontSupprimes() throws Exception {
+        H2MeteoRepository base = nouvelleBase();
+        ArchiveMeteoRepository repo = new ArchiveMeteoRepository(base, new ArchiveMeteo(dossier));
+        base.save(station("Neuchâtel", 46.99, 6.93, DEBUT_MS, 48, 0));
+        Instant limite = Instant.ofEpochMilli(DEBUT_MS + 48 * HEURE);
+
+        assertEquals(48, repo.archiverAvant(limite));
+        assertEquals(0, base.findMeasurementInstantsForStation("Neuchâtel").size());
+
+        // relevé ancien inséré après coup (import) : pas supprimé sans avoir été archivé
+        int id = base.ensureStationId(station("Neuchâtel", 46.99, 6.93, DEBUT_MS, 0, 0));
+        assertEquals(0, base.supprimerReleves(id, List.of(Instant.ofEpochMilli(DEBUT_MS - HEURE))),
+                "aucun relevé à cet instant");
+        base.save(station("Neuchâtel", 46.99, 6.93, DEBUT_MS - HEURE, 1, 0));
+        assertEquals(1, base.findMeasurementInstantsForStation("Neuchâtel").size());
+
+        assertEquals(1, repo.archiverAvant(limite), "archivé au passage suivant");
+        assertEquals(0, base.findMeasurementInstantsForStation("Neuchâtel").size());
+        assertEquals(49, repo.findMeasurementInstantsForStation("Neuchâtel").size());
+        assertEquals(0, repo.archiverAvant(limite), "rejouer est sans effet");
+    }
+
+    // -------------------------------------------------------
+    // Utilitaires
+    // -------------------------------------------------------
+
+    private static H2MeteoRepository nouvelleBase() throws Exception {
+        H2MeteoRepository repo = new H2MeteoRepository(
+                "jdbc:h2:mem:archive" + (numeroBase++) + ";DB_CLOSE_DELAY=-1", "sa", "");
+        repo.initialiserSchema();
+        return repo;
+    }
+
+    /** Relevés sous forme de texte (toutes les colonnes), triés : comparaison indépendante de l'ordre des homonymes. */
+    private static List<String> textes(List<Meteo> releves) {
+        List<String> result = new ArrayList<>();
+        for (Meteo m : releves) result.add(m.toString());
+        Collections.sort(result);
+        return result;
+    }
+
+    private static List<Integer> numeros(MeteoRepository repo) throws Exception {
+        List<Integer> result = new ArrayList<>();
+        for (StationMeteo s : repo.findAllStations()) result.add(s.getNumero());
+        return result;
+    }
+
+    /** Parcours en flux : station, date et valeurs (bits) de chaque relevé, dans l'ordre reçu. */
+    private static List<long[]> parcourir(MeteoRepository repo, List<Integer> stations) throws Exception {
+        List<long[]> result = new ArrayList<>();
+        repo.parcourirReleves(stations, null, null, 100, (stationId, dateMs, t, h, p, precip) ->
+                result.add(new long[]{stationId, dateMs, Double.doubleToLongBits(t), Double.doubleToLongBits(h),
+                        Double.doubleToLongBits(p), Double.doubleToLongBits(precip)}));
+        return result;
+    }
+
+    /** n relevés horaires à partir de la date donnée, température i + 0.5 + decalage. */
+    private static StationMeteo station(String nom, double lat, double lon, long debutMs, int n, double decalage) {
+        Pays pays = new Pays();
+        pays.setCode("CH");
+        pays.setNom("Suisse");
+
+        StationMeteo s = new StationMeteo();
+        s.setNom(nom);
+        s.setLatitude(lat);
+        s.setLongitude(lon);
+        s.setPays(pays);
+        for (int i = 0; i < n; i++) {
+            Meteo m = new Meteo();
+            m.setDateMesureMs(debutMs + i * HEURE);
+            m.setTemperature(i + 0.5 + decalage);
+            m.setHumidite(i % 7 == 0 ? null : 60.0 + i % 10);
+            m.setPression(1013.0);
+            m.setVisibilite(10_000);
+            m.setPrecipitation(0.2);
+            m.setDescription("pluie");
+            s.addMeteo(m);
+        }
+        return s;
+    }
+}
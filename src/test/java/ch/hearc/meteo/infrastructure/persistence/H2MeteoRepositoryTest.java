@@ -0,0 +1,292 @@
+package ch.hearc.meteo.infrastructure.persistence;
+
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.Pays;
+import ch.hearc.meteo.business.StationMeteo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Base embarquée ({@link H2MeteoRepository}) : même contrat que le repository Oracle, sans serveur.
+ *
+ * 1. schéma : script rejoué sans erreur, index de l'historique et contraintes d'unicité présents ;
+ *    base existante contenant des doublons : index unique signalé mais démarrage non bloqué ;
+ * 2. enregistrement : pays et station créés une seule fois, relevé déjà présent (même station,
+ *    même instant) ignoré, stations homonymes à des positions différentes distinctes ;
+ * 3. lectures : noms, dates (plus récentes d'abord), relevé à la seconde, plage [début, fin)
+ *    avec bornes absentes, stations, pays, derniers relevés ; valeurs absentes relues null ;
+ * 4. suppressions : par station avant une date, rétention par lots sur toutes les stations ;
+ * 5. fichier : base fermée (SHUTDOWN) puis rouverte, contenu conservé.
+ */
+class H2MeteoRepositoryTest {
+
+    private static final long DEBUT_MS = 1_700_000_000_000L; // 2023-11-14T22:13:20Z
+    private static final long HEURE = 3_600_000L;
+    private static int numeroBase;
+
+    @TempDir
+    Path dossier;
+
+    // -------------------------------------------------------
+    // 1. Schéma
+    // -------------------------------------------------------
+
+    @Test
+    void schemaRejoueEtIndexPresents() throws Exception {
+        String url = urlMemoire();
+        H2MeteoRepository repo = nouveau(url);
+        repo.initialiserSchema(); // second passage : idempotent
+
+        Set<String> index = new TreeSet<>();
+        try (Connection cn = DriverManager.getConnection(url, "sa", "");
+             Statement st = cn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT index_name FROM information_schema.indexes")) {
+            while (rs.next()) index.add(rs.getString(1).toLowerCase());
+        }
+        for (String attendu : Arrays.asList("idx_stations_meteo_nom", "uq_meteo_station_date",
+                "uq_stations_meteo", "idx_meteo_date", "idx_baux_stations_noeud")) {
+            assertTrue(index.contains(attendu), "index " + attendu + " absent : " + index);
+        }
+    }
+
+    @Test
+    void doublonsExistantsNeBloquentPasLeDemarrage() throws Exception {
+        String url = urlMemoire();
+        H2MeteoRepository repo = nouveau(url);
+        repo.save(station("Neuchâtel", 46.99, 6.93, DEBUT_MS));
+
+        // base « ancienne » : index unique absent, relevé en double
+        try (Connection cn = DriverManager.getConnection(url, "sa", "");
+             Statement st = cn.createStatement()) {
+            st.execute("DROP INDEX uq_meteo_station_date");
+            st.execute("INSERT INTO meteo (station_id, date_releve, temperature) "
+                    + "SELECT station_id, date_releve, temperature FROM meteo");
+        }
+
+        repo.initialiserSchema();
+        assertEquals(2, repo.findMeasurementInstantsForStation("Neuchâtel").size(), "doublon conservé");
+        repo.save(station("Neuchâtel", 46.99, 6.93, DEBUT_MS + HEURE));
+        assertEquals(3, repo.findMeasurementInstantsForStation("Neuchâtel").size(), "enregistrement toujours possible");
+    }
+
+    // -------------------------------------------------------
+    // 2. Enregistrement
+    // -------------------------------------------------------
+
+    @Test
+    void paysStationEtReleveUniques() throws Exception {
+        H2MeteoRepository repo = nouveau(urlMemoire());
+
+        for (int i = 0; i < 3; i++) {
+            repo.save(station("Neuchâtel", 46.99, 6.93, DEBUT_MS));           // même relevé 3 fois
+            repo.save(station("Neuchâtel", 46.99, 6.93, DEBUT_MS + i * HEURE));
+        }
+        repo.save(station("Neuchâtel", 40.0, -75.0, DEBUT_MS));               // homonyme ailleurs
+        repo.save(station("Berne", 46.95, 7.45, DEBUT_MS));
+
+        assertEquals(1, repo.findAllPays().size(), "pays créé une fois");
+        assertEquals(Arrays.asList("Berne", "Neuchâtel"), repo.findAllStationNames());
+        assertEquals(3, repo.findAllStations().size(), "homonymes à des positions différentes distincts");
+        assertEquals(4, repo.findMeasurementInstantsForStation("Neuchâtel").size(),
+                "relevés déjà présents ignorés (3 + 1 de l'homonyme)");
+
+        Integer id = repo.ensureStationId(station("Neuchâtel", 46.99, 6.93, DEBUT_MS));
+        assertEquals(id, repo.ensureStationId(station("Neuchâtel", 46.99, 6.93, DEBUT_MS)));
+        assertNotEquals(id, repo.ensureStationId(station("Neuchâtel", 40.0, -75.0, DEBUT_MS)));
+    }
+
+    @Test
+    void insertionParStation() throws Exception {
+        H2MeteoRepository repo = nouveau(urlMemoire());
+        int a = repo.ensureStationId(station("A", 1.0, 1.0, DEBUT_MS));
+        int b = repo.ensureStationId(station("B", 2.0, 2.0, DEBUT_MS));
+
+        Map<Integer, List<Meteo>> lot = new HashMap<>();
+        lot.put(a, releves(DEBUT_MS, 10));
+        lot.put(b, releves(DEBUT_MS, 5));
+        assertEquals(15, repo.saveMeteoParStation(lot));
+
+        lot.put(a, releves(DEBUT_MS + 5 * HEURE, 10)); // 5 déjà présents
+        lot.put(b, releves(DEBUT_MS, 5));              // tous présents
+        assertEquals(5, repo.saveMeteoParStation(lot), "relevés déjà présents ignorés");
+        assertEquals(15, repo.findMeasurementInstantsForStation("A").size());
+        assertEquals(5, repo.findMeasurementInstantsForStation("B").size());
+        assertEquals(0, repo.saveMeteoParStation(Collections.emptyMap()));
+    }
+
+    // -------------------------------------------------------
+    // 3. Lectures
+    // -------------------------------------------------------
+
+    @Test
+    void lecturesDeLHistorique() throws Exception {
+        H2MeteoRepository repo = nouveau(urlMemoire());
+        StationMeteo neuchatel = station("Neuchâtel", 46.99, 6.93, DEBUT_MS);
+        neuchatel.setOpenWeatherMapId(2659496);
+        neuchatel.setDonneesMeteo(releves(DEBUT_MS + 250, 24)); // millisecondes conservées
+        Meteo incomplet = neuchatel.getDonneesMeteo().get(3);
+        incomplet.setHumidite(null);
+        incomplet.setVisibilite(null);
+        incomplet.setDescription(null);
+        repo.save(neuchatel);
+        repo.save(station("Berne", 46.95, 7.45, DEBUT_MS - 10 * HEURE));
+
+        List<Instant> dates = repo.findMeasurementInstantsForStation("Neuchâtel");
+        assertEquals(24, dates.size());
+        assertEquals(Instant.ofEpochMilli(DEBUT_MS + 250 + 23 * HEURE), dates.get(0), "plus récent d'abord");
+        assertEquals(Instant.ofEpochMilli(DEBUT_MS + 250), dates.get(23));
+
+        Meteo trouve = repo.findMeteoForStationAt("Neuchâtel", Instant.ofEpochMilli(DEBUT_MS + 3 * HEURE));
+        assertNotNull(trouve, "relevé dans la seconde demandée");
+        assertEquals(DEBUT_MS + 250 + 3 * HEURE, trouve.getDateMesureMs());
+        assertEquals(3.5, trouve.getTemperature());
+        assertNull(trouve.getHumidite(), "valeur absente relue null");
+        assertNull(trouve.getVisibilite());
+        assertNull(trouve.getDescription());
+        assertNull(repo.findMeteoForStationAt("Neuchâtel", Instant.ofEpochMilli(DEBUT_MS + 3 * HEURE + 1_000)));
+        assertNull(repo.findMeteoForStationAt("Inconnue", Instant.ofEpochMilli(DEBUT_MS)));
+
+        Instant debut = Instant.ofEpochMilli(DEBUT_MS + 250 + 5 * HEURE);
+        Instant fin = Instant.ofEpochMilli(DEBUT_MS + 250 + 10 * HEURE);
+        List<Meteo> plage = repo.findMeteoForStationBetween("Neuchâtel", debut, fin);
+        assertEquals(5, plage.size(), "plage [début, fin)");
+        assertEquals(debut.toEpochMilli(), plage.get(0).getDateMesureMs(), "début inclus, ordre croissant");
+        assertEquals(10, repo.findMeteoForStationBetween("Neuchâtel", (Instant) null, fin).size());
+        assertEquals(19, repo.findMeteoForStationBetween("Neuchâtel", debut, (Instant) null).size());
+        assertEquals(24, repo.findMeteoForStationBetween("Neuchâtel", (Instant) null, (Instant) null).size());
+
+        StationMeteo relue = repo.findStationByName("Neuchâtel");
+        assertEquals(46.99, relue.getLatitude());
+        assertEquals(6.93, relue.getLongitude());
+        assertEquals(2659496, relue.getOpenWeatherMapId());
+        assertEquals("CH", relue.getPays().getCode());
+        assertEquals("Suisse", relue.getPays().getNom());
+        assertNull(repo.findStationByName("Inconnue"));
+
+        List<StationMeteo> derniers = repo.findDerniersReleves(Instant.ofEpochMilli(DEBUT_MS));
+        assertEquals(1, derniers.size(), "Berne n'a aucun relevé depuis la date");
+        assertEquals("Neuchâtel", derniers.get(0).getNom());
+        assertEquals(1, derniers.get(0).getDonneesMeteo().size());
+        assertEquals(DEBUT_MS + 250 + 23 * HEURE, derniers.get(0).getDonneesMeteo().get(0).getDateMesureMs());
+        assertEquals(2, repo.findDerniersReleves(Instant.ofEpochMilli(0)).size());
+    }
+
+    // -------------------------------------------------------
+    // 4. Suppressions
+    // -------------------------------------------------------
+
+    @Test
+    void suppressionsAvantUneDate() throws Exception {
+        H2MeteoRepository repo = nouveau(urlMemoire());
+        StationMeteo a = station("A", 1.0, 1.0, DEBUT_MS);
+        a.setDonneesMeteo(releves(DEBUT_MS, 3_000)); // plusieurs lots de purge
+        repo.save(a);
+        StationMeteo b = station("B", 2.0, 2.0, DEBUT_MS);
+        b.setDonneesMeteo(releves(DEBUT_MS, 100));
+        repo.save(b);
+
+        Instant limite = Instant.ofEpochMilli(DEBUT_MS + 50 * HEURE);
+        assertEquals(50, repo.deleteMeteoForStationBefore("B", limite));
+        assertEquals(50, repo.findMeasurementInstantsForStation("B").size());
+        assertEquals(3_000, repo.findMeasurementInstantsForStation("A").size(), "autre station intacte");
+
+        assertEquals(2_550, repo.purgerRelevesAvant(Instant.ofEpochMilli(DEBUT_MS + 2_500 * HEURE)));
+        assertEquals(500, repo.findMeasurementInstantsForStation("A").size());
+        assertEquals(0, repo.findMeasurementInstantsForStation("B").size());
+        assertEquals(2, repo.findAllStations().size(), "stations conservées");
+    }
+
+    // -------------------------------------------------------
+    // 5. Fichier
+    // -------------------------------------------------------
+
+    @Test
+    void baseFichierRouverte() throws Exception {
+        String url = "jdbc:h2:" + dossier.resolve("meteo").toAbsolutePath();
+        H2MeteoRepository repo = nouveau(url);
+        StationMeteo station = station("Neuchâtel", 46.99, 6.93, DEBUT_MS);
+        station.setDonneesMeteo(releves(DEBUT_MS, 48));
+        repo.save(station);
+        repo.fermerConnexions();
+        try (Connection cn = DriverManager.getConnection(url, "sa", "");
+             Statement st = cn.createStatement()) {
+            st.execute("SHUTDOWN");
+        }
+
+        H2MeteoRepository rouverte = nouveau(url);
+        assertEquals(Collections.singletonList("Neuchâtel"), rouverte.findAllStationNames());
+        assertEquals(48, rouverte.findMeasurementInstantsForStation("Neuchâtel").size());
+        rouverte.save(station); // mêmes relevés : ignorés après réouverture aussi
+        assertEquals(48, rouverte.findMeasurementInstantsForStation("Neuchâtel").size());
+        assertFalse(rouverte.findAllPays().isEmpty());
+        rouverte.fermerConnexions();
+    }
+
+    // -------------------------------------------------------
+    // Utilitaires
+    // -------------------------------------------------------
+
+    private static String urlMemoire() {
+        return "jdbc:h2:mem:h2repo" + (numeroBase++) + ";DB_CLOSE_DELAY=-1";
+    }
+
+    private static H2MeteoRepository nouveau(String url) throws Exception {
+        H2MeteoRepository repo = new H2MeteoRepository(url, "sa", "");
+        repo.initialiserSchema();
+        return repo;
+    }
+
+    /** Station avec un relevé à la date donnée. */
+    private static StationMeteo station(String nom, double lat, double lon, long dateMs) {
+        Pays pays = new Pays();
+        pays.setCode("CH");
+        pays.setNom("Suisse");
+
+        StationMeteo s = new StationMeteo();
+        s.setNom(nom);
+        s.setLatitude(lat);
+        s.setLongitude(lon);
+        s.setPays(pays);
+        s.setDonneesMeteo(releves(dateMs, 1));
+        return s;
+    }
+
+    /** n relevés horaires à partir de la date donnée, température i + 0.5. */
+    private static List<Meteo> releves(long debutMs, int n) {
+        List<Meteo> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Meteo m = new Meteo();
+            m.setDateMesureMs(debutMs + i * HEURE);
+            m.setTemperature(i + 0.5);
+            m.setHumidite(60.0);
+            m.setPression(1013.0);
+            m.setVisibilite(10_000);
+            m.setPrecipitation(0.0);
+            m.setDescription("ciel dégagé");
+            result.add(m);
+        }
+        return result;
+    }
+}
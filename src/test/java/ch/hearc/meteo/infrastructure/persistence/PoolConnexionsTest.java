@@ -0,0 +1,194 @@
+package ch.hearc.meteo.infrastructure.persistence;
+
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.Pays;
+import ch.hearc.meteo.business.StationMeteo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Réutilisation des connexions et des requêtes préparées ({@link H2MeteoRepository#configurerConnexions}),
+ * sans serveur de base (H2 en mémoire, nouvelle base par configuration) : N enregistrements d'un
+ * relevé (save : pays, station, relevé) sur 50 stations, puis autant de lectures d'historique, avec
+ * 1 et 4 threads, dans trois configurations :
+ * - une connexion par opération (comportement d'origine) ;
+ * - connexions gardées, requêtes préparées à chaque appel ;
+ * - connexions et requêtes préparées gardées.
+ *
+ * Affiche la durée par opération et le nombre de requêtes préparées ; vérifie que chaque
+ * configuration enregistre exactement les mêmes relevés.
+ *
+ * Emprunt borné : toutes les connexions empruntées, un emprunt de plus attend qu'une soit rendue,
+ * ou échoue après l'attente ; une connexion rendue garde ses requêtes, une connexion fermée
+ * entre-temps n'est pas reprêtée.
+ */
+class PoolConnexionsTest {
+
+    private static final int OPERATIONS = 20_000;
+    private static final int PRECHAUFFAGE = 2_000;
+    private static final int NB_STATIONS = 50;
+    private static final long DEBUT_MS = 1_700_000_000_000L;
+    private static int numeroBase;
+
+    @ParameterizedTest(name = "{0}, {3} thread(s)")
+    @CsvSource({
+            "une connexion par opération,    0,  0, 1",
+            "connexions gardées,             8,  0, 1",
+            "connexions et requêtes gardées, 8, 32, 1",
+            "une connexion par opération,    0,  0, 4",
+            "connexions gardées,             8,  0, 4",
+            "connexions et requêtes gardées, 8, 32, 4"
+    })
+    void memesRelevesQuelleQueSoitLaConfiguration(String nom, int connexions, int requetes, int threads)
+            throws Exception {
+        String url = "jdbc:h2:mem:connexions" + (numeroBase++) + ";DB_CLOSE_DELAY=-1";
+        H2MeteoRepository repo = new H2MeteoRepository(url, "sa", "");
+        repo.configurerConnexions(connexions, requetes);
+        repo.initialiserSchema();
+
+        // préchauffage (JIT, création des stations) puis mesure
+        executer(threads, PRECHAUFFAGE, i -> repo.save(station(i, -1 - i)));
+        long debut = System.nanoTime();
+        executer(threads, OPERATIONS, i -> repo.save(station(i, i)));
+        long ecritureNs = System.nanoTime() - debut;
+        debut = System.nanoTime();
+        executer(threads, OPERATIONS, i -> repo.findMeasurementInstantsForStation(nomStation(i)));
+        long lectureNs = System.nanoTime() - debut;
+
+        long lignes;
+        long stations;
+        try (Connection cn = DriverManager.getConnection(url, "sa", "");
+             Statement st = cn.createStatement()) {
+            lignes = compter(st, "SELECT COUNT(*) FROM meteo");
+            stations = compter(st, "SELECT COUNT(*) FROM stations_meteo");
+            st.execute("SHUTDOWN");
+        }
+        String statistiques = repo.statistiquesConnexions();
+        repo.fermerConnexions();
+
+        System.out.printf(Locale.ROOT, "(Info) %d thread(s), %-31s : enregistrement %6.1f µs, lecture %6.1f µs%s%n",
+                threads, nom, ecritureNs / 1_000.0 / OPERATIONS, lectureNs / 1_000.0 / OPERATIONS,
+                statistiques != null ? " (" + statistiques + ")" : "");
+        assertEquals(PRECHAUFFAGE + OPERATIONS, lignes, "relevés");
+        assertEquals(NB_STATIONS, stations, "stations");
+    }
+
+    @Test
+    void empruntBorne() throws Exception {
+        String url = "jdbc:h2:mem:connexions" + (numeroBase++) + ";DB_CLOSE_DELAY=-1";
+        try (PoolConnexions pool = new PoolConnexions(url, "sa", "", 2, 4, 300)) {
+            Connexion a = pool.emprunter();
+            Connexion b = pool.emprunter();
+            PreparedStatement requete = a.requete("SELECT 1");
+            a.jdbc().setAutoCommit(false);
+
+            long debut = System.nanoTime();
+            assertThrows(SQLTransientConnectionException.class, pool::emprunter, "toutes empruntées");
+            long attenteMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - debut);
+            assertTrue(attenteMs >= 250 && attenteMs < 5_000, "attente bornée : " + attenteMs + " ms");
+
+            // connexion rendue pendant l'attente : reprêtée, avec ses requêtes, transaction annulée
+            ExecutorService rendu = Executors.newSingleThreadExecutor();
+            try {
+                rendu.submit(() -> {
+                    Thread.sleep(100);
+                    a.close();
+                    return null;
+                });
+                try (Connexion c = pool.emprunter()) {
+                    assertSame(a, c, "connexion rendue reprêtée");
+                    assertSame(requete, c.requete("SELECT 1"), "requête gardée avec la connexion");
+                    assertTrue(c.jdbc().getAutoCommit(), "autoCommit rétabli");
+                }
+            } finally {
+                rendu.shutdown();
+            }
+
+            // connexion fermée par le pilote : écartée au retour
+            b.jdbc().close();
+            b.close();
+            try (Connexion c = pool.emprunter(); Connexion d = pool.emprunter()) {
+                assertNotSame(b, c);
+                assertNotSame(b, d);
+            }
+            System.out.println("(Info) Emprunt borné : " + pool.statistiques());
+            assertTrue(pool.statistiques().contains("2 attente(s) dont 1 expirée(s)"), pool.statistiques());
+        }
+    }
+
+    private interface Operation {
+        void executer(int i) throws Exception;
+    }
+
+    /** Opérations 0 à n - 1 réparties entre les threads (i, i + threads, ...). */
+    private static void executer(int threads, int n, Operation operation) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> taches = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int premier = t;
+                taches.add(pool.submit(() -> {
+                    for (int i = premier; i < n; i += threads) operation.executer(i);
+                    return null;
+                }));
+            }
+            for (Future<?> f : taches) f.get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String nomStation(int i) {
+        return String.format(Locale.ROOT, "Station %02d", i % NB_STATIONS);
+    }
+
+    /** Un relevé de la station i % 50, à l'instant n (minutes), unique pour chaque n. */
+    private static StationMeteo station(int i, int n) {
+        int numero = i % NB_STATIONS;
+        Pays pays = new Pays();
+        pays.setCode(numero % 2 == 0 ? "CH" : "FR");
+        pays.setNom(numero % 2 == 0 ? "Suisse" : "France");
+        StationMeteo s = new StationMeteo();
+        s.setNom(nomStation(i));
+        s.setLatitude(46.0 + numero * 0.01);
+        s.setLongitude(6.5 + numero * 0.01);
+        s.setPays(pays);
+        Meteo m = new Meteo();
+        m.setDateMesureMs(DEBUT_MS + n * 60_000L);
+        m.setTemperature(10 + (n % 200) / 10.0);
+        m.setHumidite(70.0);
+        m.setPression(1013.0);
+        m.setDescription("nuageux");
+        s.setDonneesMeteo(new ArrayList<>(Collections.singletonList(m)));
+        return s;
+    }
+
+    private static long compter(Statement st, String sql) throws Exception {
+        try (ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package ch.hearc.meteo.service;
+
+import ch.hearc.meteo.ServeurFactice;
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.infrastructure.http.TransportHttp;
+import ch.hearc.meteo.infrastructure.persistence.H2MeteoRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cache des lectures d'historique ({@link CacheHistorique}) :
+ *
+ * 1. liste des stations : servie du cache pendant son TTL, oubliée à l'enregistrement d'une station
+ *    inconnue mais pas d'une station déjà listée ; TTL nul : toujours lue en base ;
+ * 2. dates : complétées par les relevés enregistrés (plus récentes d'abord, sans doublon),
+ *    oubliées après un relevé sans date, relues à l'expiration ;
+ * 3. relevés : copies rendues, absence non mise en cache, éviction du moins récemment consulté ;
+ * 4. versions : une lecture de la base pendant un enregistrement de la même station n'est pas gardée,
+ *    un enregistrement d'une autre station ne l'empêche pas ;
+ * 5. service sur H2 et faux OWM : captures visibles sans relire la base ; 8 threads lisent pendant
+ *    qu'un autre capture, dates finales identiques à la base.
+ */
+class CacheHistoriqueTest {
+
+    private static final long DT_BASE = 1_700_000_000L; // secondes
+    private static final long LONG = 600_000L;
+    private static final int THREADS = 8;
+    private static final int CAPTURES = 60;
+
+    private static final AtomicLong dtServi = new AtomicLong(DT_BASE);
+    private static ServeurFactice serveur;
+    private static int numeroBase;
+
+    @BeforeAll
+    static void demarrer() throws Exception {
+        // latitude 46.99 : Neuchâtel, sinon Berne
+        serveur = ServeurFactice.demarrer(0, q -> {
+            long dt = dtServi.get();
+            boolean neuchatel = q.getOrDefault("lat", "").startsWith("46.99");
+            return neuchatel
+                    ? new ServeurFactice.Observation(46.99, 6.93, ServeurFactice.temperature(0, dt), dt, 2659496, "Neuchâtel")
+                    : new ServeurFactice.Observation(46.95, 7.45, ServeurFactice.temperature(1, dt), dt, 2661552, "Berne");
+        });
+    }
+
+    @AfterAll
+    static void arreter() {
+        serveur.close();
+    }
+
+    @Test
+    void listeDesStations() throws Exception {
+        CacheHistorique cache = new CacheHistorique(LONG, LONG, 10);
+        AtomicInteger lectures = new AtomicInteger();
+        List<String> base = new ArrayList<>(List.of("Berne", "Neuchâtel"));
+        CacheHistorique.Chargement<List<String>> charger = () -> {
+            lectures.incrementAndGet();
+            return new ArrayList<>(base);
+        };
+
+        assertEquals(base, cache.stations(charger));
+        assertEquals(base, cache.stations(charger));
+        assertEquals(1, lectures.get(), "servie du cache");
+
+        cache.enregistres("Berne", List.of(releve(1_000)));
+        cache.stations(charger);
+        assertEquals(1, lectures.get(), "station déjà listée : liste gardée");
+
+        base.add("Lausanne");
+        cache.enregistres("Lausanne", List.of(releve(1_000)));
+        assertEquals(base, cache.stations(charger), "station inconnue : liste relue");
+        assertEquals(2, lectures.get());
+
+        CacheHistorique sansCache = new CacheHistorique(0, 0, 0);
+        sansCache.stations(charger);
+        sansCache.stations(charger);
+        assertEquals(4, lectures.get(), "TTL nul : toujours lue en base");
+    }
+
+    @Test
+    void datesCompleteesParLesEnregistrements() throws Exception {
+        CacheHistorique cache = new CacheHistorique(LONG, LONG, 10);
+        AtomicInteger lectures = new AtomicInteger();
+        CacheHistorique.Chargement<List<Instant>> base = () -> {
+            lectures.incrementAndGet();
+            return new ArrayList<>(List.of(instant(3_000), instant(1_000)));
+        };
+
+        assertEquals(List.of(instant(3_000), instant(1_000)), cache.dates("A", base));
+        cache.enregistres("A", List.of(releve(4_000), releve(2_000), releve(3_000)));
+        cache.enregistres("B", List.of(releve(9_000)));
+        List<Instant> dates = cache.dates("A", base);
+        assertEquals(List.of(instant(4_000), instant(3_000), instant(2_000), instant(1_000)), dates,
+                "plus récentes d'abord, sans doublon");
+        assertEquals(1, lectures.get(), "complétées sans relire la base");
+        dates.clear();
+        assertEquals(4, cache.dates("A", base).size(), "liste rendue à l'appelant : cache intact");
+
+        // relevé horodaté par la base : dates inconnues, relues
+        cache.enregistres("A", List.of(new Meteo()));
+        assertEquals(2, cache.dates("A", base).size());
+        assertEquals(2, lectures.get());
+
+        CacheHistorique court = new CacheHistorique(LONG, 50, 10);
+        court.dates("A", base);
+        court.dates("A", base);
+        assertEquals(3, lectures.get());
+        Thread.sleep(100);
+        court.dates("A", base);
+        assertEquals(4, lectures.get(), "TTL écoulé : relues");
+    }
+
+    @Test
+    void relevesCopiesEtEviction() throws Exception {
+        CacheHistorique cache = new CacheHistorique(LONG, LONG, 2);
+        AtomicInteger lectures = new AtomicInteger();
+        CacheHistorique.Chargement<Meteo> base = () -> {
+            lectures.incrementAndGet();
+            return releve(1_000);
+        };
+
+        Meteo m = cache.releve("A", instant(1_000), base);
+        m.setTemperature(-99.0);
+        assertEquals(12.5, cache.releve("A", instant(1_000), base).getTemperature(), "copie rendue à l'appelant");
+        assertEquals(1, lectures.get());
+
+        assertNull(cache.releve("A", instant(5_000), () -> {
+            lectures.incrementAndGet();
+            return null;
+        }));
+        assertNull(cache.releve("A", instant(5_000), () -> {
+            lectures.incrementAndGet();
+            return null;
+        }));
+        assertEquals(3, lectures.get(), "absence non mise en cache");
+
+        cache.releve("B", instant(1_000), base);           // A, B
+        cache.releve("A", instant(1_000), base);           // A consulté : B le moins récent
+        cache.releve("C", instant(1_000), base);           // B évincé
+        assertEquals(5, lectures.get());
+        cache.releve("A", instant(1_000), base);
+        assertEquals(5, lectures.get(), "A gardé");
+        cache.releve("B", instant(1_000), base);
+        assertEquals(6, lectures.get(), "B évincé");
+        assertTrue(cache.statistiques().endsWith("2 relevé(s) en cache"), cache.statistiques());
+    }
+
+    @Test
+    void lectureConcurrenteDUnEnregistrement() throws Exception {
+        CacheHistorique cache = new CacheHistorique(LONG, LONG, 10);
+        AtomicInteger lectures = new AtomicInteger();
+
+        // la base est lue avant l'enregistrement de A, qui arrive pendant la lecture
+        CacheHistorique.Chargement<List<Instant>> pendantEcritureA = () -> {
+            lectures.incrementAndGet();
+            List<Instant> lues = new ArrayList<>(List.of(instant(1_000)));
+            cache.enregistres("A", List.of(releve(2_000)));
+            return lues;
+        };
+        assertEquals(1, cache.dates("A", pendantEcritureA).size());
+        CacheHistorique.Chargement<List<Instant>> base = () -> {
+            lectures.incrementAndGet();
+            return new ArrayList<>(List.of(instant(2_000), instant(1_000)));
+        };
+        assertEquals(2, cache.dates("A", base).size(), "lecture dépassée non gardée");
+        assertEquals(2, lectures.get());
+
+        // enregistrement d'une autre station pendant la lecture : résultat gardé
+        CacheHistorique.Chargement<List<Instant>> pendantEcritureB = () -> {
+            lectures.incrementAndGet();
+            cache.enregistres("B", List.of(releve(2_000)));
+            return new ArrayList<>(List.of(instant(7_000)));
+        };
+        cache.dates("C", pendantEcritureB);
+        assertEquals(List.of(instant(7_000)), cache.dates("C", base));
+        assertEquals(3, lectures.get());
+
+        // liste des stations : seule une station inconnue enregistrée pendant la lecture l'empêche d'être gardée
+        AtomicInteger listes = new AtomicInteger();
+        CacheHistorique connue = new CacheHistorique(LONG, LONG, 10);
+        connue.enregistres("A", List.of(releve(1_000)));
+        connue.stations(() -> {
+            listes.incrementAndGet();
+            connue.enregistres("A", List.of(releve(3_000)));
+            return List.of("A", "B");
+        });
+        connue.stations(() -> List.of());
+        assertEquals(1, listes.get(), "station déjà connue : liste gardée");
+
+        CacheHistorique inconnue = new CacheHistorique(LONG, LONG, 10);
+        inconnue.stations(() -> {
+            listes.incrementAndGet();
+            inconnue.enregistres("D", List.of(releve(3_000)));
+            return List.of("A", "B");
+        });
+        CacheHistorique.Chargement<List<String>> aJour = () -> {
+            listes.incrementAndGet();
+            return List.of("A", "B", "D");
+        };
+        assertEquals(Arrays.asList("A", "B", "D"), inconnue.stations(aJour), "lecture dépassée non gardée");
+        inconnue.stations(aJour);
+        assertEquals(3, listes.get());
+    }
+
+    @Test
+    void serviceSurH2() throws Exception {
+        Comptage repo = new Comptage(url());
+        repo.initialiserSchema();
+        MeteoServiceImpl service = serveur.service(new TransportHttp(), repo);
+        service.configurerCacheHistorique(LONG, LONG, 100);
+
+        dtServi.set(DT_BASE);
+        ServeurFactice.sansTraces(() -> service.obtenirMeteoEtTraiter(46.99, 6.93, "fr"));
+        assertEquals(List.of("Neuchâtel"), service.listerStationsEnregistrees());
+        assertEquals(1, service.listerInstantsPourStation("Neuchâtel").size());
+
+        dtServi.set(DT_BASE + 600);
+        ServeurFactice.sansTraces(() -> service.obtenirMeteoEtTraiter(46.99, 6.93, "fr"));
+        List<Instant> dates = service.listerInstantsPourStation("Neuchâtel");
+        assertEquals(1, repo.lecturesDates.get(), "dates complétées sans relire la base");
+        assertEquals(repo.findMeasurementInstantsForStation("Neuchâtel"), dates, "capture visible sans expiration");
+        assertEquals(List.of("Neuchâtel"), service.listerStationsEnregistrees());
+        assertEquals(1, repo.lecturesStations.get());
+
+        ServeurFactice.sansTraces(() -> service.obtenirMeteoEtTraiter(46.95, 7.45, "fr"));
+        assertEquals(List.of("Berne", "Neuchâtel"), service.listerStationsEnregistrees(), "nouvelle station listée");
+        assertEquals(2, repo.lecturesStations.get());
+
+        Meteo m = service.obtenirMeteoHistorique("Neuchâtel", dates.get(0));
+        assertEquals(ServeurFactice.temperature(0, DT_BASE + 600), m.getTemperature());
+        service.obtenirMeteoHistorique("Neuchâtel", dates.get(0));
+        assertEquals(1, repo.lecturesReleves.get());
+        System.out.println("(Info) Historique : " + service.statistiquesCacheHistorique());
+    }
+
+    @Test
+    void lecturesPendantLesCaptures() throws Exception {
+        Comptage repo = new Comptage(url());
+        repo.initialiserSchema();
+        MeteoServiceImpl service = serveur.service(new TransportHttp(Duration.ofSeconds(5), Duration.ofSeconds(10), 4), repo);
+        service.configurerCacheHistorique(LONG, LONG, 100);
+        dtServi.set(DT_BASE);
+        ServeurFactice.sansTraces(() -> service.obtenirMeteoEtTraiter(46.99, 6.93, "fr"));
+
+        AtomicBoolean fini = new AtomicBoolean();
+        AtomicLong lecturesService = new AtomicLong();
+        ServeurFactice.sansTraces(() -> {
+            CountDownLatch depart = new CountDownLatch(1);
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS + 1);
+            List<Future<?>> lecteurs = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                lecteurs.add(pool.submit(() -> {
+                    depart.await();
+                    while (!fini.get()) {
+                        List<Instant> dates = service.listerInstantsPourStation("Neuchâtel");
+                        assertTrue(!dates.isEmpty());
+                        for (int i = 1; i < dates.size(); i++) {
+                            assertTrue(dates.get(i - 1).isAfter(dates.get(i)), "triées sans doublon");
+                        }
+                        assertNotNull(service.obtenirMeteoHistorique("Neuchâtel", dates.get(dates.size() - 1)));
+                        lecturesService.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            Future<?> capture = pool.submit(() -> {
+                depart.await();
+                try {
+                    for (int i = 1; i <= CAPTURES; i++) {
+                        dtServi.set(DT_BASE + i * 600L);
+                        service.obtenirMeteoEtTraiter(46.99, 6.93, "fr");
+                    }
+                } finally {
+                    fini.set(true);
+                }
+                return null;
+            });
+            depart.countDown();
+            capture.get();
+            for (Future<?> f : lecteurs) f.get();
+            pool.shutdown();
+            return null;
+        });
+
+        List<Instant> enBase = repo.findMeasurementInstantsForStation("Neuchâtel");
+        assertEquals(CAPTURES + 1, enBase.size());
+        assertEquals(enBase, service.listerInstantsPourStation("Neuchâtel"), "cache à jour après les captures");
+        System.out.println("(Info) " + lecturesService.get() + " lectures pendant " + CAPTURES + " captures, "
+                + repo.lecturesDates.get() + " lectures des dates en base ; " + service.statistiquesCacheHistorique());
+        assertTrue(repo.lecturesDates.get() < lecturesService.get(), "la plupart servies du cache");
+    }
+
+    // -------------------------------------------------------
+    // Utilitaires
+    // -------------------------------------------------------
+
+    private static String url() {
+        return "jdbc:h2:mem:cachehisto" + (numeroBase++) + ";DB_CLOSE_DELAY=-1";
+    }
+
+    private static Instant instant(long ms) {
+        return Instant.ofEpochMilli(ms);
+    }
+
+    private static Meteo releve(long dateMs) {
+        Meteo m = new Meteo();
+        m.setDateMesureMs(dateMs);
+        m.setTemperature(12.5);
+        return m;
+    }
+
+    /** Base H2 qui compte les lectures passées par le cache. */
+    private static final class Comptage extends H2MeteoRepository {
+        final AtomicInteger lecturesStations = new AtomicInteger();
+        final AtomicInteger lecturesDates = new AtomicInteger();
+        final AtomicInteger lecturesReleves = new AtomicInteger();
+
+        Comptage(String url) {
+            super(url, "sa", "");
+        }
+
+        @Override
+        public List<String> findAllStationNames() throws Exception {
+            lecturesStations.incrementAndGet();
+            return super.findAllStationNames();
+        }
+
+        @Override
+        public List<Instant> findMeasurementInstantsForStation(String stationName) throws Exception {
+            lecturesDates.incrementAndGet();
+            return super.findMeasurementInstantsForStation(stationName);
+        }
+
+        @Override
+        public Meteo findMeteoForStationAt(String stationName, Instant instant) throws Exception {
+            lecturesReleves.incrementAndGet();
+            return super.findMeteoForStationAt(stationName, instant);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package ch.hearc.meteo.service;
+
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.Pays;
+import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.infrastructure.http.OpenWeatherMapClient;
+import ch.hearc.meteo.infrastructure.persistence.H2MeteoRepository;
+import ch.hearc.meteo.infrastructure.persistence.MeteoRepository;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Dates des relevés en millisecondes epoch UTC ({@link Meteo#getDateMesureMs()}) :
+ *
+ * 1. accesseurs : date inconnue, Instant, anciens accesseurs Date ;
+ * 2. JSON du service identique à celui de l'ancien Meteo (champ Date) : même format de date,
+ *    null si la date est inconnue ; relu à l'identique ;
+ * 3. relevés enregistrés en Europe/Zurich autour des changements d'heure (heure sautée, heure
+ *    répétée), relus depuis une JVM en America/New_York : mêmes instants, aucun doublon ;
+ *    anciennes signatures Date du repository équivalentes aux nouvelles.
+ */
+class DatesUtcTest {
+
+    private static final ZoneId ZURICH = ZoneId.of("Europe/Zurich");
+    private static final long QUART_HEURE = 15 * 60_000L;
+    private static int numeroBase;
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void accesseurs() {
+        Meteo m = new Meteo();
+        assertFalse(m.hasDateMesure());
+        assertEquals(Meteo.SANS_DATE, m.getDateMesureMs());
+        assertNull(m.getInstantMesure());
+        assertNull(m.getDateMesure());
+
+        Instant instant = Instant.parse("2024-03-31T01:30:00Z");
+        m.setInstantMesure(instant);
+        assertEquals(instant.toEpochMilli(), m.getDateMesureMs());
+        assertEquals(new Date(instant.toEpochMilli()), m.getDateMesure());
+        m.setDateMesure(new Date(42L));
+        assertEquals(Instant.ofEpochMilli(42L), m.getInstantMesure());
+        m.setDateMesure(null);
+        assertFalse(m.hasDateMesure());
+        m.setInstantMesure(null);
+        assertFalse(m.hasDateMesure());
+    }
+
+    @Test
+    void jsonCommeAvant() throws Exception {
+        Gson ancien = new GsonBuilder().serializeNulls().setPrettyPrinting().create();
+        MeteoServiceImpl service = new MeteoServiceImpl(
+                new OpenWeatherMapClient("http://localhost:1/data/2.5/weather", "cle-test"), null, null);
+
+        StationMeteo station = station("Neuchâtel");
+        Meteo avecDate = releve(1_700_000_000_000L, 12.5);
+        Meteo sansDate = new Meteo();
+        sansDate.setTemperature(3.0);
+        station.setDonneesMeteo(new ArrayList<>(List.of(avecDate, sansDate)));
+
+        AncienneStation reference = new AncienneStation();
+        reference.nom = "Neuchâtel";
+        reference.pays = station.getPays();
+        reference.latitude = 46.99;
+        reference.longitude = 6.93;
+        reference.donneesMeteo = List.of(AncienMeteo.de(avecDate), AncienMeteo.de(sansDate));
+
+        String json = service.toJsonResponse(station);
+        assertEquals(ancien.toJson(reference), json, "même JSON qu'avec l'ancien champ Date");
+        assertTrue(json.contains("\"dateMesure\": null"), json);
+        assertFalse(json.contains(String.valueOf(Long.MIN_VALUE)), json);
+
+        Gson relu = new GsonBuilder().registerTypeAdapterFactory(new MeteoJson()).create();
+        StationMeteo copie = relu.fromJson(json, StationMeteo.class);
+        assertEquals(avecDate.getDateMesureMs(), copie.getDonneesMeteo().get(0).getDateMesureMs());
+        assertFalse(copie.getDonneesMeteo().get(1).hasDateMesure());
+        Meteo millis = relu.fromJson("{\"dateMesure\":1700000000000,\"temperature\":1.0}", Meteo.class);
+        assertEquals(1_700_000_000_000L, millis.getDateMesureMs(), "date en millisecondes acceptée");
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void changementsDHeureEtFuseauDeLaJvm() throws Exception {
+        TimeZone fuseau = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone(ZURICH));
+            H2MeteoRepository repo = nouvelleBase();
+            // 2024-03-31 : 02:00 → 03:00 (heure sautée) ; 2024-10-27 : 03:00 → 02:00 (heure répétée)
+            List<Long> dates = new ArrayList<>();
+            long printemps = LocalDateTime.of(2024, 3, 31, 1, 0).atZone(ZURICH).toInstant().toEpochMilli();
+            long automne = LocalDateTime.of(2024, 10, 27, 1, 0).atZone(ZURICH).toInstant().toEpochMilli();
+            for (int i = 0; i < 16; i++) {
+                dates.add(printemps + i * QUART_HEURE);
+                dates.add(automne + i * QUART_HEURE);
+            }
+            StationMeteo station = station("Neuchâtel");
+            for (long d : dates) station.addMeteo(releve(d, d % 1_000 + 0.5));
+            repo.save(station);
+
+            TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+            List<Instant> relus = repo.findMeasurementInstantsForStation("Neuchâtel");
+            assertEquals(dates.size(), relus.size(), "heure répétée : aucun relevé fusionné");
+            List<Long> attendues = new ArrayList<>(dates);
+            attendues.sort(Collections.reverseOrder()); // le plus récent en premier
+            for (int i = 0; i < attendues.size(); i++) {
+                assertEquals(attendues.get(i).longValue(), relus.get(i).toEpochMilli(), "relevé " + i);
+            }
+
+            Instant debut = Instant.ofEpochMilli(automne);
+            Instant fin = Instant.ofEpochMilli(automne + 8 * QUART_HEURE);
+            List<Meteo> plage = repo.findMeteoForStationBetween("Neuchâtel", debut, fin);
+            assertEquals(plage.size(), ((MeteoRepository) repo)
+                    .findMeteoForStationBetween("Neuchâtel", Date.from(debut), Date.from(fin)).size());
+            assertTrue(plage.size() >= 8, "plage de l'heure répétée : " + plage.size());
+            Meteo a = repo.findMeteoForStationAt("Neuchâtel", debut);
+            assertEquals(automne % 1_000 + 0.5, a.getTemperature());
+            assertEquals(automne, ((MeteoRepository) repo)
+                    .findMeteoForStationAtDate("Neuchâtel", Date.from(debut)).getDateMesureMs());
+        } finally {
+            TimeZone.setDefault(fuseau);
+        }
+    }
+
+    // -------------------------------------------------------
+    // Utilitaires
+    // -------------------------------------------------------
+
+    private static H2MeteoRepository nouvelleBase() throws Exception {
+        H2MeteoRepository repo = new H2MeteoRepository(
+                "jdbc:h2:mem:datesutc" + (numeroBase++) + ";DB_CLOSE_DELAY=-1", "sa", "");
+        repo.initialiserSchema();
+        return repo;
+    }
+
+    private static StationMeteo station(String nom) {
+        Pays pays = new Pays();
+        pays.setCode("CH");
+        pays.setNom("Suisse");
+        StationMeteo s = new StationMeteo();
+        s.setNom(nom);
+        s.setLatitude(46.99);
+        s.setLongitude(6.93);
+        s.setPays(pays);
+        return s;
+    }
+
+    private static Meteo releve(long dateMs, double temperature) {
+        Meteo m = new Meteo();
+        m.setDateMesureMs(dateMs);
+        m.setTemperature(temperature);
+        m.setDescription("ciel dégagé");
+        m.setHumidite(60.0);
+        return m;
+    }
+
+    /** StationMeteo telle que sérialisée avant le passage en millisecondes (mêmes champs, même ordre). */
+    private static final class AncienneStation {
+        Integer numero;
+        String nom;
+        Pays pays;
+        Double latitude;
+        Double longitude;
+        Integer openWeatherMapId;
+        List<AncienMeteo> donneesMeteo;
+    }
+
+    /** Meteo d'avant : date en {@link Date}, null si inconnue. */
+    private static final class AncienMeteo {
+        Integer numero;
+        Date dateMesure;
+        Double temperature;
+        String description;
+        Double pression;
+        Double humidite;
+        Integer visibilite;
+        Double precipitation;
+
+        static AncienMeteo de(Meteo m) {
+            AncienMeteo a = new AncienMeteo();
+            a.numero = m.getNumero();
+            a.dateMesure = m.hasDateMesure() ? new Date(m.getDateMesureMs()) : null;
+            a.temperature = m.getTemperature();
+            a.description = m.getDescription();
+            a.pression = m.getPression();
+            a.humidite = m.getHumidite();
+            a.visibilite = m.getVisibilite();
+            a.precipitation = m.getPrecipitation();
+            return a;
+        }
+    }
+}
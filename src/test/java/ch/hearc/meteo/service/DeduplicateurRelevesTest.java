@@ -0,0 +1,187 @@
+package ch.hearc.meteo.service;
+
+import ch.hearc.meteo.ServeurFactice;
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.infrastructure.http.TransportHttp;
+import ch.hearc.meteo.infrastructure.persistence.H2MeteoRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Dédoublonnage des relevés avant la sauvegarde ({@link DeduplicateurReleves}) :
+ *
+ * 1. filtre seul : dates répétées dans une capture, date déjà confirmée, relevés sans date,
+ *    sauvegarde échouée (non confirmée) retentée, confirmation en retard sans recul ;
+ * 2. service branché sur un faux OWM qui resert la même observation (même "dt") : une ligne en base
+ *    par observation, les captures inchangées ne sont pas renvoyées à la base ;
+ * 3. 8 captures simultanées de la même observation, puis redémarrage du service (filtre vide) :
+ *    la contrainte d'unicité (station, date) garde une seule ligne, sans erreur.
+ */
+class DeduplicateurRelevesTest {
+
+    private static final long DT_BASE = 1_700_000_000L; // secondes
+    private static final int THREADS = 8;
+
+    private static final AtomicLong dtServi = new AtomicLong(DT_BASE);
+    private static ServeurFactice serveur;
+    private static int numeroBase;
+
+    @BeforeAll
+    static void demarrer() throws Exception {
+        serveur = ServeurFactice.demarrer(0, q -> {
+            long dt = dtServi.get();
+            return new ServeurFactice.Observation(46.99, 6.93, ServeurFactice.temperature(0, dt), dt, 2659496, "Neuchâtel");
+        });
+    }
+
+    @AfterAll
+    static void arreter() {
+        serveur.close();
+    }
+
+    @Test
+    void filtreSeul() {
+        DeduplicateurReleves dedup = new DeduplicateurReleves();
+        List<Meteo> capture = Arrays.asList(releve(1_000), releve(1_000), releve(2_000), sansDate());
+        List<Meteo> nouveaux = dedup.filtrer("A", capture);
+        assertEquals(3, nouveaux.size(), "date répétée dans la capture écartée, relevé sans date gardé");
+
+        // sauvegarde échouée : rien de confirmé, la même capture repasse
+        assertEquals(3, dedup.filtrer("A", capture).size());
+
+        dedup.confirmer("A", nouveaux);
+        assertEquals(1, dedup.filtrer("A", List.of(releve(2_000), sansDate())).size(), "dernière date confirmée écartée");
+        assertEquals(1, dedup.filtrer("A", List.of(releve(3_000))).size(), "nouvelle observation");
+        assertEquals(1, dedup.filtrer("B", List.of(releve(2_000))).size(), "une mémoire par station");
+
+        dedup.confirmer("A", List.of(releve(3_000)));
+        dedup.confirmer("A", List.of(releve(2_000))); // confirmation en retard
+        assertTrue(dedup.filtrer("A", List.of(releve(3_000))).isEmpty(), "la date ne recule pas");
+        assertTrue(dedup.filtrer("A", null).isEmpty());
+        dedup.confirmer("A", List.of(sansDate()));
+        assertTrue(dedup.filtrer("A", List.of(releve(3_000))).isEmpty());
+    }
+
+    @Test
+    void observationResservieEnregistreeUneFois() throws Exception {
+        H2MeteoRepository repo = nouvelleBase();
+        MeteoServiceImpl service = serveur.service(new TransportHttp(), repo);
+
+        long[] sequence = {DT_BASE, DT_BASE, DT_BASE, DT_BASE + 600, DT_BASE + 600, DT_BASE + 1_200};
+        String sortie = sortie(() -> {
+            for (long dt : sequence) {
+                dtServi.set(dt);
+                service.obtenirMeteoEtTraiter(46.99, 6.93, "fr");
+            }
+        });
+        assertEquals(3, repo.findMeasurementInstantsForStation("Neuchâtel").size(), "une ligne par observation");
+        assertEquals(3, occurrences(sortie, "Relevé inchangé"), "captures inchangées non sauvegardées");
+
+        // ancienne observation resservie (retour en arrière du fournisseur) : la base la garde une fois
+        dtServi.set(DT_BASE);
+        sortie(() -> service.obtenirMeteoEtTraiter(46.99, 6.93, "fr"));
+        assertEquals(3, repo.findMeasurementInstantsForStation("Neuchâtel").size());
+        List<Meteo> releves = repo.findMeteoForStationBetween("Neuchâtel", (Instant) null, null);
+        assertEquals(DT_BASE * 1000L, releves.get(0).getDateMesureMs(), "date d'observation OWM, pas celle de l'appel");
+        assertEquals(ServeurFactice.temperature(0, DT_BASE), releves.get(0).getTemperature());
+    }
+
+    @Test
+    void capturesSimultaneesEtRedemarrage() throws Exception {
+        H2MeteoRepository repo = nouvelleBase();
+        dtServi.set(DT_BASE + 3_600);
+        MeteoServiceImpl service = serveur.service(new TransportHttp(Duration.ofSeconds(5), Duration.ofSeconds(10), 4), repo);
+
+        ByteArrayOutputStream erreurs = new ByteArrayOutputStream();
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(erreurs, true, StandardCharsets.UTF_8));
+        try {
+            ServeurFactice.sansTraces(() -> {
+                CountDownLatch depart = new CountDownLatch(1);
+                ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+                List<Future<?>> captures = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    captures.add(pool.submit(() -> {
+                        depart.await();
+                        return service.obtenirMeteoEtTraiter(46.99, 6.93, "fr");
+                    }));
+                }
+                depart.countDown();
+                for (Future<?> f : captures) f.get();
+                pool.shutdown();
+
+                // redémarrage : filtre vide, la même observation repasse jusqu'à la base
+                MeteoServiceImpl redemarre = serveur.service(new TransportHttp(), repo);
+                return redemarre.obtenirMeteoEtTraiter(46.99, 6.93, "fr");
+            });
+        } finally {
+            System.setErr(err);
+        }
+
+        String warn = erreurs.toString(StandardCharsets.UTF_8);
+        assertFalse(warn.contains("[WARN]"), "aucune sauvegarde en échec : " + warn);
+        assertEquals(1, repo.findAllStations().size(), "une seule station");
+        assertEquals(1, repo.findMeasurementInstantsForStation("Neuchâtel").size(), "une seule ligne");
+    }
+
+    // -------------------------------------------------------
+    // Utilitaires
+    // -------------------------------------------------------
+
+    private static H2MeteoRepository nouvelleBase() throws Exception {
+        H2MeteoRepository repo = new H2MeteoRepository(
+                "jdbc:h2:mem:dedup" + (numeroBase++) + ";DB_CLOSE_DELAY=-1", "sa", "");
+        repo.initialiserSchema();
+        return repo;
+    }
+
+    private static Meteo releve(long dateMs) {
+        Meteo m = new Meteo();
+        m.setDateMesureMs(dateMs);
+        m.setTemperature(12.0);
+        return m;
+    }
+
+    private static Meteo sansDate() {
+        Meteo m = new Meteo();
+        m.setTemperature(12.0);
+        return m;
+    }
+
+    private static String sortie(Runnable action) {
+        ByteArrayOutputStream tampon = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(tampon, true, StandardCharsets.UTF_8));
+        try {
+            action.run();
+        } finally {
+            System.setOut(out);
+        }
+        return tampon.toString(StandardCharsets.UTF_8);
+    }
+
+    private static int occurrences(String texte, String motif) {
+        int n = 0;
+        for (int i = texte.indexOf(motif); i >= 0; i = texte.indexOf(motif, i + 1)) n++;
+        return n;
+    }
+}
@@ -0,0 +1,162 @@
+package ch.hearc.meteo.service;
+
+import ch.hearc.meteo.ServeurFactice;
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.infrastructure.http.TransportHttp;
+import ch.hearc.meteo.infrastructure.persistence.H2MeteoRepository;
+import ch.hearc.meteo.service.geo.IndexSpatialStations;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Concurrence du service ({@link MeteoServiceImpl}), sans réseau ni serveur de base : faux OWM et
+ * Country avec latence simulée, base H2 en mémoire neuve à chaque palier. N threads enchaînent
+ * captures et lectures d'historique sur quelques positions seulement, pour provoquer des créations
+ * simultanées des mêmes stations.
+ *
+ * Vérifie à chaque palier : une seule station par position, chaque observation servie par le faux
+ * OWM enregistrée une fois et relue à l'identique, aucune erreur ; affiche le débit.
+ */
+class MeteoServiceImplTest {
+
+    private static final int OPERATIONS = 2_000;
+    private static final int LATENCE_MS = 5;
+    private static final int NB_POSITIONS = 12;
+    private static final long DT_BASE = 1_700_000_000L; // secondes
+    private static final long PERIODE_OBSERVATION_MS = 200; // nouvelle observation OWM toutes les 200 ms
+
+    // observations servies par le faux OWM pendant le palier : position -> dt
+    private static final Map<Integer, Set<Long>> servies = new ConcurrentHashMap<>();
+    private static ServeurFactice serveur;
+
+    @BeforeAll
+    static void demarrer() throws Exception {
+        serveur = ServeurFactice.demarrer(LATENCE_MS, q -> {
+            int p = (int) Math.round((Double.parseDouble(q.get("lat")) - 46.0) * 10);
+            long dt = DT_BASE + (System.currentTimeMillis() / PERIODE_OBSERVATION_MS) * 60;
+            servies.computeIfAbsent(p, k -> ConcurrentHashMap.newKeySet()).add(dt);
+            return new ServeurFactice.Observation(latitude(p), longitude(p),
+                    ServeurFactice.temperature(p, dt), dt, 1000 + p, nom(p));
+        });
+    }
+
+    @AfterAll
+    static void arreter() {
+        serveur.close();
+    }
+
+    @ParameterizedTest(name = "{0} thread(s)")
+    @ValueSource(ints = {1, 2, 4, 8, 16})
+    void capturesEtLecturesConcurrentes(int threads) throws Exception {
+        servies.clear();
+        H2MeteoRepository repo = new H2MeteoRepository("jdbc:h2:mem:charge" + threads + ";DB_CLOSE_DELAY=-1", "sa", "");
+        repo.initialiserSchema();
+        MeteoServiceImpl service = serveur.service(
+                new TransportHttp(Duration.ofSeconds(5), Duration.ofSeconds(10), 4), repo);
+        // accrochage actif, mais cache des relevés désactivé : chaque capture appelle le faux OWM
+        service.activerIndexStations(new IndexSpatialStations(), 0.5, 0);
+
+        List<String> erreurs = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger restantes = new AtomicInteger(OPERATIONS);
+        CountDownLatch depart = new CountDownLatch(1);
+        List<Thread> travailleurs = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread th = new Thread(() -> {
+                try {
+                    depart.await();
+                    int n;
+                    while ((n = restantes.getAndDecrement()) > 0) {
+                        operation(service, n, erreurs);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "charge-" + t);
+            travailleurs.add(th);
+            th.start();
+        }
+        long dureeMs = ServeurFactice.sansTraces(() -> {
+            long t0 = System.nanoTime();
+            depart.countDown();
+            for (Thread th : travailleurs) th.join();
+            return (System.nanoTime() - t0) / 1_000_000L;
+        });
+        System.out.printf(Locale.ROOT, "(Info) %2d threads : %d opérations en %d ms, %.0f op/s%n",
+                threads, OPERATIONS, dureeMs, OPERATIONS * 1000.0 / Math.max(1, dureeMs));
+
+        List<StationMeteo> stations = repo.findAllStations();
+        Set<String> noms = new HashSet<>();
+        for (StationMeteo s : stations) {
+            if (!noms.add(s.getNom())) erreurs.add("station en double : " + s.getNom());
+        }
+        Map<Integer, Set<Long>> enBase = new HashMap<>();
+        for (int p : servies.keySet()) {
+            Set<Long> dts = new HashSet<>();
+            for (Meteo m : repo.findMeteoForStationBetween(nom(p), (Instant) null, (Instant) null)) {
+                long dt = m.getDateMesureMs() / 1000L;
+                if (!dts.add(dt)) erreurs.add("relevé en double : " + nom(p) + " à " + m.getInstantMesure());
+                if (m.getTemperature() == null || m.getTemperature() != ServeurFactice.temperature(p, dt)) {
+                    erreurs.add("relevé altéré : " + nom(p) + " " + m);
+                }
+            }
+            enBase.put(p, dts);
+        }
+
+        assertTrue(erreurs.isEmpty(), erreurs.size() + " erreur(s), dont "
+                + erreurs.subList(0, Math.min(5, erreurs.size())));
+        assertEquals(servies.size(), stations.size(), "une station par position capturée");
+        assertEquals(servies, enBase, "chaque observation servie enregistrée une fois");
+    }
+
+    /** Une capture, et une fois sur quatre une lecture d'historique vérifiée. */
+    private static void operation(MeteoServiceImpl service, int n, List<String> erreurs) {
+        int p = ThreadLocalRandom.current().nextInt(NB_POSITIONS);
+        try {
+            StationMeteo s = service.obtenirMeteoEtTraiter(latitude(p), longitude(p), "fr");
+            if (s == null || !nom(p).equals(s.getNom()) || s.getDonneesMeteo().isEmpty()) {
+                erreurs.add("capture " + nom(p) + " : réponse inattendue " + s);
+                return;
+            }
+            if (n % 4 != 0) return;
+
+            List<Instant> instants = service.listerInstantsPourStation(nom(p));
+            if (instants.isEmpty()) {
+                erreurs.add("historique " + nom(p) + " : aucun relevé après une capture");
+                return;
+            }
+            Instant dernier = instants.get(0);
+            Meteo m = service.obtenirMeteoHistorique(nom(p), dernier);
+            if (m == null || m.getTemperature() == null
+                    || m.getTemperature() != ServeurFactice.temperature(p, dernier.getEpochSecond())) {
+                erreurs.add("historique " + nom(p) + " à " + dernier + " : relevé inattendu " + m);
+            }
+        } catch (RuntimeException e) {
+            erreurs.add(nom(p) + " : " + e);
+        }
+    }
+
+    private static double latitude(int p) { return 46.0 + p * 0.1; }
+    private static double longitude(int p) { return 6.0 + p * 0.1; }
+    private static String nom(int p) { return "Station " + p; }
+}
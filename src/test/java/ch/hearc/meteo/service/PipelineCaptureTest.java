@@ -0,0 +1,100 @@
+package ch.hearc.meteo.service;
+
+import ch.hearc.meteo.ServeurFactice;
+import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.infrastructure.http.TransportHttp;
+import ch.hearc.meteo.infrastructure.persistence.H2MeteoRepository;
+import ch.hearc.meteo.service.pipeline.ReglagePipeline;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pipeline de capture ({@link PipelineCapture}), sans réseau ni serveur de base : faux OWM et
+ * Country (latence simulée), base H2 en mémoire, une grille de positions capturée en trois cycles :
+ * 1. nouvelle observation partout : une station et un relevé par position ;
+ * 2. même observation : rien à enregistrer (dédoublonnage) ;
+ * 3. nouvelle observation : un relevé de plus par position.
+ *
+ * Affiche le bilan de chaque cycle et vérifie le contenu de la base à la fin.
+ */
+class PipelineCaptureTest {
+
+    private static final String URL_BASE = "jdbc:h2:mem:pipeline;DB_CLOSE_DELAY=-1";
+    private static final int POSITIONS = 10_000;
+    private static final int LATENCE_MS = 2;
+    private static final long DT_BASE = 1_700_000_000L; // secondes
+    private static final int COLONNES = 100;
+
+    // observation servie par le faux OWM pendant le cycle en cours
+    private static volatile long dtCourant = DT_BASE;
+
+    @Test
+    void troisCyclesSurUneGrille() throws Exception {
+        try (ServeurFactice serveur = ServeurFactice.demarrer(LATENCE_MS, q -> {
+            int p = position(Double.parseDouble(q.get("lat")), Double.parseDouble(q.get("lon")));
+            long dt = dtCourant;
+            return new ServeurFactice.Observation(latitude(p), longitude(p),
+                    ServeurFactice.temperature(p, dt), dt, 100_000 + p, "Station " + p);
+        })) {
+            H2MeteoRepository repo = new H2MeteoRepository(URL_BASE, "sa", "");
+            repo.initialiserSchema();
+            MeteoServiceImpl service = serveur.service(
+                    new TransportHttp(Duration.ofSeconds(5), Duration.ofSeconds(10), 8), repo);
+
+            ReglagePipeline reglage = new ReglagePipeline();
+            PipelineCapture pipeline = service.creerPipelineCapture(reglage);
+            System.out.println("(Info) Pipeline : " + reglage);
+
+            List<StationMeteo> positions = new ArrayList<>(POSITIONS);
+            for (int p = 0; p < POSITIONS; p++) {
+                StationMeteo s = new StationMeteo();
+                s.setLatitude(latitude(p));
+                s.setLongitude(longitude(p));
+                positions.add(s);
+            }
+
+            long[] dts = {DT_BASE, DT_BASE, DT_BASE + 600};
+            long[] attendues = {POSITIONS, 0, POSITIONS};
+            for (int cycle = 0; cycle < dts.length; cycle++) {
+                dtCourant = dts[cycle];
+                PipelineCapture.BilanCapture bilan = ServeurFactice.sansTraces(() -> pipeline.executer(positions, "fr"));
+                System.out.println("(Info) Cycle " + (cycle + 1) + " : " + bilan);
+                assertEquals(attendues[cycle], bilan.getEnregistrees(), "stations enregistrées au cycle " + (cycle + 1));
+            }
+        }
+
+        // une station par position, un relevé par observation distincte servie
+        try (Connection cn = DriverManager.getConnection(URL_BASE, "sa", "");
+             Statement st = cn.createStatement()) {
+            assertEquals(POSITIONS, compter(st, "SELECT COUNT(*) FROM stations_meteo"), "stations");
+            assertEquals(2L * POSITIONS, compter(st, "SELECT COUNT(*) FROM meteo"), "relevés");
+            assertEquals(2L * POSITIONS,
+                    compter(st, "SELECT COUNT(*) FROM (SELECT DISTINCT station_id, date_releve FROM meteo)"),
+                    "relevés distincts");
+        }
+    }
+
+    private static long compter(Statement st, String sql) throws Exception {
+        try (ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    // grille de COLONNES positions par ligne, espacées de 0.05° (~5 km)
+    private static double latitude(int p) { return 40.0 + (p / COLONNES) * 0.05; }
+    private static double longitude(int p) { return (p % COLONNES) * 0.05; }
+
+    private static int position(double lat, double lon) {
+        return (int) Math.round((lat - 40.0) / 0.05) * COLONNES + (int) Math.round(lon / 0.05);
+    }
+}
@@ -0,0 +1,167 @@
+package ch.hearc.meteo.service;
+
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.infrastructure.http.CountryClient;
+import ch.hearc.meteo.infrastructure.http.OpenWeatherMapClient;
+import ch.hearc.meteo.infrastructure.http.PoolClesApi;
+import ch.hearc.meteo.infrastructure.http.TransportHttp;
+import ch.hearc.meteo.infrastructure.persistence.H2MeteoRepository;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Prévisions 5 jours ({@link MeteoService#obtenirPrevisionsEtTraiter}) sur un faux endpoint forecast
+ * et une base H2 en mémoire :
+ *
+ * 1. réponse lue en flux : station, pays, 40 prévisions par date croissante, champs inconnus ignorés ;
+ * 2. émission suivante (fenêtre décalée de 3 heures, valeurs révisées) : les prévisions connues sont
+ *    mises à jour, la nouvelle est ajoutée, aucun doublon ; rejouer la même émission ne change rien ;
+ * 3. URL des prévisions : déduite de ".../weather", explicite, ou refusée si impossible à déduire.
+ */
+class PrevisionsTest {
+
+    private static final int NB_PREVISIONS = 40;
+    private static final long PAS_S = 3 * 3_600L;
+    private static final long DEBUT_S = 1_700_006_400L; // 2023-11-15T00:00:00Z
+
+    private HttpServer serveur;
+    private final AtomicInteger emission = new AtomicInteger(1);
+    private H2MeteoRepository repo;
+    private MeteoServiceImpl service;
+
+    @BeforeEach
+    void demarrer() throws Exception {
+        serveur = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serveur.createContext("/data/2.5/forecast", ex -> repondre(ex, previsions(emission.get())));
+        serveur.createContext("/country", ex -> repondre(ex, "{\"code\":\"CH\",\"name\":\"Suisse\"}"));
+        serveur.start();
+        String url = "http://localhost:" + serveur.getAddress().getPort();
+
+        repo = new H2MeteoRepository("jdbc:h2:mem:previsions" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        repo.initialiserSchema();
+        TransportHttp transport = new TransportHttp();
+        OpenWeatherMapClient owm = new OpenWeatherMapClient(url + "/data/2.5/weather", null,
+                new PoolClesApi(Collections.singletonList("cle-test"), 1_000), transport);
+        service = new MeteoServiceImpl(owm, new CountryClient(url + "/country", transport), repo);
+    }
+
+    @AfterEach
+    void arreter() {
+        serveur.stop(0);
+    }
+
+    @Test
+    void previsionsLuesEtEnregistrees() throws Exception {
+        StationMeteo station = service.obtenirPrevisionsEtTraiter(46.99, 6.93, "fr");
+        assertEquals("Neuchâtel", station.getNom());
+        assertEquals(Integer.valueOf(2659496), station.getOpenWeatherMapId());
+        assertEquals("Suisse", station.getPays().getNom());
+        assertEquals(NB_PREVISIONS, station.getDonneesMeteo().size());
+
+        List<Meteo> enBase = repo.findPrevisionsForStation("Neuchâtel", Instant.EPOCH);
+        assertEquals(NB_PREVISIONS, enBase.size());
+        for (int i = 0; i < NB_PREVISIONS; i++) {
+            Meteo m = enBase.get(i);
+            assertEquals((DEBUT_S + i * PAS_S) * 1000L, m.getDateMesureMs(), "prévision " + i + " par date croissante");
+            assertEquals(temperature(1, i), m.getTemperature());
+            assertEquals(Double.valueOf(70 + i % 20), m.getHumidite());
+            assertEquals(Integer.valueOf(10_000), m.getVisibilite());
+            if (i % 4 == 0) {
+                assertEquals(Double.valueOf(0.5), m.getPrecipitation(), "pluie sur 3 heures");
+            } else {
+                assertNull(m.getPrecipitation(), "pas de pluie");
+            }
+            assertEquals(i % 4 == 0 ? "pluie légère" : "nuageux", m.getDescription());
+        }
+        assertEquals(2, repo.findPrevisionsForStation("Neuchâtel",
+                Instant.ofEpochSecond(DEBUT_S + (NB_PREVISIONS - 2) * PAS_S)).size(), "à partir d'une date");
+    }
+
+    @Test
+    void emissionSuivanteMiseAJourSansDoublon() throws Exception {
+        service.obtenirPrevisionsEtTraiter(46.99, 6.93, "fr");
+        emission.set(2);
+        service.obtenirPrevisionsEtTraiter(46.99, 6.93, "fr");
+
+        List<Meteo> enBase = repo.findPrevisionsForStation("Neuchâtel", Instant.EPOCH);
+        assertEquals(NB_PREVISIONS + 1, enBase.size(), "une seule prévision ajoutée (fin de la fenêtre)");
+        assertEquals(temperature(1, 0), enBase.get(0).getTemperature(), "hors de la nouvelle fenêtre : inchangée");
+        for (int i = 1; i <= NB_PREVISIONS; i++) {
+            assertEquals(temperature(2, i), enBase.get(i).getTemperature(), "prévision " + i + " révisée");
+        }
+
+        service.obtenirPrevisionsEtTraiter(46.99, 6.93, "fr");
+        assertEquals(NB_PREVISIONS + 1, repo.findPrevisionsForStation("Neuchâtel", Instant.EPOCH).size(),
+                "même émission rejouée : aucun doublon");
+        assertEquals(1, repo.findAllStations().size(), "une seule station");
+    }
+
+    @Test
+    void urlDesPrevisions() {
+        PoolClesApi cles = new PoolClesApi(Collections.singletonList("cle-test"), 1_000);
+        TransportHttp transport = new TransportHttp();
+        assertDoesNotThrow(() -> new OpenWeatherMapClient("https://api.example.org/data/2.5/weather/", null, cles, transport));
+        assertDoesNotThrow(() -> new OpenWeatherMapClient("https://meteo.example.org/actuelle",
+                "https://meteo.example.org/previsions", cles, transport));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> new OpenWeatherMapClient("https://meteo.example.org/actuelle", "", cles, transport));
+        assertTrue(e.getMessage().contains("openweathermap.forecast.url"), e.getMessage());
+        assertThrows(IllegalArgumentException.class,
+                () -> new OpenWeatherMapClient("https://api.example.org/data/2.5/weather?units=metric", cles));
+    }
+
+    // -------------------------------------------------------
+    // Utilitaires
+    // -------------------------------------------------------
+
+    /** Émission n : fenêtre de 40 pas de 3 heures commençant n - 1 pas après DEBUT_S. */
+    private static String previsions(int n) {
+        StringBuilder json = new StringBuilder("{\"cod\":\"200\",\"message\":0,\"cnt\":40,\"list\":[");
+        for (int k = 0; k < NB_PREVISIONS; k++) {
+            int i = k + n - 1;
+            if (k > 0) json.append(',');
+            json.append(String.format(Locale.ROOT,
+                    "{\"dt\":%d,\"main\":{\"temp\":%s,\"pressure\":1012,\"humidity\":%d,\"temp_kf\":0.3},"
+                            + "\"weather\":[{\"id\":500,\"description\":\"%s\"}],\"clouds\":{\"all\":75},"
+                            + "\"visibility\":10000,\"pop\":0.4,%s\"sys\":{\"pod\":\"d\"},\"dt_txt\":\"ignoré\"}",
+                    DEBUT_S + i * PAS_S, temperature(n, i), 70 + i % 20,
+                    i % 4 == 0 ? "pluie légère" : "nuageux", i % 4 == 0 ? "\"rain\":{\"3h\":0.5}," : ""));
+        }
+        json.append("],\"city\":{\"id\":2659496,\"name\":\"Neuchâtel\",\"coord\":{\"lat\":46.9931,\"lon\":6.9319},"
+                + "\"country\":\"CH\",\"population\":33000,\"timezone\":3600}}");
+        return json.toString();
+    }
+
+    private static double temperature(int emission, int i) {
+        return emission * 100 + i + 0.25;
+    }
+
+    private static void repondre(HttpExchange ex, String json) throws IOException {
+        byte[] corps = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(200, corps.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(corps);
+        }
+    }
+}
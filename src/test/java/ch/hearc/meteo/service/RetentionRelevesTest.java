@@ -0,0 +1,286 @@
+package ch.hearc.meteo.service;
+
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.Pays;
+import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.infrastructure.archive.ArchiveMeteo;
+import ch.hearc.meteo.infrastructure.persistence.ArchiveMeteoRepository;
+import ch.hearc.meteo.infrastructure.persistence.H2MeteoRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Rétention des relevés ({@link RetentionReleves}) sur une base H2 en mémoire :
+ *
+ * 1. limite : début du mois UTC, N mois en arrière (changement d'année, dernier jour du mois) ;
+ *    durée invalide refusée ;
+ * 2. base seule : relevés antérieurs à la limite supprimés par lots, les autres intacts, second passage sans effet ;
+ *    purge planifiée en arrière-plan puis arrêtée ;
+ * 3. avec archive : seuls les relevés archivés sont supprimés, historique inchangé ; relevé sans station
+ *    et relevés enregistrés pendant l'archivage laissés en base et signalés, archivés au passage suivant ;
+ * 4. import concurrent de relevés anciens pendant la purge avec archive : aucun relevé perdu.
+ *
+ * Le chemin Oracle (DROP / TRUNCATE PARTITION) n'est pas couvert : H2 n'a pas de partitions.
+ */
+class RetentionRelevesTest {
+
+    private static final long DEMI_JOURNEE = 12 * 3_600_000L;
+    private static final int MOIS_HISTORIQUE = 30;
+    private static final int MOIS_CONSERVES = 12;
+    private static int numeroBase;
+
+    @TempDir
+    Path dossier;
+
+    @Test
+    void limiteEnDebutDeMois() {
+        H2MeteoRepository repo = nouvelleBase();
+        assertThrows(IllegalArgumentException.class, () -> new RetentionReleves(repo, 0));
+        assertThrows(IllegalArgumentException.class, () -> new RetentionReleves(null, 12));
+
+        RetentionReleves retention = new RetentionReleves(repo, 12);
+        assertEquals(Instant.parse("2025-03-01T00:00:00Z"), retention.limite(Instant.parse("2026-03-15T10:00:00Z")));
+        assertEquals(Instant.parse("2025-01-01T00:00:00Z"), retention.limite(Instant.parse("2026-01-01T00:00:00Z")));
+        assertEquals(Instant.parse("2025-12-01T00:00:00Z"),
+                new RetentionReleves(repo, 3).limite(Instant.parse("2026-03-31T23:59:59Z")));
+    }
+
+    @Test
+    void purgeDeLaBase() throws Exception {
+        H2MeteoRepository repo = nouvelleBase();
+        long[] bornes = remplir(repo, 3);
+        RetentionReleves retention = new RetentionReleves(repo, MOIS_CONSERVES);
+        Instant limite = retention.limite(Instant.now());
+        long anciens = repo.compterRelevesAvant(limite);
+        long total = repo.compterRelevesAvant(Instant.now().plusSeconds(3_600));
+        assertTrue(anciens > 3 * 2 * 30 * (MOIS_HISTORIQUE - MOIS_CONSERVES - 1), "relevés anciens : " + anciens);
+
+        assertEquals(anciens, retention.executer());
+        assertEquals(0, repo.compterRelevesAvant(limite));
+        assertEquals(total - anciens, repo.compterRelevesAvant(Instant.now().plusSeconds(3_600)), "récents intacts");
+        for (String nom : List.of("Station 0", "Station 1", "Station 2")) {
+            List<Instant> dates = repo.findMeasurementInstantsForStation(nom);
+            assertTrue(!dates.get(dates.size() - 1).isBefore(limite), nom + " : plus ancien relevé après la limite");
+            assertEquals(bornes[1], dates.get(0).toEpochMilli(), nom + " : dernier relevé gardé");
+        }
+        assertEquals(0, retention.executer(), "second passage sans effet");
+        assertEquals(3, repo.findAllStations().size(), "stations conservées");
+
+        // purge planifiée : exécutée tout de suite en arrière-plan
+        H2MeteoRepository autre = nouvelleBase();
+        remplir(autre, 1);
+        try (RetentionReleves planifiee = new RetentionReleves(autre, MOIS_CONSERVES)) {
+            planifiee.planifier(24);
+            long fin = System.currentTimeMillis() + 10_000;
+            while (autre.compterRelevesAvant(limite) > 0 && System.currentTimeMillis() < fin) Thread.sleep(20);
+            assertEquals(0, autre.compterRelevesAvant(limite), "purge planifiée exécutée");
+        }
+    }
+
+    @Test
+    void archiveSeulsLesRelevesArchivesSupprimes() throws Exception {
+        String url = urlMemoire();
+        ImportPendantArchivage base = new ImportPendantArchivage(url);
+        base.initialiserSchema();
+        long[] bornes = remplir(base, 2);
+        ArchiveMeteoRepository repo = new ArchiveMeteoRepository(base, new ArchiveMeteo(dossier));
+        RetentionReleves retention = new RetentionReleves(repo, MOIS_CONSERVES);
+        Instant limite = retention.limite(Instant.now());
+
+        List<Instant> avant = repo.findMeasurementInstantsForStation("Station 1");
+        int avantStation0 = repo.findMeasurementInstantsForStation("Station 0").size();
+        long anciens = base.compterRelevesAvant(limite);
+        long ancien = bornes[0] + 60_000L; // premier mois, déjà parcouru à la première suppression
+        // relevé sans station (ancienne base, import partiel)
+        try (Connection cn = DriverManager.getConnection(url, "sa", "");
+             PreparedStatement ps = cn.prepareStatement(
+                     "INSERT INTO meteo (station_id, date_releve, temperature) VALUES (NULL, ?, 1.5)")) {
+            ps.setTimestamp(1, Timestamp.from(Instant.ofEpochMilli(ancien)));
+            ps.executeUpdate();
+        }
+        // pendant l'archivage : un relevé ancien d'une station déjà parcourue et une nouvelle station
+        base.pendantArchivage = () -> {
+            base.save(station("Station 0", 0, releve(ancien)));
+            base.save(station("Nouvelle", 9, releve(ancien)));
+        };
+
+        ByteArrayOutputStream erreurs = new ByteArrayOutputStream();
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(erreurs, true, StandardCharsets.UTF_8));
+        long supprimes;
+        try {
+            supprimes = retention.executer();
+        } finally {
+            System.setErr(err);
+        }
+        assertEquals(anciens, supprimes, "relevés lus au début de l'archivage : archivés puis supprimés");
+        assertEquals(3, base.compterRelevesAvant(limite), "sans station et enregistrés pendant l'archivage : en base");
+        assertTrue(erreurs.toString(StandardCharsets.UTF_8).contains("3 relevé(s) antérieur(s)"), erreurs.toString());
+
+        assertEquals(avant, repo.findMeasurementInstantsForStation("Station 1"), "historique inchangé (base + archive)");
+        assertEquals(avantStation0 + 1, repo.findMeasurementInstantsForStation("Station 0").size());
+        assertEquals(1, repo.findMeasurementInstantsForStation("Nouvelle").size());
+
+        // passage suivant : les relevés enregistrés pendant l'archivage sont archivés, pas le relevé sans station
+        base.pendantArchivage = null;
+        System.setErr(new PrintStream(erreurs, true, StandardCharsets.UTF_8));
+        try {
+            assertEquals(2, retention.executer());
+        } finally {
+            System.setErr(err);
+        }
+        assertEquals(1, base.compterRelevesAvant(limite), "seul le relevé sans station reste");
+        assertEquals(avantStation0 + 1, repo.findMeasurementInstantsForStation("Station 0").size());
+        assertEquals(avant, repo.findMeasurementInstantsForStation("Station 1"));
+        assertEquals(Instant.ofEpochMilli(ancien), repo.findMeasurementInstantsForStation("Nouvelle").get(0));
+    }
+
+    @Test
+    void importConcurrentSansPerte() throws Exception {
+        H2MeteoRepository base = nouvelleBase();
+        long[] bornes = remplir(base, 4);
+        ArchiveMeteoRepository repo = new ArchiveMeteoRepository(base, new ArchiveMeteo(dossier));
+        RetentionReleves retention = new RetentionReleves(repo, MOIS_CONSERVES);
+
+        List<Integer> avant = new ArrayList<>();
+        for (int s = 0; s < 4; s++) avant.add(repo.findMeasurementInstantsForStation("Station " + s).size());
+
+        // import : relevés anciens (décalés d'une minute), un lot par station à la fois, pendant la purge
+        AtomicBoolean fini = new AtomicBoolean();
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<Integer> import_ = pool.submit(() -> {
+            int importes = 0;
+            for (long d = bornes[0] + 60_000L; d < bornes[1] && !fini.get(); d += 5 * DEMI_JOURNEE) {
+                for (int s = 0; s < 4; s++) base.save(station("Station " + s, s, releve(d)));
+                importes++;
+            }
+            return importes;
+        });
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+        try {
+            retention.executer();
+            fini.set(true);
+            retention.executer();
+        } finally {
+            System.setErr(err);
+        }
+        int importes = import_.get();
+        pool.shutdown();
+
+        System.out.println("(Info) Rétention : " + importes + " relevés importés par station pendant la purge");
+        assertTrue(importes > 0);
+        for (int s = 0; s < 4; s++) {
+            assertEquals(avant.get(s) + importes, repo.findMeasurementInstantsForStation("Station " + s).size(),
+                    "Station " + s + " : aucun relevé perdu (base + archive)");
+        }
+    }
+
+    // -------------------------------------------------------
+    // Utilitaires
+    // -------------------------------------------------------
+
+    private static String urlMemoire() {
+        return "jdbc:h2:mem:retention" + (numeroBase++) + ";DB_CLOSE_DELAY=-1";
+    }
+
+    private static H2MeteoRepository nouvelleBase() {
+        H2MeteoRepository repo = new H2MeteoRepository(urlMemoire(), "sa", "");
+        try {
+            repo.initialiserSchema();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return repo;
+    }
+
+    /**
+     * Deux relevés par jour sur MOIS_HISTORIQUE mois jusqu'à maintenant, pour n stations.
+     * @return date du premier et du dernier relevé (ms)
+     */
+    private static long[] remplir(H2MeteoRepository repo, int n) throws Exception {
+        long debut = ZonedDateTime.now(ZoneOffset.UTC).minusMonths(MOIS_HISTORIQUE).toInstant().toEpochMilli();
+        long fin = System.currentTimeMillis() - DEMI_JOURNEE;
+        long dernier = debut;
+        for (int s = 0; s < n; s++) {
+            List<Meteo> releves = new ArrayList<>();
+            for (long d = debut; d <= fin; d += DEMI_JOURNEE) {
+                Meteo m = releve(d);
+                m.setTemperature((double) (d / DEMI_JOURNEE % 30));
+                releves.add(m);
+                dernier = d;
+            }
+            StationMeteo station = station("Station " + s, s);
+            station.setDonneesMeteo(releves);
+            repo.save(station);
+        }
+        return new long[]{debut, dernier};
+    }
+
+    private static StationMeteo station(String nom, int position, Meteo... releves) {
+        Pays pays = new Pays();
+        pays.setCode("CH");
+        pays.setNom("Suisse");
+        StationMeteo s = new StationMeteo();
+        s.setNom(nom);
+        s.setLatitude(46.0 + position * 0.1);
+        s.setLongitude(7.0);
+        s.setPays(pays);
+        s.setDonneesMeteo(new ArrayList<>(List.of(releves)));
+        return s;
+    }
+
+    private static Meteo releve(long dateMs) {
+        Meteo m = new Meteo();
+        m.setDateMesureMs(dateMs);
+        m.setTemperature(4.5);
+        m.setDescription("ciel dégagé");
+        return m;
+    }
+
+    private interface Action {
+        void executer() throws Exception;
+    }
+
+    /** Base où des relevés sont enregistrés entre la lecture des relevés à archiver et leur suppression. */
+    private static final class ImportPendantArchivage extends H2MeteoRepository {
+        volatile Action pendantArchivage;
+
+        ImportPendantArchivage(String url) {
+            super(url, "sa", "");
+        }
+
+        @Override
+        public int supprimerReleves(int stationId, Collection<Instant> dates) throws Exception {
+            Action action = pendantArchivage;
+            if (action != null) {
+                pendantArchivage = null;
+                action.executer();
+            }
+            return super.supprimerReleves(stationId, dates);
+        }
+    }
+}
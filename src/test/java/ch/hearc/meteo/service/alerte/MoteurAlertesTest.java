@@ -0,0 +1,328 @@
+package ch.hearc.meteo.service.alerte;
+
+import ch.hearc.meteo.ServeurFactice;
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.infrastructure.http.TransportHttp;
+import ch.hearc.meteo.infrastructure.persistence.H2MeteoRepository;
+import ch.hearc.meteo.service.MeteoServiceImpl;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Moteur d'alertes ({@link MoteurAlertes}) :
+ *
+ * 1. règles lues depuis la configuration, règles mal écrites refusées ;
+ * 2. seuils : alerte au franchissement seulement, de nouveau après un retour sous le seuil ;
+ *    relevé déjà évalué (même date ou plus ancien) ignoré ;
+ * 3. z-score : pas avant minimumReleves, pic dans les deux sens ; variation sur la fenêtre ;
+ * 4. destinations : fichier JSON Lines, webhook sur un serveur local, destination en échec
+ *    sans effet sur les autres ;
+ * 5. 8 threads sur 40 stations : mêmes alertes qu'une évaluation séquentielle ;
+ * 6. service branché sur le faux OWM : alerte levée une fois pour une observation servie plusieurs fois.
+ */
+class MoteurAlertesTest {
+
+    private static final long DEBUT_MS = 1_700_000_000_000L;
+    private static final long HEURE = 3_600_000L;
+    private static final int THREADS = 8;
+    private static final int STATIONS = 40;
+    private static final int RELEVES = 500;
+
+    @TempDir
+    Path dossier;
+
+    @Test
+    void reglesLues() {
+        List<Regle> regles = Regle.lireListe(" temperature>35, temperature<-15 ,pression.zscore>3,, precipitation.variation>8.5");
+        assertEquals(4, regles.size());
+        assertEquals("temperature<-15", regles.get(1).toString());
+        assertEquals(Grandeur.PRESSION, regles.get(2).grandeur());
+        assertEquals(Regle.Type.ZSCORE, regles.get(2).type());
+        assertEquals(Regle.Type.VARIATION, regles.get(3).type());
+        assertTrue(Regle.lireListe(null).isEmpty() && Regle.lireListe(" ").isEmpty());
+
+        for (String invalide : List.of("temperature", "temperature>>3", "vent>10", "pression.zscore<3",
+                "pression.zscore>0", "temperature.moyenne>3", "temperature>trente")) {
+            assertThrows(IllegalArgumentException.class, () -> Regle.lire(invalide), invalide);
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> new MoteurAlertes(regles, 0, 3, 10, List.of()), "alpha nul");
+        assertThrows(IllegalArgumentException.class,
+                () -> new MoteurAlertes(regles, 0.1, 0, 10, List.of()), "fenêtre vide");
+    }
+
+    @Test
+    void seuilsAuFranchissement() {
+        Collecte collecte = new Collecte();
+        MoteurAlertes moteur = moteur("temperature>35,temperature<-15", collecte);
+        double[] temperatures = {30, 36, 37, 38, 34, 36, -10, -16, -20, -14};
+        moteur.evaluer("ne", "Neuchâtel", serie(DEBUT_MS, temperatures));
+
+        assertEquals(List.of("temperature>35@1", "temperature>35@5", "temperature<-15@7"), collecte.resume(DEBUT_MS));
+        Alerte a = collecte.alertes.get(0);
+        assertEquals("Neuchâtel", a.getStation());
+        assertEquals(36.0, a.getValeur());
+        assertEquals(36.0, a.getIndicateur(), "seuil : l'indicateur est la mesure");
+
+        // même observation renvoyée, relevé plus ancien : ignorés
+        moteur.evaluer("ne", "Neuchâtel", serie(DEBUT_MS + 9 * HEURE, 50));
+        moteur.evaluer("ne", "Neuchâtel", serie(DEBUT_MS, 50));
+        assertEquals(3, collecte.alertes.size());
+        assertTrue(moteur.statistiques().startsWith("10 relevé(s) évalué(s), 3 alerte(s), 1 station(s)"),
+                moteur.statistiques());
+
+        // une autre station a son propre état
+        moteur.evaluer("be", "Berne", serie(DEBUT_MS, 40));
+        assertEquals(4, collecte.alertes.size());
+
+        // relevé sans la grandeur : aucune règle évaluée
+        Meteo sansTemperature = new Meteo();
+        sansTemperature.setDateMesureMs(DEBUT_MS + 20 * HEURE);
+        moteur.evaluer("ne", "Neuchâtel", List.of(sansTemperature));
+        assertEquals(4, collecte.alertes.size());
+    }
+
+    @Test
+    void zScoreEtVariation() {
+        Collecte collecte = new Collecte();
+        MoteurAlertes moteur = new MoteurAlertes(Regle.lireListe("pression.zscore>3"), 0.1, 3, 20, List.of(collecte));
+
+        // pic avant 20 relevés : pas encore de z-score
+        List<Meteo> releves = new ArrayList<>();
+        for (int i = 0; i < 10; i++) releves.add(pression(DEBUT_MS + i * HEURE, 1013 + (i % 2)));
+        releves.add(pression(DEBUT_MS + 10 * HEURE, 1060));
+        for (int i = 11; i < 40; i++) releves.add(pression(DEBUT_MS + i * HEURE, 1013 + (i % 2)));
+        moteur.evaluer("ne", "Neuchâtel", releves);
+        assertTrue(collecte.alertes.isEmpty(), "historique trop court : " + collecte.alertes);
+
+        // chute brutale puis hausse brutale : une alerte chacune
+        moteur.evaluer("ne", "Neuchâtel", List.of(
+                pression(DEBUT_MS + 40 * HEURE, 990),
+                pression(DEBUT_MS + 41 * HEURE, 1013),
+                pression(DEBUT_MS + 42 * HEURE, 1013),
+                pression(DEBUT_MS + 43 * HEURE, 1013),
+                pression(DEBUT_MS + 44 * HEURE, 1045)));
+        assertEquals(List.of("pression.zscore>3@40", "pression.zscore>3@44"), collecte.resume(DEBUT_MS));
+        assertTrue(collecte.alertes.get(0).getIndicateur() < -3);
+        assertTrue(collecte.alertes.get(1).getIndicateur() > 3);
+
+        // variation : écart avec la valeur d'il y a 3 relevés, dans un sens ou l'autre
+        Collecte variations = new Collecte();
+        MoteurAlertes fenetre = new MoteurAlertes(Regle.lireListe("temperature.variation>8"), 0.1, 3, 0, List.of(variations));
+        fenetre.evaluer("ne", "Neuchâtel", serie(DEBUT_MS, 10, 12, 14, 17, 19, 20, 21, 12, 11, 10));
+        // 17 - 10 = 7 ; 19 - 12 = 7 ; 20 - 14 = 6 ; 21 - 17 = 4 ; 12 - 19 = -7 ; 11 - 20 = -9 ; 10 - 21 = -11 (déjà dépassée)
+        assertEquals(List.of("temperature.variation>8@8"), variations.resume(DEBUT_MS));
+        assertEquals(-9.0, variations.alertes.get(0).getIndicateur(), 1e-9);
+    }
+
+    @Test
+    void destinations() throws Exception {
+        List<String> recus = new CopyOnWriteArrayList<>();
+        CountDownLatch deuxRecus = new CountDownLatch(2);
+        HttpServer webhook = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        webhook.createContext("/alertes", ex -> {
+            recus.add(new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            ex.sendResponseHeaders(204, -1);
+            ex.close();
+            deuxRecus.countDown();
+        });
+        webhook.start();
+
+        Path fichier = dossier.resolve("alertes/alertes.jsonl");
+        Collecte collecte = new Collecte();
+        DestinationAlertes enPanne = alerte -> {
+            throw new IllegalStateException("destination en panne");
+        };
+        WebhookAlertes envoi = new WebhookAlertes(
+                URI.create("http://localhost:" + webhook.getAddress().getPort() + "/alertes"), new TransportHttp());
+        MoteurAlertes moteur = new MoteurAlertes(Regle.lireListe("temperature>35"), 0.1, 3, 10,
+                List.of(enPanne, new FichierAlertes(fichier), envoi, collecte));
+
+        ByteArrayOutputStream erreurs = new ByteArrayOutputStream();
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(erreurs, true, StandardCharsets.UTF_8));
+        try {
+            moteur.evaluer("ne", "Neuchâtel", serie(DEBUT_MS, 36, 20, 38));
+            assertTrue(deuxRecus.await(5, TimeUnit.SECONDS), "alertes reçues par le webhook");
+            moteur.close();
+        } finally {
+            System.setErr(err);
+            webhook.stop(0);
+        }
+
+        assertEquals(2, collecte.alertes.size(), "destination en panne sans effet sur les suivantes");
+        assertTrue(erreurs.toString(StandardCharsets.UTF_8).contains("destination en panne"));
+        List<String> lignes = Files.readAllLines(fichier, StandardCharsets.UTF_8);
+        assertEquals(2, lignes.size());
+        JsonObject premiere = JsonParser.parseString(lignes.get(0)).getAsJsonObject();
+        assertEquals("Neuchâtel", premiere.get("station").getAsString());
+        assertEquals("temperature", premiere.get("grandeur").getAsString());
+        assertEquals("°C", premiere.get("unite").getAsString());
+        assertEquals("2023-11-14T22:13:20Z", premiere.get("dateMesure").getAsString());
+        assertEquals(36.0, premiere.get("valeur").getAsDouble());
+        assertEquals("temperature>35", premiere.get("regle").getAsString());
+        assertEquals(lignes, recus, "mêmes alertes, même ordre, par le webhook");
+        assertEquals("2 envoyée(s), 0 échec(s), 0 perdue(s)", envoi.statistiques());
+
+        envoi.publier(collecte.alertes.get(0));
+        assertTrue(envoi.statistiques().endsWith("1 perdue(s)"), "webhook fermé : " + envoi.statistiques());
+    }
+
+    @Test
+    void stationsEvalueesEnParallele() throws Exception {
+        String regles = "temperature>30,temperature.variation>6,pression.zscore>2.5";
+        Collecte sequentiel = new Collecte();
+        MoteurAlertes reference = moteur(regles, sequentiel);
+        List<List<Meteo>> parStation = new ArrayList<>();
+        for (int s = 0; s < STATIONS; s++) {
+            parStation.add(releves(s));
+            for (Meteo m : parStation.get(s)) reference.evaluer("s" + s, "Station " + s, List.of(m));
+        }
+
+        // 8 threads, chaque relevé soumis par deux threads (observation reçue deux fois)
+        Collecte parallele = new Collecte();
+        MoteurAlertes moteur = moteur(regles, parallele);
+        CountDownLatch depart = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> taches = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int premier = t / 2;
+            taches.add(pool.submit(() -> {
+                depart.await();
+                for (int i = 0; i < RELEVES; i++) {
+                    for (int s = premier; s < STATIONS; s += THREADS / 2) {
+                        moteur.evaluer("s" + s, "Station " + s, List.of(parStation.get(s).get(i)));
+                    }
+                }
+                return null;
+            }));
+        }
+        long t0 = System.nanoTime();
+        depart.countDown();
+        for (Future<?> f : taches) f.get();
+        pool.shutdown();
+        long ms = (System.nanoTime() - t0) / 1_000_000L;
+
+        System.out.println("(Info) Alertes : " + moteur.statistiques() + " en " + ms + " ms");
+        assertTrue(sequentiel.alertes.size() > STATIONS, "jeu de données sans alerte : " + sequentiel.alertes.size());
+        assertEquals(sequentiel.triees(), parallele.triees(), "mêmes alertes qu'en séquentiel");
+        assertTrue(moteur.statistiques().startsWith(STATIONS * RELEVES + " relevé(s) évalué(s)"), moteur.statistiques());
+    }
+
+    @Test
+    void serviceSurLeFauxOwm() throws Exception {
+        AtomicLong dt = new AtomicLong(DEBUT_MS / 1000);
+        double[] temperature = {20};
+        try (ServeurFactice serveur = ServeurFactice.demarrer(0, q -> new ServeurFactice.Observation(
+                46.99, 6.93, temperature[0], dt.get(), 2659496, "Neuchâtel"))) {
+            H2MeteoRepository repo = new H2MeteoRepository("jdbc:h2:mem:alertes;DB_CLOSE_DELAY=-1", "sa", "");
+            repo.initialiserSchema();
+            MeteoServiceImpl service = serveur.service(new TransportHttp(), repo);
+            Collecte collecte = new Collecte();
+            service.activerAlertes(moteur("temperature>35", collecte));
+
+            ServeurFactice.sansTraces(() -> {
+                service.obtenirMeteoEtTraiter(46.99, 6.93, "fr");
+                temperature[0] = 36.5;
+                for (int i = 1; i <= 3; i++) {
+                    dt.set(DEBUT_MS / 1000 + 600);
+                    service.obtenirMeteoEtTraiter(46.99, 6.93, "fr"); // même observation servie 3 fois
+                }
+                return null;
+            });
+            assertEquals(1, collecte.alertes.size());
+            assertEquals("Neuchâtel", collecte.alertes.get(0).getStation());
+            assertEquals(DEBUT_MS + 600_000L, collecte.alertes.get(0).getDateMesureMs(), "date d'observation OWM");
+        }
+    }
+
+    // -------------------------------------------------------
+    // Utilitaires
+    // -------------------------------------------------------
+
+    private static MoteurAlertes moteur(String regles, DestinationAlertes destination) {
+        return new MoteurAlertes(Regle.lireListe(regles), 0.1, 3, 10, List.of(destination));
+    }
+
+    /** Relevés horaires de température à partir de la date donnée. */
+    private static List<Meteo> serie(long debutMs, double... temperatures) {
+        List<Meteo> releves = new ArrayList<>();
+        for (int i = 0; i < temperatures.length; i++) {
+            Meteo m = new Meteo();
+            m.setDateMesureMs(debutMs + i * HEURE);
+            m.setTemperature(temperatures[i]);
+            releves.add(m);
+        }
+        return releves;
+    }
+
+    private static Meteo pression(long dateMs, double hPa) {
+        Meteo m = new Meteo();
+        m.setDateMesureMs(dateMs);
+        m.setPression(hPa);
+        return m;
+    }
+
+    /** Série déterministe par station : cycle journalier, quelques pics de température et de pression. */
+    private static List<Meteo> releves(int station) {
+        List<Meteo> releves = new ArrayList<>(RELEVES);
+        for (int i = 0; i < RELEVES; i++) {
+            Meteo m = new Meteo();
+            m.setDateMesureMs(DEBUT_MS + i * HEURE);
+            double pic = (i * 7 + station * 13) % 97 == 0 ? 12 : 0;
+            m.setTemperature(15 + 8 * Math.sin(2 * Math.PI * (i % 24) / 24.0) + pic + station % 5);
+            m.setPression(1013.0 + (i % 3) + ((i * 11 + station) % 83 == 0 ? 15 : 0));
+            releves.add(m);
+        }
+        return releves;
+    }
+
+    /** Destination qui garde les alertes publiées. */
+    private static final class Collecte implements DestinationAlertes {
+        final List<Alerte> alertes = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void publier(Alerte alerte) {
+            alertes.add(alerte);
+        }
+
+        /** "règle@numéro du relevé horaire". */
+        List<String> resume(long debutMs) {
+            List<String> r = new ArrayList<>();
+            for (Alerte a : alertes) r.add(a.getRegle() + "@" + (a.getDateMesureMs() - debutMs) / HEURE);
+            return r;
+        }
+
+        List<String> triees() {
+            List<String> r = new ArrayList<>();
+            for (Alerte a : alertes) r.add(a.getStation() + "|" + a.getDateMesureMs() + "|" + a.getRegle() + "|" + a.getIndicateur());
+            Collections.sort(r);
+            return r;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package ch.hearc.meteo.service.esquisse;
+
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.infrastructure.persistence.H2MeteoRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Résumés journaliers ({@link EsquissesJournalieres}) et leurs esquisses, sans serveur de base :
+ *
+ * 1. t-digest : quantiles de séries connues (normale, uniforme, exponentielle), d'un seul tenant
+ *    et par fusion de 365 digests journaliers, comparés aux quantiles exacts (erreur en rang) ;
+ *    taille sérialisée et relecture ;
+ * 2. HyperLogLog : cardinalités de 10 à 1 000 000, fusion d'ensembles qui se recouvrent ;
+ * 3. de bout en bout (base H2 en mémoire) : quelques stations, des mois de relevés horaires notés
+ *    par 4 threads, avec un « redémarrage » à mi-parcours (nouvelle instance, journées déjà en base
+ *    complétées) ; p5 à p99 de la période comparés au calcul exact, compteurs exacts, conditions.
+ */
+class EsquissesJournalieresTest {
+
+    private static final int VALEURS = 1_000_000;
+    private static final int NB_STATIONS = 20;
+    private static final int NB_JOURS = 365;
+    private static final double[] QUANTILES = {0.01, 0.05, 0.25, 0.5, 0.75, 0.95, 0.99};
+    private static final String[] CONDITIONS = {"ciel dégagé", "peu nuageux", "partiellement nuageux",
+            "nuageux", "couvert", "brume", "brouillard", "bruine", "pluie légère", "pluie modérée",
+            "averses", "orage", "neige légère", "neige"};
+    private static final ZoneId ZONE = ZoneId.of("Europe/Zurich");
+
+    // -------------------------------------------------------
+    // 1. t-digest
+    // -------------------------------------------------------
+
+    @ParameterizedTest(name = "loi {0}")
+    @ValueSource(strings = {"normale", "uniforme", "exponentielle"})
+    void tDigestSeulEtFusionne(String loi) {
+        Random alea = new Random(46);
+        int n = VALEURS;
+        double[] valeurs = new double[n];
+        TDigest seul = new TDigest(100);
+        List<TDigest> jours = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            double v = "normale".equals(loi) ? 10 + 8 * alea.nextGaussian()
+                    : "uniforme".equals(loi) ? -20 + 55 * alea.nextDouble()
+                    : -Math.log(1 - alea.nextDouble()) * 5;
+            valeurs[i] = v;
+            seul.ajouter(v);
+            if (i % (n / 365 + 1) == 0) jours.add(new TDigest(100));
+            jours.get(jours.size() - 1).ajouter(v);
+        }
+        // fusion des journées, chacune sérialisée puis relue (comme depuis la base)
+        TDigest fusion = new TDigest(100);
+        long octets = 0;
+        for (TDigest j : jours) {
+            byte[] b = j.enOctets();
+            octets += b.length;
+            fusion.fusionner(TDigest.depuisOctets(b));
+        }
+        Arrays.sort(valeurs);
+
+        double pireSeul = 0;
+        double pireFusion = 0;
+        double pireExtremes = 0;
+        for (double q : QUANTILES) {
+            double eSeul = erreurRang(valeurs, seul.quantile(q), q);
+            double eFusion = erreurRang(valeurs, fusion.quantile(q), q);
+            pireSeul = Math.max(pireSeul, eSeul);
+            pireFusion = Math.max(pireFusion, eFusion);
+            if (q <= 0.05 || q >= 0.95) pireExtremes = Math.max(pireExtremes, Math.max(eSeul, eFusion));
+        }
+        byte[] serialise = seul.enOctets();
+        System.out.printf(Locale.ROOT, "(Info) t-digest %s : %d valeurs en %d octets, erreur de rang max %.4f "
+                        + "(fusion de %d journées, %d octets : %.4f ; p1/p5/p95/p99 : %.4f)%n",
+                loi, n, serialise.length, pireSeul, jours.size(), octets, pireFusion, pireExtremes);
+
+        assertTrue(pireSeul < 0.005, "erreur de rang d'un seul tenant : " + pireSeul);
+        assertTrue(pireFusion < 0.005, "erreur de rang après fusion : " + pireFusion);
+        assertTrue(pireExtremes < 0.002, "erreur de rang aux extrêmes : " + pireExtremes);
+        // moyennes relues au pas de (max - min) / 65535 près
+        assertEquals(seul.quantile(0.95), TDigest.depuisOctets(serialise).quantile(0.95),
+                (seul.max() - seul.min()) / 65535.0, "p95 relu");
+        assertEquals(n, fusion.taille(), "valeurs fusionnées");
+        assertEquals(valeurs[0], fusion.min(), "minimum fusionné");
+        assertEquals(valeurs[n - 1], fusion.max(), "maximum fusionné");
+    }
+
+    /** |rang relatif de l'estimation - q| dans la série triée. */
+    private static double erreurRang(double[] tries, double estimation, double q) {
+        int i = Arrays.binarySearch(tries, estimation);
+        int rang = i >= 0 ? i : -i - 1;
+        return Math.abs((double) rang / tries.length - q);
+    }
+
+    // -------------------------------------------------------
+    // 2. HyperLogLog
+    // -------------------------------------------------------
+
+    @ParameterizedTest(name = "{0} distinctes")
+    @ValueSource(ints = {10, 1_000, 100_000, 1_000_000})
+    void hyperLogLogCardinalite(int n) {
+        HyperLogLog h = new HyperLogLog(10);
+        for (int i = 0; i < n; i++) h.ajouter("valeur-" + i);
+        HyperLogLog relu = HyperLogLog.depuisOctets(h.enOctets());
+        double erreur = Math.abs(relu.estimation() - n) / (double) n;
+        System.out.printf(Locale.ROOT, "(Info) HyperLogLog %d distinctes : estimation %d (%.1f %%), %d octets%n",
+                n, h.estimation(), erreur * 100, h.enOctets().length);
+        assertTrue(erreur < 0.10, "erreur relative : " + erreur);
+        assertEquals(h.estimation(), relu.estimation(), "estimation relue");
+    }
+
+    @Test
+    void hyperLogLogFusion() {
+        // deux ensembles de 60 000 dont 20 000 communs : union de 100 000
+        HyperLogLog a = new HyperLogLog(10);
+        HyperLogLog b = new HyperLogLog(10);
+        for (int i = 0; i < 60_000; i++) a.ajouter("x" + i);
+        for (int i = 40_000; i < 100_000; i++) b.ajouter("x" + i);
+        a.fusionner(b);
+        double erreur = Math.abs(a.estimation() - 100_000) / 100_000.0;
+        System.out.printf(Locale.ROOT, "(Info) HyperLogLog fusion (union de 100000) : %d (%.1f %%)%n",
+                a.estimation(), erreur * 100);
+        assertTrue(erreur < 0.10, "erreur relative de l'union : " + erreur);
+    }
+
+    // -------------------------------------------------------
+    // 3. De bout en bout
+    // -------------------------------------------------------
+
+    @Test
+    void resumesApresRedemarrage() throws Exception {
+        H2MeteoRepository repo = new H2MeteoRepository("jdbc:h2:mem:esquisses;DB_CLOSE_DELAY=-1", "sa", "");
+        repo.initialiserSchema();
+
+        LocalDate premier = LocalDate.of(2024, 1, 1);
+        LocalDate dernier = premier.plusDays(NB_JOURS - 1);
+        List<StationMeteo> stations = new ArrayList<>();
+        List<List<Meteo>> relevesParStation = new ArrayList<>();
+        Random alea = new Random(7);
+        for (int i = 0; i < NB_STATIONS; i++) {
+            StationMeteo s = new StationMeteo();
+            s.setNom(String.format(Locale.ROOT, "Station %02d", i));
+            s.setLatitude(46.0 + i * 0.05);
+            s.setLongitude(7.0);
+            stations.add(s);
+            double decalage = alea.nextGaussian() * 3;
+            List<Meteo> releves = new ArrayList<>();
+            long debutMs = premier.atStartOfDay(ZONE).toInstant().toEpochMilli();
+            long finMs = dernier.plusDays(1).atStartOfDay(ZONE).toInstant().toEpochMilli();
+            for (long t = debutMs; t < finMs; t += 3_600_000L) {
+                double jour = (t - debutMs) / 86_400_000.0;
+                Meteo m = new Meteo();
+                m.setDateMesureMs(t);
+                m.setTemperature(Math.round((9 + decalage - 10 * Math.cos(2 * Math.PI * jour / 365)
+                        - 4 * Math.cos(2 * Math.PI * (jour % 1 - 0.125)) + alea.nextGaussian() * 2.5) * 100) / 100.0);
+                if (alea.nextDouble() < 0.1) m.setPrecipitation(Math.round(alea.nextDouble() * 30) / 10.0);
+                // chaque station ne voit qu'une partie des conditions (i % 5 exclues)
+                m.setDescription(CONDITIONS[alea.nextInt(CONDITIONS.length - i % 5)]);
+                releves.add(m);
+            }
+            relevesParStation.add(releves);
+        }
+
+        // première instance : première moitié de chaque station, puis arrêt (écriture finale)
+        long t0 = System.nanoTime();
+        EsquissesJournalieres premiere = new EsquissesJournalieres(repo, repo, ZONE, 100);
+        noterEnParallele(premiere, stations, relevesParStation, 0, 0.5);
+        premiere.close();
+        // seconde instance (redémarrage) : le reste, dont la fin de la journée coupée en deux
+        EsquissesJournalieres seconde = new EsquissesJournalieres(repo, repo, ZONE, 100);
+        noterEnParallele(seconde, stations, relevesParStation, 0.5, 1.0);
+        seconde.ecrire();
+        long relevesTotal = relevesParStation.stream().mapToLong(List::size).sum();
+        System.out.printf(Locale.ROOT, "(Info) %d relevé(s) résumé(s) en %d ms ; %s%n", relevesTotal,
+                (System.nanoTime() - t0) / 1_000_000, seconde.statistiques());
+
+        try {
+            for (int i = 0; i < NB_STATIONS; i += NB_STATIONS / 4 + 1) {
+                ResumePeriode r = seconde.resumer(stations.get(i).getNom(), premier, dernier);
+                comparer(r, relevesParStation.get(i));
+            }
+        } finally {
+            seconde.close();
+        }
+    }
+
+    /** Note la tranche [de, a) (en proportion) des relevés de chaque station, un relevé par appel, sur 4 threads. */
+    private static void noterEnParallele(EsquissesJournalieres esquisses, List<StationMeteo> stations,
+                                         List<List<Meteo>> relevesParStation, double de, double a) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> taches = new ArrayList<>();
+            for (int i = 0; i < stations.size(); i++) {
+                StationMeteo s = stations.get(i);
+                List<Meteo> releves = relevesParStation.get(i);
+                taches.add(pool.submit(() -> {
+                    String cle = s.getNom();
+                    int debut = (int) (releves.size() * de);
+                    int fin = (int) (releves.size() * a);
+                    for (int k = debut; k < fin; k++) {
+                        esquisses.noter(cle, s, Collections.singletonList(releves.get(k)));
+                    }
+                }));
+            }
+            for (Future<?> f : taches) f.get();
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    private static void comparer(ResumePeriode r, List<Meteo> releves) {
+        double[] temperatures = releves.stream().mapToDouble(Meteo::getTemperature).sorted().toArray();
+        double somme = Arrays.stream(temperatures).sum();
+        double precipitation = releves.stream().filter(m -> m.getPrecipitation() != null)
+                .mapToDouble(Meteo::getPrecipitation).sum();
+        Set<String> conditions = new HashSet<>();
+        for (Meteo m : releves) conditions.add(m.getDescription());
+
+        assertNotNull(r, "résumé");
+        StringBuilder ecarts = new StringBuilder();
+        double pire = 0;
+        for (double p : new double[]{5, 50, 95, 99}) {
+            double exact = temperatures[(int) Math.ceil(p / 100 * temperatures.length) - 1];
+            double estime = r.temperaturePercentile(p);
+            pire = Math.max(pire, erreurRang(temperatures, estime, p / 100));
+            ecarts.append(String.format(Locale.ROOT, " p%.0f %.2f/%.2f", p, estime, exact));
+        }
+        System.out.printf(Locale.ROOT, "(Info) %s :%s °C (esquisse/exact), %d condition(s), %s%n",
+                r.getStation(), ecarts, r.getConditionsDistinctes(), r);
+
+        assertEquals(releves.size(), r.getReleves(), r.getStation() + " : relevés");
+        assertEquals(temperatures[0], r.getTemperatureMin(), r.getStation() + " : minimum");
+        assertEquals(temperatures[temperatures.length - 1], r.getTemperatureMax(), r.getStation() + " : maximum");
+        assertEquals(somme / temperatures.length, r.getTemperatureMoyenne(), 1e-9, r.getStation() + " : moyenne");
+        assertEquals(precipitation, r.getPrecipitationTotale(), 1e-6, r.getStation() + " : précipitations");
+        assertEquals(conditions.size(), r.getConditionsDistinctes(), r.getStation() + " : conditions");
+        assertTrue(pire < 0.005, r.getStation() + " : erreur de rang des percentiles " + pire);
+    }
+}
@@ -0,0 +1,191 @@
+package ch.hearc.meteo.service.geo;
+
+import ch.hearc.meteo.business.StationMeteo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Index spatial des stations ({@link IndexSpatialStations}), comparé à une recherche exhaustive :
+ *
+ * 1. distances connues (haversine) ;
+ * 2. k plus proches, plus proche dans un rayon et stations dans un rayon, pour des points tirés
+ *    sur tout le globe (pôles et antiméridien compris), avec plusieurs tailles de cellule,
+ *    autour de 5 000 stations réparties par paquets ;
+ * 3. point isolé : rien dans le rayon, rien hors du rayon rendu ;
+ * 4. même station ajoutée deux fois (et par 4 threads à la fois) : une seule entrée ;
+ *    ajouts pendant les recherches.
+ */
+class IndexSpatialStationsTest {
+
+    private static final int NB_STATIONS = 5_000;
+    private static final int NB_POINTS = 1_000;
+
+    @Test
+    void distancesConnues() {
+        assertEquals(0.0, IndexSpatialStations.distanceKm(46.99, 6.93, 46.99, 6.93), 1e-9);
+        // un degré de latitude : ~111,2 km
+        assertEquals(111.195, IndexSpatialStations.distanceKm(0, 0, 1, 0), 0.01);
+        // Neuchâtel - Berne : ~40 km ; Paris - New York : ~5 837 km
+        assertEquals(40.0, IndexSpatialStations.distanceKm(46.99, 6.93, 46.95, 7.45), 1.0);
+        assertEquals(5837, IndexSpatialStations.distanceKm(48.8566, 2.3522, 40.7128, -74.0060), 5);
+        // de part et d'autre de l'antiméridien, et d'un pôle à l'autre
+        assertEquals(22.2, IndexSpatialStations.distanceKm(0, 179.9, 0, -179.9), 0.1);
+        assertEquals(Math.PI * 6371.0088, IndexSpatialStations.distanceKm(90, 0, -90, 0), 0.01);
+    }
+
+    @ParameterizedTest(name = "cellules de {0}°")
+    @ValueSource(doubles = {0.1, 0.5, 2.0, 30.0})
+    void memesResultatsQuUneRechercheExhaustive(double tailleCellule) {
+        Random alea = new Random(29);
+        List<StationMeteo> stations = stationsParPaquets(alea);
+        IndexSpatialStations index = new IndexSpatialStations(tailleCellule);
+        index.charger(stations);
+        assertEquals(stations.size(), index.taille());
+
+        for (int i = 0; i < NB_POINTS; i++) {
+            double lat = i % 10 == 0 ? (alea.nextBoolean() ? 89.9 : -89.9) : alea.nextDouble() * 180 - 90;
+            double lon = i % 10 == 1 ? (alea.nextBoolean() ? 179.95 : -179.95) : alea.nextDouble() * 360 - 180;
+            int k = 1 + alea.nextInt(8);
+            double rayon = alea.nextInt(4) == 0 ? Double.MAX_VALUE : 10 + alea.nextDouble() * 500;
+            String point = String.format("(%.3f, %.3f), k=%d, rayon=%.0f km", lat, lon, k, rayon);
+
+            List<StationProche> attendues = exhaustive(stations, lat, lon, rayon);
+            List<StationProche> proches = index.plusProches(lat, lon, k, rayon);
+            assertEquals(Math.min(k, attendues.size()), proches.size(), "nombre de voisins " + point);
+            for (int j = 0; j < proches.size(); j++) {
+                // à distance égale, l'ordre des stations peut différer : seules les distances sont comparées
+                assertEquals(attendues.get(j).getDistanceKm(), proches.get(j).getDistanceKm(), 1e-9,
+                        "voisin " + j + " " + point);
+            }
+
+            StationProche plusProche = index.plusProche(lat, lon, rayon);
+            if (attendues.isEmpty()) {
+                assertNull(plusProche, "aucune station dans le rayon " + point);
+            } else {
+                assertEquals(attendues.get(0).getDistanceKm(), plusProche.getDistanceKm(), 1e-9, point);
+            }
+
+            if (rayon < Double.MAX_VALUE) {
+                List<StationProche> dansRayon = index.dansRayon(lat, lon, rayon);
+                assertEquals(attendues.size(), dansRayon.size(), "stations dans le rayon " + point);
+                for (int j = 0; j < dansRayon.size(); j++) {
+                    assertEquals(attendues.get(j).getDistanceKm(), dansRayon.get(j).getDistanceKm(), 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    void pointIsole() {
+        IndexSpatialStations index = new IndexSpatialStations();
+        index.ajouter(station("Neuchâtel", 46.99, 6.93));
+        index.ajouter(station("Berne", 46.95, 7.45));
+
+        assertNull(index.plusProche(-45.0, -120.0, 500), "Pacifique sud : rien à moins de 500 km");
+        assertTrue(index.dansRayon(-45.0, -120.0, 500).isEmpty());
+        assertEquals(0, index.plusProches(46.99, 6.93, 0).size(), "k = 0");
+        assertEquals(1, index.plusProches(46.99, 6.93, 5, 10).size(), "Berne hors du rayon de 10 km");
+        assertEquals("Berne", index.plusProches(-45.0, -120.0, 2).get(1).getStation().getNom(),
+                "sans rayon : toujours k stations");
+        assertEquals(0, new IndexSpatialStations().plusProches(0, 0, 3).size(), "index vide");
+        assertThrows(IllegalArgumentException.class, () -> new IndexSpatialStations(0));
+    }
+
+    @Test
+    void memeStationRemplacee() throws Exception {
+        IndexSpatialStations index = new IndexSpatialStations();
+        index.ajouter(station("Neuchâtel", 46.99, 6.93));
+        StationMeteo recente = station("Neuchâtel", 46.99, 6.93);
+        recente.setNumero(2);
+        index.ajouter(recente);
+        index.ajouter(station("Neuchâtel", 40.0, -75.0)); // homonyme ailleurs : gardé
+        index.ajouter(station("Sans position", null, null));
+        assertEquals(2, index.taille());
+        assertEquals(Integer.valueOf(2), index.plusProche(46.99, 6.93, 1).getStation().getNumero(),
+                "la dernière version est gardée");
+
+        // 4 threads ajoutent les mêmes stations pendant que d'autres cherchent
+        IndexSpatialStations partage = new IndexSpatialStations();
+        List<StationMeteo> stations = stationsParPaquets(new Random(290));
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        List<Future<?>> taches = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            taches.add(pool.submit(() -> {
+                for (StationMeteo s : stations) partage.ajouter(station(s.getNom(), s.getLatitude(), s.getLongitude()));
+            }));
+        }
+        for (int t = 0; t < 2; t++) {
+            long graine = t;
+            taches.add(pool.submit(() -> {
+                Random alea = new Random(graine);
+                for (int i = 0; i < 2_000; i++) {
+                    List<StationProche> r = partage.plusProches(alea.nextDouble() * 180 - 90,
+                            alea.nextDouble() * 360 - 180, 5);
+                    for (int j = 1; j < r.size(); j++) {
+                        assertTrue(r.get(j - 1).getDistanceKm() <= r.get(j).getDistanceKm(), "tri par distance");
+                    }
+                }
+            }));
+        }
+        for (Future<?> f : taches) f.get();
+        pool.shutdown();
+        assertEquals(stations.size(), partage.taille(), "une entrée par station malgré les ajouts simultanés");
+    }
+
+    // -------------------------------------------------------
+    // Utilitaires
+    // -------------------------------------------------------
+
+    /** Stations regroupées autour de 50 centres (villes), dont des centres près des pôles et de l'antiméridien. */
+    private static List<StationMeteo> stationsParPaquets(Random alea) {
+        double[][] centres = new double[50][];
+        for (int c = 0; c < centres.length; c++) {
+            centres[c] = new double[]{alea.nextDouble() * 170 - 85, alea.nextDouble() * 360 - 180};
+        }
+        centres[0] = new double[]{89.5, 10};
+        centres[1] = new double[]{-89.5, -100};
+        centres[2] = new double[]{10, 179.8};
+
+        List<StationMeteo> result = new ArrayList<>();
+        for (int i = 0; i < NB_STATIONS; i++) {
+            double[] centre = centres[i % centres.length];
+            double lat = Math.max(-90, Math.min(90, centre[0] + alea.nextGaussian()));
+            double lon = centre[1] + alea.nextGaussian() * 2;
+            lon = ((lon + 180) % 360 + 360) % 360 - 180;
+            result.add(station("S" + i, lat, lon));
+        }
+        return result;
+    }
+
+    private static List<StationProche> exhaustive(List<StationMeteo> stations, double lat, double lon, double rayon) {
+        List<StationProche> result = new ArrayList<>();
+        for (StationMeteo s : stations) {
+            double d = IndexSpatialStations.distanceKm(lat, lon, s.getLatitude(), s.getLongitude());
+            if (d <= rayon) result.add(new StationProche(s, d));
+        }
+        result.sort(Comparator.comparingDouble(StationProche::getDistanceKm));
+        return result;
+    }
+
+    private static StationMeteo station(String nom, Double lat, Double lon) {
+        StationMeteo s = new StationMeteo();
+        s.setNom(nom);
+        s.setLatitude(lat);
+        s.setLongitude(lon);
+        return s;
+    }
+}
@@ -0,0 +1,173 @@
+package ch.hearc.meteo.service.geo;
+
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.Pays;
+import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.infrastructure.persistence.H2MeteoRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Météo estimée ({@link InterpolateurMeteo}), sans réseau ni serveur de base : N stations tirées au
+ * hasard dans une zone de ~330 × 460 km, avec un champ de température connu, enregistrées dans une
+ * base H2 en mémoire (un ancien et un dernier relevé par station).
+ *
+ * 1. chargement des derniers relevés (MeteoRepository.findDerniersReleves) : un relevé par station,
+ *    le plus récent ;
+ * 2. estimation en Q points au hasard (zone et ses abords) : durée par estimation,
+ *    erreur par rapport au champ exact, selon que l'appel direct est conseillé ou non ;
+ * 3. nouveau relevé noté pour une station : l'estimation à son emplacement le reprend.
+ */
+class InterpolateurMeteoTest {
+
+    private static final String URL_BASE = "jdbc:h2:mem:interpolation;DB_CLOSE_DELAY=-1";
+    private static final int NB_STATIONS = 3_000;
+    private static final int NB_ESTIMATIONS = 200_000;
+    private static final double LAT_MIN = 45.0, LAT_MAX = 48.0;
+    private static final double LON_MIN = 5.0, LON_MAX = 11.0;
+
+    private static final Random alea = new Random(44);
+    private static long maintenant;
+    private static List<StationMeteo> derniers;
+    private static InterpolateurMeteo interpolateur;
+
+    /** Base : un ancien relevé (2 h) et un dernier relevé (0 à 30 min) par station, puis chargement. */
+    @BeforeAll
+    static void charger() throws Exception {
+        H2MeteoRepository repo = new H2MeteoRepository(URL_BASE, "sa", "");
+        repo.initialiserSchema();
+        maintenant = System.currentTimeMillis();
+        Map<Integer, List<Meteo>> releves = new HashMap<>();
+        for (int i = 0; i < NB_STATIONS; i++) {
+            StationMeteo s = new StationMeteo();
+            s.setNom("Station " + i);
+            s.setLatitude(LAT_MIN + alea.nextDouble() * (LAT_MAX - LAT_MIN));
+            s.setLongitude(LON_MIN + alea.nextDouble() * (LON_MAX - LON_MIN));
+            Pays p = new Pays();
+            p.setCode("CH");
+            p.setNom("Suisse");
+            s.setPays(p);
+            Integer id = repo.ensureStationId(s);
+            releves.put(id, Arrays.asList(
+                    releve(s.getLatitude(), s.getLongitude(), maintenant - 7_200_000L, 5.0),
+                    releve(s.getLatitude(), s.getLongitude(), maintenant - alea.nextInt(1_800_000), 0.0)));
+        }
+        repo.saveMeteoParStation(releves);
+
+        interpolateur = new InterpolateurMeteo(50, 8, 3, 90 * 60_000L, 0.6);
+        long debut = System.nanoTime();
+        derniers = repo.findDerniersReleves(Instant.ofEpochMilli(maintenant - 90 * 60_000L));
+        interpolateur.charger(derniers);
+        System.out.printf(Locale.ROOT, "(Info) Chargement : %d station(s) en %d ms%n",
+                interpolateur.taille(), (System.nanoTime() - debut) / 1_000_000);
+    }
+
+    @Test
+    void dernierReleveSeulParStation() {
+        long anciens = derniers.stream()
+                .filter(s -> s.getDonneesMeteo().size() != 1
+                        || s.getDonneesMeteo().get(0).getDateMesureMs() < maintenant - 1_801_000L)
+                .count();
+        assertEquals(NB_STATIONS, derniers.size(), "stations chargées");
+        assertEquals(0, anciens, "stations sans leur dernier relevé seul");
+    }
+
+    @Test
+    void confianceCalibree() {
+        // zone élargie d'un degré, pour couvrir les abords sans station
+        for (int i = 0; i < 50_000; i++) { // préchauffage JIT
+            interpolateur.interpoler(LAT_MIN + alea.nextDouble() * 3, LON_MIN + alea.nextDouble() * 6);
+        }
+        long[] durees = new long[NB_ESTIMATIONS];
+        double erreurFiable = 0, erreurConseille = 0;
+        int fiables = 0, conseilles = 0, sansDonnees = 0, fiablesHorsZone = 0;
+        for (int i = 0; i < NB_ESTIMATIONS; i++) {
+            double lat = LAT_MIN - 1 + alea.nextDouble() * (LAT_MAX - LAT_MIN + 2);
+            double lon = LON_MIN - 1 + alea.nextDouble() * (LON_MAX - LON_MIN + 2);
+            long t0 = System.nanoTime();
+            MeteoInterpolee e = interpolateur.interpoler(lat, lon);
+            durees[i] = System.nanoTime() - t0;
+
+            if (e.getMeteo() == null) {
+                sansDonnees++;
+                continue;
+            }
+            double erreur = Math.abs(e.getMeteo().getTemperature() - temperature(lat, lon));
+            if (e.isAppelConseille()) {
+                conseilles++;
+                erreurConseille += erreur;
+            } else {
+                fiables++;
+                erreurFiable += erreur;
+                if (distanceHorsZoneKm(lat, lon) > 25) fiablesHorsZone++;
+            }
+        }
+        Arrays.sort(durees);
+        double moyenneFiable = fiables > 0 ? erreurFiable / fiables : Double.NaN;
+        double moyenneConseille = conseilles > 0 ? erreurConseille / conseilles : Double.NaN;
+        System.out.printf(Locale.ROOT, "(Info) Durée par estimation : médiane %.1f µs, p99 %.1f µs, max %.1f µs%n",
+                durees[NB_ESTIMATIONS / 2] / 1e3, durees[(int) (NB_ESTIMATIONS * 0.99)] / 1e3,
+                durees[NB_ESTIMATIONS - 1] / 1e3);
+        System.out.printf(Locale.ROOT, "(Info) Fiables : %d, erreur moyenne %.2f °C ; appel conseillé : %d, "
+                        + "erreur moyenne %.2f °C ; sans donnée : %d%n",
+                fiables, moyenneFiable, conseilles, moyenneConseille, sansDonnees);
+
+        assertTrue(moyenneFiable < 0.5, "erreur moyenne des estimations fiables : " + moyenneFiable);
+        assertTrue(moyenneFiable < moyenneConseille, "estimations fiables moins précises que les autres");
+        assertEquals(0, fiablesHorsZone, "estimations fiables à plus de 25 km de toute station");
+        assertTrue(sansDonnees > 0, "aucune estimation sans donnée loin des stations");
+    }
+
+    /** Nouveau relevé d'une station : repris tel quel à son emplacement. */
+    @Test
+    void nouveauReleveReprisASonEmplacement() {
+        StationMeteo s = derniers.get(0);
+        StationMeteo maj = new StationMeteo();
+        maj.setNom(s.getNom());
+        maj.setLatitude(s.getLatitude());
+        maj.setLongitude(s.getLongitude());
+        maj.addMeteo(releve(s.getLatitude(), s.getLongitude(), System.currentTimeMillis(), -8.0));
+        interpolateur.noter(maj);
+        MeteoInterpolee e = interpolateur.interpoler(s.getLatitude(), s.getLongitude());
+        System.out.println("(Info) Après nouveau relevé : " + e);
+        assertNotNull(e.getMeteo(), "estimation à l'emplacement de la station");
+        assertEquals(temperature(s.getLatitude(), s.getLongitude()) - 8.0, e.getMeteo().getTemperature(), 0.01,
+                "température du nouveau relevé");
+        assertFalse(e.isAppelConseille(), "appel conseillé à l'emplacement d'une station à jour");
+    }
+
+    /** Champ de température connu, lisse à l'échelle de quelques dizaines de km. */
+    private static double temperature(double lat, double lon) {
+        return 15.0 - 2.5 * (lat - LAT_MIN) + 3.0 * Math.sin(lon * 1.3) + 1.5 * Math.cos(lat * 2.1 + lon);
+    }
+
+    private static Meteo releve(double lat, double lon, long dateMs, double decalage) {
+        Meteo m = new Meteo();
+        m.setDateMesureMs(dateMs / 1000 * 1000);
+        m.setTemperature(temperature(lat, lon) + decalage);
+        m.setHumidite(60.0);
+        m.setPression(1015.0);
+        m.setDescription("ciel dégagé");
+        return m;
+    }
+
+    /** Distance approximative (km) du point à la zone des stations, 0 à l'intérieur. */
+    private static double distanceHorsZoneKm(double lat, double lon) {
+        double dLat = Math.max(0, Math.max(LAT_MIN - lat, lat - LAT_MAX)) * 111.2;
+        double dLon = Math.max(0, Math.max(LON_MIN - lon, lon - LON_MAX)) * 111.2 * Math.cos(Math.toRadians(lat));
+        return Math.hypot(dLat, dLon);
+    }
+}
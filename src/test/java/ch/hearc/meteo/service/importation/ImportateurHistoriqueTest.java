@@ -0,0 +1,303 @@
+package ch.hearc.meteo.service.importation;
+
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.infrastructure.persistence.H2MeteoRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Import en masse de relevés historiques ({@link ImportateurHistorique}) dans une base H2 en mémoire :
+ *
+ * 1. CSV (export OWM "History Bulk", colonnes dans le désordre, champs entre guillemets, lignes invalides)
+ *    et CSV Excel (';', virgule décimale) : relevés, stations et pays créés, lignes rejetées comptées ;
+ *    fichier réimporté : aucun relevé ajouté ;
+ * 2. JSON (tableau imbriqué comme les réponses OWM), JSON Lines compressé (.jsonl.gz) ;
+ * 3. import interrompu par une panne de la base (4 threads, lots validés dans le désordre) :
+ *    point de reprise écrit, relance reprise au dernier lot validé, chaque relevé en base une seule fois,
+ *    point de reprise supprimé à la fin ;
+ * 4. fichier modifié depuis l'interruption, ou --depuis-debut : point de reprise ignoré.
+ */
+class ImportateurHistoriqueTest {
+
+    private static final long DT_DEBUT = 1_600_000_000L; // secondes, 2020-09-13T12:26:40Z
+    private static final int STATIONS = 10;
+    private static final int RELEVES_PAR_STATION = 2_000;
+    private static final int LOT = 500;
+    private static int numeroBase;
+
+    @TempDir
+    Path dossier;
+
+    @Test
+    void csvAvecLignesInvalides() throws Exception {
+        String url = urlMemoire();
+        H2MeteoRepository repo = nouveau(url);
+        Path csv = dossier.resolve("history.csv");
+        Files.writeString(csv, String.join("\n",
+                "\uFEFFcity_name,lat,lon,dt,dt_iso,temp,humidity,pressure,weather_description,country",
+                "Neuchâtel,46.99,6.93,1600000000,,12.5,60,1015,\"ciel dégagé, frais\",ch",
+                "Neuchâtel,46.99,6.93,,2020-09-13 13:26:40 +0000 UTC,13.0,58,1014,nuageux,CH",
+                "",
+                "Berne,46.95,7.45,1600000000,,14.0,,,pluie,CH",
+                "Sans coordonnées,,,1600000000,,1.0,,,,CH",
+                "Pôle,95.0,7.0,1600000000,,1.0,,,,",
+                "Sans date,46.0,7.0,,,1.0,,,,",
+                "Température,46.0,7.0,1600000000,,chaud,,,,",
+                "Lausanne,46.52,6.63,1600003600,,18.5,70,,,"), StandardCharsets.UTF_8);
+
+        ImportateurHistorique.Bilan bilan = sansErreurs(() ->
+                new ImportateurHistorique(repo, 2, 1, 3).importer(csv, false));
+        assertEquals(8, bilan.getLus(), "lignes vides ignorées");
+        assertEquals(4, bilan.getInseres());
+        assertEquals(4, bilan.getRejetes(), "coordonnées absentes ou invalides, date absente, nombre invalide");
+        assertEquals(3, bilan.getStationsResolues());
+        assertEquals(4, compter(url, "SELECT COUNT(*) FROM meteo"));
+        assertEquals(3, compter(url, "SELECT COUNT(*) FROM stations_meteo"));
+        assertEquals(1, compter(url, "SELECT COUNT(*) FROM pays WHERE code_pays = 'CH'"), "pays créé une fois");
+
+        List<Meteo> neuchatel = repo.findMeteoForStationBetween("Neuchâtel", (Instant) null, null);
+        assertEquals(2, neuchatel.size());
+        assertEquals(1_600_003_600_000L, neuchatel.get(1).getDateMesureMs(), "dt_iso : décalage +0000 appliqué");
+        assertEquals("ciel dégagé, frais", neuchatel.get(0).getDescription(), "virgule entre guillemets");
+        assertFalse(Files.exists(reprise(csv)), "import terminé : pas de point de reprise");
+
+        // Excel : séparateur ';' et virgule décimale, colonnes de nos exports
+        Path excel = dossier.resolve("export.csv");
+        Files.writeString(excel, "station;latitude;longitude;date;temperature\n"
+                + "Neuchâtel;46,99;6,93;2020-09-13T14:26:40Z;15,5\n", StandardCharsets.UTF_8);
+        assertEquals(1, new ImportateurHistorique(repo, 1, 1).importer(excel, false).getInseres());
+        assertEquals(1, compter(url, "SELECT COUNT(*) FROM meteo WHERE temperature = 15.5"), "virgule décimale");
+        assertEquals(3, compter(url, "SELECT COUNT(*) FROM stations_meteo"), "station connue retrouvée");
+
+        // réimport : tout est déjà en base
+        ImportateurHistorique.Bilan again = sansErreurs(() ->
+                new ImportateurHistorique(nouveau(url), 2, 3).importer(csv, true));
+        assertEquals(0, again.getInseres());
+        assertEquals(4, again.getDejaPresents());
+        assertEquals(0, again.getStationsResolues(), "stations préchargées depuis la base");
+        assertEquals(5, compter(url, "SELECT COUNT(*) FROM meteo"));
+    }
+
+    @Test
+    void jsonEtJsonLinesCompresse() throws Exception {
+        String url = urlMemoire();
+        H2MeteoRepository repo = nouveau(url);
+        Path json = dossier.resolve("history.json");
+        Files.writeString(json, "[\n"
+                + "{\"city_name\":\"Neuchâtel\",\"coord\":{\"lat\":46.99,\"lon\":6.93},\"dt\":1600000000,"
+                + "\"main\":{\"temp\":12.5,\"humidity\":60,\"pressure\":1015},\"rain\":{\"1h\":0.4},"
+                + "\"weather\":[{\"description\":\"pluie légère\"}],\"sys\":{\"country\":\"CH\"}},\n"
+                + "{\"station\":\"Berne\",\"latitude\":\"46.95\",\"longitude\":7.45,\"date\":\"2020-09-13T12:26:40Z\",\"temperature\":14},\n"
+                + "{\"station\":\"Sans date\",\"latitude\":46.0,\"longitude\":7.0},\n"
+                + "42\n"
+                + "]", StandardCharsets.UTF_8);
+
+        ImportateurHistorique.Bilan bilan = sansErreurs(() ->
+                new ImportateurHistorique(repo, 2, 1, 2).importer(json, false));
+        assertEquals(4, bilan.getLus());
+        assertEquals(2, bilan.getInseres());
+        assertEquals(2, bilan.getRejetes(), "date absente, élément qui n'est pas un objet");
+        Meteo m = repo.findMeteoForStationBetween("Neuchâtel", (Instant) null, null).get(0);
+        assertEquals(1_600_000_000_000L, m.getDateMesureMs());
+        assertEquals(0.4, m.getPrecipitation());
+        assertEquals("pluie légère", m.getDescription());
+
+        Path jsonl = dossier.resolve("history.jsonl.gz");
+        try (Writer w = new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(jsonl)), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < 100; i++) {
+                w.write("{\"station\":\"Lausanne\",\"lat\":46.52,\"lon\":6.63,\"dt\":" + (DT_DEBUT + i * 3600L)
+                        + ",\"temp\":" + i + "}\n");
+            }
+            w.write("{pas du json\n");
+        }
+        ImportateurHistorique.Bilan compresse = sansErreurs(() ->
+                new ImportateurHistorique(repo, 2, 1, 16).importer(jsonl, false));
+        assertEquals(101, compresse.getLus());
+        assertEquals(100, compresse.getInseres());
+        assertEquals(1, compresse.getRejetes(), "ligne JSON invalide");
+        assertEquals(102, compter(url, "SELECT COUNT(*) FROM meteo"));
+    }
+
+    @Test
+    void repriseApresInterruption() throws Exception {
+        String url = urlMemoire();
+        nouveau(url);
+        Path csv = genererCsv("gros.csv");
+        int total = STATIONS * RELEVES_PAR_STATION;
+
+        // panne de la base au 15e lot sur 40 : import interrompu
+        H2MeteoRepository enPanne = new EnPanne(url, 14);
+        ByteArrayOutputStream erreurs = new ByteArrayOutputStream();
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(erreurs, true, StandardCharsets.UTF_8));
+        try {
+            SQLException e = assertThrows(SQLException.class,
+                    () -> new ImportateurHistorique(enPanne, 4, 2, LOT).importer(csv, false));
+            assertEquals("panne simulée", e.getMessage());
+        } finally {
+            System.setErr(err);
+        }
+        assertTrue(erreurs.toString(StandardCharsets.UTF_8).contains("relancer pour reprendre"), erreurs.toString());
+
+        assertTrue(Files.exists(reprise(csv)), "point de reprise écrit");
+        long position = positionReprise(csv);
+        long enBase = compter(url, "SELECT COUNT(*) FROM meteo");
+        assertTrue(position > 0 && position % LOT == 0 && position < total, "position : " + position);
+        assertTrue(enBase >= position, "lots validés au-delà du point de reprise possibles : " + enBase);
+        System.out.println("(Info) Import interrompu : " + enBase + " relevés en base, reprise après " + position);
+
+        ImportateurHistorique.Bilan bilan = new ImportateurHistorique(nouveau(url), 4, 2, LOT).importer(csv, false);
+        System.out.println("(Info) Import repris : " + bilan);
+        assertEquals(position, bilan.getRepriseApres());
+        assertEquals(total - position, bilan.getLus(), "lignes déjà importées sautées");
+        assertEquals(total - enBase, bilan.getInseres());
+        assertEquals(enBase - position, bilan.getDejaPresents(), "lots relus au-delà du point de reprise ignorés");
+        assertEquals(0, bilan.getStationsResolues(), "stations créées avant la panne retrouvées");
+        assertEquals(total, compter(url, "SELECT COUNT(*) FROM meteo"));
+        assertEquals(total, compter(url, "SELECT COUNT(DISTINCT station_id || '|' || date_releve) FROM meteo"),
+                "chaque relevé une seule fois");
+        assertEquals(STATIONS, compter(url, "SELECT COUNT(*) FROM stations_meteo"));
+        assertFalse(Files.exists(reprise(csv)), "point de reprise supprimé à la fin");
+    }
+
+    @Test
+    void repriseIgnoreeSiFichierModifie() throws Exception {
+        String url = urlMemoire();
+        nouveau(url);
+        Path csv = genererCsv("modifie.csv");
+        sansErreurs(() -> assertThrows(SQLException.class,
+                () -> new ImportateurHistorique(new EnPanne(url, 5), 2, 1, LOT).importer(csv, false)));
+        assertTrue(positionReprise(csv) > 0);
+
+        // ligne ajoutée : taille différente, le point de reprise ne correspond plus au fichier
+        Files.writeString(csv, "\nAjoutée,45.0,7.0," + DT_DEBUT + ",,1.0\n", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+        ImportateurHistorique.Bilan bilan = sansErreurs(() ->
+                new ImportateurHistorique(nouveau(url), 2, 1, LOT).importer(csv, false));
+        assertEquals(0, bilan.getRepriseApres());
+        assertEquals(STATIONS * RELEVES_PAR_STATION + 1, bilan.getLus(), "relu depuis le début");
+        assertEquals(STATIONS * RELEVES_PAR_STATION + 1, compter(url, "SELECT COUNT(*) FROM meteo"));
+
+        // --depuis-debut : point de reprise existant ignoré
+        Path autre = genererCsv("depuis-debut.csv");
+        sansErreurs(() -> assertThrows(SQLException.class,
+                () -> new ImportateurHistorique(new EnPanne(url, 5), 2, 1, LOT).importer(autre, false)));
+        assertTrue(Files.exists(reprise(autre)));
+        ImportateurHistorique.Bilan complet = new ImportateurHistorique(nouveau(url), 2, 1, LOT).importer(autre, true);
+        assertEquals(0, complet.getRepriseApres());
+        assertEquals(STATIONS * RELEVES_PAR_STATION, complet.getDejaPresents(), "mêmes relevés que modifie.csv");
+        assertFalse(Files.exists(reprise(autre)));
+    }
+
+    // -------------------------------------------------------
+    // Utilitaires
+    // -------------------------------------------------------
+
+    private interface Import<T> {
+        T executer() throws Exception;
+    }
+
+    /** Exécute sans afficher les avertissements attendus (lignes rejetées, import interrompu). */
+    private static <T> T sansErreurs(Import<T> i) throws Exception {
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            return i.executer();
+        } finally {
+            System.setErr(err);
+        }
+    }
+
+    private static String urlMemoire() {
+        return "jdbc:h2:mem:import" + (numeroBase++) + ";DB_CLOSE_DELAY=-1";
+    }
+
+    private static H2MeteoRepository nouveau(String url) throws Exception {
+        H2MeteoRepository repo = new H2MeteoRepository(url, "sa", "");
+        repo.initialiserSchema();
+        return repo;
+    }
+
+    /** Relevés horaires de STATIONS stations, entrelacés comme dans un export trié par date. */
+    private Path genererCsv(String nom) throws Exception {
+        Path csv = dossier.resolve(nom);
+        try (Writer w = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            w.write("city_name,lat,lon,dt,dt_iso,temp\n");
+            for (int j = 0; j < RELEVES_PAR_STATION; j++) {
+                for (int s = 0; s < STATIONS; s++) {
+                    w.write("Station " + s + "," + (46 + s * 0.01) + "," + (6 + s * 0.01) + ","
+                            + (DT_DEBUT + j * 3600L) + ",," + (j % 30 - 5) + ".5\n");
+                }
+            }
+        }
+        return csv;
+    }
+
+    private static Path reprise(Path fichier) {
+        return fichier.resolveSibling(fichier.getFileName() + ".reprise");
+    }
+
+    private static long positionReprise(Path fichier) throws Exception {
+        Properties p = new Properties();
+        try (InputStream in = Files.newInputStream(reprise(fichier))) {
+            p.load(in);
+        }
+        return Long.parseLong(p.getProperty("position"));
+    }
+
+    private static long compter(String url, String sql) throws SQLException {
+        try (Connection cn = DriverManager.getConnection(url, "sa", "");
+             Statement st = cn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /** Base qui tombe en panne après un nombre donné de lots insérés. */
+    private static final class EnPanne extends H2MeteoRepository {
+        private final int lotsAvantPanne;
+        private final AtomicInteger lots = new AtomicInteger();
+
+        EnPanne(String url, int lotsAvantPanne) {
+            super(url, "sa", "");
+            this.lotsAvantPanne = lotsAvantPanne;
+        }
+
+        @Override
+        public int saveMeteoParStation(Map<Integer, List<Meteo>> relevesParStation) throws Exception {
+            if (lots.incrementAndGet() > lotsAvantPanne) {
+                throw new SQLException("panne simulée");
+            }
+            return super.saveMeteoParStation(relevesParStation);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package ch.hearc.meteo.service.rapport;
+
+import ch.hearc.meteo.business.Meteo;
+import ch.hearc.meteo.business.Pays;
+import ch.hearc.meteo.business.StationMeteo;
+import ch.hearc.meteo.infrastructure.persistence.H2MeteoRepository;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Rapports ({@link MoteurRapports}), sans serveur de base : base H2 (fichier temporaire) remplie
+ * de N stations réparties sur 4 pays, un relevé toutes les 3 heures pendant A années (saisons,
+ * cycle du jour, averses au hasard).
+ *
+ * 1. rapport sur la période (moins un mois à chaque bout), avec 1 thread puis avec le pool complet ;
+ * 2. comparaison de quelques stations avec un calcul naïf (tous les relevés en mémoire, tri,
+ *    regroupement par jour) : extrêmes et dates, percentiles, degrés-jours, jours de pluie ;
+ * 3. relevés lus = COUNT(*) sur la période ; pays = somme de leurs stations ;
+ * 4. export CSV et JSON relus.
+ */
+class MoteurRapportsTest {
+
+    private static final int NB_STATIONS = 200;
+    private static final int ANNEES = 3;
+    private static final String[][] PAYS = {{"CH", "Suisse"}, {"FR", "France"}, {"DE", "Allemagne"}, {"IT", "Italie"}};
+    private static final long PAS_MS = 3 * 3_600_000L;
+    private static final ZoneId ZONE = ZoneId.of("Europe/Zurich");
+
+    @TempDir
+    static Path dossier;
+
+    private static String url;
+    private static H2MeteoRepository repo;
+    private static Instant debut;
+    private static Instant fin;
+    private static ReglageRapports reglage;
+    private static RapportMeteo rapport;
+
+    /** Base remplie, puis rapport avec un thread et avec le pool complet. */
+    @BeforeAll
+    static void generer() throws Exception {
+        url = "jdbc:h2:" + dossier.resolve("meteo").toAbsolutePath();
+        repo = new H2MeteoRepository(url, "sa", "");
+        repo.initialiserSchema();
+
+        long debutDonnees = LocalDate.of(2021, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        long finDonnees = LocalDate.of(2021 + ANNEES, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        long t0 = System.nanoTime();
+        long inseres = remplir(repo, url, NB_STATIONS, debutDonnees, finDonnees);
+        System.out.printf(Locale.ROOT, "(Info) Base : %d station(s), %d relevé(s) insérés en %d ms%n",
+                NB_STATIONS, inseres, (System.nanoTime() - t0) / 1_000_000);
+
+        debut = Instant.ofEpochMilli(debutDonnees).plus(Duration.ofDays(30));
+        fin = Instant.ofEpochMilli(finDonnees).minus(Duration.ofDays(30));
+
+        reglage = new ReglageRapports();
+        reglage.setZone(ZONE);
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        for (int n : new int[]{1, threads}) {
+            reglage.setThreads(n);
+            rapport = new MoteurRapports(repo, reglage).generer(debut, fin);
+            System.out.println("(Info) " + n + " thread(s) : " + rapport);
+        }
+    }
+
+    @Test
+    void stationsIdentiquesAuCalculNaif() throws Exception {
+        List<StatistiquesMeteo> lignes = rapport.getStations();
+        for (int i = 0; i < lignes.size(); i += Math.max(1, lignes.size() / 5)) {
+            comparer(lignes.get(i), repo.findMeteoForStationBetween(lignes.get(i).getNom(), debut, fin), reglage);
+        }
+    }
+
+    @Test
+    void compteursCoherents() throws Exception {
+        long enBase = compter(url, debut, fin);
+        long stationsPays = rapport.getPays().stream().mapToLong(StatistiquesMeteo::getStations).sum();
+        long relevesPays = rapport.getPays().stream().mapToLong(StatistiquesMeteo::getReleves).sum();
+        System.out.printf(Locale.ROOT, "(Info) Relevés lus %d / en base %d ; pays : %d station(s), %d relevé(s)%n",
+                rapport.getRelevesLus(), enBase, stationsPays, relevesPays);
+        assertEquals(enBase, rapport.getRelevesLus(), "relevés lus");
+        assertEquals(enBase, relevesPays, "relevés des pays");
+        assertEquals(NB_STATIONS, stationsPays, "stations des pays");
+        assertEquals(NB_STATIONS, rapport.getStations().size(), "stations du rapport");
+        assertEquals(PAYS.length, rapport.getPays().size(), "pays du rapport");
+        for (StatistiquesMeteo p : rapport.getPays()) {
+            System.out.printf(Locale.ROOT, "(Info) %s : %d station(s), moyenne %.1f °C, p10 %.1f, p90 %.1f, "
+                            + "max %.1f °C le %s (%s), %.0f jours de pluie et %.0f DJU par station%n",
+                    p.getNom(), p.getStations(), p.getTemperatureMoyenne(), p.getTemperatureP10(),
+                    p.getTemperatureP90(), p.getTemperatureMax(), p.getTemperatureMaxLe(),
+                    p.getTemperatureMaxStation(), p.getJoursPluie(), p.getDegresJourChauffage());
+        }
+    }
+
+    @Test
+    void exportsRelus() throws Exception {
+        Path csv = dossier.resolve("rapport.csv");
+        Path json = dossier.resolve("rapport.json");
+        rapport.ecrire(csv);
+        rapport.ecrire(json);
+        long lignesCsv;
+        try (Stream<String> l = Files.lines(csv, StandardCharsets.UTF_8)) {
+            lignesCsv = l.count();
+        }
+        JsonObject lu;
+        try (Reader r = Files.newBufferedReader(json, StandardCharsets.UTF_8)) {
+            lu = JsonParser.parseReader(r).getAsJsonObject();
+        }
+        System.out.printf(Locale.ROOT, "(Info) Exports : CSV %d ligne(s), JSON %d station(s) et %d pays%n",
+                lignesCsv, lu.getAsJsonArray("stations").size(), lu.getAsJsonArray("pays").size());
+        assertEquals(1 + NB_STATIONS + PAYS.length, lignesCsv, "lignes CSV (en-tête, stations, pays)");
+        assertEquals(NB_STATIONS, lu.getAsJsonArray("stations").size(), "stations JSON");
+        assertEquals(PAYS.length, lu.getAsJsonArray("pays").size(), "pays JSON");
+    }
+
+    /**
+     * Stations par le repository, relevés par INSERT en lots sur une connexion directe :
+     * le MERGE de saveMeteoParStation (dédoublonnage) serait trop lent pour des millions de lignes.
+     */
+    private static long remplir(H2MeteoRepository repo, String url, int nbStations, long debutMs, long finMs)
+            throws Exception {
+        Random alea = new Random(45);
+        long total = 0;
+        try (Connection cn = DriverManager.getConnection(url, "sa", "");
+             PreparedStatement ps = cn.prepareStatement("INSERT INTO meteo (station_id, date_releve, temperature, "
+                     + "humidite, pression, precipitation) VALUES (?, ?, ?, ?, ?, ?)")) {
+            cn.setAutoCommit(false);
+            for (int i = 0; i < nbStations; i++) {
+                StationMeteo s = new StationMeteo();
+                s.setNom(String.format(Locale.ROOT, "Station %03d", i));
+                s.setLatitude(40.0 + i * 0.01);
+                s.setLongitude(5.0);
+                Pays p = new Pays();
+                p.setCode(PAYS[i % PAYS.length][0]);
+                p.setNom(PAYS[i % PAYS.length][1]);
+                s.setPays(p);
+                int id = repo.ensureStationId(s);
+
+                double decalage = alea.nextGaussian() * 3;
+                for (long t = debutMs; t < finMs; t += PAS_MS) {
+                    double jourAnnee = (t / 86_400_000L) % 365;
+                    double heure = (t / 3_600_000L) % 24;
+                    ps.setInt(1, id);
+                    ps.setObject(2, LocalDateTime.ofEpochSecond(t / 1000, 0, ZoneOffset.UTC));
+                    ps.setDouble(3, Math.round((8 + decalage - 10 * Math.cos(2 * Math.PI * jourAnnee / 365)
+                            - 4 * Math.cos(2 * Math.PI * (heure - 3) / 24) + alea.nextGaussian() * 2) * 100) / 100.0);
+                    ps.setDouble(4, 50 + alea.nextDouble() * 50);
+                    ps.setDouble(5, Math.round((1013 + alea.nextGaussian() * 8) * 10) / 10.0);
+                    if (alea.nextDouble() < 0.12) {
+                        ps.setDouble(6, Math.round(alea.nextDouble() * 40) / 10.0);
+                    } else {
+                        ps.setNull(6, Types.DOUBLE);
+                    }
+                    ps.addBatch();
+                    total++;
+                }
+                ps.executeBatch();
+                cn.commit();
+            }
+        }
+        return total;
+    }
+
+    /** Calcul naïf d'une station (tout en mémoire), comparé à la ligne du rapport. */
+    private static void comparer(StatistiquesMeteo ligne, List<Meteo> releves, ReglageRapports reglage) {
+        List<Double> temperatures = new ArrayList<>();
+        Meteo min = null;
+        Meteo max = null;
+        TreeMap<LocalDate, double[]> jours = new TreeMap<>(); // somme T, nb T, précipitations
+        for (Meteo m : releves) {
+            double[] j = jours.computeIfAbsent(m.getInstantMesure().atZone(ZONE).toLocalDate(), k -> new double[3]);
+            if (m.getTemperature() != null) {
+                temperatures.add(m.getTemperature());
+                if (min == null || m.getTemperature() < min.getTemperature()) min = m;
+                if (max == null || m.getTemperature() > max.getTemperature()) max = m;
+                j[0] += m.getTemperature();
+                j[1]++;
+            }
+            if (m.getPrecipitation() != null) j[2] += m.getPrecipitation();
+        }
+        temperatures.sort(null);
+        double chauffage = 0;
+        int joursPluie = 0;
+        for (double[] j : jours.values()) {
+            if (j[1] > 0) chauffage += Math.max(0, reglage.getBaseDegresJour() - j[0] / j[1]);
+            if (j[2] >= reglage.getSeuilPluieMm()) joursPluie++;
+        }
+        double p90 = temperatures.get((int) Math.ceil(0.9 * temperatures.size()) - 1);
+        String maxLe = LocalDateTime.ofInstant(max.getInstantMesure(), ZONE).toString();
+
+        System.out.printf(Locale.ROOT, "(Info) %s : %d relevé(s), p90 %.2f / %.2f, DJU %.2f / %.2f, "
+                        + "jours de pluie %.0f / %d, max %.2f le %s%n",
+                ligne.getNom(), ligne.getReleves(), ligne.getTemperatureP90(), p90, ligne.getDegresJourChauffage(),
+                chauffage, ligne.getJoursPluie(), joursPluie, ligne.getTemperatureMax(), ligne.getTemperatureMaxLe());
+
+        String nom = ligne.getNom() + " : ";
+        assertEquals(releves.size(), ligne.getReleves(), nom + "relevés");
+        assertEquals(min.getTemperature(), ligne.getTemperatureMin(), nom + "minimum");
+        assertEquals(max.getTemperature(), ligne.getTemperatureMax(), nom + "maximum");
+        assertTrue(ligne.getTemperatureMaxLe().startsWith(maxLe.length() == 16 ? maxLe + ":00" : maxLe),
+                nom + "date du maximum " + ligne.getTemperatureMaxLe() + " au lieu de " + maxLe);
+        assertEquals(p90, ligne.getTemperatureP90(), 0.05 + 1e-9, nom + "p90");
+        assertEquals(chauffage, ligne.getDegresJourChauffage(), 1e-6, nom + "degrés-jours de chauffage");
+        assertEquals(joursPluie, ligne.getJoursPluie(), nom + "jours de pluie");
+        assertEquals(jours.size(), ligne.getJours(), nom + "jours");
+    }
+
+    private static long compter(String url, Instant debut, Instant fin) throws Exception {
+        try (Connection cn = DriverManager.getConnection(url, "sa", "");
+             PreparedStatement ps = cn.prepareStatement(
+                     "SELECT COUNT(*) FROM meteo WHERE date_releve >= ? AND date_releve < ?")) {
+            ps.setObject(1, LocalDateTime.ofInstant(debut, ZoneOffset.UTC));
+            ps.setObject(2, LocalDateTime.ofInstant(fin, ZoneOffset.UTC));
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+}